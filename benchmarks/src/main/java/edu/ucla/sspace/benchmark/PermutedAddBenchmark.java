@@ -0,0 +1,259 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import edu.ucla.sspace.dependency.DependencyPath;
+import edu.ucla.sspace.dependency.DependencyRelation;
+import edu.ucla.sspace.dependency.DependencyTreeNode;
+import edu.ucla.sspace.dependency.RelationPermutationFunction;
+import edu.ucla.sspace.dependency.SimpleDependencyPath;
+import edu.ucla.sspace.dependency.SimpleDependencyRelation;
+import edu.ucla.sspace.dependency.SimpleDependencyTreeNode;
+
+import edu.ucla.sspace.index.RandomIndexVectorGenerator;
+import edu.ucla.sspace.index.TernaryPermutationFunction;
+
+import edu.ucla.sspace.vector.DenseIntVector;
+import edu.ucla.sspace.vector.IntegerVector;
+import edu.ucla.sspace.vector.TernaryVector;
+import edu.ucla.sspace.vector.VectorMath;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Compares adding permuted index vectors to semantic vectors by reordering
+ * each value as it is added, using {@link VectorMath#addPermuted(IntegerVector,
+ * TernaryVector, int[]) VectorMath.addPermuted}, against permuting a copy of
+ * the index vector and then adding the copy.
+ *
+ * <p> The {@code ri} benchmarks repeat the window loop of {@link
+ * edu.ucla.sspace.ri.RandomIndexing RandomIndexing} with a {@link
+ * TernaryPermutationFunction}, permuting each neighbor by its distance from
+ * the focus word.  The {@code dri} benchmarks repeat the path loop of {@link
+ * edu.ucla.sspace.dri.DependencyRandomIndexing DependencyRandomIndexing} with a
+ * {@link RelationPermutationFunction}, permuting each path's last word by the
+ * relations in the path.  Index vectors and paths are created during setup, so
+ * only the additions are measured.  Scores are reported per document.
+ *
+ * @author David Jurgens
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PermutedAddBenchmark {
+
+    /**
+     * The number of documents in the canned corpus
+     */
+    static final int DOCUMENTS = 100;
+
+    /**
+     * The number of distinct semantic vectors that are updated.  Focus words
+     * share these vectors so that the benchmark does not need one vector per
+     * word in the vocabulary.
+     */
+    static final int SEMANTIC_VECTORS = 1024;
+
+    /**
+     * The dependency relations used in the synthetic paths, which include the
+     * relations that {@link RelationPermutationFunction} scores highest
+     */
+    static final String[] RELATIONS = 
+        { "SBJ", "OBJ", "NMOD", "PMOD", "P", "VC", "ADV", "PRD" };
+
+    @Param({"2", "5"})
+    public int windowSize;
+
+    @Param({"4000"})
+    public int vectorLength;
+
+    /**
+     * The index vector of each token in each document
+     */
+    private TernaryVector[][] documents;
+
+    /**
+     * The semantic vector of each token in each document
+     */
+    private IntegerVector[][] focusVectors;
+
+    /**
+     * The paths starting at each token in each document, which contain at
+     * most {@code windowSize} relations
+     */
+    private DependencyPath[][][] paths;
+
+    private IntegerVector[] semantics;
+
+    private TernaryPermutationFunction permutationFunc;
+
+    private RelationPermutationFunction<TernaryVector> relationFunc;
+
+    @Setup
+    public void setUp() {
+        List<String> corpus = SyntheticData.corpus(DOCUMENTS, 500, 20000, 
+                                                   SyntheticData.SEED);
+        RandomIndexVectorGenerator generator = new RandomIndexVectorGenerator(
+            vectorLength, 10, 0, (int)SyntheticData.SEED);
+        Map<String,TernaryVector> indexVectors = 
+            new HashMap<String,TernaryVector>();
+        semantics = new IntegerVector[SEMANTIC_VECTORS];
+        for (int i = 0; i < semantics.length; ++i)
+            semantics[i] = new DenseIntVector(vectorLength);
+
+        Random rand = new Random(SyntheticData.SEED);
+        documents = new TernaryVector[DOCUMENTS][];
+        focusVectors = new IntegerVector[DOCUMENTS][];
+        paths = new DependencyPath[DOCUMENTS][][];
+        for (int d = 0; d < DOCUMENTS; ++d) {
+            String[] tokens = corpus.get(d).split("\\s+");
+            documents[d] = new TernaryVector[tokens.length];
+            focusVectors[d] = new IntegerVector[tokens.length];
+            paths[d] = new DependencyPath[tokens.length][];
+            DependencyTreeNode[] nodes = new DependencyTreeNode[tokens.length];
+            for (int t = 0; t < tokens.length; ++t) {
+                TernaryVector iv = indexVectors.get(tokens[t]);
+                if (iv == null) {
+                    iv = generator.generate();
+                    indexVectors.put(tokens[t], iv);
+                }
+                documents[d][t] = iv;
+                focusVectors[d][t] = semantics[
+                    (tokens[t].hashCode() & 0x7FFFFFFF) % SEMANTIC_VECTORS];
+                nodes[t] = new SimpleDependencyTreeNode(tokens[t], "NN", t);
+            }
+            // Link each token to the following tokens in its window with a
+            // chain of relations
+            for (int t = 0; t < tokens.length; ++t) {
+                int numPaths = Math.min(windowSize, tokens.length - t - 1);
+                paths[d][t] = new DependencyPath[numPaths];
+                List<DependencyRelation> chain = 
+                    new ArrayList<DependencyRelation>();
+                for (int p = 0; p < numPaths; ++p) {
+                    chain.add(new SimpleDependencyRelation(
+                        nodes[t + p], RELATIONS[rand.nextInt(RELATIONS.length)],
+                        nodes[t + p + 1]));
+                    paths[d][t][p] = new SimpleDependencyPath(chain);
+                }
+            }
+        }
+
+        permutationFunc = new TernaryPermutationFunction();
+        relationFunc = new RelationPermutationFunction<TernaryVector>(
+            permutationFunc);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public IntegerVector[] riFused() {
+        for (int d = 0; d < DOCUMENTS; ++d) {
+            TernaryVector[] document = documents[d];
+            for (int t = 0; t < document.length; ++t) {
+                IntegerVector focus = focusVectors[d][t];
+                int start = Math.max(0, t - windowSize);
+                int end = Math.min(document.length - 1, t + windowSize);
+                for (int n = start; n <= end; ++n) {
+                    if (n == t)
+                        continue;
+                    int[] reordering = 
+                        permutationFunc.getReordering(n - t, vectorLength);
+                    VectorMath.addPermuted(focus, document[n], reordering);
+                }
+            }
+        }
+        return semantics;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public IntegerVector[] riPermuteThenAdd() {
+        for (int d = 0; d < DOCUMENTS; ++d) {
+            TernaryVector[] document = documents[d];
+            for (int t = 0; t < document.length; ++t) {
+                IntegerVector focus = focusVectors[d][t];
+                int start = Math.max(0, t - windowSize);
+                int end = Math.min(document.length - 1, t + windowSize);
+                for (int n = start; n <= end; ++n) {
+                    if (n == t)
+                        continue;
+                    VectorMath.add(focus, 
+                                   permutationFunc.permute(document[n], n - t));
+                }
+            }
+        }
+        return semantics;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public IntegerVector[] driFused() {
+        for (int d = 0; d < DOCUMENTS; ++d) {
+            TernaryVector[] document = documents[d];
+            for (int t = 0; t < document.length; ++t) {
+                IntegerVector focus = focusVectors[d][t];
+                DependencyPath[] tokenPaths = paths[d][t];
+                for (int p = 0; p < tokenPaths.length; ++p)
+                    relationFunc.addPermuted(
+                        focus, document[t + p + 1], tokenPaths[p]);
+            }
+        }
+        return semantics;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public IntegerVector[] driPermuteThenAdd() {
+        for (int d = 0; d < DOCUMENTS; ++d) {
+            TernaryVector[] document = documents[d];
+            for (int t = 0; t < document.length; ++t) {
+                IntegerVector focus = focusVectors[d][t];
+                DependencyPath[] tokenPaths = paths[d][t];
+                for (int p = 0; p < tokenPaths.length; ++p)
+                    VectorMath.add(focus, relationFunc.permute(
+                        document[t + p + 1], tokenPaths[p]));
+            }
+        }
+        return semantics;
+    }
+}
@@ -0,0 +1,107 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import edu.ucla.sspace.index.TernaryPermutationFunction;
+
+import edu.ucla.sspace.ri.RandomIndexing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures {@link RandomIndexing#processDocument(BufferedReader)} over a canned
+ * corpus, with and without permutations.  A new instance is created for each
+ * iteration so that every iteration sees the same mix of new and previously
+ * seen words.  Scores are reported per document.
+ *
+ * @author David Jurgens
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RandomIndexingBenchmark {
+
+    /**
+     * The number of documents in the canned corpus
+     */
+    static final int DOCUMENTS = 100;
+
+    @Param({"false", "true"})
+    public boolean usePermutations;
+
+    @Param({"2"})
+    public int windowSize;
+
+    @Param({"4000"})
+    public int vectorLength;
+
+    private List<String> corpus;
+
+    private RandomIndexing ri;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        corpus = SyntheticData.corpus(DOCUMENTS, 500, 20000, 
+                                      SyntheticData.SEED);
+    }
+
+    @Setup(Level.Iteration)
+    public void createSpace() {
+        ri = new RandomIndexing(vectorLength, windowSize, usePermutations,
+                                new TernaryPermutationFunction(), false,
+                                SyntheticData.SEED, new Properties());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public RandomIndexing processDocument() throws IOException {
+        for (String document : corpus)
+            ri.processDocument(
+                new BufferedReader(new StringReader(document)));
+        return ri;
+    }
+}
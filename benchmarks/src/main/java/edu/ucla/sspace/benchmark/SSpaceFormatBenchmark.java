@@ -0,0 +1,111 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import edu.ucla.sspace.common.SemanticSpace;
+import edu.ucla.sspace.common.SemanticSpaceIO;
+import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures saving and loading a semantic space with each {@link SSpaceFormat}.
+ * Each trial writes its space once to a temporary file, which {@link #load()}
+ * then reads repeatedly, while {@link #save()} rewrites a second file.
+ *
+ * @author David Jurgens
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SSpaceFormatBenchmark {
+
+    @Param({"TEXT", "BINARY", "SPARSE_TEXT", "SPARSE_BINARY", "SERIALIZE",
+            "COLUMNAR", "COLUMNAR_FLOAT", "QUANTIZED"})
+    public SSpaceFormat format;
+
+    /**
+     * Whether every dimension of each vector is set
+     */
+    @Param({"true", "false"})
+    public boolean dense;
+
+    @Param({"10000"})
+    public int words;
+
+    @Param({"300"})
+    public int dimensions;
+
+    private SemanticSpace sspace;
+
+    private File loadFile;
+
+    private File saveFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        int nonZeros = (dense) ? dimensions : dimensions / 20;
+        sspace = SyntheticData.space(words, dimensions, nonZeros, 
+                                     SyntheticData.SEED);
+        loadFile = File.createTempFile("benchmark-load", ".sspace");
+        saveFile = File.createTempFile("benchmark-save", ".sspace");
+        SemanticSpaceIO.save(sspace, loadFile, format);
+    }
+
+    @TearDown
+    public void tearDown() {
+        loadFile.delete();
+        saveFile.delete();
+    }
+
+    @Benchmark
+    public SemanticSpace load() throws IOException {
+        return SemanticSpaceIO.load(loadFile);
+    }
+
+    @Benchmark
+    public File save() throws IOException {
+        SemanticSpaceIO.save(sspace, saveFile, format);
+        return saveFile;
+    }
+}
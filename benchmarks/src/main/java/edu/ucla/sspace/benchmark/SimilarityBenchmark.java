@@ -0,0 +1,107 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import edu.ucla.sspace.benchmark.SyntheticData.VectorType;
+
+import edu.ucla.sspace.similarity.SimilarityFunction;
+
+import edu.ucla.sspace.vector.DoubleVector;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures each of the {@link SimilarityFunction} implementations on a pair of
+ * dense and a pair of sparse vectors.  The values are all positive so that the
+ * functions defined only over distributions, such as {@code KLDivergence}, are
+ * measured on valid input.
+ *
+ * @author David Jurgens
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimilarityBenchmark {
+
+    /**
+     * The simple name of a class in {@code edu.ucla.sspace.similarity}
+     */
+    @Param({"AverageCommonFeatureRank", "CosineSimilarity", "DotProduct",
+            "EuclideanSimilarity", "GaussianKernel", "JaccardIndex",
+            "KLDivergence", "KendallsTau", "LinSimilarity", 
+            "PearsonCorrelation", "PolynomialKernel", 
+            "SpearmanRankCorrelation", "TanimotoCoefficient"})
+    public String function;
+
+    /**
+     * The implementation of both operands
+     */
+    @Param({"DENSE", "COMPACT_SPARSE"})
+    public VectorType vectorType;
+
+    /**
+     * The length of both operands
+     */
+    @Param({"1000"})
+    public int length;
+
+    private SimilarityFunction simFunc;
+
+    private DoubleVector a;
+
+    private DoubleVector b;
+
+    @Setup
+    public void setUp() throws Exception {
+        simFunc = (SimilarityFunction) Class.forName(
+            "edu.ucla.sspace.similarity." + function).newInstance();
+        // Dense vectors are completely full, while sparse vectors have one
+        // value in twenty set
+        int nonZeros = (vectorType == VectorType.DENSE) ? length : length / 20;
+        Random rand = new Random(SyntheticData.SEED);
+        a = SyntheticData.vector(vectorType, length, nonZeros, rand);
+        b = SyntheticData.vector(vectorType, length, nonZeros, rand);
+    }
+
+    @Benchmark
+    public double sim() {
+        return simFunc.sim(a, b);
+    }
+}
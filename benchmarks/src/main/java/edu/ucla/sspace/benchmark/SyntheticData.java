@@ -0,0 +1,171 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import edu.ucla.sspace.common.SemanticSpace;
+import edu.ucla.sspace.common.VectorMapSemanticSpace;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.SparseHashDoubleVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * Generators for the canned inputs used by the benchmarks.  Every method is
+ * deterministic for a given seed, so each benchmark sees exactly the same data
+ * on every machine and in every release.
+ *
+ * <p> Corpora are drawn from a vocabulary of words {@code w0}, {@code w1}, ...
+ * whose frequencies follow Zipf's law, which approximates the skewed term
+ * distribution of natural text, and which are interspersed with punctuation so
+ * that tokenizers do realistic work.
+ *
+ * @author David Jurgens
+ */
+public final class SyntheticData {
+
+    /**
+     * The seed used by the benchmarks unless stated otherwise
+     */
+    public static final long SEED = 20121001L;
+
+    /**
+     * The kinds of {@link DoubleVector} compared by the benchmarks
+     */
+    public enum VectorType { DENSE, COMPACT_SPARSE, SPARSE_HASH }
+
+    /**
+     * Uninstantiable
+     */
+    private SyntheticData() { }
+
+    /**
+     * Returns a vector of the specified type and length with {@code nonZeros}
+     * randomly placed positive values.
+     */
+    public static DoubleVector vector(VectorType type, int length, 
+                                      int nonZeros, Random rand) {
+        double[] values = new double[length];
+        int[] indices = sample(length, nonZeros, rand);
+        for (int i : indices)
+            values[i] = rand.nextDouble() + 0.01;
+        switch (type) {
+        case DENSE:
+            return new DenseVector(values);
+        case COMPACT_SPARSE:
+            return new CompactSparseVector(values);
+        case SPARSE_HASH:
+            return new SparseHashDoubleVector(values);
+        default:
+            throw new IllegalArgumentException("Unknown type: " + type);
+        }
+    }
+
+    /**
+     * Returns {@code count} distinct indices in {@code [0, length)}.
+     */
+    private static int[] sample(int length, int count, Random rand) {
+        count = Math.min(count, length);
+        int[] all = new int[length];
+        for (int i = 0; i < length; ++i)
+            all[i] = i;
+        for (int i = 0; i < count; ++i) {
+            int j = i + rand.nextInt(length - i);
+            int t = all[i];
+            all[i] = all[j];
+            all[j] = t;
+        }
+        return Arrays.copyOf(all, count);
+    }
+
+    /**
+     * Returns a corpus of documents whose words are drawn from a Zipfian
+     * distribution over the vocabulary.
+     *
+     * @param numDocuments the number of documents
+     * @param wordsPerDocument the number of words in each document
+     * @param vocabularySize the number of distinct words
+     * @param seed the seed for the random word choices
+     */
+    public static List<String> corpus(int numDocuments, int wordsPerDocument,
+                                      int vocabularySize, long seed) {
+        Random rand = new Random(seed);
+        // The cumulative probability of each word rank, where the probability
+        // of rank r is proportional to 1 / (r + 1)
+        double[] cumulative = new double[vocabularySize];
+        double sum = 0;
+        for (int r = 0; r < vocabularySize; ++r) {
+            sum += 1d / (r + 1);
+            cumulative[r] = sum;
+        }
+
+        List<String> documents = new ArrayList<String>(numDocuments);
+        for (int d = 0; d < numDocuments; ++d) {
+            StringBuilder sb = new StringBuilder(wordsPerDocument * 8);
+            for (int w = 0; w < wordsPerDocument; ++w) {
+                int rank = Arrays.binarySearch(cumulative, 
+                                               rand.nextDouble() * sum);
+                if (rank < 0)
+                    rank = Math.min(-rank - 1, vocabularySize - 1);
+                sb.append('w').append(rank);
+                // End a sentence about every fifteen words
+                if (rand.nextInt(15) == 0)
+                    sb.append(". ");
+                else if (rand.nextInt(20) == 0)
+                    sb.append(", ");
+                else
+                    sb.append(' ');
+            }
+            documents.add(sb.toString());
+        }
+        return documents;
+    }
+
+    /**
+     * Returns a semantic space of {@code numWords} words whose vectors have
+     * {@code nonZeros} non-zero values.  Spaces with as many non-zero values
+     * as dimensions use {@link DenseVector}s, while the others use {@link
+     * CompactSparseVector}s, which matches how the {@code .sspace} formats
+     * load them.
+     */
+    public static SemanticSpace space(int numWords, int dimensions, 
+                                      int nonZeros, long seed) {
+        Random rand = new Random(seed);
+        VectorType type = (nonZeros >= dimensions)
+            ? VectorType.DENSE : VectorType.COMPACT_SPARSE;
+        Map<String,DoubleVector> vectors = 
+            new HashMap<String,DoubleVector>(numWords * 2);
+        for (int i = 0; i < numWords; ++i)
+            vectors.put("w" + i, vector(type, dimensions, nonZeros, rand));
+        return new VectorMapSemanticSpace<DoubleVector>(
+            vectors, "synthetic-space", dimensions);
+    }
+}
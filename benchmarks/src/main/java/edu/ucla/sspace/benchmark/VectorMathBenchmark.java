@@ -0,0 +1,119 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.benchmark;
+
+import edu.ucla.sspace.benchmark.SyntheticData.VectorType;
+
+import edu.ucla.sspace.common.Similarity;
+
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.VectorMath;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the {@link VectorMath} and {@link Similarity} operations that sit in
+ * the inner loops of most of the semantic space algorithms, for each of the
+ * common {@link DoubleVector} implementations.
+ *
+ * @author David Jurgens
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorMathBenchmark {
+
+    /**
+     * The implementation of both operands
+     */
+    @Param({"DENSE", "COMPACT_SPARSE", "SPARSE_HASH"})
+    public VectorType vectorType;
+
+    /**
+     * The length of both operands
+     */
+    @Param({"300", "4000", "100000"})
+    public int length;
+
+    /**
+     * The number of non-zero values in each operand
+     */
+    @Param({"300"})
+    public int nonZeros;
+
+    private DoubleVector a;
+
+    private DoubleVector b;
+
+    /**
+     * The vector that is summed into by {@link #add()}, which is recreated
+     * for each iteration so that its values stay bounded.
+     */
+    private DoubleVector sum;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random rand = new Random(SyntheticData.SEED);
+        a = SyntheticData.vector(vectorType, length, nonZeros, rand);
+        b = SyntheticData.vector(vectorType, length, nonZeros, rand);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetSum() {
+        sum = SyntheticData.vector(vectorType, length, nonZeros, 
+                                   new Random(SyntheticData.SEED + 1));
+    }
+
+    @Benchmark
+    public double dotProduct() {
+        return VectorMath.dotProduct(a, b);
+    }
+
+    @Benchmark
+    public DoubleVector add() {
+        return VectorMath.add(sum, b);
+    }
+
+    @Benchmark
+    public double cosineSimilarity() {
+        return Similarity.cosineSimilarity(a, b);
+    }
+}
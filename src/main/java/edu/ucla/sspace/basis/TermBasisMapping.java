@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.basis;
+
+import edu.ucla.sspace.text.TermDictionary;
+import edu.ucla.sspace.text.TokenScanner;
+
+import java.io.Serializable;
+
+import java.util.Set;
+
+
+/**
+ * A {@link BasisMapping} from terms to dimensions that is backed by a {@link
+ * TermDictionary}, so the dimension of a term is its term id.  In addition to
+ * mapping {@code String} terms, the mapping accepts any {@link CharSequence} or
+ * the current token of a {@link TokenScanner}, which maps tokens to their
+ * dimensions without creating a {@code String} for each one.  Each dimension
+ * is described by its term.
+ *
+ * <p> This class is thread-safe.
+ *
+ * @author David Jurgens
+ */
+public class TermBasisMapping implements BasisMapping<String,String>, 
+                                         Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The dictionary that assigns each term its dimension
+     */
+    private final TermDictionary dictionary;
+
+    /**
+     * Set to {@code true} when the {@link BasisMapping} should not create new
+     * dimensions for unseen keys.
+     */
+    private volatile boolean readOnly;
+
+    /**
+     * Creates an empty mapping.
+     */
+    public TermBasisMapping() {
+        this(new TermDictionary());
+    }
+
+    /**
+     * Creates a mapping that uses the ids of the dictionary as dimensions.
+     * Changes to the mapping are reflected in the dictionary and vice versa.
+     */
+    public TermBasisMapping(TermDictionary dictionary) {
+        this.dictionary = dictionary;
+        readOnly = false;
+    }
+
+    /**
+     * Creates a mapping with a dimension for each of the words.
+     */
+    public TermBasisMapping(Set<String> words) {
+        this(new TermDictionary(words.size()));
+        for (String word : words)
+            dictionary.intern(word);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getDimension(String key) {
+        return getDimension((CharSequence)key);
+    }
+
+    /**
+     * Returns the dimension of the term.  If in read only mode, -1 is returned
+     * for unseen terms.  Otherwise, unseen terms are assigned a new dimension.
+     */
+    public int getDimension(CharSequence term) {
+        return (readOnly) ? dictionary.getId(term) : dictionary.intern(term);
+    }
+
+    /**
+     * Returns the dimension of the scanner's current token.  If in read only
+     * mode, -1 is returned for unseen tokens.  Otherwise, unseen tokens are
+     * assigned a new dimension.
+     */
+    public int getDimension(TokenScanner scanner) {
+        char[] buffer = scanner.buffer();
+        int start = scanner.tokenStart();
+        int length = scanner.tokenLength();
+        return (readOnly) 
+            ? dictionary.getId(buffer, start, length) 
+            : dictionary.intern(buffer, start, length);
+    }
+
+    /**
+     * Returns the term for the dimension.
+     *
+     * @throws IllegalArgumentException if the dimension has no term
+     */
+    public String getDimensionDescription(int dimension) {
+        if (dimension < 0 || dimension >= dictionary.size())
+            throw new IllegalArgumentException(
+                "invalid dimension: " + dimension);
+        return dictionary.getTerm(dimension);
+    }
+
+    /**
+     * Returns the dictionary that backs this mapping.
+     */
+    public TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<String> keySet() {
+        return dictionary.terms();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int numDimensions() {
+        return dictionary.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+}
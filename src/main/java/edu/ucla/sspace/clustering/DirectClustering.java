@@ -34,6 +34,7 @@ import edu.ucla.sspace.matrix.Matrix;
 import edu.ucla.sspace.matrix.*;
 
 import edu.ucla.sspace.util.ReflectionUtil;
+import edu.ucla.sspace.util.WorkQueue;
 
 import edu.ucla.sspace.vector.*;
 import edu.ucla.sspace.vector.DoubleVector;
@@ -74,6 +75,75 @@ import java.util.Properties;
  *   different objectives.</ol>
  * </li>
  *
+ * <p> As an alternative to the incremental refinement, the {@value
+ * #BATCH_PROPERTY} property selects a batch, spherical K-Means that reassigns
+ * every data point before recomputing the centroids.  The batch mode prunes
+ * most similarity comparisons using the triangle inequality, splits each
+ * assignment pass across threads, and updates centroids using only the
+ * non-zero values of sparse data points.  Each batch solution is then scored
+ * with the {@link CriterionFunction}, so that the best of several repetitions
+ * is still chosen by the same objective.  The batch mode finds a solution in
+ * far fewer similarity computations, but the incremental refinement may reach
+ * a better score for criteria other than {@link I1Function}.
+ *
+ * <p> The repetitions are computed one after another unless the {@value
+ * #CONCURRENT_REPETITIONS_PROPERTY} property is set, in which case they are run
+ * concurrently when the {@link WorkQueue} has more than one thread.  Because
+ * criterion functions are stateful, each concurrent repetition uses a new
+ * instance of the class named by {@value #CRITERIA_PROPERTY}.  When {@code
+ * cluster} is itself called from a {@code WorkQueue} thread, the repetitions
+ * are computed sequentially.  In all cases, the criterion is left set up with
+ * the returned solution, so its {@link CriterionFunction#score() score} may be
+ * read afterwards.
+ *
+ * <p> This class defines the following configurable properties:
+ *
+ * <dl style="margin-left: 1em">
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #CRITERIA_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@code I1Function}
+ *
+ * <dd style="padding-top: .5em">The {@link CriterionFunction} used to refine
+ *      and score each solution. <p>
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #REPEAT_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@value #DEFAULT_REPEATS}
+ *
+ * <dd style="padding-top: .5em">The number of solutions computed, of which
+ *      the best scoring one is returned. <p>
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #SEED_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@code RandomSeed}
+ *
+ * <dd style="padding-top: .5em">The {@link KMeansSeed} used to choose the
+ *      initial centroids. <p>
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #BATCH_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@code false}
+ *
+ * <dd style="padding-top: .5em">If {@code true}, each solution is computed
+ *      with the batch K-Means rather than the incremental refinement. <p>
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #MAX_ITERATIONS_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@value #DEFAULT_MAX_ITERATIONS}
+ *
+ * <dd style="padding-top: .5em">The maximum number of batch iterations in
+ *      each solution. <p>
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #CONCURRENT_REPETITIONS_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@code false}
+ *
+ * <dd style="padding-top: .5em">If {@code true}, the repetitions are computed
+ *      concurrently. <p>
+ *
+ * </dl>
+ *
  * @author Keith Stevens
  */
 public class DirectClustering implements Clustering {
@@ -106,6 +176,26 @@ public class DirectClustering implements Clustering {
     public static final String SEED_PROPERTY =
         PROPERTY_PREFIX + ".seed";
 
+    /**
+     * The property to use the batch K-Means rather than the incremental
+     * refinement of each solution.
+     */
+    public static final String BATCH_PROPERTY =
+        PROPERTY_PREFIX + ".batch";
+
+    /**
+     * The property to set the maximum number of iterations of the batch
+     * K-Means.
+     */
+    public static final String MAX_ITERATIONS_PROPERTY =
+        PROPERTY_PREFIX + ".maxIterations";
+
+    /**
+     * The property to compute the repetitions concurrently.
+     */
+    public static final String CONCURRENT_REPETITIONS_PROPERTY =
+        PROPERTY_PREFIX + ".concurrentRepetitions";
+
     /**
      * The default seed algorithm used.
      */
@@ -123,6 +213,11 @@ public class DirectClustering implements Clustering {
      */
     private static final String DEFAULT_REPEATS = "10";
 
+    /**
+     * The default maximum number of batch iterations.
+     */
+    private static final String DEFAULT_MAX_ITERATIONS = "100";
+
     /**
      * Throws {@link UnsupportedOperationException}.
      */
@@ -149,8 +244,23 @@ public class DirectClustering implements Clustering {
         CriterionFunction criterion = ReflectionUtil.getObjectInstance(
                 properties.getProperty(CRITERIA_PROPERTY, DEFAULT_CRITERION));
 
-        return cluster(matrix, numClusters, numRepetitions,
-                       seedType, criterion);
+        // Concurrent repetitions create their own criterion functions by
+        // class name, which loses nothing here since the criterion was itself
+        // created by name
+        boolean concurrent = Boolean.parseBoolean(
+            properties.getProperty(CONCURRENT_REPETITIONS_PROPERTY));
+
+        if (Boolean.parseBoolean(properties.getProperty(BATCH_PROPERTY))) {
+            int maxIterations = Integer.parseInt(properties.getProperty(
+                        MAX_ITERATIONS_PROPERTY, DEFAULT_MAX_ITERATIONS));
+            checkMaxIterations(maxIterations);
+            return cluster(matrix, numClusters, numRepetitions, seedType, 
+                           criterion, new HamerlyKMeans(matrix), maxIterations,
+                           concurrent);
+        }
+
+        return cluster(matrix, numClusters, numRepetitions, seedType, 
+                       criterion, null, 0, concurrent);
     }
 
     /**
@@ -188,21 +298,119 @@ public class DirectClustering implements Clustering {
                                       int numRepetitions,
                                       KMeansSeed seedType,
                                       CriterionFunction criterion) {
+        return cluster(matrix, numClusters, numRepetitions, seedType, 
+                       criterion, null, 0, false);
+    }
+
+    /**
+     * Clusters {@link matrix} using the batch K-Means with the specified
+     * {@link SeedAlgorithm}, and returns the solution that scores best
+     * according to the {@link CriterionFunction} out of {@code
+     * numRepetitions}.
+     *
+     * @param maxIterations the maximum number of times the centroids are
+     *        recomputed in each repetition
+     */
+    public static Assignments batchCluster(Matrix matrix,
+                                           int numClusters,
+                                           int numRepetitions,
+                                           KMeansSeed seedType,
+                                           CriterionFunction criterion,
+                                           int maxIterations) {
+        checkMaxIterations(maxIterations);
+        return cluster(matrix, numClusters, numRepetitions, seedType, 
+                       criterion, new HamerlyKMeans(matrix), maxIterations,
+                       false);
+    }
+
+    /**
+     * Throws an {@link IllegalArgumentException} if the maximum number of
+     * batch iterations is negative.
+     */
+    private static void checkMaxIterations(int maxIterations) {
+        if (maxIterations < 0)
+            throw new IllegalArgumentException(
+                "The maximum number of iterations must be non-negative: " +
+                maxIterations);
+    }
+
+    /**
+     * Computes {@code numRepetitions} solutions, either with the incremental
+     * refinement if {@code kMeans} is {@code null} or with the batch K-Means
+     * otherwise, and returns the best scoring solution.  If {@code concurrent}
+     * is {@code true}, the solutions may be computed concurrently, each with a
+     * new instance of the criterion's class.
+     */
+    private static Assignments cluster(final Matrix matrix,
+                                       final int numClusters,
+                                       int numRepetitions,
+                                       KMeansSeed seedType,
+                                       CriterionFunction criterion,
+                                       final HamerlyKMeans kMeans,
+                                       final int maxIterations,
+                                       boolean concurrent) {
+        if (numRepetitions < 1)
+            throw new IllegalArgumentException(
+                "Must compute at least one solution: " + numRepetitions);
+
+        WorkQueue workQueue = WorkQueue.getWorkQueue();
         int[] bestAssignment = null;
-        double bestScore = (criterion.isMaximize()) ? 0 : Double.MAX_VALUE;
-        for (int i = 0; i < numRepetitions; ++i) {
-            clusterIteration(matrix, numClusters, seedType, criterion);
-            if (criterion.isMaximize()) {
-                if (criterion.score() > bestScore) {
-                    bestScore = criterion.score();
-                    bestAssignment = criterion.assignments();
-                }
-            } else {
-                if (criterion.score() < bestScore) {
+        // From one of the queue's own threads, the repetitions would be run
+        // sequentially anyway, so run them with the caller's criterion
+        if (!concurrent || numRepetitions == 1 
+                || workQueue.availableThreads() < 2
+                || workQueue.isWorkerThread()) {
+            double bestScore = 0;
+            boolean lastIsBest = true;
+            for (int i = 0; i < numRepetitions; ++i) {
+                DoubleVector[] seeds = 
+                    seedType.chooseSeeds(numClusters, matrix);
+                clusterIteration(matrix, numClusters, seeds, criterion,
+                                 kMeans, maxIterations, true);
+                lastIsBest = bestAssignment == null 
+                    || isBetter(criterion, criterion.score(), bestScore);
+                if (lastIsBest) {
                     bestScore = criterion.score();
                     bestAssignment = criterion.assignments();
                 }
             }
+            // Leave the criterion describing the returned solution
+            if (!lastIsBest)
+                criterion.setup(matrix, bestAssignment, numClusters);
+        }
+        else {
+            // Choose the seeds up front, since seeding algorithms are not
+            // required to be thread-safe, and run each repetition with its
+            // own criterion function.
+            final int[][] solutions = new int[numRepetitions][];
+            final double[] scores = new double[numRepetitions];
+            List<Runnable> tasks = new ArrayList<Runnable>(numRepetitions);
+            for (int i = 0; i < numRepetitions; ++i) {
+                final int repetition = i;
+                final DoubleVector[] seeds = 
+                    seedType.chooseSeeds(numClusters, matrix);
+                final CriterionFunction function = 
+                    ReflectionUtil.<CriterionFunction>getObjectInstance(
+                        criterion.getClass().getName());
+                tasks.add(new Runnable() {
+                        public void run() {
+                            clusterIteration(matrix, numClusters, seeds,
+                                             function, kMeans, maxIterations,
+                                             false);
+                            solutions[repetition] = function.assignments();
+                            scores[repetition] = function.score();
+                        }
+                    });
+            }
+            workQueue.run(tasks);
+
+            int best = 0;
+            for (int i = 1; i < numRepetitions; ++i) {
+                if (isBetter(criterion, scores[i], scores[best]))
+                    best = i;
+            }
+            bestAssignment = solutions[best];
+            criterion.setup(matrix, bestAssignment, numClusters);
         }
 
         // Convert the array of assignments to an Assignments object.
@@ -214,13 +422,36 @@ public class DirectClustering implements Clustering {
     }
 
     /**
-     * Performs one iteration of Direct Clustering over the data set.
+     * Returns {@code true} if {@code score} is better than {@code bestScore}
+     * according to the criterion function.
+     */
+    private static boolean isBetter(CriterionFunction criterion,
+                                    double score, double bestScore) {
+        return (criterion.isMaximize()) 
+            ? score > bestScore
+            : score < bestScore;
+    }
+
+    /**
+     * Computes one solution from the seeds, leaving {@code criterion} set up
+     * with the solution.  If {@code kMeans} is not {@code null}, the solution
+     * is computed with the batch K-Means, whose assignment passes may use the
+     * {@link WorkQueue} if {@code parallel} is {@code true}.
      */
     private static void clusterIteration(Matrix matrix,
                                          int numClusters,
-                                         KMeansSeed seedType,
-                                         CriterionFunction criterion) {
-        DoubleVector[] centers = seedType.chooseSeeds(numClusters, matrix);
+                                         DoubleVector[] centers,
+                                         CriterionFunction criterion,
+                                         HamerlyKMeans kMeans,
+                                         int maxIterations,
+                                         boolean parallel) {
+        if (kMeans != null) {
+            int[] assignments = (numClusters == 1)
+                ? new int[matrix.rows()]
+                : kMeans.cluster(centers, maxIterations, parallel);
+            criterion.setup(matrix, assignments, numClusters);
+            return;
+        }
 
         // Compute the initial set of assignments for each data point based on
         // the initial assignments.
@@ -230,7 +461,6 @@ public class DirectClustering implements Clustering {
         // assigned to the first cluster.  This is just a special case that only
         // comes up when comparing other solutions to the non-solution.
         if (numClusters != 1) {
-            int nc = 0;
             for (int i = 0; i < matrix.rows(); ++i) {
 
                 DoubleVector vector = matrix.getRowVector(i);
@@ -238,7 +468,6 @@ public class DirectClustering implements Clustering {
                 for (int c = 0; c < numClusters; ++c) {
                     double similarity = Similarity.cosineSimilarity(
                             centers[c], vector);
-                    nc++;
                     if (similarity >= bestSimilarity) {
                         bestSimilarity = similarity;
                         initialAssignments[i] = c;
@@ -28,6 +28,7 @@ import edu.ucla.sspace.common.Similarity;
 import edu.ucla.sspace.matrix.Matrices;
 import edu.ucla.sspace.matrix.Matrix;
 
+import edu.ucla.sspace.similarity.AbstractSimilarityFunction;
 import edu.ucla.sspace.similarity.SimilarityFunction;
 
 import edu.ucla.sspace.util.ReflectionUtil;
@@ -128,7 +129,7 @@ public class FastStreamingKMeans {
      * Shindler et al (2011) paper.
      */
     public static final SimilarityFunction DEFAULT_SIMILARITY_FUNCTION =
-        new SimilarityFunction() {
+        new AbstractSimilarityFunction() {
             public void setParams(double... arguments) { }
             public boolean isSymmetric() { return true; }
             public double sim(IntegerVector v1, IntegerVector v2) {
@@ -0,0 +1,536 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.clustering;
+
+import edu.ucla.sspace.matrix.Matrix;
+
+import edu.ucla.sspace.util.WorkQueue;
+
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.SparseDoubleVector;
+import edu.ucla.sspace.vector.SparseVector;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * A batch spherical K-Means engine that uses Hamerly's bounds on the triangle
+ * inequality to avoid most of the point-to-centroid comparisons made by
+ * Lloyd's algorithm.  Each row is compared to centroids by cosine similarity,
+ * which is equivalent to comparing unit-length rows to unit-length centroids
+ * by their Euclidean distance, {@code sqrt(2 - 2 cos)}.  Because that distance
+ * is a metric, each row keeps an upper bound on the distance to its own
+ * centroid and a lower bound on the distance to every other centroid.  A row
+ * whose upper bound is below both its lower bound and half the distance from
+ * its centroid to the next nearest centroid cannot change clusters and is
+ * skipped without computing any similarities.  See G. Hamerly, "Making k-means
+ * even faster," in <i>Proceedings of the SIAM International Conference on Data
+ * Mining</i>, 2010.
+ *
+ * <p> The rows of the matrix are copied once into compact, unit-length arrays
+ * that keep only the non-zero values of sparse rows, and the same instance may
+ * be used for any number of restarts, concurrently.  Centroids are kept as
+ * dense sums of their rows, which are updated only for the non-zero values of
+ * rows that change clusters.
+ *
+ * @see DirectClustering
+ */
+final class HamerlyKMeans {
+
+    /**
+     * The minimum number of rows before an assignment pass is split across
+     * threads.
+     */
+    private static final int PARALLEL_THRESHOLD = 1024;
+
+    /**
+     * The number of columns in the data
+     */
+    private final int columns;
+
+    /**
+     * The column of each value in a row, or {@code null} for dense rows whose
+     * values cover every column.
+     */
+    private final int[][] indices;
+
+    /**
+     * The values of each row, scaled to unit length, or {@code null} if the
+     * row has no non-zero values.
+     */
+    private final double[][] values;
+
+    /**
+     * Copies the rows of {@code m} into their unit-length, compact form.
+     */
+    public HamerlyKMeans(Matrix m) {
+        int rows = m.rows();
+        columns = m.columns();
+        indices = new int[rows][];
+        values = new double[rows][];
+        for (int r = 0; r < rows; ++r) {
+            DoubleVector v = m.getRowVector(r);
+            int[] nz = null;
+            double[] vals;
+            if (v instanceof SparseVector) {
+                nz = ((SparseVector)v).getNonZeroIndices();
+                vals = new double[nz.length];
+                for (int i = 0; i < nz.length; ++i)
+                    vals[i] = v.get(nz[i]);
+            }
+            else {
+                vals = new double[columns];
+                for (int i = 0; i < columns; ++i)
+                    vals[i] = v.get(i);
+            }
+            double norm = 0;
+            for (double d : vals)
+                norm += d * d;
+            if (norm == 0)
+                continue;
+            norm = Math.sqrt(norm);
+            for (int i = 0; i < vals.length; ++i)
+                vals[i] /= norm;
+            indices[r] = nz;
+            values[r] = vals;
+        }
+    }
+
+    /**
+     * Returns the number of rows being clustered.
+     */
+    public int rows() {
+        return values.length;
+    }
+
+    /**
+     * Clusters the rows, starting from the provided seeds, until no row
+     * changes its cluster or the maximum number of iterations has been
+     * reached.  Rows with no non-zero values are always assigned to the first
+     * cluster.
+     *
+     * @param seeds the initial centroids, one for each cluster
+     * @param maxIterations the maximum number of times the centroids are
+     *        recomputed
+     * @param parallel whether each assignment pass may be split across the
+     *        threads of the {@link WorkQueue}.  This should be {@code false}
+     *        when the call is made from a task that is already running on
+     *        the {@code WorkQueue}.
+     *
+     * @return the cluster assignment of each row
+     */
+    public int[] cluster(DoubleVector[] seeds, int maxIterations, 
+                         boolean parallel) {
+        return new Run(seeds, true).cluster(maxIterations, parallel);
+    }
+
+    /**
+     * Clusters the rows without pruning any comparisons, which computes the
+     * same assignments as {@link #cluster(DoubleVector[], int, boolean)
+     * cluster} and exists to test the bounds.
+     */
+    int[] clusterExhaustively(DoubleVector[] seeds, int maxIterations) {
+        return new Run(seeds, false).cluster(maxIterations, false);
+    }
+
+    /**
+     * Returns the dot product of row {@code r} and the dense vector.
+     */
+    private double dot(int r, double[] dense) {
+        double[] vals = values[r];
+        int[] nz = indices[r];
+        double dot = 0;
+        if (nz == null) {
+            for (int i = 0; i < vals.length; ++i)
+                dot += vals[i] * dense[i];
+        }
+        else {
+            for (int i = 0; i < nz.length; ++i)
+                dot += vals[i] * dense[nz[i]];
+        }
+        return dot;
+    }
+
+    /**
+     * Adds {@code scale} times row {@code r} to the dense vector.
+     */
+    private void add(int r, double[] dense, double scale) {
+        double[] vals = values[r];
+        int[] nz = indices[r];
+        if (nz == null) {
+            for (int i = 0; i < vals.length; ++i)
+                dense[i] += scale * vals[i];
+        }
+        else {
+            for (int i = 0; i < nz.length; ++i)
+                dense[nz[i]] += scale * vals[i];
+        }
+    }
+
+    /**
+     * Returns the Euclidean distance between two unit vectors whose dot
+     * product is {@code dot}.
+     */
+    private static double distance(double dot) {
+        return Math.sqrt(Math.max(0, 2 - 2 * dot));
+    }
+
+    /**
+     * The state of a single clustering run from one set of seeds.
+     */
+    private class Run {
+
+        /**
+         * The number of clusters
+         */
+        private final int k;
+
+        /**
+         * Whether rows may be skipped using their bounds
+         */
+        private final boolean prune;
+
+        /**
+         * The sum of the unit-length rows in each cluster
+         */
+        private final double[][] sums;
+
+        /**
+         * The number of rows with non-zero values in each cluster
+         */
+        private final int[] sizes;
+
+        /**
+         * The unit-length centroid of each cluster
+         */
+        private final double[][] centroids;
+
+        /**
+         * The distance between each pair of centroids
+         */
+        private final double[][] centroidDistances;
+
+        /**
+         * Half the distance from each centroid to its nearest other centroid
+         */
+        private final double[] halfNearest;
+
+        /**
+         * The cluster assigned to each row
+         */
+        private final int[] assignments;
+
+        /**
+         * An upper bound on the distance from each row to its centroid
+         */
+        private final double[] upper;
+
+        /**
+         * A lower bound on the distance from each row to every centroid other
+         * than its own
+         */
+        private final double[] lower;
+
+        /**
+         * Creates the state for clustering from the seeds.
+         */
+        public Run(DoubleVector[] seeds, boolean prune) {
+            this.prune = prune;
+            k = seeds.length;
+            int rows = values.length;
+            sums = new double[k][columns];
+            sizes = new int[k];
+            centroids = new double[k][];
+            centroidDistances = new double[k][k];
+            halfNearest = new double[k];
+            assignments = new int[rows];
+            upper = new double[rows];
+            lower = new double[rows];
+            for (int c = 0; c < k; ++c) 
+                centroids[c] = unit(seeds[c]);
+            for (int c = 0; c < k; ++c) {
+                for (int d = c + 1; d < k; ++d) {
+                    centroidDistances[c][d] = distance(c, d);
+                    centroidDistances[d][c] = centroidDistances[c][d];
+                }
+            }
+        }
+
+        /**
+         * Returns a dense, unit-length copy of the seed, or {@code null} if
+         * the seed has no non-zero values.  Such a seed has no direction, so
+         * its cluster is never assigned any rows.
+         */
+        private double[] unit(DoubleVector seed) {
+            double[] centroid = new double[columns];
+            if (seed instanceof SparseDoubleVector) {
+                for (int i : ((SparseDoubleVector)seed).getNonZeroIndices())
+                    centroid[i] = seed.get(i);
+            }
+            else {
+                for (int i = 0; i < columns; ++i)
+                    centroid[i] = seed.get(i);
+            }
+            return (normalize(centroid)) ? centroid : null;
+        }
+
+        /**
+         * Runs the iterations and returns the final assignments.
+         */
+        public int[] cluster(int maxIterations, boolean parallel) {
+            int rows = values.length;
+            WorkQueue workQueue = WorkQueue.getWorkQueue();
+            parallel = parallel && rows >= PARALLEL_THRESHOLD
+                && workQueue.availableThreads() > 1
+                && !workQueue.isWorkerThread();
+
+            // The first pass compares every row to every seed
+            Arrays.fill(upper, Double.POSITIVE_INFINITY);
+            assign(parallel);
+            for (int r = 0; r < rows; ++r) {
+                if (values[r] != null) {
+                    add(r, sums[assignments[r]], 1);
+                    sizes[assignments[r]]++;
+                }
+            }
+
+            boolean[] changedClusters = new boolean[k];
+            Arrays.fill(changedClusters, true);
+            double[] moved = new double[k];
+            for (int iter = 0; iter < maxIterations; ++iter) {
+                moveCentroids(changedClusters, moved);
+                updateBounds(moved);
+                TIntArrayList changed = assign(parallel);
+                if (changed.isEmpty())
+                    break;
+                // Each change records the row followed by its old cluster
+                Arrays.fill(changedClusters, false);
+                for (int i = 0; i < changed.size(); i += 2) {
+                    int r = changed.get(i);
+                    int from = changed.get(i + 1);
+                    int to = assignments[r];
+                    add(r, sums[from], -1);
+                    add(r, sums[to], 1);
+                    sizes[from]--;
+                    sizes[to]++;
+                    changedClusters[from] = true;
+                    changedClusters[to] = true;
+                }
+            }
+            return assignments;
+        }
+
+        /**
+         * Recomputes the centroids of the clusters whose rows changed, storing
+         * how far each centroid moved, and updates the distances between the
+         * centroids.
+         */
+        private void moveCentroids(boolean[] changed, double[] moved) {
+            for (int c = 0; c < k; ++c) {
+                moved[c] = 0;
+                // Empty clusters keep their previous centroid
+                if (!changed[c] || sizes[c] == 0)
+                    continue;
+                double[] centroid = sums[c].clone();
+                if (!normalize(centroid))
+                    continue;
+                moved[c] = HamerlyKMeans.distance(centroid, centroids[c]);
+                centroids[c] = centroid;
+            }
+
+            // Only the distances involving a centroid that moved can change
+            for (int c = 0; c < k; ++c) {
+                for (int d = c + 1; d < k; ++d) {
+                    if (moved[c] > 0 || moved[d] > 0) {
+                        centroidDistances[c][d] = distance(c, d);
+                        centroidDistances[d][c] = centroidDistances[c][d];
+                    }
+                }
+            }
+            for (int c = 0; c < k; ++c) {
+                double nearest = Double.POSITIVE_INFINITY;
+                for (int d = 0; d < k; ++d) {
+                    if (d != c && centroidDistances[c][d] < nearest)
+                        nearest = centroidDistances[c][d];
+                }
+                halfNearest[c] = nearest / 2;
+            }
+        }
+
+        /**
+         * Returns the distance between row {@code r} and the centroid of
+         * cluster {@code c}, which is infinite if the centroid has no
+         * direction.
+         */
+        private double rowDistance(int r, int c) {
+            return (centroids[c] == null)
+                ? Double.POSITIVE_INFINITY
+                : HamerlyKMeans.distance(dot(r, centroids[c]));
+        }
+
+        /**
+         * Returns the distance between the centroids of two clusters, which is
+         * infinite if either centroid has no direction.
+         */
+        private double distance(int c, int d) {
+            return (centroids[c] == null || centroids[d] == null)
+                ? Double.POSITIVE_INFINITY
+                : HamerlyKMeans.distance(centroids[c], centroids[d]);
+        }
+
+        /**
+         * Loosens the bounds of each row by how far the centroids moved.
+         */
+        private void updateBounds(double[] moved) {
+            // Find the two largest movements so that a row's lower bound is
+            // only reduced by the movement of the other centroids
+            int farthest = 0;
+            double first = 0;
+            double second = 0;
+            for (int c = 0; c < k; ++c) {
+                if (moved[c] > first) {
+                    second = first;
+                    first = moved[c];
+                    farthest = c;
+                }
+                else if (moved[c] > second)
+                    second = moved[c];
+            }
+            for (int r = 0; r < upper.length; ++r) {
+                int a = assignments[r];
+                upper[r] += moved[a];
+                lower[r] -= (a == farthest) ? second : first;
+            }
+        }
+
+        /**
+         * Assigns each row to its nearest centroid, returning the rows that
+         * changed clusters, each followed by its previous cluster.
+         */
+        private TIntArrayList assign(boolean parallel) {
+            final int rows = values.length;
+            if (!parallel) {
+                TIntArrayList changed = new TIntArrayList();
+                assign(0, rows, changed);
+                return changed;
+            }
+
+            WorkQueue workQueue = WorkQueue.getWorkQueue();
+            int numTasks = workQueue.availableThreads() * 4;
+            final int blockSize = (rows + numTasks - 1) / numTasks;
+            final TIntArrayList[] changes = new TIntArrayList[numTasks];
+            List<Runnable> tasks = new ArrayList<Runnable>(numTasks);
+            for (int t = 0; t < numTasks; ++t) {
+                final int task = t;
+                changes[t] = new TIntArrayList();
+                tasks.add(new Runnable() {
+                        public void run() {
+                            int start = task * blockSize;
+                            assign(start, Math.min(rows, start + blockSize),
+                                   changes[task]);
+                        }
+                    });
+            }
+            workQueue.run(tasks);
+            TIntArrayList changed = changes[0];
+            for (int t = 1; t < numTasks; ++t)
+                changed.addAll(changes[t]);
+            return changed;
+        }
+
+        /**
+         * Assigns the rows in {@code [start, end)} to their nearest centroid.
+         */
+        private void assign(int start, int end, TIntArrayList changed) {
+            for (int r = start; r < end; ++r) {
+                if (values[r] == null)
+                    continue;
+                int current = assignments[r];
+                if (prune) {
+                    double bound = Math.max(halfNearest[current], lower[r]);
+                    if (upper[r] <= bound)
+                        continue;
+                    // Tighten the upper bound and test again before comparing
+                    // the row to every centroid
+                    upper[r] = rowDistance(r, current);
+                    if (upper[r] <= bound)
+                        continue;
+                }
+
+                int best = current;
+                double bestDist = rowDistance(r, current);
+                double secondDist = Double.POSITIVE_INFINITY;
+                for (int c = 0; c < k; ++c) {
+                    if (c == current)
+                        continue;
+                    double dist = rowDistance(r, c);
+                    if (dist < bestDist) {
+                        secondDist = bestDist;
+                        bestDist = dist;
+                        best = c;
+                    }
+                    else if (dist < secondDist)
+                        secondDist = dist;
+                }
+                upper[r] = bestDist;
+                lower[r] = secondDist;
+                if (best != current) {
+                    assignments[r] = best;
+                    changed.add(r);
+                    changed.add(current);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the Euclidean distance between two dense vectors.
+     */
+    private static double distance(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; ++i) {
+            double diff = a[i] - b[i];
+            sum += diff * diff;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Scales the vector to unit length in place, returning {@code false} if
+     * it has no non-zero values.
+     */
+    private static boolean normalize(double[] v) {
+        double norm = 0;
+        for (double d : v)
+            norm += d * d;
+        if (norm == 0)
+            return false;
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < v.length; ++i)
+            v[i] /= norm;
+        return true;
+    }
+}
@@ -94,12 +94,20 @@ import java.util.logging.Logger;
  * The resulting {@link edu.ucla.sspace.util.MultiMap} {@code clusterToRows}
  * contains the mapping from each cluster to the rows that are a part of it.
  *
- * <p><i>Implementation Note:</i> The current version runs in O(n<sup>3</sup>)
- * worst case time for the number of rows in the matrix.  While O(n<sup>2</sup>
- * * log(n)) methods exist, these require storing similarity comparisons in a
- * priority queue, which has a substantially higher memory overhead.  Therefore,
- * this implementation has opted for a more expensive running time in order to
- * be able to process larger matrices.
+ * <p><i>Implementation Note:</i> Clustering with {@link
+ * ClusterLinkage#SINGLE_LINKAGE SINGLE}, {@link ClusterLinkage#COMPLETE_LINKAGE
+ * COMPLETE} or {@link ClusterLinkage#MEAN_LINKAGE MEAN} linkage builds the
+ * dendrogram with nearest-neighbor chains, which runs in O(n<sup>2</sup>) time
+ * for the number of rows in the matrix.  By default, the pair-wise row
+ * similarities are stored in an array of n<sup>2</sup>/2 {@code double} values
+ * and are updated in place as clusters merge.  For larger inputs, the {@value
+ * #LAZY_SIMILARITY_PROPERTY} property computes similarities on demand in
+ * parallel blocks using O(n) additional memory for single linkage, or memory
+ * proportional to the size of the rows for mean linkage with cosine
+ * similarity.  The estimated memory is logged before clustering starts.  {@link
+ * ClusterLinkage#MEDIAN_LINKAGE MEDIAN} linkage cannot be updated
+ * incrementally and still uses an O(n<sup>3</sup>) search for the most similar
+ * pair of clusters.
  *
  * <p> When using the {@link Clustering#cluster(Matrix,Properties)} interface,
  * this class supports the following properties for controlling the clustering.
@@ -142,6 +150,18 @@ import java.util.logging.Logger;
  *      agglomeratively merging clusters.  Both properties cannot be specified
  *      at the same time. </p>
  *
+ * <dt> <i>Property:</i> <code><b>{@value #LAZY_SIMILARITY_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@code false}
+ *
+ * <dd style="padding-top: .5em"> If {@code true}, row similarities are computed
+ *      on demand instead of being stored for every pair of rows.  This mode is
+ *      supported for {@link ClusterLinkage#SINGLE_LINKAGE SINGLE_LINKAGE}, and
+ *      for {@link ClusterLinkage#MEAN_LINKAGE MEAN_LINKAGE} with {@link
+ *      SimType#COSINE COSINE} similarity.  It is used automatically for these
+ *      settings if there are too many rows to store all of their
+ *      similarities. </p>
+ *
  * </dl>
  *
  * @author David Jurgens
@@ -210,6 +230,13 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
     public static final String NUM_CLUSTERS_PROPERTY =
         PROPERTY_PREFIX + ".numClusters";
 
+    /**
+     * The property for specifying whether similarities should be computed on
+     * demand rather than stored.
+     */
+    public static final String LAZY_SIMILARITY_PROPERTY =
+        PROPERTY_PREFIX + ".lazySimilarity";
+
     /**
      * The default similarity threshold to use.
      */
@@ -272,8 +299,11 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
         else if (minSimProp != null) {
             try {
                 double clusterSimThresh = Double.parseDouble(minSimProp);
+                boolean lazy = Boolean.parseBoolean(
+                    props.getProperty(LAZY_SIMILARITY_PROPERTY));
                 return toAssignments(cluster(matrix, clusterSimThresh, 
-                                             linkage, simFunc, -1), matrix, -1);
+                                             linkage, simFunc, -1, lazy), 
+                                     matrix, -1);
             } catch (NumberFormatException nfe) {
                 throw new IllegalArgumentException(
                     "Cluster similarity threshold was not a valid double: " +
@@ -304,8 +334,10 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
         SimType similarityFunction = SimType.valueOf(props.getProperty(
                     SIMILARITY_FUNCTION_PROPERTY,
                     DEFAULT_SIMILARITY_FUNCTION_PROPERTY));
+        boolean lazy = Boolean.parseBoolean(
+            props.getProperty(LAZY_SIMILARITY_PROPERTY));
         return toAssignments(cluster(m, clusterSimilarityThreshold, linkage,
-                                     similarityFunction, numClusters),
+                                     similarityFunction, numClusters, lazy),
                              m, numClusters);
     }
 
@@ -357,7 +389,59 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
     }
 
     /**
-     * 
+     * Clusters the rows of the matrix with the nearest-neighbor chain engine
+     * if it supports the linkage, or with {@link #clusterGreedily(Matrix,
+     * double,ClusterLinkage,SimType,int) clusterGreedily} otherwise.  The
+     * parameters are the same as for {@code clusterGreedily}.
+     *
+     * @param lazy {@code true} if row similarities should be computed on
+     *        demand rather than stored
+     */
+    private static int[] cluster(Matrix m, double clusterSimilarityThreshold,
+                                 ClusterLinkage linkage, 
+                                 SimType similarityFunction,
+                                 int maxNumberOfClusters, boolean lazy) {
+        if (ReducibleLinkageClustering.supports(linkage)) {
+            int[] assignments = ReducibleLinkageClustering.cluster(
+                m, clusterSimilarityThreshold, linkage, similarityFunction, 
+                maxNumberOfClusters, lazy);
+            LOGGER.info("total number of clusters: " + 
+                        (max(assignments) + 1));
+            return assignments;
+        }
+        if (lazy)
+            throw new IllegalArgumentException(
+                "Lazy similarities are not supported for " + linkage);
+        return clusterGreedily(m, clusterSimilarityThreshold, linkage,
+                               similarityFunction, maxNumberOfClusters);
+    }
+
+    /**
+     * Clusters the rows of the matrix with the nearest-neighbor chain engine
+     * where possible, storing all of the pair-wise similarities.
+     */
+    private static int[] cluster(Matrix m, double clusterSimilarityThreshold,
+                                 ClusterLinkage linkage, 
+                                 SimType similarityFunction,
+                                 int maxNumberOfClusters) {
+        return cluster(m, clusterSimilarityThreshold, linkage, 
+                       similarityFunction, maxNumberOfClusters, false);
+    }
+
+    /**
+     * Returns the largest value in the array, or {@code -1} if it is empty.
+     */
+    private static int max(int[] values) {
+        int max = -1;
+        for (int v : values)
+            max = Math.max(max, v);
+        return max;
+    }
+
+    /**
+     * Clusters the rows of the matrix by repeatedly searching for and merging
+     * the most similar pair of clusters.  This method supports every linkage
+     * but requires O(n<sup>3</sup>) time.
      *
      * @param m a matrix whose rows are to be clustered
      * @param clusterSimilarityThreshold the optional parameter for specifying
@@ -378,7 +462,7 @@ public class HierarchicalAgglomerativeClustering implements Clustering {
      *         the cluster number to which that row was assigned.  Cluster
      *         numbers will start at 0 and increase.
      */
-    private static int[] cluster(Matrix m, double clusterSimilarityThreshold,
+    static int[] clusterGreedily(Matrix m, double clusterSimilarityThreshold,
                                  ClusterLinkage linkage, 
                                  SimType similarityFunction,
                                  int maxNumberOfClusters) {
@@ -0,0 +1,832 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.clustering;
+
+import edu.ucla.sspace.clustering.HierarchicalAgglomerativeClustering.ClusterLinkage;
+
+import edu.ucla.sspace.common.Similarity;
+import edu.ucla.sspace.common.Similarity.SimType;
+
+import edu.ucla.sspace.matrix.Matrix;
+
+import edu.ucla.sspace.util.WorkQueue;
+
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.SparseHashDoubleVector;
+import edu.ucla.sspace.vector.SparseVector;
+import edu.ucla.sspace.vector.VectorMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import java.util.logging.Logger;
+
+
+/**
+ * An agglomerative clustering engine for the linkages whose cluster
+ * similarity is <i>reducible</i>, i.e., merging two clusters never makes the
+ * result more similar to a third cluster than either of the two were.  For
+ * these linkages ({@link ClusterLinkage#SINGLE_LINKAGE SINGLE}, {@link
+ * ClusterLinkage#COMPLETE_LINKAGE COMPLETE} and {@link
+ * ClusterLinkage#MEAN_LINKAGE MEAN}), the full dendrogram may be built with
+ * <a href="http://en.wikipedia.org/wiki/Nearest-neighbor_chain_algorithm">nearest-neighbor
+ * chains</a>, which merge reciprocal nearest neighbors as soon as they are
+ * found rather than searching for the globally most similar pair before each
+ * merge.  The dendrogram is then cut at the requested number of clusters or
+ * similarity threshold, which gives the same partition as greedily merging the
+ * most similar pair.
+ *
+ * <p> Three representations of the cluster similarities are supported:
+ *
+ * <ul>
+ *
+ * <li> By default, the similarity of every pair of rows is computed once, in
+ *      parallel, into a condensed {@code double} array holding only the upper
+ *      triangle.  Merges update the similarities in place using the
+ *      Lance-Williams recurrences, so clustering takes O(n<sup>2</sup>) time
+ *      and 4n<sup>2</sup> bytes.
+ *
+ * <li> In the lazy mode with {@link ClusterLinkage#SINGLE_LINKAGE
+ *      SINGLE_LINKAGE}, the dendrogram is the maximum spanning tree of the
+ *      similarity graph, which is found with Prim's algorithm while computing
+ *      each row's similarities on demand.  Only O(n) memory is required.
+ *
+ * <li> In the lazy mode with {@link ClusterLinkage#MEAN_LINKAGE MEAN_LINKAGE}
+ *      and {@link SimType#COSINE COSINE} similarity, each cluster is
+ *      represented by the sum of its rows' unit vectors.  The mean pair-wise
+ *      cosine similarity of two clusters is the dot product of their sums
+ *      divided by the product of their sizes, so cluster similarities are
+ *      exact and are computed on demand from the sums.
+ *
+ * </ul>
+ *
+ * In both lazy modes, the similarities for a row or cluster are computed in
+ * parallel blocks.  An estimate of the memory required is logged before
+ * clustering begins.
+ *
+ * @author David Jurgens
+ */
+final class ReducibleLinkageClustering {
+
+    /**
+     * The logger to which clustering status updates will be written.
+     */
+    private static final Logger LOGGER =
+        Logger.getLogger(ReducibleLinkageClustering.class.getName());
+
+    /**
+     * The largest number of pair-wise similarities that can be stored in a
+     * single array.
+     */
+    static final long MAX_STORED_SIMILARITIES = Integer.MAX_VALUE - 8;
+
+    /**
+     * The minimum number of similarities to compute before the work is split
+     * into parallel blocks.
+     */
+    private static final int PARALLEL_THRESHOLD = 512;
+
+    /**
+     * Uninstantiable
+     */
+    private ReducibleLinkageClustering() { }
+
+    /**
+     * Returns {@code true} if this engine supports the linkage.
+     */
+    static boolean supports(ClusterLinkage linkage) {
+        return linkage == ClusterLinkage.SINGLE_LINKAGE
+            || linkage == ClusterLinkage.COMPLETE_LINKAGE
+            || linkage == ClusterLinkage.MEAN_LINKAGE;
+    }
+
+    /**
+     * Returns {@code true} if this engine can cluster with the linkage and
+     * similarity function without storing the pair-wise similarities.
+     */
+    static boolean supportsLazy(ClusterLinkage linkage, SimType simType) {
+        return linkage == ClusterLinkage.SINGLE_LINKAGE
+            || (linkage == ClusterLinkage.MEAN_LINKAGE 
+                && simType == SimType.COSINE);
+    }
+
+    /**
+     * Clusters the rows of the matrix, stopping at the specified number of
+     * clusters or, if {@code maxNumberOfClusters} is non-positive, once the
+     * most similar clusters have a similarity below {@code
+     * clusterSimilarityThreshold}.
+     *
+     * @param lazy {@code true} if the similarities should be computed on
+     *        demand rather than stored.  If the stored similarities would not
+     *        fit in a single array, the lazy mode is used if supported.
+     *
+     * @return the cluster assignment of each row, numbered from 0
+     *
+     * @throws IllegalArgumentException if the linkage is unsupported, or if
+     *         the lazy mode is required but is not supported for the linkage
+     *         and similarity function
+     */
+    static int[] cluster(Matrix m, double clusterSimilarityThreshold,
+                         ClusterLinkage linkage, SimType simType,
+                         int maxNumberOfClusters, boolean lazy) {
+        return buildDendrogram(m, linkage, simType, lazy)
+            .cut(maxNumberOfClusters, clusterSimilarityThreshold);
+    }
+
+    /**
+     * Builds the complete dendrogram for the rows of the matrix.
+     *
+     * @see #cluster(Matrix,double,ClusterLinkage,SimType,int,boolean)
+     */
+    static Dendrogram buildDendrogram(Matrix m, ClusterLinkage linkage, 
+                                      SimType simType, boolean lazy) {
+        if (!supports(linkage))
+            throw new IllegalArgumentException(
+                "Unsupported linkage: " + linkage);
+        int rows = m.rows();
+        long pairs = (long)rows * (rows - 1) / 2;
+        if (!lazy && pairs > MAX_STORED_SIMILARITIES) {
+            if (!supportsLazy(linkage, simType))
+                throw new IllegalArgumentException(
+                    "Too many rows (" + rows + ") to store all pair-wise " +
+                    "similarities, and " + linkage + " with " + simType + 
+                    " similarity cannot be computed lazily");
+            LOGGER.info("Too many rows to store all pair-wise similarities; " +
+                        "computing similarities lazily");
+            lazy = true;
+        }
+        if (lazy && !supportsLazy(linkage, simType))
+            throw new IllegalArgumentException(
+                "Lazy similarities are only supported for SINGLE_LINKAGE, " +
+                "or MEAN_LINKAGE with COSINE similarity");
+
+        DoubleVector[] vectors = new DoubleVector[rows];
+        for (int r = 0; r < rows; ++r)
+            vectors[r] = m.getRowVector(r);
+        LOGGER.info(String.format(
+            "Clustering %d rows with %s using %s similarities; estimated " +
+            "memory required: %.1f MB", rows, linkage, 
+            (lazy) ? "lazily computed" : "stored",
+            estimateMemory(vectors, linkage, lazy) / (1024d * 1024d)));
+
+        if (lazy && linkage == ClusterLinkage.SINGLE_LINKAGE)
+            return maximumSpanningTree(vectors, simType);
+        ClusterSimilarities sims = (lazy)
+            ? new CentroidSimilarities(vectors)
+            : new StoredSimilarities(vectors, simType, linkage);
+        return nearestNeighborChain(sims, rows);
+    }
+
+    /**
+     * Returns the approximate number of bytes needed to cluster the vectors,
+     * excluding the vectors themselves.
+     */
+    static long estimateMemory(DoubleVector[] vectors, ClusterLinkage linkage,
+                               boolean lazy) {
+        long rows = vectors.length;
+        // The active cluster list, the chain, the sizes and the dendrogram
+        long bookkeeping = rows * 32;
+        if (!lazy)
+            return bookkeeping + 8 * (rows * (rows - 1) / 2);
+        if (linkage == ClusterLinkage.SINGLE_LINKAGE)
+            return bookkeeping + rows * 13;
+        // The cluster sums are initially copies of the rows and grow as
+        // clusters merge.  Sparse values are stored in hash tables, which need
+        // roughly twice the space of the values.
+        long values = 0;
+        for (DoubleVector v : vectors) {
+            values += (v instanceof SparseVector)
+                ? 2 * ((SparseVector)v).getNonZeroIndices().length
+                : v.length();
+        }
+        return bookkeeping + 8 * values;
+    }
+
+    /**
+     * Builds the dendrogram by repeatedly following the chain of nearest
+     * neighbors from an arbitrary cluster until two clusters are each other's
+     * nearest neighbor, and then merging them.
+     */
+    static Dendrogram nearestNeighborChain(ClusterSimilarities sims, int rows) {
+        Dendrogram dendrogram = new Dendrogram(rows);
+        ActiveClusters active = new ActiveClusters(rows);
+        int[] chain = new int[rows];
+        int depth = 0;
+        while (active.size() > 1) {
+            if (depth == 0)
+                chain[depth++] = active.get(0);
+            int a = chain[depth - 1];
+            int best = sims.nearest(a, active);
+            double bestSim = sims.get(a, best);
+            // Prefer the previous cluster in the chain on ties, which
+            // guarantees the chain ends in a reciprocal pair
+            if (depth > 1) {
+                int prev = chain[depth - 2];
+                double prevSim = sims.get(a, prev);
+                if (prevSim >= bestSim) {
+                    depth -= 2;
+                    int kept = Math.min(a, prev);
+                    int removed = Math.max(a, prev);
+                    active.remove(removed);
+                    sims.merge(kept, removed, active);
+                    dendrogram.add(kept, removed, prevSim);
+                    continue;
+                }
+            }
+            chain[depth++] = best;
+        }
+        return dendrogram;
+    }
+
+    /**
+     * Builds the single-linkage dendrogram as the maximum spanning tree of the
+     * complete similarity graph using Prim's algorithm, computing the
+     * similarities of each newly added row to the remaining rows on demand.
+     */
+    static Dendrogram maximumSpanningTree(final DoubleVector[] vectors,
+                                          final SimType simType) {
+        int rows = vectors.length;
+        Dendrogram dendrogram = new Dendrogram(rows);
+        if (rows == 0)
+            return dendrogram;
+        final double[] best = new double[rows];
+        final int[] parent = new int[rows];
+        Arrays.fill(best, Double.NEGATIVE_INFINITY);
+        final ActiveClusters remaining = new ActiveClusters(rows);
+        int cur = 0;
+        remaining.remove(cur);
+        while (remaining.size() > 0) {
+            final int added = cur;
+            // Update each remaining row's highest similarity to the tree and
+            // find the row that is now most similar
+            int next = argMax(remaining, new BlockScorer() {
+                    public double score(int row) {
+                        double sim = similarity(
+                            simType, vectors[Math.min(added, row)], 
+                            vectors[Math.max(added, row)]);
+                        if (sim > best[row]) {
+                            best[row] = sim;
+                            parent[row] = added;
+                        }
+                        return best[row];
+                    }
+                });
+            remaining.remove(next);
+            dendrogram.add(Math.min(parent[next], next), 
+                           Math.max(parent[next], next), best[next]);
+            cur = next;
+        }
+        return dendrogram;
+    }
+
+    /**
+     * Returns the element of {@code active} with the highest score, preferring
+     * the earliest element on ties.  The scores are computed in parallel
+     * blocks if there are enough elements.
+     */
+    static int argMax(final ActiveClusters active, final BlockScorer scorer) {
+        final int size = active.size();
+        WorkQueue workQueue = WorkQueue.getWorkQueue();
+        int threads = workQueue.availableThreads();
+        if (size < PARALLEL_THRESHOLD || threads < 2) {
+            int[] bestPos = new int[1];
+            scan(active, scorer, 0, size, bestPos, new double[1], 0);
+            return active.get(bestPos[0]);
+        }
+
+        int numBlocks = Math.min(threads * 4, size / (PARALLEL_THRESHOLD / 4));
+        final int blockSize = (size + numBlocks - 1) / numBlocks;
+        numBlocks = (size + blockSize - 1) / blockSize;
+        final int[] bestPos = new int[numBlocks];
+        final double[] bestScores = new double[numBlocks];
+        Collection<Runnable> tasks = new ArrayList<Runnable>(numBlocks);
+        for (int b = 0; b < numBlocks; ++b) {
+            final int block = b;
+            tasks.add(new Runnable() {
+                    public void run() {
+                        int start = block * blockSize;
+                        scan(active, scorer, start, 
+                             Math.min(size, start + blockSize),
+                             bestPos, bestScores, block);
+                    }
+                });
+        }
+        workQueue.run(tasks);
+        // Blocks are in position order, so a strict comparison keeps the
+        // earliest position on ties
+        int best = 0;
+        for (int b = 1; b < numBlocks; ++b) {
+            if (bestScores[b] > bestScores[best])
+                best = b;
+        }
+        return active.get(bestPos[best]);
+    }
+
+    /**
+     * Finds the position in {@code active} between {@code start} and {@code
+     * end} with the highest score, storing it and its score at {@code slot}
+     * of the result arrays.
+     */
+    private static void scan(ActiveClusters active, BlockScorer scorer,
+                             int start, int end, int[] bestPos, 
+                             double[] bestScores, int slot) {
+        int pos = start;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int p = start; p < end; ++p) {
+            double score = scorer.score(active.get(p));
+            if (score > bestScore) {
+                bestScore = score;
+                pos = p;
+            }
+        }
+        bestPos[slot] = pos;
+        bestScores[slot] = bestScore;
+    }
+
+    /**
+     * Returns the similarity of two rows, or negative infinity if the
+     * similarity is undefined (e.g., the cosine similarity of a zero vector),
+     * so that such rows are merged last.
+     */
+    static double similarity(SimType simType, DoubleVector v1, 
+                             DoubleVector v2) {
+        double sim = Similarity.getSimilarity(simType, v1, v2);
+        return (Double.isNaN(sim)) ? Double.NEGATIVE_INFINITY : sim;
+    }
+
+    /**
+     * Returns the updated similarity of a third cluster to the merge of two
+     * clusters, according to the Lance-Williams recurrence for the linkage.
+     *
+     * @param s1 the similarity to the first merged cluster
+     * @param n1 the size of the first merged cluster
+     * @param s2 the similarity to the second merged cluster
+     * @param n2 the size of the second merged cluster
+     */
+    static double lanceWilliams(ClusterLinkage linkage, double s1, int n1,
+                                double s2, int n2) {
+        switch (linkage) {
+        case SINGLE_LINKAGE:
+            return Math.max(s1, s2);
+        case COMPLETE_LINKAGE:
+            return Math.min(s1, s2);
+        case MEAN_LINKAGE: {
+            // Clamp away any rounding error so that a merge never increases
+            // a similarity, which the nearest-neighbor chain relies on
+            double mean = (n1 * s1 + n2 * s2) / (n1 + n2);
+            return Math.max(Math.min(s1, s2), Math.min(Math.max(s1, s2), mean));
+        }
+        default:
+            throw new IllegalArgumentException(
+                "Unsupported linkage: " + linkage);
+        }
+    }
+
+    /**
+     * A scoring function for {@link #argMax(ActiveClusters,BlockScorer)}.
+     */
+    interface BlockScorer {
+
+        /**
+         * Computes the score of the element.  This method may be called
+         * concurrently for different elements.
+         */
+        double score(int element);
+    }
+
+    /**
+     * The set of clusters that have not been merged into another, stored as a
+     * list that supports constant time removal.  Each cluster is identified by
+     * the lowest-numbered row it contains.
+     */
+    static class ActiveClusters {
+
+        /**
+         * The active clusters, in no particular order
+         */
+        private final int[] clusters;
+
+        /**
+         * The position of each cluster in {@code clusters}, or {@code -1} if
+         * the cluster is no longer active
+         */
+        private final int[] positions;
+
+        /**
+         * The number of active clusters
+         */
+        private int size;
+
+        /**
+         * Creates the set with each of the rows in its own cluster.
+         */
+        public ActiveClusters(int rows) {
+            clusters = new int[rows];
+            positions = new int[rows];
+            for (int i = 0; i < rows; ++i) {
+                clusters[i] = i;
+                positions[i] = i;
+            }
+            size = rows;
+        }
+
+        /**
+         * Returns {@code true} if the cluster is active.
+         */
+        public boolean contains(int cluster) {
+            return positions[cluster] >= 0;
+        }
+
+        /**
+         * Returns the cluster at the specified position.
+         */
+        public int get(int position) {
+            return clusters[position];
+        }
+
+        /**
+         * Removes the cluster by moving the last cluster into its position.
+         */
+        public void remove(int cluster) {
+            int pos = positions[cluster];
+            int last = clusters[--size];
+            clusters[pos] = last;
+            positions[last] = pos;
+            positions[cluster] = -1;
+        }
+
+        /**
+         * Returns the number of active clusters.
+         */
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The similarities between the active clusters during agglomeration.
+     */
+    abstract static class ClusterSimilarities {
+
+        /**
+         * Returns the similarity of two active clusters.
+         */
+        abstract double get(int cluster1, int cluster2);
+
+        /**
+         * Merges the {@code removed} cluster, which is no longer in {@code
+         * active}, into the {@code kept} cluster.
+         */
+        abstract void merge(int kept, int removed, ActiveClusters active);
+
+        /**
+         * Returns the active cluster most similar to {@code cluster}.
+         */
+        int nearest(int cluster, ActiveClusters active) {
+            int best = -1;
+            double bestSim = Double.NEGATIVE_INFINITY;
+            for (int pos = 0; pos < active.size(); ++pos) {
+                int other = active.get(pos);
+                if (other == cluster)
+                    continue;
+                double sim = get(cluster, other);
+                if (sim > bestSim || best < 0) {
+                    bestSim = sim;
+                    best = other;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Cluster similarities stored in a condensed upper-triangular array, which
+     * are updated with the Lance-Williams recurrences as clusters merge.
+     */
+    static class StoredSimilarities extends ClusterSimilarities {
+
+        private final ClusterLinkage linkage;
+
+        private final int rows;
+
+        /**
+         * The similarity of each pair of clusters {@code (i, j)} with {@code
+         * i < j}, ordered by {@code i} and then {@code j}
+         */
+        private final double[] similarities;
+
+        /**
+         * The number of rows in each active cluster
+         */
+        private final int[] sizes;
+
+        /**
+         * Computes the pair-wise similarities of the vectors in parallel.
+         */
+        public StoredSimilarities(final DoubleVector[] vectors, 
+                                  final SimType simType, 
+                                  ClusterLinkage linkage) {
+            this.linkage = linkage;
+            this.rows = vectors.length;
+            this.similarities = new double[(int)((long)rows * (rows - 1) / 2)];
+            this.sizes = new int[rows];
+            Arrays.fill(sizes, 1);
+
+            // Later rows have fewer similarities to compute, so the rows are
+            // interleaved among the tasks to balance the work
+            WorkQueue workQueue = WorkQueue.getWorkQueue();
+            final int numTasks = (similarities.length < PARALLEL_THRESHOLD)
+                ? 1 : workQueue.availableThreads() * 4;
+            List<Runnable> tasks = new ArrayList<Runnable>(numTasks);
+            for (int t = 0; t < numTasks; ++t) {
+                final int task = t;
+                tasks.add(new Runnable() {
+                        public void run() {
+                            for (int i = task; i < rows; i += numTasks) {
+                                int offset = index(i, i + 1);
+                                for (int j = i + 1; j < rows; ++j) 
+                                    similarities[offset++] = similarity(
+                                        simType, vectors[i], vectors[j]);
+                            }
+                        }
+                    });
+            }
+            if (numTasks == 1)
+                tasks.get(0).run();
+            else
+                workQueue.run(tasks);
+        }
+
+        /**
+         * Returns the index of the similarity for {@code (i, j)} with {@code i
+         * < j}.
+         */
+        private int index(int i, int j) {
+            return (int)((long)i * (2L * rows - i - 1) / 2 + (j - i - 1));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        double get(int cluster1, int cluster2) {
+            return (cluster1 < cluster2)
+                ? similarities[index(cluster1, cluster2)]
+                : similarities[index(cluster2, cluster1)];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        void merge(int kept, int removed, ActiveClusters active) {
+            int n1 = sizes[kept];
+            int n2 = sizes[removed];
+            for (int pos = 0; pos < active.size(); ++pos) {
+                int other = active.get(pos);
+                if (other == kept)
+                    continue;
+                int i = (other < kept) ? index(other, kept) 
+                                       : index(kept, other);
+                similarities[i] = lanceWilliams(
+                    linkage, similarities[i], n1, get(removed, other), n2);
+            }
+            sizes[kept] = n1 + n2;
+        }
+    }
+
+    /**
+     * Mean cosine similarities computed on demand from the sum of each
+     * cluster's unit-length row vectors.
+     */
+    static class CentroidSimilarities extends ClusterSimilarities {
+
+        /**
+         * The sum of the unit vectors in each cluster, or {@code null} if the
+         * cluster has been merged
+         */
+        private final DoubleVector[] sums;
+
+        /**
+         * The number of rows in each active cluster
+         */
+        private final int[] sizes;
+
+        /**
+         * Creates the initial clusters from the unit vectors of each row.
+         */
+        public CentroidSimilarities(DoubleVector[] vectors) {
+            sums = new DoubleVector[vectors.length];
+            sizes = new int[vectors.length];
+            for (int i = 0; i < vectors.length; ++i) {
+                sums[i] = unitVector(vectors[i]);
+                sizes[i] = 1;
+            }
+        }
+
+        /**
+         * Returns a copy of the vector scaled to unit length, or the zero
+         * vector if {@code v} has no non-zero values.
+         */
+        private static DoubleVector unitVector(DoubleVector v) {
+            double magnitude = v.magnitude();
+            double scale = (magnitude == 0) ? 0 : 1 / magnitude;
+            if (v instanceof SparseVector) {
+                DoubleVector unit = new SparseHashDoubleVector(v.length());
+                for (int i : ((SparseVector)v).getNonZeroIndices())
+                    unit.set(i, v.get(i) * scale);
+                return unit;
+            }
+            double[] values = new double[v.length()];
+            for (int i = 0; i < values.length; ++i)
+                values[i] = v.get(i) * scale;
+            return new DenseVector(values);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        double get(int cluster1, int cluster2) {
+            // Always multiply in the same order so that the similarity is
+            // exactly symmetric, which the chain's termination depends on
+            DoubleVector a = sums[Math.min(cluster1, cluster2)];
+            DoubleVector b = sums[Math.max(cluster1, cluster2)];
+            return VectorMath.dotProduct(a, b) 
+                / ((double)sizes[cluster1] * sizes[cluster2]);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        void merge(int kept, int removed, ActiveClusters active) {
+            DoubleVector k = sums[kept];
+            DoubleVector r = sums[removed];
+            // Add the smaller sum into the larger one
+            if (k instanceof SparseVector && r instanceof SparseVector
+                    && ((SparseVector)k).getNonZeroIndices().length 
+                       < ((SparseVector)r).getNonZeroIndices().length) {
+                DoubleVector t = k;
+                k = r;
+                r = t;
+            }
+            else if (k instanceof SparseVector && !(r instanceof SparseVector)) {
+                DoubleVector t = k;
+                k = r;
+                r = t;
+            }
+            sums[kept] = VectorMath.add(k, r);
+            sums[removed] = null;
+            sizes[kept] += sizes[removed];
+        }
+
+        /**
+         * Returns the active cluster most similar to {@code cluster},
+         * computing the similarities in parallel blocks.
+         */
+        @Override int nearest(final int cluster, ActiveClusters active) {
+            return ReducibleLinkageClustering.argMax(active, new BlockScorer() {
+                    public double score(int other) {
+                        return (other == cluster) 
+                            ? Double.NEGATIVE_INFINITY 
+                            : get(cluster, other);
+                    }
+                });
+        }
+    }
+
+    /**
+     * The sequence of merges that join all rows into a single cluster.
+     */
+    static class Dendrogram {
+
+        /**
+         * The cluster that remains after each merge
+         */
+        private final int[] kept;
+
+        /**
+         * The cluster that is merged into the kept cluster
+         */
+        private final int[] merged;
+
+        /**
+         * The similarity of the two clusters when they were merged
+         */
+        private final double[] similarities;
+
+        /**
+         * The number of rows
+         */
+        private final int rows;
+
+        /**
+         * The number of merges added so far
+         */
+        private int size;
+
+        public Dendrogram(int rows) {
+            this.rows = rows;
+            int merges = Math.max(rows - 1, 0);
+            kept = new int[merges];
+            merged = new int[merges];
+            similarities = new double[merges];
+        }
+
+        /**
+         * Records a merge.
+         */
+        public void add(int keptCluster, int mergedCluster, double similarity) {
+            kept[size] = keptCluster;
+            merged[size] = mergedCluster;
+            similarities[size] = similarity;
+            size++;
+        }
+
+        /**
+         * Returns the merge indices sorted by descending similarity.
+         */
+        private Integer[] sortedOrder() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; ++i)
+                order[i] = i;
+            // The sort is stable, which keeps the merges that formed a
+            // cluster ahead of any tied merge of that cluster
+            Arrays.sort(order, new java.util.Comparator<Integer>() {
+                    public int compare(Integer i, Integer j) {
+                        return Double.compare(similarities[j], similarities[i]);
+                    }
+                });
+            return order;
+        }
+
+        /**
+         * Returns the cluster assignment of each row after merging until
+         * {@code numClusters} remain or, if {@code numClusters} is
+         * non-positive, until the most similar clusters have a similarity
+         * below the threshold.  Clusters are numbered from 0 in the order of
+         * their lowest row.
+         */
+        public int[] cut(int numClusters, double threshold) {
+            int[] parents = new int[rows];
+            for (int i = 0; i < rows; ++i)
+                parents[i] = i;
+            int clusters = rows;
+            for (int i : sortedOrder()) {
+                if (numClusters > 0 && clusters <= numClusters)
+                    break;
+                if (numClusters < 1 && similarities[i] < threshold)
+                    break;
+                int r1 = find(parents, kept[i]);
+                int r2 = find(parents, merged[i]);
+                if (r1 != r2) {
+                    parents[Math.max(r1, r2)] = Math.min(r1, r2);
+                    clusters--;
+                }
+            }
+
+            int[] assignments = new int[rows];
+            int[] rootToCluster = new int[rows];
+            Arrays.fill(rootToCluster, -1);
+            int nextCluster = 0;
+            for (int i = 0; i < rows; ++i) {
+                int root = find(parents, i);
+                if (rootToCluster[root] < 0)
+                    rootToCluster[root] = nextCluster++;
+                assignments[i] = rootToCluster[root];
+            }
+            return assignments;
+        }
+
+        /**
+         * Returns the root of the set containing {@code i}, compressing the
+         * path along the way.
+         */
+        private static int find(int[] parents, int i) {
+            while (parents[i] != i) {
+                parents[i] = parents[parents[i]];
+                i = parents[i];
+            }
+            return i;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import edu.ucla.sspace.common.SemanticSpace;
 import edu.ucla.sspace.matrix.CellMaskedSparseMatrix;
 import edu.ucla.sspace.matrix.ArrayMatrix;
 import edu.ucla.sspace.matrix.AtomicGrowingSparseMatrix;
+import edu.ucla.sspace.matrix.CooccurrenceAccumulator;
 import edu.ucla.sspace.matrix.MatlabSparseMatrixBuilder;
 import edu.ucla.sspace.matrix.Matrices;
 import edu.ucla.sspace.matrix.Matrix;
@@ -39,15 +40,15 @@ import edu.ucla.sspace.matrix.Normalize;
 import edu.ucla.sspace.matrix.SparseMatrix;
 import edu.ucla.sspace.matrix.Transform;
 
-import edu.ucla.sspace.vector.CompactSparseVector;
 import edu.ucla.sspace.vector.SparseDoubleVector;
-import edu.ucla.sspace.vector.SparseHashDoubleVector;
 import edu.ucla.sspace.vector.Vector;
 import edu.ucla.sspace.vector.Vectors;
-import edu.ucla.sspace.vector.VectorMath;
 
 import edu.ucla.sspace.text.IteratorFactory;
 
+import gnu.trove.map.TLongDoubleMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOError;
@@ -167,9 +168,10 @@ public class Coals implements SemanticSpace {
         Logger.getLogger(Coals.class.getName());
 
     /**
-     * A mapping from each word to the vector the represents its semantics
+     * The co-occurrence counts of each word, where the row is the index of the
+     * focus word and the column is the index of the co-occurring word.
      */
-    private Map<String, SparseDoubleVector> wordToSemantics;
+    private CooccurrenceAccumulator cooccurrences;
 
     /**
      * A mapping from word to index number.
@@ -236,7 +238,7 @@ public class Coals implements SemanticSpace {
                  int maxDimensions) {
         termToIndex = new HashMap<String, Integer>();
         totalWordFreq = new ConcurrentHashMap<String, AtomicInteger>();
-        wordToSemantics = new HashMap<String, SparseDoubleVector>(1024, 4f);
+        cooccurrences = new CooccurrenceAccumulator();
         finalCorrelation = null;
         this.transform = transform;
         this.reducer = reducer;
@@ -285,8 +287,7 @@ public class Coals implements SemanticSpace {
      */
     public void processDocument(BufferedReader document) throws IOException {
         Map<String, Integer> wordFreq = new HashMap<String, Integer>();
-        Map<String, SparseDoubleVector> wordDocSemantics =
-            new HashMap<String, SparseDoubleVector>();
+        TLongDoubleMap docCooccurrences = new TLongDoubleHashMap();
 
         // Setup queues to track the set of previous and next words in a
         // context.
@@ -309,7 +310,7 @@ public class Coals implements SemanticSpace {
             // Get the focus word
             String focusWord = nextWords.remove();
             if (!focusWord.equals(IteratorFactory.EMPTY_TOKEN)) {
-                getIndexFor(focusWord);
+                int focusIndex = getIndexFor(focusWord);
 
                 // Update the frequency count of the focus word.
                 Integer focusFreq = wordFreq.get(focusWord);
@@ -317,16 +318,6 @@ public class Coals implements SemanticSpace {
                         ? 1
                         : 1 + focusFreq.intValue());
 
-                // Get the temprorary semantics for the focus word, create a new
-                // vector for them if needed.
-                SparseDoubleVector focusSemantics = wordDocSemantics.get(
-                        focusWord);
-                if (focusSemantics == null) {
-                    focusSemantics = new SparseHashDoubleVector(
-                            Integer.MAX_VALUE);
-                    wordDocSemantics.put(focusWord, focusSemantics);
-                }
-
                 // Process the previous words.
                 int offset = 4 - prevWords.size();
                 for (String word : prevWords) {
@@ -334,7 +325,9 @@ public class Coals implements SemanticSpace {
                     if (word.equals(IteratorFactory.EMPTY_TOKEN))
                         continue;
                     int index = getIndexFor(word);
-                    focusSemantics.add(index, offset);
+                    docCooccurrences.adjustOrPutValue(
+                        CooccurrenceAccumulator.key(focusIndex, index),
+                        offset, offset);
                 }
 
                 // Process the next words.
@@ -344,7 +337,9 @@ public class Coals implements SemanticSpace {
                     if (word.equals(IteratorFactory.EMPTY_TOKEN))
                         continue;
                     int index = getIndexFor(word);
-                    focusSemantics.add(index, offset);
+                    docCooccurrences.adjustOrPutValue(
+                        CooccurrenceAccumulator.key(focusIndex, index),
+                        offset, offset);
                 }
             }
 
@@ -353,19 +348,9 @@ public class Coals implements SemanticSpace {
                 prevWords.remove();
         }
 
-        // Add the temporary vectors for each word in this document to the 
-        // actual semantic fectors.
-        for (Map.Entry<String, SparseDoubleVector> e :
-                wordDocSemantics.entrySet()) {
-            SparseDoubleVector focusSemantics = getSemanticVector(
-                    e.getKey());
-            // Get the non zero indices before hand so that they are cached
-            // during the synchronized section.
-            focusSemantics.getNonZeroIndices();
-            synchronized (focusSemantics) {
-                VectorMath.add(focusSemantics, e.getValue());
-            }
-        }
+        // Add the co-occurrences for each word in this document to the actual
+        // semantic vectors.
+        cooccurrences.addAll(docCooccurrences);
 
         // Store the total frequency counts of the words seen in this document
         // so far.
@@ -378,33 +363,6 @@ public class Coals implements SemanticSpace {
         }
     }
 
-    /**
-     * Returns the current semantic vector for the provided word, or if the word
-     * is not currently in the semantic space, a vector is added for it and
-     * returned.
-     *
-     * @param word a word
-     *
-     * @return the {@code SemanticVector} for the provide word.
-     */
-    private SparseDoubleVector getSemanticVector(String word) {
-        SparseDoubleVector v = wordToSemantics.get(word);
-        if (v == null) {
-            // lock on the word in case multiple threads attempt to add it at
-            // once
-            synchronized(this) {
-                // recheck in case another thread added it while we were waiting
-                // for the lock
-                v = wordToSemantics.get(word);
-                if (v == null) {
-                    v = new CompactSparseVector();
-                    wordToSemantics.put(word, v);
-                }
-            }
-        }
-        return v;
-    }
-
     /**
      * Returns the index in the co-occurence matrix for this word.  If the word
      * was not previously assigned an index, this method adds one for it and
@@ -483,17 +441,14 @@ public class Coals implements SemanticSpace {
      */
     private Matrix buildMatrix(int maxWords, int maxDimensions) {
         // Convert the vectors in the semantic map to a matrix.
+        int numWords = termToIndex.size();
         SparseDoubleVector[] vectorList =
-            new SparseDoubleVector[wordToSemantics.size()];
-        for (Map.Entry<String, SparseDoubleVector> e :
-                wordToSemantics.entrySet())
-            vectorList[getIndexFor(e.getKey())] = e.getValue();
-        SparseMatrix matrix = Matrices.asSparseMatrix(
-                Arrays.asList(vectorList));
+            cooccurrences.toRowVectors(numWords, Integer.MAX_VALUE);
+        cooccurrences = null;
 
         // If maxwords was set to 0, save all words.
-        if (maxWords == 0 || maxWords > wordToSemantics.size())
-            maxWords = wordToSemantics.size();
+        if (maxWords == 0 || maxWords > numWords)
+            maxWords = numWords;
 
         COALS_LOGGER.info("Forming the inverse mapping from terms to indices.");
         // Calculate an inverse mapping from index to word since the binary file
@@ -556,8 +511,8 @@ public class Coals implements SemanticSpace {
                 termToIndex.remove(entry.getKey());
         }
 
-        wordToSemantics = null;
-        matrix = Matrices.asSparseMatrix(Arrays.asList(newVectorList));
+        SparseMatrix matrix =
+            Matrices.asSparseMatrix(Arrays.asList(newVectorList));
         // Return a masked version of the original matrix.
         return new CellMaskedSparseMatrix(matrix, rowMask, colMask);
     }
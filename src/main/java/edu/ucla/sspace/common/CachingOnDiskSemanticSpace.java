@@ -23,6 +23,13 @@ package edu.ucla.sspace.common;
 
 import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
 
+import edu.ucla.sspace.util.Cache;
+import edu.ucla.sspace.util.CacheStatistics;
+import edu.ucla.sspace.util.LineReader;
+import edu.ucla.sspace.util.SegmentedLruCache;
+import edu.ucla.sspace.util.Weigher;
+
+import edu.ucla.sspace.vector.SparseVector;
 import edu.ucla.sspace.vector.Vector;
 import edu.ucla.sspace.vector.Vectors;
 
@@ -31,11 +38,12 @@ import java.io.File;
 import java.io.IOError;
 import java.io.IOException;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
-import java.util.WeakHashMap;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -60,7 +68,18 @@ import java.util.logging.Logger;
  * spaces, as the internal cursor to the data will have to restart from the
  * beginning of the file.<p>
  *
- * This class is thread-safe.
+ * Vectors are retained in a {@link Cache} that is bounded by the estimated
+ * number of bytes used by the cached vectors, rather than by the garbage
+ * collector.  By default, a {@link SegmentedLruCache} that may use up to a
+ * quarter of the maximum heap size is used; callers may provide their own
+ * {@code Cache} instance to change the size or the eviction policy.  The
+ * cache's hit, miss, eviction and load-latency counters are available from
+ * {@link #getCacheStatistics()}.  The cache may also be warmed at startup with
+ * the most frequent words in a frequency file using {@link #warmUp(File,
+ * int)}.<p>
+ *
+ * This class is thread-safe.  Cached vectors are returned without locking the
+ * whole space.
  *
  * @see SemanticSpaceIO
  * @see OnDiskSemanticSpace
@@ -71,10 +90,17 @@ public class CachingOnDiskSemanticSpace implements SemanticSpace {
         Logger.getLogger(CachingOnDiskSemanticSpace.class.getName());
 
     /**
-     * A mapping for words that have had their vector recently loaded into
+     * A weigher that estimates the number of bytes used to hold a word and its
+     * vector in memory.
+     */
+    public static final Weigher<String,Vector> VECTOR_BYTES_WEIGHER =
+        new VectorBytesWeigher();
+
+    /**
+     * A cache for words that have had their vector recently loaded into
      * memory.
      */
-    private final Map<String, Vector> wordToVector;
+    private final Cache<String,Vector> wordToVector;
 
     /**
      * The backing semantic space that reads in the data from disk.
@@ -104,8 +130,88 @@ public class CachingOnDiskSemanticSpace implements SemanticSpace {
      *         space data from the fil
      */
     public CachingOnDiskSemanticSpace(File file) throws IOException {
+        this(file, new SegmentedLruCache<String,Vector>(
+                 Runtime.getRuntime().maxMemory() / 4, VECTOR_BYTES_WEIGHER));
+    }
+
+    /**
+     * Creates a new instance of {@code CachingOnDiskSemanticSpace} from the
+     * data in the specified file that retains vectors in the provided cache.
+     *
+     * @param file a file containing a semantic space
+     * @param cache the cache in which loaded vectors will be retained
+     *
+     * @throws IOException if any I/O exception occurs when reading the semantic
+     *         space data from the fil
+     */
+    public CachingOnDiskSemanticSpace(File file, Cache<String,Vector> cache) 
+            throws IOException {
         backingSpace = new OnDiskSemanticSpace(file);
-        wordToVector = new WeakHashMap<String,Vector>();
+        wordToVector = cache;
+    }
+
+    /**
+     * Loads the vectors for the {@code topN} most frequent words listed in the
+     * frequency file into the cache.  Each line of the file should contain a
+     * word, optionally followed by whitespace and its frequency.  If no
+     * frequencies are provided, the words are assumed to be listed from most
+     * to least frequent.  Words that are not in this space are ignored.  Note
+     * that a cache whose capacity is smaller than the warmed vectors will
+     * retain only some of them.
+     *
+     * @param frequencyFile a file listing words and their frequencies
+     * @param topN the maximum number of words to load
+     *
+     * @return the number of vectors that were loaded
+     *
+     * @throws IOException if any error occurs while reading the frequency file
+     */
+    public int warmUp(File frequencyFile, int topN) throws IOException {
+        List<String> words = new ArrayList<String>();
+        final List<Long> counts = new ArrayList<Long>();
+        boolean hasCounts = true;
+        for (String line : new LineReader(frequencyFile)) {
+            String[] wordAndCount = line.trim().split("\\s+");
+            if (wordAndCount[0].length() == 0)
+                continue;
+            words.add(wordAndCount[0]);
+            if (wordAndCount.length > 1)
+                counts.add(Long.valueOf(wordAndCount[1]));
+            else
+                hasCounts = false;
+        }
+
+        List<Integer> order = new ArrayList<Integer>(words.size());
+        for (int i = 0; i < words.size(); ++i)
+            order.add(i);
+        if (hasCounts) {
+            // Sort from most to least frequent, keeping the file's order for
+            // ties
+            Collections.sort(order, new Comparator<Integer>() {
+                    public int compare(Integer i, Integer j) {
+                        return counts.get(j).compareTo(counts.get(i));
+                    }
+                });
+        }
+
+        long start = System.currentTimeMillis();
+        int loaded = 0;
+        for (int i = 0; i < order.size() && loaded < topN; ++i) {
+            String word = words.get(order.get(i));
+            if (load(word) != null)
+                loaded++;
+        }
+        if (LOGGER.isLoggable(Level.FINE))
+            LOGGER.fine("warmed the cache with " + loaded + " vectors in " +
+                        (System.currentTimeMillis() - start) + "ms");
+        return loaded;
+    }
+
+    /**
+     * Returns the statistics for the cache used by this space.
+     */
+    public CacheStatistics getCacheStatistics() {
+        return wordToVector.getStatistics();
     }
 
     /**
@@ -124,18 +230,29 @@ public class CachingOnDiskSemanticSpace implements SemanticSpace {
   
     /**
      * {@inheritDoc} If the word is in the semantic space, its vector will be
-     * temporarily loaded into memory so that subsequent calls will not need to
-     * go to disk.  As memory pressure increases, the vector will be discarded.
+     * loaded into the cache so that subsequent calls will not need to go to
+     * disk, until the cache evicts it to make room for other vectors.
      *
      * @throws IOError if any {@code IOException} occurs when reading the data
      *         from the underlying semantic space file.
      */
-    public synchronized Vector getVector(String word) {
+    public Vector getVector(String word) {
         Vector vector = wordToVector.get(word);
-        if (vector != null)
-            return Vectors.immutable(vector);
+        if (vector == null) 
+            vector = load(word);
+        return (vector == null) ? null : Vectors.immutable(vector);
+    }
 
+    /**
+     * Reads the word's vector from the backing space and caches it, returning
+     * the vector or {@code null} if the word is not in the space.  Two threads
+     * that miss on the same word may both load it, in which case the second
+     * vector replaces the first in the cache.
+     */
+    private Vector load(String word) {
+        long start = System.nanoTime();
         Vector v = backingSpace.getVector(word);
+        wordToVector.getStatistics().recordLoad(System.nanoTime() - start);
         if (v != null)
             wordToVector.put(word, v);
         return v;
@@ -167,4 +284,30 @@ public class CachingOnDiskSemanticSpace implements SemanticSpace {
         throw new UnsupportedOperationException(
             "CachingOnDiskSemanticSpace instances cannot be updated");
     }
+
+    /**
+     * Estimates the heap usage of a word and its vector, assuming that sparse
+     * vectors store an {@code int} index and {@code double} value for each
+     * non-zero element and that dense vectors store a {@code double} for every
+     * element.
+     */
+    private static class VectorBytesWeigher 
+            implements Weigher<String,Vector> {
+
+        /**
+         * A rough estimate of the fixed overhead of the objects needed to
+         * store a word and its vector, including the cache's own entry.
+         */
+        private static final long OVERHEAD = 128;
+
+        public long weigh(String word, Vector vector) {
+            long bytes = OVERHEAD + 2L * word.length();
+            if (vector instanceof SparseVector) 
+                bytes += 12L * 
+                    ((SparseVector)vector).getNonZeroIndices().length;
+            else
+                bytes += 8L * vector.length();
+            return bytes;
+        }
+    }
 }
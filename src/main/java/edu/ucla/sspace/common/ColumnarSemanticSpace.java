@@ -0,0 +1,512 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.common;
+
+import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
+
+import edu.ucla.sspace.util.MappedFileBuffer;
+import edu.ucla.sspace.util.WorkQueue;
+
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.MappedDoubleVector;
+import edu.ucla.sspace.vector.MappedFloatVector;
+import edu.ucla.sspace.vector.Vector;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A {@link SemanticSpace} backed by a memory-mapped {@link
+ * SSpaceFormat#COLUMNAR columnar} or {@link SSpaceFormat#COLUMNAR_FLOAT
+ * single-precision columnar} {@code .sspace} file.  Opening the space only
+ * decodes the words; the vectors are paged in by the operating system as they
+ * are accessed, which makes startup nearly instant even for very large spaces.
+ *
+ * <p> The columnar formats store every vector densely with a fixed width so
+ * that the offset of any vector can be computed from its row.  The rows are
+ * divided into shards, each of which holds a block of its words followed by a
+ * block of its vectors.  Shards are independent of each other, so their words
+ * are decoded concurrently when the space is opened, and {@link
+ * StaticSemanticSpace} copies their vectors onto the heap concurrently.  After
+ * the 4-byte format header, the file contains:
+ *
+ * <ol>
+ *
+ * <li> the number of words, the number of dimensions and the number of
+ *      shards, each as an {@code int}
+ *
+ * <li> the shard table, which has for each shard its first row and number of
+ *      rows as {@code int}s, followed by the file offsets of its word block and
+ *      vector block as {@code long}s
+ *
+ * <li> the shards, where each word block contains the shard's words encoded
+ *      with {@link java.io.DataOutput#writeUTF(String) writeUTF}, and each
+ *      vector block is aligned to eight bytes and contains the shard's vectors
+ *      in row order as {@code double} or {@code float} values.
+ *
+ * </ol>
+ *
+ * All values are big-endian.  Files in this format are written by {@link
+ * SemanticSpaceIO#save(SemanticSpace,File,SSpaceFormat)}.
+ *
+ * <p> The vectors returned by {@link #getVector(String) getVector} are
+ * read-only views over the mapped bytes.  Callers that need a modifiable vector
+ * should copy it, e.g. with {@link
+ * edu.ucla.sspace.vector.Vectors#copyOf(DoubleVector) Vectors.copyOf}.  The
+ * {@code getWords} method returns the words in the order they are stored on
+ * disk.
+ *
+ * <p> This class is thread-safe and {@code getVector} does not acquire any
+ * locks.
+ *
+ * @see MappedSemanticSpace
+ * @see SemanticSpaceIO
+ *
+ * @author David Jurgens
+ */
+public class ColumnarSemanticSpace implements SemanticSpace {
+
+    private static final Logger LOGGER = 
+        Logger.getLogger(ColumnarSemanticSpace.class.getName());
+
+    /**
+     * The number of words stored in each shard when a space is written
+     */
+    static final int DEFAULT_WORDS_PER_SHARD = 1 << 16;
+
+    /**
+     * The number of bytes preceding the shard table: the 4-byte format header
+     * and the word, dimension and shard counts.
+     */
+    private static final int SHARD_TABLE_OFFSET = 16;
+
+    /**
+     * The number of bytes used by each entry in the shard table
+     */
+    private static final int SHARD_ENTRY_SIZE = 24;
+
+    /**
+     * The mapped contents of the {@code .sspace} file
+     */
+    private final MappedFileBuffer buffer;
+
+    /**
+     * The format of the file that backs this space.
+     */
+    private final SSpaceFormat format;
+
+    /**
+     * The number of bytes used to store each value of a vector
+     */
+    private final int valueSize;
+
+    /**
+     * The words in the order in which they are stored
+     */
+    private final String[] words;
+
+    /**
+     * A mapping from each word to its row
+     */
+    private final TObjectIntHashMap<String> wordToRow;
+
+    /**
+     * The first row of each shard
+     */
+    private final int[] shardFirstRows;
+
+    /**
+     * The file offset of the vector block of each shard
+     */
+    private final long[] shardVectorOffsets;
+
+    /**
+     * The number of dimensions used in this semantic space.
+     */
+    private final int dimensions;
+
+    /**
+     * The name of this semantic space.
+     */
+    private final String spaceName;
+
+    /**
+     * Creates the {@link ColumnarSemanticSpace} from the file.
+     *
+     * @param filename the name of a semantic space file
+     *
+     * @throws IOException if any I/O exception occurs when reading the semantic
+     *         space data from the file
+     * @throws IllegalArgumentException if the file is not in a columnar format
+     */
+    public ColumnarSemanticSpace(String filename) throws IOException {
+        this(new File(filename));
+    }
+
+    /**
+     * Creates the {@link ColumnarSemanticSpace} from the provided file.
+     *
+     * @param file a file containing a semantic space
+     *
+     * @throws IOException if any I/O exception occurs when reading the semantic
+     *         space data from the file
+     * @throws IllegalArgumentException if the file is not in a columnar format
+     */
+    public ColumnarSemanticSpace(File file) throws IOException {
+        format = SemanticSpaceIO.getFormat(file);
+        if (!isColumnar(format))
+            throw new IllegalArgumentException(
+                "Only COLUMNAR and COLUMNAR_FLOAT formats are supported: " + 
+                format);
+        valueSize = valueSize(format);
+        spaceName = file.getName();
+        long start = System.currentTimeMillis();
+        buffer = new MappedFileBuffer(file);
+
+        int numWords = buffer.getInt(4);
+        dimensions = buffer.getInt(8);
+        int numShards = buffer.getInt(12);
+        words = new String[numWords];
+        shardFirstRows = new int[numShards];
+        shardVectorOffsets = new long[numShards];
+
+        // Decode the words of each shard concurrently
+        Collection<Runnable> tasks = new ArrayList<Runnable>(numShards);
+        for (int s = 0; s < numShards; ++s) {
+            long entry = SHARD_TABLE_OFFSET + (long)s * SHARD_ENTRY_SIZE;
+            final int firstRow = buffer.getInt(entry);
+            final int rows = buffer.getInt(entry + 4);
+            final long wordOffset = buffer.getLong(entry + 8);
+            shardFirstRows[s] = firstRow;
+            shardVectorOffsets[s] = buffer.getLong(entry + 16);
+            tasks.add(new Runnable() {
+                    public void run() {
+                        long pos = wordOffset;
+                        for (int r = firstRow; r < firstRow + rows; ++r) {
+                            words[r] = buffer.getUTF(pos);
+                            pos += buffer.getUTFLength(pos);
+                        }
+                    }
+                });
+        }
+        WorkQueue.getWorkQueue().run(tasks);
+
+        wordToRow = new TObjectIntHashMap<String>(
+            Math.max(numWords * 2, 10), 0.5f, -1);
+        for (int r = 0; r < numWords; ++r) {
+            if (words[r] == null)
+                throw new IOException("Malformed shard containing row " + r);
+            wordToRow.put(words[r], r);
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("mapped " + format + " .sspace file with " + numShards
+                        + " shards in " + (System.currentTimeMillis() - start)
+                        + "ms");
+        }
+    }
+
+    /**
+     * Returns {@code true} if the format is one of the columnar formats
+     * supported by this class.
+     */
+    static boolean isColumnar(SSpaceFormat format) {
+        return format == SSpaceFormat.COLUMNAR 
+            || format == SSpaceFormat.COLUMNAR_FLOAT;
+    }
+
+    /**
+     * Returns the number of bytes used to store each vector value in the
+     * columnar format.
+     */
+    private static int valueSize(SSpaceFormat format) {
+        return (format == SSpaceFormat.COLUMNAR_FLOAT) ? 4 : 8;
+    }
+
+    /**
+     * Writes the semantic space to the file in the specified columnar format,
+     * with {@code wordsPerShard} words in each shard.
+     *
+     * @throws IOException if any I/O exception occurs when writing the
+     *         semantic space to the file
+     * @throws IllegalArgumentException if the format is not columnar or if
+     *         {@code wordsPerShard} is not positive
+     */
+    static void write(SemanticSpace sspace, File output, SSpaceFormat format,
+                      int wordsPerShard) throws IOException {
+        if (!isColumnar(format))
+            throw new IllegalArgumentException("Not a columnar format: " + 
+                                               format);
+        if (wordsPerShard <= 0)
+            throw new IllegalArgumentException(
+                "Must have at least one word per shard: " + wordsPerShard);
+        int valueSize = valueSize(format);
+        List<String> wordList = new ArrayList<String>(sspace.getWords());
+        int numWords = wordList.size();
+        int dimensions = (numWords > 0) ? sspace.getVectorLength() : 0;
+        int numShards = (numWords + wordsPerShard - 1) / wordsPerShard;
+
+        // Lay out the shards in advance so that the shard table can be
+        // written before their contents
+        long[] wordOffsets = new long[numShards];
+        long[] vectorOffsets = new long[numShards];
+        long pos = SHARD_TABLE_OFFSET + (long)numShards * SHARD_ENTRY_SIZE;
+        for (int s = 0; s < numShards; ++s) {
+            int firstRow = s * wordsPerShard;
+            int end = Math.min(firstRow + wordsPerShard, numWords);
+            wordOffsets[s] = pos;
+            for (int r = firstRow; r < end; ++r)
+                pos += utfLength(wordList.get(r));
+            pos = align(pos);
+            vectorOffsets[s] = pos;
+            pos += (long)(end - firstRow) * dimensions * valueSize;
+        }
+
+        DataOutputStream dos = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(output), 1 << 16));
+        SemanticSpaceIO.writeHeader(dos, format);
+        dos.writeInt(numWords);
+        dos.writeInt(dimensions);
+        dos.writeInt(numShards);
+        for (int s = 0; s < numShards; ++s) {
+            int firstRow = s * wordsPerShard;
+            dos.writeInt(firstRow);
+            dos.writeInt(Math.min(wordsPerShard, numWords - firstRow));
+            dos.writeLong(wordOffsets[s]);
+            dos.writeLong(vectorOffsets[s]);
+        }
+        LOGGER.fine("saving " + format + " S-Space with " + numWords + 
+                    " words with " + dimensions + "-dimensional vectors in " +
+                    numShards + " shards");
+
+        pos = SHARD_TABLE_OFFSET + (long)numShards * SHARD_ENTRY_SIZE;
+        for (int s = 0; s < numShards; ++s) {
+            int firstRow = s * wordsPerShard;
+            int end = Math.min(firstRow + wordsPerShard, numWords);
+            for (int r = firstRow; r < end; ++r) {
+                String word = wordList.get(r);
+                dos.writeUTF(word);
+                pos += utfLength(word);
+            }
+            for (; pos < vectorOffsets[s]; ++pos)
+                dos.writeByte(0);
+            for (int r = firstRow; r < end; ++r) {
+                Vector v = sspace.getVector(wordList.get(r));
+                if (v.length() != dimensions)
+                    throw new IllegalArgumentException(
+                        "The vector for " + wordList.get(r) + " has " + 
+                        v.length() + " dimensions instead of " + dimensions);
+                if (v instanceof DoubleVector) {
+                    DoubleVector dv = (DoubleVector)v;
+                    for (int i = 0; i < dimensions; ++i) {
+                        if (valueSize == 8)
+                            dos.writeDouble(dv.get(i));
+                        else
+                            dos.writeFloat((float)dv.get(i));
+                    }
+                }
+                else {
+                    for (int i = 0; i < dimensions; ++i) {
+                        double d = v.getValue(i).doubleValue();
+                        if (valueSize == 8)
+                            dos.writeDouble(d);
+                        else
+                            dos.writeFloat((float)d);
+                    }
+                }
+            }
+            pos += (long)(end - firstRow) * dimensions * valueSize;
+        }
+        dos.close();
+    }
+
+    /**
+     * Returns the number of bytes needed to encode the string using {@link
+     * java.io.DataOutput#writeUTF(String) writeUTF}, including the two-byte
+     * length prefix.
+     */
+    private static int utfLength(String s) {
+        int length = 2;
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F)
+                length += 1;
+            else if (c > 0x07FF)
+                length += 3;
+            else
+                length += 2;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the smallest multiple of eight that is no less than the
+     * position.
+     */
+    private static long align(long pos) {
+        return (pos + 7) & ~7L;
+    }
+
+    /**
+     * Returns the format of the file backing this space.
+     */
+    SSpaceFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the words of this space in the order they are stored on disk.
+     * The returned array is shared and must not be modified.
+     */
+    String[] getWordsInOrder() {
+        return words;
+    }
+
+    /**
+     * Returns the number of shards in the file backing this space.
+     */
+    int getShardCount() {
+        return shardFirstRows.length;
+    }
+
+    /**
+     * Copies the values of every vector into the array in row-major order,
+     * using one task per shard so that the shards are read concurrently.
+     *
+     * @param values an array with at least {@code words * dimensions} values
+     */
+    void copyValues(final double[] values) {
+        if ((long)values.length < (long)words.length * dimensions)
+            throw new IllegalArgumentException(
+                "array is too small to contain the space");
+        Collection<Runnable> tasks = new ArrayList<Runnable>();
+        for (int s = 0; s < shardFirstRows.length; ++s) {
+            final int firstRow = shardFirstRows[s];
+            final int end = (s + 1 < shardFirstRows.length)
+                ? shardFirstRows[s + 1] : words.length;
+            final long offset = shardVectorOffsets[s];
+            tasks.add(new Runnable() {
+                    public void run() {
+                        long pos = offset;
+                        int start = firstRow * dimensions;
+                        int stop = end * dimensions;
+                        if (valueSize == 8) {
+                            for (int i = start; i < stop; ++i, pos += 8)
+                                values[i] = buffer.getDouble(pos);
+                        }
+                        else {
+                            for (int i = start; i < stop; ++i, pos += 4)
+                                values[i] = buffer.getFloat(pos);
+                        }
+                    }
+                });
+        }
+        WorkQueue.getWorkQueue().run(tasks);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<String> getWords() {
+        return new AbstractSet<String>() {
+            public boolean contains(Object o) {
+                return wordToRow.containsKey(o);
+            }
+
+            public Iterator<String> iterator() {
+                // The list's iterator does not support removal
+                return Arrays.asList(words).iterator();
+            }
+
+            public int size() {
+                return words.length;
+            }
+        };
+    }
+  
+    /**
+     * Returns a read-only view of the word's vector in the mapped file, or
+     * {@code null} if the word is not in the space.
+     */
+    public DoubleVector getVector(String word) {
+        int row = wordToRow.get(word);
+        if (row < 0)
+            return null;
+        int shard = Arrays.binarySearch(shardFirstRows, row);
+        if (shard < 0)
+            shard = -shard - 2;
+        long offset = shardVectorOffsets[shard] 
+            + (long)(row - shardFirstRows[shard]) * dimensions * valueSize;
+        return (valueSize == 8)
+            ? new MappedDoubleVector(buffer, offset, dimensions)
+            : new MappedFloatVector(buffer, offset, dimensions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getSpaceName() {
+        return spaceName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getVectorLength() {
+        return dimensions;
+    }
+
+    /**
+     * Not supported; throws an {@link UnsupportedOperationException} if called.
+     */
+    public void processDocument(BufferedReader document) { 
+        throw new UnsupportedOperationException(
+            "ColumnarSemanticSpace instances cannot be updated");
+    }
+
+    /**
+     * Not supported; throws an {@link UnsupportedOperationException} if called.
+     */
+    public void processSpace(Properties props) { 
+        throw new UnsupportedOperationException(
+            "ColumnarSemanticSpace instances cannot be updated");
+    }
+}
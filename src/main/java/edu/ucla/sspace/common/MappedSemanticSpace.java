@@ -0,0 +1,234 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.common;
+
+import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
+
+import edu.ucla.sspace.util.MappedFileBuffer;
+
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.MappedDoubleVector;
+import edu.ucla.sspace.vector.MappedSparseDoubleVector;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A {@link SemanticSpace} whose vectors are read directly from a memory-mapped
+ * {@link SSpaceFormat#BINARY binary} or {@link SSpaceFormat#SPARSE_BINARY
+ * sparse binary} {@code .sspace} file.  Files larger than 2GB are mapped in
+ * multiple segments.  Only the words and the offsets of their vectors are
+ * kept on the heap; the vector data is paged in by the operating system as it
+ * is accessed.
+ *
+ * <p> The vectors returned by {@link #getVector(String) getVector} are
+ * read-only views over the mapped bytes ({@link MappedDoubleVector} and {@link
+ * MappedSparseDoubleVector}), which decode their values on access.  Callers
+ * that only compute similarities with the vectors therefore never copy them
+ * onto the heap.  Callers that need a modifiable vector should copy it, e.g.
+ * with {@link edu.ucla.sspace.vector.Vectors#copyOf(DoubleVector)
+ * Vectors.copyOf}.
+ *
+ * <p> The {@code getWords} method will return words in the order they are
+ * stored on disk.
+ *
+ * <p> This class is thread-safe and {@code getVector} does not acquire any
+ * locks.
+ *
+ * @see OnDiskSemanticSpace
+ * @see SemanticSpaceIO
+ */
+public class MappedSemanticSpace implements SemanticSpace {
+
+    private static final Logger LOGGER = 
+        Logger.getLogger(MappedSemanticSpace.class.getName());
+
+    /**
+     * A mapping from each word to the byte offset of its vector in the file
+     */
+    private final Map<String,Long> termToOffset;
+
+    /**
+     * The mapped contents of the {@code .sspace} file
+     */
+    private final MappedFileBuffer buffer;
+
+    /**
+     * The format of the file that backs this space.
+     */
+    private final SSpaceFormat format;
+
+    /**
+     * The number of dimensions used in this semantic space.
+     */
+    private final int dimensions;
+
+    /**
+     * The name of this semantic space.
+     */
+    private final String spaceName;
+
+    /**
+     * Creates the {@link MappedSemanticSpace} from the file.
+     *
+     * @param filename the name of a semantic space file
+     *
+     * @throws IOException if any I/O exception occurs when reading the semantic
+     *         space data from the file
+     * @throws IllegalArgumentException if the file is not in a binary format
+     */
+    public MappedSemanticSpace(String filename) throws IOException {
+        this(new File(filename));
+    }
+
+    /**
+     * Creates the {@link MappedSemanticSpace} from the provided file.
+     *
+     * @param file a file containing a store semantic space
+     *
+     * @throws IOException if any I/O exception occurs when reading the semantic
+     *         space data from the file
+     * @throws IllegalArgumentException if the file is not in a binary format
+     */
+    public MappedSemanticSpace(File file) throws IOException {
+        this(file, SemanticSpaceIO.getFormat(file), true);
+    }
+
+    /**
+     * Creates the {@link MappedSemanticSpace} from the provided file in the
+     * specified format.
+     *
+     * @param file a file containing a semantic space
+     * @param format the format of the semantic space
+     * @param containsHeader whether the file begins with the 4-byte header
+     *        indicating its format
+     *
+     * @throws IOException if any I/O exception occurs when reading the semantic
+     *         space data from the file
+     * @throws IllegalArgumentException if the file is not in a binary format
+     */
+    MappedSemanticSpace(File file, SSpaceFormat format, boolean containsHeader)
+            throws IOException {
+        if (format != SSpaceFormat.BINARY 
+                && format != SSpaceFormat.SPARSE_BINARY)
+            throw new IllegalArgumentException(
+                "Only BINARY and SPARSE_BINARY formats may be mapped: " + 
+                format);
+        this.format = format;
+        spaceName = file.getName();
+        long start = System.currentTimeMillis();
+        buffer = new MappedFileBuffer(file);
+
+        // NOTE: Use a LinkedHashMap here because this will ensure that the
+        // words are returned in the same row-order as the matrix, which
+        // generates better paging behavior when accessing all the vectors.
+        termToOffset = new LinkedHashMap<String,Long>();
+
+        long pos = (containsHeader) ? 4 : 0;
+        int rows = buffer.getInt(pos);
+        dimensions = buffer.getInt(pos + 4);
+        pos += 8;
+        for (int row = 0; row < rows; ++row) {
+            String word = buffer.getUTF(pos);
+            pos += buffer.getUTFLength(pos);
+            termToOffset.put(word, pos);
+            // Skip over the vector's data
+            pos += (format == SSpaceFormat.BINARY)
+                ? 8L * dimensions
+                : 4 + 12L * buffer.getInt(pos);
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("mapped " + format + " .sspace file in " +
+                (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * Returns the format of the file backing this space.
+     */
+    SSpaceFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<String> getWords() {
+        return Collections.unmodifiableSet(termToOffset.keySet());
+    }
+  
+    /**
+     * Returns a read-only view of the word's vector in the mapped file, or
+     * {@code null} if the word is not in the space.
+     */
+    public DoubleVector getVector(String word) {
+        Long offset = termToOffset.get(word);
+        if (offset == null)
+            return null;
+        return (format == SSpaceFormat.BINARY)
+            ? new MappedDoubleVector(buffer, offset, dimensions)
+            : new MappedSparseDoubleVector(buffer, offset, dimensions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getSpaceName() {
+        return spaceName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getVectorLength() {
+        return dimensions;
+    }
+
+    /**
+     * Not supported; throws an {@link UnsupportedOperationException} if called.
+     */
+    public void processDocument(BufferedReader document) { 
+        throw new UnsupportedOperationException(
+            "MappedSemanticSpace instances cannot be updated");
+    }
+
+    /**
+     * Not supported; throws an {@link UnsupportedOperationException} if called.
+     */
+    public void processSpace(Properties props) { 
+        throw new UnsupportedOperationException(
+            "MappedSemanticSpace instances cannot be updated");
+    }
+}
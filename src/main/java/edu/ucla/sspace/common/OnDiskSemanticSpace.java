@@ -40,7 +40,6 @@ import java.io.FileReader;
 import java.io.IOError;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
 
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -59,8 +58,14 @@ import java.util.logging.Logger;
  *
  * The performance of this class is dependent on the format of the backing
  * vector data; {@code .sspace} files in {@link SSpaceFormat#BINARY binary} or
- * {@link SSpaceFormat#SPARSE_BINARY sparse binary} format will likely be faster
- * for accessing the data due to it being in its native format.<p>
+ * {@link SSpaceFormat#SPARSE_BINARY sparse binary} format will be much faster
+ * for accessing the data due to it being in its native format.  These formats
+ * are memory-mapped using a {@link MappedSemanticSpace} and may be accessed
+ * concurrently without locking; each call to {@code getVector} returns a
+ * modifiable copy of the mapped data.  Callers that do not need to modify the
+ * vectors should use {@link MappedSemanticSpace} directly to avoid the
+ * copy.  The {@link SSpaceFormat#COLUMNAR columnar} formats are likewise
+ * mapped using a {@link ColumnarSemanticSpace}.<p>
  *
  * The {@code getWords} method will return words in the order they are stored on
  * disk.  Accessing the words in this order will have to a significant
@@ -81,9 +86,9 @@ public class OnDiskSemanticSpace implements SemanticSpace {
         Logger.getLogger(OnDiskSemanticSpace.class.getName());
 
     /**
-     * A mapping of terms to offsets in the file where the word will be found.
-     * If the {@code .sspace} is in binary, this will be a byte offset;
-     * otherwise it is a line number in the text file.
+     * A mapping of terms to the line number in the text file where the word
+     * will be found, or {@code null} if the {@code .sspace} file is in binary
+     * format.
      */
     private Map<String,Long> termToOffset;
     
@@ -115,10 +120,10 @@ public class OnDiskSemanticSpace implements SemanticSpace {
     private RandomAccessBufferedReader textSSpace;
 
     /**
-     * Byte access for a binary format {@code .sspace} file, or {@code null} if
-     * the {@code .sspace} file is in text format.
+     * The memory-mapped space for a binary or columnar format {@code .sspace}
+     * file, or {@code null} if the {@code .sspace} file is in text format.
      */
-    private RandomAccessFile binarySSpace;
+    private SemanticSpace binarySSpace;
 
     /**
      * The format of the file that backs this space.
@@ -193,32 +198,35 @@ public class OnDiskSemanticSpace implements SemanticSpace {
         this.format = format;
         spaceName = file.getName();
 
-        // NOTE: Use a LinkedHashMap here because this will ensure that the
-        // words are returned in the same row-order as the matrix.  This
-        // generates better disk I/O behavior for accessing the matrix since
-        // each word is directly after the previous on disk.
-        termToOffset = new LinkedHashMap<String,Long>();
         long start = System.currentTimeMillis();
         int dims = -1;
-        RandomAccessFile raf = null;
+        SemanticSpace mapped = null;
         RandomAccessBufferedReader lnr = null;
         switch (format) {
             case TEXT:
+                termToOffset = createOffsetMap();
                 lnr = new RandomAccessBufferedReader(file);
                 dims = loadTextOffsets(lnr);
                 break;
-            case BINARY:
-                raf = new RandomAccessFile(file, "r");
-                dims = loadBinaryOffsets(raf);
+            case BINARY: // fallthrough
+            case SPARSE_BINARY:
+                mapped = new MappedSemanticSpace(file, format, containsHeader);
+                dims = mapped.getVectorLength();
                 break;
             case SPARSE_TEXT:
+                termToOffset = createOffsetMap();
                 lnr = new RandomAccessBufferedReader(file);
                 dims = loadSparseTextOffsets(lnr);
                 break;
-            case SPARSE_BINARY:
-                raf = new RandomAccessFile(file, "r");
-                dims = loadSparseBinaryOffsets(raf);
+            case COLUMNAR: // fallthrough
+            case COLUMNAR_FLOAT:
+                mapped = new ColumnarSemanticSpace(file);
+                dims = mapped.getVectorLength();
                 break;
+            case QUANTIZED:
+                throw new IllegalArgumentException(
+                    "QUANTIZED spaces must be loaded with a " +
+                    "StaticSemanticSpace");
             default:
             assert false : format;
         }
@@ -228,10 +236,22 @@ public class OnDiskSemanticSpace implements SemanticSpace {
         }
     
         this.dimensions = dims;
-        this.binarySSpace = raf;
+        this.binarySSpace = mapped;
         this.textSSpace = lnr;
     }
 
+    /**
+     * Returns the map used to record the line number of each word in a
+     * text-based {@code .sspace} file.
+     */
+    private static Map<String,Long> createOffsetMap() {
+        // NOTE: Use a LinkedHashMap here because this will ensure that the
+        // words are returned in the same row-order as the matrix.  This
+        // generates better disk I/O behavior for accessing the matrix since
+        // each word is directly after the previous on disk.
+        return new LinkedHashMap<String,Long>();
+    }
+
     /**
      * Loads the {@link SemanticSpace} from the {@code TEXT} formatted file,
      * adding its words to {@link #termToOffset} and returning the number of
@@ -365,119 +385,13 @@ public class OnDiskSemanticSpace implements SemanticSpace {
         return row;
     }
 
-    /**
-     * Loads the {@link SemanticSpace} from the binary formatted file, adding
-     * its words to {@link #termToOffset} and returning the {@code Matrix}
-     * containing the space's vectors.
-     *
-     * @param sspaceFile a file in {@link SSpaceFormat#BINARY binary} format
-     */
-    private int loadBinaryOffsets(RandomAccessFile binarySSpace) 
-            throws IOException {
-
-        // Reader off the 4-byte header if it exists
-        if (containsHeader)
-            binarySSpace.readInt();
-    
-        int rows = binarySSpace.readInt();
-        int cols = binarySSpace.readInt();
-
-        for (int row = 0; row < rows; ++row) {
-            String word = binarySSpace.readUTF();
-            termToOffset.put(word, binarySSpace.getFilePointer());
-            // read and discard the rest of the vector
-            for (int col = 0; col < cols; ++col) {
-                binarySSpace.readDouble();
-            }
-        }
-        return cols;
-    }
-
-    /**
-     * Loads a vector from the backing semantic space file in {@code BINARY}
-     * format using the predetermined offet for the word.
-     *
-     * @param word a word in the semantic space
-     * @return the vector for the word or {@code null} if the word does not
-     *         exist in the semantic space
-     */
-    private double[] loadBinaryVector(String word) throws IOException {
-        Long byteOffset = termToOffset.get(word);
-        if (byteOffset == null)
-            return null;
-
-        binarySSpace.seek(byteOffset);
-
-        double[] vector = new double[dimensions];
-        
-        for (int col = 0; col < dimensions; ++col) {
-            vector[col] = binarySSpace.readDouble();
-        }
-
-        return vector;
-    }
-
-    /**
-     * Loads the {@link SemanticSpace} from the binary formatted file, adding
-     * its words to {@link #termToOffset} and returning the {@code Matrix}
-     * containing the space's vectors.
-     *
-     * @param sspaceFile a file in {@link SSpaceFormat#BINARY binary} format
-     */
-    private int loadSparseBinaryOffsets(RandomAccessFile binarySSpace) 
-            throws IOException {
-        // Reader off the 4-byte header if it exists
-        if (containsHeader) {
-             int header = binarySSpace.readInt();
-        }
-        int rows = binarySSpace.readInt();
-        int cols = binarySSpace.readInt();
-
-        for (long row = 0; row < rows; ++row) {
-            String word = binarySSpace.readUTF();
-            termToOffset.put(word, binarySSpace.getFilePointer());
-            
-            // read and discard the rest of the vector
-            int nonZero = binarySSpace.readInt();
-            for (int i = 0; i < nonZero; ++i) {
-                binarySSpace.readInt();
-                binarySSpace.readDouble();
-            }
-        }
-        return cols;
-    }
-
-    /**
-     * Loads a vector from the backing semantic space file in {@code
-     * SPARSE_BINARY} format using the predetermined offet for the word.
-     *
-     * @param word a word in the semantic space
-     * @return the vector for the word or {@code null} if the word does not
-     *         exist in the semantic space
-     */
-    private double[] loadSparseBinaryVector(String word) throws IOException {
-        Long byteOffset = termToOffset.get(word);
-        if (byteOffset == null)
-            return null;
-
-        binarySSpace.seek(byteOffset);
-                
-        int nonZero = binarySSpace.readInt();
-        double[] vector = new double[dimensions];
-        for (int i = 0; i < nonZero; ++i) {
-            int col = binarySSpace.readInt();
-            double val = binarySSpace.readDouble();
-            vector[col] = val;
-        }
-
-        return vector;
-    }
-
     /**
      * {@inheritDoc}
      */
     public Set<String> getWords() {
-        return Collections.unmodifiableSet(termToOffset.keySet());
+        return (binarySSpace != null)
+            ? binarySSpace.getWords()
+            : Collections.unmodifiableSet(termToOffset.keySet());
     }
   
     /**
@@ -486,17 +400,32 @@ public class OnDiskSemanticSpace implements SemanticSpace {
      * @throws IOError if any {@code IOException} occurs when reading the data
      *         from the underlying semantic space file.
      */
-    public synchronized Vector getVector(String word) {
+    public Vector getVector(String word) {
         try {
             switch (format) {
-            case TEXT:
-                return new DenseVector(loadTextVector(word));
-            case BINARY:
-                return new DenseVector(loadBinaryVector(word));
-            case SPARSE_TEXT:
-                return new CompactSparseVector(loadSparseTextVector(word));
+            case TEXT: {
+                double[] vector = null;
+                synchronized (textSSpace) {
+                    vector = loadTextVector(word);
+                }
+                return (vector == null) ? null : new DenseVector(vector);
+            }
+            case SPARSE_TEXT: {
+                double[] vector = null;
+                synchronized (textSSpace) {
+                    vector = loadSparseTextVector(word);
+                }
+                return (vector == null) 
+                    ? null : new CompactSparseVector(vector);
+            }
+            case BINARY: // fallthrough
             case SPARSE_BINARY:
-                return new CompactSparseVector(loadSparseBinaryVector(word));
+            case COLUMNAR:
+            case COLUMNAR_FLOAT:
+                // The mapped vectors are read-only views, so return a copy of
+                // the data to preserve the existing contract
+                Vector mapped = binarySSpace.getVector(word);
+                return (mapped == null) ? null : Vectors.copyOf(mapped);
             }
         } catch (IOException ioe) {
             // rethrow as something catastrophic must have happened to the
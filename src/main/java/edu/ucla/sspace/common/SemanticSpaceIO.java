@@ -25,10 +25,12 @@ import edu.ucla.sspace.util.SerializableUtil;
 
 import edu.ucla.sspace.vector.DoubleVector;
 import edu.ucla.sspace.vector.IntegerVector;
+import edu.ucla.sspace.vector.QuantizedVector;
 import edu.ucla.sspace.vector.SparseDoubleVector;
 import edu.ucla.sspace.vector.SparseVector;
 import edu.ucla.sspace.vector.Vector;
 import edu.ucla.sspace.vector.VectorIO;
+import edu.ucla.sspace.vector.Vectors;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
@@ -64,7 +66,12 @@ import java.util.logging.Logger;
  * try to determine whether its data will fit into memory.  If loading the space
  * would exceed the available memory, the space is only partially loaded and its
  * data stays on disk.  This allows users to load several semantic spaces at
- * once.
+ * once.  Spaces in the {@link SSpaceFormat#COLUMNAR COLUMNAR} and {@link
+ * SSpaceFormat#COLUMNAR_FLOAT COLUMNAR_FLOAT} formats are always memory-mapped
+ * with a {@link ColumnarSemanticSpace}, which opens even very large spaces
+ * almost immediately.  Spaces in the {@link SSpaceFormat#QUANTIZED QUANTIZED}
+ * format are always loaded into memory as {@link QuantizedVector} instances,
+ * which take an eighth of the memory of {@code double} values.
  *
  * <p>All of the {@code SemanticSpace} instances return by this class are thread
  * safe.  In addition they are all unmodifiable due to the limitations of
@@ -75,6 +82,7 @@ import java.util.logging.Logger;
  * @see SemanticSpace
  * @see StaticSemanticSpace
  * @see OnDiskSemanticSpace
+ * @see ColumnarSemanticSpace
  */
 public class SemanticSpaceIO {
 
@@ -85,10 +93,16 @@ public class SemanticSpaceIO {
      * The type of formatting to use when writing a semantic space to a file.
      * See <a
      * href="http://code.google.com/p/airhead-research/wiki/FileFormats">here</a>
-     * for file format specifications.
+     * for file format specifications.  The {@code COLUMNAR} and {@code
+     * COLUMNAR_FLOAT} formats store dense {@code double} and {@code float}
+     * vectors in shards that may be loaded concurrently; see {@link
+     * ColumnarSemanticSpace} for their layout.  The {@code QUANTIZED} format
+     * stores each dense vector as a {@code float} scale followed by one signed
+     * byte per value; see {@link QuantizedVector}.
      */
     public enum SSpaceFormat 
-        { TEXT, BINARY, SPARSE_TEXT, SPARSE_BINARY, SERIALIZE }
+        { TEXT, BINARY, SPARSE_TEXT, SPARSE_BINARY, SERIALIZE,
+          COLUMNAR, COLUMNAR_FLOAT, QUANTIZED }
 
     /**
      * Uninstantiable
@@ -120,7 +134,7 @@ public class SemanticSpaceIO {
         char encodedFormatCode = dis.readChar();
         int formatCode = encodedFormatCode - '0';
         dis.close();
-        return (formatCode < 0 || formatCode > SSpaceFormat.values().length)
+        return (formatCode < 0 || formatCode >= SSpaceFormat.values().length)
             ? SSpaceFormat.SERIALIZE
             : SSpaceFormat.values()[formatCode];                
     }
@@ -164,6 +178,16 @@ public class SemanticSpaceIO {
             // 3/4 to estimate
             inMemory = (long)(.75 * sspaceFileSize) < available;
             break;
+        case COLUMNAR:
+            inMemory = sspaceFileSize < available;
+            break;
+        case COLUMNAR_FLOAT:
+            // Values are widened to doubles when loaded into memory
+            inMemory = 2 * sspaceFileSize < available;
+            break;
+        case QUANTIZED:
+            inMemory = sspaceFileSize < available;
+            break;
         default:            
             assert false : format;
         }
@@ -233,6 +257,9 @@ public class SemanticSpaceIO {
      *        been written to disk
      * @param format the format of the {@link SemanticSpace} in the file
      *
+     * @throws IllegalArgumentException if {@code format} is {@link
+     *         SSpaceFormat#QUANTIZED} but the file does not contain the header
+     *         of that format
      * @throws IOException if any I/O exception occurs when reading the semantic
      *         space data from the file
      */
@@ -270,6 +297,26 @@ public class SemanticSpaceIO {
             LOGGER.fine("Loading serialized SemanticSpace from " + sspaceFile);
             return SerializableUtil.load(sspaceFile);
         }
+        // The columnar formats are always mapped, since doing so is faster
+        // than reading their data and only the words are kept on the heap
+        else if (ColumnarSemanticSpace.isColumnar(format)) {
+            LOGGER.fine("Mapping " + format + "-formatted .sspace file");
+            return new ColumnarSemanticSpace(sspaceFile);
+        }
+        // Quantized spaces are already compact, so they are kept in their
+        // compact form in memory, which is faster to search than reading
+        // them from disk.  The format has always been written with its
+        // header, so a file without one was not written in this format.
+        else if (format.equals(SSpaceFormat.QUANTIZED)) {
+            if (manuallySpecifiedFormat 
+                    && getFormat(sspaceFile) != SSpaceFormat.QUANTIZED)
+                throw new IllegalArgumentException(
+                    "The file " + sspaceFile.getName() + " does not contain " +
+                    "the header of a QUANTIZED-formatted .sspace file");
+            LOGGER.fine("Loading QUANTIZED-formatted .sspace file");
+            return new StaticSemanticSpace(
+                sspaceFile, StaticSemanticSpace.VectorStorage.QUANTIZED);
+        }
         // For SemanticSpace instances that have not been serialized, decide
         // whether they fit into memory before determing how to represent their
         // data
@@ -354,6 +401,15 @@ public class SemanticSpaceIO {
             LOGGER.fine("Saving " + sspace + " to disk as serialized object");
             SerializableUtil.save(sspace, output);
             break;
+        case COLUMNAR: // fallthrough
+        case COLUMNAR_FLOAT:
+            ColumnarSemanticSpace.write(
+                sspace, output, format, 
+                ColumnarSemanticSpace.DEFAULT_WORDS_PER_SHARD);
+            break;
+        case QUANTIZED:
+            writeQuantized(sspace, output);
+            break;
         default:
             assert false : format;
         }
@@ -625,4 +681,54 @@ public class SemanticSpaceIO {
         }
         dos.close();
     }
+
+    /**
+     * Writes the semantic space to the file using the {@code QUANTIZED}
+     * format.  Each vector is quantized separately with a {@link
+     * QuantizedVector}.
+     *
+     * @param sspace the semantic space to be written
+     * @param output the file into which the space will be written
+     *
+     * @throws IOException if any I/O exception occurs when reading the semantic
+     *         space data from the file
+     */
+    private static void writeQuantized(SemanticSpace sspace, File output) 
+            throws IOException {
+
+        DataOutputStream dos = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(output)));
+        Set<String> words = sspace.getWords();
+        // determine how many dimensions are used by the vectors
+        int dimensions = 0;
+        if (words.size() > 0) {
+            dimensions = sspace.getVectorLength();
+        }
+        writeHeader(dos, SSpaceFormat.QUANTIZED);
+        // write out how many vectors there are and the number of dimensions
+        dos.writeInt(words.size());
+        dos.writeInt(dimensions);
+        LOGGER.fine("saving quantized S-Space with " + words.size() + 
+                    " words with " + dimensions + "-dimensional vectors");
+
+        for (String word : words) {
+            dos.writeUTF(word);
+            writeQuantizedVector(dos, sspace.getVector(word));
+        }
+        dos.close();
+    }
+
+    /**
+     * Writes the vector in the {@code QUANTIZED} format as its scale followed
+     * by its quantized values, quantizing it first if necessary.
+     */
+    static void writeQuantizedVector(DataOutputStream dos, Vector v)
+            throws IOException {
+        QuantizedVector qv = (v instanceof QuantizedVector)
+            ? (QuantizedVector)v
+            : new QuantizedVector(Vectors.asDouble(v));
+        dos.writeFloat(qv.scale());
+        for (int i = 0; i < qv.length(); ++i)
+            dos.writeByte(qv.getQuantum(i));
+    }
 }
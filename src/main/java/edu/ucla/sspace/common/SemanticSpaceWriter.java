@@ -94,8 +94,16 @@ public class SemanticSpaceWriter {
      * @param sspaceFile the file to which the {@code SemanticSpace} will be
      *        written
      * @param format the format of the semantic space
+     *
+     * @throws IllegalArgumentException if the format cannot be written
+     *         incrementally
      */
     public SemanticSpaceWriter(File sspaceFile, SSpaceFormat format) {
+        // The columnar formats lay out their shards based on the number of
+        // words, which is unknown until the writer is closed.
+        if (ColumnarSemanticSpace.isColumnar(format))
+            throw new IllegalArgumentException(
+                format + " spaces cannot be written incrementally");
         this.outputFile = sspaceFile;
         this.format = format;
         try {
@@ -125,6 +133,7 @@ public class SemanticSpaceWriter {
             break;
         case BINARY: 
         case SPARSE_BINARY:
+        case QUANTIZED:
             raf.writeInt(vectorsSeen); // # of vectors
             raf.writeInt(vectorLength); // # of dimensions
             break;
@@ -215,6 +224,12 @@ public class SemanticSpaceWriter {
             break;
         }
 
+        case QUANTIZED: {
+            writer.writeUTF(word);
+            SemanticSpaceIO.writeQuantizedVector(writer, vector);
+            break;
+        }
+
         case SPARSE_BINARY: {
             writer.writeUTF(word);
             if (vector instanceof SparseVector) {
@@ -276,6 +291,7 @@ public class SemanticSpaceWriter {
             break;
         case BINARY: 
         case SPARSE_BINARY:
+        case QUANTIZED:
             writer.writeInt(0); // # of vectors
             writer.writeInt(0); // # of dimensions
             break;
@@ -37,9 +37,11 @@ import edu.ucla.sspace.util.DoubleEntry;
 import edu.ucla.sspace.util.IntegerEntry;
 
 import edu.ucla.sspace.vector.CompactSparseIntegerVector;
+import edu.ucla.sspace.vector.DenseFloatVector;
 import edu.ucla.sspace.vector.DenseVector;
 import edu.ucla.sspace.vector.DoubleVector;
 import edu.ucla.sspace.vector.IntegerVector;
+import edu.ucla.sspace.vector.QuantizedVector;
 import edu.ucla.sspace.vector.SparseVector;
 import edu.ucla.sspace.vector.Vector;
 import edu.ucla.sspace.vector.VectorMath;
@@ -377,10 +379,22 @@ public class Similarity {
         double aMagnitude = a.magnitude();
         double bMagnitude = b.magnitude();
 
+        // Check whether both vectors use a compact representation whose values
+        // can be multiplied directly, without widening each value separately
+        if (a instanceof QuantizedVector && b instanceof QuantizedVector
+                && a.length() == b.length()) {
+            dotProduct = ((QuantizedVector)a).dotProduct((QuantizedVector)b);
+        }
+        else if (a instanceof DenseFloatVector 
+                 && b instanceof DenseFloatVector
+                 && a.length() == b.length()) {
+            dotProduct = ((DenseFloatVector)a).dotProduct((DenseFloatVector)b);
+        }
+
         // Check whether both vectors support fast iteration over their non-zero
         // values.  If so, use only the non-zero indices to speed up the
         // computation by avoiding zero multiplications
-        if (a instanceof Iterable && b instanceof Iterable) {
+        else if (a instanceof Iterable && b instanceof Iterable) {
             // Check whether we can easily determine how many non-zero values
             // are in each vector.  This value is used to select the iteration
             // order, which affects the number of get(value) calls.
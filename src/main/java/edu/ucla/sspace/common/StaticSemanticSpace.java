@@ -29,6 +29,9 @@ import edu.ucla.sspace.matrix.Matrix;
 import edu.ucla.sspace.matrix.SparseMatrix;
 
 import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.DenseFloatVector;
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.QuantizedVector;
 import edu.ucla.sspace.vector.Vector;
 import edu.ucla.sspace.vector.Vectors;
 
@@ -69,6 +72,13 @@ import java.util.logging.Logger;
  *
  * This class is thread-safe
  *
+ * <p> By default, vectors are held as {@code double} values.  Spaces with
+ * dense vectors may instead be loaded with a more compact {@link
+ * VectorStorage}, which holds 2x ({@link VectorStorage#FLOAT FLOAT}) or 8x
+ * ({@link VectorStorage#QUANTIZED QUANTIZED}) as many words in the same
+ * memory.  In these modes, {@link #getVector(String) getVector} returns the
+ * stored vector itself, which should not be modified.
+ *
  * @see OnDiskSemanticSpace
  * @see SemanticSpaceUtils
  * @see SemanticSpaceUtils.SSpaceFormat
@@ -78,12 +88,54 @@ public class StaticSemanticSpace implements SemanticSpace {
     private static final Logger LOGGER = 
         Logger.getLogger(StaticSemanticSpace.class.getName());
 
+    /**
+     * How the values of the vectors are stored in memory.  The compact modes
+     * only apply to the dense formats; vectors loaded from the {@link
+     * SSpaceFormat#SPARSE_TEXT SPARSE_TEXT} and {@link
+     * SSpaceFormat#SPARSE_BINARY SPARSE_BINARY} formats are always stored
+     * sparsely as {@code double} values.
+     */
+    public enum VectorStorage {
+
+        /**
+         * Values are stored as {@code double}s in a single {@link Matrix}.
+         */
+        DOUBLE,
+
+        /**
+         * Each vector is stored as a {@link DenseFloatVector}.
+         */
+        FLOAT,
+
+        /**
+         * Each vector is stored as a {@link QuantizedVector}, whose values are
+         * signed bytes with a per-vector scale.
+         */
+        QUANTIZED
+    }
+
     /**
      * The {@code Matrix} which contains the data read from a finished {@link
      * SemanticSpace}.
      */
     private Matrix wordSpace;
 
+    /**
+     * The compactly stored vector of each row, or {@code null} if the vectors
+     * are stored in {@link #wordSpace}.
+     */
+    private DoubleVector[] vectors;
+
+    /**
+     * The length of the vectors in {@link #vectors}
+     */
+    private int vectorLength;
+
+    /**
+     * How the vectors of dense spaces are stored
+     */
+    private VectorStorage storage;
+
     /**
      * A mapping of terms to row indexes.  Also serves as a quick means of
      * retrieving the words known by this {@link SemanticSpace}.
@@ -117,11 +169,32 @@ public class StaticSemanticSpace implements SemanticSpace {
      *         space data from the file
      */
     public StaticSemanticSpace(File file) throws IOException {
+        this(file, VectorStorage.DOUBLE);
+    }
+
+    /**
+     * Creates the {@link StaticSemanticSpace} from the provided file, storing
+     * the vectors of dense spaces in the specified way.
+     *
+     * @param file a file containing the data of a {@link
+     *        edu.ucla.sspace.common.SemanticSpace}.
+     * @param storage how the values of the vectors are stored in memory
+     *
+     * @throws IOException if any I/O exception occurs when reading the semantic
+     *         space data from the file
+     */
+    public StaticSemanticSpace(File file, VectorStorage storage) 
+            throws IOException {
+        this.storage = storage;
         spaceName = file.getName();
         SSpaceFormat format = SemanticSpaceIO.getFormat(file);
         if (format == null)
             throw new Error("Unrecognzied format in " +
                             "file: " + file.getName());
+        if (ColumnarSemanticSpace.isColumnar(format)) {
+            loadColumnar(file);
+            return;
+        }
         DataInputStream dis = new DataInputStream(
             new BufferedInputStream(new FileInputStream(file)));
         // Read off the four byte header from the stream so the loading methods
@@ -143,12 +216,21 @@ public class StaticSemanticSpace implements SemanticSpace {
      *
      * @throws IOException if any I/O exception occurs when reading the semantic
      *         space data from the file
+     * @throws IllegalArgumentException if {@code format} is {@link
+     *         SSpaceFormat#SERIALIZE}
      */
     @Deprecated public StaticSemanticSpace(File file, SSpaceFormat format) 
             throws IOException {
+        storage = VectorStorage.DOUBLE;
+        spaceName = file.getName();
+        // The columnar formats always include their header, which the
+        // columnar reader expects
+        if (ColumnarSemanticSpace.isColumnar(format)) {
+            loadColumnar(file);
+            return;
+        }
         loadFromFormat(new BufferedInputStream(
                            new FileInputStream(file)), format);
-        spaceName = file.getName();
     }
 
     /**
@@ -157,6 +239,10 @@ public class StaticSemanticSpace implements SemanticSpace {
      *
      * @param is the input stream from which the semantic space will be read
      * @param format the internal data formatting of the semantic space
+     *
+     * @throws IllegalArgumentException if the format cannot be read from a
+     *         stream, which is the case for the {@link SSpaceFormat#SERIALIZE
+     *         serialized} and columnar formats
      */
     private void loadFromFormat(InputStream is, SSpaceFormat format)
             throws IOException {
@@ -170,10 +256,10 @@ public class StaticSemanticSpace implements SemanticSpace {
 
             switch (format) {
             case TEXT:
-                m = Matrices.synchronizedMatrix(loadText(is));
+                m = loadText(is);
                 break;
             case BINARY:
-                m = Matrices.synchronizedMatrix(loadBinary(is));
+                m = loadBinary(is);
                 break;
             
             // REMINDER: we don't use synchronized here because the current
@@ -186,7 +272,20 @@ public class StaticSemanticSpace implements SemanticSpace {
             case SPARSE_BINARY:
                 m = loadSparseBinary(is);
                 break;
+            case QUANTIZED:
+                m = loadQuantized(is);
+                break;
+            default:
+                throw new IllegalArgumentException(
+                    "Cannot load a " + format + "-formatted .sspace file " +
+                    "from a stream");
         }
+        // Only the dense matrices need to be synchronized.  Spaces whose
+        // vectors are stored compactly have no matrix.
+        if (m != null && (format == SSpaceFormat.TEXT 
+                          || format == SSpaceFormat.BINARY
+                          || format == SSpaceFormat.QUANTIZED))
+            m = Matrices.synchronizedMatrix(m);
                     
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("loaded " + format + " .sspace file in " +
@@ -195,6 +294,52 @@ public class StaticSemanticSpace implements SemanticSpace {
         wordSpace = m;
     }
 
+    /**
+     * Loads the {@link SemanticSpace} from the columnar formatted file.  The
+     * words and vectors of each shard in the file are read concurrently.
+     *
+     * @param file a file in {@link SSpaceFormat#COLUMNAR columnar} or {@link
+     *        SSpaceFormat#COLUMNAR_FLOAT single-precision columnar} format
+     */
+    private void loadColumnar(File file) throws IOException {
+        long start = System.currentTimeMillis();
+        ColumnarSemanticSpace mapped = new ColumnarSemanticSpace(file);
+        String[] words = mapped.getWordsInOrder();
+        int cols = mapped.getVectorLength();
+        // NOTE: see loadFromFormat for why this is a LinkedHashMap
+        termToIndex = new LinkedHashMap<String, Integer>();
+        if (isCompact()) {
+            // Compact each vector separately to avoid holding all the values
+            // as doubles at once
+            startCompact(words.length, cols);
+            for (int row = 0; row < words.length; ++row) {
+                termToIndex.put(words[row], row);
+                vectors[row] = compact(mapped.getVector(words[row]).toArray());
+            }
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("loaded " + mapped.getFormat() + " .sspace file " +
+                            "as " + storage + " vectors in " +
+                            (System.currentTimeMillis() - start) + "ms");
+            }
+            return;
+        }
+        if ((long)words.length * cols > Integer.MAX_VALUE)
+            throw new IOException("The space in " + file + " is too large to "
+                                  + "load into memory; use a "
+                                  + "ColumnarSemanticSpace instead");
+        double[] values = new double[words.length * cols];
+        mapped.copyValues(values);
+        for (int row = 0; row < words.length; ++row)
+            termToIndex.put(words[row], row);
+        wordSpace = Matrices.synchronizedMatrix(
+            new ArrayMatrix(words.length, cols, values));
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("loaded " + mapped.getFormat() + " .sspace file with "
+                        + mapped.getShardCount() + " shards in " +
+                        (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
     /**
      * Loads the {@link SemanticSpace} from the text formatted file, adding its
      * words to {@link #termToIndex} and returning the {@code Matrix} containing
@@ -219,7 +364,10 @@ public class StaticSemanticSpace implements SemanticSpace {
         // reusable array for writing rows into the matrix
         double[] row = new double[columns];
         
-        matrix = new ArrayMatrix(rows, columns);
+        if (isCompact())
+            startCompact(rows, columns);
+        else
+            matrix = new ArrayMatrix(rows, columns);
 
         while ((line = br.readLine()) != null) {
             if (index >= rows)
@@ -236,7 +384,10 @@ public class StaticSemanticSpace implements SemanticSpace {
                 row[c] = d;
                 // matrix.set(index, c, d);
             }
-            matrix.setRow(index, row);
+            if (isCompact())
+                vectors[index] = compact(row);
+            else
+                matrix.setRow(index, row);
             index++;
         }
         if (index != rows)
@@ -297,8 +448,12 @@ public class StaticSemanticSpace implements SemanticSpace {
         int rows = dis.readInt();
         int cols = dis.readInt();
 
-        // create a dense matrix
-        Matrix m = new ArrayMatrix(rows, cols);
+        // create a dense matrix, unless the rows are stored compactly
+        Matrix m = null;
+        if (isCompact())
+            startCompact(rows, cols);
+        else
+            m = new ArrayMatrix(rows, cols);
         double[] d = new double[cols];
         for (int row = 0; row < rows; ++row) {
             String word = dis.readUTF();
@@ -307,7 +462,10 @@ public class StaticSemanticSpace implements SemanticSpace {
             for (int col = 0; col < cols; ++col) {
                 d[col] = dis.readDouble();
             }
-            m.setRow(row, d);
+            if (isCompact())
+                vectors[row] = compact(d);
+            else
+                m.setRow(row, d);
         }
         return m;
     }
@@ -346,6 +504,68 @@ public class StaticSemanticSpace implements SemanticSpace {
         return Matrices.asSparseMatrix(Arrays.asList(rowVectors));
     }
 
+    /**
+     * Loads the {@link SemanticSpace} from the quantized formatted file,
+     * adding its words to {@link #termToIndex} and returning the {@code
+     * Matrix} containing the space's vectors, or {@code null} if they are
+     * stored compactly.
+     *
+     * @param sspaceFile a file in {@link SSpaceFormat#QUANTIZED quantized}
+     *        format
+     */
+    private Matrix loadQuantized(InputStream fileStream) throws IOException {
+        DataInputStream dis = new DataInputStream(fileStream);
+        int rows = dis.readInt();
+        int cols = dis.readInt();
+
+        Matrix m = null;
+        if (isCompact())
+            startCompact(rows, cols);
+        else
+            m = new ArrayMatrix(rows, cols);
+        byte[] quanta = new byte[cols];
+        for (int row = 0; row < rows; ++row) {
+            String word = dis.readUTF();
+            termToIndex.put(word, row);
+            float scale = dis.readFloat();
+            dis.readFully(quanta);
+            QuantizedVector v = new QuantizedVector(quanta, scale);
+            if (storage == VectorStorage.QUANTIZED)
+                vectors[row] = v;
+            else if (storage == VectorStorage.FLOAT)
+                vectors[row] = new DenseFloatVector(v);
+            else
+                m.setRow(row, v.toArray());
+        }
+        return m;
+    }
+
+    /**
+     * Returns {@code true} if the vectors are stored in {@link #vectors}
+     * rather than in a matrix.
+     */
+    private boolean isCompact() {
+        return storage != VectorStorage.DOUBLE;
+    }
+
+    /**
+     * Allocates the space for compactly storing the specified number of
+     * vectors.
+     */
+    private void startCompact(int rows, int columns) {
+        vectors = new DoubleVector[rows];
+        vectorLength = columns;
+    }
+
+    /**
+     * Returns the values as a vector in the compact {@link #storage} format.
+     */
+    private DoubleVector compact(double[] values) {
+        return (storage == VectorStorage.FLOAT)
+            ? new DenseFloatVector(values)
+            : new QuantizedVector(values);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -358,9 +578,11 @@ public class StaticSemanticSpace implements SemanticSpace {
      */
     public Vector getVector(String term) {
         Integer index = termToIndex.get(term);
-        return (index == null)
-            ? null
-            : wordSpace.getRowVector(index.intValue());
+        if (index == null)
+            return null;
+        return (vectors == null)
+            ? wordSpace.getRowVector(index.intValue())
+            : vectors[index.intValue()];
     }
 
     /**
@@ -374,7 +596,7 @@ public class StaticSemanticSpace implements SemanticSpace {
      * {@inheritDoc}
      */
     public int getVectorLength() {
-        return wordSpace.columns();
+        return (vectors == null) ? wordSpace.columns() : vectorLength;
     }
 
     /**
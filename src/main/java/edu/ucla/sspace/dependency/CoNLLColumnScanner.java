@@ -0,0 +1,218 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.dependency;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+
+/**
+ * A scanner over the lines of a file in the <a
+ * href="http://nextens.uvt.nl/depparse-wiki/DataFormat">CoNLL format</a> that
+ * locates the tab-separated columns of each line without splitting it.
+ * Columns are then parsed in place, so numeric columns and labels that are
+ * already in a {@link LabelTable} are read without creating any intermediate
+ * strings.  Columns are split in the same way as {@code
+ * line.trim().split("\t")}.
+ *
+ * <p> A scanner is reused for every line it reads and is not thread-safe.
+ *
+ * @author David Jurgens
+ */
+class CoNLLColumnScanner {
+
+    /**
+     * The current line
+     */
+    private String line;
+
+    /**
+     * The index in {@code line} at which each column starts
+     */
+    private int[] starts;
+
+    /**
+     * The index in {@code line} after the last character of each column
+     */
+    private int[] ends;
+
+    /**
+     * The number of columns in the current line
+     */
+    private int numColumns;
+
+    /**
+     * Creates a new scanner that has not read any lines.
+     */
+    public CoNLLColumnScanner() {
+        starts = new int[16];
+        ends = new int[16];
+        numColumns = 0;
+    }
+
+    /**
+     * Reads the next line from the reader and locates its columns.
+     *
+     * @return {@code true} if a line was read, or {@code false} if the reader
+     *         has no further lines
+     */
+    public boolean next(BufferedReader reader) throws IOException {
+        line = reader.readLine();
+        numColumns = 0;
+        if (line == null)
+            return false;
+
+        // Skip the leading and trailing whitespace, like String.trim()
+        int start = 0;
+        int end = line.length();
+        while (start < end && line.charAt(start) <= ' ')
+            start++;
+        while (end > start && line.charAt(end - 1) <= ' ')
+            end--;
+        if (start == end)
+            return true;
+
+        for (int tab; (tab = line.indexOf('\t', start)) >= 0 && tab < end; ) {
+            addColumn(start, tab);
+            start = tab + 1;
+        }
+        addColumn(start, end);
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the current line contains only whitespace.
+     */
+    public boolean isBlank() {
+        return numColumns == 0;
+    }
+
+    /**
+     * Returns the number of columns in the current line.
+     */
+    public int numColumns() {
+        return numColumns;
+    }
+
+    /**
+     * Returns the current line, trimmed of its surrounding whitespace.
+     */
+    public String line() {
+        return (numColumns == 0) 
+            ? "" 
+            : line.substring(starts[0], ends[numColumns - 1]);
+    }
+
+    /**
+     * Returns the contents of the column.
+     */
+    public String column(int column) {
+        checkColumn(column);
+        return line.substring(starts[column], ends[column]);
+    }
+
+    /**
+     * Returns {@code true} if the column contains exactly the provided string.
+     */
+    public boolean columnEquals(int column, String s) {
+        checkColumn(column);
+        int length = ends[column] - starts[column];
+        return s.length() == length 
+            && line.regionMatches(starts[column], s, 0, length);
+    }
+
+    /**
+     * Returns the integer value of the column, as parsed by {@link
+     * Integer#parseInt(String)}.
+     *
+     * @throws NumberFormatException if the column is not an integer
+     */
+    public int intColumn(int column) {
+        checkColumn(column);
+        int i = starts[column];
+        int end = ends[column];
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        if (i == end)
+            throw invalidInt(column);
+        // Accumulate the value as a negative number, whose range includes
+        // Integer.MIN_VALUE
+        long limit = (negative) ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        long value = 0;
+        for (; i < end; ++i) {
+            int digit = Character.digit(line.charAt(i), 10);
+            if (digit < 0)
+                throw invalidInt(column);
+            value = value * 10 - digit;
+            if (value < limit)
+                throw invalidInt(column);
+        }
+        return (int)((negative) ? value : -value);
+    }
+
+    /**
+     * Returns the code of the column's contents in the label table, adding the
+     * contents to the table if they have not been seen before.
+     */
+    public int internColumn(int column, LabelTable labels) {
+        checkColumn(column);
+        return labels.intern(line, starts[column], ends[column]);
+    }
+
+    /**
+     * Records the region of the line for the next column.
+     */
+    private void addColumn(int start, int end) {
+        if (numColumns == starts.length) {
+            int[] s = new int[starts.length * 2];
+            int[] e = new int[ends.length * 2];
+            System.arraycopy(starts, 0, s, 0, numColumns);
+            System.arraycopy(ends, 0, e, 0, numColumns);
+            starts = s;
+            ends = e;
+        }
+        starts[numColumns] = start;
+        ends[numColumns] = end;
+        numColumns++;
+    }
+
+    /**
+     * Throws an {@link ArrayIndexOutOfBoundsException} if the current line
+     * does not have the column, which matches accessing a missing column in
+     * the result of {@link String#split(String)}.
+     */
+    private void checkColumn(int column) {
+        if (column < 0 || column >= numColumns)
+            throw new ArrayIndexOutOfBoundsException(column);
+    }
+
+    /**
+     * Returns the exception thrown when a column does not contain an integer.
+     */
+    private NumberFormatException invalidInt(int column) {
+        return new NumberFormatException(
+            "For input string: \"" + column(column) + "\"");
+    }
+}
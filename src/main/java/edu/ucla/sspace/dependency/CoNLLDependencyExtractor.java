@@ -25,19 +25,13 @@ import edu.ucla.sspace.text.IteratorFactory;
 import edu.ucla.sspace.text.Stemmer;
 import edu.ucla.sspace.text.TokenFilter;
 
-import edu.ucla.sspace.util.Duple;
-import edu.ucla.sspace.util.MultiMap;
-import edu.ucla.sspace.util.HashMultiMap;
-
 import java.io.BufferedReader;
 import java.io.IOError;
 import java.io.IOException;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -74,6 +68,15 @@ import org.w3c.dom.NodeList;
  * IteratorFactory#EMPTY_TOKEN} to indicate that the node's text was filtered
  * out.  Note that the node will still have the original part of speech.
  *
+ * </p>
+ *
+ * Lines are scanned in place rather than split into columns, and the part of
+ * speech tags and relations are interned in a {@link LabelTable}, so that every
+ * node and relation with the same label shares a single {@code String}.  For
+ * large corpora, {@link #readNextTrees(BufferedReader, DependencyTreeBatch)}
+ * reads many sentences at once while reusing the nodes of earlier sentences.
+ * This class is thread-safe.
+ *
  * @author Keith Stevens
  */
 public class CoNLLDependencyExtractor implements DependencyExtractor {
@@ -121,6 +124,27 @@ public class CoNLLDependencyExtractor implements DependencyExtractor {
      */
     private final int relationIndex;
 
+    /**
+     * The codes for each part of speech tag seen while reading trees.
+     */
+    private final LabelTable posLabels = new LabelTable();
+
+    /**
+     * The codes for each relation seen while reading trees.
+     */
+    private final LabelTable relationLabels = new LabelTable();
+
+    /**
+     * The storage used by each thread for the columns of the sentence that it
+     * is currently reading.
+     */
+    private final ThreadLocal<SentenceBuffer> buffers = 
+        new ThreadLocal<SentenceBuffer>() {
+            protected SentenceBuffer initialValue() {
+                return new SentenceBuffer();
+            }
+        };
+
     /**
      * Creates a new {@link CoNLLDependencyExtractor} that assumes the default
      * ordering for {@code Malt} dependency parses.
@@ -262,123 +286,167 @@ public class CoNLLDependencyExtractor implements DependencyExtractor {
      */
     public DependencyTreeNode[] readNextTree(BufferedReader reader) 
             throws IOException {
-        List<SimpleDependencyTreeNode> nodes =
-            new ArrayList<SimpleDependencyTreeNode>();
+        SentenceBuffer buffer = buffers.get();
+        int size = readSentence(reader, buffer);
+        if (size == 0)
+            return null;
+
+        SimpleDependencyTreeNode[] nodes = new SimpleDependencyTreeNode[size];
+        for (int i = 0; i < size; ++i)
+            nodes[i] = new SimpleDependencyTreeNode(
+                buffer.words[i], posLabels.label(buffer.posCodes[i]),
+                buffer.lemmas[i], i);
+        linkNodes(nodes, buffer, size);
+        return nodes;
+    }
+
+    /**
+     * Replaces the contents of the batch with the next dependency parse trees
+     * from the provided reader, reading until either the batch is full or the
+     * reader has no further trees.  The trees are identical to those returned
+     * by {@link #readNextTree(BufferedReader)}, except that their nodes are
+     * reused from the trees previously read into the batch.  Therefore, the
+     * trees are only valid until the batch is next read into.
+     *
+     * @param reader a reader containing one or more parse trees in the CoNLL
+     *        format
+     * @param batch the batch into which the trees are read
+     *
+     * @return the number of trees read, which is {@code 0} once the reader has
+     *         no further trees
+     *
+     * @throws IOException when errors are encountered during reading
+     */
+    public int readNextTrees(BufferedReader reader, DependencyTreeBatch batch)
+            throws IOException {
+        batch.clear();
+        SentenceBuffer buffer = buffers.get();
+        int size = 0;
+        while (!batch.isFull() && (size = readSentence(reader, buffer)) > 0) {
+            SimpleDependencyTreeNode[] nodes = batch.add(size);
+            for (int i = 0; i < size; ++i)
+                nodes[i].reset(buffer.words[i], 
+                               posLabels.label(buffer.posCodes[i]),
+                               buffer.lemmas[i], i);
+            linkNodes(nodes, buffer, size);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Returns the table of codes for the part of speech tags seen by this
+     * extractor.
+     */
+    public LabelTable getPartOfSpeechLabels() {
+        return posLabels;
+    }
 
-        // When building the tree, keep track of all the relations seen between
-        // the nodes.  The nodes need to be linked by DependencyRelations, which
-        // need DependencyTreeNode instances.  However, during parsing, we may
-        // encounter a forward reference to a Node not yet created, so the map
-        // ensures that the relation will still be added.
-        MultiMap<Integer,Duple<Integer,String>> relationsToAdd 
-            = new HashMultiMap<Integer,Duple<Integer,String>>();
+    /**
+     * Returns the table of codes for the relations seen by this extractor.
+     */
+    public LabelTable getRelationLabels() {
+        return relationLabels;
+    }
 
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Reads the lines of the next sentence in the reader into the buffer.
+     *
+     * @return the number of nodes in the sentence, or {@code 0} if the reader
+     *         has no further sentences
+     */
+    private int readSentence(BufferedReader reader, SentenceBuffer buffer) 
+            throws IOException {
+        CoNLLColumnScanner scanner = buffer.scanner;
+        int requiredColumns = 1 + Math.max(
+            Math.max(idIndex, formIndex), 
+            Math.max(Math.max(lemmaIndex, posIndex), 
+                     Math.max(parentIndex, relationIndex)));
 
         // Read each line in the document to extract the feature set for each
         // word in the sentence.
-        int id = 0;
+        int size = 0;
         int offset = 0;
-        for (String line = null; ((line = reader.readLine()) != null); ) {
-            line = line.trim();
-
+        while (scanner.next(reader)) {
             // If a new line is encountered and no lines have been handled yet,
-            // skip all new lines.
-            if (line.length() == 0 && nodes.size() == 0)
-                continue;
-
-            // If a new line is encountered and lines have already been
-            // processed, we have finished processing the entire sentence and
-            // can stop.
-            if (line.length() == 0)
+            // skip all new lines.  Otherwise, we have finished processing the
+            // entire sentence and can stop.
+            if (scanner.isBlank()) {
+                if (size == 0)
+                    continue;
                 break;
+            }
 
-            sb.append(line).append("\n");
-
-            // CoNLL formats using tabs between features.
-            String[] nodeFeatures = line.split("\t");
-            
             // Sanity check that we have enough columns to support parsing
-            if (nodeFeatures.length - 1 < idIndex) {
+            if (scanner.numColumns() < requiredColumns) {
                 reader.close();
                 throw new IllegalStateException("While parsing, found line with"
-                    + " too few columns.  Missing node id columns.  Offending "+
-                    "line:\n" + line);
+                    + " too few columns.  Expected " + requiredColumns + 
+                    " columns.  Offending line:\n" + scanner.line());
             }
 
             // Multiple parse trees may be within the same set of lines, so in
             // order for the later parse trees to be linked correctly, we need
             // to create an offset for the parent ids.
-            int realId = Integer.parseInt(nodeFeatures[idIndex]);
-            if ((realId == 0 && nodes.size() != offset) ||
-                (realId == 1 &&
-                 nodes.size() != offset && nodes.size() != offset+1))
-                offset = nodes.size();
-
-            // Get the node id and the parent node id.
-            int parent =
-                Integer.parseInt(nodeFeatures[parentIndex]) - 1 + offset;
-
-            String word = getWord(nodeFeatures);
-
-            String lemma = getLemma(nodeFeatures, word);
-
-            // Get the part of speech of the node.
-            String pos = nodeFeatures[posIndex];
-
-            // Get the relation between this node and it's head node.
-            String rel = nodeFeatures[relationIndex];
-
-            // Create the new relation.
-            SimpleDependencyTreeNode curNode = 
-                new SimpleDependencyTreeNode(word, pos, lemma, id);
-
-            // Set the dependency link between this node and it's parent node.
-            // If the parent's real index  is negative then the node itself is a
-            // root node and has no parent.
-            if (parent - offset > 0) {
-                // If the parent has already been seen, add the relation
-                // directly.
-                if (parent < nodes.size()) {
-                    SimpleDependencyTreeNode parentNode = nodes.get(parent);
-                    DependencyRelation r = new SimpleDependencyRelation(
-                        parentNode, rel, curNode);
-                    parentNode.addNeighbor(r);
-                    curNode.addNeighbor(r);
-                }
-                // Otherwise, we'll fill in this link once the tree is has been
-                // fully seen.
-                else { 
-                    relationsToAdd.put(id,
-                        new Duple<Integer,String>(parent, rel));
-                }
-            }
-            
-            // Finally, add the current node to the
-            nodes.add(curNode);
-            id++;
+            int realId = scanner.intColumn(idIndex);
+            if ((realId == 0 && size != offset) ||
+                (realId == 1 && size != offset && size != offset+1))
+                offset = size;
+
+            // Get the parent node id.
+            int parent = scanner.intColumn(parentIndex) - 1 + offset;
+
+            buffer.ensureCapacity(size + 1);
+            String word = getWord(scanner);
+            buffer.words[size] = word;
+            buffer.lemmas[size] = getLemma(scanner, word);
+            buffer.posCodes[size] = scanner.internColumn(posIndex, posLabels);
+            buffer.relationCodes[size] = 
+                scanner.internColumn(relationIndex, relationLabels);
+
+            // If the parent's real index is not positive then the node itself
+            // is a root node and has no parent.
+            buffer.parents[size] = (parent - offset > 0) ? parent : -1;
+            size++;
         }
+        return size;
+    }
 
-        if (nodes.size() == 0)
-            return null;
-
-        if (relationsToAdd.size() > 0) {
-            // Process all the child links that were not handled during the
-            // processing of the words.
-            for (Map.Entry<Integer,Duple<Integer,String>> parentAndRel :
-                     relationsToAdd.entrySet()) {
-                SimpleDependencyTreeNode dep = nodes.get(parentAndRel.getKey());
-                Duple<Integer,String> d = parentAndRel.getValue();
-                SimpleDependencyTreeNode head = nodes.get(d.x);
-                DependencyRelation r = new SimpleDependencyRelation(
-                    head, d.y, dep);
-                head.addNeighbor(r);
-                dep.addNeighbor(r);                
-            }
+    /**
+     * Adds the relation between each node in the sentence and its parent.
+     * Relations to parents that precede their dependent are added first, in
+     * the order of the dependents, followed by those to parents that have not
+     * been seen when the dependent is read, which is the order in which the
+     * relations would be found by reading the lines one at a time.
+     */
+    private void linkNodes(SimpleDependencyTreeNode[] nodes, 
+                           SentenceBuffer buffer, int size) {
+        for (int i = 0; i < size; ++i) {
+            int parent = buffer.parents[i];
+            if (parent >= 0 && parent < i)
+                link(nodes, buffer, parent, i);
         }
+        for (int i = 0; i < size; ++i) {
+            int parent = buffer.parents[i];
+            if (parent >= i)
+                link(nodes, buffer, parent, i);
+        }
+    }
 
-        return nodes.toArray(
-                new SimpleDependencyTreeNode[nodes.size()]);
+    /**
+     * Adds the relation between the parent and dependent to both nodes.
+     */
+    private void link(SimpleDependencyTreeNode[] nodes, SentenceBuffer buffer,
+                      int parent, int dependent) {
+        if (parent >= nodes.length)
+            throw new IllegalStateException(
+                "Node " + dependent + " has a parent outside of the sentence: "
+                + parent);
+        SimpleDependencyTreeNode head = nodes[parent];
+        SimpleDependencyTreeNode dep = nodes[dependent];
+        DependencyRelation r = new SimpleDependencyRelation(
+            head, relationLabels.label(buffer.relationCodes[dependent]), dep);
+        head.addNeighbor(r);
+        dep.addNeighbor(r);
     }
 
     /**
@@ -389,19 +457,70 @@ public class CoNLLDependencyExtractor implements DependencyExtractor {
      * Stemmer} is provided with a preference given to the parser provided
      * lemma.  If neither case holds, the original term is returned.
      */
-    private String getWord(String[] nodeFeatures) {
-        String word = nodeFeatures[formIndex];
+    private String getWord(CoNLLColumnScanner scanner) {
+        String word = scanner.column(formIndex);
         // Filter if neccessary.
         if (filter != null && !filter.accept(word))
             return IteratorFactory.EMPTY_TOKEN;
         return word;
     }
 
-    private String getLemma(String[] nodeFeatures, String word) {
+    private String getLemma(CoNLLColumnScanner scanner, String word) {
         // Get the lemma and check it's value.  Stem if needed.
-        String lemma = nodeFeatures[lemmaIndex];
-        if (lemma.equals("_"))
+        if (scanner.columnEquals(lemmaIndex, "_"))
             return (stemmer == null) ? word : stemmer.stem(word);
-        return lemma;
+        return scanner.column(lemmaIndex);
+    }
+
+    /**
+     * The columns of the nodes in the sentence currently being read by a
+     * thread, which are kept between sentences to avoid reallocating them.
+     */
+    private static class SentenceBuffer {
+
+        /**
+         * The scanner for the lines of the sentence
+         */
+        final CoNLLColumnScanner scanner = new CoNLLColumnScanner();
+
+        /**
+         * The word of each node
+         */
+        String[] words = new String[0];
+
+        /**
+         * The lemma of each node
+         */
+        String[] lemmas = new String[0];
+
+        /**
+         * The code of each node's part of speech tag
+         */
+        int[] posCodes = new int[0];
+
+        /**
+         * The code of the relation between each node and its parent
+         */
+        int[] relationCodes = new int[0];
+
+        /**
+         * The index of each node's parent, or {@code -1} for a root node
+         */
+        int[] parents = new int[0];
+
+        /**
+         * Ensures that the buffer can hold at least the specified number of
+         * nodes.
+         */
+        void ensureCapacity(int size) {
+            if (size <= words.length)
+                return;
+            int capacity = Math.max(size, Math.max(64, words.length * 2));
+            words = Arrays.copyOf(words, capacity);
+            lemmas = Arrays.copyOf(lemmas, capacity);
+            posCodes = Arrays.copyOf(posCodes, capacity);
+            relationCodes = Arrays.copyOf(relationCodes, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+        }
     }
 }
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.dependency;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+
+/**
+ * An enumerator of all the paths in a dependency tree that start at a given
+ * node.  Unlike {@link DependencyIterator} and {@link
+ * FilteredDependencyIterator}, which create a new {@link DependencyPath} for
+ * every path they expand, this class walks the tree depth-first using a
+ * reusable stack of the nodes and relations on the current path.  Each
+ * accepted path is passed to a {@link DependencyPathHandler} as a view of this
+ * stack, so enumerating the paths does not allocate any objects per path.
+ *
+ * </p>
+ *
+ * Paths are pruned at the first relation rejected by the {@link
+ * DependencyRelationAcceptor}, as with {@code DependencyIterator}.  The
+ * remaining paths are then filtered by the {@link DependencyPathAcceptor},
+ * which, as with {@code FilteredDependencyIterator}, does not prevent a
+ * rejected path from being extended.  Paths are found in depth-first order,
+ * rather than the breadth-first order of the iterators.
+ *
+ * </p>
+ *
+ * This class is not thread-safe.  Each thread should use its own instance.
+ *
+ * @author David Jurgens
+ */
+public class DependencyPathEnumerator {
+
+    /**
+     * The maximum number of relations in an enumerated path
+     */
+    private final int maxPathLength;
+
+    /**
+     * The acceptor that decides whether a relation may be traversed
+     */
+    private final DependencyRelationAcceptor relationAcceptor;
+
+    /**
+     * The acceptor that decides whether a path is passed to the handler
+     */
+    private final DependencyPathAcceptor pathAcceptor;
+
+    /**
+     * The weighting used to score each accepted path
+     */
+    private final DependencyPathWeight weighter;
+
+    /**
+     * The nodes on the current path, where {@code nodes[0]} is the starting
+     * node.
+     */
+    private DependencyTreeNode[] nodes;
+
+    /**
+     * The relations on the current path, where {@code relations[i]} connects
+     * {@code nodes[i]} and {@code nodes[i+1]}.
+     */
+    private DependencyRelation[] relations;
+
+    /**
+     * The number of relations on the current path
+     */
+    private int length;
+
+    /**
+     * The view of the current path that is passed to the handler
+     */
+    private final StackPath path;
+
+    /**
+     * The handler for the current enumeration
+     */
+    private DependencyPathHandler handler;
+
+    /**
+     * The number of paths passed to the handler in the current enumeration
+     */
+    private int numPaths;
+
+    /**
+     * Creates an enumerator for all paths up to the maximum length whose
+     * relations are accepted by {@code acceptor}.  Every path has a weight of
+     * {@code 1}.
+     *
+     * @throws IllegalArgumentException if {@code maxPathLength} is less than 1
+     */
+    public DependencyPathEnumerator(DependencyRelationAcceptor acceptor,
+                                    int maxPathLength) {
+        this(acceptor, new UniversalPathAcceptor(), new FlatPathWeight(),
+             maxPathLength);
+    }
+
+    /**
+     * Creates an enumerator for all paths up to the maximum length that are
+     * accepted by {@code acceptor} and weighted by {@code weighter}.
+     *
+     * @throws IllegalArgumentException if {@code maxPathLength} is less than 1
+     */
+    public DependencyPathEnumerator(DependencyPathAcceptor acceptor,
+                                    DependencyPathWeight weighter,
+                                    int maxPathLength) {
+        this(new UniversalRelationAcceptor(), acceptor, weighter, 
+             maxPathLength);
+    }
+
+    /**
+     * Creates an enumerator for all paths up to the maximum length whose
+     * relations are accepted by {@code relationAcceptor}, and that are
+     * themselves accepted by {@code pathAcceptor}, which are weighted by
+     * {@code weighter}.
+     *
+     * @throws IllegalArgumentException if {@code maxPathLength} is less than 1
+     */
+    public DependencyPathEnumerator(DependencyRelationAcceptor relationAcceptor,
+                                    DependencyPathAcceptor pathAcceptor,
+                                    DependencyPathWeight weighter,
+                                    int maxPathLength) {
+        if (maxPathLength < 1)
+            throw new IllegalArgumentException(
+                "Must specify a path length greater than or equal to 1");
+        this.relationAcceptor = relationAcceptor;
+        this.pathAcceptor = pathAcceptor;
+        this.weighter = weighter;
+        this.maxPathLength = maxPathLength;
+        // The stack grows as needed, so avoid allocating a large stack for
+        // unbounded path lengths
+        int capacity = Math.min(maxPathLength, 8);
+        nodes = new DependencyTreeNode[capacity + 1];
+        relations = new DependencyRelation[capacity];
+        path = new StackPath();
+    }
+
+    /**
+     * Passes every accepted path that starts at {@code startNode} to the
+     * handler, along with its weight.
+     *
+     * @return the number of paths passed to the handler
+     */
+    public int enumerate(DependencyTreeNode startNode, 
+                         DependencyPathHandler handler) {
+        if (this.handler != null)
+            throw new IllegalStateException(
+                "Paths may not be enumerated from within a handler");
+        this.handler = handler;
+        numPaths = 0;
+        length = 0;
+        nodes[0] = startNode;
+        try {
+            expand();
+        } finally {
+            // Release the tree so that its nodes may be reclaimed or reused
+            Arrays.fill(nodes, null);
+            Arrays.fill(relations, null);
+            this.handler = null;
+            length = 0;
+        }
+        return numPaths;
+    }
+
+    /**
+     * Extends the current path with each relation of its last node, other
+     * than the relation by which the node was reached.
+     */
+    private void expand() {
+        if (length >= maxPathLength)
+            return;
+        DependencyTreeNode last = nodes[length];
+        DependencyRelation previous = (length == 0) 
+            ? null : relations[length - 1];
+        List<DependencyRelation> neighbors = last.neighbors();
+        if (neighbors instanceof RandomAccess) {
+            int size = neighbors.size();
+            for (int i = 0; i < size; ++i) 
+                visit(last, previous, neighbors.get(i));
+        }
+        else {
+            for (DependencyRelation rel : neighbors)
+                visit(last, previous, rel);
+        }
+    }
+
+    /**
+     * Extends the current path with the relation if it is acceptable, reports
+     * the new path to the handler if it is accepted, and then expands it
+     * further.
+     */
+    private void visit(DependencyTreeNode last, DependencyRelation previous,
+                       DependencyRelation rel) {
+        // Skip the relation that led to the last node, and any relation that
+        // may not be traversed
+        if (rel == previous || !relationAcceptor.accept(rel))
+            return;
+
+        // Orient the relation so that the path continues away from the start
+        DependencyTreeNode next = (rel.headNode() == last) 
+            ? rel.dependentNode() : rel.headNode();
+        push(rel, next);
+        if (pathAcceptor.accepts(path)) {
+            numPaths++;
+            handler.handlePath(path, weighter.scorePath(path));
+        }
+        expand();
+        length--;
+    }
+
+    /**
+     * Adds the relation and the node it leads to onto the stack.
+     */
+    private void push(DependencyRelation rel, DependencyTreeNode next) {
+        if (length == relations.length) {
+            relations = Arrays.copyOf(relations, relations.length * 2);
+            nodes = Arrays.copyOf(nodes, relations.length + 1);
+        }
+        relations[length] = rel;
+        nodes[++length] = next;
+    }
+
+    /**
+     * A view of the path on the enumerator's stack.  As with {@link
+     * SimpleDependencyPath}, the length of the path is its number of
+     * relations.
+     */
+    private class StackPath implements DependencyPath {
+
+        /**
+         * {@inheritDoc}
+         */
+        public DependencyTreeNode first() {
+            return nodes[0];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public DependencyRelation firstRelation() {
+            return relations[0];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public DependencyTreeNode getNode(int position) {
+            if (position < 0 || position > length)
+                throw new IndexOutOfBoundsException(
+                    "Invalid node: " + position);
+            return nodes[position];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public String getRelation(int position) {
+            if (position < 0 || position >= length)
+                throw new IndexOutOfBoundsException(
+                    "Invalid relation: " + position);
+            return relations[position].relation();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public Iterator<DependencyRelation> iterator() {
+            return new Iterator<DependencyRelation>() {
+                int i = 0;
+
+                public boolean hasNext() {
+                    return i < length;
+                }
+
+                public DependencyRelation next() {
+                    if (i >= length)
+                        throw new NoSuchElementException();
+                    return relations[i++];
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException(
+                        "Cannot remove relations from a path");
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public DependencyTreeNode last() {
+            return nodes[length];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public DependencyRelation lastRelation() {
+            return relations[length - 1];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Returns the path in order with words and relations space delimited.
+         */
+        public String toString() {
+            StringBuilder sb = new StringBuilder(8 * (length + 1));
+            sb.append(nodes[0].word());
+            for (int i = 0; i < length; ++i)
+                sb.append(' ').append(relations[i].relation())
+                    .append(' ').append(nodes[i + 1].word());
+            return sb.toString();
+        }
+    }
+}
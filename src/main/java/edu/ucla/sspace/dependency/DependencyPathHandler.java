@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.dependency;
+
+
+/**
+ * A callback for the paths found by a {@link DependencyPathEnumerator}.
+ *
+ * @author David Jurgens
+ */
+public interface DependencyPathHandler {
+
+    /**
+     * Processes a path that was accepted by the enumerator.  The path is a
+     * view of the enumerator's current state and is only valid for the
+     * duration of this call.  Implementations that need the path afterwards
+     * must copy its contents.
+     *
+     * @param path an accepted dependency path
+     * @param weight the weight of the path, as scored by the enumerator's
+     *        {@link DependencyPathWeight}
+     */
+    void handlePath(DependencyPath path, double weight);
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.dependency;
+
+import edu.ucla.sspace.vector.IntegerVector;
+import edu.ucla.sspace.vector.TernaryVector;
+
+
+/**
+ * A {@link DependencyPermutationFunction} that can add a permuted {@link
+ * TernaryVector} to another vector without creating the permuted vector.
+ * This avoids allocating a new vector for every dependency path when the
+ * permuted vectors are only summed.
+ *
+ * @see edu.ucla.sspace.index.ReorderingPermutation
+ */
+public interface DependencyPermutationAccumulator {
+
+    /**
+     * Adds {@code vector}, permuted based on the dependency path, to {@code
+     * target}, if the permutation can be applied without creating the
+     * permuted vector.  When this method returns {@code true}, the result is
+     * the same as adding the vector returned by {@link
+     * DependencyPermutationFunction#permute permute}.
+     *
+     * @param target the vector to which the permuted vector is added
+     * @param vector the index vector to permute
+     * @param path the dependency path that determines the permutation
+     *
+     * @return {@code true} if the permuted vector was added, or {@code false}
+     *         if the caller must permute and add the vector itself
+     */
+    boolean addPermuted(IntegerVector target, TernaryVector vector, 
+                        DependencyPath path);
+}
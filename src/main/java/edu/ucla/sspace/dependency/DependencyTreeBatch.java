@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.dependency;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+import java.util.ArrayList;
+
+
+/**
+ * A reusable buffer of dependency parse trees that are read together from the
+ * same reader.  A {@link CoNLLDependencyExtractor} fills the batch using nodes
+ * that were created for earlier sentences, rather than allocating new nodes
+ * and arrays for every sentence.  Consequently, the trees in a batch are only
+ * valid until the batch is read into again, and callers must not retain any
+ * of the nodes, or the arrays containing them, beyond that point.
+ *
+ * <p> This class is not thread-safe.  Each thread that reads trees should use
+ * its own batch.
+ *
+ * @see CoNLLDependencyExtractor#readNextTrees(BufferedReader,
+ *      DependencyTreeBatch)
+ *
+ * @author David Jurgens
+ */
+public class DependencyTreeBatch {
+
+    /**
+     * The number of trees held by a batch if no capacity is specified
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * The trees currently in the batch
+     */
+    private final DependencyTreeNode[][] trees;
+
+    /**
+     * For each position in the batch, the nodes that are reused for the trees
+     * placed at that position.
+     */
+    private final SimpleDependencyTreeNode[][] nodePools;
+
+    /**
+     * For each position in the batch, the arrays that have been used to hold
+     * its trees, indexed by the number of nodes in the tree.  Trees must be
+     * returned in an array of their exact length, so one array is kept for
+     * each sentence length seen.
+     */
+    private final SimpleDependencyTreeNode[][][] arraysByLength;
+
+    /**
+     * The number of trees currently in the batch
+     */
+    private int size;
+
+    /**
+     * Creates a batch that holds up to {@value #DEFAULT_CAPACITY} trees.
+     */
+    public DependencyTreeBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a batch that holds up to the specified number of trees.
+     */
+    public DependencyTreeBatch(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException(
+                "capacity must be positive: " + capacity);
+        trees = new DependencyTreeNode[capacity][];
+        nodePools = new SimpleDependencyTreeNode[capacity][0];
+        arraysByLength = new SimpleDependencyTreeNode[capacity][0][];
+        size = 0;
+    }
+
+    /**
+     * Returns the maximum number of trees held by this batch.
+     */
+    public int capacity() {
+        return trees.length;
+    }
+
+    /**
+     * Returns the number of trees currently in this batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the tree at the specified position in this batch.
+     */
+    public DependencyTreeNode[] get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(
+                "Invalid tree " + index + " for a batch of " + size);
+        return trees[index];
+    }
+
+    /**
+     * Replaces the contents of this batch with the next trees in the reader,
+     * reading until either the batch is full or the reader has no further
+     * trees.  Trees read by a {@link CoNLLDependencyExtractor} reuse the nodes
+     * of the batch; those from any other extractor are stored as returned by
+     * {@link DependencyExtractor#readNextTree(BufferedReader)}.
+     *
+     * @return the number of trees read, which is {@code 0} once the reader has
+     *         no further trees
+     *
+     * @throws IOException when errors are encountered during reading
+     */
+    public int read(DependencyExtractor extractor, BufferedReader reader) 
+            throws IOException {
+        if (extractor instanceof CoNLLDependencyExtractor)
+            return ((CoNLLDependencyExtractor)extractor)
+                .readNextTrees(reader, this);
+        clear();
+        DependencyTreeNode[] tree = null;
+        while (size < trees.length 
+                   && (tree = extractor.readNextTree(reader)) != null)
+            trees[size++] = tree;
+        return size;
+    }
+
+    /**
+     * Removes all of the trees from this batch.
+     */
+    void clear() {
+        // Release the trees of extractors that do not reuse nodes
+        for (int i = 0; i < size; ++i)
+            trees[i] = null;
+        size = 0;
+    }
+
+    /**
+     * Returns {@code true} if no further trees may be added to this batch.
+     */
+    boolean isFull() {
+        return size == trees.length;
+    }
+
+    /**
+     * Adds a tree with the specified number of nodes to the end of this batch
+     * and returns its nodes, which are reused from earlier trees.  The caller
+     * must {@link SimpleDependencyTreeNode#reset(String,String,String,int)
+     * reset} each node before use.
+     */
+    SimpleDependencyTreeNode[] add(int numNodes) {
+        if (isFull())
+            throw new IllegalStateException("batch is full");
+        int index = size++;
+
+        SimpleDependencyTreeNode[] pool = nodePools[index];
+        if (pool.length < numNodes) {
+            SimpleDependencyTreeNode[] larger = new SimpleDependencyTreeNode[
+                Math.max(numNodes, pool.length * 2)];
+            System.arraycopy(pool, 0, larger, 0, pool.length);
+            for (int i = pool.length; i < larger.length; ++i)
+                larger[i] = new SimpleDependencyTreeNode(
+                    "", "", "", i, new ArrayList<DependencyRelation>());
+            nodePools[index] = pool = larger;
+        }
+
+        SimpleDependencyTreeNode[][] arrays = arraysByLength[index];
+        if (arrays.length <= numNodes) {
+            SimpleDependencyTreeNode[][] larger = 
+                new SimpleDependencyTreeNode[
+                    Math.max(numNodes + 1, arrays.length * 2)][];
+            System.arraycopy(arrays, 0, larger, 0, arrays.length);
+            arraysByLength[index] = arrays = larger;
+        }
+        SimpleDependencyTreeNode[] tree = arrays[numNodes];
+        if (tree == null) 
+            arrays[numNodes] = tree = new SimpleDependencyTreeNode[numNodes];
+        System.arraycopy(pool, 0, tree, 0, numNodes);
+        trees[index] = tree;
+        return tree;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.dependency;
+
+import java.util.Arrays;
+
+
+/**
+ * A table that interns the short labels found in dependency parses, such as
+ * part of speech tags and relation names, and assigns each distinct label a
+ * small integer code.  Codes are assigned in the order in which labels are
+ * first seen, starting at zero.  Labels may be looked up directly from a
+ * region of a line of text, so finding an existing label does not create a new
+ * {@code String}.
+ *
+ * <p> Parsed corpora use only a few dozen distinct labels, so the table is
+ * copied whenever a new label is added, which allows lookups to proceed
+ * without locking.  This class is thread-safe.
+ *
+ * @author David Jurgens
+ */
+public class LabelTable {
+
+    /**
+     * An immutable view of the labels in the table.
+     */
+    private static final class Snapshot {
+
+        /**
+         * The labels, indexed by their code
+         */
+        final String[] labels;
+
+        /**
+         * An open-addressed hash table whose entries are one more than the
+         * code of the label in that slot, or {@code 0} for an empty slot.  The
+         * length is always a power of two.
+         */
+        final int[] slots;
+
+        Snapshot(String[] labels, int[] slots) {
+            this.labels = labels;
+            this.slots = slots;
+        }
+    }
+
+    /**
+     * The current labels in the table
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Creates an empty table.
+     */
+    public LabelTable() {
+        snapshot = new Snapshot(new String[0], new int[16]);
+    }
+
+    /**
+     * Returns the code for the label, adding it to the table if it has not
+     * been seen before.
+     */
+    public int intern(String label) {
+        return intern(label, 0, label.length());
+    }
+
+    /**
+     * Returns the code for the label found in {@code text} between {@code
+     * start}, inclusive, and {@code end}, exclusive, adding it to the table if
+     * it has not been seen before.
+     */
+    public int intern(String text, int start, int end) {
+        if (start < 0 || end > text.length() || start > end)
+            throw new IndexOutOfBoundsException(
+                "Invalid region [" + start + ", " + end + ") of a string of " +
+                "length " + text.length());
+        int hash = hash(text, start, end);
+        int code = find(snapshot, text, start, end, hash);
+        if (code >= 0)
+            return code;
+        synchronized (this) {
+            // Another thread may have added the label since the lookup
+            Snapshot snap = snapshot;
+            code = find(snap, text, start, end, hash);
+            if (code >= 0)
+                return code;
+            code = snap.labels.length;
+            String[] labels = Arrays.copyOf(snap.labels, code + 1);
+            labels[code] = text.substring(start, end);
+            // Keep the table at most half full so that probes stay short
+            int[] slots = (labels.length * 2 > snap.slots.length)
+                ? rehash(labels, snap.slots.length * 2)
+                : snap.slots.clone();
+            insert(slots, code, hash);
+            snapshot = new Snapshot(labels, slots);
+            return code;
+        }
+    }
+
+    /**
+     * Returns the code for the label, or {@code -1} if the label is not in
+     * the table.
+     */
+    public int code(String label) {
+        return find(snapshot, label, 0, label.length(), 
+                    hash(label, 0, label.length()));
+    }
+
+    /**
+     * Returns the label with the specified code.
+     *
+     * @throws IndexOutOfBoundsException if no label has the code
+     */
+    public String label(int code) {
+        String[] labels = snapshot.labels;
+        if (code < 0 || code >= labels.length)
+            throw new IndexOutOfBoundsException("Unknown label code: " + code);
+        return labels[code];
+    }
+
+    /**
+     * Returns the number of labels in the table.
+     */
+    public int size() {
+        return snapshot.labels.length;
+    }
+
+    /**
+     * Returns the code of the label in the region of {@code text}, or {@code
+     * -1} if the snapshot does not contain the label.
+     */
+    private static int find(Snapshot snap, String text, int start, int end,
+                            int hash) {
+        int[] slots = snap.slots;
+        int mask = slots.length - 1;
+        int length = end - start;
+        for (int i = spread(hash) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            String label = snap.labels[slots[i] - 1];
+            if (label.length() == length 
+                    && text.regionMatches(start, label, 0, length))
+                return slots[i] - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a new hash table of the specified size that contains all of the
+     * labels.
+     */
+    private static int[] rehash(String[] labels, int size) {
+        int[] slots = new int[size];
+        for (int code = 0; code < labels.length; ++code)
+            insert(slots, code, labels[code].hashCode());
+        return slots;
+    }
+
+    /**
+     * Adds the code to the first empty slot for its hash.
+     */
+    private static void insert(int[] slots, int code, int hash) {
+        int mask = slots.length - 1;
+        int i = spread(hash) & mask;
+        while (slots[i] != 0)
+            i = (i + 1) & mask;
+        slots[i] = code + 1;
+    }
+
+    /**
+     * Returns the same hash as {@link String#hashCode()} would for the region
+     * of the text.
+     */
+    private static int hash(String text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; ++i)
+            h = 31 * h + text.charAt(i);
+        return h;
+    }
+
+    /**
+     * Mixes the high bits of the hash into the low bits, which are the only
+     * ones used to select a slot.
+     */
+    private static int spread(int hash) {
+        hash ^= (hash >>> 16);
+        return hash ^ (hash >>> 8);
+    }
+}
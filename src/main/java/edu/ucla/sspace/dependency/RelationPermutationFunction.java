@@ -23,8 +23,12 @@ package edu.ucla.sspace.dependency;
 
 import edu.ucla.sspace.index.DefaultPermutationFunction;
 import edu.ucla.sspace.index.PermutationFunction;
+import edu.ucla.sspace.index.ReorderingPermutation;
 
+import edu.ucla.sspace.vector.IntegerVector;
+import edu.ucla.sspace.vector.TernaryVector;
 import edu.ucla.sspace.vector.Vector;
+import edu.ucla.sspace.vector.VectorMath;
 
 import java.io.Serializable;
 
@@ -42,7 +46,8 @@ import java.util.LinkedList;
  * @author Keith Stevens
  */
 public class RelationPermutationFunction <T extends Vector>
-        implements DependencyPermutationFunction<T>, Serializable {
+        implements DependencyPermutationFunction<T>, 
+                   DependencyPermutationAccumulator, Serializable {
 
     private static final long serialVersionUID = 1L;
 
@@ -64,13 +69,35 @@ public class RelationPermutationFunction <T extends Vector>
      * {@inheritDoc}
      */
     public T permute(T vector, DependencyPath path) {
+        return permFunc.permute(vector, getBestRelationScore(path));
+    }
+
+    /**
+     * {@inheritDoc}  The vector is added without creating a permuted copy if
+     * the wrapped {@link PermutationFunction} is a {@link
+     * ReorderingPermutation}.
+     */
+    public boolean addPermuted(IntegerVector target, TernaryVector vector,
+                               DependencyPath path) {
+        if (!(permFunc instanceof ReorderingPermutation))
+            return false;
+        int[] reordering = ((ReorderingPermutation)permFunc).getReordering(
+            getBestRelationScore(path), vector.length());
+        VectorMath.addPermuted(target, vector, reordering);
+        return true;
+    }
+
+    /**
+     * Returns the highest score of any relation in the path.
+     */
+    private static int getBestRelationScore(DependencyPath path) {
         int bestRelationScore = 0; 
         for (DependencyRelation link : path) {
             int relationScore = getRelationScore(link.relation());
             if (relationScore > bestRelationScore)
                 bestRelationScore = relationScore;
         }
-        return permFunc.permute(vector, bestRelationScore);
+        return bestRelationScore;
     }
 
     private static int getRelationScore(String relation) {
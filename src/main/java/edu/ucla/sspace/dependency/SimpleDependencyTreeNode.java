@@ -160,6 +160,18 @@ public class SimpleDependencyTreeNode implements DependencyTreeNode {
         this.word = word;
     }
     
+    /**
+     * Replaces the contents of this node and removes all of its neighbors,
+     * which allows the node to be reused for another sentence.
+     */
+    void reset(String word, String pos, String lemma, int index) {
+        this.word = word;
+        this.pos = pos;
+        this.lemma = lemma;
+        this.index = index;
+        neighbors.clear();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -25,23 +25,25 @@ import edu.ucla.sspace.common.SemanticSpace;
 
 import edu.ucla.sspace.dependency.DependencyExtractor;
 import edu.ucla.sspace.dependency.DependencyExtractorManager;
-import edu.ucla.sspace.dependency.DependencyIterator;
 import edu.ucla.sspace.dependency.DependencyPath;
+import edu.ucla.sspace.dependency.DependencyPathEnumerator;
+import edu.ucla.sspace.dependency.DependencyPathHandler;
 import edu.ucla.sspace.dependency.DependencyRelationAcceptor;
 import edu.ucla.sspace.dependency.DependencyPathWeight;
+import edu.ucla.sspace.dependency.DependencyPermutationAccumulator;
 import edu.ucla.sspace.dependency.DependencyPermutationFunction;
 import edu.ucla.sspace.dependency.DependencyRelation;
+import edu.ucla.sspace.dependency.DependencyTreeBatch;
 import edu.ucla.sspace.dependency.DependencyTreeNode;
 import edu.ucla.sspace.dependency.FlatPathWeight;
 import edu.ucla.sspace.dependency.UniversalRelationAcceptor;
 
+import edu.ucla.sspace.index.HashedIndexVectorMap;
 import edu.ucla.sspace.index.PermutationFunction;
-import edu.ucla.sspace.index.RandomIndexVectorGenerator;
 
 import edu.ucla.sspace.text.IteratorFactory;
 
 import edu.ucla.sspace.util.Generator;
-import edu.ucla.sspace.util.GeneratorMap;
 import edu.ucla.sspace.util.ReflectionUtil;
 
 import edu.ucla.sspace.vector.CompactSparseIntegerVector;
@@ -57,7 +59,6 @@ import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Properties;
@@ -265,6 +266,28 @@ public class DependencyRandomIndexing implements SemanticSpace {
      */
     private final DependencyExtractor parser;
 
+    /**
+     * The batch used by each thread to read the sentences in a document, which
+     * allows the parser to reuse the nodes of previously read sentences.
+     */
+    private final ThreadLocal<DependencyTreeBatch> batches = 
+        new ThreadLocal<DependencyTreeBatch>() {
+            protected DependencyTreeBatch initialValue() {
+                return new DependencyTreeBatch();
+            }
+        };
+
+    /**
+     * The accumulator used by each thread to add the index vectors for the
+     * paths rooted at each word.
+     */
+    private final ThreadLocal<PathAccumulator> accumulators = 
+        new ThreadLocal<PathAccumulator>() {
+            protected PathAccumulator initialValue() {
+                return new PathAccumulator();
+            }
+        };
+
     /**
      * The {@link DependencyRelationAcceptor} to use for validating paths.
      */
@@ -324,9 +347,7 @@ public class DependencyRandomIndexing implements SemanticSpace {
             : new UniversalRelationAcceptor();
 
         // Set up the generator vector maps.
-        RandomIndexVectorGenerator indexVectorGenerator = 
-            new RandomIndexVectorGenerator(vectorLength, properties);
-        indexMap = new GeneratorMap<TernaryVector>(indexVectorGenerator);
+        indexMap = HashedIndexVectorMap.create(vectorLength, properties);
         wordSpace = new ConcurrentHashMap<String,IntegerVector>();
         semanticFilter = new HashSet<String>();
     }
@@ -353,7 +374,17 @@ public class DependencyRandomIndexing implements SemanticSpace {
         return indexMap;
     }
 
+    /**
+     * Sets the mapping from words to index vectors used by this instance.
+     *
+     * @throws IllegalStateException if the index vectors are derived from the
+     *         seed set by {@value HashedIndexVectorMap#SEED_PROPERTY}
+     */
     public void setWordToVectorMap(Map<String, TernaryVector> vectorMap) {
+        if (indexMap instanceof HashedIndexVectorMap)
+            throw new IllegalStateException(
+                "Index vectors are derived from the seed set by " +
+                HashedIndexVectorMap.SEED_PROPERTY + " and cannot be replaced");
         indexMap = vectorMap;
     }
 
@@ -376,40 +407,33 @@ public class DependencyRandomIndexing implements SemanticSpace {
      */
     public void processDocument(BufferedReader document) throws IOException {
         // Iterate over all of the parseable dependency parsed sentences in the
-        // document.
-        for (DependencyTreeNode[] nodes = null;
-                (nodes = parser.readNextTree(document)) != null; ) {
+        // document.  The nodes of each batch of sentences are only valid until
+        // the next batch is read.
+        DependencyTreeBatch batch = batches.get();
+        PathAccumulator accumulator = accumulators.get();
+        while (batch.read(parser, document) > 0) {
+            for (int t = 0; t < batch.size(); ++t) {
+                DependencyTreeNode[] nodes = batch.get(t);
+
+                // Skip empty documents.
+                if (nodes.length == 0)
+                    continue;
 
-            // Skip empty documents.
-            if (nodes.length == 0)
-                continue;
+                // Examine the paths for each word in the sentence.
+                for (int i = 0; i < nodes.length; ++i) {
+                    String focusWord = nodes[i].word();
 
-            // Examine the paths for each word in the sentence.
-            for (int i = 0; i < nodes.length; ++i) {
-                String focusWord = nodes[i].word();
+                    // Skip words that are rejected by the semantic filter.
+                    if (!acceptWord(focusWord))
+                        continue;
 
-                // Skip words that are rejected by the semantic filter.
-                if (!acceptWord(focusWord))
-                    continue;
+                    // Acquire the semantic vector for the focus word.
+                    IntegerVector focusMeaning = getSemanticVector(focusWord);
 
-                // Acquire the semantic vector for the focus word.
-                IntegerVector focusMeaning = getSemanticVector(focusWord);
-
-                // Create the path iterator for all acceptable paths rooted at
-                // the focus word in the sentence.
-                Iterator<DependencyPath> pathIter = 
-                    new DependencyIterator(nodes[i], acceptor, pathLength);
-
-                // For every path, obtain the index vector of the last word in
-                // the path and add it to the semantic vector for the focus
-                // word.  The index vector is permuted if a permutation
-                // function has been provided based on the contents of the path.
-                while (pathIter.hasNext()) {
-                    DependencyPath path = pathIter.next();
-                    TernaryVector termVector = indexMap.get(path.last().word());
-                    if (permFunc != null)
-                        termVector = permFunc.permute(termVector, path);
-                    add(focusMeaning, termVector);
+                    // Add the index vectors of the words at the end of all
+                    // acceptable paths rooted at the focus word in the
+                    // sentence.
+                    accumulator.accumulate(nodes[i], focusMeaning);
                 }
             }
         }
@@ -474,6 +498,22 @@ public class DependencyRandomIndexing implements SemanticSpace {
         }
     }
 
+    /**
+     * Adds the index vector, permuted based on the path, to the semantic
+     * vector if the permutation function supports doing so without creating a
+     * permuted copy, returning {@code false} otherwise.
+     */
+    private boolean addPermuted(IntegerVector semantics, TernaryVector index,
+                                DependencyPath path) {
+        if (!(permFunc instanceof DependencyPermutationAccumulator))
+            return false;
+        // Lock on the semantic vector for the same reasons as add()
+        synchronized(semantics) {
+            return ((DependencyPermutationAccumulator)permFunc)
+                .addPermuted(semantics, index, path);
+        }
+    }
+
      /**
      * Returns the current semantic vector for the provided word.  If the word
      * is not currently in the semantic space, a vector is added for it and
@@ -500,4 +540,53 @@ public class DependencyRandomIndexing implements SemanticSpace {
         }
         return v;
     }
+
+    /**
+     * A {@link DependencyPathHandler} that adds the index vector of the last
+     * word in each path to the semantic vector of the path's first word.  Each
+     * thread uses its own accumulator, which allows the paths to be enumerated
+     * without creating a new {@link DependencyPath} for each.
+     */
+    private class PathAccumulator implements DependencyPathHandler {
+
+        /**
+         * The enumerator for the acceptable paths rooted at a word
+         */
+        private final DependencyPathEnumerator enumerator =
+            new DependencyPathEnumerator(acceptor, pathLength);
+
+        /**
+         * The semantic vector of the word whose paths are being accumulated
+         */
+        private IntegerVector focusMeaning;
+
+        /**
+         * Adds the index vectors for each of the acceptable paths rooted at the
+         * focus node to the semantic vector.
+         */
+        void accumulate(DependencyTreeNode focusNode, 
+                        IntegerVector focusMeaning) {
+            this.focusMeaning = focusMeaning;
+            try {
+                enumerator.enumerate(focusNode, this);
+            } finally {
+                this.focusMeaning = null;
+            }
+        }
+
+        /**
+         * Obtains the index vector of the last word in the path and adds it to
+         * the semantic vector for the focus word.  The index vector is
+         * permuted if a permutation function has been provided based on the
+         * contents of the path.  If possible, the permutation is applied while
+         * adding the vector, rather than creating a permuted copy.
+         */
+        public void handlePath(DependencyPath path, double weight) {
+            TernaryVector termVector = indexMap.get(path.last().word());
+            if (permFunc == null)
+                add(focusMeaning, termVector);
+            else if (!addPermuted(focusMeaning, termVector, path))
+                add(focusMeaning, permFunc.permute(termVector, path));
+        }
+    }
 }
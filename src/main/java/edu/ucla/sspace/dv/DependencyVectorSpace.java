@@ -28,10 +28,12 @@ import edu.ucla.sspace.dependency.DependencyExtractorManager;
 import edu.ucla.sspace.dependency.DependencyIterator;
 import edu.ucla.sspace.dependency.DependencyPath;
 import edu.ucla.sspace.dependency.DependencyPathAcceptor;
+import edu.ucla.sspace.dependency.DependencyPathEnumerator;
+import edu.ucla.sspace.dependency.DependencyPathHandler;
 import edu.ucla.sspace.dependency.DependencyPathWeight;
 import edu.ucla.sspace.dependency.DependencyRelation;
+import edu.ucla.sspace.dependency.DependencyTreeBatch;
 import edu.ucla.sspace.dependency.DependencyTreeNode;
-import edu.ucla.sspace.dependency.FilteredDependencyIterator;
 import edu.ucla.sspace.dependency.FlatPathWeight;
 
 import edu.ucla.sspace.text.IteratorFactory;
@@ -49,7 +51,6 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Properties;
@@ -206,6 +207,28 @@ public class DependencyVectorSpace
      */
     private final DependencyExtractor extractor;
 
+    /**
+     * The batch used by each thread to read the sentences in a document, which
+     * allows the extractor to reuse the nodes of previously read sentences.
+     */
+    private final ThreadLocal<DependencyTreeBatch> batches = 
+        new ThreadLocal<DependencyTreeBatch>() {
+            protected DependencyTreeBatch initialValue() {
+                return new DependencyTreeBatch();
+            }
+        };
+
+    /**
+     * The counter used by each thread to update the co-occurrences for the
+     * paths rooted at each word.
+     */
+    private final ThreadLocal<PathCounter> counters = 
+        new ThreadLocal<PathCounter>() {
+            protected PathCounter initialValue() {
+                return new PathCounter();
+            }
+        };
+
     /**
      * A basis mapping from dependency paths to the the dimensions that
      * represent the content of those paths.
@@ -384,50 +407,30 @@ public class DependencyVectorSpace
     public void processDocument(BufferedReader document) throws IOException {
         
         // Iterate over all of the parseable dependency parsed sentences in the
-        // document.
-        for (DependencyTreeNode[] nodes = null; 
-                 (nodes = extractor.readNextTree(document)) != null; ) {
-
-            // Skip empty documents.
-            if (nodes.length == 0)
-                continue;            
-
-            // Examine the paths for each word in the sentence.
-            for (int wordIndex = 0; wordIndex < nodes.length; ++wordIndex) {
-
-                String focusWord = nodes[wordIndex].word();              
-
-                // Acquire the semantic vector for the focus word.
-                SparseDoubleVector focusMeaning = getSemanticVector(focusWord);
-
-                // Get all the valid paths starting from this word.  The
-                // acceptor will filter out any paths that don't contain the
-                // semantic connections we're looking for.
-                Iterator<DependencyPath> paths = new FilteredDependencyIterator(
-                            nodes[wordIndex], acceptor, pathLength);
-                
-                // For each of the paths rooted at the focus word, update the
-                // co-occurrences of the focus word in the dimension that the
-                // BasisFunction states.
-                while (paths.hasNext()) {
-                    DependencyPath path = paths.next();
-
-                    // Get the dimension associated with the relation and/or
-                    // words in the path from the basis function.  The basis
-                    // function creates a specific dimension for the syntactic
-                    // context in order to meaningfully comparable vectors.
-                    int dimension = basisMapping.getDimension(path);
-
-                    // Then calculate the weight for the feature presence in the
-                    // dimension.  For example, the weighter might score paths
-                    // inversely proportional to their length.
-                    double weight = weighter.scorePath(path);
-
-                    // Last, update the focus word's semantic vector based on
-                    // the dimension and weight
-                    synchronized(focusMeaning) {
-                        focusMeaning.add(dimension, weight);                    
-                    }
+        // document.  The nodes of each batch of sentences are only valid until
+        // the next batch is read.
+        DependencyTreeBatch batch = batches.get();
+        PathCounter counter = counters.get();
+        while (batch.read(extractor, document) > 0) {
+            for (int t = 0; t < batch.size(); ++t) {
+                DependencyTreeNode[] nodes = batch.get(t);
+
+                // Skip empty documents.
+                if (nodes.length == 0)
+                    continue;            
+
+                // Examine the paths for each word in the sentence.
+                for (int wordIndex = 0; wordIndex < nodes.length; ++wordIndex) {
+
+                    String focusWord = nodes[wordIndex].word();              
+
+                    // Acquire the semantic vector for the focus word.
+                    SparseDoubleVector focusMeaning = 
+                        getSemanticVector(focusWord);
+
+                    // Update the co-occurrences of the focus word for all the
+                    // valid paths starting from this word.
+                    counter.count(nodes[wordIndex], focusMeaning);
                 }
             }
         }
@@ -441,4 +444,61 @@ public class DependencyVectorSpace
      */
     public void processSpace(Properties properties) {
     }
+
+    /**
+     * A {@link DependencyPathHandler} that updates the co-occurrences of a
+     * focus word in the dimensions of the paths rooted at that word.  Each
+     * thread uses its own counter, which allows the paths to be enumerated
+     * without creating a new {@link DependencyPath} for each.
+     */
+    private class PathCounter implements DependencyPathHandler {
+
+        /**
+         * The enumerator for the valid paths rooted at a word.  The acceptor
+         * will filter out any paths that don't contain the semantic
+         * connections we're looking for.
+         */
+        private final DependencyPathEnumerator enumerator =
+            new DependencyPathEnumerator(acceptor, weighter, pathLength);
+
+        /**
+         * The semantic vector of the word whose paths are being counted
+         */
+        private SparseDoubleVector focusMeaning;
+
+        /**
+         * Updates the semantic vector with the co-occurrences for each of the
+         * valid paths rooted at the focus node.
+         */
+        void count(DependencyTreeNode focusNode, 
+                   SparseDoubleVector focusMeaning) {
+            this.focusMeaning = focusMeaning;
+            try {
+                enumerator.enumerate(focusNode, this);
+            } finally {
+                this.focusMeaning = null;
+            }
+        }
+
+        /**
+         * Updates the co-occurrence of the focus word in the dimension that
+         * the BasisFunction states for the path.
+         */
+        public void handlePath(DependencyPath path, double weight) {
+            // Get the dimension associated with the relation and/or words in
+            // the path from the basis function.  The basis function creates a
+            // specific dimension for the syntactic context in order to
+            // meaningfully comparable vectors.  The weight for the feature
+            // presence in the dimension was calculated by the weighter, which
+            // for example might score paths inversely proportional to their
+            // length.
+            int dimension = basisMapping.getDimension(path);
+
+            // Last, update the focus word's semantic vector based on the
+            // dimension and weight
+            synchronized(focusMeaning) {
+                focusMeaning.add(dimension, weight);
+            }
+        }
+    }
 }
@@ -0,0 +1,730 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.graph;
+
+import edu.ucla.sspace.util.primitive.AbstractIntSet;
+import edu.ucla.sspace.util.primitive.IntIterator;
+import edu.ucla.sspace.util.primitive.IntSet;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * A base class for immutable graphs whose adjacency is stored in <a
+ * href="http://en.wikipedia.org/wiki/Sparse_matrix#Compressed_sparse_row_.28CSR_or_CRS.29">compressed
+ * sparse row</a> (CSR) form.  The vertices are kept in a sorted {@code int}
+ * array and the neighbors of the {@code i}th vertex occupy the range {@code
+ * offsets[i]} to {@code offsets[i+1]} of a single {@code int} array, sorted by
+ * vertex index.  Each position in this array is referred to as a <i>slot</i>;
+ * subclasses attach any additional edge data, such as weights or types, to a
+ * slot using arrays parallel to the neighbors.
+ *
+ * <p> Compared with {@link AbstractGraph}, this representation uses roughly
+ * four bytes per direction of an edge instead of an {@link EdgeSet} entry and
+ * an {@link Edge} object, and traversing the neighbors of a vertex is a scan
+ * over contiguous memory.  The cost is that the graph cannot be changed once
+ * it is built: all mutating methods throw {@link
+ * UnsupportedOperationException}.  {@link Edge} instances are only created on
+ * demand by the {@code Set}-based methods such as {@link #edges()} and {@link
+ * #getAdjacencyList(int)}; algorithms that wish to avoid these allocations may
+ * instead iterate over the slots directly using {@link #slotsBegin(int)},
+ * {@link #slotsEnd(int)} and {@link #neighbor(int)}.
+ *
+ * <p> Graphs are treated as undirected: every edge is recorded in the rows of
+ * both of its endpoints, except for self-loops, which occupy a single slot.
+ *
+ * <p> This class is thread-safe.
+ *
+ * @author David Jurgens
+ */
+public abstract class AbstractCompactGraph<E extends Edge>
+        implements Graph<E>, java.io.Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The vertices in this graph in ascending order
+     */
+    final int[] vertices;
+
+    /**
+     * {@code true} if the vertices are exactly {@code 0} to {@code n-1}, in
+     * which case a vertex's row is its own index and no search is needed.
+     */
+    private final boolean isContiguous;
+
+    /**
+     * The offset of the first slot for each vertex's row, with a final entry
+     * for the total number of slots.
+     */
+    final int[] offsets;
+
+    /**
+     * The neighboring vertex for each slot, sorted within each row
+     */
+    final int[] neighbors;
+
+    /**
+     * The number of distinct adjacent vertex pairs, counting self-loops once.
+     */
+    private final int numConnections;
+
+    /**
+     * Creates a graph from the completed rows.
+     */
+    AbstractCompactGraph(Rows rows) {
+        this.vertices = rows.vertices;
+        this.offsets = rows.offsets;
+        this.neighbors = (rows.size == rows.neighbors.length)
+            ? rows.neighbors
+            : Arrays.copyOf(rows.neighbors, rows.size);
+        this.isContiguous = vertices.length == 0 
+            || vertices[vertices.length - 1] == vertices.length - 1;
+        int connections = 0;
+        for (int row = 0; row < vertices.length; ++row) {
+            for (int s = offsets[row]; s < offsets[row + 1]; ++s) {
+                if (neighbors[s] >= vertices[row])
+                    connections++;
+            }
+        }
+        this.numConnections = connections;
+    }
+
+    /**
+     * Throws an {@link IllegalArgumentException} if the graph is directed,
+     * which cannot be represented by this class.
+     */
+    static void checkUndirected(Graph<?> g) {
+        if (g instanceof DirectedGraph)
+            throw new IllegalArgumentException(
+                "Directed graphs cannot be represented as a compact graph");
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}.
+     */
+    public boolean add(int vertex) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}.
+     */
+    public boolean add(E edge) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}.
+     */
+    public void clear() {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}.
+     */
+    public void clearEdges() {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(int vertex) {
+        return row(vertex) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(int vertex1, int vertex2) {
+        return slot(vertex1, vertex2) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(Edge e) {
+        return getEdges(e.from(), e.to()).contains(e);
+    }
+
+    /**
+     * Copies the specified vertices of this graph and all edges between them
+     * into {@code g}, returning {@code g}.
+     *
+     * @throws IllegalArgumentException if any of the vertices are not in this
+     *         graph
+     */
+    <G extends Graph<E>> G copyInto(G g, Set<Integer> toCopy) {
+        for (int v : toCopy) {
+            int row = row(v);
+            if (row < 0)
+                throw new IllegalArgumentException(
+                    "Requested copy with non-existant vertex: " + v);
+            g.add(v);
+            // Add each edge once, from the row of its larger endpoint
+            for (int s = offsets[row]; s < offsets[row + 1]; ++s) {
+                int n = neighbors[s];
+                if (n > v)
+                    break;
+                if (toCopy.contains(n)) {
+                    for (int k = 0, count = edgeCount(s); k < count; ++k)
+                        g.add(edge(v, n, s, k));
+                }
+            }
+        }
+        return g;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int degree(int vertex) {
+        int row = row(vertex);
+        return (row < 0) ? 0 : offsets[row + 1] - offsets[row];
+    }
+
+    /**
+     * Returns the edge stored at the {@code k}th position of the specified
+     * slot, oriented from {@code from} to {@code to}.
+     */
+    abstract E edge(int from, int to, int slot, int k);
+
+    /**
+     * Returns the number of edges stored in the specified slot.
+     */
+    abstract int edgeCount(int slot);
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<E> edges() {
+        return new EdgeView();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean equals(Object o) {
+        if (o instanceof Graph) {
+            Graph<?> g = (Graph<?>)o;
+            return g.order() == order()
+                && g.size() == size()
+                && g.vertices().equals(vertices())
+                && g.edges().equals(edges());
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<E> getAdjacencyList(int vertex) {
+        int row = row(vertex);
+        return (row < 0 || offsets[row] == offsets[row + 1])
+            ? Collections.<E>emptySet()
+            : new AdjacencyListView(vertex, row);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<E> getEdges(int vertex1, int vertex2) {
+        int slot = slot(vertex1, vertex2);
+        return (slot < 0)
+            ? Collections.<E>emptySet()
+            : new SlotView(vertex1, vertex2, slot);
+    }
+
+    /**
+     * {@inheritDoc}  The returned set is an unmodifiable view of the
+     * neighbors' slots in this graph.
+     */
+    public IntSet getNeighbors(int vertex) {
+        int row = row(vertex);
+        return (row < 0) 
+            ? new SortedIntRange(neighbors, 0, 0)
+            : new SortedIntRange(neighbors, offsets[row], offsets[row + 1]);
+    }
+
+    /**
+     * Returns {@code true} if the graph contains a self-loop, a pair of
+     * vertices connected by more than one edge, or a path that returns to its
+     * starting vertex.
+     */
+    public boolean hasCycles() {
+        // Union-find over the vertex rows: an edge whose endpoints are already
+        // in the same component closes a cycle
+        int[] parents = new int[vertices.length];
+        for (int i = 0; i < parents.length; ++i)
+            parents[i] = i;
+        for (int row = 0; row < vertices.length; ++row) {
+            int v = vertices[row];
+            for (int s = offsets[row]; s < offsets[row + 1]; ++s) {
+                int n = neighbors[s];
+                if (n < v)
+                    continue;
+                if (n == v || edgeCount(s) > 1)
+                    return true;
+                int r1 = find(parents, row);
+                int r2 = find(parents, row(n));
+                if (r1 == r2)
+                    return true;
+                parents[r1] = r2;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the root of the set containing {@code i}, compressing the path
+     * along the way.
+     */
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return vertices().hashCode();
+    }
+
+    /**
+     * Returns the vertex adjacent through the specified slot.
+     */
+    public int neighbor(int slot) {
+        return neighbors[slot];
+    }
+
+    /**
+     * Returns the number of distinct pairs of adjacent vertices in this graph,
+     * counting each self-loop once.
+     */
+    int numConnections() {
+        return numConnections;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int order() {
+        return vertices.length;
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}.
+     */
+    public boolean remove(E e) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}.
+     */
+    public boolean remove(int vertex) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    /**
+     * Returns the row of the specified vertex, or {@code -1} if the vertex is
+     * not in this graph.
+     */
+    int row(int vertex) {
+        if (isContiguous) 
+            return (vertex >= 0 && vertex < vertices.length) ? vertex : -1;
+        int row = Arrays.binarySearch(vertices, vertex);
+        return (row < 0) ? -1 : row;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+        return numConnections;
+    }
+
+    /**
+     * Returns the slot connecting the two vertices, or {@code -1} if they are
+     * not adjacent.
+     */
+    int slot(int vertex1, int vertex2) {
+        int row = row(vertex1);
+        if (row < 0)
+            return -1;
+        int slot = Arrays.binarySearch(
+            neighbors, offsets[row], offsets[row + 1], vertex2);
+        return (slot < 0) ? -1 : slot;
+    }
+
+    /**
+     * Returns the first slot of the specified vertex's neighbors.  Together
+     * with {@link #slotsEnd(int)}, this allows iterating over the neighbors
+     * without allocating any objects:
+     *
+     * <pre>
+     *   for (int s = g.slotsBegin(v); s &lt; g.slotsEnd(v); ++s) 
+     *       visit(g.neighbor(s));
+     * </pre>
+     *
+     * If the vertex is not in the graph, the range of slots is empty.
+     */
+    public int slotsBegin(int vertex) {
+        int row = row(vertex);
+        return (row < 0) ? 0 : offsets[row];
+    }
+
+    /**
+     * Returns the slot after the last slot of the specified vertex's
+     * neighbors.
+     */
+    public int slotsEnd(int vertex) {
+        int row = row(vertex);
+        return (row < 0) ? 0 : offsets[row + 1];
+    }
+
+    /**
+     * Returns a description of the graph as the sequence of its edges.
+     */
+    public String toString() {
+        return "{ vertices: " + vertices() + ", edges: " + edges() + "}";
+    }
+
+    /**
+     * {@inheritDoc}  The returned set is unmodifiable.
+     */
+    public IntSet vertices() {
+        return new SortedIntRange(vertices, 0, vertices.length);
+    }
+
+    /**
+     * The mutable state used while building a compact graph, which holds the
+     * sorted vertices and accumulates the neighbors of each row in order.
+     */
+    static class Rows {
+
+        /**
+         * The vertices of the graph in ascending order
+         */
+        final int[] vertices;
+
+        /**
+         * The offsets of each row, which are filled in as rows are completed
+         */
+        final int[] offsets;
+
+        /**
+         * The neighbors of all completed rows
+         */
+        int[] neighbors;
+
+        /**
+         * The number of neighbors added so far
+         */
+        int size;
+
+        /**
+         * Creates the rows for the vertices of {@code g}, or for only those in
+         * {@code subset} if it is non-{@code null}.
+         *
+         * @throws IllegalArgumentException if {@code subset} contains a vertex
+         *         that is not in {@code g}
+         */
+        Rows(Graph<?> g, Set<Integer> subset) {
+            if (subset == null)
+                vertices = g.vertices().toPrimitiveArray();
+            else {
+                vertices = new int[subset.size()];
+                int i = 0;
+                for (int v : subset) {
+                    if (!g.contains(v))
+                        throw new IllegalArgumentException(
+                            "Vertex " + v + " is not in the graph");
+                    vertices[i++] = v;
+                }
+            }
+            Arrays.sort(vertices);
+            offsets = new int[vertices.length + 1];
+            // Reserve space for both directions of every edge when the whole
+            // graph is being copied
+            neighbors = new int[(subset == null) 
+                                ? Math.max(16, 2 * g.size()) : 16];
+        }
+
+        /**
+         * Appends a neighbor to the current row, returning its slot.
+         */
+        int add(int neighbor) {
+            if (size == neighbors.length)
+                neighbors = Arrays.copyOf(neighbors, size * 2);
+            neighbors[size] = neighbor;
+            return size++;
+        }
+
+        /**
+         * Returns {@code true} if the vertex is part of the graph being built.
+         */
+        boolean contains(int vertex) {
+            return Arrays.binarySearch(vertices, vertex) >= 0;
+        }
+
+        /**
+         * Marks the end of the specified row.
+         */
+        void endRow(int row) {
+            offsets[row + 1] = size;
+        }
+    }
+
+    /**
+     * An unmodifiable {@link IntSet} over a sorted range of an array.
+     */
+    static class SortedIntRange extends AbstractIntSet {
+
+        private final int[] values;
+
+        private final int start;
+
+        private final int end;
+
+        public SortedIntRange(int[] values, int start, int end) {
+            this.values = values;
+            this.start = start;
+            this.end = end;
+        }
+
+        public boolean contains(int i) {
+            return Arrays.binarySearch(values, start, end, i) >= 0;
+        }
+
+        @Override public boolean contains(Object o) {
+            return o instanceof Integer && contains(((Integer)o).intValue());
+        }
+
+        public IntIterator iterator() {
+            return new RangeIterator();
+        }
+
+        public int size() {
+            return end - start;
+        }
+
+        @Override public int[] toPrimitiveArray() {
+            return Arrays.copyOfRange(values, start, end);
+        }
+
+        private class RangeIterator implements IntIterator {
+
+            private int next = start;
+            
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            public Integer next() {
+                return nextInt();
+            }
+
+            public int nextInt() {
+                if (next >= end)
+                    throw new NoSuchElementException();
+                return values[next++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    /**
+     * A view of the edges incident to a single vertex.
+     */
+    private class AdjacencyListView extends AbstractSet<E> {
+
+        private final int vertex;
+
+        private final int row;
+
+        public AdjacencyListView(int vertex, int row) {
+            this.vertex = vertex;
+            this.row = row;
+        }
+
+        @Override public boolean contains(Object o) {
+            if (!(o instanceof Edge))
+                return false;
+            Edge e = (Edge)o;
+            return (e.from() == vertex || e.to() == vertex)
+                && AbstractCompactGraph.this.contains(e);
+        }
+
+        public Iterator<E> iterator() {
+            return new SlotIterator(vertex, offsets[row], offsets[row + 1]);
+        }
+
+        public int size() {
+            return degree(vertex);
+        }
+    }
+
+    /**
+     * A view of the edges in the graph, where each edge is reported once from
+     * the row of its smaller endpoint.
+     */
+    private class EdgeView extends AbstractSet<E> {
+
+        @Override public boolean contains(Object o) {
+            return o instanceof Edge
+                && AbstractCompactGraph.this.contains((Edge)o);
+        }
+
+        public Iterator<E> iterator() {
+            return new EdgeIterator();
+        }
+
+        public int size() {
+            return AbstractCompactGraph.this.size();
+        }
+    }
+
+    /**
+     * An iterator over all the edges in the graph.
+     */
+    private class EdgeIterator implements Iterator<E> {
+
+        private int row;
+
+        private SlotIterator cur;
+
+        public EdgeIterator() {
+            row = -1;
+            advance();
+        }
+
+        private void advance() {
+            while ((cur == null || !cur.hasNext()) 
+                       && ++row < vertices.length) {
+                // Skip the slots of neighbors with a smaller index, whose
+                // edges were already reported from the neighbor's row
+                int v = vertices[row];
+                int start = Arrays.binarySearch(
+                    neighbors, offsets[row], offsets[row + 1], v);
+                if (start < 0)
+                    start = -(start + 1);
+                cur = new SlotIterator(v, start, offsets[row + 1]);
+            }
+        }
+
+        public boolean hasNext() {
+            return cur != null && cur.hasNext();
+        }
+
+        public E next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            E e = cur.next();
+            advance();
+            return e;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A view of the edges in a single slot.
+     */
+    private class SlotView extends AbstractSet<E> {
+
+        private final int from;
+
+        private final int to;
+
+        private final int slot;
+
+        public SlotView(int from, int to, int slot) {
+            this.from = from;
+            this.to = to;
+            this.slot = slot;
+        }
+
+        public Iterator<E> iterator() {
+            return new SlotIterator(from, slot, slot + 1);
+        }
+
+        public int size() {
+            return edgeCount(slot);
+        }
+    }
+
+    /**
+     * An iterator over the edges in a range of slots of a vertex's row.
+     */
+    private class SlotIterator implements Iterator<E> {
+
+        private final int vertex;
+
+        private final int end;
+
+        private int slot;
+
+        private int k;
+
+        public SlotIterator(int vertex, int start, int end) {
+            this.vertex = vertex;
+            this.slot = start;
+            this.end = end;
+        }
+
+        public boolean hasNext() {
+            return slot < end;
+        }
+
+        public E next() {
+            if (slot >= end)
+                throw new NoSuchElementException();
+            E e = edge(vertex, neighbors[slot], slot, k);
+            if (++k == edgeCount(slot)) {
+                k = 0;
+                slot++;
+            }
+            return e;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
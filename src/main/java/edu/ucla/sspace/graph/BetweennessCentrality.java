@@ -21,15 +21,21 @@
 
 package edu.ucla.sspace.graph;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Deque;
 import java.util.List;
-import java.util.Queue;
+import java.util.Random;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.ucla.sspace.util.WorkQueue;
 
 import edu.ucla.sspace.util.primitive.IntIterator;
 
+import gnu.trove.iterator.TIntDoubleIterator;
+import gnu.trove.map.TIntDoubleMap;
+import gnu.trove.map.hash.TIntDoubleHashMap;
+
 
 /**
  * An implementation of Brandes (2001) "A Faster Algorithm for Betweenness
@@ -38,6 +44,25 @@ import edu.ucla.sspace.util.primitive.IntIterator;
  * computing the <a
  * href="http://en.wikipedia.org/wiki/Betweenness_Centrality">betweenness
  * centrality</a> for all the vertices in a graph.
+ *
+ * <p> The shortest paths from each source vertex are independent, so the
+ * sources are divided among the threads of the {@link WorkQueue}.  Each thread
+ * reuses a set of primitive arrays for the paths of each of its sources and
+ * sums the dependencies into its own centrality array, with the arrays of all
+ * the threads being summed once all sources have been processed.  The graph is
+ * first copied into flat adjacency arrays so that the traversals do not
+ * allocate any objects.
+ *
+ * <p> The {@link #computeWeighted(WeightedGraph) computeWeighted} method
+ * computes the shortest paths using Dijkstra's algorithm, where the weight of
+ * each edge is its length.  For large graphs, the {@link #approximate(Graph,
+ * int, Random) approximate} methods estimate the centralities using the
+ * shortest paths from a random sample of pivot vertices, following Brandes and
+ * Pich (2007) "Centrality Estimation in Large Networks".
+ *
+ * <p> As with the original algorithm, an undirected path is counted once from
+ * each of its end points, and vertices are considered adjacent if they are
+ * {@link Graph#getNeighbors(int) neighbors}, regardless of edge direction.
  */
 public class BetweennessCentrality implements java.io.Serializable {
     
@@ -52,64 +77,155 @@ public class BetweennessCentrality implements java.io.Serializable {
      * Returns a mapping from each vertex to its betweenness centrality measure.
      */
     public <E extends Edge> double[] compute(Graph<E> g) {
-        // Perform a quick test for whether the vertices of g are a contiguous
-        // sequence starting at 0, which makes the vertex mapping trivial
-        if (!hasContiguousVertices(g))
+        Adjacency adj = new Adjacency(g);
+        return accumulate(adj, allVertices(adj.order), false)[0];
+    }
+
+    /**
+     * Returns a mapping from each vertex to its betweenness centrality measure,
+     * where the length of a path is the sum of the weights of its edges.
+     *
+     * @throws IllegalArgumentException if any edge has a weight that is not
+     *         positive
+     */
+    public <E extends WeightedEdge> double[] computeWeighted(
+            WeightedGraph<E> g) {
+        Adjacency adj = new Adjacency(g);
+        return accumulate(adj, allVertices(adj.order), false)[0];
+    }
+
+    /**
+     * Returns an estimate of the betweenness centrality of each vertex based
+     * on the shortest paths from {@code numPivots} randomly selected source
+     * vertices.
+     *
+     * @param numPivots the number of source vertices to sample
+     * @param rand the source of randomness for selecting the pivots
+     *
+     * @throws IllegalArgumentException if {@code numPivots} is not positive or
+     *         is larger than the number of vertices in the graph
+     */
+    public <E extends Edge> Estimate approximate(Graph<E> g, int numPivots,
+                                                 Random rand) {
+        return approximate(new Adjacency(g), numPivots, rand);
+    }
+
+    /**
+     * Returns an estimate of the betweenness centrality of each vertex based
+     * on the weighted shortest paths from {@code numPivots} randomly selected
+     * source vertices.
+     *
+     * @param numPivots the number of source vertices to sample
+     * @param rand the source of randomness for selecting the pivots
+     *
+     * @throws IllegalArgumentException if {@code numPivots} is not positive or
+     *         is larger than the number of vertices in the graph, or if any
+     *         edge has a weight that is not positive
+     */
+    public <E extends WeightedEdge> Estimate approximateWeighted(
+            WeightedGraph<E> g, int numPivots, Random rand) {
+        return approximate(new Adjacency(g), numPivots, rand);
+    }
+
+    /**
+     * Estimates the centralities by scaling up the dependencies of each vertex
+     * on a random sample of sources, and estimates the standard error of each
+     * centrality from the variance of its dependencies across the sample.
+     */
+    private Estimate approximate(Adjacency adj, int numPivots, Random rand) {
+        int n = adj.order;
+        if (numPivots <= 0 || numPivots > n)
             throw new IllegalArgumentException(
-                "Vertices must be in continugous order");
+                "Number of pivots must be in [1, " + n + "]: " + numPivots);
+
+        // Select the pivots using a partial Fisher-Yates shuffle
+        int[] vertices = allVertices(n);
+        for (int i = 0; i < numPivots; ++i) {
+            int j = i + rand.nextInt(n - i);
+            int tmp = vertices[i];
+            vertices[i] = vertices[j];
+            vertices[j] = tmp;
+        }
+        int[] pivots = Arrays.copyOf(vertices, numPivots);
         
-        double[] centralities = new double[g.order()];
-        IntIterator vertexIter = g.vertices().iterator();
-        while (vertexIter.hasNext()) {
-            int s = vertexIter.nextInt();
-            Deque<Integer> S = new ArrayDeque<Integer>();
-
-            // Initialize P to an empty list for each vertex
-            List<List<Integer>> P = new ArrayList<List<Integer>>(g.order());
-            for (int i = 0; i < g.order(); ++i)
-                P.add(new ArrayList<Integer>());
-
-            double[] sigma = new double[g.order()];
-            sigma[s] = 1;
+        double[][] sums = accumulate(adj, pivots, true);
+        double[] sum = sums[0];
+        double[] sumOfSquares = sums[1];
+        double[] centralities = new double[n];
+        double[] errors = new double[n];
+        double k = numPivots;
+        // The finite population correction, which makes the error zero when
+        // every vertex was used as a pivot
+        double correction = (n > 1) ? Math.sqrt((n - k) / (n - 1d)) : 0;
+        for (int v = 0; v < n; ++v) {
+            // Each sampled dependency, scaled by n, is an unbiased estimate of
+            // the centrality
+            double mean = n * sum[v] / k;
+            centralities[v] = mean;
+            if (numPivots > 1) {
+                double variance = (n * (double)n * sumOfSquares[v] 
+                                   - k * mean * mean) / (k - 1);
+                errors[v] = 
+                    Math.sqrt(Math.max(variance, 0) / k) * correction;
+            }
+        }
+        return new Estimate(centralities, errors, pivots);
+    }
 
-            double[] d = new double[g.order()];
-            Arrays.fill(d, -1);
-            d[s] = 0;
-            
-            Queue<Integer> Q = new ArrayDeque<Integer>();
-            Q.add(s);
-            while (!Q.isEmpty()) {
-                int v = Q.poll();
-                S.offer(v);
-                IntIterator neighborIter = g.getNeighbors(v).iterator();
-                while (neighborIter.hasNext()) { 
-                    int w = neighborIter.nextInt();
-                    // Check whether this is the first time we've seen vertex w
-                    if (d[w] < 0) {
-                        Q.offer(w);
-                        d[w] = d[v] + 1;
-                    }
-                    // Check whether the shortest path to w is through v
-                    if (d[w] == d[v] + 1) {
-                        sigma[w] += sigma[v];
-                        P.get(w).add(v);
+    /**
+     * Returns the sums of the dependencies of each vertex on the sources and,
+     * if requested, the sums of their squares.
+     */
+    private double[][] accumulate(final Adjacency adj, final int[] sources,
+                                  final boolean sumSquares) {
+        final int n = adj.order;
+        int numTasks = Math.max(1, Math.min(
+            sources.length, WorkQueue.getWorkQueue().availableThreads()));
+        final double[][] sums = new double[numTasks][];
+        final double[][] squares = new double[numTasks][];
+        final AtomicInteger nextSource = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<Runnable>(numTasks);
+        for (int t = 0; t < numTasks; ++t) {
+            final int task = t;
+            tasks.add(new Runnable() {
+                    public void run() {
+                        double[] sum = new double[n];
+                        double[] square = (sumSquares) ? new double[n] : null;
+                        ShortestPaths paths = new ShortestPaths(adj);
+                        int i;
+                        while ((i = nextSource.getAndIncrement()) 
+                                   < sources.length) {
+                            paths.accumulate(sources[i], sum, square);
+                        }
+                        sums[task] = sum;
+                        squares[task] = square;
                     }
-                }
-            }
-            double[] delta = new double[g.order()];
-            // S as a stack returns vertices in order of their non-increasing
-            // distance from vertex s
-            while (!S.isEmpty()) {
-                int w = S.pollLast(); // get the top of the stack
-                for (int v : P.get(w)) {
-                    delta[v] += (sigma[v] / sigma[w]) * (1 + delta[w]);
-                }
-                if (w != s) {
-                    centralities[w] += delta[w];
-                }            
+                });
+        }
+        if (numTasks == 1)
+            tasks.get(0).run();
+        else
+            WorkQueue.getWorkQueue().run(tasks);
+
+        // Reduce the per-thread sums into the first thread's arrays
+        for (int t = 1; t < numTasks; ++t) {
+            for (int v = 0; v < n; ++v) {
+                sums[0][v] += sums[t][v];
+                if (sumSquares)
+                    squares[0][v] += squares[t][v];
             }
         }
-        return centralities;
+        return new double[][] { sums[0], squares[0] };
+    }
+
+    /**
+     * Returns the array {@code [0, 1, ..., n-1]}.
+     */
+    private static int[] allVertices(int n) {
+        int[] vertices = new int[n];
+        for (int i = 0; i < n; ++i)
+            vertices[i] = i;
+        return vertices;
     }
 
     private static boolean hasContiguousVertices(Graph<?> g) {
@@ -120,4 +236,394 @@ public class BetweennessCentrality implements java.io.Serializable {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * An estimate of the betweenness centralities of a graph, computed from a
+     * sample of source vertices.
+     */
+    public static class Estimate implements java.io.Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double[] centralities;
+
+        private final double[] standardErrors;
+
+        private final int[] pivots;
+
+        Estimate(double[] centralities, double[] standardErrors, 
+                 int[] pivots) {
+            this.centralities = centralities;
+            this.standardErrors = standardErrors;
+            this.pivots = pivots;
+        }
+
+        /**
+         * Returns the estimated centrality of each vertex.
+         */
+        public double[] getCentralities() {
+            return centralities;
+        }
+
+        /**
+         * Returns the estimated standard error of each vertex's centrality.
+         */
+        public double[] getStandardErrors() {
+            return standardErrors;
+        }
+
+        /**
+         * Returns the source vertices that were sampled.
+         */
+        public int[] getPivots() {
+            return pivots;
+        }
+    }
+
+    /**
+     * A copy of the adjacency of a graph in compressed sparse row form, where
+     * the neighbors of vertex {@code v} are stored in {@code neighbors} from
+     * {@code offsets[v]} up to, but not including, {@code offsets[v+1]}.
+     */
+    private static class Adjacency {
+
+        final int order;
+
+        final int[] offsets;
+
+        final int[] neighbors;
+
+        /**
+         * The length of each edge in {@code neighbors}, or {@code null} if the
+         * paths are unweighted.
+         */
+        final double[] lengths;
+
+        /**
+         * The offsets into the predecessor arrays for each vertex, which are
+         * sized by the number of vertices that list it as a neighbor.
+         */
+        final int[] predecessorOffsets;
+
+        /**
+         * Copies the neighbors of each vertex in the graph.
+         */
+        Adjacency(Graph<?> g) {
+            checkVertices(g);
+            order = g.order();
+            offsets = new int[order + 1];
+            for (int v = 0; v < order; ++v)
+                offsets[v + 1] = offsets[v] + g.getNeighbors(v).size();
+            neighbors = new int[offsets[order]];
+            for (int v = 0; v < order; ++v) {
+                int i = offsets[v];
+                IntIterator it = g.getNeighbors(v).iterator();
+                while (it.hasNext())
+                    neighbors[i++] = it.nextInt();
+            }
+            lengths = null;
+            predecessorOffsets = predecessorOffsets();
+        }
+
+        /**
+         * Copies the neighbors of each vertex in the graph along with the
+         * weights of the edges to them.  If there are several edges between a
+         * pair of vertices, the shortest is used.
+         */
+        Adjacency(WeightedGraph<?> g) {
+            checkVertices(g);
+            order = g.order();
+            TIntDoubleMap[] adjacent = new TIntDoubleMap[order];
+            offsets = new int[order + 1];
+            for (int v = 0; v < order; ++v) {
+                TIntDoubleMap m = new TIntDoubleHashMap();
+                for (WeightedEdge e : g.getAdjacencyList(v)) {
+                    double w = e.weight();
+                    if (!(w > 0))
+                        throw new IllegalArgumentException(
+                            "Edge weights must be positive: " + e);
+                    int u = (e.from() == v) ? e.to() : e.from();
+                    if (!m.containsKey(u) || w < m.get(u))
+                        m.put(u, w);
+                }
+                adjacent[v] = m;
+                offsets[v + 1] = offsets[v] + m.size();
+            }
+            neighbors = new int[offsets[order]];
+            lengths = new double[offsets[order]];
+            for (int v = 0; v < order; ++v) {
+                int i = offsets[v];
+                TIntDoubleIterator it = adjacent[v].iterator();
+                while (it.hasNext()) {
+                    it.advance();
+                    neighbors[i] = it.key();
+                    lengths[i++] = it.value();
+                }
+                adjacent[v] = null;
+            }
+            predecessorOffsets = predecessorOffsets();
+        }
+
+        private int[] predecessorOffsets() {
+            int[] counts = new int[order + 1];
+            for (int w : neighbors)
+                counts[w + 1]++;
+            for (int v = 0; v < order; ++v)
+                counts[v + 1] += counts[v];
+            return counts;
+        }
+
+        private static void checkVertices(Graph<?> g) {
+            // Perform a quick test for whether the vertices of g are a
+            // contiguous sequence starting at 0, which makes the vertex
+            // mapping trivial
+            if (!hasContiguousVertices(g))
+                throw new IllegalArgumentException(
+                    "Vertices must be in continugous order");
+        }
+    }
+
+    /**
+     * The reusable state for computing the shortest paths from a single source
+     * and the dependencies of the vertices on that source.  After each source,
+     * only the entries for the vertices that were reached are reset.
+     */
+    private static class ShortestPaths {
+
+        final Adjacency adj;
+
+        /**
+         * The vertices in the order that their distance was finalized, which
+         * is used as a stack when accumulating the dependencies.
+         */
+        final int[] order;
+
+        /**
+         * The queue of vertices for a breadth-first search
+         */
+        final int[] queue;
+
+        /**
+         * The hop distance of each vertex, or {@code -1} if unreached.
+         */
+        final int[] hops;
+
+        /**
+         * The weighted distance of each vertex, or infinity if unreached.
+         */
+        final double[] distances;
+
+        /**
+         * Whether each vertex's weighted distance has been finalized
+         */
+        final boolean[] settled;
+
+        final double[] sigma;
+
+        final double[] delta;
+
+        final int[] predecessors;
+
+        final int[] numPredecessors;
+
+        /**
+         * The binary heap of tentative distances and their vertices, which may
+         * contain stale entries for vertices whose distance was later reduced.
+         */
+        final double[] heapKeys;
+
+        final int[] heapVertices;
+
+        ShortestPaths(Adjacency adj) {
+            this.adj = adj;
+            int n = adj.order;
+            order = new int[n];
+            sigma = new double[n];
+            delta = new double[n];
+            numPredecessors = new int[n];
+            predecessors = new int[adj.neighbors.length];
+            if (adj.lengths == null) {
+                queue = new int[n];
+                hops = new int[n];
+                Arrays.fill(hops, -1);
+                distances = null;
+                settled = null;
+                heapKeys = null;
+                heapVertices = null;
+            }
+            else {
+                queue = null;
+                hops = null;
+                distances = new double[n];
+                Arrays.fill(distances, Double.POSITIVE_INFINITY);
+                settled = new boolean[n];
+                heapKeys = new double[adj.neighbors.length + 1];
+                heapVertices = new int[adj.neighbors.length + 1];
+            }
+        }
+
+        /**
+         * Adds the dependency of every other vertex on the source to {@code
+         * sum}, and the squared dependency to {@code squares} if it is not
+         * {@code null}.
+         */
+        void accumulate(int s, double[] sum, double[] squares) {
+            int reached = (adj.lengths == null) ? search(s) : dijkstra(s);
+            // The order array as a stack returns vertices in order of their
+            // non-increasing distance from vertex s
+            for (int i = reached - 1; i >= 0; --i) {
+                int w = order[i];
+                int start = adj.predecessorOffsets[w];
+                int end = start + numPredecessors[w];
+                for (int j = start; j < end; ++j) {
+                    int v = predecessors[j];
+                    delta[v] += (sigma[v] / sigma[w]) * (1 + delta[w]);
+                }
+                if (w != s) {
+                    sum[w] += delta[w];
+                    if (squares != null)
+                        squares[w] += delta[w] * delta[w];
+                }
+            }
+            // Reset the state of the vertices that were reached
+            for (int i = 0; i < reached; ++i) {
+                int v = order[i];
+                sigma[v] = 0;
+                delta[v] = 0;
+                numPredecessors[v] = 0;
+                if (hops != null)
+                    hops[v] = -1;
+                else {
+                    distances[v] = Double.POSITIVE_INFINITY;
+                    settled[v] = false;
+                }
+            }
+        }
+
+        /**
+         * Computes the unweighted shortest paths from {@code s} using a
+         * breadth-first search and returns the number of vertices reached.
+         */
+        private int search(int s) {
+            int[] offsets = adj.offsets;
+            int[] neighbors = adj.neighbors;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = s;
+            hops[s] = 0;
+            sigma[s] = 1;
+            while (head < tail) {
+                int v = queue[head];
+                order[head++] = v;
+                int nextHop = hops[v] + 1;
+                for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+                    int w = neighbors[i];
+                    // Check whether this is the first time we've seen vertex w
+                    if (hops[w] < 0) {
+                        queue[tail++] = w;
+                        hops[w] = nextHop;
+                    }
+                    // Check whether the shortest path to w is through v
+                    if (hops[w] == nextHop) {
+                        sigma[w] += sigma[v];
+                        addPredecessor(w, v);
+                    }
+                }
+            }
+            return tail;
+        }
+
+        /**
+         * Computes the weighted shortest paths from {@code s} using Dijkstra's
+         * algorithm and returns the number of vertices reached.
+         */
+        private int dijkstra(int s) {
+            int[] offsets = adj.offsets;
+            int[] neighbors = adj.neighbors;
+            double[] lengths = adj.lengths;
+            int reached = 0;
+            int heapSize = 0;
+            distances[s] = 0;
+            sigma[s] = 1;
+            heapSize = push(heapSize, 0, s);
+            while (heapSize > 0) {
+                int v = heapVertices[0];
+                double d = heapKeys[0];
+                heapSize = pop(heapSize);
+                // Skip stale entries for vertices that were already settled
+                if (settled[v])
+                    continue;
+                settled[v] = true;
+                order[reached++] = v;
+                for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+                    int w = neighbors[i];
+                    if (settled[w])
+                        continue;
+                    double dist = d + lengths[i];
+                    if (dist < distances[w]) {
+                        // A shorter path was found, so replace any paths seen
+                        // so far
+                        distances[w] = dist;
+                        sigma[w] = sigma[v];
+                        numPredecessors[w] = 0;
+                        addPredecessor(w, v);
+                        heapSize = push(heapSize, dist, w);
+                    }
+                    else if (dist == distances[w]) {
+                        sigma[w] += sigma[v];
+                        addPredecessor(w, v);
+                    }
+                }
+            }
+            return reached;
+        }
+
+        private void addPredecessor(int w, int v) {
+            predecessors[adj.predecessorOffsets[w] + numPredecessors[w]++] = v;
+        }
+
+        /**
+         * Adds the vertex to the heap and returns the new size of the heap.
+         */
+        private int push(int size, double key, int vertex) {
+            int i = size;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapKeys[parent] <= key)
+                    break;
+                heapKeys[i] = heapKeys[parent];
+                heapVertices[i] = heapVertices[parent];
+                i = parent;
+            }
+            heapKeys[i] = key;
+            heapVertices[i] = vertex;
+            return size + 1;
+        }
+
+        /**
+         * Removes the minimum entry from the heap and returns the new size of
+         * the heap.
+         */
+        private int pop(int size) {
+            int last = --size;
+            double key = heapKeys[last];
+            int vertex = heapVertices[last];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && heapKeys[child + 1] < heapKeys[child])
+                    child++;
+                if (key <= heapKeys[child])
+                    break;
+                heapKeys[i] = heapKeys[child];
+                heapVertices[i] = heapVertices[child];
+                i = child;
+            }
+            heapKeys[i] = key;
+            heapVertices[i] = vertex;
+            return size;
+        }
+    }
+}
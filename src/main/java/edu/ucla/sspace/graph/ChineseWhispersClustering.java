@@ -149,7 +149,10 @@ public class ChineseWhispersClustering implements java.io.Serializable {
                 else {
                     // Get the neighbors of the current vertex and identify
                     // which class label is the maximum from the neighbors
-                    int maxClass = (graph instanceof WeightedGraph) 
+                    int maxClass = (graph instanceof CompactWeightedGraph)
+                        ? getMaxClassWeighted(vertex, vertexAssignments,
+                            (CompactWeightedGraph)graph)
+                        : (graph instanceof WeightedGraph) 
                         ? getMaxClassWeighted(vertex, vertexAssignments,
                             (WeightedGraph<? extends WeightedEdge>)graph)
                         : getMaxClass(vertex, vertexAssignments, graph);
@@ -220,7 +223,30 @@ public class ChineseWhispersClustering implements java.io.Serializable {
                 classSums.put(nClass, weight);
             }
         }
+        return selectMaxClass(classSums);
+    }
+
+    /**
+     * Returns the class with the highest sum of edge weights among the
+     * neighbors of {@code v}, reading the weights directly from the slots of
+     * the compact graph rather than creating an edge for each neighbor.
+     */
+    static int getMaxClassWeighted(int v, int[] vertexAssignments,
+                                   CompactWeightedGraph g) {
+        TIntDoubleMap classSums = new TIntDoubleHashMap();
+        for (int s = g.slotsBegin(v), end = g.slotsEnd(v); s < end; ++s) {
+            int nClass = vertexAssignments[g.neighbor(s)];
+            double weight = g.weight(s);
+            classSums.adjustOrPutValue(nClass, weight, weight);
+        }
+        return selectMaxClass(classSums);
+    }
 
+    /**
+     * Returns the class with the highest summed weight, breaking ties
+     * randomly.
+     */
+    private static int selectMaxClass(TIntDoubleMap classSums) {
         double maxSum = -1d;
         TIntSet ties = new TIntHashSet();
         TIntDoubleIterator iter = classSums.iterator();
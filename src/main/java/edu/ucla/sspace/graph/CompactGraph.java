@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.graph;
+
+import edu.ucla.sspace.util.primitive.IntIterator;
+
+import java.util.Arrays;
+import java.util.Set;
+
+
+/**
+ * An immutable, undirected {@link Graph} stored in compressed sparse row form.
+ * The graph is a snapshot built in a single pass over the vertices of an
+ * existing graph and occupies two {@code int} arrays, which makes it well
+ * suited to read-heavy algorithms such as {@link LinkClustering}, {@link
+ * ChineseWhispersClustering} and the subgraph enumeration of {@link Fanmod}.
+ * Any edge information other than connectivity, such as weights or types, is
+ * discarded; see {@link CompactWeightedGraph} and {@link CompactMultigraph}
+ * for snapshots that retain this information.
+ *
+ * <p> The edges returned by this graph are {@link SimpleEdge} instances, which
+ * are created as needed.  {@link #copy(Set)} returns a mutable {@link
+ * SparseUndirectedGraph}, while {@link #subgraph(Set)} returns another compact
+ * graph.  See {@link AbstractCompactGraph} for details on the representation.
+ *
+ * @author David Jurgens
+ */
+public class CompactGraph extends AbstractCompactGraph<Edge> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a compact snapshot of the vertices and edges in {@code g}.
+     *
+     * @throws IllegalArgumentException if {@code g} is a {@link DirectedGraph}
+     */
+    public CompactGraph(Graph<? extends Edge> g) {
+        super(build(g, null));
+    }
+
+    /**
+     * Creates a compact snapshot of the subgraph of {@code g} induced by the
+     * specified vertices.
+     */
+    private CompactGraph(Graph<? extends Edge> g, Set<Integer> subset) {
+        super(build(g, subset));
+    }
+
+    /**
+     * Returns the rows of the graph, containing only the vertices in {@code
+     * subset} if it is non-{@code null}.
+     */
+    private static Rows build(Graph<? extends Edge> g, Set<Integer> subset) {
+        checkUndirected(g);
+        Rows rows = new Rows(g, subset);
+        int[] buffer = new int[16];
+        for (int row = 0; row < rows.vertices.length; ++row) {
+            int count = 0;
+            IntIterator it = g.getNeighbors(rows.vertices[row]).iterator();
+            while (it.hasNext()) {
+                int n = it.nextInt();
+                if (subset != null && !rows.contains(n))
+                    continue;
+                if (count == buffer.length)
+                    buffer = Arrays.copyOf(buffer, count * 2);
+                buffer[count++] = n;
+            }
+            Arrays.sort(buffer, 0, count);
+            for (int i = 0; i < count; ++i)
+                rows.add(buffer[i]);
+            rows.endRow(row);
+        }
+        return rows;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SparseUndirectedGraph copy(Set<Integer> vertices) {
+        return copyInto(new SparseUndirectedGraph(), vertices);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    Edge edge(int from, int to, int slot, int k) {
+        return new SimpleEdge(from, to);
+    }
+
+    /**
+     * Returns {@code 1}, as each pair of vertices is connected by a single
+     * edge.
+     */
+    int edgeCount(int slot) {
+        return 1;
+    }
+
+    /**
+     * Returns a compact snapshot of the subgraph induced by the specified
+     * vertices.  Because this graph is immutable, the snapshot always reflects
+     * the state of this graph.
+     *
+     * @throws IllegalArgumentException if any of the vertices are not in this
+     *         graph
+     */
+    public CompactGraph subgraph(Set<Integer> vertices) {
+        return new CompactGraph(this, vertices);
+    }
+}
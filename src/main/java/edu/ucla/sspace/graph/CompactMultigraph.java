@@ -0,0 +1,348 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * An immutable, undirected {@link Multigraph} stored in compressed sparse row
+ * form.  Each slot described in {@link AbstractCompactGraph} holds a distinct
+ * neighbor, and the types of the one or more edges connecting the pair are
+ * kept in a second level of offsets into an {@code int} array of type ids.
+ * The type ids are indices into a table of the graph's edge types, so each
+ * type object is stored once no matter how many edges use it.
+ *
+ * <p> This graph is intended to be the input for motif finding with {@link
+ * Fanmod}, where the subgraph enumeration repeatedly scans the neighbors of
+ * each vertex.  {@link #copy(Set)} returns a mutable {@link
+ * UndirectedMultigraph}, which is suitable for the edge shuffling performed
+ * when generating random null models, while the {@code subgraph} methods
+ * return another compact graph.
+ *
+ * @author David Jurgens
+ */
+public class CompactMultigraph<T> extends AbstractCompactGraph<TypedEdge<T>>
+        implements Multigraph<T,TypedEdge<T>> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The edge type for each type id
+     */
+    private final List<T> types;
+
+    /**
+     * The type id of each edge type
+     */
+    private final Map<T,Integer> typeIndices;
+
+    /**
+     * The offset of the first type id for each slot, with a final entry for
+     * the total number of type ids.
+     */
+    private final int[] typeOffsets;
+
+    /**
+     * The type id of every edge in each slot, sorted within each slot
+     */
+    private final int[] typeIds;
+
+    /**
+     * The number of edges in the graph
+     */
+    private final int numEdges;
+
+    /**
+     * Creates a compact snapshot of the vertices and typed edges in {@code
+     * g}.
+     *
+     * @throws IllegalArgumentException if {@code g} is a {@link DirectedGraph}
+     */
+    public CompactMultigraph(Graph<? extends TypedEdge<T>> g) {
+        this(new TypedRows<T>(g, null, null));
+    }
+
+    /**
+     * Creates the graph from the completed rows.
+     */
+    private CompactMultigraph(TypedRows<T> rows) {
+        super(rows);
+        this.types = rows.types;
+        this.typeIndices = rows.typeIndices;
+        this.typeOffsets = Arrays.copyOf(rows.typeOffsets, rows.size + 1);
+        this.typeIds = Arrays.copyOf(rows.typeIds, rows.numTypeIds);
+        int edges = 0;
+        for (int row = 0; row < vertices.length; ++row) {
+            for (int s = offsets[row]; s < offsets[row + 1]; ++s) {
+                if (neighbors[s] >= vertices[row])
+                    edges += edgeCount(s);
+            }
+        }
+        this.numEdges = edges;
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}.
+     */
+    public void clearEdges(T edgeType) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(int vertex1, int vertex2, T edgeType) {
+        Integer typeId = typeIndices.get(edgeType);
+        int slot = slot(vertex1, vertex2);
+        if (typeId == null || slot < 0)
+            return false;
+        return Arrays.binarySearch(typeIds, typeOffsets[slot], 
+                                   typeOffsets[slot + 1], typeId) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public UndirectedMultigraph<T> copy(Set<Integer> vertices) {
+        return copyInto(new UndirectedMultigraph<T>(), vertices);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public int degree(int vertex) {
+        return typeOffsets[slotsEnd(vertex)] - typeOffsets[slotsBegin(vertex)];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    TypedEdge<T> edge(int from, int to, int slot, int k) {
+        return new SimpleTypedEdge<T>(
+            types.get(typeIds[typeOffsets[slot] + k]), from, to);
+    }
+
+    /**
+     * Returns the number of differently-typed edges in the slot.
+     */
+    int edgeCount(int slot) {
+        return typeOffsets[slot + 1] - typeOffsets[slot];
+    }
+
+    /**
+     * {@inheritDoc}  The returned set is an unmodifiable copy of the edges.
+     */
+    public Set<TypedEdge<T>> edges(T type) {
+        Integer typeId = typeIndices.get(type);
+        if (typeId == null)
+            return Collections.<TypedEdge<T>>emptySet();
+        Set<TypedEdge<T>> edges = new HashSet<TypedEdge<T>>();
+        for (int row = 0; row < vertices.length; ++row) {
+            int v = vertices[row];
+            for (int s = offsets[row]; s < offsets[row + 1]; ++s) {
+                if (neighbors[s] >= v && Arrays.binarySearch(
+                        typeIds, typeOffsets[s], typeOffsets[s + 1], 
+                        typeId) >= 0)
+                    edges.add(new SimpleTypedEdge<T>(type, v, neighbors[s]));
+            }
+        }
+        return Collections.unmodifiableSet(edges);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<T> edgeTypes() {
+        return Collections.unmodifiableSet(typeIndices.keySet());
+    }
+
+    /**
+     * Returns the type id of the {@code k}th edge in the specified slot.  Type
+     * ids are contiguous from {@code 0} and may be converted to their edge
+     * type with {@link #edgeType(int)}.
+     */
+    public int edgeTypeId(int slot, int k) {
+        return typeIds[typeOffsets[slot] + k];
+    }
+
+    /**
+     * Returns the edge type with the specified id.
+     */
+    public T edgeType(int typeId) {
+        return types.get(typeId);
+    }
+
+    /**
+     * Returns the number of edges in the specified slot, each of which has a
+     * different type.
+     */
+    public int numEdges(int slot) {
+        return edgeCount(slot);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public int size() {
+        return numEdges;
+    }
+
+    /**
+     * Returns a compact snapshot of the subgraph induced by the specified
+     * vertices.  Because this graph is immutable, the snapshot always reflects
+     * the state of this graph.
+     *
+     * @throws IllegalArgumentException if any of the vertices are not in this
+     *         graph
+     */
+    public CompactMultigraph<T> subgraph(Set<Integer> vertices) {
+        return new CompactMultigraph<T>(new TypedRows<T>(this, vertices, null));
+    }
+
+    /**
+     * Returns a compact snapshot of the subgraph induced by the specified
+     * vertices that contains only edges of the specified types.
+     *
+     * @throws IllegalArgumentException if any of the vertices are not in this
+     *         graph, or if {@code edgeTypes} is empty or contains types not in
+     *         this graph
+     */
+    public CompactMultigraph<T> subgraph(Set<Integer> vertices, 
+                                         Set<T> edgeTypes) {
+        if (edgeTypes.isEmpty()) 
+            throw new IllegalArgumentException("Must specify at least one type");
+        if (!typeIndices.keySet().containsAll(edgeTypes)) {
+            throw new IllegalArgumentException(
+                "Cannot create subgraph with more types than exist");
+        }
+        return new CompactMultigraph<T>(
+            new TypedRows<T>(this, vertices, edgeTypes));
+    }
+
+    /**
+     * The rows of a multigraph, which record the type ids of the edges in each
+     * slot.
+     */
+    private static class TypedRows<T> extends Rows {
+
+        /**
+         * The edge types seen so far, in order of their ids
+         */
+        final List<T> types;
+
+        /**
+         * The id of each edge type seen so far
+         */
+        final Map<T,Integer> typeIndices;
+
+        /**
+         * The offset of the first type id of each slot
+         */
+        int[] typeOffsets;
+
+        /**
+         * The type ids of all completed rows
+         */
+        int[] typeIds;
+
+        /**
+         * The number of type ids added so far
+         */
+        int numTypeIds;
+
+        /**
+         * Builds the rows for the vertices of {@code g}, or for only those in
+         * {@code subset} if it is non-{@code null}, keeping only the edges
+         * whose type is in {@code edgeTypes} if it is non-{@code null}.
+         */
+        public TypedRows(Graph<? extends TypedEdge<T>> g, Set<Integer> subset,
+                         Set<T> edgeTypes) {
+            super(g, subset);
+            checkUndirected(g);
+            types = new ArrayList<T>();
+            typeIndices = new HashMap<T,Integer>();
+            typeOffsets = new int[neighbors.length + 1];
+            typeIds = new int[neighbors.length];
+
+            // Each edge is packed as its neighbor in the upper bits and its
+            // type id in the lower bits, so that sorting orders the edges by
+            // neighbor and then by type.
+            long[] buffer = new long[16];
+            for (int row = 0; row < vertices.length; ++row) {
+                int v = vertices[row];
+                int count = 0;
+                for (TypedEdge<T> e : g.getAdjacencyList(v)) {
+                    int n = (e.from() == v) ? e.to() : e.from();
+                    T type = e.edgeType();
+                    if ((subset != null && !contains(n)) 
+                            || (edgeTypes != null && !edgeTypes.contains(type)))
+                        continue;
+                    if (count == buffer.length)
+                        buffer = Arrays.copyOf(buffer, count * 2);
+                    buffer[count++] = ((long)n << 32) | index(type);
+                }
+                Arrays.sort(buffer, 0, count);
+                int prevNeighbor = 0;
+                for (int i = 0; i < count; ++i) {
+                    if (i > 0 && buffer[i] == buffer[i - 1])
+                        continue;
+                    int n = (int)(buffer[i] >>> 32);
+                    if (i == 0 || n != prevNeighbor) {
+                        int slot = add(n);
+                        if (slot + 1 >= typeOffsets.length)
+                            typeOffsets = Arrays.copyOf(
+                                typeOffsets, neighbors.length + 1);
+                        typeOffsets[slot] = numTypeIds;
+                        prevNeighbor = n;
+                    }
+                    if (numTypeIds == typeIds.length)
+                        typeIds = Arrays.copyOf(typeIds, numTypeIds * 2);
+                    typeIds[numTypeIds++] = (int)buffer[i];
+                }
+                typeOffsets[size] = numTypeIds;
+                endRow(row);
+            }
+        }
+
+        /**
+         * Returns the id of the type, assigning it the next id if the type
+         * has not been seen.
+         */
+        private int index(T type) {
+            Integer id = typeIndices.get(type);
+            if (id == null) {
+                id = types.size();
+                typeIndices.put(type, id);
+                types.add(type);
+            }
+            return id;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.graph;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import gnu.trove.map.TIntDoubleMap;
+import gnu.trove.map.hash.TIntDoubleHashMap;
+
+
+/**
+ * An immutable, undirected {@link WeightedGraph} stored in compressed sparse
+ * row form.  In addition to the arrays described in {@link
+ * AbstractCompactGraph}, this graph keeps a {@code float} weight for each
+ * slot.  Weights are therefore stored with single precision, and the {@link
+ * SimpleWeightedEdge} instances returned by this graph will only be equal to
+ * the edges of the original graph if their weights are exactly representable
+ * as a {@code float}.  If the original graph connects a pair of vertices with
+ * more than one edge, the snapshot contains a single edge whose weight is the
+ * sum of their weights.
+ *
+ * <p> Algorithms may read the weights without creating any edge objects by
+ * using {@link #weight(int)} with the slots of a vertex:
+ *
+ * <pre>
+ *   for (int s = g.slotsBegin(v); s &lt; g.slotsEnd(v); ++s) 
+ *       visit(g.neighbor(s), g.weight(s));
+ * </pre>
+ *
+ * <p> {@link #copy(Set)} returns a mutable {@link SparseWeightedGraph}, while
+ * {@link #subgraph(Set)} returns another compact graph.
+ *
+ * @author David Jurgens
+ */
+public class CompactWeightedGraph extends AbstractCompactGraph<WeightedEdge>
+        implements WeightedGraph<WeightedEdge> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The weight of the edge in each slot
+     */
+    private final float[] weights;
+
+    /**
+     * Creates a compact snapshot of the vertices and weighted edges in {@code
+     * g}.
+     *
+     * @throws IllegalArgumentException if {@code g} is a {@link DirectedGraph}
+     */
+    public CompactWeightedGraph(Graph<? extends WeightedEdge> g) {
+        this(g, null);
+    }
+
+    /**
+     * Creates a compact snapshot of the subgraph of {@code g} induced by the
+     * specified vertices.
+     */
+    private CompactWeightedGraph(Graph<? extends WeightedEdge> g, 
+                                 Set<Integer> subset) {
+        this(new WeightedRows(g, subset));
+    }
+
+    /**
+     * Creates the graph from the completed rows.
+     */
+    private CompactWeightedGraph(WeightedRows rows) {
+        super(rows);
+        this.weights = (rows.size == rows.weights.length)
+            ? rows.weights
+            : Arrays.copyOf(rows.weights, rows.size);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SparseWeightedGraph copy(Set<Integer> vertices) {
+        return copyInto(new SparseWeightedGraph(), vertices);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    WeightedEdge edge(int from, int to, int slot, int k) {
+        return new SimpleWeightedEdge(from, to, weights[slot]);
+    }
+
+    /**
+     * Returns {@code 1}, as each pair of vertices is connected by a single
+     * edge.
+     */
+    int edgeCount(int slot) {
+        return 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double strength(int vertex) {
+        double sum = 0;
+        for (int s = slotsBegin(vertex), end = slotsEnd(vertex); s < end; ++s)
+            sum += weights[s];
+        return sum;
+    }
+
+    /**
+     * Returns a compact snapshot of the subgraph induced by the specified
+     * vertices.  Because this graph is immutable, the snapshot always reflects
+     * the state of this graph.
+     *
+     * @throws IllegalArgumentException if any of the vertices are not in this
+     *         graph
+     */
+    public CompactWeightedGraph subgraph(Set<Integer> vertices) {
+        return new CompactWeightedGraph(this, vertices);
+    }
+
+    /**
+     * Returns the weight of the edge in the specified slot.
+     */
+    public float weight(int slot) {
+        return weights[slot];
+    }
+
+    /**
+     * The rows of a weighted graph, which record the weight for each slot in
+     * an array parallel to the neighbors.
+     */
+    private static class WeightedRows extends Rows {
+
+        /**
+         * The weights of all completed rows
+         */
+        float[] weights;
+
+        /**
+         * Builds the rows for the vertices of {@code g}, or for only those in
+         * {@code subset} if it is non-{@code null}.
+         */
+        public WeightedRows(Graph<? extends WeightedEdge> g, 
+                            Set<Integer> subset) {
+            super(g, subset);
+            checkUndirected(g);
+            weights = new float[neighbors.length];
+            TIntDoubleMap rowWeights = new TIntDoubleHashMap();
+            for (int row = 0; row < vertices.length; ++row) {
+                int v = vertices[row];
+                rowWeights.clear();
+                for (WeightedEdge e : g.getAdjacencyList(v)) {
+                    int n = (e.from() == v) ? e.to() : e.from();
+                    if (subset == null || contains(n))
+                        rowWeights.adjustOrPutValue(n, e.weight(), e.weight());
+                }
+                int[] adjacent = rowWeights.keys();
+                Arrays.sort(adjacent);
+                for (int n : adjacent) {
+                    int slot = add(n);
+                    if (slot == weights.length)
+                        weights = Arrays.copyOf(weights, neighbors.length);
+                    weights[slot] = (float)rowWeights.get(n);
+                }
+                endRow(row);
+            }
+        }
+    }
+}
@@ -27,7 +27,8 @@ import edu.ucla.sspace.basis.StringBasisMapping;
 import edu.ucla.sspace.common.SemanticSpace;
 import edu.ucla.sspace.common.Statistics;
 
-import edu.ucla.sspace.matrix.AtomicGrowingSparseHashMatrix;
+import edu.ucla.sspace.matrix.CooccurrenceAccumulator;
+import edu.ucla.sspace.matrix.Matrices;
 import edu.ucla.sspace.matrix.MatrixEntropy;
 import edu.ucla.sspace.matrix.MatrixEntropy.EntropyStats;
 import edu.ucla.sspace.matrix.SparseMatrix;
@@ -37,17 +38,20 @@ import edu.ucla.sspace.text.IteratorFactory;
 
 import edu.ucla.sspace.util.BoundedSortedMultiMap;
 import edu.ucla.sspace.util.MultiMap;
-import edu.ucla.sspace.util.Pair;
 
 import edu.ucla.sspace.vector.CompactSparseVector;
 import edu.ucla.sspace.vector.SparseHashDoubleVector;
 import edu.ucla.sspace.vector.SparseDoubleVector;
 import edu.ucla.sspace.vector.Vector;
 
+import gnu.trove.map.TLongDoubleMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
@@ -63,6 +67,8 @@ import java.util.logging.Logger;
 
 import java.util.concurrent.ConcurrentHashMap;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 
 /**
  * A {@code SemanticSpace} implementation of the Hyperspace Analogue to Language
@@ -206,10 +212,37 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
     private int wordIndexCounter;
 
     /**
-     * The matrix used for storing weight co-occurrence statistics of those
-     * words that occur both before and after.
+     * The accumulator used for storing weight co-occurrence statistics of
+     * those words that occur both before and after.  This is {@code null} once
+     * the space has been processed.
+     */
+    private CooccurrenceAccumulator cooccurrences;
+
+    /**
+     * The number of documents whose counts have been added to {@link
+     * #cooccurrences}, which identifies the counts a {@link Snapshot} was
+     * computed from.
+     */
+    private final AtomicInteger documentsAdded = new AtomicInteger();
+
+    /**
+     * The row and column vectors of the accumulated counts, which are computed
+     * when a vector is requested before the space has been processed, or
+     * {@code null} if none have been requested since the counts last changed.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * The rows of the co-occurrence matrix, which are set when the space is
+     * processed, or {@code null} if columns have been dropped.
+     */
+    private SparseDoubleVector[] cooccurrenceRows;
+
+    /**
+     * The columns of the co-occurrence matrix, which are set when the space is
+     * processed, or {@code null} if columns have been dropped.
      */
-    private AtomicGrowingSparseHashMatrix cooccurrenceMatrix;
+    private SparseDoubleVector[] cooccurrenceColumns;
 
     /**
      * The reduced matrix, if columns are to be dropped.
@@ -261,7 +294,7 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
                                         WeightingFunction weightFunction,
                                         double columnThreshold,
                                         int retainColumns) {
-        this.cooccurrenceMatrix = new AtomicGrowingSparseHashMatrix();
+        this.cooccurrences = new CooccurrenceAccumulator();
         this.termToIndex = basis;
         this.windowSize = windowSize;
         this.weighting = weightFunction;
@@ -305,8 +338,7 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
         // keep a thread-local count of what needs to be modified in the matrix
         // and update after the document has been processed.  This saves
         // potential contention from concurrent writes.
-        Map<Pair<Integer>,Double> matrixEntryToCount =
-            new HashMap<Pair<Integer>,Double>();
+        TLongDoubleMap matrixEntryToCount = new TLongDoubleHashMap();
 
         //Load the first windowSize words into the Queue
         for(int i = 0;  i < windowSize && documentTokens.hasNext(); i++)
@@ -343,10 +375,8 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
 
         // Once the document has been processed, update the co-occurrence matrix
         // accordingly.
-        for (Map.Entry<Pair<Integer>,Double> e : matrixEntryToCount.entrySet()){
-            Pair<Integer> p = e.getKey();
-            cooccurrenceMatrix.addAndGet(p.x, p.y, e.getValue());
-        }
+        cooccurrences.addAll(matrixEntryToCount);
+        documentsAdded.incrementAndGet();
     }
 
     /**
@@ -358,7 +388,7 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
     private void addTokens(Queue<String> words,
                            int focusIndex,
                            int distance,
-                           Map<Pair<Integer>, Double> matrixEntryToCount) {
+                           TLongDoubleMap matrixEntryToCount) {
         for (String word : words) {
             // skip adding co-occurence values for words that are not
             // accepted by the filter
@@ -368,11 +398,9 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
                     // Get the current number of times that the focus word has
                     // co-occurred with this word before after it.  Weight the
                     // word appropriately baed on distance
-                    Pair<Integer> p = new Pair<Integer>(index, focusIndex);
+                    long cell = CooccurrenceAccumulator.key(index, focusIndex);
                     double value = weighting.weight(distance, windowSize);
-                    Double curCount = matrixEntryToCount.get(p);
-                    matrixEntryToCount.put(p, (curCount == null)
-                                           ? value : value + curCount);
+                    matrixEntryToCount.adjustOrPutValue(cell, value, value);
                 }
             }
             distance++;
@@ -397,16 +425,28 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
         // If the matrix hasn't had columns dropped then the returned vector
         // will be the combination of the word's row and column
         else if (reduced == null) {
+            int words = termToIndex.numDimensions();
+            SparseDoubleVector[] rows = cooccurrenceRows;
+            SparseDoubleVector[] columns = cooccurrenceColumns;
+            // If the space has not yet been processed, the vectors must be
+            // computed from the accumulated counts.
+            if (cooccurrences != null) {
+                Snapshot s = currentSnapshot();
+                rows = s.rows;
+                columns = s.columns;
+                words = rows.length;
+            }
+
             // NOTE: the matrix could be asymmetric if the a word has only
             // appeared on one side of a context (its row or column vector would
             // never have been set).  Therefore, check the index with the matrix
             // size first.
-            SparseDoubleVector rowVec = (index < cooccurrenceMatrix.rows())
-                ? cooccurrenceMatrix.getRowVectorUnsafe(index)
-                : new CompactSparseVector(termToIndex.numDimensions());
-            SparseDoubleVector colVec = (index < cooccurrenceMatrix.columns())
-                ? cooccurrenceMatrix.getColumnVectorUnsafe(index)
-                : new CompactSparseVector(termToIndex.numDimensions());
+            SparseDoubleVector rowVec = (index < rows.length)
+                ? rows[index]
+                : new CompactSparseVector(words);
+            SparseDoubleVector colVec = (index < columns.length)
+                ? columns[index]
+                : new CompactSparseVector(words);
 
             return new ConcatenatedSparseDoubleVector(rowVec, colVec);
         }
@@ -416,12 +456,33 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
         return reduced.getRowVector(index);
     }
 
+    /**
+     * Returns the row and column vectors of the counts accumulated so far.
+     * Converting the counts requires a pass over all of them, so the vectors
+     * are kept until more documents are processed, rather than converting a
+     * single word's vectors on each call.
+     */
+    private Snapshot currentSnapshot() {
+        int words = termToIndex.numDimensions();
+        int documents = documentsAdded.get();
+        Snapshot s = snapshot;
+        if (s == null || s.documents != documents || s.rows.length != words) {
+            // Any document added during the conversion changes the count, so
+            // that the next call converts the counts again
+            s = new Snapshot(documents,
+                             cooccurrences.toRowVectors(words, words),
+                             cooccurrences.toColumnVectors(words, words));
+            snapshot = s;
+        }
+        return s;
+    }
+
     /**
      * {@inheritDoc}
      */
     public int getVectorLength() {
-        if (cooccurrenceMatrix != null)
-            return cooccurrenceMatrix.columns() + cooccurrenceMatrix.rows();
+        if (reduced == null)
+            return 2 * termToIndex.numDimensions();
         return reduced.columns();
     }
 
@@ -429,14 +490,25 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
      * {@inheritDoc}
      */
     public void processSpace(Properties properties) {
-        // Ensure that the bottom right corner of the matrix has a valid value
-        // so that we always create a 2 * n set of dimensions in the default
-        // case.
-        if (cooccurrenceMatrix.get(termToIndex.numDimensions() - 1,
-                                   termToIndex.numDimensions() - 1) == 0d)
-            cooccurrenceMatrix.set(termToIndex.numDimensions() - 1,
-                                   termToIndex.numDimensions() - 1,
-                                   0d);
+        // Convert the accumulated counts into compact row and column vectors,
+        // sized so that we always create a 2 * n set of dimensions in the
+        // default case.
+        int words = termToIndex.numDimensions();
+        Snapshot s = snapshot;
+        if (s != null && s.documents == documentsAdded.get() 
+                && s.rows.length == words) {
+            // The vectors were already converted for an earlier request
+            cooccurrenceRows = s.rows;
+            cooccurrenceColumns = s.columns;
+        }
+        else {
+            LOGGER.info("Compacting " + cooccurrences.size() + 
+                        " co-occurrences");
+            cooccurrenceRows = cooccurrences.toRowVectors(words, words);
+            cooccurrenceColumns = cooccurrences.toColumnVectors(words, words);
+        }
+        snapshot = null;
+        cooccurrences = null;
 
         if (columnThreshold > -1d)
             thresholdColumns(columnThreshold);
@@ -444,6 +516,14 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
             retainOnly(retainColumns);
     }
 
+    /**
+     * Returns a view of the co-occurrence matrix as a {@link SparseMatrix}.
+     */
+    private SparseMatrix cooccurrenceMatrix() {
+        return Matrices.asSparseMatrix(Arrays.asList(cooccurrenceRows),
+                                       termToIndex.numDimensions());
+    }
+
     /**
      * Drops all but the specified number of columns, retaining those that have
      * the highest information theoretic entropy.
@@ -460,7 +540,7 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
                     columns, false, true, true);
 
         // Compute the entropy of each row and column.
-        EntropyStats stats = MatrixEntropy.entropy(cooccurrenceMatrix);
+        EntropyStats stats = MatrixEntropy.entropy(cooccurrenceMatrix());
 
         // Add the entropy values for each column.  Since the rows will be
         // concatenated as columns, they represent currently non-existing
@@ -476,7 +556,8 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
         LOGGER.info("Reducing to " + columns + " highest entropy columns.");
         
         reduced = retainColumns(indicesToKeep);
-        cooccurrenceMatrix = null;
+        cooccurrenceRows = null;
+        cooccurrenceColumns = null;
     }
 
     /**
@@ -494,7 +575,7 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
         Set<Integer> colsToRetain = new HashSet<Integer>();
 
         // Compute the entropy of each row and column.
-        EntropyStats stats = MatrixEntropy.entropy(cooccurrenceMatrix);
+        EntropyStats stats = MatrixEntropy.entropy(cooccurrenceMatrix());
 
         // Compare the entropy of each column to the threshold and save and
         // indices that pass the threshold. Since the rows will be concatenated
@@ -512,11 +593,12 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
                     " columns, which passed the threshold of " + threshold);
 
         reduced = retainColumns(colsToRetain);
-        cooccurrenceMatrix = null;
+        cooccurrenceRows = null;
+        cooccurrenceColumns = null;
     }
 
     /**
-     * Returns a reduced and concatenated version of {@code cooccurrenceMatrix}
+     * Returns a reduced and concatenated version of the co-occurrence matrix
      * which has only the columns specified in {@code indicesToKeep}.
      */
     private SparseMatrix retainColumns(Set<Integer> indicesToKeep) {
@@ -536,9 +618,9 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
 
         // Iterate over the sparse values in the matrix for added efficiency.
         for (int row = 0; row < words; ++ row) {
-            SparseDoubleVector sv = cooccurrenceMatrix.getRowVector(row);
+            SparseDoubleVector sv = cooccurrenceRows[row];
             for (int col : sv.getNonZeroIndices()) {
-                double v = cooccurrenceMatrix.get(row, col);
+                double v = sv.get(col);
 
                 // If the original column was retained, get it's new index
                 // value and add it to the reduced matrix.
@@ -564,4 +646,33 @@ public class HyperspaceAnalogueToLanguage implements SemanticSpace {
     public String getSpaceName() {
         return "hal-semantic-space";
     }
+
+    /**
+     * The row and column vectors of the co-occurrence counts after a number of
+     * documents have been added.
+     */
+    private static class Snapshot {
+
+        /**
+         * The number of documents whose counts are in the vectors
+         */
+        final int documents;
+
+        /**
+         * The row vector of each word
+         */
+        final SparseDoubleVector[] rows;
+
+        /**
+         * The column vector of each word
+         */
+        final SparseDoubleVector[] columns;
+
+        public Snapshot(int documents, SparseDoubleVector[] rows,
+                        SparseDoubleVector[] columns) {
+            this.documents = documents;
+            this.rows = rows;
+            this.columns = columns;
+        }
+    }
 }
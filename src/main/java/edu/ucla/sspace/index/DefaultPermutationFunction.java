@@ -47,7 +47,8 @@ import gnu.trove.map.hash.TIntObjectHashMap;
  * @author David Jurgens
  */
 public class DefaultPermutationFunction
-        implements PermutationFunction<Vector>, Serializable {
+        implements PermutationFunction<Vector>, ReorderingPermutation,
+                   Serializable {
 
     private static final long serialVersionUID = 1L;
 
@@ -58,6 +59,18 @@ public class DefaultPermutationFunction
      */
     private final TIntObjectMap<Function> permutationToReordering;
     
+    /**
+     * The reordering for each number of forward permutations, which is the
+     * composition of the functions for each exponent up to that number.  This
+     * array is replaced with a longer copy when more permutations are needed.
+     */
+    private transient volatile int[][] forwardReorderings;
+
+    /**
+     * The reordering for each number of inverse permutations.
+     */
+    private transient volatile int[][] inverseReorderings;
+
     /**
      * Creates an empty {@code DefaultPermutationFunction}.
      */
@@ -121,10 +134,6 @@ public class DefaultPermutationFunction
                         forwardMapping[i] = objFunc[i].intValue();
                         backwardMapping[objFunc[i].intValue()] = i;
                     }            
-                    System.out.printf("Forward: %s%nBackward: %s%n", 
-                                      Arrays.toString(forwardMapping),
-                                      Arrays.toString(backwardMapping));
-
                     function = new Function(forwardMapping, backwardMapping);
                     // store it in the function map for later usee
                     permutationToReordering.put(exponent, function);
@@ -135,6 +144,61 @@ public class DefaultPermutationFunction
         return function;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public int[] getReordering(int numPermutations, int dimensions) {
+        int exponent = Math.abs(numPermutations);
+        int[][] reorderings = (numPermutations < 0) 
+            ? inverseReorderings : forwardReorderings;
+        if (reorderings == null || exponent >= reorderings.length)
+            reorderings = 
+                extendReorderings(exponent, numPermutations < 0, dimensions);
+        return reorderings[exponent];
+    }
+
+    /**
+     * Composes the functions for each exponent to create the reorderings for
+     * up to the specified number of permutations, returning all of the
+     * reorderings in that direction.
+     */
+    private synchronized int[][] extendReorderings(int exponent, 
+                                                   boolean isInverse,
+                                                   int dimensions) {
+        int[][] reorderings = (isInverse) 
+            ? inverseReorderings : forwardReorderings;
+        int existing = (reorderings == null) ? 0 : reorderings.length;
+        if (exponent < existing)
+            return reorderings;
+
+        int[][] extended = new int[exponent + 1][];
+        if (existing > 0)
+            System.arraycopy(reorderings, 0, extended, 0, existing);
+        for (int n = existing; n <= exponent; ++n) {
+            int[] composed = new int[dimensions];
+            if (n == 0) {
+                for (int i = 0; i < dimensions; ++i)
+                    composed[i] = i;
+            }
+            else {
+                // Each permutation moves the value at i to reordering[i],
+                // so apply this exponent's function after the prior ones
+                Function function = getFunction(n, dimensions);
+                int[] reordering = (isInverse) 
+                    ? function.backward : function.forward;
+                int[] prior = extended[n - 1];
+                for (int i = 0; i < dimensions; ++i)
+                    composed[i] = reordering[prior[i]];
+            }
+            extended[n] = composed;
+        }
+        if (isInverse)
+            inverseReorderings = extended;
+        else
+            forwardReorderings = extended;
+        return extended;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -154,8 +218,6 @@ public class DefaultPermutationFunction
                 dimensions[i] = i;
         }
 
-        System.out.printf("input: %s%ninitial result: %s%n", v, result);
-
         boolean isInverse = numPermutations < 0;
         
         // NB: because we use the signum and !=, this loop will work for both
@@ -183,7 +245,6 @@ public class DefaultPermutationFunction
         for (int d : dimensions)
             result.set(dimensions[d], v.getValue(d));
 
-        System.out.printf("input: %s%nfinal permuted result: %s%n", v, result);
         return result;
     }
 
@@ -193,52 +254,17 @@ public class DefaultPermutationFunction
      * TernaryVector} is returned.
      */
     private Vector permute(TernaryVector v, int numPermutations, int length) {
+        // The reordering composes all of the permutations, so each value only
+        // needs to be moved once
+        int[] reordering = getReordering(numPermutations, length);
         int[] oldPos = v.positiveDimensions();
         int[] oldNeg = v.negativeDimensions();
-
-        // create new arrays to hold the permuted locations of the vectors's
-        // positive and negative values.
-        //
-        // NB: we use a copy here to ensure that the function works for the 0
-        // permutation (i.e. effectively a no-op);
-        int[] positive = Arrays.copyOf(oldPos, oldPos.length);
-        int[] negative = Arrays.copyOf(oldNeg, oldNeg.length);
-
-        boolean isInverse = numPermutations < 0;
-        
-        // NB: because we use the signum and !=, this loop will work for both
-        // positive and negative numbers of permutations
-        int totalPermutations = Math.abs(numPermutations);
-
-        for (int count = 1; count <= totalPermutations; ++count) {            
-
-            // load the reordering funcion for this iteration of the permutation
-            Function function = getFunction(count, length);
-
-            // based on whether this is an inverse permutation, select whether
-            // to use the forward or backwards mapping.
-            int[] reordering = (isInverse) 
-                ? function.backward : function.forward;
-            
-            // create a copy of the previous permuted values for positive and
-            // negative.  We need this array because the permutation cannot be
-            // done in place
-            oldPos = Arrays.copyOf(positive, positive.length);
-            oldNeg = Arrays.copyOf(negative, negative.length);
-            
-            // The reordering array specifies for index i the positive of i in
-            // the permuted array.  Since the positive and negative indices are
-            // the only non-zero indicies, we can simply create new arrays for
-            // them of the same length and then set their new positions based on
-            // the values in the reordering array.
-            for (int i = 0; i < oldPos.length; ++i) {
-                positive[i] = reordering[oldPos[i]];
-            }
-
-            for (int i = 0; i < oldNeg.length; ++i) {
-                negative[i] = reordering[oldNeg[i]];
-            }
-        }
+        int[] positive = new int[oldPos.length];
+        int[] negative = new int[oldNeg.length];
+        for (int i = 0; i < oldPos.length; ++i)
+            positive[i] = reordering[oldPos[i]];
+        for (int i = 0; i < oldNeg.length; ++i)
+            negative[i] = reordering[oldNeg[i]];
 
         return new TernaryVector(length, positive, negative);
     }
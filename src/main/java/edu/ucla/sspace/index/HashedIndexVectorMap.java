@@ -0,0 +1,310 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.index;
+
+import edu.ucla.sspace.common.ArgOptions;
+
+import edu.ucla.sspace.util.GeneratorMap;
+
+import edu.ucla.sspace.vector.TernaryVector;
+
+import java.io.Serializable;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+
+/**
+ * A mapping from words to {@link TernaryVector} index vectors where each
+ * word's index vector is derived from a hash of the word and a seed, rather
+ * than drawn from a shared source of randomness.  The same word and seed always
+ * produce the same index vector, so no index vectors need to be stored,
+ * serialized, or shared between runs or machines to obtain reproducible
+ * results.  Because nothing is stored, {@link #get(Object) get} never blocks
+ * and this class is thread-safe.
+ *
+ * <p> The index vectors have the same distribution as those created by a
+ * {@link RandomIndexVectorGenerator} and are configured using its {@value
+ * RandomIndexVectorGenerator#VALUES_TO_SET_PROPERTY} and {@value
+ * RandomIndexVectorGenerator#INDEX_VECTOR_VARIANCE_PROPERTY} properties.  The
+ * algorithms that use random index vectors select this mapping when the
+ * following property is set:
+ *
+ * <dl style="margin-left: 1em">
+ *
+ * <dt> <i>Property:</i> <code><b>{@value #SEED_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> unset
+ *
+ * <dd style="padding-top: .5em">This variable sets the seed that is hashed
+ *      with each word to create its index vector.  If unset, index vectors are
+ *      randomly generated and stored for each new word instead. <p>
+ *
+ * </dl>
+ *
+ * <p> This map is a read-only view of an unbounded mapping: every {@code
+ * String} has an index vector, but since none are stored, the map is empty and
+ * does not support {@code put}.
+ *
+ * @see #create(int, Properties)
+ */
+public class HashedIndexVectorMap extends AbstractMap<String,TernaryVector>
+        implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The property to specify the seed from which the index vectors are
+     * derived.
+     */
+    public static final String SEED_PROPERTY = 
+        "edu.ucla.sspace.index.HashedIndexVectorMap.seed";
+
+    /**
+     * The increment of the SplitMix64 sequence of values
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The length of each index vector
+     */
+    private final int indexVectorLength;
+
+    /**
+     * The number of values to set in each index vector.
+     */
+    private final int numVectorValues;
+
+    /**
+     * The variance in the number of values that are set in each index vector.
+     */
+    private final int variance;
+
+    /**
+     * The seed that is hashed with each word
+     */
+    private final long seed;
+
+    /**
+     * Creates a mapping configured by the provided properties, using a seed
+     * of {@code 0} if {@value #SEED_PROPERTY} is not set.
+     */
+    public HashedIndexVectorMap(int indexVectorLength, Properties properties) {
+        this(indexVectorLength,
+             getInt(properties, 
+                    RandomIndexVectorGenerator.VALUES_TO_SET_PROPERTY,
+                    RandomIndexVectorGenerator.DEFAULT_INDEX_VECTOR_VALUES),
+             getInt(properties, 
+                    RandomIndexVectorGenerator.INDEX_VECTOR_VARIANCE_PROPERTY,
+                    RandomIndexVectorGenerator.DEFAULT_INDEX_VECTOR_VARIANCE),
+             Long.parseLong(properties.getProperty(SEED_PROPERTY, "0")));
+    }
+
+    /**
+     * Creates a mapping whose index vectors have the provided length and
+     * number of set values, and are derived using the provided seed.
+     *
+     * @throws IllegalArgumentException if the index vectors could have more
+     *         values set than their length
+     */
+    public HashedIndexVectorMap(int indexVectorLength, int numVectorValues,
+                                int variance, long seed) {
+        if (indexVectorLength <= 0)
+            throw new IllegalArgumentException(
+                "Index vector length must be positive: " + indexVectorLength);
+        if (numVectorValues < 0 || variance < 0)
+            throw new IllegalArgumentException(
+                "The number of values and variance must be non-negative");
+        if (numVectorValues + variance > indexVectorLength)
+            throw new IllegalArgumentException(
+                "Cannot set " + numVectorValues + " +/- " + variance + 
+                " values in index vectors of length " + indexVectorLength);
+        this.indexVectorLength = indexVectorLength;
+        this.numVectorValues = numVectorValues;
+        this.variance = variance;
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the mapping from words to index vectors that is specified by the
+     * properties: a {@code HashedIndexVectorMap} if {@value #SEED_PROPERTY} is
+     * set, or otherwise a {@link GeneratorMap} that stores a new {@link
+     * RandomIndexVectorGenerator} index vector for each word.
+     */
+    public static Map<String,TernaryVector> create(int indexVectorLength,
+                                                   Properties properties) {
+        if (isSeeded(properties))
+            return new HashedIndexVectorMap(indexVectorLength, properties);
+        return new GeneratorMap<TernaryVector>(
+            new RandomIndexVectorGenerator(indexVectorLength, properties));
+    }
+
+    /**
+     * Returns {@code true} if {@value #SEED_PROPERTY} is set in the
+     * properties, in which case {@link #create(int, Properties) create}
+     * returns a {@code HashedIndexVectorMap}.
+     */
+    public static boolean isSeeded(Properties properties) {
+        return properties != null 
+            && properties.getProperty(SEED_PROPERTY) != null;
+    }
+
+    /**
+     * Throws an exception if {@value #SEED_PROPERTY} is set in the properties
+     * and any of the named options, which load or save index vectors, was
+     * provided.  Index vectors derived from the seed are neither stored nor
+     * replaceable, so programs use this to report the conflict before any
+     * documents are processed.
+     *
+     * @param options the parsed command line options
+     * @param optionNames the long names of the options that load or save
+     *        index vectors
+     *
+     * @throws IllegalArgumentException if the properties are seeded and one of
+     *         the options was provided
+     */
+    public static void checkOptions(Properties properties, ArgOptions options,
+                                    String... optionNames) {
+        if (!isSeeded(properties))
+            return;
+        for (String optionName : optionNames) {
+            if (options.hasOption(optionName))
+                throw new IllegalArgumentException(
+                    "--" + optionName + " cannot be used when " + 
+                    SEED_PROPERTY + " is set, since the index vectors are " +
+                    "derived from the seed");
+        }
+    }
+
+    /**
+     * Returns {@code true} if the key is a {@code String}, all of which have
+     * an index vector.
+     */
+    public boolean containsKey(Object key) {
+        return key instanceof String;
+    }
+
+    /**
+     * Returns an empty set, as no index vectors are stored.
+     */
+    public Set<Map.Entry<String,TernaryVector>> entrySet() {
+        return Collections.<Map.Entry<String,TernaryVector>>emptySet();
+    }
+
+    /**
+     * Returns the index vector for the word, or {@code null} if the key is not
+     * a {@code String}.
+     */
+    public TernaryVector get(Object key) {
+        return (key instanceof String) ? generate((String)key) : null;
+    }
+
+    /**
+     * Returns the index vector for the word, which is computed from a hash of
+     * the word and this map's seed.
+     */
+    public TernaryVector generate(String word) {
+        // Hash the word's characters with 64-bit FNV-1a, starting from a value
+        // that depends on the seed, so that every word has its own stream of
+        // pseudo-random values
+        long h = 0xcbf29ce484222325L ^ mix(seed);
+        for (int i = 0; i < word.length(); ++i) {
+            h ^= word.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        long state = mix(h);
+
+        // Decide how many values to set using the same distribution as
+        // RandomIndexVectorGenerator
+        int valuesToSet = numVectorValues;
+        if (variance > 0) {
+            state += GOLDEN_GAMMA;
+            double offset = toDouble(mix(state)) * variance;
+            state += GOLDEN_GAMMA;
+            valuesToSet = Math.max(0, valuesToSet + (int)(
+                (toDouble(mix(state)) > .5) ? offset : -offset));
+        }
+
+        // Pick distinct indices, encoding the sign of each in the low bit of
+        // an array that can be sorted by index afterwards.  The number of
+        // values is small, so a linear scan for duplicates is fastest.
+        int[] picked = new int[valuesToSet];
+        int numPositive = 0;
+        for (int i = 0; i < valuesToSet; ) {
+            state += GOLDEN_GAMMA;
+            long r = mix(state);
+            int index = (int)(((r >>> 32) * indexVectorLength) >>> 32);
+            boolean positive = (r & 1L) == 0;
+            boolean duplicate = false;
+            for (int j = 0; j < i && !duplicate; ++j)
+                duplicate = (picked[j] >> 1) == index;
+            if (duplicate)
+                continue;
+            picked[i++] = (index << 1) | (positive ? 0 : 1);
+            if (positive)
+                numPositive++;
+        }
+        Arrays.sort(picked);
+
+        int[] positive = new int[numPositive];
+        int[] negative = new int[valuesToSet - numPositive];
+        int p = 0, n = 0;
+        for (int v : picked) {
+            if ((v & 1) == 0)
+                positive[p++] = v >> 1;
+            else
+                negative[n++] = v >> 1;
+        }
+        return new TernaryVector(indexVectorLength, positive, negative);
+    }
+
+    /**
+     * Returns a well-mixed function of the value, using the finalizer of the
+     * SplitMix64 generator.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the value as a {@code double} in {@code [0, 1)}.
+     */
+    private static double toDouble(long z) {
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Returns the integer value of the property, or the default value if the
+     * property is not set.
+     */
+    private static int getInt(Properties properties, String property, 
+                              int defaultValue) {
+        String value = properties.getProperty(property);
+        return (value == null) ? defaultValue : Integer.parseInt(value);
+    }
+}
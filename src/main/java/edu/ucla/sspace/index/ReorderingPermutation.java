@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.index;
+
+
+/**
+ * A {@link PermutationFunction} whose permutations can be expressed as
+ * reorderings of the dimensions of a vector.  Callers that only need to add a
+ * permuted vector to another vector can use the reordering to find where each
+ * non-zero value of the original vector is moved, without creating the
+ * permuted vector.  Implementations are expected to cache the reorderings, so
+ * that a lookup does not allocate.
+ *
+ * @see PermutationFunction
+ */
+public interface ReorderingPermutation {
+
+    /**
+     * Returns the reordering for permuting a vector with the specified number
+     * of dimensions the specified number of times.  The value in dimension
+     * {@code i} of the original vector is in dimension {@code reordering[i]}
+     * of the permuted vector, so that the permuted vector is the same as would
+     * be returned by {@link PermutationFunction#permute permute}.
+     * The returned array is shared and must not be modified.
+     *
+     * @param numPermutations the number of times the permutation function
+     *        is applied, which is negative for the inverse permutation
+     * @param dimensions the number of dimensions in the permuted vector
+     */
+    int[] getReordering(int numPermutations, int dimensions);
+}
@@ -46,7 +46,7 @@ import java.util.Properties;
  * @author Keith Stevens
  */
 public class WindowedPermutationFunction
-        implements PermutationFunction<Vector> {
+        implements PermutationFunction<Vector>, ReorderingPermutation {
 
     /**
      * The prefix for naming public properties.
@@ -68,7 +68,7 @@ public class WindowedPermutationFunction
     /**
      * The backing permutation function to use.
      */
-    private final PermutationFunction<Vector> function;
+    private final DefaultPermutationFunction function;
 
     /**
      * The window size for permutations.
@@ -99,4 +99,11 @@ public class WindowedPermutationFunction
     public Vector permute(Vector v, int numPermutations) {
         return function.permute(v, numPermutations/windowSize);
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int[] getReordering(int numPermutations, int dimensions) {
+        return function.getReordering(numPermutations/windowSize, dimensions);
+    }
 }
@@ -23,15 +23,15 @@ package edu.ucla.sspace.isa;
 
 import edu.ucla.sspace.common.SemanticSpace;
 
+import edu.ucla.sspace.index.HashedIndexVectorMap;
 import edu.ucla.sspace.index.IntegerVectorGenerator;
 import edu.ucla.sspace.index.PermutationFunction;
-import edu.ucla.sspace.index.RandomIndexVectorGenerator;
 import edu.ucla.sspace.index.TernaryPermutationFunction;
 
 import edu.ucla.sspace.text.IteratorFactory;
 
-import edu.ucla.sspace.util.GeneratorMap;
 import edu.ucla.sspace.util.SparseDoubleArray;
+import edu.ucla.sspace.util.ThreadLocalAccumulator;
 
 import edu.ucla.sspace.vector.CompactSparseVector;
 import edu.ucla.sspace.vector.DenseVector;
@@ -51,13 +51,14 @@ import java.lang.reflect.Constructor;
 
 import java.util.ArrayDeque;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Queue;
 import java.util.Set;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import java.util.logging.Logger;
 
 
@@ -176,13 +177,30 @@ import java.util.logging.Logger;
  *       in a large saving in memory, while requiring more time to process each
  *       document.<p>
  *
+ * <dt> <i>Property:</i> <code><b>{@value #MERGE_INTERVAL_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@code 0} 
+ *
+ * <dd style="padding-top: .5em">This property specifies the number of
+ *       documents each thread processes before merging its locally accumulated
+ *       changes into the shared semantic vectors and occurrence counts.  When
+ *       set to a positive value, each thread adds its updates to private delta
+ *       vectors and sees the semantics of a word as the shared semantics plus
+ *       its own pending changes.  By default, updates are made directly to the
+ *       shared vectors.<p>
+ *
  * </dl> <p>
  *
  * <p> Due to the incremental nature of ISA, instance of this class are
  * <i>not</i> designed to be multi-threaded.  Documents must be processed
  * sequentially to properly model how the semantics of co-occurring words affect
  * each other.  Multi-threading would induce an ambiguous ordering to
- * co-occurrence.
+ * co-occurrence.  If local accumulation is enabled, documents may be processed
+ * concurrently, with the caveat that each thread only observes the updates of
+ * other threads once they have been merged.  When documents are processed
+ * sequentially by a single thread, the semantics after {@link
+ * #processSpace(Properties) processSpace} are the same as without local
+ * accumulation, up to floating point rounding.
  * 
  * @author David Jurgens
  */
@@ -243,6 +261,15 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
     public static final String USE_SPARSE_SEMANTICS_PROPERTY = 
         PROPERTY_PREFIX + ".sparseSemantics";
 
+    /**
+     * The property to specify the number of documents that each thread
+     * processes before merging its locally accumulated semantics into the
+     * shared semantic vectors.  A value of {@code 0} disables local
+     * accumulation.
+     */
+    public static final String MERGE_INTERVAL_PROPERTY = 
+        PROPERTY_PREFIX + ".mergeInterval";
+
     /**
      * The default rate at which the history (semantics) decays when affecting
      * other co-occurring word's semantics.
@@ -325,6 +352,13 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
      */
     private final Map<String,Integer> wordToOccurrences;
 
+    /**
+     * The thread-local changes to each word's semantics and occurrences if
+     * local accumulation is enabled, or {@code null} if updates are made
+     * directly to {@link #wordToMeaning} and {@link #wordToOccurrences}.
+     */
+    private final ThreadLocalAccumulator<String,SemanticDelta> localDeltas;
+
     /**
      * Creates a new {@code IncrementalSemanticAnalysis} instance using the
      * current {@code System} properties for configuration.
@@ -364,9 +398,6 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
             ? loadPermutationFunction(permutationFuncProp)
             : new TernaryPermutationFunction();
 
-        RandomIndexVectorGenerator indexVectorGenerator = 
-            new RandomIndexVectorGenerator(vectorLength, properties);
-
         String useSparseProp = 
             properties.getProperty(USE_SPARSE_SEMANTICS_PROPERTY);
         useSparseSemantics = (useSparseProp != null)
@@ -386,9 +417,28 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
             : DEFAULT_IMPACT_RATE;
             
         wordToIndexVector = 
-            new GeneratorMap<TernaryVector>(indexVectorGenerator);
-        wordToMeaning = new HashMap<String,SemanticVector>();
-        wordToOccurrences = new HashMap<String,Integer>();
+            HashedIndexVectorMap.create(vectorLength, properties);
+        wordToMeaning = new ConcurrentHashMap<String,SemanticVector>();
+        wordToOccurrences = new ConcurrentHashMap<String,Integer>();
+
+        String mergeIntervalProp = 
+            properties.getProperty(MERGE_INTERVAL_PROPERTY);
+        int mergeInterval = (mergeIntervalProp != null)
+            ? Integer.parseInt(mergeIntervalProp)
+            : 0;
+        if (mergeInterval < 0)
+            throw new IllegalArgumentException(
+                "merge interval cannot be negative: " + mergeInterval);
+        localDeltas = (mergeInterval == 0) ? null
+            : new ThreadLocalAccumulator<String,SemanticDelta>(mergeInterval) {
+                protected SemanticDelta createDelta(String word) {
+                    return new SemanticDelta();
+                }
+
+                protected void merge(String word, SemanticDelta delta) {
+                    mergeDelta(word, delta);
+                }
+            };
     }
 
 
@@ -418,6 +468,9 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
      * same mapping on multiple corpora while keeping the same semantic space.
      */
     public void clearSemantics() {
+        // Merge any pending deltas so that they do not reappear later
+        if (localDeltas != null)
+            localDeltas.mergeAll();
         wordToMeaning.clear();
     }
 
@@ -433,14 +486,65 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
     private SemanticVector getSemanticVector(String word) {
         SemanticVector v = wordToMeaning.get(word);
         if (v == null) {
-            v = (useSparseSemantics) 
-                ? new SparseSemanticVector(vectorLength)
-                : new DenseSemanticVector(vectorLength);
-            wordToMeaning.put(word, v);
+            // lock in case multiple threads are merging their deltas for the
+            // word at once
+            synchronized(this) {
+                v = wordToMeaning.get(word);
+                if (v == null) {
+                    v = createSemanticVector();
+                    wordToMeaning.put(word, v);
+                }
+            }
         }
         return v;
     }
 
+    /**
+     * Returns a new, empty semantic vector of the type used by this instance.
+     */
+    private SemanticVector createSemanticVector() {
+        return (useSparseSemantics) 
+            ? new SparseSemanticVector(vectorLength)
+            : new DenseSemanticVector(vectorLength);
+    }
+
+    /**
+     * Returns the number of times the word has occurred, including any
+     * occurrences seen by the current thread that have not yet been merged.
+     */
+    private int getOccurrences(String word) {
+        Integer occurrences = wordToOccurrences.get(word);
+        int count = (occurrences == null) ? 0 : occurrences;
+        if (localDeltas != null) {
+            SemanticDelta delta = localDeltas.getDeltaIfPresent(word);
+            if (delta != null)
+                count += delta.occurrences;
+        }
+        return count;
+    }
+
+    /**
+     * Adds the changes to a word's semantics and occurrences that were made by
+     * a single thread to the shared state.
+     */
+    @SuppressWarnings("unchecked")
+    private void mergeDelta(String word, SemanticDelta delta) {
+        if (delta.vector != null) {
+            SemanticVector semantics = getSemanticVector(word);
+            synchronized(semantics) {
+                semantics.addVector(delta.vector, 1);
+            }
+        }
+        if (delta.occurrences > 0) {
+            synchronized(wordToOccurrences) {
+                Integer count = wordToOccurrences.get(word);
+                wordToOccurrences.put(word, (count == null) 
+                                      ? delta.occurrences
+                                      : count + delta.occurrences);
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -520,7 +624,11 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
             // Don't bother calculating the semantics for empty tokens
             // (i.e. words that were filtered out)
             if (!focusWord.equals(IteratorFactory.EMPTY_TOKEN)) {
-                SemanticVector focusMeaning = getSemanticVector(focusWord);
+                // When accumulating locally, the changes are made to this
+                // thread's delta for the word
+                SemanticVector focusMeaning = (localDeltas == null)
+                    ? getSemanticVector(focusWord)
+                    : localDeltas.getDelta(focusWord).getVector();
 
                 // Sum up the index vector for all the surrounding words.  If
                 // permutations are enabled, permute the index vector based on
@@ -576,8 +684,13 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
 
             // Increment the frequency count for the word now that it has been
             // seen and processed.
-            Integer count = wordToOccurrences.get(focusWord);
-            wordToOccurrences.put(focusWord, (count == null) ? 1 : count + 1);
+            if (localDeltas == null) {
+                Integer count = wordToOccurrences.get(focusWord);
+                wordToOccurrences.put(focusWord, 
+                                      (count == null) ? 1 : count + 1);
+            }
+            else
+                localDeltas.getDelta(focusWord).occurrences++;
 
             if (prevWords.size() > windowSize) {
                 prevWords.remove();
@@ -585,15 +698,22 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
         }    
 
         document.close();
+
+        if (localDeltas != null)
+            localDeltas.documentProcessed();
     }
         
     /**
-     * Does nothing, as ISA in an incremental algorithm and no final processing
-     * needs to be performed on the space.
+     * Merges any semantics that are still pending from local accumulation.
+     * Otherwise, does nothing, as ISA in an incremental algorithm and no final
+     * processing needs to be performed on the space.
      *
      * @properties {@inheritDoc}
      */
-    public void processSpace(Properties properties) { }
+    public void processSpace(Properties properties) {
+        if (localDeltas != null)
+            localDeltas.mergeAll();
+    }
 
     /**
      * Assigns the token to {@link IntegerVector} mapping to be used by this
@@ -603,8 +723,15 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
      *
      * @param m a mapping from token to the {@code IntegerVector} that should be
      *        used represent it when calculating other word's semantics
+     *
+     * @throws IllegalStateException if the index vectors are derived from the
+     *         seed set by {@value HashedIndexVectorMap#SEED_PROPERTY}
      */
     public void setWordToIndexVector(Map<String,TernaryVector> m) {
+        if (wordToIndexVector instanceof HashedIndexVectorMap)
+            throw new IllegalStateException(
+                "Index vectors are derived from the seed set by " +
+                HashedIndexVectorMap.SEED_PROPERTY + " and cannot be replaced");
         wordToIndexVector.clear();
         wordToIndexVector.putAll(m);
     }
@@ -623,11 +750,7 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
     private void updateSemantics(SemanticVector toUpdate,
                                  String cooccurringWord,
                                  TernaryVector iv) {
-        SemanticVector prevWordSemantics = getSemanticVector(cooccurringWord);
-        
-        Integer occurrences = wordToOccurrences.get(cooccurringWord);
-        if (occurrences == null)
-            occurrences = 0;
+        int occurrences = getOccurrences(cooccurringWord);
         double semanticWeight = 
             1d / (Math.exp(occurrences / historyDecayRate));
                     
@@ -636,7 +759,28 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
         // has been seen.  The semantics of frequently co-occurring words
         // receive less weight, i.e. the index vector is weighted more.
         add(toUpdate, iv, impactRate * (1 - semanticWeight));
-        toUpdate.addVector(prevWordSemantics, impactRate * semanticWeight);
+
+        if (localDeltas == null) {
+            SemanticVector prevWordSemantics = 
+                getSemanticVector(cooccurringWord);
+            toUpdate.addVector(prevWordSemantics, impactRate * semanticWeight);
+        }
+        else {
+            // The co-occurring word's semantics are its shared semantics plus
+            // any changes this thread has yet to merge.  The changes are added
+            // first in case the word co-occurs with itself, in which case the
+            // delta being read is also the one being updated.
+            SemanticDelta delta = localDeltas.getDelta(cooccurringWord);
+            toUpdate.addVector(delta.getVector(), impactRate * semanticWeight);
+            SemanticVector prevWordSemantics = 
+                wordToMeaning.get(cooccurringWord);
+            if (prevWordSemantics != null) {
+                synchronized(prevWordSemantics) {
+                    toUpdate.addVector(prevWordSemantics, 
+                                       impactRate * semanticWeight);
+                }
+            }
+        }
     }
 
     /**
@@ -666,6 +810,33 @@ public class IncrementalSemanticAnalysis implements SemanticSpace {
      * improve the addition performance since the type of vector is known and
      * can be better optimized.
      */
+    /**
+     * The changes to a word's semantics and number of occurrences made by a
+     * single thread since it last merged its changes.
+     */
+    private class SemanticDelta {
+
+        /**
+         * The change to the word's semantics, which is created the first time
+         * the semantics are updated.
+         */
+        SemanticVector vector;
+
+        /**
+         * The number of times the word has occurred.
+         */
+        int occurrences;
+
+        /**
+         * Returns the change to the word's semantics, creating it if needed.
+         */
+        SemanticVector getVector() {
+            if (vector == null)
+                vector = createSemanticVector();
+            return vector;
+        }
+    }
+
     private interface SemanticVector<T extends DoubleVector>
             extends DoubleVector {
         public void addVector(T v, double percentage);
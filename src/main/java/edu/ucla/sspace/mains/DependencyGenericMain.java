@@ -89,6 +89,12 @@ public abstract class DependencyGenericMain extends GenericMain {
                           "instance identifier and not acually part of the " +
                           "parsed text.  (Default: false)",
                           false, null, "Advanced Dependency Parsing");
+        options.addOption('N', "sentencesPerDocument",
+                          "The number of parsed sentences given to a thread " +
+                          "at once.  Larger values reduce the contention " +
+                          "between threads and let sentences be read in " +
+                          "batches.  (Default: 1)",
+                          true, "INT", "Advanced Dependency Parsing");
     }
 
     /**
@@ -141,9 +147,12 @@ public abstract class DependencyGenericMain extends GenericMain {
     protected void addDocIterators(Collection<Iterator<Document>> docIters,
                                    String[] fileNames) throws IOException {
         boolean removeHeader = argOptions.hasOption('H');
+        int sentencesPerDocument = (argOptions.hasOption('N'))
+            ? argOptions.getIntOption('N')
+            : 1;
         for (String s : fileNames)
-          docIters.add(
-              new DependencyFileDocumentIterator(s, removeHeader));
+          docIters.add(new DependencyFileDocumentIterator(
+              s, removeHeader, sentencesPerDocument));
     }
 
     /**
@@ -31,6 +31,7 @@ import edu.ucla.sspace.dependency.DependencyPermutationFunction;
 
 import edu.ucla.sspace.dri.DependencyRandomIndexing;
 
+import edu.ucla.sspace.index.HashedIndexVectorMap;
 import edu.ucla.sspace.index.PermutationFunction;
 import edu.ucla.sspace.index.TernaryPermutationFunction;
 
@@ -183,6 +184,9 @@ public class DependencyRandomIndexingMain extends DependencyGenericMain {
                     DependencyRandomIndexing.DEPENDENCY_ACCEPTOR_PROPERTY,
                     argOptions.getStringOption("pathAcceptor"));
 
+        HashedIndexVectorMap.checkOptions(
+            System.getProperties(), argOptions, "loadIndexes", "saveIndexes");
+
         DependencyPermutationFunction<TernaryVector> permFunction = null;
         // Setup the PermutationFunction.
         if (argOptions.hasOption("loadIndexes") &&
@@ -28,6 +28,8 @@ import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
 import edu.ucla.sspace.common.Similarity;
 import edu.ucla.sspace.common.Similarity.SimType;
 
+import edu.ucla.sspace.index.HashedIndexVectorMap;
+
 import edu.ucla.sspace.ri.IndexVectorUtil;
 
 import edu.ucla.sspace.temporal.TemporalSemanticSpace;
@@ -420,6 +422,9 @@ public class FixedDurationTemporalRandomIndexingMain {
         // -Dprop=<val> to the JVM directly.
         Properties props = setupProperties();
 
+        HashedIndexVectorMap.checkOptions(
+            props, argOptions, "loadVectors", "saveVectors");
+
         
         FixedDurationTemporalRandomIndexing fdTri = 
             new FixedDurationTemporalRandomIndexing(props); 
@@ -28,6 +28,7 @@ import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
 
 import edu.ucla.sspace.text.CorpusReader;
 import edu.ucla.sspace.text.Document;
+import edu.ucla.sspace.text.DocumentPipeline;
 import edu.ucla.sspace.text.FileListDocumentIterator;
 import edu.ucla.sspace.text.IteratorFactory;
 import edu.ucla.sspace.text.OneLinePerDocumentIterator;
@@ -94,6 +95,19 @@ import java.util.logging.Logger;
  *   <li> {@code -t}, {@code --threads=INT} how many threads to use when
  *        processing the documents.  The default is one per core.
  * 
+ *   <li> {@code -J}, {@code --readerThreads=INT} how many threads to use when
+ *        reading documents ahead of the processing threads.  The default is
+ *        one.  If set to {@code 0}, the processing threads read directly from
+ *        the document iterator instead.
+ *
+ *   <li> {@code -Y}, {@code --documentBatchSize=INT} how many documents are
+ *        handed from a reader thread to a processing thread at once.
+ *
+ *   <li> {@code -Q}, {@code --documentQueueSize=INT} how many batches of
+ *        documents may be read ahead before the reader threads wait for the
+ *        processing threads to catch up.  The default is four per processing
+ *        thread.
+ * 
  *   <li> {@code -w}, {@code --overwrite=BOOL} specifies whether to overwrite
  *        the existing output files.  The default is {@code true}.  If set to
  *        {@code false}, a unique integer is inserted into the file name.
@@ -259,6 +273,20 @@ public abstract class GenericMain {
         if (isMultiThreaded) {
             options.addOption('t', "threads", "the number of threads to use",
                               true, "INT", "Program Options");
+            options.addOption('J', "readerThreads", "the number of threads " +
+                              "reading documents ahead of processing, or 0 " +
+                              "to read from the processing threads " +
+                              "(default: 1)", true, "INT", "Program Options");
+            options.addOption('Y', "documentBatchSize", "the number of " +
+                              "documents passed to a processing thread at " +
+                              "once (default: " + 
+                              DocumentPipeline.DEFAULT_BATCH_SIZE + ")",
+                              true, "INT", "Program Options");
+            options.addOption('Q', "documentQueueSize", "the number of " +
+                              "document batches that may be read ahead of " +
+                              "processing (default: " + 
+                              DocumentPipeline.DEFAULT_BATCHES_PER_WORKER +
+                              " per thread)", true, "INT", "Program Options");
         }
         options.addOption('w', "overwrite", "specifies whether to " +
                           "overwrite the existing output", true, "BOOL",
@@ -552,7 +580,9 @@ public abstract class GenericMain {
      * Calls {@link SemanticSpace#processDocument(BufferedReader)
      * processDocument} once for every document in {@code docIter} using a the
      * specified number thread to call {@code processSpace} on the {@code
-     * SemanticSpace} instance.
+     * SemanticSpace} instance.  Unless {@code --readerThreads} is set to
+     * {@code 0}, the documents are read by dedicated threads and handed to the
+     * processing threads through a bounded {@link DocumentPipeline}.
      *
      * @param sspace the space to build
      * @param docIter an iterator over all the documents to process
@@ -563,6 +593,51 @@ public abstract class GenericMain {
                                                int numThreads)        
         throws IOException, InterruptedException {
 
+        int readerThreads = (argOptions.hasOption("readerThreads"))
+            ? argOptions.getIntOption("readerThreads")
+            : 1;
+        if (readerThreads == 0) {
+            parseDocumentsFromSharedIterator(sspace, docIter, numThreads);
+            return;
+        }
+        int batchSize = (argOptions.hasOption("documentBatchSize"))
+            ? argOptions.getIntOption("documentBatchSize")
+            : DocumentPipeline.DEFAULT_BATCH_SIZE;
+        int queueSize = (argOptions.hasOption("documentQueueSize"))
+            ? argOptions.getIntOption("documentQueueSize")
+            : 0;
+
+        DocumentPipeline pipeline = new DocumentPipeline(
+            docIter, readerThreads, batchSize, queueSize);
+
+        verbose("Beginning processing using %d threads and %d reader " +
+                "thread(s)", numThreads, readerThreads);
+        pipeline.run(sspace, numThreads);
+
+        verbose("Processed all %d documents in %.3f total seconds",
+                pipeline.getDocumentsProcessed(),
+                pipeline.getElapsedSeconds());
+        verbose("Reading: %.3f seconds, %.3f seconds waiting on full queue; " +
+                "Processing: %.3f seconds, %.3f seconds waiting on empty queue",
+                pipeline.getReadSeconds(), pipeline.getReaderBlockedSeconds(),
+                pipeline.getProcessSeconds(),
+                pipeline.getWorkerBlockedSeconds());
+    }
+
+    /**
+     * Calls {@link SemanticSpace#processDocument(BufferedReader)
+     * processDocument} once for every document in {@code docIter} using a the
+     * specified number thread, where each thread retrieves its next document
+     * directly from {@code docIter}.
+     *
+     * @param sspace the space to build
+     * @param docIter an iterator over all the documents to process
+     * @param numThreads the number of threads to use
+     */
+    protected void parseDocumentsFromSharedIterator(
+            final SemanticSpace sspace, final Iterator<Document> docIter,
+            int numThreads) throws IOException, InterruptedException {
+
         Collection<Thread> threads = new LinkedList<Thread>();
 
         final AtomicInteger count = new AtomicInteger(0);
@@ -155,6 +155,11 @@ import java.util.Set;
  *     5 means that up to 5 words before and after a focus word are used to form
  *     the context. (Default: 5).
  *
+ *     </li> {@code -M}, {@code --contextMemory=INT} Specifies the number of
+ *     megabytes of context vectors to keep in memory when batch clustering,
+ *     beyond which the contexts are spilled to disk.  (Default: all contexts
+ *     are kept in memory).
+ *
  *   </ul>
  * </li>
  *
@@ -249,6 +254,12 @@ public abstract class GenericWordsiMain extends GenericMain {
                           "that this is only used when -E and -P are not " +
                           "used.",
                           false, null, "Optional");
+        options.addOption('M', "contextMemory",
+                          "Specifies the number of megabytes of context " +
+                          "vectors to keep in memory when batch clustering, " +
+                          "beyond which the contexts are spilled to disk. " +
+                          "(Default: all contexts are kept in memory)",
+                          true, "INT", "Optional");
 
         // Set the serialization arguments.
         options.addOption('S', "save",
@@ -419,8 +430,12 @@ public abstract class GenericWordsiMain extends GenericMain {
             // clustering implementation.
             Clustering clustering = 
                 ReflectionUtil.getObjectInstance(options.getStringOption('b'));
+            long contextMemory = (options.hasOption('M'))
+                ? options.getIntOption('M') * (1L << 20)
+                : Long.MAX_VALUE;
             return new WaitingWordsi(getAcceptedWords(), getExtractor(), 
-                                     clustering, reporter, numClusters);
+                                     clustering, reporter, numClusters,
+                                     contextMemory);
         } else {
             // None of the required options was provided, report an error and
             // exit.
@@ -25,6 +25,8 @@ import edu.ucla.sspace.common.ArgOptions;
 import edu.ucla.sspace.common.SemanticSpace;
 import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
 
+import edu.ucla.sspace.index.HashedIndexVectorMap;
+
 import edu.ucla.sspace.isa.IncrementalSemanticAnalysis;
 
 import edu.ucla.sspace.vector.TernaryVector;
@@ -199,6 +201,9 @@ public class IsaMain extends GenericMain {
     }
     
     protected SemanticSpace getSpace() {
+        HashedIndexVectorMap.checkOptions(
+            System.getProperties(), argOptions, "loadVectors", "saveVectors");
+
         isa = new IncrementalSemanticAnalysis();
 
         // note that getSpace() is called after the arg options have been
@@ -25,6 +25,8 @@ import edu.ucla.sspace.common.ArgOptions;
 import edu.ucla.sspace.common.SemanticSpace;
 import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
 
+import edu.ucla.sspace.index.HashedIndexVectorMap;
+
 import edu.ucla.sspace.ri.IndexVectorUtil;
 import edu.ucla.sspace.ri.RandomIndexing;
 
@@ -230,6 +232,9 @@ public class RandomIndexingMain extends GenericMain {
      * the word-to-{@link TernaryVector} mapping.
      */
     protected SemanticSpace getSpace() {
+        HashedIndexVectorMap.checkOptions(
+            props, argOptions, "loadVectors", "saveVectors");
+
         // Once all the optional properties are known and set, create the
         // RandomIndexing algorithm using them
         ri = new RandomIndexing(props);
@@ -0,0 +1,558 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.SparseDoubleVector;
+
+import gnu.trove.iterator.TLongDoubleIterator;
+import gnu.trove.map.TLongDoubleMap;
+
+import java.util.Arrays;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A concurrent, growable accumulator of sparse {@code double} values indexed
+ * by {@code (row, column)}, which is designed for collecting co-occurrence
+ * counts from many threads at once.  Unlike {@link
+ * AtomicGrowingSparseHashMatrix}, no object is allocated per cell: each cell
+ * is stored as a {@code long} key and a {@code double} value in open-addressed
+ * primitive arrays, which requires roughly 16 bytes per non-zero cell plus the
+ * free space of the tables.
+ *
+ * <p> Cells are partitioned into a fixed number of lock-striped tables.
+ * Threads updating cells in different stripes never contend, and each stripe
+ * grows independently when it becomes full, so that growing the accumulator
+ * never pauses updates to the other stripes.  Threads that buffer their
+ * updates locally, such as in a {@link TLongDoubleMap} keyed by {@link
+ * #key(int,int)}, should use {@link #addAll(TLongDoubleMap)}, which acquires
+ * each stripe's lock only once.
+ *
+ * <p> Once all updates have finished, the accumulated values may be converted
+ * into compact row or column vectors with {@link #toRowVectors(int,int)} and
+ * {@link #toColumnVectors(int,int)}, or written row by row to a {@link
+ * MatrixBuilder} with {@link #writeRows(MatrixBuilder)}.  These methods should
+ * not be called while other threads are still updating the accumulator.
+ *
+ * @author David Jurgens
+ */
+public class CooccurrenceAccumulator {
+
+    /**
+     * The default number of stripes
+     */
+    public static final int DEFAULT_STRIPES = 64;
+
+    /**
+     * The initial number of slots in each stripe's table
+     */
+    private static final int INITIAL_STRIPE_CAPACITY = 1024;
+
+    /**
+     * The maximum number of cells loaded into memory at once when writing
+     * rows to a {@link MatrixBuilder}
+     */
+    private static final int WRITE_BLOCK_SIZE = 1 << 22;
+
+    /**
+     * The key marking an empty slot.  All valid keys are non-negative since
+     * rows and columns are non-negative.
+     */
+    private static final long EMPTY = -1L;
+
+    /**
+     * The tables that store the cells
+     */
+    private final Stripe[] stripes;
+
+    /**
+     * The mask used to select a stripe from a hashed key
+     */
+    private final int stripeMask;
+
+    /**
+     * One more than the largest row index that has been updated
+     */
+    private final AtomicInteger rows;
+
+    /**
+     * One more than the largest column index that has been updated
+     */
+    private final AtomicInteger columns;
+
+    /**
+     * Creates an empty accumulator with the default number of stripes.
+     */
+    public CooccurrenceAccumulator() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates an empty accumulator with at least the specified number of
+     * stripes, which is rounded up to the next power of two.
+     *
+     * @param numStripes the expected number of threads concurrently updating
+     *        the accumulator, or some multiple thereof
+     */
+    public CooccurrenceAccumulator(int numStripes) {
+        if (numStripes < 1)
+            throw new IllegalArgumentException(
+                "Must have at least one stripe: " + numStripes);
+        int n = 1;
+        while (n < numStripes)
+            n <<= 1;
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; ++i)
+            stripes[i] = new Stripe(INITIAL_STRIPE_CAPACITY);
+        stripeMask = n - 1;
+        rows = new AtomicInteger();
+        columns = new AtomicInteger();
+    }
+
+    /**
+     * Returns the key under which the cell is stored, which may be used to
+     * buffer updates locally before calling {@link #addAll(TLongDoubleMap)}.
+     */
+    public static long key(int row, int col) {
+        if (row < 0 || col < 0)
+            throw new IndexOutOfBoundsException(
+                "Negative index: (" + row + ", " + col + ")");
+        return ((long)row << 32) | col;
+    }
+
+    /**
+     * Returns the row of the cell with the key.
+     */
+    private static int row(long key) {
+        return (int)(key >>> 32);
+    }
+
+    /**
+     * Returns the column of the cell with the key.
+     */
+    private static int column(long key) {
+        return (int)key;
+    }
+
+    /**
+     * Scrambles the bits of the key so that neighboring cells are spread
+     * evenly across the stripes and table slots.
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Returns the stripe that stores the cell with the hashed key.
+     */
+    private Stripe stripeFor(long hash) {
+        return stripes[(int)(hash >>> 40) & stripeMask];
+    }
+
+    /**
+     * Records that the cell has been updated.
+     */
+    private void updateDimensions(int row, int col) {
+        updateMax(rows, row + 1);
+        updateMax(columns, col + 1);
+    }
+
+    /**
+     * Atomically sets the integer to the value if it is larger.
+     */
+    private static void updateMax(AtomicInteger max, int value) {
+        int cur;
+        while ((cur = max.get()) < value && !max.compareAndSet(cur, value))
+            ;
+    }
+
+    /**
+     * Adds the delta to the cell and returns its new value.
+     */
+    public double addAndGet(int row, int col, double delta) {
+        long key = key(row, col);
+        updateDimensions(row, col);
+        long hash = hash(key);
+        Stripe s = stripeFor(hash);
+        synchronized (s) {
+            return s.add(key, (int)hash, delta);
+        }
+    }
+
+    /**
+     * Adds all the values in the map, whose keys were created with {@link
+     * #key(int,int)}.  This method locks each stripe only once, which is
+     * much faster than adding each value individually.
+     */
+    public void addAll(TLongDoubleMap cells) {
+        int size = cells.size();
+        if (size == 0)
+            return;
+        long[] keys = new long[size];
+        double[] values = new double[size];
+        long[] hashes = new long[size];
+        int[] stripeCounts = new int[stripes.length + 1];
+        int maxRow = -1;
+        int maxCol = -1;
+        int i = 0;
+        TLongDoubleIterator iter = cells.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            long key = iter.key();
+            if (key < 0)
+                throw new IllegalArgumentException("Invalid key: " + key);
+            keys[i] = key;
+            values[i] = iter.value();
+            hashes[i] = hash(key);
+            stripeCounts[((int)(hashes[i] >>> 40) & stripeMask) + 1]++;
+            maxRow = Math.max(maxRow, row(key));
+            maxCol = Math.max(maxCol, column(key));
+            i++;
+        }
+        updateDimensions(maxRow, maxCol);
+
+        // Group the cells by stripe with a counting sort
+        for (int s = 1; s < stripeCounts.length; ++s)
+            stripeCounts[s] += stripeCounts[s - 1];
+        int[] order = new int[size];
+        int[] next = Arrays.copyOf(stripeCounts, stripes.length);
+        for (i = 0; i < size; ++i)
+            order[next[(int)(hashes[i] >>> 40) & stripeMask]++] = i;
+
+        for (int s = 0; s < stripes.length; ++s) {
+            int start = stripeCounts[s];
+            int end = stripeCounts[s + 1];
+            if (start == end)
+                continue;
+            Stripe stripe = stripes[s];
+            synchronized (stripe) {
+                for (int j = start; j < end; ++j) {
+                    int c = order[j];
+                    stripe.add(keys[c], (int)hashes[c], values[c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the cell.
+     */
+    public double get(int row, int col) {
+        long key = key(row, col);
+        long hash = hash(key);
+        Stripe s = stripeFor(hash);
+        synchronized (s) {
+            return s.get(key, (int)hash);
+        }
+    }
+
+    /**
+     * Sets the value of the cell.
+     */
+    public void set(int row, int col, double value) {
+        long key = key(row, col);
+        updateDimensions(row, col);
+        long hash = hash(key);
+        Stripe s = stripeFor(hash);
+        synchronized (s) {
+            s.set(key, (int)hash, value);
+        }
+    }
+
+    /**
+     * Returns one more than the largest row index that has been updated.
+     */
+    public int rows() {
+        return rows.get();
+    }
+
+    /**
+     * Returns one more than the largest column index that has been updated.
+     */
+    public int columns() {
+        return columns.get();
+    }
+
+    /**
+     * Returns the number of cells that have been updated.
+     */
+    public long size() {
+        long size = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                size += s.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the values of the row.  This requires a scan of all the cells,
+     * so {@link #toRowVectors(int,int)} should be used to access many rows.
+     *
+     * @param length the length of the returned vector
+     */
+    public SparseDoubleVector getRowVector(int row, int length) {
+        return toVectors(true, row, row + 1, length)[0];
+    }
+
+    /**
+     * Returns the values of the column.  This requires a scan of all the
+     * cells, so {@link #toColumnVectors(int,int)} should be used to access
+     * many columns.
+     *
+     * @param length the length of the returned vector
+     */
+    public SparseDoubleVector getColumnVector(int col, int length) {
+        return toVectors(false, col, col + 1, length)[0];
+    }
+
+    /**
+     * Returns the values of each row as a compact vector whose non-zero
+     * indices are sorted.
+     *
+     * @param numRows the number of rows to return, which must be at least
+     *        {@link #rows()}; any additional rows are empty
+     * @param length the length of each vector
+     */
+    public SparseDoubleVector[] toRowVectors(int numRows, int length) {
+        if (numRows < rows())
+            throw new IllegalArgumentException(
+                "Too few rows: " + numRows + " < " + rows());
+        return toVectors(true, 0, numRows, length);
+    }
+
+    /**
+     * Returns the values of each column as a compact vector whose non-zero
+     * indices are sorted.
+     *
+     * @param numColumns the number of columns to return, which must be at
+     *        least {@link #columns()}; any additional columns are empty
+     * @param length the length of each vector
+     */
+    public SparseDoubleVector[] toColumnVectors(int numColumns, int length) {
+        if (numColumns < columns())
+            throw new IllegalArgumentException(
+                "Too few columns: " + numColumns + " < " + columns());
+        return toVectors(false, 0, numColumns, length);
+    }
+
+    /**
+     * Adds each row, in order, as a column of the builder, which is the
+     * orientation expected by the {@link MatrixFactorization} implementations.
+     * At most a fixed number of cells are held in memory at once.  The
+     * builder is not finished by this method.
+     */
+    public void writeRows(MatrixBuilder builder) {
+        int numRows = rows();
+        int length = columns();
+        int[] rowSizes = new int[numRows];
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                for (int i = 0; i < s.keys.length; ++i)
+                    if (s.keys[i] != EMPTY)
+                        rowSizes[row(s.keys[i])]++;
+            }
+        }
+
+        int start = 0;
+        while (start < numRows) {
+            // Select as many rows as fit in the block, but always at least one
+            long cells = rowSizes[start];
+            int end = start + 1;
+            while (end < numRows && cells + rowSizes[end] <= WRITE_BLOCK_SIZE)
+                cells += rowSizes[end++];
+            for (SparseDoubleVector v : toVectors(true, start, end, length))
+                builder.addColumn(v);
+            start = end;
+        }
+    }
+
+    /**
+     * Returns a vector for each row or column in the range, which is indexed
+     * by the other dimension.
+     *
+     * @param byRow {@code true} to return rows, {@code false} for columns
+     * @param start the first row or column returned
+     * @param end one past the last row or column returned
+     * @param length the length of each vector
+     */
+    private SparseDoubleVector[] toVectors(boolean byRow, int start, int end,
+                                           int length) {
+        int count = end - start;
+        int[] sizes = new int[count];
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                for (int i = 0; i < s.keys.length; ++i) {
+                    long key = s.keys[i];
+                    if (key == EMPTY)
+                        continue;
+                    int v = (byRow ? row(key) : column(key)) - start;
+                    if (v >= 0 && v < count)
+                        sizes[v]++;
+                }
+            }
+        }
+
+        int[][] indices = new int[count][];
+        double[][] values = new double[count][];
+        int maxSize = 0;
+        for (int v = 0; v < count; ++v) {
+            indices[v] = new int[sizes[v]];
+            values[v] = new double[sizes[v]];
+            maxSize = Math.max(maxSize, sizes[v]);
+            sizes[v] = 0;
+        }
+
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                for (int i = 0; i < s.keys.length; ++i) {
+                    long key = s.keys[i];
+                    if (key == EMPTY)
+                        continue;
+                    int v = (byRow ? row(key) : column(key)) - start;
+                    if (v >= 0 && v < count) {
+                        int j = sizes[v]++;
+                        indices[v][j] = byRow ? column(key) : row(key);
+                        values[v][j] = s.values[i];
+                    }
+                }
+            }
+        }
+
+        // Sort each vector's indices, carrying along the position of each
+        // value in the low bits
+        long[] order = new long[maxSize];
+        SparseDoubleVector[] vectors = new SparseDoubleVector[count];
+        for (int v = 0; v < count; ++v) {
+            int[] idx = indices[v];
+            double[] vals = values[v];
+            for (int j = 0; j < idx.length; ++j)
+                order[j] = ((long)idx[j] << 32) | j;
+            Arrays.sort(order, 0, idx.length);
+            double[] sorted = new double[vals.length];
+            for (int j = 0; j < idx.length; ++j) {
+                idx[j] = (int)(order[j] >>> 32);
+                sorted[j] = vals[(int)order[j]];
+            }
+            vectors[v] = new CompactSparseVector(idx, sorted, length);
+            indices[v] = null;
+            values[v] = null;
+        }
+        return vectors;
+    }
+
+    /**
+     * An open-addressed hash table from cell keys to values.  All access must
+     * be synchronized on the stripe.
+     */
+    private static class Stripe {
+
+        /**
+         * The cell keys, or {@link #EMPTY} for unused slots
+         */
+        long[] keys;
+
+        /**
+         * The cell values
+         */
+        double[] values;
+
+        /**
+         * The number of used slots
+         */
+        int size;
+
+        Stripe(int capacity) {
+            keys = new long[capacity];
+            values = new double[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        /**
+         * Returns the slot holding the key, or the empty slot where it should
+         * be inserted.
+         */
+        int slot(long key, int hash) {
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            while (keys[i] != EMPTY && keys[i] != key)
+                i = (i + 1) & mask;
+            return i;
+        }
+
+        double get(long key, int hash) {
+            int i = slot(key, hash);
+            return (keys[i] == EMPTY) ? 0 : values[i];
+        }
+
+        double add(long key, int hash, double delta) {
+            int i = slot(key, hash);
+            if (keys[i] == EMPTY) {
+                keys[i] = key;
+                values[i] = delta;
+                if (++size > (keys.length >> 1) + (keys.length >> 2))
+                    grow();
+                return delta;
+            }
+            return values[i] += delta;
+        }
+
+        void set(long key, int hash, double value) {
+            int i = slot(key, hash);
+            if (keys[i] == EMPTY) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size > (keys.length >> 1) + (keys.length >> 2))
+                    grow();
+            }
+            else
+                values[i] = value;
+        }
+
+        /**
+         * Doubles the size of the table.
+         */
+        void grow() {
+            long[] oldKeys = keys;
+            double[] oldValues = values;
+            keys = new long[oldKeys.length << 1];
+            values = new double[oldKeys.length << 1];
+            Arrays.fill(keys, EMPTY);
+            for (int i = 0; i < oldKeys.length; ++i) {
+                if (oldKeys[i] != EMPTY) {
+                    int j = slot(oldKeys[i], (int)hash(oldKeys[i]));
+                    keys[j] = oldKeys[i];
+                    values[j] = oldValues[i];
+                }
+            }
+        }
+    }
+}
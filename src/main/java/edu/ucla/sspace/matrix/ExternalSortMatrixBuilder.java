@@ -0,0 +1,750 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.matrix.MatrixIO.Format;
+
+import edu.ucla.sspace.util.SparseArray;
+
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.SparseVector;
+import edu.ucla.sspace.vector.Vector;
+import edu.ucla.sspace.vector.Vectors;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOError;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import java.util.logging.Logger;
+
+
+/**
+ * A {@code MatrixBuilder} that writes both the matrix and its transpose in the
+ * <a href="http://tedlab.mit.edu/~dr/svdlibc/SVD_F_SB.html">SVDLIBC sparse
+ * binary</a> format, without ever holding the matrix in memory.  The SVDLIBC
+ * sparse binary format stores a matrix column by column, so the columns are
+ * written to the first file as they are added.  The transpose, which stores the
+ * matrix row by row, is built with an external sort: the values are buffered
+ * in memory up to a fixed budget, and each full buffer is sorted by row and
+ * spilled to disk as a run.  Once the matrix is finished, the runs are merged
+ * with a k-way merge into the transposed file.
+ *
+ * <p> Because columns are added in order, the values within each run are
+ * already ordered by column, so each run can be sorted with a linear-time
+ * counting sort by row, and the merge only needs to order the runs by row.  If
+ * there are more runs than can be merged at once, they are first merged into
+ * larger runs.
+ *
+ * <p> {@link #getFile()} returns the orientation requested when the builder
+ * was created, and {@link #getTransposeFile()} returns the other orientation.
+ * {@link Matrices#getMatrixBuilderForSVD(boolean)} returns this builder when a
+ * transposed SVDLIBC matrix is requested, in place of transposing with SVDLIBC
+ * after the matrix is built, and {@link
+ * MatrixIO#convertFormat(File,Format,Format,boolean) MatrixIO.convertFormat}
+ * uses {@link #transpose(File,File,int) transpose} for SVDLIBC sparse binary
+ * files.  The term-document spaces do not need this builder, since the {@link
+ * Transform} implementations and {@link SVD} read only the column-major file.
+ *
+ * <p> The {@code addColumn} method is capable of throwing an {@code IOError} if
+ * any {@code IOException} occurs while operating on the underlying matrix
+ * files.
+ *
+ * <p> This class is thread-safe.
+ *
+ * @see SvdlibcSparseBinaryMatrixBuilder
+ */
+public class ExternalSortMatrixBuilder implements MatrixBuilder {
+
+    /**
+     * Logger for the {@code ExternalSortMatrixBuilder} class
+     */
+    private static final Logger LOGGER =
+        Logger.getLogger(ExternalSortMatrixBuilder.class.getName());
+
+    /**
+     * The default number of values that are buffered in memory before being
+     * sorted and spilled to disk, which uses 48MB of memory.
+     */
+    public static final int DEFAULT_MAX_BUFFERED_VALUES = 1 << 22;
+
+    /**
+     * The number of values for which buffer space is first allocated.  The
+     * buffers grow as values are added, up to the maximum, so that small
+     * matrices do not pay for the full buffers.
+     */
+    static final int INITIAL_BUFFERED_VALUES = 1 << 12;
+
+    /**
+     * The maximum number of runs that are merged at once, which bounds the
+     * number of open files.
+     */
+    static final int MAX_MERGED_RUNS = 128;
+
+    /**
+     * The size of the buffer used for reading and writing each file
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Whether the inputted matrix columns should be transposed as rows in the
+     * file returned by {@link #getFile()}.
+     */
+    private final boolean transposeData;
+
+    /**
+     * The file to which the columns are written as they are added, or {@code
+     * null} if only the transpose is to be built.
+     */
+    private final File columnMajorFile;
+
+    /**
+     * The file to which the transpose is written when the matrix is finished.
+     */
+    private final File rowMajorFile;
+
+    /**
+     * The writer for the columns, or {@code null} if only the transpose is
+     * to be built.
+     */
+    private DataOutputStream columnDos;
+
+    /**
+     * The maximum number of values that are buffered before being spilled
+     */
+    private final int maxBufferedValues;
+
+    /**
+     * The row of each buffered value
+     */
+    private int[] bufferedRows;
+
+    /**
+     * The column of each buffered value
+     */
+    private int[] bufferedCols;
+
+    /**
+     * The buffered values
+     */
+    private float[] bufferedValues;
+
+    /**
+     * The number of values that are currently buffered
+     */
+    private int numBuffered;
+
+    /**
+     * The runs of values that have been sorted by row and spilled to disk, in
+     * the order they were written.
+     */
+    private final List<File> runs;
+
+    /**
+     * Whether the builder has finished adding data to the matrix
+     */
+    private boolean isFinished;
+
+    /**
+     * The number of the column that will next be assigned.  Once this matrix
+     * has been finished, this value will reflect the total number of columns
+     * in the matrix.
+     */
+    private int curCol;
+
+    /**
+     * The total number of rows in the matrix.  This value is continuously
+     * updated as new columns are seen and is not valid until the matrix has
+     * been finished.
+     */
+    private int numRows;
+
+    /**
+     * The total number of non-zero values in the matrix.
+     */
+    private int nonZeroValues;
+
+    /**
+     * Creates a builder for a matrix and its transpose, which are stored in
+     * temporary files.
+     */
+    public ExternalSortMatrixBuilder() {
+        this(false);
+    }
+
+    /**
+     * Creates a builder for a matrix and its transpose, which are stored in
+     * temporary files.
+     *
+     * @param transposeData {@code true} if {@link #getFile()} should return
+     *        the file in which the input matrix columns are rows
+     */
+    public ExternalSortMatrixBuilder(boolean transposeData) {
+        this(getTempMatrixFile(), getTempMatrixFile(), transposeData,
+             DEFAULT_MAX_BUFFERED_VALUES);
+    }
+
+    /**
+     * Creates a builder for a matrix and its transpose.
+     *
+     * @param matrixFile the file to which the matrix is written, in which
+     *        the input columns are columns unless {@code transposeData} is
+     *        {@code true}
+     * @param transposeFile the file to which the transpose of {@code
+     *        matrixFile} is written
+     * @param transposeData {@code true} if the input matrix columns should be
+     *        tranposed in {@code matrixFile}
+     * @param maxBufferedValues the number of values buffered in memory before
+     *        they are sorted and spilled to disk.  Each value uses 12 bytes,
+     *        and the buffers are only grown to this size as values are added.
+     */
+    public ExternalSortMatrixBuilder(File matrixFile, File transposeFile,
+                                     boolean transposeData,
+                                     int maxBufferedValues) {
+        this((transposeData) ? transposeFile : matrixFile,
+             (transposeData) ? matrixFile : transposeFile,
+             maxBufferedValues, transposeData);
+        if (matrixFile == null || transposeFile == null)
+            throw new NullPointerException("Matrix files cannot be null");
+    }
+
+    /**
+     * Creates a builder that writes the columns to {@code columnMajorFile},
+     * unless it is {@code null}, and the transpose to {@code rowMajorFile}.
+     */
+    private ExternalSortMatrixBuilder(File columnMajorFile, File rowMajorFile,
+                                      int maxBufferedValues, 
+                                      boolean transposeData) {
+        if (maxBufferedValues <= 0)
+            throw new IllegalArgumentException(
+                "Must buffer at least one value: " + maxBufferedValues);
+        this.columnMajorFile = columnMajorFile;
+        this.rowMajorFile = rowMajorFile;
+        this.transposeData = transposeData;
+        this.maxBufferedValues = maxBufferedValues;
+        int capacity = Math.min(maxBufferedValues, INITIAL_BUFFERED_VALUES);
+        bufferedRows = new int[capacity];
+        bufferedCols = new int[capacity];
+        bufferedValues = new float[capacity];
+        runs = new ArrayList<File>();
+        if (columnMajorFile != null) {
+            try {
+                columnDos = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(columnMajorFile), BUFFER_SIZE));
+                // write the 12 byte header to advance the file pointer to
+                // where the matrix data will start.  The header will be back
+                // filled once the matrix data has been finalized
+                for (int i = 0; i < 3; ++i)
+                    columnDos.writeInt(0);
+            } catch (IOException ioe) {
+                throw new IOError(ioe);
+            }
+        }
+    }
+
+    /**
+     * Writes the transpose of a matrix in the SVDLIBC sparse binary format to
+     * {@code output}, using an external sort that buffers at most {@code
+     * maxBufferedValues} values in memory.
+     *
+     * @throws IOException if an error occurs while reading or writing the
+     *         matrices
+     */
+    public static void transpose(File input, File output, 
+                                 int maxBufferedValues) throws IOException {
+        ExternalSortMatrixBuilder builder = new ExternalSortMatrixBuilder(
+            null, output, maxBufferedValues, false);
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(input), BUFFER_SIZE));
+        try {
+            int rows = dis.readInt();
+            int cols = dis.readInt();
+            int nonZero = dis.readInt();
+            for (int col = 0; col < cols; ++col) {
+                int nonZeroInCol = dis.readInt();
+                for (int i = 0; i < nonZeroInCol; ++i)
+                    builder.buffer(dis.readInt(), col, dis.readFloat());
+            }
+            builder.numRows = rows;
+            builder.curCol = cols;
+            builder.nonZeroValues = nonZero;
+        } finally {
+            dis.close();
+        }
+        builder.finish();
+    }
+
+    /**
+     * Returns a temporary file that will be deleted on JVM exit.
+     *
+     * @return a temporary file used to store a matrix
+     */
+    private static File getTempMatrixFile() {
+        try {
+            File tmp = File.createTempFile("external-sort-matrix", ".dat");
+            tmp.deleteOnExit();
+            return tmp;
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int addColumn(double[] column) {
+        checkNotFinished();
+        if (column.length > numRows)
+            numRows = column.length;
+
+        int nonZero = 0;
+        for (int i = 0; i < column.length; ++i) {
+            if (column[i] != 0d) 
+                nonZero++;
+        }
+        try {
+            startColumn(nonZero);
+            for (int i = 0; i < column.length; ++i) {
+                if (column[i] != 0d)
+                    add(i, (float)column[i]);
+            }
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+        return ++curCol;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int addColumn(SparseArray<? extends Number> column) {
+        checkNotFinished();
+        if (column.length() > numRows)
+            numRows = column.length();
+        assert column.length() != Integer.MAX_VALUE : "adding a column whose " +
+            "length is Integer.MAX_VALUE (was likley left unspecified in the " +
+            " constructor).";           
+
+        int[] nonZero = column.getElementIndices();
+        try {
+            startColumn(nonZero.length);
+            for (int i : nonZero) 
+                add(i, column.get(i).floatValue());
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+        return ++curCol;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int addColumn(Vector col) {
+        checkNotFinished();
+        DoubleVector column = Vectors.asDouble(col);
+        if (column.length() > numRows)
+            numRows = column.length();
+        assert column.length() != Integer.MAX_VALUE : "adding a column whose " +
+            "length is Integer.MAX_VALUE (was likley left unspecified in the " +
+            " constructor).";
+
+        try {
+            if (column instanceof SparseVector) {
+                int[] nonZero = ((SparseVector)column).getNonZeroIndices();
+                startColumn(nonZero.length);
+                for (int i : nonZero) 
+                    add(i, (float)column.get(i));
+            }
+            else {
+                int length = column.length();
+                int nonZero = 0;
+                for (int i = 0; i < length; ++i) {
+                    if (column.get(i) != 0d) 
+                        nonZero++;
+                }
+                startColumn(nonZero);
+                for (int i = 0; i < length; ++i) {
+                    double value = column.get(i);
+                    if (value != 0d)
+                        add(i, (float)value);
+                }
+            }
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+        return ++curCol;
+    }
+
+    /**
+     * Throws an {@link IllegalStateException} if the matrix is finished.
+     */
+    private void checkNotFinished() {
+        if (isFinished)
+            throw new IllegalStateException(
+                "Cannot add columns to a MatrixBuilder that is finished");
+    }
+
+    /**
+     * Begins the column {@link #curCol}, which has the specified number of
+     * non-zero values.
+     */
+    private void startColumn(int nonZero) throws IOException {
+        nonZeroValues += nonZero;
+        columnDos.writeInt(nonZero);
+    }
+
+    /**
+     * Adds a value to the column {@link #curCol}.
+     */
+    private void add(int row, float value) throws IOException {
+        columnDos.writeInt(row);
+        columnDos.writeFloat(value);
+        buffer(row, curCol, value);
+    }
+
+    /**
+     * Buffers a value of the matrix, growing the buffers if they are below the
+     * maximum size, or otherwise spilling them to disk if they are full.
+     */
+    private void buffer(int row, int col, float value) throws IOException {
+        if (numBuffered == bufferedRows.length) {
+            if (numBuffered < maxBufferedValues) {
+                int capacity = (int)Math.min(maxBufferedValues,
+                                             2L * numBuffered);
+                bufferedRows = Arrays.copyOf(bufferedRows, capacity);
+                bufferedCols = Arrays.copyOf(bufferedCols, capacity);
+                bufferedValues = Arrays.copyOf(bufferedValues, capacity);
+            }
+            else
+                spill();
+        }
+        bufferedRows[numBuffered] = row;
+        bufferedCols[numBuffered] = col;
+        bufferedValues[numBuffered] = value;
+        numBuffered++;
+    }
+
+    /**
+     * Sorts the buffered values by row and writes them to a new run.  Because
+     * the values were buffered in column order, a stable counting sort by row
+     * leaves the values in each row ordered by column.
+     */
+    private void spill() throws IOException {
+        int maxRow = -1;
+        for (int i = 0; i < numBuffered; ++i) {
+            if (bufferedRows[i] > maxRow)
+                maxRow = bufferedRows[i];
+        }
+        int[] rowStarts = new int[maxRow + 2];
+        for (int i = 0; i < numBuffered; ++i)
+            rowStarts[bufferedRows[i] + 1]++;
+        for (int r = 0; r <= maxRow; ++r)
+            rowStarts[r + 1] += rowStarts[r];
+        int[] order = new int[numBuffered];
+        int[] next = rowStarts.clone();
+        for (int i = 0; i < numBuffered; ++i)
+            order[next[bufferedRows[i]]++] = i;
+
+        File run = File.createTempFile("external-sort-run", ".dat");
+        run.deleteOnExit();
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(run), BUFFER_SIZE));
+        try {
+            for (int r = 0; r <= maxRow; ++r) {
+                int start = rowStarts[r];
+                int end = rowStarts[r + 1];
+                if (start == end)
+                    continue;
+                dos.writeInt(r);
+                dos.writeInt(end - start);
+                for (int j = start; j < end; ++j) {
+                    int i = order[j];
+                    dos.writeInt(bufferedCols[i]);
+                    dos.writeFloat(bufferedValues[i]);
+                }
+            }
+        } finally {
+            dos.close();
+        }
+        runs.add(run);
+        numBuffered = 0;
+    }
+
+    /**
+     * {@inheritDoc} Once this method has been called, any subsequent calls will
+     * have no effect and will not throw an exception.
+     */
+    public synchronized void finish() {
+        if (isFinished)
+            return;
+        isFinished = true;
+        try {
+            if (columnDos != null) {
+                columnDos.close();
+                // Back fill the dimensions of the matrix and the number of
+                // non-zero values as the 3 int header in the file
+                RandomAccessFile matrixRaf =
+                    new RandomAccessFile(columnMajorFile, "rw");
+                matrixRaf.writeInt(numRows);
+                matrixRaf.writeInt(curCol);
+                matrixRaf.writeInt(nonZeroValues);
+                matrixRaf.close();
+                columnDos = null;
+            }
+
+            if (numBuffered > 0)
+                spill();
+            LOGGER.fine("merging " + runs.size() + " runs to transpose a " +
+                        numRows + " x " + curCol + " matrix");
+
+            // Merge the runs into larger runs until they can all be merged at
+            // once into the final file
+            while (runs.size() > MAX_MERGED_RUNS) {
+                List<File> merged = new ArrayList<File>();
+                for (int i = 0; i < runs.size(); i += MAX_MERGED_RUNS) {
+                    List<File> group = runs.subList(
+                        i, Math.min(runs.size(), i + MAX_MERGED_RUNS));
+                    File run = File.createTempFile("external-sort-run", ".dat");
+                    run.deleteOnExit();
+                    merge(group, run, false);
+                    merged.add(run);
+                }
+                runs.clear();
+                runs.addAll(merged);
+            }
+            merge(runs, rowMajorFile, true);
+            runs.clear();
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * Merges the runs into {@code output} and deletes them.  If {@code
+     * isFinal} is {@code true}, the output is the transposed matrix in the
+     * SVDLIBC sparse binary format, with an entry for every row; otherwise,
+     * the output is a new run.
+     */
+    private void merge(List<File> toMerge, File output, boolean isFinal) 
+            throws IOException {
+        PriorityQueue<RunReader> heads = new PriorityQueue<RunReader>();
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(output), BUFFER_SIZE));
+        try {
+            for (int i = 0; i < toMerge.size(); ++i) {
+                RunReader reader = new RunReader(toMerge.get(i), i);
+                if (reader.advance())
+                    heads.add(reader);
+            }
+            if (isFinal) {
+                // The rows of the matrix are the columns of its transpose
+                dos.writeInt(curCol);
+                dos.writeInt(numRows);
+                dos.writeInt(nonZeroValues);
+            }
+
+            // The runs that contain the current row, in the order they were
+            // written, which is also their column order
+            List<RunReader> inRow = new ArrayList<RunReader>();
+            int row = 0;
+            while (!heads.isEmpty()) {
+                int nextRow = heads.peek().row;
+                if (isFinal) {
+                    // Empty rows still need an entry in the transpose
+                    for (; row < nextRow; ++row)
+                        dos.writeInt(0);
+                }
+                row = nextRow;
+                int count = 0;
+                while (!heads.isEmpty() && heads.peek().row == row) {
+                    RunReader reader = heads.poll();
+                    count += reader.count;
+                    inRow.add(reader);
+                }
+                if (!isFinal)
+                    dos.writeInt(row);
+                dos.writeInt(count);
+                for (RunReader reader : inRow) {
+                    reader.copyRow(dos);
+                    if (reader.advance())
+                        heads.add(reader);
+                }
+                inRow.clear();
+                row++;
+            }
+            if (isFinal) {
+                for (; row < numRows; ++row)
+                    dos.writeInt(0);
+            }
+        } finally {
+            dos.close();
+            for (RunReader reader : heads)
+                reader.close();
+            for (File run : toMerge)
+                run.delete();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized File getFile() {
+        if (!isFinished)
+            throw new IllegalStateException(
+                "Cannot access matrix file until finished has been called");
+        return (transposeData) ? rowMajorFile : columnMajorFile;
+    }
+
+    /**
+     * Returns the file containing the transpose of the matrix returned by
+     * {@link #getFile()}.
+     *
+     * @throws IllegalStateException if the matrix has not been finished
+     */
+    public synchronized File getTransposeFile() {
+        if (!isFinished)
+            throw new IllegalStateException(
+                "Cannot access matrix file until finished has been called");
+        return (transposeData) ? columnMajorFile : rowMajorFile;
+    }
+
+    /**
+     * Returns {@link MatrixIO.Format#SVDLIBC_SPARSE_BINARY
+     * SVDLIBC_SPARSE_BINARY}.
+     */
+    public Format getMatrixFormat() {
+        return MatrixIO.Format.SVDLIBC_SPARSE_BINARY;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public MatrixFile getMatrixFile() {
+        return new MatrixFile(getFile(), getMatrixFormat());
+    }
+
+    /**
+     * Returns the {@link MatrixFile} containing the transpose of the matrix
+     * returned by {@link #getMatrixFile()}.
+     *
+     * @throws IllegalStateException if the matrix has not been finished
+     */
+    public MatrixFile getTransposeMatrixFile() {
+        return new MatrixFile(getTransposeFile(), getMatrixFormat());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized boolean isFinished() {
+        return isFinished;
+    }
+
+    /**
+     * A reader over the rows of a run, which orders itself by its current row
+     * and then by the order in which the runs were written.
+     */
+    private static class RunReader implements Comparable<RunReader> {
+
+        /**
+         * The stream of the run's contents
+         */
+        private final DataInputStream dis;
+
+        /**
+         * The position of this run among the runs being merged
+         */
+        private final int index;
+
+        /**
+         * The current row
+         */
+        int row;
+
+        /**
+         * The number of values in the current row
+         */
+        int count;
+
+        /**
+         * Opens the run.
+         */
+        public RunReader(File run, int index) throws IOException {
+            this.index = index;
+            dis = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(run), BUFFER_SIZE));
+        }
+
+        /**
+         * Reads the header of the next row, returning {@code false} and
+         * closing the run if there are no more rows.
+         */
+        public boolean advance() throws IOException {
+            try {
+                row = dis.readInt();
+            } catch (EOFException eofe) {
+                dis.close();
+                return false;
+            }
+            count = dis.readInt();
+            return true;
+        }
+
+        /**
+         * Copies the values of the current row to the output.
+         */
+        public void copyRow(DataOutputStream dos) throws IOException {
+            for (int i = 0; i < count; ++i) {
+                dos.writeInt(dis.readInt());
+                dos.writeFloat(dis.readFloat());
+            }
+        }
+
+        /**
+         * Closes the run.
+         */
+        public void close() throws IOException {
+            dis.close();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int compareTo(RunReader other) {
+            return (row != other.row)
+                ? ((row < other.row) ? -1 : 1)
+                : index - other.index;
+        }
+    }
+}
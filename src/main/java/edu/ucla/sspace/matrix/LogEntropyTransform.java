@@ -21,18 +21,11 @@
 
 package edu.ucla.sspace.matrix;
 
-import edu.ucla.sspace.util.IntegerMap;
-
 import edu.ucla.sspace.vector.DoubleVector;
 import edu.ucla.sspace.vector.SparseDoubleVector;
 
-import java.io.IOError;
-import java.io.IOException;
 import java.io.File;
 
-import java.util.Iterator;
-import java.util.Map;
-
 import java.util.logging.Logger;
 
 import static edu.ucla.sspace.common.Statistics.log2;
@@ -179,53 +172,17 @@ public class LogEntropyTransform extends BaseTransform
          */
         public LogEntropyGlobalTransform(File inputMatrixFile,
                                          MatrixIO.Format format) {
-            // Get the row sums.
-            Map<Integer, Double> rowSums = new IntegerMap<Double>();
-            Iterator<MatrixEntry> iter;
-            try {
-                iter = MatrixIO.getMatrixFileIterator(inputMatrixFile, format);
-            } catch (IOException ioe) {
-                throw new IOError(ioe);
-            }
-            int numColumns = 0;
-            int numRows = 0;
-
-            LOGGER.info("Computing the total row counts");
-            // Compute the total count for each row.
-            while (iter.hasNext()) {
-                MatrixEntry entry = iter.next();
-                Double rowSum = rowSums.get(entry.row());
-                rowSums.put(entry.row(), (rowSum == null) 
-                        ? entry.value()
-                        : rowSum + entry.value());
-
-                // Compute the total number of rows and columns.
-                if (entry.row() >= numRows)
-                    numRows = entry.row() + 1;
-                if (entry.column() >= numColumns)
-                    numColumns = entry.column() + 1;
-            }
-
             LOGGER.info("Computing the entropy of each row");
-            // Compute the entropy sum of each row based on the occurances
-            // of each row.
-            rowEntropy = new double[numRows];
-            try {
-                iter = MatrixIO.getMatrixFileIterator(inputMatrixFile, format);
-            } catch (IOException ioe) {
-                throw new IOError(ioe);
-            }
-            while (iter.hasNext()) {
-                MatrixEntry entry = iter.next();
-                Double rowSumDouble = rowSums.get(entry.row());
-                double rowSum = (rowSumDouble == null) ? 0 : rowSumDouble;
-                double probability = entry.value() / rowSum;
-                rowEntropy[entry.row()] += probability * log2(probability);
-            }
+            // The row sums and the entropy are computed in a single pass
+            TransformStatistics.MatrixStatistics stats = 
+                TransformStatistics.extractEntropyStatistics(
+                    inputMatrixFile, format);
+            rowEntropy = stats.rowEntropies;
+            int numColumns = stats.columnSums.length;
 
             LOGGER.info("Scaling the entropy of the rows");
             // Scale the entropy by the log of the number of columns.
-            for (int row = 0; row < numRows; ++row)
+            for (int row = 0; row < rowEntropy.length; ++row)
                 rowEntropy[row] = 1 + (rowEntropy[row] / log2(numColumns));
         }
 
@@ -259,7 +259,11 @@ public class Matrices {
         
         switch (fastest) {
         case SVDLIBC:
-            return new SvdlibcSparseBinaryMatrixBuilder(transpose);
+            // Transposing with an external sort avoids a second pass over the
+            // matrix by SVDLIBC after it has been built
+            return (transpose)
+                ? new ExternalSortMatrixBuilder(true)
+                : new SvdlibcSparseBinaryMatrixBuilder();
 
         // In all other cases, use the sparse Matlab format, as it covers both
         // Matlab and Octave.  This format doesn't matter much for Jama or Colt,
@@ -296,80 +300,21 @@ public class Matrices {
         return true;
     }
 
-    private static Matrix multiplyRightDiag(Matrix m1, Matrix m2) {
-        Matrix resultMatrix = create(m1.rows(), m2.columns(), true);
-        for (int r = 0; r < m1.rows(); ++r) {
-            double[] row = m1.getRow(r);
-            for (int c = 0; c < m2.columns(); ++c) {
-                double value = m2.get(c, c);
-                resultMatrix.set(r, c, value * row[c]);
-            }
-        }
-        return resultMatrix;
-    }
-
-    private static Matrix multiplyBothDiag(Matrix m1, Matrix m2) {
-        Matrix resultMatrix = new DiagonalMatrix(m1.rows());
-        for (int i = 0; i < m1.rows(); ++i)
-            resultMatrix.set(i, i, m1.get(i, i) * m2.get(i, i));
-        return resultMatrix;
-    }
-
-    private static Matrix multiplyLeftDiag(Matrix m1, Matrix m2) {
-        Matrix resultMatrix = create(m1.rows(), m2.columns(), true);
-        for (int r = 0; r < m1.rows(); ++r) {
-            double element = m1.get(r, r);
-            double[] m2Row = m2.getRow(r);
-            for (int c = 0; c < m2.columns(); ++c)
-                resultMatrix.set(r, c, element * m2Row[c]);
-        }
-        return resultMatrix;
-    }
-
     /**
-     * 
+     * Returns the product of the two matrices.  The implementation is chosen
+     * based on the types of the matrices: products with a {@link
+     * DiagonalMatrix} scale the rows or columns of the other matrix, {@link
+     * SparseMatrix} instances are multiplied using only their non-zero values,
+     * and dense matrices are multiplied using a cache-blocked kernel.  Large
+     * products are computed concurrently over blocks of rows.  The returned
+     * matrix is a {@link SparseMatrix} if both matrices are sparse, or if one
+     * is diagonal and the other is sparse.
+     *
+     * @throws IllegalArgumentException if the number of columns in {@code m1}
+     *         is not equal to the number of rows in {@code m2}
      */
     public static Matrix multiply(Matrix m1, Matrix m2) {
-        if (m1.columns() != m2.rows()) 
-            throw new IllegalArgumentException(
-                String.format(
-                "The number of columns in the first matrix (%d) do not match " +
-                "the number of rows in the second matrix (%d).", m1.columns(),
-                m2.rows()));
-
-	if (m1.columns() != m2.rows()) 
-	    return null;
-	if (m2 instanceof DiagonalMatrix) {
-            if (m1 instanceof DiagonalMatrix)
-                return multiplyBothDiag(m1, m2);
-            else
-                return multiplyRightDiag(m1, m2);
-	} else if (m1 instanceof DiagonalMatrix) {
-            return multiplyLeftDiag(m1, m2);
-	}
-
-        // Multiply diagnonal matricies with simpler algorithms.
-        if (m2 instanceof DiagonalMatrix) {
-          if (m1 instanceof DiagonalMatrix)
-            return multiplyBothDiag(m1, m2);
-          else
-            return multiplyRightDiag(m1, m2);
-        } else if (m1 instanceof DiagonalMatrix) {
-          return multiplyLeftDiag(m1, m2);
-        }
-
-        int size = m1.columns();
-        Matrix resultMatrix = create(m1.rows(), m2.columns(), true);
-        for (int r = 0; r < m1.rows(); ++r) {
-            double[] row = m1.getRow(r);
-            for (int c = 0; c < m2.columns(); ++c) {
-                double resultValue = 0;
-                for (int i = 0; i < row.length; ++i)
-                    resultValue += row[i] * m2.get(i, c);
-                resultMatrix.set(r, c, resultValue);
-            }
-        }
-        return resultMatrix;
+        return MatrixMultiplication.multiply(m1, m2);
     }
 
     /**
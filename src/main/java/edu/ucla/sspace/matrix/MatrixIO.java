@@ -270,6 +270,17 @@ public class MatrixIO {
                 svdlibcSparseBinaryToMatlab(matrix, output, transpose);
                 return output;
             }
+            // Transposing within the format can be done with an external sort
+            // rather than by loading the matrix into memory
+            if (desired.equals(Format.SVDLIBC_SPARSE_BINARY)) {
+                File output = File.createTempFile(
+                    "SVDLIBC-sparse-binary-transposed",".dat");
+                output.deleteOnExit();
+                ExternalSortMatrixBuilder.transpose(
+                    matrix, output, 
+                    ExternalSortMatrixBuilder.DEFAULT_MAX_BUFFERED_VALUES);
+                return output;
+            }
         }
         }
 
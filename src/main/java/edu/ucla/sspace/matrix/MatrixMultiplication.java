@@ -0,0 +1,661 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.util.WorkQueue;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.SparseDoubleVector;
+import edu.ucla.sspace.vector.SparseVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * The implementation of {@link Matrices#multiply(Matrix, Matrix)}.  The
+ * multiplication is dispatched on the types of the two matrices:
+ *
+ * <ul>
+ *
+ *   <li> Products involving a {@link DiagonalMatrix} scale the rows or columns
+ *        of the other matrix, and remain sparse if the other matrix is.
+ *
+ *   <li> Any other {@link SparseMatrix} is first copied into a compressed sparse
+ *        row (CSR) representation so that its non-zero values can be traversed
+ *        without per-element method calls.  The product of two sparse matrices
+ *        is computed one row at a time by accumulating scaled rows of the
+ *        second matrix, and is returned as a {@link SparseMatrix}.
+ *
+ *   <li> Products of two dense matrices use a cache-blocked kernel over
+ *        row-major copies of the matrices.
+ *
+ * </ul>
+ *
+ * In all cases, the rows of the result are divided into blocks that are
+ * computed concurrently using the {@link WorkQueue}.  Products that involve
+ * too little work to benefit from concurrency are computed by the calling
+ * thread.
+ *
+ * @author David Jurgens
+ */
+final class MatrixMultiplication {
+
+    /**
+     * The minimum number of multiply-add operations for which the product is
+     * computed using multiple threads.
+     */
+    static final long PARALLEL_THRESHOLD = 1 << 18;
+
+    /**
+     * The number of rows of the first matrix that are multiplied together by
+     * the dense kernel.
+     */
+    private static final int ROW_BLOCK = 32;
+
+    /**
+     * The number of rows of the second matrix that are read together by the
+     * dense kernel.
+     */
+    private static final int INNER_BLOCK = 64;
+
+    /**
+     * The number of columns of the second matrix that are read together by the
+     * dense kernel.  The block of the second matrix that is reused for each
+     * row is {@code INNER_BLOCK * COLUMN_BLOCK} values, which fits in a typical
+     * L2 cache.
+     */
+    private static final int COLUMN_BLOCK = 512;
+
+    /**
+     * The largest number of values that may be stored in a single array.
+     */
+    private static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * Uninstantiable
+     */
+    private MatrixMultiplication() { }
+
+    /**
+     * Returns the product of the two matrices.
+     *
+     * @throws IllegalArgumentException if the number of columns in {@code m1}
+     *         is not equal to the number of rows in {@code m2}
+     */
+    static Matrix multiply(Matrix m1, Matrix m2) {
+        if (m1.columns() != m2.rows()) 
+            throw new IllegalArgumentException(
+                String.format(
+                "The number of columns in the first matrix (%d) do not match " +
+                "the number of rows in the second matrix (%d).", m1.columns(),
+                m2.rows()));
+
+        // Multiply diagonal matrices with simpler algorithms
+        if (m2 instanceof DiagonalMatrix) {
+            return (m1 instanceof DiagonalMatrix)
+                ? multiplyBothDiag(m1, m2)
+                : multiplyRightDiag(m1, diagonal(m2));
+        }
+        else if (m1 instanceof DiagonalMatrix)
+            return multiplyLeftDiag(diagonal(m1), m2);
+
+        if (m1 instanceof SparseMatrix) {
+            Csr a = new Csr((SparseMatrix)m1);
+            return (m2 instanceof SparseMatrix)
+                ? multiplySparseSparse(a, new Csr((SparseMatrix)m2))
+                : multiplySparseDense(a, rowMajor(m2), m2.columns());
+        }
+        else if (m2 instanceof SparseMatrix)
+            return multiplyDenseSparse(m1, new Csr((SparseMatrix)m2));
+        return multiplyDenseDense(m1, rowMajor(m2), m2.columns());
+    }
+
+    /**
+     * Returns the product of two diagonal matrices, which is also diagonal.
+     */
+    private static Matrix multiplyBothDiag(Matrix m1, Matrix m2) {
+        Matrix resultMatrix = new DiagonalMatrix(m1.rows());
+        for (int i = 0; i < m1.rows(); ++i)
+            resultMatrix.set(i, i, m1.get(i, i) * m2.get(i, i));
+        return resultMatrix;
+    }
+
+    /**
+     * Returns the product of {@code m} and the diagonal matrix whose values
+     * are {@code diag}, which scales each column of {@code m}.
+     */
+    private static Matrix multiplyRightDiag(final Matrix m, 
+                                            final double[] diag) {
+        final int cols = diag.length;
+        if (m instanceof SparseMatrix) {
+            final SparseMatrix sm = (SparseMatrix)m;
+            final SparseDoubleVector[] rows = new SparseDoubleVector[m.rows()];
+            run(rows.length, (long)rows.length * cols, new RowTask() {
+                    public void compute(int start, int end) {
+                        for (int r = start; r < end; ++r) {
+                            SparseDoubleVector row = sm.getRowVector(r);
+                            int[] indices = sortedNonZero(row);
+                            double[] values = new double[indices.length];
+                            for (int i = 0; i < indices.length; ++i)
+                                values[i] = 
+                                    row.get(indices[i]) * diag[indices[i]];
+                            rows[r] = new CompactSparseVector(
+                                indices, values, cols);
+                        }
+                    }
+                });
+            return Matrices.asSparseMatrix(Arrays.asList(rows), cols);
+        }
+
+        final DenseResult result = new DenseResult(m.rows(), cols);
+        run(m.rows(), (long)m.rows() * cols, new RowTask() {
+                public void compute(int start, int end) {
+                    for (int r = start; r < end; ++r) {
+                        double[] row = m.getRow(r);
+                        for (int c = 0; c < cols; ++c)
+                            row[c] *= diag[c];
+                        result.setRow(r, row);
+                    }
+                }
+            });
+        return result.toMatrix();
+    }
+
+    /**
+     * Returns the product of the diagonal matrix whose values are {@code diag}
+     * and {@code m}, which scales each row of {@code m}.
+     */
+    private static Matrix multiplyLeftDiag(final double[] diag, 
+                                           final Matrix m) {
+        final int cols = m.columns();
+        if (m instanceof SparseMatrix) {
+            final SparseMatrix sm = (SparseMatrix)m;
+            final SparseDoubleVector[] rows = new SparseDoubleVector[m.rows()];
+            run(rows.length, (long)rows.length * cols, new RowTask() {
+                    public void compute(int start, int end) {
+                        for (int r = start; r < end; ++r) {
+                            SparseDoubleVector row = sm.getRowVector(r);
+                            int[] indices = sortedNonZero(row);
+                            double[] values = new double[indices.length];
+                            for (int i = 0; i < indices.length; ++i)
+                                values[i] = row.get(indices[i]) * diag[r];
+                            rows[r] = new CompactSparseVector(
+                                indices, values, cols);
+                        }
+                    }
+                });
+            return Matrices.asSparseMatrix(Arrays.asList(rows), cols);
+        }
+
+        final DenseResult result = new DenseResult(m.rows(), cols);
+        run(m.rows(), (long)m.rows() * cols, new RowTask() {
+                public void compute(int start, int end) {
+                    for (int r = start; r < end; ++r) {
+                        double[] row = m.getRow(r);
+                        for (int c = 0; c < cols; ++c)
+                            row[c] *= diag[r];
+                        result.setRow(r, row);
+                    }
+                }
+            });
+        return result.toMatrix();
+    }
+
+    /**
+     * Returns the product of two sparse matrices as a sparse matrix.  Each row
+     * of the result is accumulated into a dense scratch array as the sum of
+     * the rows of {@code b} scaled by the non-zero values of the corresponding
+     * row in {@code a}, after which only the touched columns are read back.
+     */
+    private static Matrix multiplySparseSparse(final Csr a, final Csr b) {
+        final int cols = b.cols;
+        final SparseDoubleVector[] rows = new SparseDoubleVector[a.rows];
+        run(a.rows, a.multiplyAdds(b), new RowTask() {
+                public void compute(int start, int end) {
+                    double[] accumulator = new double[cols];
+                    boolean[] touched = new boolean[cols];
+                    int[] touchedCols = new int[cols];
+                    for (int r = start; r < end; ++r) {
+                        int numTouched = 0;
+                        for (int i = a.rowPtr[r]; i < a.rowPtr[r + 1]; ++i) {
+                            double v = a.values[i];
+                            int k = a.colIndices[i];
+                            for (int j = b.rowPtr[k]; j < b.rowPtr[k + 1]; 
+                                     ++j) {
+                                int c = b.colIndices[j];
+                                if (!touched[c]) {
+                                    touched[c] = true;
+                                    touchedCols[numTouched++] = c;
+                                }
+                                accumulator[c] += v * b.values[j];
+                            }
+                        }
+                        Arrays.sort(touchedCols, 0, numTouched);
+                        int nonZero = 0;
+                        int[] indices = new int[numTouched];
+                        double[] values = new double[numTouched];
+                        for (int i = 0; i < numTouched; ++i) {
+                            int c = touchedCols[i];
+                            // Skip any values that cancelled out
+                            if (accumulator[c] != 0) {
+                                indices[nonZero] = c;
+                                values[nonZero++] = accumulator[c];
+                            }
+                            accumulator[c] = 0;
+                            touched[c] = false;
+                        }
+                        rows[r] = new CompactSparseVector(
+                            Arrays.copyOf(indices, nonZero),
+                            Arrays.copyOf(values, nonZero), cols);
+                    }
+                }
+            });
+        return Matrices.asSparseMatrix(Arrays.asList(rows), cols);
+    }
+
+    /**
+     * Returns the product of a sparse matrix and a dense matrix, whose values
+     * are stored in row-major order, by adding the scaled rows of {@code b}
+     * for each non-zero value in a row of {@code a}.
+     */
+    private static Matrix multiplySparseDense(final Csr a, final double[] b,
+                                              final int cols) {
+        final DenseResult result = new DenseResult(a.rows, cols);
+        run(a.rows, (long)a.values.length * cols, new RowTask() {
+                public void compute(int start, int end) {
+                    for (int r0 = start; r0 < end; r0 += ROW_BLOCK) {
+                        int r1 = Math.min(end, r0 + ROW_BLOCK);
+                        double[] c = result.block(r0, r1);
+                        int offset = result.offset(r0);
+                        for (int r = r0; r < r1; ++r, offset += cols) {
+                            for (int i = a.rowPtr[r]; i < a.rowPtr[r + 1]; 
+                                     ++i) {
+                                addScaled(c, offset, a.values[i], b, 
+                                          a.colIndices[i] * cols, cols);
+                            }
+                        }
+                        result.commit(r0, r1, c);
+                    }
+                }
+            });
+        return result.toMatrix();
+    }
+
+    /**
+     * Returns the product of a dense matrix and a sparse matrix by adding the
+     * sparse rows of {@code b}, scaled by each value in a row of {@code m}.
+     */
+    private static Matrix multiplyDenseSparse(final Matrix m, final Csr b) {
+        final int cols = b.cols;
+        final DenseResult result = new DenseResult(m.rows(), cols);
+        run(m.rows(), (long)m.rows() * b.values.length, new RowTask() {
+                public void compute(int start, int end) {
+                    for (int r0 = start; r0 < end; r0 += ROW_BLOCK) {
+                        int r1 = Math.min(end, r0 + ROW_BLOCK);
+                        double[] c = result.block(r0, r1);
+                        int offset = result.offset(r0);
+                        for (int r = r0; r < r1; ++r, offset += cols) {
+                            double[] row = m.getRow(r);
+                            for (int k = 0; k < row.length; ++k) {
+                                double v = row[k];
+                                if (v == 0)
+                                    continue;
+                                for (int j = b.rowPtr[k]; j < b.rowPtr[k + 1];
+                                         ++j)
+                                    c[offset + b.colIndices[j]] += 
+                                        v * b.values[j];
+                            }
+                        }
+                        result.commit(r0, r1, c);
+                    }
+                }
+            });
+        return result.toMatrix();
+    }
+
+    /**
+     * Returns the product of two dense matrices, where the values of the
+     * second are stored in row-major order.  Each task copies a block of
+     * {@link #ROW_BLOCK} rows of {@code m} and multiplies them by successive
+     * {@link #INNER_BLOCK} by {@link #COLUMN_BLOCK} tiles of {@code b}, so that
+     * each tile is reused from cache for every row in the block.
+     */
+    private static Matrix multiplyDenseDense(final Matrix m, final double[] b,
+                                             final int cols) {
+        final int inner = m.columns();
+        final DenseResult result = new DenseResult(m.rows(), cols);
+        run(m.rows(), (long)m.rows() * inner * cols, new RowTask() {
+                public void compute(int start, int end) {
+                    double[] a = new double[ROW_BLOCK * inner];
+                    for (int r0 = start; r0 < end; r0 += ROW_BLOCK) {
+                        int r1 = Math.min(end, r0 + ROW_BLOCK);
+                        for (int r = r0; r < r1; ++r)
+                            System.arraycopy(m.getRow(r), 0, a, 
+                                             (r - r0) * inner, inner);
+                        double[] c = result.block(r0, r1);
+                        int base = result.offset(r0);
+                        for (int k0 = 0; k0 < inner; k0 += INNER_BLOCK) {
+                            int k1 = Math.min(inner, k0 + INNER_BLOCK);
+                            for (int j0 = 0; j0 < cols; j0 += COLUMN_BLOCK) {
+                                int width = Math.min(cols, j0 + COLUMN_BLOCK) 
+                                    - j0;
+                                for (int r = r0; r < r1; ++r) {
+                                    int aRow = (r - r0) * inner;
+                                    int cRow = base + (r - r0) * cols + j0;
+                                    for (int k = k0; k < k1; ++k) {
+                                        double v = a[aRow + k];
+                                        if (v != 0)
+                                            addScaled(c, cRow, v, b, 
+                                                      k * cols + j0, width);
+                                    }
+                                }
+                            }
+                        }
+                        result.commit(r0, r1, c);
+                    }
+                }
+            });
+        return result.toMatrix();
+    }
+
+    /**
+     * Adds {@code length} values of {@code x} starting at {@code xOffset},
+     * scaled by {@code scale}, to the values of {@code y} starting at {@code
+     * yOffset}.
+     */
+    private static void addScaled(double[] y, int yOffset, double scale,
+                                  double[] x, int xOffset, int length) {
+        for (int i = 0; i < length; ++i)
+            y[yOffset + i] += scale * x[xOffset + i];
+    }
+
+    /**
+     * Returns the values on the diagonal of the matrix.
+     */
+    private static double[] diagonal(Matrix m) {
+        double[] diag = new double[m.rows()];
+        for (int i = 0; i < diag.length; ++i)
+            diag[i] = m.get(i, i);
+        return diag;
+    }
+
+    /**
+     * Returns the non-zero indices of the vector in sorted order.
+     */
+    private static int[] sortedNonZero(SparseVector v) {
+        int[] indices = v.getNonZeroIndices().clone();
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     * Returns the values of the matrix in row-major order.
+     *
+     * @throws IllegalArgumentException if the matrix has too many values to
+     *         be stored in a single array
+     */
+    private static double[] rowMajor(final Matrix m) {
+        final int cols = m.columns();
+        long size = (long)m.rows() * cols;
+        if (size > MAX_ARRAY_SIZE)
+            throw new IllegalArgumentException(
+                "Matrix is too large to multiply in memory: " + m.rows() + 
+                "x" + cols);
+        final double[] values = new double[(int)size];
+        run(m.rows(), size, new RowTask() {
+                public void compute(int start, int end) {
+                    for (int r = start; r < end; ++r)
+                        System.arraycopy(m.getRow(r), 0, values, r * cols, 
+                                         cols);
+                }
+            });
+        return values;
+    }
+
+    /**
+     * Computes the rows {@code [0, rows)} by dividing them into contiguous
+     * ranges that are computed concurrently if the total amount of work is
+     * large enough.
+     *
+     * @param rows the number of rows to compute
+     * @param work an estimate of the number of multiply-add operations needed
+     *        to compute all of the rows
+     * @param task the computation for a range of rows
+     */
+    private static void run(int rows, long work, final RowTask task) {
+        if (rows == 0)
+            return;
+        WorkQueue q = WorkQueue.getWorkQueue();
+        int threads = q.availableThreads();
+        if (work < PARALLEL_THRESHOLD || threads <= 1 || rows == 1) {
+            task.compute(0, rows);
+            return;
+        }
+        // Use more ranges than threads to balance rows of uneven density
+        int numRanges = Math.min(rows, 4 * threads);
+        List<Runnable> tasks = new ArrayList<Runnable>(numRanges);
+        for (int i = 0; i < numRanges; ++i) {
+            final int start = (int)((long)rows * i / numRanges);
+            final int end = (int)((long)rows * (i + 1) / numRanges);
+            if (start < end) {
+                tasks.add(new Runnable() {
+                        public void run() {
+                            task.compute(start, end);
+                        }
+                    });
+            }
+        }
+        q.run(tasks);
+    }
+
+    /**
+     * A computation over a contiguous range of rows.
+     */
+    private interface RowTask {
+
+        /**
+         * Computes the rows in {@code [start, end)}.
+         */
+        void compute(int start, int end);
+    }
+
+    /**
+     * A compressed sparse row (CSR) copy of a {@link SparseMatrix}.  The
+     * non-zero values of row {@code r} are stored in {@code values} from
+     * {@code rowPtr[r]} up to, but not including, {@code rowPtr[r+1]}, with
+     * their columns in the same positions of {@code colIndices}.
+     */
+    static final class Csr {
+
+        final int rows;
+
+        final int cols;
+
+        final int[] rowPtr;
+
+        final int[] colIndices;
+
+        final double[] values;
+
+        /**
+         * Copies the non-zero values of the matrix.  The rows are read
+         * concurrently and then packed into the CSR arrays.
+         */
+        Csr(final SparseMatrix m) {
+            rows = m.rows();
+            cols = m.columns();
+            final int[][] rowIndices = new int[rows][];
+            final double[][] rowValues = new double[rows][];
+            run(rows, (long)rows * 64, new RowTask() {
+                    public void compute(int start, int end) {
+                        for (int r = start; r < end; ++r) {
+                            SparseDoubleVector row = m.getRowVector(r);
+                            int[] nz = row.getNonZeroIndices();
+                            int[] indices = new int[nz.length];
+                            double[] vals = new double[nz.length];
+                            int n = 0;
+                            for (int c : nz) {
+                                double v = row.get(c);
+                                if (v != 0) {
+                                    indices[n] = c;
+                                    vals[n++] = v;
+                                }
+                            }
+                            rowIndices[r] = (n == nz.length) 
+                                ? indices : Arrays.copyOf(indices, n);
+                            rowValues[r] = (n == nz.length) 
+                                ? vals : Arrays.copyOf(vals, n);
+                        }
+                    }
+                });
+            rowPtr = new int[rows + 1];
+            long nonZero = 0;
+            for (int r = 0; r < rows; ++r) {
+                nonZero += rowIndices[r].length;
+                if (nonZero > MAX_ARRAY_SIZE)
+                    throw new IllegalArgumentException(
+                        "Matrix has too many non-zero values to multiply in " +
+                        "memory");
+                rowPtr[r + 1] = (int)nonZero;
+            }
+            colIndices = new int[(int)nonZero];
+            values = new double[(int)nonZero];
+            for (int r = 0; r < rows; ++r) {
+                System.arraycopy(rowIndices[r], 0, colIndices, rowPtr[r], 
+                                 rowIndices[r].length);
+                System.arraycopy(rowValues[r], 0, values, rowPtr[r], 
+                                 rowValues[r].length);
+                // Release the row's copy as soon as it has been packed
+                rowIndices[r] = null;
+                rowValues[r] = null;
+            }
+        }
+
+        /**
+         * Returns the number of multiply-add operations needed to compute the
+         * product of this matrix and {@code b}.
+         */
+        long multiplyAdds(Csr b) {
+            long work = 0;
+            for (int k : colIndices)
+                work += b.rowPtr[k + 1] - b.rowPtr[k];
+            return work;
+        }
+    }
+
+    /**
+     * The dense result of a multiplication.  If the result can be stored in a
+     * single array, rows are computed directly into the array that backs the
+     * returned {@link ArrayMatrix}.  Otherwise, blocks of rows are computed
+     * into temporary arrays and then copied into a matrix created by {@link
+     * Matrices#create(int, int, boolean)}.
+     */
+    private static final class DenseResult {
+
+        final int rows;
+
+        final int cols;
+
+        /**
+         * The row-major values of the result, or {@code null} if the result is
+         * too large to be stored in a single array.
+         */
+        final double[] values;
+
+        /**
+         * The matrix into which rows are copied if {@code values} is {@code
+         * null}.
+         */
+        final Matrix matrix;
+
+        DenseResult(int rows, int cols) {
+            this.rows = rows;
+            this.cols = cols;
+            long size = (long)rows * cols;
+            if (size <= MAX_ARRAY_SIZE && rows > 0 && cols > 0) {
+                values = new double[(int)size];
+                matrix = null;
+            }
+            else {
+                values = null;
+                matrix = Matrices.create(rows, cols, true);
+            }
+        }
+
+        /**
+         * Returns the array into which the rows {@code [r0, r1)} should be
+         * computed, starting at {@link #offset(int) offset(r0)}.
+         */
+        double[] block(int r0, int r1) {
+            return (values != null) ? values : new double[(r1 - r0) * cols];
+        }
+
+        /**
+         * Returns the position of row {@code r0} in the array returned by
+         * {@link #block(int, int) block(r0, r1)}.
+         */
+        int offset(int r0) {
+            return (values != null) ? r0 * cols : 0;
+        }
+
+        /**
+         * Stores the rows {@code [r0, r1)} that were computed into the array
+         * returned by {@link #block(int, int) block(r0, r1)}.
+         */
+        void commit(int r0, int r1, double[] block) {
+            if (values != null)
+                return;
+            double[] row = new double[cols];
+            for (int r = r0; r < r1; ++r) {
+                System.arraycopy(block, (r - r0) * cols, row, 0, cols);
+                synchronized(matrix) {
+                    matrix.setRow(r, row);
+                }
+            }
+        }
+
+        /**
+         * Stores a single computed row.
+         */
+        void setRow(int r, double[] row) {
+            if (values != null)
+                System.arraycopy(row, 0, values, r * cols, cols);
+            else {
+                synchronized(matrix) {
+                    matrix.setRow(r, row);
+                }
+            }
+        }
+
+        /**
+         * Returns the result as a {@link Matrix}.
+         */
+        Matrix toMatrix() {
+            return (values != null) 
+                ? new ArrayMatrix(rows, cols, values)
+                : matrix;
+        }
+    }
+}
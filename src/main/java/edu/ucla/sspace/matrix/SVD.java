@@ -28,6 +28,7 @@ import edu.ucla.sspace.matrix.factorization.SingularValueDecomposition;
 import edu.ucla.sspace.matrix.factorization.SingularValueDecompositionLibC;
 import edu.ucla.sspace.matrix.factorization.SingularValueDecompositionMatlab;
 import edu.ucla.sspace.matrix.factorization.SingularValueDecompositionOctave;
+import edu.ucla.sspace.matrix.factorization.SingularValueDecompositionRandomized;
 
 import java.io.BufferedReader;
 import java.io.DataInputStream;
@@ -68,7 +69,7 @@ import java.util.logging.Logger;
  *
  * <p>
  *
- * Five different SVD algorithms are possible:
+ * Six different SVD algorithms are possible:
  * <ol>
  *
  * <li> <a href="http://tedlab.mit.edu/~dr/svdlibc/">SVDLIBC</a> </li>
@@ -90,6 +91,9 @@ import java.util.logging.Logger;
  * <li><a href="http://math.nist.gov/javanumerics/jama/">JAMA</a> &nbsp;
  * SVD</li>
  *
+ * <li> {@link SingularValueDecompositionRandomized Randomized} - a pure Java
+ * randomized SVD that is always available and runs entirely in memory </li>
+ *
  * </ol>
  *
  * Support for these algorithms requires that they are invokable from the path
@@ -105,8 +109,8 @@ import java.util.logging.Logger;
  *
  * Users may select which algorithm to use manually using the {@code Algorithm}
  * enum.  The additional enum value {@code ANY} will select the fastest
- * algorithm available.  If no algorithm is available, a {@code
- * UnsupporteOperationException} is thrown at run-time.
+ * algorithm available, falling back to the randomized algorithm if no external
+ * implementation is available.
  *
  * <p>
  *
@@ -132,6 +136,7 @@ public class SVD {
         OCTAVE,
         JAMA,
         COLT,
+        RANDOMIZED,
         ANY
     }
 
@@ -142,8 +147,9 @@ public class SVD {
 
     /**
      * Returns the fastest {@link MatrixFactorization} implementation of
-     * Singular Value Decomposition available, or {@code null} if no
-     * implementation is available.
+     * Singular Value Decomposition available.  If no external implementation
+     * is available, the in-process {@link SingularValueDecompositionRandomized}
+     * is returned.
      */
     public static SingularValueDecomposition 
             getFastestAvailableFactorization() {
@@ -153,8 +159,7 @@ public class SVD {
             return new SingularValueDecompositionMatlab();
         if (isOctaveAvailable())
             return new SingularValueDecompositionOctave();
-        throw new UnsupportedOperationException(
-            "Cannot find a valid SVD implementation");
+        return new SingularValueDecompositionRandomized();
     }
 
     /**
@@ -166,6 +171,7 @@ public class SVD {
             case MATLAB: return new SingularValueDecompositionMatlab();
             case OCTAVE: return new SingularValueDecompositionOctave();
             case SVDLIBC: return new SingularValueDecompositionLibC();
+            case RANDOMIZED: return new SingularValueDecompositionRandomized();
             case ANY: return getFastestAvailableFactorization();
             default: throw new UnsupportedOperationException(
                 "Cannot find a valid SVD implementation");
@@ -180,8 +186,8 @@ public class SVD {
      *
      * Use {@link getFastestAvailableFactorization} instead.
      *
-     * @return the fastest algorithm available or {@code null} if no SVD
-     *         algorithm is available
+     * @return the fastest algorithm available, or {@link Algorithm#RANDOMIZED}
+     *         if no external SVD algorithm is available
      */
     @Deprecated
     static Algorithm getFastestAvailableAlgorithm() {
@@ -196,8 +202,7 @@ public class SVD {
         else if (isColtAvailable())
             return Algorithm.COLT;
         else
-            throw new UnsupportedOperationException(
-                "Cannot find a valid SVD implementation");
+            return Algorithm.RANDOMIZED;
     }
 
     /**
@@ -262,6 +267,14 @@ public class SVD {
                            dimensions);
         case JAMA:
             return jamaSVD(m.toDenseArray(), dimensions);
+        case RANDOMIZED: {
+            SingularValueDecompositionRandomized svd = 
+                new SingularValueDecompositionRandomized();
+            svd.factorize(m, dimensions);
+            return new Matrix[] { svd.getLeftVectors(), 
+                                  svd.getSingularValues(),
+                                  svd.getRightVectors() };
+        }
             
         // Otherwise, covert to binary SVDLIBC
         case SVDLIBC:
@@ -429,6 +442,14 @@ public class SVD {
                     double[][] m = MatrixIO.readMatrixArray(matrix, format);
                     return coltSVD(m, Matrices.isDense(format), dimensions);
                 }
+                case RANDOMIZED: {
+                    SingularValueDecompositionRandomized svd = 
+                        new SingularValueDecompositionRandomized();
+                    svd.factorize(new MatrixFile(matrix, format), dimensions);
+                    return new Matrix[] { svd.getLeftVectors(), 
+                                          svd.getSingularValues(),
+                                          svd.getRightVectors() };
+                }
                 case ANY:               
                     return svd(matrix, getFastestAvailableAlgorithm(), format, dimensions);
             }
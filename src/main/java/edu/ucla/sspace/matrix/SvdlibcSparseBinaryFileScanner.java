@@ -0,0 +1,306 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.util.WorkQueue;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOError;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A reader that splits a matrix file in the {@link
+ * MatrixIO.Format#SVDLIBC_SPARSE_BINARY SVDLIBC_SPARSE_BINARY} format into
+ * chunks of whole columns and processes the chunks concurrently.  The file is
+ * read sequentially through a {@link FileChannel} in large blocks, so that the
+ * disk is only read once, while the parsing of each chunk is spread across the
+ * threads of the {@link WorkQueue}.  At most one chunk per thread is held in
+ * memory at once.
+ *
+ * <p> Because the layout of each column in the file is self-describing, a
+ * chunk's byte offset in the file is known, which lets a processor write a
+ * same-sized output chunk to the same offset of another file without
+ * coordinating with the other chunks.
+ */
+class SvdlibcSparseBinaryFileScanner {
+
+    /**
+     * The number of bytes in the header of the file
+     */
+    static final int HEADER_SIZE = 12;
+
+    /**
+     * The default number of bytes read for each chunk.  A chunk will be larger
+     * if a single column does not fit.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 1 << 22;
+
+    /**
+     * A processor of the chunks of a file.
+     */
+    interface ChunkProcessor {
+
+        /**
+         * Processes a chunk of whole columns, each of which is stored as the
+         * number of non-zero values followed by the row and value of each.
+         * Chunks are processed concurrently, but no two chunks with the same
+         * slot are processed at the same time.
+         *
+         * @param slot a number in {@code [0, slots())} that is unique among
+         *        the chunks being processed concurrently
+         * @param chunk a buffer whose remaining bytes contain the columns
+         * @param firstColumn the index of the first column in the chunk
+         * @param offset the offset of the chunk in the file
+         */
+        void process(int slot, ByteBuffer chunk, int firstColumn, long offset)
+            throws IOException;
+    }
+
+    /**
+     * The file being scanned
+     */
+    private final File matrixFile;
+
+    /**
+     * The number of rows in the matrix
+     */
+    private final int rows;
+
+    /**
+     * The number of columns in the matrix
+     */
+    private final int columns;
+
+    /**
+     * The number of non-zero values in the matrix
+     */
+    private final int nonZeroValues;
+
+    /**
+     * The number of bytes read for each chunk
+     */
+    private final int chunkSize;
+
+    /**
+     * The number of chunks that may be processed at once
+     */
+    private final int slots;
+
+    /**
+     * Reads the header of the file.
+     */
+    public SvdlibcSparseBinaryFileScanner(File matrixFile) throws IOException {
+        this(matrixFile, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Reads the header of the file, which will be read in chunks of at least
+     * the specified size.
+     */
+    SvdlibcSparseBinaryFileScanner(File matrixFile, int chunkSize) 
+            throws IOException {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException(
+                "Chunk size must be positive: " + chunkSize);
+        this.matrixFile = matrixFile;
+        this.chunkSize = chunkSize;
+        slots = Math.max(1, WorkQueue.getWorkQueue().availableThreads());
+        FileInputStream fis = new FileInputStream(matrixFile);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (fill(fis.getChannel(), header))
+                throw new MatrixIOException(
+                    "Matrix file is missing its header: " + matrixFile);
+            header.flip();
+            rows = header.getInt();
+            columns = header.getInt();
+            nonZeroValues = header.getInt();
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Returns the number of rows in the matrix.
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns in the matrix.
+     */
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of non-zero values in the matrix, according to its
+     * header.
+     */
+    public int nonZeroValues() {
+        return nonZeroValues;
+    }
+
+    /**
+     * Returns the number of chunks that may be processed at once, which bounds
+     * the {@code slot} passed to the {@link ChunkProcessor}.
+     */
+    public int slots() {
+        return slots;
+    }
+
+    /**
+     * Reads from the channel until the buffer is full, returning {@code true}
+     * if the end of the channel was reached first.
+     */
+    private static boolean fill(FileChannel fc, ByteBuffer buffer) 
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (fc.read(buffer) < 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Passes every column of the matrix to the processor, in chunks, and
+     * returns once all the chunks have been processed.
+     *
+     * @throws IOException if the file cannot be read or is truncated, or if
+     *         the processor throws an exception
+     */
+    public void scan(final ChunkProcessor processor) throws IOException {
+        WorkQueue workQueue = WorkQueue.getWorkQueue();
+        final Throwable[] error = new Throwable[slots];
+        List<Runnable> batch = new ArrayList<Runnable>(slots);
+        FileInputStream fis = new FileInputStream(matrixFile);
+        try {
+            FileChannel fc = fis.getChannel();
+            fc.position(HEADER_SIZE);
+            ByteBuffer leftover = ByteBuffer.allocate(0);
+            int size = chunkSize;
+            int column = 0;
+            long offset = HEADER_SIZE;
+            while (column < columns) {
+                ByteBuffer chunk = ByteBuffer.allocate(
+                    Math.max(size, leftover.remaining()));
+                chunk.put(leftover);
+                boolean atEnd = fill(fc, chunk);
+                chunk.flip();
+
+                // Find the last whole column in the chunk
+                int end = 0;
+                int numColumns = 0;
+                long needed = 4;
+                while (column + numColumns < columns 
+                       && end + 4 <= chunk.limit()) {
+                    int nonZero = chunk.getInt(end);
+                    if (nonZero < 0)
+                        throw new MatrixIOException(
+                            "Invalid number of values in column " + 
+                            (column + numColumns) + ": " + nonZero);
+                    needed = 4 + 8L * nonZero;
+                    if (end + needed > chunk.limit())
+                        break;
+                    end += (int)needed;
+                    numColumns++;
+                }
+
+                if (numColumns == 0) {
+                    if (atEnd)
+                        throw new MatrixIOException(
+                            "Missing data when reading.  Truncated file?",
+                            new EOFException());
+                    // A single column does not fit, so read a larger chunk
+                    if (needed > Integer.MAX_VALUE)
+                        throw new MatrixIOException(
+                            "Column is too large to read: " + column);
+                    size = (int)Math.max(needed, Math.min(
+                        (long)size * 2, Integer.MAX_VALUE));
+                    leftover = chunk;
+                    continue;
+                }
+
+                leftover = chunk.duplicate();
+                leftover.position(end);
+                chunk.limit(end);
+                final ByteBuffer columnData = chunk.slice();
+                final int slot = batch.size();
+                final int firstColumn = column;
+                final long chunkOffset = offset;
+                batch.add(new Runnable() {
+                        public void run() {
+                            try {
+                                processor.process(slot, columnData, 
+                                                  firstColumn, chunkOffset);
+                            } catch (Throwable t) {
+                                error[slot] = t;
+                            }
+                        }
+                    });
+                column += numColumns;
+                offset += end;
+                if (batch.size() == slots || column == columns) {
+                    run(workQueue, batch, error);
+                    batch.clear();
+                }
+            }
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Runs the tasks and rethrows the first error that any of them recorded.
+     */
+    private static void run(WorkQueue workQueue, List<Runnable> batch,
+                            Throwable[] error) throws IOException {
+        if (batch.size() == 1)
+            batch.get(0).run();
+        else
+            workQueue.run(batch);
+        for (int i = 0; i < error.length; ++i) {
+            Throwable t = error[i];
+            if (t == null)
+                continue;
+            error[i] = null;
+            if (t instanceof IOException)
+                throw (IOException)t;
+            if (t instanceof RuntimeException)
+                throw (RuntimeException)t;
+            if (t instanceof Error)
+                throw (Error)t;
+            throw new IOError(t);
+        }
+    }
+}
@@ -21,20 +21,23 @@
 
 package edu.ucla.sspace.matrix;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOError;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
 
 
 /**
  * A {@link FileTransformer} for matrix files in the {@link
- * Format#SVDLIBC_SPARSE_BINARY} format.
+ * Format#SVDLIBC_SPARSE_BINARY} format.  Transforming a value does not change
+ * the layout of its column, so each chunk of columns read by a {@link
+ * SvdlibcSparseBinaryFileScanner} is transformed concurrently and written to
+ * the same offset in the output file.  The {@link GlobalTransform} must
+ * therefore be safe to call from multiple threads.
  *
  * @author Keith Stevens
  */
@@ -42,39 +45,65 @@ class SvdlibcSparseBinaryFileTransformer implements FileTransformer {
 
     public File transform(File inputFile,
                           File outFile,
-                          GlobalTransform transform) {
+                          final GlobalTransform transform) {
         try {
-            DataInputStream dis = new DataInputStream(
-                new BufferedInputStream(new FileInputStream(inputFile)));
-            // Read in the header for the matrix.
-            int rows = dis.readInt();
-            int cols = dis.readInt();
-            int nzEntriesInMatrix = dis.readInt();
+            SvdlibcSparseBinaryFileScanner scanner = 
+                new SvdlibcSparseBinaryFileScanner(inputFile);
+            RandomAccessFile raf = new RandomAccessFile(outFile, "rw");
+            try {
+                raf.setLength(0);
+                final FileChannel out = raf.getChannel();
 
-            DataOutputStream dos = new DataOutputStream(
-                new BufferedOutputStream(new FileOutputStream(outFile)));
-            // Write out the header for the new matrix.
-            dos.writeInt(rows);
-            dos.writeInt(cols);
-            dos.writeInt(nzEntriesInMatrix);
+                // Write out the header for the new matrix.
+                ByteBuffer header = ByteBuffer.allocate(
+                    SvdlibcSparseBinaryFileScanner.HEADER_SIZE);
+                header.putInt(scanner.rows());
+                header.putInt(scanner.columns());
+                header.putInt(scanner.nonZeroValues());
+                header.flip();
+                write(out, header, 0);
 
-            // Iterate over each column in the matrix.
-            for (int col = 0; col < cols; ++col) {
-                int nzInCurCol = dis.readInt();         
-                dos.writeInt(nzInCurCol);
-                // Transform all non zero values for the new matrix.
-                for (int index = 0; index < nzInCurCol; ++index) {
-                    int row = dis.readInt();
-                    double value = dis.readFloat();
-                    dos.writeInt(row);
-                    dos.writeFloat(
-                            (float) transform.transform(row, col, value));
-                }
+                scanner.scan(
+                    new SvdlibcSparseBinaryFileScanner.ChunkProcessor() {
+                        public void process(int slot, ByteBuffer chunk,
+                                            int firstColumn, long offset) 
+                                throws IOException {
+                            ByteBuffer result = 
+                                ByteBuffer.allocate(chunk.remaining());
+                            // Transform all non zero values for the new
+                            // matrix, column by column.
+                            for (int col = firstColumn; chunk.hasRemaining();
+                                     ++col) {
+                                int nzInCurCol = chunk.getInt();
+                                result.putInt(nzInCurCol);
+                                for (int i = 0; i < nzInCurCol; ++i) {
+                                    int row = chunk.getInt();
+                                    double value = chunk.getFloat();
+                                    result.putInt(row);
+                                    result.putFloat((float)transform.transform(
+                                        row, col, value));
+                                }
+                            }
+                            result.flip();
+                            write(out, result, offset);
+                        }
+                    });
+            } finally {
+                raf.close();
             }
-            dos.close();
             return outFile;
         } catch (IOException ioe) {
             throw new IOError(ioe);
         }
     }
+
+    /**
+     * Writes all of the buffer's remaining bytes to the channel, starting at
+     * the specified position.
+     */
+    private static void write(FileChannel out, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining())
+            position += out.write(buffer, position);
+    }
 }
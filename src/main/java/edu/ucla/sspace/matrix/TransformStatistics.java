@@ -23,16 +23,18 @@ package edu.ucla.sspace.matrix;
 
 import edu.ucla.sspace.matrix.MatrixIO.Format;
 
-import edu.ucla.sspace.util.IntegerMap;
-
 import edu.ucla.sspace.vector.SparseDoubleVector;
 
 import java.io.IOError;
 import java.io.IOException;
 import java.io.File;
 
+import java.nio.ByteBuffer;
+
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Map;
+
+import static edu.ucla.sspace.common.Statistics.log2;
 
 
 /**
@@ -146,75 +148,225 @@ public class TransformStatistics {
             Format format,
             boolean countRowOccurrances,
             boolean countColumnOccurrances) {
-        // Initialize the statistics.
-        int numColumns = 0;
-        int numRows = 0;
-        double matrixSum = 0;
-        Map<Integer, Double> rowCountMap = new IntegerMap<Double>();
-        Map<Integer, Double> colCountMap = new IntegerMap<Double>();
+        return scan(inputMatrixFile, format, countRowOccurrances,
+                    countColumnOccurrances, false).toStatistics();
+    }
 
-        // Get an iterator for the matrix file.
-        Iterator<MatrixEntry> iter;
+    /**
+     * Extracts the row, column, and matrix summations based on entries in the
+     * given {@link Matrix} file, along with the entropy of each row, in a
+     * single pass over the file.  The entropy of a row is {@code sum_j p_j
+     * log2(p_j)}, where {@code p_j} is the value in column {@code j} divided by
+     * the row's sum, and is stored in {@link MatrixStatistics#rowEntropies}.
+     * Rather than reading the file a second time once the row sums are known,
+     * the entropy is computed from the sum of {@code v log2(v)} over each
+     * row's values {@code v}, because {@code sum_j p_j log2(p_j) = (sum_j v_j
+     * log2(v_j)) / S - log2(S)} for a row sum of {@code S}.
+     *
+     * @param inputMatrixFfile a {@link Matrix} file  to sum over
+     * @param format the matrix {@link Format} of {@code inputMatrixFile}
+     * @return a {@link MatrixStatistics} instance containing the summations
+     *         and row entropies
+     */
+    public static MatrixStatistics extractEntropyStatistics(
+            File inputMatrixFile, Format format) {
+        Sums sums = scan(inputMatrixFile, format, false, false, true);
+        MatrixStatistics stats = sums.toStatistics();
+        double[] rowEntropies = new double[stats.rowSums.length];
+        for (int row = 0; row < rowEntropies.length; ++row) {
+            double rowSum = stats.rowSums[row];
+            if (rowSum != 0)
+                rowEntropies[row] = 
+                    sums.rowEntropies[row] / rowSum - log2(rowSum);
+        }
+        stats.rowEntropies = rowEntropies;
+        return stats;
+    }
+
+    /**
+     * Computes the sums of the values in the matrix file.  Files in the
+     * {@link Format#SVDLIBC_SPARSE_BINARY SVDLIBC_SPARSE_BINARY} format are
+     * split into chunks of columns, which are summed concurrently; all other
+     * formats are read sequentially.
+     */
+    private static Sums scan(File inputMatrixFile, 
+                             Format format,
+                             boolean countRowOccurrances,
+                             boolean countColumnOccurrances,
+                             boolean entropy) {
         try {
-            iter = MatrixIO.getMatrixFileIterator(inputMatrixFile, format);
+            if (format == Format.SVDLIBC_SPARSE_BINARY)
+                return scanSparseBinary(
+                    inputMatrixFile, countRowOccurrances, 
+                    countColumnOccurrances, entropy);
+
+            Sums sums = new Sums(new double[0], countRowOccurrances, 
+                                 countColumnOccurrances, entropy);
+            Iterator<MatrixEntry> iter = 
+                MatrixIO.getMatrixFileIterator(inputMatrixFile, format);
+            while (iter.hasNext()) {
+                MatrixEntry entry = iter.next();
+                sums.add(entry.row(), entry.column(), entry.value());
+            }
+            return sums;
         } catch (IOException ioe) {
             throw new IOError(ioe);
         }
+    }
 
-        while (iter.hasNext()) {
-            MatrixEntry entry = iter.next();
-
-            // Get the total number of columns and rows.
-            if (entry.column() >= numColumns)
-                numColumns = entry.column() + 1;
-            if (entry.row() >= numRows)
-                numRows = entry.row() + 1;
-
-            // Skip non zero entries.
-            if (entry.value() == 0d)
-                continue;
-
-            // Gather the row sums.
-            Double occurance = rowCountMap.get(entry.row());
-            double rowDelta = (countRowOccurrances) ? 1 : entry.value();
-            rowCountMap.put(entry.row(), (occurance == null)
-                    ? rowDelta
-                    : occurance + rowDelta);
-
-            // Gather the column sums.
-            occurance = colCountMap.get(entry.column());
-            double columnDelta = (countColumnOccurrances) ? 1 : entry.value();
-            colCountMap.put(entry.column(), (occurance == null)
-                    ? columnDelta
-                    : occurance + columnDelta);
-
-            matrixSum += entry.value();
-        }
-
-        // Convert the maps to arrays.
-        double[] rowSums = extractValues(rowCountMap, numRows);
-        double[] columnSums = extractValues(colCountMap, numColumns);
-        return new MatrixStatistics(rowSums, columnSums, matrixSum);
+    /**
+     * Computes the sums of the values in a file in the {@link
+     * Format#SVDLIBC_SPARSE_BINARY SVDLIBC_SPARSE_BINARY} format by summing
+     * chunks of its columns concurrently.  Each concurrently processed chunk
+     * has its own row sums, which are combined at the end, while the column
+     * sums are shared, since no two chunks contain the same column.
+     */
+    private static Sums scanSparseBinary(File inputMatrixFile,
+                                         boolean countRowOccurrances,
+                                         boolean countColumnOccurrances,
+                                         boolean entropy) 
+            throws IOException {
+        SvdlibcSparseBinaryFileScanner scanner = 
+            new SvdlibcSparseBinaryFileScanner(inputMatrixFile);
+        double[] columnSums = new double[scanner.columns()];
+        final Sums[] slotSums = new Sums[scanner.slots()];
+        for (int i = 0; i < slotSums.length; ++i)
+            slotSums[i] = new Sums(columnSums, countRowOccurrances,
+                                   countColumnOccurrances, entropy);
+        scanner.scan(new SvdlibcSparseBinaryFileScanner.ChunkProcessor() {
+                public void process(int slot, ByteBuffer chunk, 
+                                    int firstColumn, long offset) {
+                    Sums sums = slotSums[slot];
+                    for (int col = firstColumn; chunk.hasRemaining(); ++col) {
+                        int nonZero = chunk.getInt();
+                        for (int i = 0; i < nonZero; ++i) {
+                            int row = chunk.getInt();
+                            sums.add(row, col, chunk.getFloat());
+                        }
+                    }
+                }
+            });
+        for (int i = 1; i < slotSums.length; ++i)
+            slotSums[0].addRows(slotSums[i]);
+        return slotSums[0];
     }
 
     /**
-     * Extracts the values from the given map into an array form.  This is
-     * neccesary since {@code toArray} on a {@link IntegerMap} does not work
-     * with primitives and {@code Map} does not provide this functionality.
-     * Each key in the map corresponds to an index in the array being
-     * created and the value is the value in stored at the specified index.
+     * The sums accumulated while reading the entries of a matrix file.  The
+     * arrays grow as larger rows and columns are seen.
      */
-    private static <T extends Number> double[] extractValues(
-            Map<Integer, T> map, int size)  {
-        double[] values = new double[size];
-        for (Map.Entry<Integer, T> entry : map.entrySet()) {
-            if (entry.getKey() > values.length)
-                throw new IllegalArgumentException(
-                        "Array size is too small for values in the " +
-                        "given map");
-            values[entry.getKey()] = entry.getValue().doubleValue();
+    private static class Sums {
+
+        /**
+         * Whether the row sums count the non-zero values instead
+         */
+        private final boolean countRows;
+
+        /**
+         * Whether the column sums count the non-zero values instead
+         */
+        private final boolean countColumns;
+
+        /**
+         * The sum of each row
+         */
+        double[] rowSums;
+
+        /**
+         * The sum of each column, which may be shared with other instances
+         */
+        double[] columnSums;
+
+        /**
+         * The sum of {@code v log2(v)} over the values of each row, or {@code
+         * null} if not needed
+         */
+        double[] rowEntropies;
+
+        /**
+         * The largest row and column of any entry
+         */
+        int maxRow, maxColumn;
+
+        /**
+         * The sum of all values
+         */
+        double matrixSum;
+
+        /**
+         * Creates empty sums that use the provided array for column sums.
+         */
+        public Sums(double[] columnSums, boolean countRows, 
+                    boolean countColumns, boolean entropy) {
+            this.columnSums = columnSums;
+            this.countRows = countRows;
+            this.countColumns = countColumns;
+            rowSums = new double[16];
+            rowEntropies = (entropy) ? new double[16] : null;
+            maxRow = -1;
+            maxColumn = -1;
+        }
+
+        /**
+         * Adds an entry of the matrix.
+         */
+        public void add(int row, int column, double value) {
+            // The dimensions of the matrix include entries with zero values
+            if (row > maxRow) {
+                maxRow = row;
+                if (row >= rowSums.length) {
+                    int length = Math.max(row + 1, rowSums.length * 2);
+                    rowSums = Arrays.copyOf(rowSums, length);
+                    if (rowEntropies != null)
+                        rowEntropies = Arrays.copyOf(rowEntropies, length);
+                }
+            }
+            if (column > maxColumn) {
+                maxColumn = column;
+                if (column >= columnSums.length)
+                    columnSums = Arrays.copyOf(
+                        columnSums, Math.max(column + 1, columnSums.length*2));
+            }
+            if (value == 0d)
+                return;
+
+            rowSums[row] += (countRows) ? 1 : value;
+            columnSums[column] += (countColumns) ? 1 : value;
+            matrixSum += value;
+            if (rowEntropies != null)
+                rowEntropies[row] += value * log2(value);
+        }
+
+        /**
+         * Adds the row sums and matrix sum of {@code other} to these sums,
+         * which share the same column sums.
+         */
+        public void addRows(Sums other) {
+            if (other.maxRow > maxRow) {
+                maxRow = other.maxRow;
+                if (maxRow >= rowSums.length) {
+                    rowSums = Arrays.copyOf(rowSums, maxRow + 1);
+                    if (rowEntropies != null)
+                        rowEntropies = Arrays.copyOf(rowEntropies, maxRow + 1);
+                }
+            }
+            maxColumn = Math.max(maxColumn, other.maxColumn);
+            for (int row = 0; row <= other.maxRow; ++row) {
+                rowSums[row] += other.rowSums[row];
+                if (rowEntropies != null)
+                    rowEntropies[row] += other.rowEntropies[row];
+            }
+            matrixSum += other.matrixSum;
+        }
+
+        /**
+         * Returns the sums, trimmed to the dimensions of the matrix.
+         */
+        public MatrixStatistics toStatistics() {
+            return new MatrixStatistics(
+                Arrays.copyOf(rowSums, maxRow + 1),
+                Arrays.copyOf(columnSums, maxColumn + 1), matrixSum);
         }
-        return values;
     }
     
     /**
@@ -225,6 +377,13 @@ public class TransformStatistics {
         public double[] columnSums;
         public double matrixSum;
 
+        /**
+         * The entropy of each row, which is only computed by {@link
+         * TransformStatistics#extractEntropyStatistics(File, Format)
+         * extractEntropyStatistics} and is otherwise {@code null}.
+         */
+        public double[] rowEntropies;
+
         /**
          * Creates a new {@link MatrixStatistics} instance using the given
          * double values.
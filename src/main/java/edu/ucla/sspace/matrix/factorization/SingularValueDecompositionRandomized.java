@@ -0,0 +1,758 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix.factorization;
+
+import edu.ucla.sspace.matrix.ArrayMatrix;
+import edu.ucla.sspace.matrix.Matrix;
+import edu.ucla.sspace.matrix.MatrixBuilder;
+import edu.ucla.sspace.matrix.MatrixEntry;
+import edu.ucla.sspace.matrix.MatrixFile;
+import edu.ucla.sspace.matrix.MatrixIO;
+import edu.ucla.sspace.matrix.SparseMatrix;
+import edu.ucla.sspace.matrix.SvdlibcSparseBinaryMatrixBuilder;
+
+import edu.ucla.sspace.util.WorkQueue;
+
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.SparseVector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOError;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import java.util.logging.Logger;
+
+import static edu.ucla.sspace.util.LoggerUtil.verbose;
+
+
+/**
+ * A pure Java implementation of the truncated Singular Value Decomposition
+ * that uses the randomized range finder of
+ *
+ * <ul> <li style="font-family:Garamond, Georgia, serif"> N. Halko, P. G.
+ *   Martinsson, and J. A. Tropp.  Finding structure with randomness:
+ *   Probabilistic algorithms for constructing approximate matrix
+ *   decompositions.  <i>SIAM Review</i>, 53(2):217-288, 2011.</li> </ul>
+ *
+ * The matrix <i>A</i> is multiplied by a random Gaussian matrix with {@code
+ * dimensions + oversampling} columns, and the resulting sample of <i>A</i>'s
+ * range is refined with a number of power iterations.  The exact SVD of the
+ * small projection of <i>A</i> onto that range then yields the leading
+ * singular values and vectors.  Each power iteration makes the result more
+ * accurate for matrices whose singular values decay slowly, as is common for
+ * term-document matrices, at the cost of two more passes over the matrix.
+ *
+ * <p> Unlike the other implementations, this class requires no external
+ * program or library and never writes the matrix to a temporary file.  The
+ * input matrix is only ever accessed one row or one entry at a time, so a
+ * {@link SparseMatrix} is never densified, an {@link
+ * edu.ucla.sspace.matrix.OnDiskMatrix OnDiskMatrix} may be used through {@link
+ * #factorize(Matrix,int)}, and a {@link MatrixFile} is streamed from disk
+ * rather than loaded.  The memory required beyond the input is that of the
+ * dense factor matrices, roughly {@code 8 * (rows + columns) *
+ * (dimensions + oversampling)} bytes.  Each pass over the matrix is divided
+ * among the threads of the {@link WorkQueue}.
+ *
+ * <p> The singular values are computed from the eigenvalues of the Gram matrix
+ * of the projection, so singular values smaller than {@code 1e-7} times the
+ * largest singular value are not computed accurately.  The random test
+ * matrix is determined by the seed, so repeated runs with the same seed differ
+ * only by rounding.
+ *
+ * @author David Jurgens
+ */
+public class SingularValueDecompositionRandomized extends AbstractSvd 
+        implements SingularValueDecomposition, java.io.Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = 
+        Logger.getLogger(SingularValueDecompositionRandomized.class.getName());
+
+    /**
+     * The default number of extra random samples of the matrix's range
+     */
+    public static final int DEFAULT_OVERSAMPLING = 10;
+
+    /**
+     * The default number of power iterations
+     */
+    public static final int DEFAULT_POWER_ITERATIONS = 2;
+
+    /**
+     * The number of matrix entries read from a file before they are divided
+     * among the threads
+     */
+    private static final int ENTRY_BLOCK_SIZE = 1 << 16;
+
+    /**
+     * The number of locks guarding the rows of an output matrix when several
+     * threads may update the same row
+     */
+    private static final int LOCK_STRIPES = 1024;
+
+    /**
+     * Eigenvalues of a Gram matrix smaller than this fraction of the largest
+     * eigenvalue are treated as zero.
+     */
+    private static final double RANK_TOLERANCE = 1e-14;
+
+    /**
+     * The number of extra samples of the matrix's range
+     */
+    private final int oversampling;
+
+    /**
+     * The number of power iterations
+     */
+    private final int powerIterations;
+
+    /**
+     * The seed for the random test matrix
+     */
+    private final long seed;
+
+    /**
+     * Creates a new instance with the default oversampling and number of
+     * power iterations.
+     */
+    public SingularValueDecompositionRandomized() {
+        this(DEFAULT_OVERSAMPLING, DEFAULT_POWER_ITERATIONS);
+    }
+
+    /**
+     * Creates a new instance with the provided oversampling and number of
+     * power iterations and a random seed.
+     */
+    public SingularValueDecompositionRandomized(int oversampling,
+                                                int powerIterations) {
+        this(oversampling, powerIterations, new Random().nextLong());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param oversampling the number of random samples of the matrix's range
+     *        taken beyond the number of requested dimensions
+     * @param powerIterations the number of power iterations used to refine
+     *        the sampled range
+     * @param seed the seed for the random test matrix
+     */
+    public SingularValueDecompositionRandomized(int oversampling,
+                                                int powerIterations,
+                                                long seed) {
+        if (oversampling < 0)
+            throw new IllegalArgumentException(
+                "Oversampling must be non-negative: " + oversampling);
+        if (powerIterations < 0)
+            throw new IllegalArgumentException(
+                "The number of power iterations must be non-negative: " +
+                powerIterations);
+        this.oversampling = oversampling;
+        this.powerIterations = powerIterations;
+        this.seed = seed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void factorize(SparseMatrix matrix, int dimensions) {
+        factorize((Matrix)matrix, dimensions);
+    }
+
+    /**
+     * Factorizes any {@link Matrix}, accessing it only through {@link
+     * Matrix#getRowVector(int)}.  Non-zero values are enumerated directly for
+     * rows that are {@link SparseVector} instances.
+     */
+    public void factorize(Matrix matrix, int dimensions) {
+        factorize(new RowPasses(matrix), dimensions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void factorize(MatrixFile mFile, int dimensions) {
+        factorize(new EntryPasses(mFile), dimensions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public MatrixBuilder getBuilder() {
+        return new SvdlibcSparseBinaryMatrixBuilder();
+    }
+
+    /**
+     * Computes the truncated SVD of the matrix accessed by {@code a}.
+     */
+    private void factorize(MatrixPasses a, int dimensions) {
+        int rows = a.rows();
+        int cols = a.columns();
+        if (dimensions < 1 || dimensions > Math.min(rows, cols))
+            throw new IllegalArgumentException(
+                "Cannot compute " + dimensions + " dimensions of a " + rows +
+                "x" + cols + " matrix");
+        int samples = Math.min(dimensions + oversampling, Math.min(rows, cols));
+        long start = System.currentTimeMillis();
+
+        // Sample the range of A by projecting it onto random vectors
+        Random rand = new Random(seed);
+        double[][] omega = new double[cols][samples];
+        for (double[] row : omega)
+            for (int i = 0; i < samples; ++i)
+                row[i] = rand.nextGaussian();
+        double[][] q = new double[rows][samples];
+        a.multiply(omega, q, false);
+        omega = null;
+        orthonormalize(q);
+
+        // Refine the sample with power iterations, orthonormalizing after
+        // every product to avoid losing the smaller singular directions
+        double[][] z = new double[cols][samples];
+        for (int i = 0; i < powerIterations; ++i) {
+            verbose(LOG, "Starting power iteration %d", i + 1);
+            a.multiply(q, z, true);
+            orthonormalize(z);
+            a.multiply(z, q, false);
+            orthonormalize(q);
+        }
+
+        // Compute B^T = A^T Q and take the SVD of B from the eigenvectors of
+        // B B^T.  If B B^T = W L W^T, then A ~ Q B = (Q W) S (B^T W S^-1)^T
+        a.multiply(q, z, true);
+        double[][] eigenvectors = new double[samples][samples];
+        double[] eigenvalues = eigen(gram(z), eigenvectors);
+        int[] order = sortDescending(eigenvalues);
+
+        singularValues = new double[dimensions];
+        final double[][] uWeights = new double[samples][dimensions];
+        final double[][] vWeights = new double[samples][dimensions];
+        for (int j = 0; j < dimensions; ++j) {
+            int e = order[j];
+            double s = Math.sqrt(Math.max(eigenvalues[e], 0));
+            singularValues[j] = s;
+            for (int t = 0; t < samples; ++t) {
+                uWeights[t][j] = eigenvectors[t][e];
+                vWeights[t][j] = (s > 0) ? eigenvectors[t][e] / s : 0;
+            }
+        }
+
+        U = new ArrayMatrix(rows, dimensions);
+        V = new ArrayMatrix(dimensions, cols);
+        final double[][] qf = q;
+        final double[][] zf = z;
+        final Matrix u = U;
+        final Matrix v = V;
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (final int[] range : ranges(rows)) {
+            tasks.add(new Runnable() {
+                public void run() {
+                    double[] row = new double[uWeights[0].length];
+                    for (int r = range[0]; r < range[1]; ++r) {
+                        multiply(qf[r], uWeights, row);
+                        for (int j = 0; j < row.length; ++j)
+                            u.set(r, j, row[j]);
+                    }
+                }
+            });
+        }
+        for (final int[] range : ranges(cols)) {
+            tasks.add(new Runnable() {
+                public void run() {
+                    double[] row = new double[vWeights[0].length];
+                    for (int c = range[0]; c < range[1]; ++c) {
+                        multiply(zf[c], vWeights, row);
+                        for (int j = 0; j < row.length; ++j)
+                            v.set(j, c, row[j]);
+                    }
+                }
+            });
+        }
+        WorkQueue.getWorkQueue().run(tasks);
+
+        scaledDataClasses = false;
+        scaledClassFeatures = false;
+        verbose(LOG, "Computed %d singular values of a %dx%d matrix in %.3f " +
+                "seconds", dimensions, rows, cols,
+                (System.currentTimeMillis() - start) / 1000d);
+    }
+
+    /**
+     * Sets {@code result} to the product of the row vector and the matrix.
+     */
+    private static void multiply(double[] row, double[][] m, double[] result) {
+        Arrays.fill(result, 0);
+        for (int t = 0; t < row.length; ++t) {
+            double x = row[t];
+            if (x == 0)
+                continue;
+            double[] mRow = m[t];
+            for (int j = 0; j < result.length; ++j)
+                result[j] += x * mRow[j];
+        }
+    }
+
+    /**
+     * Adds {@code scale * x} to {@code y}.
+     */
+    private static void addScaled(double[] y, double scale, double[] x) {
+        for (int i = 0; i < y.length; ++i)
+            y[i] += scale * x[i];
+    }
+
+    /**
+     * Returns the row ranges into which work on a matrix with the given
+     * number of rows is divided.
+     */
+    private static List<int[]> ranges(int rows) {
+        int numRanges = Math.max(1, Math.min(
+            rows, 4 * WorkQueue.getWorkQueue().availableThreads()));
+        List<int[]> ranges = new ArrayList<int[]>(numRanges);
+        for (int i = 0; i < numRanges; ++i) {
+            int start = (int)((long)rows * i / numRanges);
+            int end = (int)((long)rows * (i + 1) / numRanges);
+            if (start < end)
+                ranges.add(new int[] { start, end });
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns {@code m}<sup>T</sup>{@code m}, computed in parallel over blocks
+     * of rows.
+     */
+    private static double[][] gram(final double[][] m) {
+        final int n = m[0].length;
+        final double[][] gram = new double[n][n];
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (final int[] range : ranges(m.length)) {
+            tasks.add(new Runnable() {
+                public void run() {
+                    double[][] local = new double[n][n];
+                    for (int r = range[0]; r < range[1]; ++r) {
+                        double[] row = m[r];
+                        for (int i = 0; i < n; ++i) {
+                            double x = row[i];
+                            if (x == 0)
+                                continue;
+                            double[] localRow = local[i];
+                            for (int j = i; j < n; ++j)
+                                localRow[j] += x * row[j];
+                        }
+                    }
+                    synchronized (gram) {
+                        for (int i = 0; i < n; ++i)
+                            addScaled(gram[i], 1, local[i]);
+                    }
+                }
+            });
+        }
+        WorkQueue.getWorkQueue().run(tasks);
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < i; ++j)
+                gram[i][j] = gram[j][i];
+        return gram;
+    }
+
+    /**
+     * Replaces the columns of the tall matrix with an orthonormal basis for
+     * their span.  The basis is computed from the eigenvectors of the Gram
+     * matrix, which is repeated once to restore orthogonality lost to
+     * rounding.  Columns spanning directions whose squared length is
+     * negligible are set to zero.
+     */
+    private static void orthonormalize(final double[][] m) {
+        final int n = m[0].length;
+        for (int pass = 0; pass < 2; ++pass) {
+            double[][] eigenvectors = new double[n][n];
+            double[] eigenvalues = eigen(gram(m), eigenvectors);
+            double max = 0;
+            for (double e : eigenvalues)
+                max = Math.max(max, e);
+            if (max == 0)
+                return;
+            final double[][] transform = new double[n][n];
+            for (int j = 0; j < n; ++j) {
+                if (eigenvalues[j] <= max * RANK_TOLERANCE)
+                    continue;
+                double scale = 1 / Math.sqrt(eigenvalues[j]);
+                for (int i = 0; i < n; ++i)
+                    transform[i][j] = eigenvectors[i][j] * scale;
+            }
+            List<Runnable> tasks = new ArrayList<Runnable>();
+            for (final int[] range : ranges(m.length)) {
+                tasks.add(new Runnable() {
+                    public void run() {
+                        double[] row = new double[n];
+                        for (int r = range[0]; r < range[1]; ++r) {
+                            multiply(m[r], transform, row);
+                            System.arraycopy(row, 0, m[r], 0, n);
+                        }
+                    }
+                });
+            }
+            WorkQueue.getWorkQueue().run(tasks);
+        }
+    }
+
+    /**
+     * Computes the eigen decomposition of the symmetric matrix using cyclic
+     * Jacobi rotations, returning the eigenvalues and storing the
+     * corresponding eigenvectors in the columns of {@code eigenvectors}.  The
+     * input matrix is overwritten.
+     */
+    static double[] eigen(double[][] a, double[][] eigenvectors) {
+        int n = a.length;
+        for (int i = 0; i < n; ++i) {
+            Arrays.fill(eigenvectors[i], 0);
+            eigenvectors[i][i] = 1;
+        }
+        double norm = 0;
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j)
+                norm += a[i][j] * a[i][j];
+
+        for (int sweep = 0; sweep < 100; ++sweep) {
+            double off = 0;
+            for (int p = 0; p < n; ++p)
+                for (int q = p + 1; q < n; ++q)
+                    off += a[p][q] * a[p][q];
+            if (off <= 1e-32 * norm)
+                break;
+
+            for (int p = 0; p < n; ++p) {
+                for (int q = p + 1; q < n; ++q) {
+                    double apq = a[p][q];
+                    if (apq == 0)
+                        continue;
+                    double theta = (a[q][q] - a[p][p]) / (2 * apq);
+                    double t = 1 / (Math.abs(theta) 
+                                    + Math.sqrt(theta * theta + 1));
+                    if (theta < 0)
+                        t = -t;
+                    double c = 1 / Math.sqrt(t * t + 1);
+                    double s = t * c;
+                    // A = J^T A J, where J rotates columns p and q
+                    for (int k = 0; k < n; ++k) {
+                        double akp = a[k][p];
+                        double akq = a[k][q];
+                        a[k][p] = c * akp - s * akq;
+                        a[k][q] = s * akp + c * akq;
+                    }
+                    double[] rowP = a[p];
+                    double[] rowQ = a[q];
+                    for (int k = 0; k < n; ++k) {
+                        double apk = rowP[k];
+                        double aqk = rowQ[k];
+                        rowP[k] = c * apk - s * aqk;
+                        rowQ[k] = s * apk + c * aqk;
+                    }
+                    for (int k = 0; k < n; ++k) {
+                        double[] vk = eigenvectors[k];
+                        double vkp = vk[p];
+                        double vkq = vk[q];
+                        vk[p] = c * vkp - s * vkq;
+                        vk[q] = s * vkp + c * vkq;
+                    }
+                }
+            }
+        }
+        double[] eigenvalues = new double[n];
+        for (int i = 0; i < n; ++i)
+            eigenvalues[i] = a[i][i];
+        return eigenvalues;
+    }
+
+    /**
+     * Returns the indices of the values, ordered from largest to smallest
+     * value.
+     */
+    private static int[] sortDescending(final double[] values) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; ++i)
+            order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer i, Integer j) {
+                    return Double.compare(values[j], values[i]);
+                }
+            });
+        int[] sorted = new int[order.length];
+        for (int i = 0; i < sorted.length; ++i)
+            sorted[i] = order[i];
+        return sorted;
+    }
+
+    /**
+     * A means of multiplying a matrix, or its transpose, with a dense matrix,
+     * which only requires one pass over the non-zero values of the matrix.
+     */
+    private interface MatrixPasses {
+
+        /**
+         * Returns the number of rows in the matrix.
+         */
+        int rows();
+
+        /**
+         * Returns the number of columns in the matrix.
+         */
+        int columns();
+
+        /**
+         * Sets {@code out} to <i>A</i>{@code x}, or <i>A</i><sup>T</sup>{@code
+         * x} if {@code transpose} is {@code true}.
+         */
+        void multiply(double[][] x, double[][] out, boolean transpose);
+    }
+
+    /**
+     * Clears the rows of the matrix.
+     */
+    private static void clear(double[][] m) {
+        for (double[] row : m)
+            Arrays.fill(row, 0);
+    }
+
+    /**
+     * Returns locks for updating the rows of an output matrix.
+     */
+    private static Object[] createLocks() {
+        Object[] locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < locks.length; ++i)
+            locks[i] = new Object();
+        return locks;
+    }
+
+    /**
+     * Multiplies a {@link Matrix} by reading its rows in parallel.
+     */
+    private static class RowPasses implements MatrixPasses {
+
+        private final Matrix m;
+
+        public RowPasses(Matrix m) {
+            this.m = m;
+        }
+
+        public int rows() {
+            return m.rows();
+        }
+
+        public int columns() {
+            return m.columns();
+        }
+
+        public void multiply(final double[][] x, final double[][] out,
+                             final boolean transpose) {
+            clear(out);
+            final Object[] locks = createLocks();
+            List<Runnable> tasks = new ArrayList<Runnable>();
+            for (final int[] range : ranges(m.rows())) {
+                tasks.add(new Runnable() {
+                    public void run() {
+                        for (int r = range[0]; r < range[1]; ++r) {
+                            DoubleVector row = m.getRowVector(r);
+                            if (row instanceof SparseVector) {
+                                for (int c : ((SparseVector)row)
+                                         .getNonZeroIndices())
+                                    add(r, c, row.get(c));
+                            }
+                            else {
+                                int length = row.length();
+                                for (int c = 0; c < length; ++c) {
+                                    double v = row.get(c);
+                                    if (v != 0)
+                                        add(r, c, v);
+                                }
+                            }
+                        }
+                    }
+
+                    private void add(int r, int c, double v) {
+                        if (transpose) {
+                            double[] target = out[c];
+                            synchronized (locks[c % LOCK_STRIPES]) {
+                                addScaled(target, v, x[r]);
+                            }
+                        }
+                        // Each task owns the rows in its range
+                        else
+                            addScaled(out[r], v, x[c]);
+                    }
+                });
+            }
+            WorkQueue.getWorkQueue().run(tasks);
+        }
+    }
+
+    /**
+     * Multiplies a {@link MatrixFile} by streaming its entries from disk and
+     * dividing blocks of entries among the threads.
+     */
+    private static class EntryPasses implements MatrixPasses {
+
+        private final MatrixFile mFile;
+
+        private final int rows;
+
+        private final int cols;
+
+        public EntryPasses(MatrixFile mFile) {
+            this.mFile = mFile;
+            int[] dimensions = readDimensions(mFile);
+            if (dimensions != null) {
+                rows = dimensions[0];
+                cols = dimensions[1];
+                return;
+            }
+
+            // Formats without a header only record their non-zero entries, so
+            // the dimensions are inferred from the largest indices.  Any
+            // trailing rows or columns of zeros are not part of the result.
+            int maxRow = -1;
+            int maxCol = -1;
+            Iterator<MatrixEntry> it = iterator();
+            while (it.hasNext()) {
+                MatrixEntry e = it.next();
+                maxRow = Math.max(maxRow, e.row());
+                maxCol = Math.max(maxCol, e.column());
+            }
+            rows = maxRow + 1;
+            cols = maxCol + 1;
+        }
+
+        /**
+         * Returns the number of rows and columns recorded in the header of the
+         * matrix file, or {@code null} if its format has no header.
+         */
+        private static int[] readDimensions(MatrixFile mFile) {
+            try {
+                switch (mFile.getFormat()) {
+                case SVDLIBC_SPARSE_BINARY:
+                case SVDLIBC_DENSE_BINARY: {
+                    DataInputStream dis = new DataInputStream(
+                        new BufferedInputStream(
+                            new FileInputStream(mFile.getFile())));
+                    try {
+                        return new int[] { dis.readInt(), dis.readInt() };
+                    } finally {
+                        dis.close();
+                    }
+                }
+                case SVDLIBC_SPARSE_TEXT:
+                case SVDLIBC_DENSE_TEXT:
+                case CLUTO_SPARSE:
+                case CLUTO_DENSE: {
+                    BufferedReader br = 
+                        new BufferedReader(new FileReader(mFile.getFile()));
+                    try {
+                        String[] header = br.readLine().trim().split("\\s+");
+                        return new int[] { Integer.parseInt(header[0]),
+                                           Integer.parseInt(header[1]) };
+                    } finally {
+                        br.close();
+                    }
+                }
+                default:
+                    return null;
+                }
+            } catch (IOException ioe) {
+                throw new IOError(ioe);
+            }
+        }
+
+        private Iterator<MatrixEntry> iterator() {
+            try {
+                return MatrixIO.getMatrixFileIterator(
+                    mFile.getFile(), mFile.getFormat());
+            } catch (IOException ioe) {
+                throw new IOError(ioe);
+            }
+        }
+
+        public int rows() {
+            return rows;
+        }
+
+        public int columns() {
+            return cols;
+        }
+
+        public void multiply(final double[][] x, final double[][] out,
+                             final boolean transpose) {
+            clear(out);
+            final Object[] locks = createLocks();
+            int numBlocks = WorkQueue.getWorkQueue().availableThreads();
+            final int[][] blockRows = new int[numBlocks][ENTRY_BLOCK_SIZE];
+            final int[][] blockCols = new int[numBlocks][ENTRY_BLOCK_SIZE];
+            final double[][] blockValues = 
+                new double[numBlocks][ENTRY_BLOCK_SIZE];
+            Iterator<MatrixEntry> it = iterator();
+            while (it.hasNext()) {
+                // Read the next set of blocks and then process them in
+                // parallel
+                List<Runnable> tasks = new ArrayList<Runnable>();
+                for (int b = 0; b < numBlocks && it.hasNext(); ++b) {
+                    final int[] rs = blockRows[b];
+                    final int[] cs = blockCols[b];
+                    final double[] vs = blockValues[b];
+                    int size = 0;
+                    while (size < ENTRY_BLOCK_SIZE && it.hasNext()) {
+                        MatrixEntry e = it.next();
+                        if (e.value() == 0)
+                            continue;
+                        rs[size] = e.row();
+                        cs[size] = e.column();
+                        vs[size] = e.value();
+                        size++;
+                    }
+                    final int entries = size;
+                    tasks.add(new Runnable() {
+                        public void run() {
+                            for (int i = 0; i < entries; ++i) {
+                                int target = (transpose) ? cs[i] : rs[i];
+                                int source = (transpose) ? rs[i] : cs[i];
+                                synchronized (locks[target % LOCK_STRIPES]) {
+                                    addScaled(out[target], vs[i], x[source]);
+                                }
+                            }
+                        }
+                    });
+                }
+                WorkQueue.getWorkQueue().run(tasks);
+            }
+        }
+    }
+}
@@ -24,20 +24,24 @@ package edu.ucla.sspace.ri;
 import edu.ucla.sspace.common.Filterable;
 import edu.ucla.sspace.common.SemanticSpace;
 
+import edu.ucla.sspace.index.HashedIndexVectorMap;
 import edu.ucla.sspace.index.IntegerVectorGenerator;
 import edu.ucla.sspace.index.PermutationFunction;
-import edu.ucla.sspace.index.RandomIndexVectorGenerator;
+import edu.ucla.sspace.index.ReorderingPermutation;
 import edu.ucla.sspace.index.TernaryPermutationFunction;
 
 import edu.ucla.sspace.text.IteratorFactory;
 
-import edu.ucla.sspace.util.GeneratorMap;
+import edu.ucla.sspace.util.IntegerEntry;
+import edu.ucla.sspace.util.ThreadLocalAccumulator;
 
 import edu.ucla.sspace.vector.CompactSparseIntegerVector;
 import edu.ucla.sspace.vector.DenseIntVector;
 import edu.ucla.sspace.vector.IntegerVector;
+import edu.ucla.sspace.vector.SparseHashIntegerVector;
 import edu.ucla.sspace.vector.TernaryVector;
 import edu.ucla.sspace.vector.Vector;
+import edu.ucla.sspace.vector.VectorMath;
 import edu.ucla.sspace.vector.Vectors;
 
 import java.io.BufferedReader;
@@ -166,8 +170,31 @@ import static edu.ucla.sspace.util.Properties.getLong;
  *       in a large saving in memory, while requiring more time to process each
  *       document.<p>
  *
+ * <dt> <i>Property:</i> <code><b>{@value #MERGE_INTERVAL_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@code 0} 
+ *
+ * <dd style="padding-top: .5em">This property specifies the number of
+ *       documents each thread processes before merging its locally accumulated
+ *       changes into the shared semantic vectors.  When set to a positive value,
+ *       each thread sums the index vectors into private delta vectors for the
+ *       words it has seen, which avoids contending on the locks of frequent
+ *       words when many threads are processing documents.  The final semantics
+ *       are identical to those computed without local accumulation.  By
+ *       default, updates are made directly to the shared vectors.<p>
+ *
  * </dl> <p>
  *
+ * By default, a random index vector is generated and stored for each new word.
+ * If the {@value edu.ucla.sspace.index.HashedIndexVectorMap#SEED_PROPERTY}
+ * property is set, each word's index vector is instead derived from a hash of
+ * the word, so that no index vectors need to be stored or saved to reproduce
+ * a space.  See {@link HashedIndexVectorMap} for details.  In this mode the
+ * index vectors cannot be replaced with {@link #setWordToIndexVector(Map)
+ * setWordToIndexVector}, and the map returned by {@link #getWordToIndexVector()
+ * getWordToIndexVector} computes vectors on demand but contains no entries, so
+ * there is nothing to save.<p>
+ *
  * This class implements {@link Filterable}, which allows for fine-grained
  * control of which semantics are retained.  The {@link #setSemanticFilter(Set)}
  * method can be used to speficy which words should have their semantics
@@ -180,10 +207,13 @@ import static edu.ucla.sspace.util.Properties.getLong;
  * #processDocument(BufferedReader) processDocument}.  At any given point in
  * processing, the {@link #getVectorFor(String) getVector} method may be used
  * to access the current semantics of a word.  This allows callers to track
- * incremental changes to the semantics as the corpus is processed.  <p>
+ * incremental changes to the semantics as the corpus is processed.  If local
+ * accumulation is enabled, the returned semantics will not include the changes
+ * that a thread has made since its last merge. <p>
  *
- * The {@link #processSpace(Properties) processSpace} method does nothing for
- * this class and calls to it will not affect the results of {@code
+ * The {@link #processSpace(Properties) processSpace} method merges any changes
+ * that are still pending from local accumulation.  Otherwise it does nothing
+ * for this class and calls to it will not affect the results of {@code
  * getVectorFor}.
  *
  * @see PermutationFunction
@@ -245,6 +275,15 @@ public class RandomIndexing implements SemanticSpace, Filterable {
     public static final String RANDOM_SEED_PROPERTY = 
         PROPERTY_PREFIX + ".randomSeed";
 
+    /**
+     * The property to specify the number of documents that each thread
+     * processes before merging its locally accumulated semantics into the
+     * shared semantic vectors.  A value of {@code 0} disables local
+     * accumulation.
+     */
+    public static final String MERGE_INTERVAL_PROPERTY = 
+        PROPERTY_PREFIX + ".mergeInterval";
+
     /**
      * The default number of words to view before and after each word in focus.
      */
@@ -311,6 +350,13 @@ public class RandomIndexing implements SemanticSpace, Filterable {
      */
     private final Set<String> semanticFilter;
 
+    /**
+     * The thread-local deltas for each word's semantics if local accumulation
+     * is enabled, or {@code null} if updates are made directly to the semantic
+     * vectors in {@link #wordToMeaning}.
+     */
+    private final ThreadLocalAccumulator<String,IntegerVector> localSemantics;
+
     /**
      * Creates a new {@code RandomIndexing} instance using the current {@code
      * System} properties for configuration.
@@ -347,9 +393,6 @@ public class RandomIndexing implements SemanticSpace, Filterable {
             ? loadPermutationFunction(permutationFuncProp)
             : new TernaryPermutationFunction();
 
-        RandomIndexVectorGenerator indexVectorGenerator = 
-            new RandomIndexVectorGenerator(vectorLength, properties);
-
         String useSparseProp = 
         properties.getProperty(USE_SPARSE_SEMANTICS_PROPERTY);
         useSparseSemantics = (useSparseProp != null)
@@ -362,10 +405,12 @@ public class RandomIndexing implements SemanticSpace, Filterable {
             : System.currentTimeMillis();
         
 
-        wordToIndexVector = new GeneratorMap<TernaryVector>(
-                indexVectorGenerator);
+        wordToIndexVector = 
+            HashedIndexVectorMap.create(vectorLength, properties);
         wordToMeaning = new ConcurrentHashMap<String,IntegerVector>();
         semanticFilter = new HashSet<String>();
+        localSemantics = createAccumulator(
+            getInt(properties, MERGE_INTERVAL_PROPERTY, 0));
     }
 
     /**
@@ -403,7 +448,8 @@ public class RandomIndexing implements SemanticSpace, Filterable {
      * @param randomSeed the random value used to seed the source of randomness
      *        for this class and all randomized methods in its dependencies.
      * @param otherProps additional properties that will be provided to any
-     *        configurable members of this class.
+     *        configurable members of this class, which may also specify the
+     *        {@value #MERGE_INTERVAL_PROPERTY} for local accumulation.
      */
     public RandomIndexing(int vectorLength, int windowSize,
                           boolean usePermutations,
@@ -420,12 +466,41 @@ public class RandomIndexing implements SemanticSpace, Filterable {
         this.useSparseSemantics = useSparseSemantics;
         RANDOM.setSeed(randomSeed);
 
-        RandomIndexVectorGenerator indexVectorGenerator = 
-            new RandomIndexVectorGenerator(vectorLength, otherProps);
-        wordToIndexVector = new GeneratorMap<TernaryVector>(
-                indexVectorGenerator);
+        wordToIndexVector = 
+            HashedIndexVectorMap.create(vectorLength, otherProps);
         wordToMeaning = new ConcurrentHashMap<String,IntegerVector>();
         semanticFilter = new HashSet<String>();       
+        localSemantics = createAccumulator((otherProps == null) 
+            ? 0 : getInt(otherProps, MERGE_INTERVAL_PROPERTY, 0));
+    }
+
+    /**
+     * Returns the accumulator for thread-local semantic deltas that are merged
+     * every {@code mergeInterval} documents, or {@code null} if local
+     * accumulation is disabled.
+     */
+    private ThreadLocalAccumulator<String,IntegerVector> createAccumulator(
+            int mergeInterval) {
+        if (mergeInterval < 0)
+            throw new IllegalArgumentException(
+                "merge interval cannot be negative: " + mergeInterval);
+        if (mergeInterval == 0)
+            return null;
+        return new ThreadLocalAccumulator<String,IntegerVector>(mergeInterval) {
+            protected IntegerVector createDelta(String word) {
+                return new SparseHashIntegerVector(vectorLength);
+            }
+
+            protected void merge(String word, IntegerVector delta) {
+                // Create the word's vector even if its delta is empty, which
+                // keeps the set of words the same as when updating directly
+                IntegerVector semantics = getSemanticVector(word);
+                synchronized(semantics) {
+                    for (IntegerEntry e : (SparseHashIntegerVector)delta)
+                        semantics.add(e.index(), e.value());
+                }
+            }
+        };
     }
 
     /**
@@ -457,6 +532,9 @@ public class RandomIndexing implements SemanticSpace, Filterable {
      * keeping the same semantic space.
      */
     public void clearSemantics() {
+        // Merge any pending deltas so that they do not reappear later
+        if (localSemantics != null)
+            localSemantics.mergeAll();
         wordToMeaning.clear();
     }
 
@@ -573,7 +651,11 @@ public class RandomIndexing implements SemanticSpace, Filterable {
                 && !focusWord.equals(IteratorFactory.EMPTY_TOKEN);
             
             if (calculateSemantics) {
-                IntegerVector focusMeaning = getSemanticVector(focusWord);
+                // When accumulating locally, add to this thread's delta for the
+                // word, which needs no locking
+                IntegerVector focusMeaning = (localSemantics == null)
+                    ? getSemanticVector(focusWord)
+                    : localSemantics.getDelta(focusWord);
 
                 // Sum up the index vector for all the surrounding words.  If
                 // permutations are enabled, permute the index vector based on
@@ -592,11 +674,12 @@ public class RandomIndexing implements SemanticSpace, Filterable {
                     
                     TernaryVector iv = wordToIndexVector.get(word);
                     if (usePermutations) {
-                        iv = permutationFunc.permute(iv, permutations);
+                        addPermuted(focusMeaning, iv, permutations, 
+                                    localSemantics == null);
                         ++permutations;
                     }
-                    
-                    add(focusMeaning, iv);
+                    else
+                        add(focusMeaning, iv, localSemantics == null);
                 }
             
                 // Repeat for the words in the forward window.
@@ -614,11 +697,12 @@ public class RandomIndexing implements SemanticSpace, Filterable {
                 
                     TernaryVector iv = wordToIndexVector.get(word);
                     if (usePermutations) {
-                        iv = permutationFunc.permute(iv, permutations);
+                        addPermuted(focusMeaning, iv, permutations, 
+                                    localSemantics == null);
                         ++permutations;
                     }
-
-                    add(focusMeaning, iv);
+                    else
+                        add(focusMeaning, iv, localSemantics == null);
                 }
             }
 
@@ -632,14 +716,20 @@ public class RandomIndexing implements SemanticSpace, Filterable {
         }    
 
         document.close();
+
+        if (localSemantics != null)
+            localSemantics.documentProcessed();
     }
     
     /**
-     * Does nothing.
+     * Merges any semantics that are still pending from local accumulation.
+     * Otherwise, does nothing.
      *
      * @param properties {@inheritDoc}
      */
     public void processSpace(Properties properties) {
+        if (localSemantics != null)
+            localSemantics.mergeAll();
     }
 
     /**
@@ -650,8 +740,15 @@ public class RandomIndexing implements SemanticSpace, Filterable {
      *
      * @param m a mapping from token to the {@code IntegerVector} that should be
      *        used represent it when calculating other word's semantics
+     *
+     * @throws IllegalStateException if the index vectors are derived from the
+     *         seed set by {@value HashedIndexVectorMap#SEED_PROPERTY}
      */
     public void setWordToIndexVector(Map<String,TernaryVector> m) {
+        if (wordToIndexVector instanceof HashedIndexVectorMap)
+            throw new IllegalStateException(
+                "Index vectors are derived from the seed set by " +
+                HashedIndexVectorMap.SEED_PROPERTY + " and cannot be replaced");
         wordToIndexVector.clear();
         wordToIndexVector.putAll(m);
     }
@@ -669,19 +766,58 @@ public class RandomIndexing implements SemanticSpace, Filterable {
     }
 
     /**
-     * Atomically adds the values of the index vector to the semantic vector.
-     * This is a special case addition operation that only iterates over the
-     * non-zero values of the index vector.
+     * Adds the values of the index vector to the semantic vector, atomically
+     * if the vector is shared between threads.  This is a special case
+     * addition operation that only iterates over the non-zero values of the
+     * index vector.
      */
-    private static void add(IntegerVector semantics, TernaryVector index) {
+    private static void add(IntegerVector semantics, TernaryVector index,
+                            boolean isShared) {
+        if (!isShared) {
+            add(semantics, index);
+            return;
+        }
         // Lock on the semantic vector to avoid a race condition with another
         // thread updating its semantics.  Use the vector to avoid a class-level
         // lock, which would limit the concurrency.
         synchronized(semantics) {
-            for (int p : index.positiveDimensions())
-                semantics.add(p, 1);
-            for (int n : index.negativeDimensions())
-                semantics.add(n, -1);
+            add(semantics, index);
         }
     }
+
+    /**
+     * Adds the index vector permuted the specified number of times to the
+     * semantic vector, locking on the semantic vector if it is shared.  If the
+     * permutation function supports it, each value is moved to its permuted
+     * dimension as it is added, which avoids creating a permuted copy of the
+     * index vector for every co-occurrence.
+     */
+    private void addPermuted(IntegerVector semantics, TernaryVector index,
+                             int permutations, boolean isShared) {
+        if (!(permutationFunc instanceof ReorderingPermutation)) {
+            add(semantics, permutationFunc.permute(index, permutations), 
+                isShared);
+            return;
+        }
+        int[] reordering = ((ReorderingPermutation)permutationFunc)
+            .getReordering(permutations, index.length());
+        if (!isShared) {
+            VectorMath.addPermuted(semantics, index, reordering);
+            return;
+        }
+        synchronized(semantics) {
+            VectorMath.addPermuted(semantics, index, reordering);
+        }
+    }
+
+    /**
+     * Adds the values of the index vector to the semantic vector without any
+     * locking.
+     */
+    private static void add(IntegerVector semantics, TernaryVector index) {
+        for (int p : index.positiveDimensions())
+            semantics.add(p, 1);
+        for (int n : index.negativeDimensions())
+            semantics.add(n, -1);
+    }
 }
@@ -24,17 +24,20 @@ package edu.ucla.sspace.rri;
 import edu.ucla.sspace.common.Filterable;
 import edu.ucla.sspace.common.SemanticSpace;
 
+import edu.ucla.sspace.index.HashedIndexVectorMap;
 import edu.ucla.sspace.index.PermutationFunction;
-import edu.ucla.sspace.index.RandomIndexVectorGenerator;
 import edu.ucla.sspace.index.TernaryPermutationFunction;
 
 import edu.ucla.sspace.text.IteratorFactory;
 
+import edu.ucla.sspace.util.ThreadLocalAccumulator;
 import edu.ucla.sspace.util.WorkerThread;
 
 import edu.ucla.sspace.vector.CompactSparseIntegerVector;
 import edu.ucla.sspace.vector.DenseIntVector;
 import edu.ucla.sspace.vector.IntegerVector;
+import edu.ucla.sspace.vector.SparseHashIntegerVector;
+import edu.ucla.sspace.vector.SparseVector;
 import edu.ucla.sspace.vector.TernaryVector;
 import edu.ucla.sspace.vector.Vector;
 import edu.ucla.sspace.vector.Vectors;
@@ -77,6 +80,12 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import gnu.trove.iterator.TIntIntIterator;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+
+import static edu.ucla.sspace.util.Properties.getInt;
+
 
 /**
  * An implementation of Reflective Random Indexing, which uses a two passes
@@ -111,6 +120,19 @@ import java.util.logging.Logger;
  *       in a large saving in memory, while requiring more time to process each
  *       document.<p>
  *
+ * <dt> <i>Property:</i> <code><b>{@value #MERGE_INTERVAL_PROPERTY}
+ *      </b></code> <br>
+ *      <i>Default:</i> {@code 0} 
+ *
+ * <dd style="padding-top: .5em">This property specifies the number of
+ *       documents each thread reprocesses in {@code processSpace} before
+ *       merging its locally accumulated changes into the shared reflective
+ *       vectors.  When set to a positive value, each thread sums the document
+ *       vectors into private delta vectors, adding each document's vector once
+ *       per term, scaled by the term's frequency in the document.  The final
+ *       semantics are identical to those computed without local accumulation.
+ *       By default, updates are made directly to the shared vectors.<p>
+ *
  * </dl> <p>
  *
  * This class implements {@link Filterable}, which allows for fine-grained
@@ -150,6 +172,15 @@ public class ReflectiveRandomIndexing implements SemanticSpace, Filterable {
     public static final String USE_SPARSE_SEMANTICS_PROPERTY = 
         PROPERTY_PREFIX + ".sparseSemantics";
 
+    /**
+     * The property to specify the number of documents that each thread
+     * reprocesses before merging its locally accumulated semantics into the
+     * shared reflective vectors.  A value of {@code 0} disables local
+     * accumulation.
+     */
+    public static final String MERGE_INTERVAL_PROPERTY = 
+        PROPERTY_PREFIX + ".mergeInterval";
+
     /**
      * The default number of dimensions to be used by the index and semantic
      * vectors.
@@ -181,8 +212,11 @@ public class ReflectiveRandomIndexing implements SemanticSpace, Filterable {
     private final Map<String,IntegerVector> termToReflectiveSemantics;
 
     /**
-     * A mapping from each word to the vector the represents its semantics after
-     * the second pass through the corpus.
+     * A mapping from each word to its index vector, which either stores a
+     * randomly generated vector for each word or derives the vector from the
+     * word itself.
+     *
+     * @see HashedIndexVectorMap
      */
     private final Map<String,TernaryVector> termToIndexVector;
 
@@ -214,12 +248,6 @@ public class ReflectiveRandomIndexing implements SemanticSpace, Filterable {
      */
     private final Set<String> semanticFilter;
 
-    /**
-     * The generator used to create index vectors for each unique term in the
-     * corpus.
-     */
-    private final RandomIndexVectorGenerator indexVectorGenerator;
-
     /**
      * A compressed version of the corpus that is built as the text version is
      * being processed.  The file contains documents represented as an integer
@@ -248,6 +276,14 @@ public class ReflectiveRandomIndexing implements SemanticSpace, Filterable {
      */
     private String[] indexToTerm;
 
+    /**
+     * The thread-local deltas for each term's reflective semantics if local
+     * accumulation is enabled, or {@code null} if updates are made directly to
+     * the vectors in {@link #termToReflectiveSemantics}.
+     */
+    private final ThreadLocalAccumulator<String,IntegerVector>
+        localReflectiveSemantics;
+
     /**
      * Creates a new {@code ReflectiveRandomIndexing} instance using the current
      * {@code System} properties for configuration.
@@ -273,12 +309,10 @@ public class ReflectiveRandomIndexing implements SemanticSpace, Filterable {
             ? Boolean.parseBoolean(useSparseProp)
             : true;
 
-        indexVectorGenerator = 
-            new RandomIndexVectorGenerator(vectorLength, properties);
-
         // The various maps for keeping word and document state during
         // processing
-        termToIndexVector = new ConcurrentHashMap<String,TernaryVector>();
+        termToIndexVector = 
+            HashedIndexVectorMap.create(vectorLength, properties);
         docToVector = new ConcurrentHashMap<Integer,IntegerVector>();
         termToReflectiveSemantics = 
             new ConcurrentHashMap<String,IntegerVector>();
@@ -287,6 +321,27 @@ public class ReflectiveRandomIndexing implements SemanticSpace, Filterable {
         documentCounter = new AtomicInteger();
         semanticFilter = new HashSet<String>();
 
+        int mergeInterval = getInt(properties, MERGE_INTERVAL_PROPERTY, 0);
+        if (mergeInterval < 0)
+            throw new IllegalArgumentException(
+                "merge interval cannot be negative: " + mergeInterval);
+        localReflectiveSemantics = (mergeInterval == 0) ? null
+            : new ThreadLocalAccumulator<String,IntegerVector>(mergeInterval) {
+                protected IntegerVector createDelta(String term) {
+                    return (useSparseSemantics)
+                        ? new SparseHashIntegerVector(vectorLength)
+                        : new DenseIntVector(vectorLength);
+                }
+
+                protected void merge(String term, IntegerVector delta) {
+                    IntegerVector reflectiveVector = 
+                        termToReflectiveSemantics.get(term);
+                    synchronized(reflectiveVector) {
+                        VectorMath.add(reflectiveVector, delta);
+                    }
+                }
+            };
+
         // Last set up the writer that will contain a compressed version of the
         // corpus for use in processSpace()
         try {
@@ -320,27 +375,24 @@ public class ReflectiveRandomIndexing implements SemanticSpace, Filterable {
      * @return the index for the provide term.
      */
     private TernaryVector getTermIndexVector(String term) {
-        TernaryVector iv = termToIndexVector.get(term);
-        if (iv == null) {
+        if (!termToIndex.containsKey(term)) {
             // lock in case multiple threads attempt to add it at once
             synchronized(this) {
                 // recheck in case another thread added it while we were waiting
                 // for the lock
-                iv = termToIndexVector.get(term);
-                if (iv == null) {
-                    // since this is a new term, also map it to its index for
-                    // later look-up when the integer documents are processed
-                    termToIndex.put(term, termIndexCounter++);
-                    // next, map it to its reflective vector which will be
-                    // filled in process space
+                if (!termToIndex.containsKey(term)) {
+                    // since this is a new term, map it to its reflective vector
+                    // which will be filled in process space
                     termToReflectiveSemantics.put(term, createVector());
-                    // last, create an index vector for the term
-                    iv = indexVectorGenerator.generate();
-                    termToIndexVector.put(term, iv);                    
+                    // last, map it to its index for later look-up when the
+                    // integer documents are processed, which marks the term as
+                    // seen
+                    termToIndex.put(term, termIndexCounter++);
                 }
             }
         }
-        return iv;
+        // The index vector is created by the mapping when the term is new
+        return termToIndexVector.get(term);
     }
 
    /**
@@ -520,6 +572,8 @@ public class ReflectiveRandomIndexing implements SemanticSpace, Filterable {
             throw new Error("interrupted while waiting for documents to " +
                             "finish reprocessing", ie);
         }        
+        if (localReflectiveSemantics != null)
+            localReflectiveSemantics.mergeAll();
         LOGGER.fine("finished reprocessing all documents");
 
     }
@@ -536,6 +590,10 @@ public class ReflectiveRandomIndexing implements SemanticSpace, Filterable {
      * @return the number of contexts present in this document
      */
     private void processIntDocument(IntegerVector docVector, int[] document) {
+        if (localReflectiveSemantics != null) {
+            accumulateIntDocument(docVector, document);
+            return;
+        }
 
         // Make one pass through the document to build the document vector.
         for (int termIndex : document) {
@@ -549,6 +607,46 @@ public class ReflectiveRandomIndexing implements SemanticSpace, Filterable {
         }
     }
 
+    /**
+     * Processes the compressed version of a document by adding the document's
+     * vector to the current thread's delta for each term in the document,
+     * scaled by the number of times the term occurs.
+     *
+     * @param docVector the vector of the document that is being processed
+     * @param document the document to be processed where each {@code int} is a
+     *        term index
+     */
+    private void accumulateIntDocument(IntegerVector docVector, 
+                                       int[] document) {
+        TIntIntMap termCounts = new TIntIntHashMap();
+        for (int termIndex : document)
+            termCounts.adjustOrPutValue(termIndex, 1, 1);
+
+        int[] nonZero = null;
+        if (docVector instanceof SparseVector)
+            nonZero = ((SparseVector)docVector).getNonZeroIndices();
+
+        TIntIntIterator iter = termCounts.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            int count = iter.value();
+            IntegerVector delta = 
+                localReflectiveSemantics.getDelta(indexToTerm[iter.key()]);
+            if (nonZero != null) {
+                for (int i : nonZero)
+                    delta.add(i, count * docVector.get(i));
+            }
+            else {
+                for (int i = 0; i < vectorLength; ++i) {
+                    int v = docVector.get(i);
+                    if (v != 0)
+                        delta.add(i, count * v);
+                }
+            }
+        }
+        localReflectiveSemantics.documentProcessed();
+    }
+
     /**
      * {@inheritDoc} Note that all words will still have an index vector
      * assigned to them, which is necessary to properly compute the semantics.
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.similarity;
+
+import edu.ucla.sspace.matrix.ArrayMatrix;
+import edu.ucla.sspace.matrix.Matrix;
+
+import edu.ucla.sspace.util.BoundedSortedMultiMap;
+import edu.ucla.sspace.util.ScoreHeap;
+import edu.ucla.sspace.util.SortedMultiMap;
+import edu.ucla.sspace.util.WorkQueue;
+
+import edu.ucla.sspace.vector.DoubleVector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A base implementation of the batch comparisons of a {@link
+ * SimilarityFunction}.  Rows are compared in blocks by {@link
+ * #simToRows(DoubleVector,Matrix,int,int,double[]) simToRows}, which by
+ * default calls {@link #sim(DoubleVector,DoubleVector) sim} for each row.
+ * Subclasses may override the block methods with kernels that are specialized
+ * to the metric.  The block methods may be called concurrently, so they must
+ * not modify the state of the instance.
+ *
+ * <p> The {@code k} most similar rows are found by comparing a block of rows
+ * at a time and keeping only the {@code k} best similarities in a heap, so
+ * that no array of all the similarities is allocated.
+ *
+ * @author David Jurgens
+ */
+public abstract class AbstractSimilarityFunction 
+        implements SimilarityFunction {
+
+    /**
+     * The number of rows whose similarities are computed at a time when only
+     * the most similar rows are retained
+     */
+    static final int BLOCK_SIZE = 1024;
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] simToRows(DoubleVector query, Matrix rows) {
+        checkLength(query, rows.columns());
+        double[] scores = new double[rows.rows()];
+        simToRows(query, rows, 0, scores.length, scores);
+        return scores;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] simToVectors(DoubleVector query, 
+                                 List<? extends DoubleVector> vectors) {
+        for (DoubleVector v : vectors)
+            checkLength(query, v.length());
+        double[] scores = new double[vectors.size()];
+        simToVectors(query, vectors, 0, scores.length, scores);
+        return scores;
+    }
+
+    /**
+     * {@inheritDoc}  If the metric is symmetric, only the pairs of rows
+     * {@code (i, j)} with {@code i <= j} are compared.
+     */
+    public Matrix pairwiseSim(final Matrix rows, boolean parallel) {
+        final int n = rows.rows();
+        final Matrix sims = new ArrayMatrix(n, n);
+        final boolean symmetric = isSymmetric();
+        int tasks = (parallel) 
+            ? Math.max(1, Math.min(n, WorkQueue.getWorkQueue()
+                                          .availableThreads()))
+            : 1;
+        runTasks(tasks, new Task() {
+                public void run(int task, int tasks) {
+                    double[] scores = new double[n];
+                    // Interleave the rows so that each task compares a
+                    // similar number of pairs when only half are compared
+                    for (int i = task; i < n; i += tasks) {
+                        int from = (symmetric) ? i : 0;
+                        simToRows(rows.getRowVector(i), rows, from, n, scores);
+                        for (int j = from; j < n; ++j) {
+                            sims.set(i, j, scores[j - from]);
+                            if (symmetric)
+                                sims.set(j, i, scores[j - from]);
+                        }
+                    }
+                }
+            });
+        return sims;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedMultiMap<Double,Integer> mostSimilarRows(
+            final DoubleVector query, final Matrix rows, int k, 
+            boolean parallel) {
+        if (k < 0)
+            throw new IllegalArgumentException("k must be non-negative: " + k);
+        checkLength(query, rows.columns());
+        final int n = rows.rows();
+        // Only split the rows if each task has at least a full block
+        int numTasks = (parallel)
+            ? Math.max(1, Math.min(n / BLOCK_SIZE, WorkQueue.getWorkQueue()
+                                                   .availableThreads()))
+            : 1;
+        final ScoreHeap[] heaps = new ScoreHeap[numTasks];
+        for (int i = 0; i < numTasks; ++i)
+            heaps[i] = new ScoreHeap(k);
+        runTasks(numTasks, new Task() {
+                public void run(int task, int tasks) {
+                    // Each task compares a contiguous range of rows
+                    int start = (int)((long)n * task / tasks);
+                    int end = (int)((long)n * (task + 1) / tasks);
+                    double[] scores = 
+                        new double[Math.min(BLOCK_SIZE, end - start)];
+                    ScoreHeap heap = heaps[task];
+                    for (int from = start; from < end; from += BLOCK_SIZE) {
+                        int to = Math.min(end, from + BLOCK_SIZE);
+                        simToRows(query, rows, from, to, scores);
+                        for (int r = from; r < to; ++r)
+                            heap.offer(scores[r - from], r);
+                    }
+                }
+            });
+
+        SortedMultiMap<Double,Integer> mostSimilar = 
+            new BoundedSortedMultiMap<Double,Integer>(k, false);
+        for (ScoreHeap heap : heaps)
+            for (int i = 0; i < heap.size(); ++i)
+                mostSimilar.put(heap.score(i), heap.row(i));
+        return mostSimilar;
+    }
+
+    /**
+     * Computes the similarity between {@code query} and the rows in {@code
+     * [from, to)}, storing the similarity of row {@code r} in {@code scores[r
+     * - from]}.  The query's length has already been checked.
+     */
+    protected void simToRows(DoubleVector query, Matrix rows, 
+                             int from, int to, double[] scores) {
+        for (int r = from; r < to; ++r)
+            scores[r - from] = sim(query, rows.getRowVector(r));
+    }
+
+    /**
+     * Computes the similarity between {@code query} and the vectors in {@code
+     * [from, to)}, storing the similarity of vector {@code i} in {@code
+     * scores[i - from]}.  The vectors' lengths have already been checked.
+     */
+    protected void simToVectors(DoubleVector query, 
+                                List<? extends DoubleVector> vectors,
+                                int from, int to, double[] scores) {
+        for (int i = from; i < to; ++i)
+            scores[i - from] = sim(query, vectors.get(i));
+    }
+
+    /**
+     * Throws an {@link IllegalArgumentException} if the query does not have
+     * the specified length.
+     */
+    static void checkLength(DoubleVector query, int length) {
+        if (query.length() != length)
+            throw new IllegalArgumentException(
+                "Vectors must be the same length: " + query.length() + 
+                " and " + length);
+    }
+
+    /**
+     * Runs the task once for each of the specified number of tasks, using the
+     * {@link WorkQueue} if there is more than one.
+     */
+    static void runTasks(final int tasks, final Task task) {
+        if (tasks == 1) {
+            task.run(0, 1);
+            return;
+        }
+        List<Runnable> runnables = new ArrayList<Runnable>(tasks);
+        for (int i = 0; i < tasks; ++i) {
+            final int t = i;
+            runnables.add(new Runnable() {
+                    public void run() {
+                        task.run(t, tasks);
+                    }
+                });
+        }
+        WorkQueue.getWorkQueue().run(runnables);
+    }
+
+    /**
+     * One of several tasks that together perform a batch comparison.
+     */
+    interface Task {
+
+        /**
+         * Runs task {@code task} out of {@code tasks}.
+         */
+        void run(int task, int tasks);
+    }
+}
@@ -32,7 +32,7 @@ package edu.ucla.sspace.similarity;
  * @author Keith Stevens
  */
 public abstract class AbstractSymmetricSimilarityFunction
-        implements SimilarityFunction {
+        extends AbstractSimilarityFunction {
 
     /**
      * Performs a no-op and sets no parameters
@@ -25,10 +25,17 @@ package edu.ucla.sspace.similarity;
 
 import edu.ucla.sspace.common.Similarity;
 
+import edu.ucla.sspace.matrix.ArrayMatrix;
+import edu.ucla.sspace.matrix.Matrix;
+
+import edu.ucla.sspace.util.WorkQueue;
+
 import edu.ucla.sspace.vector.DoubleVector;
 import edu.ucla.sspace.vector.IntegerVector;
 import edu.ucla.sspace.vector.Vector;
 
+import java.util.List;
+
 
 /**
  * Returns the cosine similarity between any two {@link Vector}s. 
@@ -61,4 +68,81 @@ public class CosineSimilarity extends AbstractSymmetricSimilarityFunction {
     public double sim(Vector v1, Vector v2) {
         return Similarity.cosineSimilarity(v1, v2);
     }
+
+    /**
+     * Computes the cosine similarity to each row by copying the query to an
+     * array once and then computing each row's dot product and magnitude in a
+     * single pass.
+     */
+    protected void simToRows(DoubleVector query, Matrix rows, 
+                             int from, int to, double[] scores) {
+        double[] q = query.toArray();
+        double[] squaredNorms = new double[to - from];
+        SimilarityKernels.dotProducts(q, rows, from, to, scores, squaredNorms);
+        normalize(Math.sqrt(SimilarityKernels.squaredNorm(q)), 
+                  scores, squaredNorms);
+    }
+
+    /**
+     * Computes the cosine similarity to each vector by copying the query to
+     * an array once and then computing each vector's dot product and
+     * magnitude in a single pass.
+     */
+    protected void simToVectors(DoubleVector query, 
+                                List<? extends DoubleVector> vectors,
+                                int from, int to, double[] scores) {
+        double[] q = query.toArray();
+        double[] squaredNorms = new double[to - from];
+        SimilarityKernels.dotProducts(
+            q, vectors, from, to, scores, squaredNorms);
+        normalize(Math.sqrt(SimilarityKernels.squaredNorm(q)), 
+                  scores, squaredNorms);
+    }
+
+    /**
+     * Divides each dot product by the product of the magnitudes, using a
+     * similarity of {@code 0} for any zero vector.
+     */
+    private static void normalize(double queryMagnitude, double[] dots, 
+                                  double[] squaredNorms) {
+        for (int i = 0; i < squaredNorms.length; ++i) {
+            double magnitude = Math.sqrt(squaredNorms[i]) * queryMagnitude;
+            dots[i] = (magnitude == 0) ? 0 : dots[i] / magnitude;
+        }
+    }
+
+    /**
+     * {@inheritDoc}  The magnitude of each row is computed only once.
+     */
+    public Matrix pairwiseSim(final Matrix rows, boolean parallel) {
+        final int n = rows.rows();
+        final Matrix sims = new ArrayMatrix(n, n);
+        final double[] magnitudes = new double[n];
+        for (int r = 0; r < n; ++r)
+            magnitudes[r] = rows.getRowVector(r).magnitude();
+        int tasks = (parallel) 
+            ? Math.max(1, Math.min(n, WorkQueue.getWorkQueue()
+                                          .availableThreads()))
+            : 1;
+        runTasks(tasks, new Task() {
+                public void run(int task, int tasks) {
+                    double[] dots = new double[n];
+                    // Interleave the rows so that each task compares a
+                    // similar number of pairs
+                    for (int i = task; i < n; i += tasks) {
+                        double[] q = rows.getRowVector(i).toArray();
+                        SimilarityKernels.dotProducts(
+                            q, rows, i, n, dots, null);
+                        for (int j = i; j < n; ++j) {
+                            double magnitude = magnitudes[i] * magnitudes[j];
+                            double sim = (magnitude == 0) 
+                                ? 0 : dots[j - i] / magnitude;
+                            sims.set(i, j, sim);
+                            sims.set(j, i, sim);
+                        }
+                    }
+                }
+            });
+        return sims;
+    }
 }
@@ -23,11 +23,15 @@
 
 package edu.ucla.sspace.similarity;
 
+import edu.ucla.sspace.matrix.Matrix;
+
 import edu.ucla.sspace.vector.DoubleVector;
 import edu.ucla.sspace.vector.IntegerVector;
 import edu.ucla.sspace.vector.Vector;
 import edu.ucla.sspace.vector.VectorMath;
 
+import java.util.List;
+
 
 /**
  * Returns the dot product of the two vectors.
@@ -60,4 +64,25 @@ public class DotProduct extends AbstractSymmetricSimilarityFunction {
     public double sim(Vector v1, Vector v2) {
         return VectorMath.dotProduct(v1, v2);
     }
+
+    /**
+     * Computes the dot product with each row after copying the query to an
+     * array once.
+     */
+    protected void simToRows(DoubleVector query, Matrix rows, 
+                             int from, int to, double[] scores) {
+        SimilarityKernels.dotProducts(
+            query.toArray(), rows, from, to, scores, null);
+    }
+
+    /**
+     * Computes the dot product with each vector after copying the query to an
+     * array once.
+     */
+    protected void simToVectors(DoubleVector query, 
+                                List<? extends DoubleVector> vectors,
+                                int from, int to, double[] scores) {
+        SimilarityKernels.dotProducts(
+            query.toArray(), vectors, from, to, scores, null);
+    }
 }
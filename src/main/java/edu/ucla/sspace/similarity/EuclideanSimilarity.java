@@ -25,10 +25,14 @@ package edu.ucla.sspace.similarity;
 
 import edu.ucla.sspace.common.Similarity;
 
+import edu.ucla.sspace.matrix.Matrix;
+
 import edu.ucla.sspace.vector.DoubleVector;
 import edu.ucla.sspace.vector.IntegerVector;
 import edu.ucla.sspace.vector.Vector;
 
+import java.util.List;
+
 
 /**
  * Returns the Euclidean Similarity between any two {@link Vector}s. 
@@ -61,4 +65,33 @@ public class EuclideanSimilarity extends AbstractSymmetricSimilarityFunction {
     public double sim(Vector v1, Vector v2) {
         return Similarity.euclideanSimilarity(v1, v2);
     }
+
+    /**
+     * Computes the similarity to each row after copying the query to an array
+     * and computing its magnitude once.
+     */
+    protected void simToRows(DoubleVector query, Matrix rows, 
+                             int from, int to, double[] scores) {
+        double[] q = query.toArray();
+        double qSquaredNorm = SimilarityKernels.squaredNorm(q);
+        for (int r = from; r < to; ++r)
+            scores[r - from] = 1 / (1 + Math.sqrt(
+                SimilarityKernels.squaredDistance(
+                    q, qSquaredNorm, rows.getRowVector(r))));
+    }
+
+    /**
+     * Computes the similarity to each vector after copying the query to an
+     * array and computing its magnitude once.
+     */
+    protected void simToVectors(DoubleVector query, 
+                                List<? extends DoubleVector> vectors,
+                                int from, int to, double[] scores) {
+        double[] q = query.toArray();
+        double qSquaredNorm = SimilarityKernels.squaredNorm(q);
+        for (int i = from; i < to; ++i)
+            scores[i - from] = 1 / (1 + Math.sqrt(
+                SimilarityKernels.squaredDistance(
+                    q, qSquaredNorm, vectors.get(i))));
+    }
 }
@@ -41,7 +41,7 @@ import edu.ucla.sspace.vector.Vector;
  *
  * @author Keith Stevens
  */
-public class KLDivergence implements SimilarityFunction {
+public class KLDivergence extends AbstractSimilarityFunction {
 
     /**
      * Does nothing
@@ -23,10 +23,16 @@
 
 package edu.ucla.sspace.similarity;
 
+import edu.ucla.sspace.matrix.Matrix;
+
+import edu.ucla.sspace.util.SortedMultiMap;
+
 import edu.ucla.sspace.vector.DoubleVector;
 import edu.ucla.sspace.vector.IntegerVector;
 import edu.ucla.sspace.vector.Vector;
 
+import java.util.List;
+
 
 /**
  * An Interface for any similarity metric between two {@link Vectors}.  Methods
@@ -73,4 +79,49 @@ public interface SimilarityFunction {
      * #isSymmetric} is false, the ordering <b>does</b> matter.
      */
     double sim(Vector v1, Vector v2);
+
+    /**
+     * Returns the similarity between {@code query} and each row of {@code
+     * rows}, where the value at index {@code r} is {@code sim(query,
+     * rows.getRowVector(r))}.
+     *
+     * @throws IllegalArgumentException if the query's length is not the number
+     *         of columns in {@code rows}
+     */
+    double[] simToRows(DoubleVector query, Matrix rows);
+
+    /**
+     * Returns the similarity between {@code query} and each of the vectors,
+     * where the value at index {@code i} is {@code sim(query,
+     * vectors.get(i))}.
+     *
+     * @throws IllegalArgumentException if the query's length is not the length
+     *         of every vector
+     */
+    double[] simToVectors(DoubleVector query, 
+                          List<? extends DoubleVector> vectors);
+
+    /**
+     * Returns the similarity between every pair of rows in {@code rows}, where
+     * the value at {@code (i, j)} is {@code sim(rows.getRowVector(i),
+     * rows.getRowVector(j))}.
+     *
+     * @param parallel {@code true} if the rows may be compared using the
+     *        threads of the {@link edu.ucla.sspace.util.WorkQueue WorkQueue}
+     */
+    Matrix pairwiseSim(Matrix rows, boolean parallel);
+
+    /**
+     * Returns the {@code k} rows of {@code rows} that are most similar to
+     * {@code query}, as a mapping from similarity to row index.  Only the
+     * {@code k} best similarities are retained while the rows are compared.
+     *
+     * @param parallel {@code true} if the rows may be compared using the
+     *        threads of the {@link edu.ucla.sspace.util.WorkQueue WorkQueue}
+     *
+     * @throws IllegalArgumentException if {@code k} is negative, or if the
+     *         query's length is not the number of columns in {@code rows}
+     */
+    SortedMultiMap<Double,Integer> mostSimilarRows(
+        DoubleVector query, Matrix rows, int k, boolean parallel);
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.similarity;
+
+import edu.ucla.sspace.matrix.Matrix;
+
+import edu.ucla.sspace.util.DoubleEntry;
+
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.SparseDoubleVector;
+
+import java.util.List;
+
+
+/**
+ * Kernels for comparing a query, whose values have been copied to an array,
+ * against many vectors.  Each kernel makes a single pass over a vector,
+ * visiting only the non-zero values of sparse vectors, and never looks up a
+ * query value by anything but an array access.
+ */
+final class SimilarityKernels {
+
+    /**
+     * The relative error below which the difference of two sums of squares is
+     * considered to be rounding error
+     */
+    private static final double ROUNDING_ERROR = 1e-12;
+
+    /**
+     * Uninstantiable
+     */
+    private SimilarityKernels() { }
+
+    /**
+     * Returns the sum of the squares of the values.
+     */
+    static double squaredNorm(double[] values) {
+        double norm = 0;
+        for (double d : values)
+            norm += d * d;
+        return norm;
+    }
+
+    /**
+     * Computes the dot product of {@code q} and each row in {@code [from,
+     * to)}, storing the dot product of row {@code r} in {@code dots[r - from]}
+     * and, if {@code squaredNorms} is not {@code null}, its squared magnitude
+     * in {@code squaredNorms[r - from]}.
+     */
+    static void dotProducts(double[] q, Matrix rows, int from, int to,
+                            double[] dots, double[] squaredNorms) {
+        for (int r = from; r < to; ++r)
+            dots[r - from] = dotProduct(q, rows.getRowVector(r), 
+                                        squaredNorms, r - from);
+    }
+
+    /**
+     * Computes the dot product of {@code q} and each vector in {@code [from,
+     * to)}, storing the dot product of vector {@code i} in {@code dots[i -
+     * from]} and, if {@code squaredNorms} is not {@code null}, its squared
+     * magnitude in {@code squaredNorms[i - from]}.
+     */
+    static void dotProducts(double[] q, List<? extends DoubleVector> vectors,
+                            int from, int to, 
+                            double[] dots, double[] squaredNorms) {
+        for (int i = from; i < to; ++i)
+            dots[i - from] = dotProduct(q, vectors.get(i), 
+                                        squaredNorms, i - from);
+    }
+
+    /**
+     * Returns the dot product of {@code q} and {@code v}, storing the squared
+     * magnitude of {@code v} in {@code squaredNorms[index]} if the array is
+     * not {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    static double dotProduct(double[] q, DoubleVector v, 
+                             double[] squaredNorms, int index) {
+        double dot = 0;
+        double norm = 0;
+        if (v instanceof SparseDoubleVector) {
+            if (v instanceof Iterable) {
+                for (DoubleEntry e : (Iterable<DoubleEntry>)v) {
+                    double x = e.value();
+                    dot += q[e.index()] * x;
+                    norm += x * x;
+                }
+            }
+            else {
+                for (int i : ((SparseDoubleVector)v).getNonZeroIndices()) {
+                    double x = v.get(i);
+                    dot += q[i] * x;
+                    norm += x * x;
+                }
+            }
+        }
+        else {
+            int length = v.length();
+            for (int i = 0; i < length; ++i) {
+                double x = v.get(i);
+                dot += q[i] * x;
+                norm += x * x;
+            }
+        }
+        if (squaredNorms != null)
+            squaredNorms[index] = norm;
+        return dot;
+    }
+
+    /**
+     * Returns the squared Euclidean distance between {@code q}, whose squared
+     * magnitude is {@code qSquaredNorm}, and {@code v}.
+     */
+    @SuppressWarnings("unchecked")
+    static double squaredDistance(double[] q, double qSquaredNorm, 
+                                  DoubleVector v) {
+        if (v instanceof SparseDoubleVector) {
+            // Compare the non-zero values of v directly and then add the
+            // magnitude of the rest of the query
+            double sum = 0;
+            double inside = 0;
+            if (v instanceof Iterable) {
+                for (DoubleEntry e : (Iterable<DoubleEntry>)v) {
+                    double qi = q[e.index()];
+                    double diff = qi - e.value();
+                    sum += diff * diff;
+                    inside += qi * qi;
+                }
+            }
+            else {
+                for (int i : ((SparseDoubleVector)v).getNonZeroIndices()) {
+                    double diff = q[i] - v.get(i);
+                    sum += diff * diff;
+                    inside += q[i] * q[i];
+                }
+            }
+            // The rest of the query is found by subtraction, so treat any
+            // difference within its rounding error as zero
+            double outside = qSquaredNorm - inside;
+            return (outside > qSquaredNorm * ROUNDING_ERROR) 
+                ? sum + outside : sum;
+        }
+        double sum = 0;
+        int length = v.length();
+        for (int i = 0; i < length; ++i) {
+            double diff = q[i] - v.get(i);
+            sum += diff * diff;
+        }
+        return sum;
+    }
+}
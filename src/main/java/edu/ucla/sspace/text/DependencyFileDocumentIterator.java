@@ -51,6 +51,11 @@ public class DependencyFileDocumentIterator implements Iterator<Document> {
      */
     private final boolean ignoreHeader;
 
+    /**
+     * The maximum number of sentences in each returned document
+     */
+    private final int sentencesPerDocument;
+
     /**
      * The next line in the file
      */
@@ -86,7 +91,38 @@ public class DependencyFileDocumentIterator implements Iterator<Document> {
     public DependencyFileDocumentIterator(String documentsFile,
                                           boolean ignoreHeader)
             throws IOException {
+        this(documentsFile, ignoreHeader, 1);
+    }
+
+    /**
+     * Creates an {@code Iterator} over the file where each document returned
+     * contains up to the specified number of dependency parsed sentences,
+     * separated by blank lines.  Returning several sentences in each document
+     * reduces the contention between threads that share this iterator and
+     * allows a {@link edu.ucla.sspace.dependency.DependencyExtractor} to read
+     * the sentences of a document as a batch.  This should only be used with
+     * algorithms that do not treat the document as a context.
+     *
+     * @param documentsFile the file specifying a dependency parsed file in the
+     * <a href="http://nextens.uvt.nl/depparse-wiki/DataFormat">CoNLL Format</a>
+     * @param ignoreHeader if true, the first line of every dependency tree will
+     * be discarded
+     * @param sentencesPerDocument the maximum number of sentences in each
+     * document
+     *
+     * @throws IOException if any error occurs when reading
+     *                     {@code documentsFile}
+     */
+    public DependencyFileDocumentIterator(String documentsFile,
+                                          boolean ignoreHeader,
+                                          int sentencesPerDocument)
+            throws IOException {
+        if (sentencesPerDocument < 1)
+            throw new IllegalArgumentException(
+                "Must have at least one sentence per document: " + 
+                sentencesPerDocument);
         this.ignoreHeader = ignoreHeader;
+        this.sentencesPerDocument = sentencesPerDocument;
         documentsReader = new BufferedReader(new FileReader(documentsFile));
         nextLine = advance();
     }
@@ -100,6 +136,27 @@ public class DependencyFileDocumentIterator implements Iterator<Document> {
     
     private String advance() throws IOException {
         StringBuilder sb = new StringBuilder();
+        int sentences = 0;
+        while (sentences < sentencesPerDocument) {
+            int length = sb.length();
+            // Separate the sentences with a blank line
+            if (sentences > 0)
+                sb.append("\n");
+            if (!advanceSentence(sb)) {
+                sb.setLength(length);
+                break;
+            }
+            sentences++;
+        }
+        return (sentences == 0) ? null : sb.toString();
+    }
+
+    /**
+     * Appends the lines of the next sentence in the file to {@code sb}.
+     *
+     * @return {@code true} if a sentence was found
+     */
+    private boolean advanceSentence(StringBuilder sb) throws IOException {
         String line = null;
 
         // Read off any preceding blank lines
@@ -107,9 +164,9 @@ public class DependencyFileDocumentIterator implements Iterator<Document> {
                && line.length() == 0)
             ; 
 
-        // If there were no lines left return null.
+        // If there were no lines left, there is no sentence.
         if (line == null)
-            return null;
+            return false;
 
         // If we found a line, and we keep any headers, then append it.  
         if (!ignoreHeader)
@@ -120,7 +177,7 @@ public class DependencyFileDocumentIterator implements Iterator<Document> {
         while ((line = documentsReader.readLine()) != null
                && line.length() != 0)
             sb.append(line).append("\n");
-        return sb.toString();
+        return true;
     }
 
     /**
@@ -0,0 +1,500 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.text;
+
+import edu.ucla.sspace.common.SemanticSpace;
+
+import edu.ucla.sspace.util.WorkQueue;
+
+import java.io.BufferedReader;
+import java.io.IOError;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A bounded producer/consumer pipeline for feeding documents to a {@link
+ * SemanticSpace}.  One or more dedicated reader threads pull {@link Document}
+ * instances from a shared iterator, fully read their contents into memory and
+ * place them in batches onto a bounded queue.  A pool of worker threads drains
+ * the queue and calls {@link SemanticSpace#processDocument(BufferedReader)
+ * processDocument} on each of the pre-read documents.  When the queue is full,
+ * the readers block until the workers have caught up, which bounds the amount
+ * of document text held in memory at any one time.
+ *
+ * <p> Separating the stages means that the workers never contend on the
+ * document iterator itself, and that the file I/O and decompression performed
+ * by the iterator overlaps with the tokenization and processing performed by
+ * the space.  The only synchronization on the iterator is a brief lock by the
+ * reader threads to retrieve the next document; the document's text is read
+ * outside of this lock.
+ *
+ * <p> Each stage keeps counters of the number of documents and characters it
+ * has handled, the time spent working and the time spent blocked on the queue.
+ * These are reported to the logger at {@code Level.FINE} while the pipeline
+ * runs and are available afterwards through the accessor methods.
+ *
+ * <p> This class is thread-safe, but each instance may only be {@link
+ * #run(SemanticSpace, int) run} once.
+ *
+ * @author David Jurgens
+ */
+public class DocumentPipeline {
+
+    private static final Logger LOGGER = 
+        Logger.getLogger(DocumentPipeline.class.getName());
+
+    /**
+     * The default number of documents read into each batch
+     */
+    public static final int DEFAULT_BATCH_SIZE = 16;
+
+    /**
+     * The default number of batches that may be waiting to be processed, per
+     * worker thread
+     */
+    public static final int DEFAULT_BATCHES_PER_WORKER = 4;
+
+    /**
+     * The number of batches that are processed between each progress report
+     */
+    private static final int REPORT_INTERVAL = 1000;
+
+    /**
+     * A sentinel batch that signals to a worker that no more documents will
+     * be enqueued.
+     */
+    private static final List<Document> END_OF_DOCUMENTS = 
+        Collections.<Document>emptyList();
+
+    /**
+     * The source of documents, which is only accessed while holding its lock.
+     */
+    private final Iterator<Document> docIter;
+
+    /**
+     * The number of threads that read documents from {@code docIter}
+     */
+    private final int numReaders;
+
+    /**
+     * The maximum number of documents placed in each batch
+     */
+    private final int batchSize;
+
+    /**
+     * The maximum number of batches that may be queued, or {@code 0} if the
+     * capacity should be based on the number of workers.
+     */
+    private final int queueCapacity;
+
+    /**
+     * The number of documents fully read by the reader threads
+     */
+    private final AtomicLong docsRead;
+
+    /**
+     * The number of characters read by the reader threads
+     */
+    private final AtomicLong charsRead;
+
+    /**
+     * The total time in nanoseconds the reader threads spent reading documents
+     */
+    private final AtomicLong readNanos;
+
+    /**
+     * The total time in nanoseconds the reader threads spent waiting for space
+     * in the queue
+     */
+    private final AtomicLong readerBlockedNanos;
+
+    /**
+     * The number of documents processed by the worker threads
+     */
+    private final AtomicLong docsProcessed;
+
+    /**
+     * The total time in nanoseconds the worker threads spent processing
+     * documents
+     */
+    private final AtomicLong processNanos;
+
+    /**
+     * The total time in nanoseconds the worker threads spent waiting for a
+     * batch to become available
+     */
+    private final AtomicLong workerBlockedNanos;
+
+    /**
+     * The number of batches taken off the queue by the workers
+     */
+    private final AtomicLong batchesProcessed;
+
+    /**
+     * The wall-clock time in nanoseconds at which the pipeline started
+     */
+    private volatile long startTime;
+
+    /**
+     * The wall-clock time in nanoseconds at which the pipeline finished, or
+     * {@code 0} if it is still running
+     */
+    private volatile long endTime;
+
+    /**
+     * The first error raised by a reader thread, which is rethrown once all
+     * the workers have finished.
+     */
+    private volatile Throwable readerError;
+
+    /**
+     * Whether {@link #run(SemanticSpace, int) run} has been called.
+     */
+    private boolean hasRun;
+
+    /**
+     * Creates a pipeline over the documents using a single reader thread and
+     * the default batch and queue sizes.
+     */
+    public DocumentPipeline(Iterator<Document> docIter) {
+        this(docIter, 1, DEFAULT_BATCH_SIZE, 0);
+    }
+
+    /**
+     * Creates a pipeline over the documents.
+     *
+     * @param docIter the documents to process
+     * @param numReaders the number of threads that read documents from {@code
+     *        docIter}
+     * @param batchSize the maximum number of documents in each batch passed
+     *        from a reader to a worker
+     * @param queueCapacity the maximum number of batches that may be waiting to
+     *        be processed before the readers block, or {@code 0} to use {@value
+     *        #DEFAULT_BATCHES_PER_WORKER} batches per worker thread
+     *
+     * @throws IllegalArgumentException if {@code numReaders} or {@code
+     *         batchSize} is not positive, or if {@code queueCapacity} is
+     *         negative
+     */
+    public DocumentPipeline(Iterator<Document> docIter, int numReaders,
+                            int batchSize, int queueCapacity) {
+        if (docIter == null)
+            throw new NullPointerException("document iterator cannot be null");
+        if (numReaders < 1)
+            throw new IllegalArgumentException(
+                "must have at least one reader thread: " + numReaders);
+        if (batchSize < 1)
+            throw new IllegalArgumentException(
+                "batch size must be positive: " + batchSize);
+        if (queueCapacity < 0)
+            throw new IllegalArgumentException(
+                "queue capacity cannot be negative: " + queueCapacity);
+        this.docIter = docIter;
+        this.numReaders = numReaders;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        docsRead = new AtomicLong();
+        charsRead = new AtomicLong();
+        readNanos = new AtomicLong();
+        readerBlockedNanos = new AtomicLong();
+        docsProcessed = new AtomicLong();
+        processNanos = new AtomicLong();
+        workerBlockedNanos = new AtomicLong();
+        batchesProcessed = new AtomicLong();
+        readerError = null;
+        hasRun = false;
+    }
+
+    /**
+     * Processes every document using the provided number of worker threads
+     * and returns once all documents have been passed to {@code
+     * sspace.processDocument}.  Errors thrown while processing an individual
+     * document are logged and do not stop the pipeline.
+     *
+     * @param sspace the space that will process each document
+     * @param numWorkers the number of threads calling {@code processDocument}
+     *
+     * @throws IOException if an error occurred while reading the documents
+     * @throws IllegalStateException if this pipeline has already been run
+     */
+    public void run(final SemanticSpace sspace, int numWorkers) 
+            throws IOException {
+        synchronized (this) {
+            if (hasRun)
+                throw new IllegalStateException("pipeline has already run");
+            hasRun = true;
+        }
+        if (numWorkers < 1)
+            throw new IllegalArgumentException(
+                "must have at least one worker thread: " + numWorkers);
+
+        int capacity = (queueCapacity > 0)
+            ? queueCapacity
+            : numWorkers * DEFAULT_BATCHES_PER_WORKER;
+        final BlockingQueue<List<Document>> batches = 
+            new ArrayBlockingQueue<List<Document>>(capacity);
+        final AtomicInteger activeReaders = new AtomicInteger(numReaders);
+        final int workers = numWorkers;
+
+        startTime = System.nanoTime();
+        LOGGER.fine(String.format(
+            "Processing documents with %d reader thread(s), %d worker " +
+            "thread(s), batches of %d documents and a queue of %d batches",
+            numReaders, numWorkers, batchSize, capacity));
+
+        for (int i = 0; i < numReaders; ++i) {
+            Thread reader = new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            readDocuments(batches);
+                        } catch (Throwable t) {
+                            if (readerError == null)
+                                readerError = t;
+                        } finally {
+                            // The last reader to finish tells every worker
+                            // that no further documents will arrive
+                            if (activeReaders.decrementAndGet() == 0)
+                                signalEnd(batches, workers);
+                        }
+                    }
+                }, "DocumentPipeline reader " + i);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        WorkQueue queue = WorkQueue.getWorkQueue(numWorkers);
+        Object key = queue.registerTaskGroup(numWorkers);
+        for (int i = 0; i < numWorkers; ++i) {
+            queue.add(key, new Runnable() {
+                    public void run() {
+                        processDocuments(sspace, batches);
+                    }
+                });
+        }
+        queue.await(key);
+        endTime = System.nanoTime();
+        LOGGER.fine(toString());
+
+        if (readerError != null) {
+            if (readerError instanceof IOException)
+                throw (IOException)readerError;
+            if (readerError instanceof RuntimeException)
+                throw (RuntimeException)readerError;
+            if (readerError instanceof Error)
+                throw (Error)readerError;
+            throw new IOError(readerError);
+        }
+    }
+
+    /**
+     * Repeatedly retrieves documents from the iterator, reads their text and
+     * enqueues them in batches until no documents remain.
+     */
+    private void readDocuments(BlockingQueue<List<Document>> batches) 
+            throws IOException, InterruptedException {
+        List<Document> batch = new ArrayList<Document>(batchSize);
+        char[] buffer = new char[8192];
+        StringBuilder sb = new StringBuilder();
+        while (readerError == null) {
+            Document doc = null;
+            synchronized (docIter) {
+                if (!docIter.hasNext())
+                    break;
+                doc = docIter.next();
+            }
+            long start = System.nanoTime();
+            sb.setLength(0);
+            BufferedReader br = doc.reader();
+            for (int read; (read = br.read(buffer)) != -1; )
+                sb.append(buffer, 0, read);
+            br.close();
+            batch.add(new StringDocument(sb.toString()));
+            readNanos.addAndGet(System.nanoTime() - start);
+            docsRead.incrementAndGet();
+            charsRead.addAndGet(sb.length());
+
+            if (batch.size() == batchSize) {
+                enqueue(batches, batch);
+                batch = new ArrayList<Document>(batchSize);
+            }
+        }
+        if (!batch.isEmpty())
+            enqueue(batches, batch);
+    }
+
+    /**
+     * Places the batch on the queue, blocking until space is available.
+     */
+    private void enqueue(BlockingQueue<List<Document>> batches,
+                         List<Document> batch) throws InterruptedException {
+        long start = System.nanoTime();
+        batches.put(batch);
+        readerBlockedNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * Enqueues one end-of-documents sentinel for each of the workers.
+     */
+    private void signalEnd(BlockingQueue<List<Document>> batches, 
+                           int numWorkers) {
+        try {
+            for (int i = 0; i < numWorkers; ++i)
+                batches.put(END_OF_DOCUMENTS);
+        } catch (InterruptedException ie) {
+            throw new IllegalStateException(
+                "interrupted while finishing the pipeline", ie);
+        }
+    }
+
+    /**
+     * Processes batches of documents until the end-of-documents sentinel is
+     * received.
+     */
+    private void processDocuments(SemanticSpace sspace,
+                                  BlockingQueue<List<Document>> batches) {
+        while (true) {
+            List<Document> batch = null;
+            long start = System.nanoTime();
+            try {
+                batch = batches.take();
+            } catch (InterruptedException ie) {
+                throw new IllegalStateException(
+                    "interrupted while waiting for documents", ie);
+            }
+            workerBlockedNanos.addAndGet(System.nanoTime() - start);
+            if (batch == END_OF_DOCUMENTS)
+                return;
+
+            for (Document doc : batch) {
+                long docStart = System.nanoTime();
+                try {
+                    sspace.processDocument(doc.reader());
+                } catch (Throwable t) {
+                    LOGGER.log(Level.WARNING, 
+                               "Error while processing document", t);
+                }
+                processNanos.addAndGet(System.nanoTime() - docStart);
+                docsProcessed.incrementAndGet();
+            }
+            if (batchesProcessed.incrementAndGet() % REPORT_INTERVAL == 0
+                    && LOGGER.isLoggable(Level.FINE))
+                LOGGER.fine(toString());
+        }
+    }
+
+    /**
+     * Returns the number of documents read by the reader threads.
+     */
+    public long getDocumentsRead() {
+        return docsRead.get();
+    }
+
+    /**
+     * Returns the number of characters read by the reader threads.
+     */
+    public long getCharactersRead() {
+        return charsRead.get();
+    }
+
+    /**
+     * Returns the number of documents processed by the worker threads.
+     */
+    public long getDocumentsProcessed() {
+        return docsProcessed.get();
+    }
+
+    /**
+     * Returns the total number of seconds the reader threads spent reading
+     * document text, summed across all readers.
+     */
+    public double getReadSeconds() {
+        return readNanos.get() / 1e9;
+    }
+
+    /**
+     * Returns the total number of seconds the reader threads spent blocked
+     * because the queue was full, summed across all readers.  A large value
+     * indicates that the workers are the bottleneck.
+     */
+    public double getReaderBlockedSeconds() {
+        return readerBlockedNanos.get() / 1e9;
+    }
+
+    /**
+     * Returns the total number of seconds the worker threads spent processing
+     * documents, summed across all workers.
+     */
+    public double getProcessSeconds() {
+        return processNanos.get() / 1e9;
+    }
+
+    /**
+     * Returns the total number of seconds the worker threads spent waiting for
+     * documents because the queue was empty, summed across all workers.  A
+     * large value indicates that the readers are the bottleneck.
+     */
+    public double getWorkerBlockedSeconds() {
+        return workerBlockedNanos.get() / 1e9;
+    }
+
+    /**
+     * Returns the number of seconds since the pipeline started, or the total
+     * duration if it has finished.
+     */
+    public double getElapsedSeconds() {
+        if (startTime == 0)
+            return 0;
+        long end = (endTime == 0) ? System.nanoTime() : endTime;
+        return (end - startTime) / 1e9;
+    }
+
+    /**
+     * Returns a summary of the throughput of each stage of the pipeline.
+     */
+    public String toString() {
+        double elapsed = getElapsedSeconds();
+        double readRate = (elapsed == 0) ? 0 : docsRead.get() / elapsed;
+        double processRate = (elapsed == 0) ? 0 : docsProcessed.get() / elapsed;
+        return String.format(
+            "read %d documents (%d characters, %.1f docs/sec, %.3f seconds " +
+            "reading, %.3f seconds blocked); processed %d documents " +
+            "(%.1f docs/sec, %.3f seconds processing, %.3f seconds waiting) " +
+            "in %.3f seconds",
+            docsRead.get(), charsRead.get(), readRate, getReadSeconds(),
+            getReaderBlockedSeconds(), docsProcessed.get(), processRate,
+            getProcessSeconds(), getWorkerBlockedSeconds(), elapsed);
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.text;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * A dictionary that assigns each distinct term a dense integer id, in the order
+ * the terms are first seen, and keeps one canonical {@code String} for each
+ * term.  Terms may be looked up from any {@link CharSequence} or from a range
+ * of a {@code char} array, such as the buffer of a {@link TokenScanner}, so
+ * mapping a token that is already in the dictionary to its id creates no
+ * objects.  Filters and {@link edu.ucla.sspace.basis.BasisMapping basis
+ * mappings} may then work with the ids rather than the strings.
+ *
+ * <p> This class is thread-safe.  Lookups never block, while adding a term
+ * acquires a lock.  A lookup that runs concurrently with the addition of the
+ * same term may report the term as missing, but {@link #intern(CharSequence)
+ * intern} always returns the term's single id.
+ *
+ * @see TokenScanner
+ *
+ * @author David Jurgens
+ */
+public class TermDictionary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The id returned for a term that is not in the dictionary
+     */
+    public static final int NO_TERM = -1;
+
+    /**
+     * The hash table of terms, whose size is a power of two and which is kept
+     * at most half full.  A new table is published whenever the table grows,
+     * so that lookups in progress finish with a consistent table.
+     */
+    private transient volatile Entry[] table;
+
+    /**
+     * The canonical string for each term, indexed by id.  Only the first
+     * {@code size} values are valid.
+     */
+    private transient volatile String[] terms;
+
+    /**
+     * The number of terms in the dictionary.  This is written after a term is
+     * added to {@code terms}, which makes the term visible to {@link
+     * #getTerm(int)}, and before the term is added to {@code table}, so that
+     * any id found in the table is always less than the size.
+     */
+    private transient volatile int size;
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public TermDictionary() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty dictionary with space for the specified number of terms
+     * before it needs to grow.
+     */
+    public TermDictionary(int expectedTerms) {
+        if (expectedTerms < 0)
+            throw new IllegalArgumentException(
+                "Expected terms must be non-negative: " + expectedTerms);
+        init(expectedTerms);
+    }
+
+    /**
+     * Allocates the structures for the expected number of terms.
+     */
+    private void init(int expectedTerms) {
+        int capacity = 16;
+        while (capacity < expectedTerms * 2)
+            capacity <<= 1;
+        table = new Entry[capacity];
+        terms = new String[Math.max(expectedTerms, 16)];
+        size = 0;
+    }
+
+    /**
+     * Returns the id of the term or {@link #NO_TERM} if the term is not in the
+     * dictionary.
+     */
+    public int getId(CharSequence term) {
+        return find(table, term, hash(term));
+    }
+
+    /**
+     * Returns the id of the term stored in {@code length} characters of the
+     * array starting at {@code offset}, or {@link #NO_TERM} if the term is not
+     * in the dictionary.
+     */
+    public int getId(char[] chars, int offset, int length) {
+        return find(table, chars, offset, length, hash(chars, offset, length));
+    }
+
+    /**
+     * Returns the id of the term, first adding the term to the dictionary if it
+     * is not already present.
+     */
+    public int intern(CharSequence term) {
+        int hash = hash(term);
+        int id = find(table, term, hash);
+        if (id != NO_TERM)
+            return id;
+        synchronized (this) {
+            id = find(table, term, hash);
+            return (id != NO_TERM) ? id : add(term.toString(), hash);
+        }
+    }
+
+    /**
+     * Returns the id of the term stored in {@code length} characters of the
+     * array starting at {@code offset}, first adding the term to the
+     * dictionary if it is not already present.
+     */
+    public int intern(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        int id = find(table, chars, offset, length, hash);
+        if (id != NO_TERM)
+            return id;
+        synchronized (this) {
+            id = find(table, chars, offset, length, hash);
+            return (id != NO_TERM) 
+                ? id : add(new String(chars, offset, length), hash);
+        }
+    }
+
+    /**
+     * Returns the canonical string for the term with the specified id.
+     *
+     * @throws IndexOutOfBoundsException if no term has the id
+     */
+    public String getTerm(int id) {
+        // Read the size first to ensure the term is visible
+        int n = size;
+        if (id < 0 || id >= n)
+            throw new IndexOutOfBoundsException("No term with id " + id);
+        return terms[id];
+    }
+
+    /**
+     * Returns the canonical string for the term, or {@code null} if the term
+     * is not in the dictionary.
+     */
+    public String getCanonical(CharSequence term) {
+        int id = getId(term);
+        return (id == NO_TERM) ? null : getTerm(id);
+    }
+
+    /**
+     * Returns the number of terms in the dictionary.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an unmodifiable view of the terms in the dictionary, which are
+     * iterated in the order of their ids.
+     */
+    public Set<String> terms() {
+        return new AbstractSet<String>() {
+            public boolean contains(Object o) {
+                return o instanceof CharSequence 
+                    && getId((CharSequence)o) != NO_TERM;
+            }
+
+            public Iterator<String> iterator() {
+                final int n = size;
+                final String[] snapshot = terms;
+                return new Iterator<String>() {
+                    int next = 0;
+
+                    public boolean hasNext() {
+                        return next < n;
+                    }
+
+                    public String next() {
+                        if (next >= n)
+                            throw new NoSuchElementException();
+                        return snapshot[next++];
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException(
+                            "Terms cannot be removed");
+                    }
+                };
+            }
+
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Adds the new term with the hash and returns its id.  This method must be
+     * called while holding the lock.
+     */
+    private int add(String term, int hash) {
+        int id = size;
+        // Make the term visible to getTerm() before its id can be found in
+        // the table, so that a lock-free lookup never sees an id that is not
+        // yet valid
+        String[] s = terms;
+        if (id == s.length) {
+            s = Arrays.copyOf(s, s.length * 2);
+            terms = s;
+        }
+        s[id] = term;
+        size = id + 1;
+
+        Entry[] t = table;
+        if ((id + 1) * 2 > t.length) {
+            Entry[] larger = new Entry[t.length * 2];
+            for (Entry e : t) {
+                if (e != null)
+                    larger[slot(larger, e.hash)] = e;
+            }
+            t = larger;
+        }
+        t[slot(t, hash)] = new Entry(term, hash, id);
+        // Publish the table after the entry is stored, which also publishes a
+        // newly grown table with all of its entries
+        table = t;
+        return id;
+    }
+
+    /**
+     * Returns the index of the first empty slot in the table for the hash.
+     */
+    private static int slot(Entry[] t, int hash) {
+        int mask = t.length - 1;
+        int i = spread(hash) & mask;
+        while (t[i] != null)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * Returns the id of the term in the table or {@link #NO_TERM} if absent.
+     */
+    private static int find(Entry[] t, CharSequence term, int hash) {
+        int mask = t.length - 1;
+        for (int i = spread(hash) & mask; t[i] != null; i = (i + 1) & mask) {
+            Entry e = t[i];
+            if (e.hash == hash && contentEquals(e.term, term))
+                return e.id;
+        }
+        return NO_TERM;
+    }
+
+    /**
+     * Returns the id of the term in the table or {@link #NO_TERM} if absent.
+     */
+    private static int find(Entry[] t, char[] chars, int offset, int length,
+                            int hash) {
+        int mask = t.length - 1;
+        for (int i = spread(hash) & mask; t[i] != null; i = (i + 1) & mask) {
+            Entry e = t[i];
+            if (e.hash == hash && contentEquals(e.term, chars, offset, length))
+                return e.id;
+        }
+        return NO_TERM;
+    }
+
+    /**
+     * Returns {@code true} if the string has the same characters as the
+     * sequence.
+     */
+    private static boolean contentEquals(String s, CharSequence cs) {
+        int length = s.length();
+        if (length != cs.length())
+            return false;
+        for (int i = 0; i < length; ++i) {
+            if (s.charAt(i) != cs.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the string has the same characters as the range
+     * of the array.
+     */
+    private static boolean contentEquals(String s, char[] chars, int offset,
+                                         int length) {
+        if (s.length() != length)
+            return false;
+        for (int i = 0; i < length; ++i) {
+            if (s.charAt(i) != chars[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash of the sequence, which is the same as the {@link
+     * String#hashCode()} of its characters.
+     */
+    private static int hash(CharSequence cs) {
+        if (cs instanceof String)
+            return cs.hashCode();
+        int h = 0;
+        int length = cs.length();
+        for (int i = 0; i < length; ++i)
+            h = 31 * h + cs.charAt(i);
+        return h;
+    }
+
+    /**
+     * Returns the hash of the range of the array, which is the same as the
+     * {@link String#hashCode()} of its characters.
+     */
+    private static int hash(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; ++i)
+            h = 31 * h + chars[i];
+        return h;
+    }
+
+    /**
+     * Mixes the bits of the hash so that similar strings fall into different
+     * slots of the table.
+     */
+    private static int spread(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+
+    /**
+     * Writes the terms in the order of their ids.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        synchronized (this) {
+            int n = size;
+            out.writeInt(n);
+            for (int i = 0; i < n; ++i)
+                out.writeObject(terms[i]);
+        }
+    }
+
+    /**
+     * Reads the terms and reassigns them their original ids.
+     */
+    private void readObject(ObjectInputStream in) 
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int n = in.readInt();
+        init(n);
+        for (int i = 0; i < n; ++i) {
+            String term = (String)in.readObject();
+            add(term, term.hashCode());
+        }
+    }
+
+    /**
+     * A term and its id in the hash table.  The fields are final so that
+     * entries may be safely read without locking.
+     */
+    private static final class Entry {
+
+        final String term;
+
+        final int hash;
+
+        final int id;
+
+        Entry(String term, int hash, int id) {
+            this.term = term;
+            this.hash = hash;
+            this.id = id;
+        }
+    }
+}
@@ -82,6 +82,13 @@ public class TokenFilter {
      */
     private TokenFilter parent;
 
+    /**
+     * A dictionary of the filter's tokens, which is used to check tokens that
+     * are not {@code String} instances, or {@code null} if it has not yet
+     * been needed.
+     */
+    private volatile TermDictionary dictionary;
+
     /**
      * Constructs a filter that accepts only those tokens present in {@code tokens}.
      */
@@ -137,6 +144,32 @@ public class TokenFilter {
 		tokens.contains(token) ^ excludeTokens;
     }
 
+    /**
+     * Returns {@code true} if the token is valid according to the configuration
+     * of this filter.  Unlike {@link #accept(String)}, this method does not
+     * require a {@code String}, so tokens from a {@link TokenScanner} may be
+     * checked without creating one.  The filter's tokens are copied into a
+     * {@link TermDictionary} on the first call, so later changes to the set
+     * with which this filter was created are not seen by this method.
+     *
+     * @param token a token to be considered
+     *
+     * @return {@code true} if this token is valid
+     */
+    public boolean accept(CharSequence token) {
+        if (token instanceof String)
+            return accept((String)token);
+        TermDictionary dict = dictionary;
+        if (dict == null) {
+            dict = new TermDictionary(tokens.size());
+            for (String t : tokens)
+                dict.intern(t);
+            dictionary = dict;
+        }
+	return (parent == null || parent.accept(token)) &&
+		(dict.getId(token) != TermDictionary.NO_TERM) ^ excludeTokens;
+    }
+
     /**
      * Creates a chained filter by accepting the subset of whatever {@code
      * parent} accepts less what tokens this filter rejects.  
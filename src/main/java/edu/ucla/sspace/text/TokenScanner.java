@@ -0,0 +1,308 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.text;
+
+import java.io.IOError;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+
+/**
+ * A scanner that splits the text of a {@link Reader} into the tokens separated
+ * by white space, without creating any objects per token.  The characters are
+ * read into a reusable buffer, and each call to {@link #advance()} locates the
+ * next token within it.  The current token may then be accessed as a {@link
+ * CharSequence} view with {@link #token()}, or as a range of the buffer with
+ * {@link #buffer()}, {@link #tokenStart()} and {@link #tokenLength()}, which
+ * is how a {@link TermDictionary} maps the token to its term id without a
+ * {@code String}.  Callers that need to keep the token after the next call to
+ * {@code advance} should call {@link #tokenString()}.
+ *
+ * <p> White space is defined as it is for the {@code \s} class of {@link
+ * java.util.regex.Pattern}: a space, tab, new line, vertical tab, form feed or
+ * carriage return.  A scanner therefore returns exactly the same tokens as the
+ * {@code \S+} pattern once used by {@link WordIterator}, which is now an
+ * adapter over this class.
+ *
+ * <p> A scanner may be reused for another document with {@link #reset(Reader)},
+ * which keeps its buffer.  This class is not thread-safe.
+ *
+ * @see WordIterator
+ * @see TermDictionary
+ *
+ * @author David Jurgens
+ */
+public class TokenScanner {
+
+    /**
+     * The initial number of characters in the buffer
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * The reader from which characters are read, or {@code null} if the end
+     * of its characters has been reached.
+     */
+    private Reader reader;
+
+    /**
+     * The buffer of characters read from the reader.  The buffer only grows
+     * when a single token is longer than it.
+     */
+    private char[] buffer;
+
+    /**
+     * The index in the buffer of the next character to scan
+     */
+    private int pos;
+
+    /**
+     * The number of valid characters in the buffer
+     */
+    private int limit;
+
+    /**
+     * The index in the buffer of the first character of the current token
+     */
+    private int tokenStart;
+
+    /**
+     * The number of characters in the current token, or {@code -1} if there is
+     * no current token.
+     */
+    private int tokenLength;
+
+    /**
+     * The view of the current token returned by {@link #token()}
+     */
+    private final TokenView view;
+
+    /**
+     * Creates a scanner over the tokens in the string.
+     */
+    public TokenScanner(String str) {
+        this(new StringReader(str));
+    }
+
+    /**
+     * Creates a scanner over the tokens in the text of the reader.
+     */
+    public TokenScanner(Reader reader) {
+        buffer = new char[DEFAULT_BUFFER_SIZE];
+        view = new TokenView();
+        reset(reader);
+    }
+
+    /**
+     * Discards any remaining tokens and begins scanning the text of the
+     * provided reader, reusing this scanner's buffer.  The previous reader is
+     * not closed.
+     */
+    public void reset(Reader reader) {
+        this.reader = reader;
+        pos = 0;
+        limit = 0;
+        tokenStart = 0;
+        tokenLength = -1;
+    }
+
+    /**
+     * Returns {@code true} if {@code c} is a white space character.
+     */
+    static boolean isWhitespace(char c) {
+        // The characters matched by \s: ' ', \t, \n, \u000B, \f and \r
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    /**
+     * Advances to the next token, returning {@code true} if there was one or
+     * {@code false} if the end of the text was reached, in which case the
+     * reader is closed.
+     *
+     * @throws IOError if an error occurs while reading
+     */
+    public boolean advance() {
+        try {
+            // Skip the white space before the token
+            while (true) {
+                if (pos == limit && !fill(false)) {
+                    tokenLength = -1;
+                    return false;
+                }
+                if (!isWhitespace(buffer[pos]))
+                    break;
+                pos++;
+            }
+            tokenStart = pos;
+            // Find the end of the token, reading more characters if the token
+            // extends past the end of the buffer
+            while (true) {
+                if (pos == limit && !fill(true))
+                    break;
+                if (isWhitespace(buffer[pos]))
+                    break;
+                pos++;
+            }
+            tokenLength = pos - tokenStart;
+            return true;
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * Reads more characters into the buffer, returning {@code false} if the
+     * reader has no more characters.
+     *
+     * @param inToken {@code true} if the characters of the buffer from {@code
+     *        tokenStart} onward belong to a token and must be retained
+     */
+    private boolean fill(boolean inToken) throws IOException {
+        if (reader == null)
+            return false;
+        if (inToken) {
+            // Move the partial token to the front of the buffer, growing the
+            // buffer if the token already fills it
+            int partial = limit - tokenStart;
+            if (partial == buffer.length) {
+                char[] larger = new char[buffer.length * 2];
+                System.arraycopy(buffer, tokenStart, larger, 0, partial);
+                buffer = larger;
+            }
+            else 
+                System.arraycopy(buffer, tokenStart, buffer, 0, partial);
+            tokenStart = 0;
+            pos = partial;
+            limit = partial;
+        }
+        else {
+            pos = 0;
+            limit = 0;
+        }
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        while (read == 0)
+            read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            reader.close();
+            reader = null;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    /**
+     * Returns a view of the current token.  The view is reused, so its
+     * contents change on the next call to {@link #advance()}.
+     *
+     * @throws IllegalStateException if there is no current token
+     */
+    public CharSequence token() {
+        checkToken();
+        return view;
+    }
+
+    /**
+     * Returns the current token as a new {@code String}.
+     *
+     * @throws IllegalStateException if there is no current token
+     */
+    public String tokenString() {
+        checkToken();
+        return new String(buffer, tokenStart, tokenLength);
+    }
+
+    /**
+     * Returns the buffer that contains the current token.  The buffer is
+     * reused, so its contents change on the next call to {@link #advance()}.
+     */
+    public char[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the index in the {@link #buffer()} of the first character of the
+     * current token.
+     */
+    public int tokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * Returns the number of characters in the current token.
+     *
+     * @throws IllegalStateException if there is no current token
+     */
+    public int tokenLength() {
+        checkToken();
+        return tokenLength;
+    }
+
+    /**
+     * Throws an {@link IllegalStateException} if there is no current token.
+     */
+    private void checkToken() {
+        if (tokenLength < 0)
+            throw new IllegalStateException("No current token");
+    }
+
+    /**
+     * A {@link CharSequence} view of the current token.
+     */
+    private class TokenView implements CharSequence {
+
+        /**
+         * {@inheritDoc}
+         */
+        public char charAt(int index) {
+            if (index < 0 || index >= tokenLength)
+                throw new IndexOutOfBoundsException("index: " + index);
+            return buffer[tokenStart + index];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int length() {
+            return tokenLength;
+        }
+
+        /**
+         * Returns the characters of the token in the range as a new {@code
+         * String}.
+         */
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > tokenLength || start > end)
+                throw new IndexOutOfBoundsException(
+                    "invalid range: " + start + ", " + end);
+            return new String(buffer, tokenStart + start, end - start);
+        }
+
+        /**
+         * Returns the token as a new {@code String}.
+         */
+        public String toString() {
+            return new String(buffer, tokenStart, tokenLength);
+        }
+    }
+}
@@ -22,48 +22,40 @@
 package edu.ucla.sspace.text;
 
 import java.io.BufferedReader;
-import java.io.IOError;
-import java.io.IOException;
 import java.io.StringReader;
 
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 
 /**
  * An iterator over all of the tokens present in a {@link BufferedReader} that
- * are separated by any amount of white space.
+ * are separated by any amount of white space.  This class adapts a {@link
+ * TokenScanner} to the {@code Iterator} interface, so it must create a {@code
+ * String} for each token.  If the iterator is given a {@link TermDictionary},
+ * tokens that are in the dictionary are returned as their canonical strings,
+ * which avoids creating a new {@code String} for each occurrence of a common
+ * word.  Callers that can work with {@link CharSequence} views or term ids
+ * should use a {@code TokenScanner} directly.
  */
 public class WordIterator implements Iterator<String> {
 
     /**
-     * A fixed pattern matching all non-whitespace characters.
+     * The scanner that finds the tokens in the reader
      */
-    private static final Pattern notWhiteSpace = Pattern.compile("\\S+");
+    private final TokenScanner scanner;
 
     /**
-     * The stream from which to read tokens
+     * The dictionary of canonical strings for the tokens, or {@code null} if
+     * a new string is created for every token.
      */
-    private final BufferedReader br;
+    private final TermDictionary dictionary;
     
     /**
      * The next token to return
      */
     private String next;
 
-    /**
-     * The matcher that is tokenizing the current line
-     */
-    private Matcher matcher;
-    
-    /**
-     * The current line being considered
-     */
-    String curLine;
-
     /**
      * Constructs an iterator for all the tokens contained in the string
      */
@@ -76,8 +68,22 @@ public class WordIterator implements Iterator<String> {
      * provided reader.
      */
     public WordIterator(BufferedReader br) {
-        this.br = br;
-        curLine = null;
+        this(br, null);
+    }
+
+    /**
+     * Constructs an iterator for all the tokens contained in text of the
+     * provided reader, which returns the canonical string from the dictionary
+     * for any token that is in it.  Tokens are not added to the dictionary.
+     *
+     * @param br the reader whose tokens are returned
+     * @param dictionary the dictionary of canonical strings for the tokens,
+     *        or {@code null} if a new string should be returned for every
+     *        token
+     */
+    public WordIterator(BufferedReader br, TermDictionary dictionary) {
+        this.scanner = new TokenScanner(br);
+        this.dictionary = dictionary;
         advance();
     }
 
@@ -85,39 +91,19 @@ public class WordIterator implements Iterator<String> {
      * Advances to the next word in the buffer.
      */
     private void advance() {
-        try {
-            // loop until we find a word in the reader, or there are no more
-            // words
-            while (true) {
-                // if we haven't looked at any lines yet, or if the index into
-                // the current line is already at the end 
-                if (curLine == null || !matcher.find()) {
-
-                    String line = br.readLine();
-                    
-                    // if there aren't any more lines in the reader, then mark
-                    // next as null to indicate that there are no more words
-                    if (line == null) {
-                        next = null;
-                        br.close();
-                        return;
-                    }
-                    
-                    // create a new matcher to find all the tokens in this line
-                    matcher = notWhiteSpace.matcher(line);
-                    curLine = line;
-                    
-                    // skip lines with no matches
-                    if (!matcher.find())
-                        continue;                    
-                }
-
-                next = curLine.substring(matcher.start(), matcher.end());
-                break;
+        if (!scanner.advance()) {
+            next = null;
+            return;
+        }
+        if (dictionary != null) {
+            int id = dictionary.getId(scanner.buffer(), scanner.tokenStart(),
+                                      scanner.tokenLength());
+            if (id != TermDictionary.NO_TERM) {
+                next = dictionary.getTerm(id);
+                return;
             }
-        } catch (IOException ioe) {
-            throw new IOError(ioe);
         }
+        next = scanner.tokenString();
     }
 
     /**
@@ -25,16 +25,23 @@ import edu.ucla.sspace.common.ArgOptions;
 import edu.ucla.sspace.common.SemanticSpace;
 import edu.ucla.sspace.common.SemanticSpaceIO;
 
+import edu.ucla.sspace.similarity.CosineSimilarity;
+
+import edu.ucla.sspace.util.HnswNearestNeighborFinder;
 import edu.ucla.sspace.util.LoggerUtil;
 import edu.ucla.sspace.util.MultiMap;
 import edu.ucla.sspace.util.NearestNeighborFinder;
 import edu.ucla.sspace.util.PartitioningNearestNeighborFinder;
 import edu.ucla.sspace.util.SerializableUtil;
+import edu.ucla.sspace.util.SimpleNearestNeighborFinder;
 
 import java.io.File;
 import java.io.IOError;
 import java.io.IOException;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import java.util.logging.Level;
@@ -66,15 +73,36 @@ public class NearestNeighborFinderTool {
                           "file", true, "FILE", "Program Options");
         options.addOption('S', "saveFinder", "Saves the loaded or created " +
                           "finder to file", true, "FILE", "Program Options");
+        options.addOption('H', "hnswFinder", "Loads or creates an HNSW " +
+                          "finder for the provided .sspace file", 
+                          true, "FILE", "Program Options");
 
         options.addOption('p', "principleVectors", "Specifies the number " +
                           "of principle vectors to create",
                           true, "INT", "Creation Options");
 
+        options.addOption('m', "maxConnections", "The number of links per " +
+                          "word in the HNSW index (default: " +
+                          HnswNearestNeighborFinder.DEFAULT_MAX_CONNECTIONS +
+                          ")", true, "INT", "HNSW Options");
+        options.addOption('c', "efConstruction", "The number of candidates " +
+                          "considered when building the HNSW index " +
+                          "(default: " +
+                          HnswNearestNeighborFinder.DEFAULT_EF_CONSTRUCTION +
+                          ")", true, "INT", "HNSW Options");
+        options.addOption('e', "efSearch", "The number of candidates " +
+                          "considered for each query of the HNSW index " +
+                          "(default: " +
+                          HnswNearestNeighborFinder.DEFAULT_EF_SEARCH +
+                          ")", true, "INT", "HNSW Options");
+        options.addOption('r', "reportRecall", "Reports the recall@10 of the " +
+                          "HNSW index against an exact search for a random " +
+                          "sample of words", true, "INT", "HNSW Options");
+
         options.parseOptions(args);
 
-        if (options.hasOption("help") || 
-                (!options.hasOption('C') && !options.hasOption('L'))) {
+        if (options.hasOption("help") || (!options.hasOption('C') 
+                && !options.hasOption('L') && !options.hasOption('H'))) {
             usage(options);
             return;
         }
@@ -82,10 +110,20 @@ public class NearestNeighborFinderTool {
         if (options.hasOption("verbose")) 
             LoggerUtil.setLevel(Level.FINE);
 
-        if (options.hasOption('C') && options.hasOption('L')) {
+        if ((options.hasOption('C') ? 1 : 0) + (options.hasOption('L') ? 1 : 0)
+                + (options.hasOption('H') ? 1 : 0) > 1) {
             System.out.println("Cannot load and create a finder concurrently");
             System.exit(1);
         }
+
+        // The HNSW index is not serializable and is always saved next to its
+        // .sspace file, where later runs with -H will find it
+        if (options.hasOption('H') && options.hasOption('S')) {
+            throw new IllegalArgumentException(
+                "Cannot save an HNSW finder with --saveFinder; its index is " +
+                "saved to " + HnswNearestNeighborFinder.getIndexFile(
+                    new File(options.getStringOption('H'))));
+        }
         
         NearestNeighborFinder nnf = null;
         if (options.hasOption('C')) {
@@ -121,6 +159,13 @@ public class NearestNeighborFinderTool {
                 throw new IOError(ioe);
             }
         }
+        else if (options.hasOption('H')) {
+            try {
+                nnf = createHnswFinder(options);
+            } catch (IOException ioe) {
+                throw new IOError(ioe);
+            }
+        }
         else if (options.hasOption('L')) {
             nnf = SerializableUtil.<NearestNeighborFinder>load(
                 new File(options.getStringOption('L')));
@@ -154,6 +199,64 @@ public class NearestNeighborFinderTool {
         }
     }
 
+    /**
+     * Loads the HNSW index next to the {@code .sspace} file provided with the
+     * {@code -H} option, or builds and saves it if no index exists, and then
+     * reports its recall if requested.
+     */
+    private static NearestNeighborFinder createHnswFinder(ArgOptions options)
+            throws IOException {
+        File sspaceFile = new File(options.getStringOption('H'));
+        SemanticSpace sspace = SemanticSpaceIO.load(sspaceFile);
+        File indexFile = HnswNearestNeighborFinder.getIndexFile(sspaceFile);
+        HnswNearestNeighborFinder nnf = null;
+        if (indexFile.exists()) {
+            System.err.println("Loading the index from " + indexFile);
+            if (options.hasOption('m') || options.hasOption('c'))
+                System.err.println("Ignoring --maxConnections and " +
+                                   "--efConstruction, which only apply when " +
+                                   "building a new index; delete " + indexFile
+                                   + " to rebuild it");
+            nnf = HnswNearestNeighborFinder.load(indexFile, sspace);
+        }
+        else {
+            int maxConnections = (options.hasOption('m'))
+                ? options.getIntOption('m')
+                : HnswNearestNeighborFinder.DEFAULT_MAX_CONNECTIONS;
+            int efConstruction = (options.hasOption('c'))
+                ? options.getIntOption('c')
+                : HnswNearestNeighborFinder.DEFAULT_EF_CONSTRUCTION;
+            long start = System.currentTimeMillis();
+            nnf = new HnswNearestNeighborFinder(
+                sspace, new CosineSimilarity(), maxConnections, efConstruction,
+                HnswNearestNeighborFinder.DEFAULT_EF_SEARCH);
+            System.err.printf("Built an index of %d words in %.3f seconds%n",
+                              nnf.size(), 
+                              (System.currentTimeMillis() - start) / 1000d);
+            nnf.save(indexFile);
+        }
+        if (options.hasOption('e'))
+            nnf.setEfSearch(options.getIntOption('e'));
+
+        if (options.hasOption('r')) {
+            List<String> words = new ArrayList<String>(sspace.getWords());
+            Collections.shuffle(words);
+            List<String> sample = 
+                words.subList(0, Math.min(words.size(), 
+                                          options.getIntOption('r')));
+            NearestNeighborFinder exact = 
+                new SimpleNearestNeighborFinder(sspace);
+            long start = System.currentTimeMillis();
+            double recall = 
+                HnswNearestNeighborFinder.recallAtK(nnf, exact, sample, 10);
+            System.err.printf("recall@10 over %d words with efSearch=%d: " +
+                              "%.4f (%.3f seconds)%n", sample.size(),
+                              nnf.getEfSearch(), recall, 
+                              (System.currentTimeMillis() - start) / 1000d);
+        }
+        return nnf;
+    }
+
     /**
      * Prints the options and supported commands used by this program.
      *
@@ -179,7 +282,14 @@ public class NearestNeighborFinderTool {
             "which are reported to stdout:\n" +
             "\n" +
             "java -jar tools/nnf.jar --loadFinder my.nnf.ser " + 
-            "word1 word2 word3");
+            "word1 word2 word3\n" +
+            "\n" +
+            "For large spaces, an approximate HNSW index may be used " +
+            "instead, which is\n" +
+            "saved next to the .sspace file and reused on later runs:\n" +
+            "\n" +
+            "java -jar tools/nnf.jar --hnswFinder my.sspace " +
+            "--efSearch 100 --reportRecall 500 word1 word2");
     }
             
 }
\ No newline at end of file
@@ -22,30 +22,33 @@
 package edu.ucla.sspace.tools;
 
 import edu.ucla.sspace.common.ArgOptions;
-import edu.ucla.sspace.common.Similarity;
-import edu.ucla.sspace.common.Similarity.SimType;
 import edu.ucla.sspace.common.SemanticSpace;
 import edu.ucla.sspace.common.SemanticSpaceIO;
 
-import edu.ucla.sspace.util.BoundedSortedMap;
-import edu.ucla.sspace.util.NearestNeighborFinder;
-import edu.ucla.sspace.util.PartitioningNearestNeighborFinder;
-import edu.ucla.sspace.util.Pair;
-import edu.ucla.sspace.util.SortedMultiMap;
+import edu.ucla.sspace.similarity.CosineSimilarity;
 
-import java.io.BufferedReader;
+import edu.ucla.sspace.util.AllPairsNearestNeighbors;
+
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.Vectors;
+
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+
+import java.math.BigInteger;
 
-import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -54,6 +57,14 @@ import java.util.logging.Logger;
 /**
  * A utility tool for generating lists of most similar words for each word in a
  * {@link SemanticSpace}.
+ *
+ * <p> The neighbors are found with an exact {@link AllPairsNearestNeighbors}
+ * search, which compares blocks of words at a time across all of the available
+ * threads.  The lists for each block of words are appended to the output as
+ * soon as the block is complete, after which a checkpoint file next to the
+ * output records how many blocks have been written.  If the generator is
+ * stopped, running it again with the {@code --resume} option discards any
+ * partially written block and continues from the first incomplete one.
  */
 public class SimilarityListGenerator {
 
@@ -91,6 +102,14 @@ public class SimilarityListGenerator {
         argOptions.addOption('w', "overwrite", "specifies whether to " +
                              "overwrite the existing output (default: true)",
                              true, "boolean", "Program Options");
+        argOptions.addOption('b', "blockSize", "the number of words " +
+                             "compared at a time (default: " +
+                             AllPairsNearestNeighbors.DEFAULT_BLOCK_SIZE + ")",
+                             true, "int", "Program Options");
+        argOptions.addOption('r', "resume", "resumes an interrupted run " +
+                             "from the last completed block of words " +
+                             "(default: false)", false, null, 
+                             "Program Options");
         argOptions.addOption('v', "verbose", "prints verbose output "+ 
                              "(default: false)", false, null, 
                              "Program Options");
@@ -146,6 +165,16 @@ public class SimilarityListGenerator {
             overwrite = argOptions.getBooleanOption("overwrite");
         }
 
+        boolean resume = argOptions.hasOption("resume");
+        if (resume && !overwrite) {
+            throw new IllegalArgumentException(
+                "cannot resume when writing to a temporary file");
+        }
+
+        int blockSize = (argOptions.hasOption("blockSize"))
+            ? argOptions.getIntOption("blockSize")
+            : AllPairsNearestNeighbors.DEFAULT_BLOCK_SIZE;
+
         if (argOptions.hasOption('v')) {
             // update the loggers to print FINE messages as well as INFO
             // messages
@@ -164,7 +193,7 @@ public class SimilarityListGenerator {
         //         LOGGER.fine("using similarity measure: " + similarityType);
         
         final int numSimilar = (argOptions.hasOption('n'))
-            ? argOptions.getIntOption('n') : 10;
+            ? argOptions.getIntOption('n') : DEFAULT_SIMILAR_ITEMS;
 
         LOGGER.fine("loading .sspace file: " + sspaceFile.getName());
         
@@ -181,36 +210,169 @@ public class SimilarityListGenerator {
             output.deleteOnExit();            
         }
 
-        final PrintWriter outputWriter = new PrintWriter(output);
-            
-        final Set<String> words = sspace.getWords();
-        NearestNeighborFinder nnf = 
-            new PartitioningNearestNeighborFinder(sspace);
-
-
-        for (String word : words) {            
-            // compute the k most-similar words to this word
-            SortedMultiMap<Double,String> mostSimilar =
-                nnf.getMostSimilar(word, numSimilar);
-            
-            // once processing has finished write the k most-similar words to
-            // the output file.
-            StringBuilder sb = new StringBuilder(256);
-            sb.append(word).append("|");
-            for (Map.Entry<Double,String> e : 
-                     mostSimilar.entrySet()) {
-                String s = e.getValue();
-                Double d = e.getKey();
-
-                sb.append(s);
-                if (printSimilarity) {
-                    sb.append(" ").append(d);
+        // Load every word's vector once so that the blocks can be compared
+        // without going through the semantic space
+        final List<String> words = new ArrayList<String>(sspace.getWords());
+        List<DoubleVector> vectors = new ArrayList<DoubleVector>(words.size());
+        for (String word : words)
+            vectors.add(Vectors.asDouble(sspace.getVector(word)));
+
+        AllPairsNearestNeighbors search = new AllPairsNearestNeighbors(
+            vectors, new CosineSimilarity(), numSimilar, blockSize);
+
+        // The checkpoint records the settings of the run so that a resumed
+        // run never appends lists that were generated differently
+        final File checkpointFile = 
+            new File(outputDir, output.getName() + ".checkpoint");
+        final Properties settings = new Properties();
+        settings.setProperty("sspace", sspaceFile.getAbsolutePath());
+        settings.setProperty("words", String.valueOf(words.size()));
+        // Blocks are identified by the rows they cover, so a resumed run is
+        // only valid if the words are in the same order
+        settings.setProperty("wordOrder", hashWordOrder(words));
+        settings.setProperty("numSimilar", String.valueOf(numSimilar));
+        settings.setProperty("blockSize", String.valueOf(blockSize));
+        settings.setProperty("printSimilarity", 
+                             String.valueOf(printSimilarity));
+
+        int firstBlock = 0;
+        long validBytes = 0;
+        if (resume && checkpointFile.exists()) {
+            Properties checkpoint = loadCheckpoint(checkpointFile);
+            if (matches(checkpoint, settings)) {
+                firstBlock = Integer.parseInt(
+                    checkpoint.getProperty("completedBlocks"));
+                validBytes = Long.parseLong(checkpoint.getProperty("bytes"));
+                LOGGER.info("resuming from block " + firstBlock + " of " + 
+                            search.numBlocks());
+            }
+            else {
+                LOGGER.warning("the checkpoint does not match the current " +
+                               "settings; regenerating all lists");
+            }
+        }
+
+        // Discard anything written after the last checkpoint, which includes
+        // any partially written block
+        RandomAccessFile raf = new RandomAccessFile(output, "rw");
+        raf.setLength(validBytes);
+        raf.close();
+
+        final FileOutputStream fos = new FileOutputStream(output, true);
+        final BufferedWriter outputWriter = 
+            new BufferedWriter(new OutputStreamWriter(fos, "UTF-8"));
+        final int numBlocks = search.numBlocks();
+        try {
+            search.run(firstBlock, numThreads, 
+                       new AllPairsNearestNeighbors.BlockHandler() {
+                public void handle(int block, int firstRow, int[][] neighbors,
+                                   double[][] similarities) 
+                        throws IOException {
+                    for (int i = 0; i < neighbors.length; ++i) {
+                        // Write the k most-similar words in increasing order
+                        // of similarity
+                        StringBuilder sb = new StringBuilder(256);
+                        sb.append(words.get(firstRow + i)).append("|");
+                        for (int j = 0; j < neighbors[i].length; ++j) {
+                            sb.append(words.get(neighbors[i][j]));
+                            if (printSimilarity) {
+                                sb.append(" ").append(similarities[i][j]);
+                            }
+                            sb.append("|");
+                        }
+                        outputWriter.write(sb.toString());
+                        outputWriter.newLine();
+                    }
+                    // Ensure that the block is on disk before recording it
+                    outputWriter.flush();
+                    fos.getChannel().force(false);
+                    settings.setProperty("completedBlocks", 
+                                         String.valueOf(block + 1));
+                    settings.setProperty(
+                        "bytes", String.valueOf(fos.getChannel().position()));
+                    saveCheckpoint(settings, checkpointFile);
+                    LOGGER.fine("completed block " + (block + 1) + " of " + 
+                                numBlocks);
                 }
-                sb.append("|");
-                
+            });
+        } finally {
+            outputWriter.close();
+        }
+        // Once every list has been written, there is nothing left to resume
+        checkpointFile.delete();
+    }
+
+    /**
+     * Returns {@code true} if every setting has the same value in the
+     * checkpoint.
+     */
+    private static boolean matches(Properties checkpoint, Properties settings) {
+        for (String name : settings.stringPropertyNames()) {
+            if (!settings.getProperty(name).equals(
+                    checkpoint.getProperty(name)))
+                return false;
+        }
+        return checkpoint.getProperty("completedBlocks") != null
+            && checkpoint.getProperty("bytes") != null;
+    }
+
+    /**
+     * Returns the MD5 hash of the words in the order that they are listed.
+     */
+    private static String hashWordOrder(List<String> words) {
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            byte[] separator = { '\n' };
+            for (String word : words) {
+                md5.update(word.getBytes("UTF-8"));
+                md5.update(separator);
             }
-            outputWriter.println(sb.toString());
-            outputWriter.flush();
+            return new BigInteger(1, md5.digest()).toString(16);
+        } catch (NoSuchAlgorithmException nsae) {
+            // rethrow
+            throw new Error(nsae);
+        } catch (UnsupportedEncodingException uee) {
+            // rethrow
+            throw new Error(uee);
+        }
+    }
+
+    /**
+     * Loads the checkpoint from the file.
+     */
+    private static Properties loadCheckpoint(File checkpointFile) 
+            throws IOException {
+        Properties checkpoint = new Properties();
+        FileInputStream fis = new FileInputStream(checkpointFile);
+        try {
+            checkpoint.load(fis);
+        } finally {
+            fis.close();
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Saves the checkpoint to a temporary file and then renames it, so that a
+     * crash while saving never leaves a partial checkpoint.
+     */
+    private static void saveCheckpoint(Properties checkpoint, 
+                                       File checkpointFile) 
+            throws IOException {
+        File tmp = new File(checkpointFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            checkpoint.store(out, "SimilarityListGenerator checkpoint");
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(checkpointFile)) {
+            // Some platforms will not rename over an existing file
+            checkpointFile.delete();
+            if (!tmp.renameTo(checkpointFile))
+                throw new IOException("Unable to save the checkpoint to " +
+                                      checkpointFile);
         }
     }
 }
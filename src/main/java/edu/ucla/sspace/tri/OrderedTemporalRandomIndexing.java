@@ -23,6 +23,9 @@ package edu.ucla.sspace.tri;
 
 import edu.ucla.sspace.common.Filterable;
 
+import edu.ucla.sspace.index.HashedIndexVectorMap;
+import edu.ucla.sspace.index.RandomIndexVectorGenerator;
+
 import edu.ucla.sspace.ri.RandomIndexing;
 
 import edu.ucla.sspace.temporal.TemporalSemanticSpace;
@@ -244,6 +247,23 @@ public abstract class OrderedTemporalRandomIndexing
         if ((prop = props.getProperty(USE_SPARSE_SEMANTICS_PROPERTY)) != null)
             riProps.put(RandomIndexing.USE_SPARSE_SEMANTICS_PROPERTY, prop);
 
+        // Pass along how the index vectors are generated, which are shared by
+        // all of the semantic slices
+        if ((prop = props.getProperty(HashedIndexVectorMap.SEED_PROPERTY)) 
+                != null)
+            riProps.put(HashedIndexVectorMap.SEED_PROPERTY, prop);
+
+        if ((prop = props.getProperty(
+                 RandomIndexVectorGenerator.VALUES_TO_SET_PROPERTY)) != null)
+            riProps.put(RandomIndexVectorGenerator.VALUES_TO_SET_PROPERTY, 
+                        prop);
+
+        if ((prop = props.getProperty(
+                 RandomIndexVectorGenerator.INDEX_VECTOR_VARIANCE_PROPERTY)) 
+                != null)
+            riProps.put(
+                RandomIndexVectorGenerator.INDEX_VECTOR_VARIANCE_PROPERTY, prop);
+
         currentSlice = new RandomIndexing(riProps);
     }
 
@@ -467,6 +487,10 @@ public abstract class OrderedTemporalRandomIndexing
      *
      * @param m a mapping from token to the {@code TernaryVector} that should be
      *        used represent it when calculating other word's semantics
+     *
+     * @throws IllegalStateException if the index vectors are derived from the
+     *         seed set by {@value 
+     *         edu.ucla.sspace.index.HashedIndexVectorMap#SEED_PROPERTY}
      */
     public void setWordToIndexVector(Map<String,TernaryVector> m) {
         currentSlice.setWordToIndexVector(m);
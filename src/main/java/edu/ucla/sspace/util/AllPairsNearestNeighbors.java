@@ -0,0 +1,414 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import edu.ucla.sspace.similarity.SimilarityFunction;
+
+import edu.ucla.sspace.vector.DoubleVector;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * An exact all-pairs nearest neighbor search that finds the {@code k} most
+ * similar vectors for every vector in a list.  The vectors are divided into
+ * blocks of consecutive rows, and the neighbors of each block are found by
+ * comparing it with every block in turn.  Comparing a block of queries against
+ * a block of candidates at a time keeps the candidates in cache while all of
+ * the queries are compared to them, and each query retains only its {@code k}
+ * best candidates in a bounded heap.
+ *
+ * <p> Each block of queries is independent of the others, so the neighbors of
+ * a block are final as soon as it has been compared to every block.  The
+ * completed blocks are passed to a {@link BlockHandler} in order, which allows
+ * the results to be written incrementally and a search to be resumed from the
+ * first block that was not handled.
+ *
+ * <p> The blocks are processed concurrently by the {@link WorkQueue}.  Each
+ * thread claims the next unprocessed block when it finishes its current one,
+ * so threads that compare sparse or short blocks are never left idle.  At most
+ * a few blocks per thread are kept waiting for an earlier block to be handled.
+ *
+ * @author David Jurgens
+ */
+public class AllPairsNearestNeighbors {
+
+    /**
+     * The default number of vectors in each block
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    /**
+     * Receives the neighbors of each block of vectors as it is completed.
+     */
+    public interface BlockHandler {
+
+        /**
+         * Handles the neighbors of the vectors in the specified block.  The
+         * neighbors of vector {@code firstRow + i} are in {@code
+         * neighbors[i]}, in increasing order of similarity, with their
+         * similarities in {@code similarities[i]}.  Blocks are handled in
+         * order, one at a time.
+         *
+         * @throws IOException if the neighbors could not be handled, which
+         *         stops the search
+         */
+        void handle(int block, int firstRow, int[][] neighbors, 
+                    double[][] similarities) throws IOException;
+    }
+
+    /**
+     * The vectors whose neighbors are found
+     */
+    private final List<? extends DoubleVector> vectors;
+
+    /**
+     * The function used to compare vectors
+     */
+    private final SimilarityFunction simFunc;
+
+    /**
+     * The number of neighbors found for each vector
+     */
+    private final int numNeighbors;
+
+    /**
+     * The number of vectors in each block
+     */
+    private final int blockSize;
+
+    /**
+     * Creates a search for the neighbors of each vector using blocks of
+     * {@link #DEFAULT_BLOCK_SIZE} vectors.
+     */
+    public AllPairsNearestNeighbors(List<? extends DoubleVector> vectors,
+                                    SimilarityFunction simFunc, 
+                                    int numNeighbors) {
+        this(vectors, simFunc, numNeighbors, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a search for the neighbors of each vector.
+     *
+     * @param vectors the vectors to compare, which should support constant
+     *        time random access
+     * @param simFunc the function used to compare vectors, where higher values
+     *        are more similar
+     * @param numNeighbors the number of neighbors to find for each vector,
+     *        not including the vector itself
+     * @param blockSize the number of vectors in each block
+     */
+    public AllPairsNearestNeighbors(List<? extends DoubleVector> vectors,
+                                    SimilarityFunction simFunc, 
+                                    int numNeighbors, int blockSize) {
+        if (numNeighbors < 0)
+            throw new IllegalArgumentException(
+                "Number of neighbors must be non-negative: " + numNeighbors);
+        if (blockSize <= 0)
+            throw new IllegalArgumentException(
+                "Block size must be positive: " + blockSize);
+        this.vectors = vectors;
+        this.simFunc = simFunc;
+        this.numNeighbors = numNeighbors;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the number of vectors in each block.  Only the final block may
+     * have fewer vectors.
+     */
+    public int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns the number of blocks.
+     */
+    public int numBlocks() {
+        return (vectors.size() + blockSize - 1) / blockSize;
+    }
+
+    /**
+     * Finds the neighbors of the vectors in all blocks, passing each block to
+     * the handler.
+     */
+    public void run(int numThreads, BlockHandler handler) throws IOException {
+        run(0, numThreads, handler);
+    }
+
+    /**
+     * Finds the neighbors of the vectors in the blocks starting from {@code
+     * firstBlock}, passing each block to the handler in order.
+     *
+     * @param firstBlock the first block whose neighbors are found
+     * @param numThreads the number of threads used to find neighbors
+     * @param handler the handler of each completed block
+     *
+     * @throws IOException if the handler throws an exception, in which case no
+     *         later blocks are handled.  Any other exception thrown while
+     *         finding or handling the neighbors also stops the search and is
+     *         rethrown.
+     */
+    public void run(int firstBlock, int numThreads, BlockHandler handler)
+            throws IOException {
+        int numBlocks = numBlocks();
+        if (firstBlock < 0 || firstBlock > numBlocks)
+            throw new IllegalArgumentException(
+                "Invalid first block " + firstBlock + " for " + numBlocks +
+                " blocks");
+        if (numThreads <= 0)
+            throw new IllegalArgumentException(
+                "Number of threads must be positive: " + numThreads);
+        if (firstBlock == numBlocks)
+            return;
+
+        final Search search = 
+            new Search(firstBlock, numBlocks, numThreads, handler);
+        int tasks = Math.min(numThreads, numBlocks - firstBlock);
+        if (tasks == 1)
+            search.run();
+        else {
+            List<Runnable> runnables = new ArrayList<Runnable>(tasks);
+            for (int i = 0; i < tasks; ++i) {
+                runnables.add(new Runnable() {
+                        public void run() {
+                            search.run();
+                        }
+                    });
+            }
+            WorkQueue.getWorkQueue(numThreads).run(runnables);
+        }
+        Throwable error = search.error;
+        if (error instanceof IOException)
+            throw (IOException)error;
+        if (error instanceof RuntimeException)
+            throw (RuntimeException)error;
+        if (error != null)
+            throw (Error)error;
+    }
+
+    /**
+     * Computes the neighbors of the vectors in the specified block.
+     *
+     * @return the neighbors and their similarities of each vector in the
+     *         block
+     */
+    private Object[] findNeighbors(int block) {
+        int n = vectors.size();
+        int start = block * blockSize;
+        int end = Math.min(n, start + blockSize);
+        ScoreHeap[] heaps = new ScoreHeap[end - start];
+        for (int i = 0; i < heaps.length; ++i)
+            heaps[i] = new ScoreHeap(numNeighbors);
+
+        // Compare every query in the block to one block of candidates at a
+        // time so that the candidates stay in cache
+        for (int from = 0; from < n; from += blockSize) {
+            int to = Math.min(n, from + blockSize);
+            List<? extends DoubleVector> candidates = vectors.subList(from, to);
+            for (int q = start; q < end; ++q) {
+                double[] sims = 
+                    simFunc.simToVectors(vectors.get(q), candidates);
+                ScoreHeap heap = heaps[q - start];
+                for (int c = from; c < to; ++c) {
+                    if (c != q)
+                        heap.offer(sims[c - from], c);
+                }
+            }
+        }
+
+        int[][] neighbors = new int[heaps.length][];
+        double[][] similarities = new double[heaps.length][];
+        for (int i = 0; i < heaps.length; ++i) {
+            heaps[i].sort();
+            neighbors[i] = heaps[i].toRowArray();
+            similarities[i] = heaps[i].toScoreArray();
+        }
+        return new Object[] { neighbors, similarities };
+    }
+
+    /**
+     * The state of a single call to {@link #run(int,int,BlockHandler) run},
+     * which is shared by all of its threads.
+     */
+    private class Search implements Runnable {
+
+        /**
+         * The next block to be claimed by a thread
+         */
+        private final AtomicInteger nextBlock;
+
+        /**
+         * The number of blocks
+         */
+        private final int numBlocks;
+
+        /**
+         * The maximum number of blocks that may be claimed beyond the next
+         * block to be handled
+         */
+        private final int maxPending;
+
+        /**
+         * The handler of the completed blocks
+         */
+        private final BlockHandler handler;
+
+        /**
+         * The completed blocks that have not yet been handled, indexed by
+         * block modulo {@code maxPending}
+         */
+        private final Object[][] pending;
+
+        /**
+         * The next block to be passed to the handler
+         */
+        private int nextToHandle;
+
+        /**
+         * Whether a thread is currently passing completed blocks to the
+         * handler
+         */
+        private boolean handling;
+
+        /**
+         * The first exception thrown while finding or handling the neighbors,
+         * if any
+         */
+        volatile Throwable error;
+
+        public Search(int firstBlock, int numBlocks, int numThreads,
+                      BlockHandler handler) {
+            this.nextBlock = new AtomicInteger(firstBlock);
+            this.numBlocks = numBlocks;
+            this.handler = handler;
+            this.maxPending = 2 * numThreads;
+            this.pending = new Object[maxPending][];
+            this.nextToHandle = firstBlock;
+        }
+
+        public void run() {
+            while (error == null) {
+                int block = nextBlock.getAndIncrement();
+                if (block >= numBlocks)
+                    break;
+                if (!awaitTurn(block))
+                    break;
+                try {
+                    complete(block, findNeighbors(block));
+                } catch (RuntimeException re) {
+                    fail(re);
+                } catch (Error e) {
+                    fail(e);
+                }
+            }
+        }
+
+        /**
+         * Stops the search due to the error.  Any threads waiting for their
+         * turn are released, since the failed block will never be completed.
+         */
+        private synchronized void fail(Throwable t) {
+            if (error == null)
+                error = t;
+            notifyAll();
+        }
+
+        /**
+         * Waits until fewer than {@code maxPending} blocks precede this block
+         * in the queue for the handler, returning {@code false} if the search
+         * has stopped.
+         */
+        private synchronized boolean awaitTurn(int block) {
+            while (block >= nextToHandle + maxPending && error == null) {
+                try {
+                    wait();
+                } catch (InterruptedException ie) {
+                    // Stop the search, since the block claimed by this thread
+                    // will never be completed
+                    fail(new InterruptedIOException(
+                        "Interrupted while waiting to process block " + 
+                        block));
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return error == null;
+        }
+
+        /**
+         * Records the neighbors of the block and, unless another thread is
+         * already doing so, passes all the consecutive completed blocks to the
+         * handler.  The handler is called without holding the lock, so that
+         * the other threads keep finding neighbors while a block is handled.
+         */
+        private void complete(int block, Object[] result) {
+            synchronized (this) {
+                pending[block % maxPending] = result;
+                if (handling)
+                    return;
+                handling = true;
+            }
+            while (true) {
+                int toHandle;
+                Object[] next;
+                synchronized (this) {
+                    int slot = nextToHandle % maxPending;
+                    next = (error == null && nextToHandle < numBlocks)
+                        ? pending[slot] : null;
+                    if (next == null) {
+                        // Any block completed from here on is handled by the
+                        // thread that completes it
+                        handling = false;
+                        notifyAll();
+                        return;
+                    }
+                    pending[slot] = null;
+                    toHandle = nextToHandle;
+                }
+                Throwable failure = null;
+                try {
+                    handler.handle(toHandle, toHandle * blockSize,
+                                   (int[][])next[0], (double[][])next[1]);
+                } catch (IOException ioe) {
+                    failure = ioe;
+                } catch (RuntimeException re) {
+                    failure = re;
+                } catch (Error e) {
+                    failure = e;
+                }
+                synchronized (this) {
+                    if (failure != null && error == null)
+                        error = failure;
+                    nextToHandle++;
+                    notifyAll();
+                }
+            }
+        }
+    }
+}
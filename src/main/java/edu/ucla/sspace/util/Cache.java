@@ -0,0 +1,68 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+
+/**
+ * A bounded mapping from keys to values that may discard mappings at any time
+ * in order to remain within its capacity.  Implementations decide which
+ * mappings to retain and how their capacity is measured.  All implementations
+ * record their activity in a {@link CacheStatistics} instance.
+ *
+ * @see SegmentedLruCache
+ */
+public interface Cache<K,V> {
+
+    /**
+     * Returns the value cached for the key, or {@code null} if no value is
+     * currently cached.  Each call is recorded as either a hit or a miss.
+     */
+    V get(K key);
+
+    /**
+     * Caches the value for the key, possibly evicting other mappings.  An
+     * implementation may decline to cache a value, e.g. if it is larger than
+     * the cache's capacity.
+     */
+    void put(K key, V value);
+
+    /**
+     * Removes all of the cached mappings.
+     */
+    void clear();
+
+    /**
+     * Returns the number of mappings currently cached.
+     */
+    int size();
+
+    /**
+     * Returns the total weight of the mappings currently cached.
+     */
+    long weight();
+
+    /**
+     * Returns the statistics recording the activity of this cache.
+     */
+    CacheStatistics getStatistics();
+}
@@ -0,0 +1,159 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A thread-safe set of counters recording the activity of a {@link Cache}: the
+ * number of hits, misses and evictions, as well as the number of values loaded
+ * on behalf of the cache and the time spent loading them.
+ *
+ * <p> The load counters are updated by the code that populates the cache,
+ * since a {@link Cache} itself does not load values.
+ */
+public class CacheStatistics {
+
+    private final AtomicLong hits;
+
+    private final AtomicLong misses;
+
+    private final AtomicLong evictions;
+
+    private final AtomicLong loads;
+
+    private final AtomicLong loadNanos;
+
+    /**
+     * Creates a new set of statistics with all counters at zero.
+     */
+    public CacheStatistics() {
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        evictions = new AtomicLong();
+        loads = new AtomicLong();
+        loadNanos = new AtomicLong();
+    }
+
+    /**
+     * Records a lookup that found a cached value.
+     */
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * Records a lookup that did not find a cached value.
+     */
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Records that a cached mapping was discarded to make room for others.
+     */
+    public void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    /**
+     * Records that a value was loaded in the specified number of nanoseconds.
+     */
+    public void recordLoad(long nanos) {
+        loads.incrementAndGet();
+        loadNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Returns the number of lookups that found a cached value.
+     */
+    public long hitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that did not find a cached value.
+     */
+    public long missCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of mappings discarded to make room for others.
+     */
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the number of values loaded on behalf of the cache.
+     */
+    public long loadCount() {
+        return loads.get();
+    }
+
+    /**
+     * Returns the total time in nanoseconds spent loading values.
+     */
+    public long totalLoadTime() {
+        return loadNanos.get();
+    }
+
+    /**
+     * Returns the average number of milliseconds spent loading a value, or
+     * {@code 0} if no values have been loaded.
+     */
+    public double averageLoadMillis() {
+        long n = loads.get();
+        return (n == 0) ? 0 : loadNanos.get() / (n * 1e6);
+    }
+
+    /**
+     * Returns the fraction of lookups that found a cached value, or {@code 0}
+     * if no lookups have been made.
+     */
+    public double hitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return (total == 0) ? 0 : h / (double)total;
+    }
+
+    /**
+     * Resets all of the counters to zero.
+     */
+    public void reset() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+        loads.set(0);
+        loadNanos.set(0);
+    }
+
+    public String toString() {
+        return String.format(
+            "hits: %d, misses: %d (hit rate %.3f), evictions: %d, loads: %d " +
+            "(average %.3fms)", hitCount(), missCount(), hitRate(),
+            evictionCount(), loadCount(), averageLoadMillis());
+    }
+}
@@ -0,0 +1,866 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import edu.ucla.sspace.common.SemanticSpace;
+
+import edu.ucla.sspace.similarity.CosineSimilarity;
+import edu.ucla.sspace.similarity.SimilarityFunction;
+
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.Vector;
+import edu.ucla.sspace.vector.VectorMath;
+import edu.ucla.sspace.vector.Vectors;
+
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import java.util.logging.Logger;
+
+import static edu.ucla.sspace.util.LoggerUtil.info;
+import static edu.ucla.sspace.util.LoggerUtil.verbose;
+
+
+/**
+ * A {@link NearestNeighborFinder} that answers queries approximately using a
+ * Hierarchical Navigable Small World (HNSW) graph, as described in
+ *
+ * <ul> <li style="font-family:Garamond, Georgia, serif"> Yu. A. Malkov and
+ *   D. A. Yashunin.  Efficient and robust approximate nearest neighbor search
+ *   using Hierarchical Navigable Small World graphs.  <i>arXiv:1603.09320</i>,
+ *   2016.</li> </ul>
+ *
+ * Each word is a node in a layered proximity graph, where the upper layers
+ * contain exponentially fewer nodes and act as an express route towards the
+ * region of the space closest to the query.  A search greedily descends the
+ * layers and then performs a bounded best-first search on the bottom layer, so
+ * only a small fraction of the vectors are compared against the query.
+ *
+ * <p> The accuracy and speed of the index are controlled by three parameters:
+ *
+ * <ul>
+ *   <li> {@code maxConnections} (<i>M</i>): the number of neighbors each node
+ *        links to on every layer (twice this on the bottom layer).  Larger
+ *        values improve recall at the cost of memory and build time.
+ *   <li> {@code efConstruction}: the number of candidates considered when
+ *        linking a new node.  Larger values build a better graph more slowly.
+ *   <li> {@code efSearch}: the number of candidates considered for each
+ *        query, which may be changed at any time with {@link
+ *        #setEfSearch(int)}.  Larger values improve recall at the cost of
+ *        query latency.
+ * </ul>
+ *
+ * The {@link #recallAtK(NearestNeighborFinder, NearestNeighborFinder,
+ * Collection, int) recallAtK} method may be used to compare the results of
+ * this finder against an exact finder, such as {@link
+ * SimpleNearestNeighborFinder}, when selecting these parameters.
+ *
+ * <p> Words may be added to the index after it is built with {@link
+ * #add(String)}.  The built graph may be saved with {@link #save(File)},
+ * conventionally to the file returned by {@link #getIndexFile(File)} next to
+ * the {@code .sspace} file, and later restored with {@link #load(File,
+ * SemanticSpace)}, which avoids rebuilding the graph.
+ *
+ * <p> This class is thread-safe.  Any number of queries may run concurrently;
+ * adding words blocks queries until the addition is finished.
+ *
+ * @author David Jurgens
+ */
+public class HnswNearestNeighborFinder implements NearestNeighborFinder {
+
+    /**
+     * The logger to which clustering status updates will be written.
+     */
+    private static final Logger LOGGER =
+        Logger.getLogger(HnswNearestNeighborFinder.class.getName());
+
+    /**
+     * The default number of links per node on the upper layers
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 16;
+
+    /**
+     * The default number of candidates considered when inserting a node
+     */
+    public static final int DEFAULT_EF_CONSTRUCTION = 200;
+
+    /**
+     * The default number of candidates considered for each query
+     */
+    public static final int DEFAULT_EF_SEARCH = 64;
+
+    /**
+     * The file extension used for saved indices
+     */
+    public static final String INDEX_EXTENSION = ".hnsw";
+
+    /**
+     * A version identifier written to saved indices
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The semantic space whose words are indexed
+     */
+    private final SemanticSpace sspace;
+
+    /**
+     * The similarity function used to compare words, where higher values
+     * indicate closer words
+     */
+    private final SimilarityFunction simFunc;
+
+    /**
+     * The maximum number of links per node on the upper layers
+     */
+    private final int maxConnections;
+
+    /**
+     * The maximum number of links per node on the bottom layer
+     */
+    private final int maxConnectionsBottom;
+
+    /**
+     * The number of candidates considered when inserting a node
+     */
+    private final int efConstruction;
+
+    /**
+     * The normalization factor used when drawing the level of a new node
+     */
+    private final double levelMultiplier;
+
+    /**
+     * The source of randomness for drawing levels
+     */
+    private final Random random;
+
+    /**
+     * The number of candidates considered for each query
+     */
+    private volatile int efSearch;
+
+    /**
+     * The word for each node
+     */
+    private final List<String> words;
+
+    /**
+     * The vector for each node
+     */
+    private final List<Vector> vectors;
+
+    /**
+     * The links of each node, where {@code links.get(node)[layer]} holds the
+     * number of neighbors at index 0 followed by the neighbors themselves.
+     */
+    private final List<int[][]> links;
+
+    /**
+     * A mapping from each word to its node
+     */
+    private final Map<String,Integer> wordToNode;
+
+    /**
+     * The set of nodes whose vector was provided directly to {@link
+     * #add(String,Vector)} rather than found in the semantic space, which must
+     * be written with the saved index.
+     */
+    private final TIntSet externalVectors;
+
+    /**
+     * The lock that allows concurrent queries but exclusive insertions
+     */
+    private final ReadWriteLock lock;
+
+    /**
+     * The node from which all searches start, or {@code -1} if the index is
+     * empty
+     */
+    private int entryPoint;
+
+    /**
+     * The highest layer in the graph
+     */
+    private int topLayer;
+
+    /**
+     * Creates an index over all the words in the semantic space using the
+     * cosine similarity and the default parameters.
+     */
+    public HnswNearestNeighborFinder(SemanticSpace sspace) {
+        this(sspace, new CosineSimilarity(), DEFAULT_MAX_CONNECTIONS,
+             DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH);
+    }
+
+    /**
+     * Creates an index over all the words in the semantic space.
+     *
+     * @param sspace the semantic space to index
+     * @param similarity a similarity function where higher values indicate
+     *        more similar words
+     * @param maxConnections the number of links per node on the upper layers
+     * @param efConstruction the number of candidates considered when linking
+     *        each word
+     * @param efSearch the number of candidates considered for each query
+     */
+    public HnswNearestNeighborFinder(SemanticSpace sspace,
+                                     SimilarityFunction similarity,
+                                     int maxConnections, int efConstruction,
+                                     int efSearch) {
+        this(sspace, similarity, maxConnections, efConstruction, efSearch,
+             new Random());
+        long start = System.currentTimeMillis();
+        int added = 0;
+        for (String word : sspace.getWords()) {
+            add(word);
+            if (++added % 10000 == 0)
+                verbose(LOGGER, "Indexed %d words", added);
+        }
+        verbose(LOGGER, "Built an index of %d words in %.3f seconds", added,
+                (System.currentTimeMillis() - start) / 1000d);
+    }
+
+    /**
+     * Creates an empty index with the provided parameters.
+     */
+    private HnswNearestNeighborFinder(SemanticSpace sspace,
+                                      SimilarityFunction similarity,
+                                      int maxConnections, int efConstruction,
+                                      int efSearch, Random random) {
+        if (sspace == null || similarity == null)
+            throw new NullPointerException();
+        if (maxConnections < 2)
+            throw new IllegalArgumentException(
+                "maxConnections must be at least 2: " + maxConnections);
+        if (efConstruction < 1)
+            throw new IllegalArgumentException(
+                "efConstruction must be positive: " + efConstruction);
+        if (efSearch < 1)
+            throw new IllegalArgumentException(
+                "efSearch must be positive: " + efSearch);
+        this.sspace = sspace;
+        this.simFunc = similarity;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsBottom = 2 * maxConnections;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(maxConnections);
+        this.random = random;
+        words = new ArrayList<String>();
+        vectors = new ArrayList<Vector>();
+        links = new ArrayList<int[][]>();
+        wordToNode = new HashMap<String,Integer>();
+        externalVectors = new TIntHashSet();
+        lock = new ReentrantReadWriteLock();
+        entryPoint = -1;
+        topLayer = -1;
+    }
+
+    /**
+     * Returns the file to which the index for the {@code .sspace} file is
+     * conventionally saved.
+     */
+    public static File getIndexFile(File sspaceFile) {
+        return new File(sspaceFile.getPath() + INDEX_EXTENSION);
+    }
+
+    /**
+     * Sets the number of candidates considered for each query.  Larger values
+     * increase recall and query latency.
+     */
+    public void setEfSearch(int efSearch) {
+        if (efSearch < 1)
+            throw new IllegalArgumentException(
+                "efSearch must be positive: " + efSearch);
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * Returns the number of candidates considered for each query.
+     */
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * Returns the number of words in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return words.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the word to the index using its vector from the semantic space.
+     *
+     * @return {@code true} if the word was added, or {@code false} if it was
+     *         already indexed
+     *
+     * @throws IllegalArgumentException if the word is not in the semantic
+     *         space
+     */
+    public boolean add(String word) {
+        Vector v = sspace.getVector(word);
+        if (v == null)
+            throw new IllegalArgumentException(
+                "No vector for " + word + " in the semantic space");
+        return add(word, v, false);
+    }
+
+    /**
+     * Adds the word to the index with the provided vector, which need not be
+     * in the semantic space.  The vector is written with the index when it is
+     * saved.
+     *
+     * @return {@code true} if the word was added, or {@code false} if it was
+     *         already indexed
+     */
+    public boolean add(String word, Vector vector) {
+        return add(word, vector, true);
+    }
+
+    /**
+     * Links a new node for the word into the graph.
+     */
+    private boolean add(String word, Vector vector, boolean isExternal) {
+        lock.writeLock().lock();
+        try {
+            if (wordToNode.containsKey(word))
+                return false;
+            int node = words.size();
+            int level = (int)(-Math.log(1 - random.nextDouble()) 
+                              * levelMultiplier);
+            words.add(word);
+            vectors.add(vector);
+            wordToNode.put(word, node);
+            if (isExternal)
+                externalVectors.add(node);
+            int[][] nodeLinks = new int[level + 1][];
+            for (int l = 0; l <= level; ++l)
+                nodeLinks[l] = new int[maxLinks(l) + 1];
+            links.add(nodeLinks);
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                topLayer = level;
+                return true;
+            }
+
+            // Greedily descend the layers above the node's level
+            Candidate ep = new Candidate(entryPoint, 
+                                         sim(vector, entryPoint));
+            for (int l = topLayer; l > level; --l)
+                ep = greedySearch(vector, ep, l);
+
+            List<Candidate> entryPoints = Collections.singletonList(ep);
+            for (int l = Math.min(level, topLayer); l >= 0; --l) {
+                List<Candidate> candidates = 
+                    searchLayer(vector, entryPoints, efConstruction, l);
+                List<Candidate> neighbors = 
+                    selectNeighbors(candidates, maxConnections);
+                for (Candidate n : neighbors) {
+                    addLink(node, n.node, l);
+                    addLinkAndPrune(n.node, node, n.sim, l);
+                }
+                entryPoints = candidates;
+            }
+
+            if (level > topLayer) {
+                topLayer = level;
+                entryPoint = node;
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the maximum number of links for a node on the layer.
+     */
+    private int maxLinks(int layer) {
+        return (layer == 0) ? maxConnectionsBottom : maxConnections;
+    }
+
+    /**
+     * Returns the similarity of the vector to the node's vector.
+     */
+    private double sim(Vector v, int node) {
+        return simFunc.sim(v, vectors.get(node));
+    }
+
+    /**
+     * Appends {@code to} to the links of {@code from}, which must have room.
+     */
+    private void addLink(int from, int to, int layer) {
+        int[] l = links.get(from)[layer];
+        l[++l[0]] = to;
+    }
+
+    /**
+     * Adds a link from {@code from} to {@code to}, and if {@code from} then has
+     * too many links, keeps only the most similar ones.
+     */
+    private void addLinkAndPrune(int from, int to, double sim, int layer) {
+        int[] l = links.get(from)[layer];
+        int max = l.length - 1;
+        if (l[0] < max) {
+            l[++l[0]] = to;
+            return;
+        }
+        Vector v = vectors.get(from);
+        List<Candidate> candidates = new ArrayList<Candidate>(max + 1);
+        candidates.add(new Candidate(to, sim));
+        for (int i = 1; i <= l[0]; ++i)
+            candidates.add(new Candidate(l[i], sim(v, l[i])));
+        Collections.sort(candidates, Candidate.MOST_SIMILAR_FIRST);
+        List<Candidate> kept = selectNeighbors(candidates, max);
+        l[0] = 0;
+        for (Candidate c : kept)
+            l[++l[0]] = c.node;
+    }
+
+    /**
+     * Selects up to {@code max} neighbors from the candidates, which must be
+     * sorted from most to least similar, using the heuristic of Malkov and
+     * Yashunin: a candidate is preferred only if it is closer to the base
+     * node than to any neighbor selected so far, which keeps links spread
+     * across different directions.  Any remaining slots are filled with the
+     * most similar of the rejected candidates.
+     */
+    private List<Candidate> selectNeighbors(List<Candidate> candidates, 
+                                            int max) {
+        List<Candidate> selected = new ArrayList<Candidate>(max);
+        List<Candidate> rejected = new ArrayList<Candidate>();
+        for (Candidate c : candidates) {
+            if (selected.size() >= max)
+                break;
+            boolean keep = true;
+            Vector cv = vectors.get(c.node);
+            for (Candidate s : selected) {
+                if (sim(cv, s.node) > c.sim) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep)
+                selected.add(c);
+            else
+                rejected.add(c);
+        }
+        for (int i = 0; i < rejected.size() && selected.size() < max; ++i)
+            selected.add(rejected.get(i));
+        return selected;
+    }
+
+    /**
+     * Starting from {@code ep}, repeatedly moves to the most similar neighbor
+     * on the layer until no neighbor is more similar.
+     */
+    private Candidate greedySearch(Vector q, Candidate ep, int layer) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] l = links.get(ep.node)[layer];
+            for (int i = 1; i <= l[0]; ++i) {
+                double s = sim(q, l[i]);
+                if (s > ep.sim) {
+                    ep = new Candidate(l[i], s);
+                    changed = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    /**
+     * Performs a best-first search of the layer from the entry points and
+     * returns up to {@code ef} of the most similar nodes found, sorted from
+     * most to least similar.
+     */
+    private List<Candidate> searchLayer(Vector q, List<Candidate> entryPoints,
+                                        int ef, int layer) {
+        TIntHashSet visited = new TIntHashSet();
+        PriorityQueue<Candidate> toExpand = new PriorityQueue<Candidate>(
+            ef, Candidate.MOST_SIMILAR_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<Candidate>(
+            ef + 1, Candidate.LEAST_SIMILAR_FIRST);
+        for (Candidate c : entryPoints) {
+            if (visited.add(c.node)) {
+                toExpand.add(c);
+                results.add(c);
+                if (results.size() > ef)
+                    results.poll();
+            }
+        }
+
+        while (!toExpand.isEmpty()) {
+            Candidate c = toExpand.poll();
+            // Stop once the closest unexpanded candidate is worse than every
+            // result
+            if (results.size() >= ef && c.sim < results.peek().sim)
+                break;
+            int[][] nodeLinks = links.get(c.node);
+            if (layer >= nodeLinks.length)
+                continue;
+            int[] l = nodeLinks[layer];
+            for (int i = 1; i <= l[0]; ++i) {
+                int n = l[i];
+                if (!visited.add(n))
+                    continue;
+                double s = sim(q, n);
+                if (results.size() < ef || s > results.peek().sim) {
+                    Candidate nc = new Candidate(n, s);
+                    toExpand.add(nc);
+                    results.add(nc);
+                    if (results.size() > ef)
+                        results.poll();
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<Candidate>(results);
+        Collections.sort(sorted, Candidate.MOST_SIMILAR_FIRST);
+        return sorted;
+    }
+
+    /**
+     * Returns up to {@code k} of the indexed nodes most similar to the vector,
+     * sorted from most to least similar.
+     */
+    private List<Candidate> search(Vector q, int k) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0)
+                return Collections.<Candidate>emptyList();
+            Candidate ep = new Candidate(entryPoint, sim(q, entryPoint));
+            for (int l = topLayer; l > 0; --l)
+                ep = greedySearch(q, ep, l);
+            List<Candidate> found = searchLayer(
+                q, Collections.singletonList(ep), Math.max(efSearch, k), 0);
+            return (found.size() > k) ? found.subList(0, k) : found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedMultiMap<Double,String> getMostSimilar(
+            String word, int numberOfSimilarWords) {
+        Vector v = sspace.getVector(word);
+        if (v == null) {
+            Integer node = null;
+            lock.readLock().lock();
+            try {
+                node = wordToNode.get(word);
+                if (node != null)
+                    v = vectors.get(node);
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (v == null)
+                return null;
+        }
+        Set<String> exclude = Collections.singleton(word);
+        return toMap(search(v, numberOfSimilarWords + 1), exclude,
+                     numberOfSimilarWords);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedMultiMap<Double,String> getMostSimilar(
+             Set<String> terms, int numberOfSimilarWords) {
+        if (terms.isEmpty())
+            return null;
+        // Compute the mean vector for all the terms
+        DoubleVector mean = new DenseVector(sspace.getVectorLength());
+        int found = 0;
+        for (String term : terms) {
+            Vector v = sspace.getVector(term);
+            if (v == null)
+                info(LOGGER, "No vector for term " + term);
+            else {
+                VectorMath.add(mean, v);
+                found++;
+            }
+        }
+        // If none of the provided vectors were in the space, then return null
+        if (found == 0)
+            return null;
+        return toMap(search(mean, numberOfSimilarWords + terms.size()),
+                     terms, numberOfSimilarWords);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedMultiMap<Double,String> getMostSimilar(
+            Vector v, int numberOfSimilarWords) {
+        if (v == null)
+            return null;
+        return toMap(search(v, numberOfSimilarWords), 
+                     Collections.<String>emptySet(), numberOfSimilarWords);
+    }
+
+    /**
+     * Returns a map from similarity to word for up to {@code k} of the
+     * results, skipping any excluded words.
+     */
+    private SortedMultiMap<Double,String> toMap(List<Candidate> results,
+                                                Set<String> exclude, int k) {
+        SortedMultiMap<Double,String> mostSim = 
+            new BoundedSortedMultiMap<Double,String>(k, false);
+        lock.readLock().lock();
+        try {
+            for (Candidate c : results) {
+                String word = words.get(c.node);
+                if (!exclude.contains(word))
+                    mostSim.put(c.sim, word);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return mostSim;
+    }
+
+    /**
+     * Returns the average fraction of the {@code k} nearest neighbors found by
+     * {@code exact} that are also found by {@code approximate}, over all of
+     * the query words.  Words for which the exact finder reports no neighbors
+     * are skipped.
+     *
+     * @param approximate the finder being evaluated
+     * @param exact a finder that returns the true nearest neighbors, such as
+     *        {@link SimpleNearestNeighborFinder}
+     * @param queries the words whose neighbors are compared
+     * @param k the number of neighbors to compare
+     *
+     * @return the recall@k of {@code approximate}, or {@code 0} if no query
+     *         could be evaluated
+     */
+    public static double recallAtK(NearestNeighborFinder approximate,
+                                   NearestNeighborFinder exact,
+                                   Collection<String> queries, int k) {
+        double totalRecall = 0;
+        int evaluated = 0;
+        for (String word : queries) {
+            SortedMultiMap<Double,String> truth = 
+                exact.getMostSimilar(word, k);
+            if (truth == null || truth.isEmpty())
+                continue;
+            SortedMultiMap<Double,String> found = 
+                approximate.getMostSimilar(word, k);
+            Set<String> foundWords = (found == null)
+                ? Collections.<String>emptySet()
+                : new HashSet<String>(found.values());
+            int hits = 0;
+            for (String w : truth.values())
+                if (foundWords.contains(w))
+                    hits++;
+            totalRecall += hits / (double)truth.size();
+            evaluated++;
+        }
+        return (evaluated == 0) ? 0 : totalRecall / evaluated;
+    }
+
+    /**
+     * Writes the graph to the file.  The vectors of words found in the
+     * semantic space are not written; those provided directly to {@link
+     * #add(String,Vector)} are.
+     *
+     * @throws IOException if any error occurs while writing the file
+     */
+    public void save(File indexFile) throws IOException {
+        lock.readLock().lock();
+        try {
+            DataOutputStream dos = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(indexFile)));
+            dos.writeInt(FORMAT_VERSION);
+            dos.writeInt(maxConnections);
+            dos.writeInt(efConstruction);
+            dos.writeInt(efSearch);
+            dos.writeInt(words.size());
+            dos.writeInt(entryPoint);
+            dos.writeInt(topLayer);
+            for (int node = 0; node < words.size(); ++node) {
+                dos.writeUTF(words.get(node));
+                boolean isExternal = externalVectors.contains(node);
+                dos.writeBoolean(isExternal);
+                if (isExternal) {
+                    DoubleVector v = Vectors.asDouble(vectors.get(node));
+                    dos.writeInt(v.length());
+                    for (int i = 0; i < v.length(); ++i)
+                        dos.writeDouble(v.get(i));
+                }
+                int[][] nodeLinks = links.get(node);
+                dos.writeInt(nodeLinks.length);
+                for (int[] l : nodeLinks) {
+                    dos.writeInt(l[0]);
+                    for (int i = 1; i <= l[0]; ++i)
+                        dos.writeInt(l[i]);
+                }
+            }
+            dos.close();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Loads a graph written by {@link #save(File)} for the semantic space,
+     * using the cosine similarity to compare words.
+     *
+     * @throws IOException if any error occurs while reading the file, or if a
+     *         word in the index is not in the semantic space
+     */
+    public static HnswNearestNeighborFinder load(File indexFile, 
+                                                 SemanticSpace sspace) 
+            throws IOException {
+        return load(indexFile, sspace, new CosineSimilarity());
+    }
+
+    /**
+     * Loads a graph written by {@link #save(File)} for the semantic space.
+     * The similarity function should be the same as the one used to build the
+     * graph.
+     *
+     * @throws IOException if any error occurs while reading the file, or if a
+     *         word in the index is not in the semantic space
+     */
+    public static HnswNearestNeighborFinder load(File indexFile, 
+                                                 SemanticSpace sspace,
+                                                 SimilarityFunction similarity)
+            throws IOException {
+        DataInputStream dis = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            int version = dis.readInt();
+            if (version != FORMAT_VERSION)
+                throw new IOException("Unsupported index version: " + version);
+            int maxConnections = dis.readInt();
+            int efConstruction = dis.readInt();
+            int efSearch = dis.readInt();
+            HnswNearestNeighborFinder nnf = new HnswNearestNeighborFinder(
+                sspace, similarity, maxConnections, efConstruction, efSearch,
+                new Random());
+            int numNodes = dis.readInt();
+            nnf.entryPoint = dis.readInt();
+            nnf.topLayer = dis.readInt();
+            for (int node = 0; node < numNodes; ++node) {
+                String word = dis.readUTF();
+                Vector v = null;
+                if (dis.readBoolean()) {
+                    double[] values = new double[dis.readInt()];
+                    for (int i = 0; i < values.length; ++i)
+                        values[i] = dis.readDouble();
+                    v = new DenseVector(values);
+                    nnf.externalVectors.add(node);
+                }
+                else {
+                    v = sspace.getVector(word);
+                    if (v == null)
+                        throw new IOException("The index contains " + word +
+                                              ", which is not in the space");
+                }
+                int[][] nodeLinks = new int[dis.readInt()][];
+                for (int l = 0; l < nodeLinks.length; ++l) {
+                    nodeLinks[l] = new int[nnf.maxLinks(l) + 1];
+                    int count = dis.readInt();
+                    nodeLinks[l][0] = count;
+                    for (int i = 1; i <= count; ++i)
+                        nodeLinks[l][i] = dis.readInt();
+                }
+                nnf.words.add(word);
+                nnf.vectors.add(v);
+                nnf.links.add(nodeLinks);
+                nnf.wordToNode.put(word, node);
+            }
+            return nnf;
+        } finally {
+            dis.close();
+        }
+    }
+
+    /**
+     * A node and its similarity to the current query.
+     */
+    private static class Candidate {
+
+        static final Comparator<Candidate> MOST_SIMILAR_FIRST =
+            new Comparator<Candidate>() {
+                public int compare(Candidate c1, Candidate c2) {
+                    return Double.compare(c2.sim, c1.sim);
+                }
+            };
+
+        static final Comparator<Candidate> LEAST_SIMILAR_FIRST =
+            new Comparator<Candidate>() {
+                public int compare(Candidate c1, Candidate c2) {
+                    return Double.compare(c1.sim, c2.sim);
+                }
+            };
+
+        final int node;
+
+        final double sim;
+
+        Candidate(int node, double sim) {
+            this.node = node;
+            this.sim = sim;
+        }
+    }
+}
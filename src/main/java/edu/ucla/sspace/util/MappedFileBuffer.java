@@ -0,0 +1,230 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.MappedByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+
+/**
+ * A read-only, memory-mapped view of a file that supports absolute reads of
+ * primitive values at {@code long} offsets.  A single {@link MappedByteBuffer}
+ * can only address 2GB, so larger files are mapped as a sequence of segments.
+ * Adjacent segments overlap by eight bytes so that any primitive value can be
+ * read from exactly one segment, regardless of where it falls in the file.
+ *
+ * <p> All values are read in big-endian byte order, which matches the encoding
+ * used by {@link java.io.DataOutputStream}.
+ *
+ * <p> This class is thread-safe.  Reads do not modify the position of any of
+ * the underlying buffers, so concurrent readers never contend on a lock.
+ *
+ * @author David Jurgens
+ */
+public class MappedFileBuffer {
+
+    /**
+     * The default number of bytes mapped in each segment
+     */
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    /**
+     * The number of bytes by which adjacent segments overlap.  This must be at
+     * least as large as the largest primitive type.
+     */
+    private static final int OVERLAP = 8;
+
+    /**
+     * The mapped segments of the file
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * The number of non-overlapping bytes in each segment
+     */
+    private final long segmentSize;
+
+    /**
+     * The number of bytes in the file
+     */
+    private final long length;
+
+    /**
+     * Maps the entire contents of the file into memory.
+     *
+     * @throws IOException if an error occurs while mapping the file
+     */
+    public MappedFileBuffer(File file) throws IOException {
+        this(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Maps the entire contents of the file into memory using segments of the
+     * specified size.  This constructor is exposed to allow testing segment
+     * boundaries on small files.
+     */
+    MappedFileBuffer(File file, int segmentSize) throws IOException {
+        if (segmentSize <= 0)
+            throw new IllegalArgumentException(
+                "segment size must be positive: " + segmentSize);
+        this.segmentSize = segmentSize;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel fc = raf.getChannel();
+            length = fc.size();
+            int numSegments = (int)((length + segmentSize - 1) / segmentSize);
+            segments = new MappedByteBuffer[Math.max(numSegments, 1)];
+            for (int i = 0; i < numSegments; ++i) {
+                long start = (long)i * segmentSize;
+                long size = Math.min(length - start, 
+                                     (long)segmentSize + OVERLAP);
+                segments[i] = 
+                    fc.map(FileChannel.MapMode.READ_ONLY, start, size);
+            }
+        } finally {
+            // The mapping remains valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the number of bytes in the mapped file.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Returns the byte at the specified offset.
+     */
+    public byte get(long offset) {
+        check(offset, 1);
+        return segments[(int)(offset / segmentSize)]
+            .get((int)(offset % segmentSize));
+    }
+
+    /**
+     * Returns the unsigned two-byte value at the specified offset.
+     */
+    public int getUnsignedShort(long offset) {
+        check(offset, 2);
+        return segments[(int)(offset / segmentSize)]
+            .getShort((int)(offset % segmentSize)) & 0xFFFF;
+    }
+
+    /**
+     * Returns the {@code int} value at the specified offset.
+     */
+    public int getInt(long offset) {
+        check(offset, 4);
+        return segments[(int)(offset / segmentSize)]
+            .getInt((int)(offset % segmentSize));
+    }
+
+    /**
+     * Returns the {@code long} value at the specified offset.
+     */
+    public long getLong(long offset) {
+        check(offset, 8);
+        return segments[(int)(offset / segmentSize)]
+            .getLong((int)(offset % segmentSize));
+    }
+
+    /**
+     * Returns the {@code float} value at the specified offset.
+     */
+    public float getFloat(long offset) {
+        check(offset, 4);
+        return segments[(int)(offset / segmentSize)]
+            .getFloat((int)(offset % segmentSize));
+    }
+
+    /**
+     * Returns the {@code double} value at the specified offset.
+     */
+    public double getDouble(long offset) {
+        check(offset, 8);
+        return segments[(int)(offset / segmentSize)]
+            .getDouble((int)(offset % segmentSize));
+    }
+
+    /**
+     * Returns the string at the specified offset, which was encoded using the
+     * modified UTF-8 format of {@link java.io.DataOutput#writeUTF(String)}.
+     *
+     * @see #getUTFLength(long)
+     */
+    public String getUTF(long offset) {
+        int utfLength = getUnsignedShort(offset);
+        // Most words are plain ASCII, whose encoding is one byte per char and
+        // can be decoded without an intermediate stream
+        char[] chars = new char[utfLength];
+        int ascii = 0;
+        for (; ascii < utfLength; ++ascii) {
+            byte b = get(offset + 2 + ascii);
+            if (b <= 0)
+                break;
+            chars[ascii] = (char)b;
+        }
+        if (ascii == utfLength)
+            return new String(chars);
+
+        byte[] bytes = new byte[utfLength + 2];
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = get(offset + i);
+        try {
+            return new DataInputStream(new ByteArrayInputStream(bytes))
+                .readUTF();
+        } catch (IOException ioe) {
+            // Only occurs if the encoded bytes are malformed
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * Returns the total number of bytes used to store the modified UTF-8
+     * string at the specified offset, including its two-byte length prefix.
+     */
+    public int getUTFLength(long offset) {
+        return getUnsignedShort(offset) + 2;
+    }
+
+    /**
+     * Throws an {@link IndexOutOfBoundsException} if the specified number of
+     * bytes at the offset would not fall within the file.
+     */
+    private void check(long offset, int bytes) {
+        if (offset < 0 || offset + bytes > length)
+            throw new IndexOutOfBoundsException(
+                "Invalid offset " + offset + " for a file of " + length + 
+                " bytes");
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+
+/**
+ * A bounded min-heap of scores and the rows they belong to that retains the
+ * {@code k} highest scores offered to it.  Unlike {@link
+ * BoundedSortedMultiMap}, the heap stores the scores and rows in primitive
+ * arrays, so offering a score creates no objects.  This is intended for
+ * finding the most similar rows when many similarities are computed, where
+ * only a small fraction are retained.
+ *
+ * <p> This class is not thread-safe.
+ *
+ * @author David Jurgens
+ */
+public class ScoreHeap {
+
+    /**
+     * The scores in the heap, with the lowest at index 0
+     */
+    private final double[] scores;
+
+    /**
+     * The row of each score
+     */
+    private final int[] rows;
+
+    /**
+     * The number of scores in the heap
+     */
+    private int size;
+
+    /**
+     * Creates a heap that retains the {@code k} highest scores.
+     */
+    public ScoreHeap(int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("k must be non-negative: " + k);
+        scores = new double[k];
+        rows = new int[k];
+    }
+
+    /**
+     * Adds the score of the row if it is among the {@code k} highest seen so
+     * far.
+     */
+    public void offer(double score, int row) {
+        if (size < scores.length) {
+            // Sift the new value up from the bottom of the heap
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (Double.compare(scores[parent], score) <= 0)
+                    break;
+                scores[i] = scores[parent];
+                rows[i] = rows[parent];
+                i = parent;
+            }
+            scores[i] = score;
+            rows[i] = row;
+        }
+        else if (size > 0 && Double.compare(score, scores[0]) > 0) 
+            siftDown(score, row, size);
+    }
+
+    /**
+     * Places the value at the root of the first {@code size} elements of the
+     * heap and sifts it down to its position.
+     */
+    private void siftDown(double score, int row, int size) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size 
+                    && Double.compare(scores[child + 1], scores[child]) < 0)
+                child++;
+            if (Double.compare(score, scores[child]) <= 0)
+                break;
+            scores[i] = scores[child];
+            rows[i] = rows[child];
+            i = child;
+        }
+        scores[i] = score;
+        rows[i] = row;
+    }
+
+    /**
+     * Returns the number of scores in the heap.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the score at the specified position in the heap.
+     */
+    public double score(int i) {
+        checkIndex(i);
+        return scores[i];
+    }
+
+    /**
+     * Returns the row of the score at the specified position in the heap.
+     */
+    public int row(int i) {
+        checkIndex(i);
+        return rows[i];
+    }
+
+    /**
+     * Throws an {@link IndexOutOfBoundsException} if no score is at the
+     * position.
+     */
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException(
+                "Invalid position " + i + " in a heap of " + size);
+    }
+
+    /**
+     * Sorts the heap in increasing order of score, after which no more values
+     * may be offered.
+     */
+    public void sort() {
+        // Repeatedly move the lowest remaining value to the end, which orders
+        // the values from highest to lowest
+        for (int end = size - 1; end > 0; --end) {
+            double score = scores[end];
+            int row = rows[end];
+            scores[end] = scores[0];
+            rows[end] = rows[0];
+            siftDown(score, row, end);
+        }
+        for (int i = 0, j = size - 1; i < j; ++i, --j) {
+            double s = scores[i];
+            scores[i] = scores[j];
+            scores[j] = s;
+            int r = rows[i];
+            rows[i] = rows[j];
+            rows[j] = r;
+        }
+    }
+
+    /**
+     * Returns the rows in the heap, in the order of their positions.
+     */
+    public int[] toRowArray() {
+        int[] arr = new int[size];
+        System.arraycopy(rows, 0, arr, 0, size);
+        return arr;
+    }
+
+    /**
+     * Returns the scores in the heap, in the order of their positions.
+     */
+    public double[] toScoreArray() {
+        double[] arr = new double[size];
+        System.arraycopy(scores, 0, arr, 0, size);
+        return arr;
+    }
+}
@@ -0,0 +1,341 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A {@link Cache} bounded by the total weight of its mappings that uses a
+ * segmented least-recently-used (SLRU) policy.  New mappings enter a
+ * <i>probationary</i> segment and are promoted to a <i>protected</i> segment
+ * when they are accessed again.  Mappings are evicted from the probationary
+ * segment first, so a burst of values that are used only once cannot flush
+ * out frequently used values the way it would in a plain LRU cache.  When the
+ * protected segment exceeds its share of the capacity, its least recently used
+ * mappings are demoted back to the probationary segment.
+ *
+ * <p> To reduce contention, the keys are partitioned by hash into a number of
+ * independently locked stripes, each of which has an equal share of the total
+ * capacity and runs its own SLRU policy.  Threads accessing keys in different
+ * stripes never block one another.
+ *
+ * <p> This class is thread-safe.
+ *
+ * @author David Jurgens
+ */
+public class SegmentedLruCache<K,V> implements Cache<K,V> {
+
+    /**
+     * The default number of independently locked stripes
+     */
+    public static final int DEFAULT_STRIPES = 16;
+
+    /**
+     * The default fraction of each stripe's capacity reserved for the
+     * protected segment
+     */
+    public static final double DEFAULT_PROTECTED_RATIO = .8;
+
+    /**
+     * The lock-striped partitions of the cache
+     */
+    private final Stripe[] stripes;
+
+    /**
+     * The weigher used to measure each mapping
+     */
+    private final Weigher<? super K, ? super V> weigher;
+
+    /**
+     * The statistics for this cache
+     */
+    private final CacheStatistics stats;
+
+    /**
+     * Creates a cache that retains mappings up to the total weight using the
+     * default number of stripes and protected ratio.
+     *
+     * @param maxWeight the maximum total weight of the cached mappings
+     * @param weigher the weigher used to measure each mapping
+     */
+    public SegmentedLruCache(long maxWeight, 
+                             Weigher<? super K, ? super V> weigher) {
+        this(maxWeight, weigher, DEFAULT_STRIPES, DEFAULT_PROTECTED_RATIO);
+    }
+
+    /**
+     * Creates a cache that retains mappings up to the total weight.
+     *
+     * @param maxWeight the maximum total weight of the cached mappings
+     * @param weigher the weigher used to measure each mapping
+     * @param numStripes the number of independently locked partitions
+     * @param protectedRatio the fraction of the capacity that may be used by
+     *        mappings that have been accessed more than once
+     *
+     * @throws IllegalArgumentException if {@code maxWeight} is negative, if
+     *         {@code numStripes} is not positive, or if {@code protectedRatio}
+     *         is not in [0, 1]
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(long maxWeight, 
+                             Weigher<? super K, ? super V> weigher,
+                             int numStripes, double protectedRatio) {
+        if (maxWeight < 0)
+            throw new IllegalArgumentException(
+                "maximum weight cannot be negative: " + maxWeight);
+        if (numStripes < 1)
+            throw new IllegalArgumentException(
+                "must have at least one stripe: " + numStripes);
+        if (protectedRatio < 0 || protectedRatio > 1)
+            throw new IllegalArgumentException(
+                "protected ratio must be in [0, 1]: " + protectedRatio);
+        this.weigher = weigher;
+        this.stats = new CacheStatistics();
+        stripes = (Stripe[])new SegmentedLruCache.Stripe[numStripes];
+        long stripeWeight = maxWeight / numStripes;
+        for (int i = 0; i < numStripes; ++i)
+            stripes[i] = new Stripe(stripeWeight, 
+                                    (long)(stripeWeight * protectedRatio));
+    }
+
+    /**
+     * Returns the stripe responsible for the key.
+     */
+    private Stripe stripeFor(Object key) {
+        int h = key.hashCode();
+        // Spread the bits so that keys with similar hashes are distributed
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return stripes[(h & 0x7fffffff) % stripes.length];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public V get(K key) {
+        V value = stripeFor(key).get(key);
+        if (value == null)
+            stats.recordMiss();
+        else
+            stats.recordHit();
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}  Values whose weight exceeds the capacity of a single
+     * stripe are not cached.
+     */
+    public void put(K key, V value) {
+        if (value == null)
+            throw new NullPointerException("Cannot cache null values");
+        long weight = weigher.weigh(key, value);
+        if (weight < 0)
+            throw new IllegalStateException(
+                "negative weight for " + key + ": " + weight);
+        stripeFor(key).put(key, value, weight);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear() {
+        for (Stripe s : stripes)
+            s.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe s : stripes)
+            size += s.size();
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long weight() {
+        long weight = 0;
+        for (Stripe s : stripes)
+            weight += s.weight();
+        return weight;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CacheStatistics getStatistics() {
+        return stats;
+    }
+
+    /**
+     * A cached value and its weight.
+     */
+    private static class Node<V> {
+
+        final V value;
+
+        final long weight;
+
+        Node(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * An independently locked partition of the cache that implements the SLRU
+     * policy.  Both segments are kept in insertion order, where the first
+     * element is the least recently used.
+     */
+    private class Stripe {
+
+        /**
+         * The mappings that have only been accessed once
+         */
+        private final LinkedHashMap<Object,Node<V>> probation;
+
+        /**
+         * The mappings that have been accessed more than once
+         */
+        private final LinkedHashMap<Object,Node<V>> protectedSegment;
+
+        private final long maxWeight;
+
+        private final long maxProtectedWeight;
+
+        private long probationWeight;
+
+        private long protectedWeight;
+
+        Stripe(long maxWeight, long maxProtectedWeight) {
+            this.maxWeight = maxWeight;
+            this.maxProtectedWeight = maxProtectedWeight;
+            probation = new LinkedHashMap<Object,Node<V>>();
+            protectedSegment = new LinkedHashMap<Object,Node<V>>();
+        }
+
+        synchronized V get(Object key) {
+            Node<V> n = protectedSegment.remove(key);
+            if (n != null) {
+                // Move to the most recently used position
+                protectedSegment.put(key, n);
+                return n.value;
+            }
+            n = probation.remove(key);
+            if (n == null)
+                return null;
+            // Promote on the second access
+            probationWeight -= n.weight;
+            protectedSegment.put(key, n);
+            protectedWeight += n.weight;
+            demoteExcess();
+            return n.value;
+        }
+
+        synchronized void put(Object key, V value, long weight) {
+            removeKey(key);
+            if (weight > maxWeight)
+                return;
+            probation.put(key, new Node<V>(value, weight));
+            probationWeight += weight;
+            evictExcess();
+        }
+
+        /**
+         * Removes any existing mapping for the key from both segments.
+         */
+        private void removeKey(Object key) {
+            Node<V> n = probation.remove(key);
+            if (n != null)
+                probationWeight -= n.weight;
+            n = protectedSegment.remove(key);
+            if (n != null)
+                protectedWeight -= n.weight;
+        }
+
+        /**
+         * Moves the least recently used protected mappings to the most
+         * recently used end of the probationary segment until the protected
+         * segment is within its capacity.
+         */
+        private void demoteExcess() {
+            Iterator<Map.Entry<Object,Node<V>>> it = 
+                protectedSegment.entrySet().iterator();
+            while (protectedWeight > maxProtectedWeight && it.hasNext()) {
+                Map.Entry<Object,Node<V>> e = it.next();
+                it.remove();
+                Node<V> n = e.getValue();
+                protectedWeight -= n.weight;
+                probation.put(e.getKey(), n);
+                probationWeight += n.weight;
+            }
+            evictExcess();
+        }
+
+        /**
+         * Evicts the least recently used mappings, first from the
+         * probationary segment and then from the protected segment, until the
+         * stripe is within its capacity.
+         */
+        private void evictExcess() {
+            Iterator<Map.Entry<Object,Node<V>>> it = 
+                probation.entrySet().iterator();
+            while (probationWeight + protectedWeight > maxWeight 
+                       && it.hasNext()) {
+                Node<V> n = it.next().getValue();
+                it.remove();
+                probationWeight -= n.weight;
+                stats.recordEviction();
+            }
+            it = protectedSegment.entrySet().iterator();
+            while (probationWeight + protectedWeight > maxWeight 
+                       && it.hasNext()) {
+                Node<V> n = it.next().getValue();
+                it.remove();
+                protectedWeight -= n.weight;
+                stats.recordEviction();
+            }
+        }
+
+        synchronized void clear() {
+            probation.clear();
+            protectedSegment.clear();
+            probationWeight = 0;
+            protectedWeight = 0;
+        }
+
+        synchronized int size() {
+            return probation.size() + protectedSegment.size();
+        }
+
+        synchronized long weight() {
+            return probationWeight + protectedWeight;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+
+/**
+ * A utility for buffering updates to shared state in thread-local deltas that
+ * are periodically merged back into the shared state.  Algorithms whose updates
+ * are additive, such as summing index vectors into a word's semantics, can
+ * use this class to avoid contending on the locks of frequently updated shared
+ * objects.  Each thread accumulates its updates into a private delta for each
+ * key it has touched, and after every {@code mergeInterval} documents those
+ * deltas are merged into the shared state using {@link #merge(Object, Object)
+ * merge}.  Because the merged values are summed, the final shared state is the
+ * same as if each update had been applied directly.
+ *
+ * <p> Deltas are only created and modified by the thread that owns them, so
+ * the methods returning deltas do not require any synchronization.  The {@link
+ * #mergeAll()} method merges the pending deltas of <i>every</i> thread, and
+ * should only be called once all threads have finished updating their deltas,
+ * e.g., from within {@code processSpace}.
+ *
+ * @param <K> the type of key for which deltas are kept
+ * @param <D> the type of the delta for each key
+ *
+ * @author David Jurgens
+ */
+public abstract class ThreadLocalAccumulator<K,D> {
+
+    /**
+     * The number of documents after which a thread merges its deltas
+     */
+    private final int mergeInterval;
+
+    /**
+     * The buffer of deltas for the current thread
+     */
+    private final ThreadLocal<Buffer<K,D>> localBuffer;
+
+    /**
+     * The buffers of all the threads that have created deltas, which are
+     * retained so that their contents can be merged even after the owning
+     * thread has exited.
+     */
+    private final Queue<Buffer<K,D>> buffers;
+
+    /**
+     * Creates a new accumulator that merges the deltas of a thread after it has
+     * processed the specified number of documents.
+     *
+     * @param mergeInterval the number of documents a thread processes between
+     *        merging its deltas into the shared state
+     *
+     * @throws IllegalArgumentException if {@code mergeInterval} is not
+     *         positive
+     */
+    public ThreadLocalAccumulator(int mergeInterval) {
+        if (mergeInterval <= 0)
+            throw new IllegalArgumentException(
+                "merge interval must be positive: " + mergeInterval);
+        this.mergeInterval = mergeInterval;
+        buffers = new ConcurrentLinkedQueue<Buffer<K,D>>();
+        localBuffer = new ThreadLocal<Buffer<K,D>>() {
+            @Override protected Buffer<K,D> initialValue() {
+                Buffer<K,D> b = new Buffer<K,D>();
+                buffers.add(b);
+                return b;
+            }
+        };
+    }
+
+    /**
+     * Returns a new, empty delta for the key.
+     */
+    protected abstract D createDelta(K key);
+
+    /**
+     * Adds the values of the delta to the shared state for the key.  This
+     * method may be called concurrently by multiple threads merging their
+     * deltas, so implementations are responsible for any locking of the shared
+     * state.
+     */
+    protected abstract void merge(K key, D delta);
+
+    /**
+     * Marks the end of a document for the current thread and merges the
+     * thread's deltas if it has processed {@code mergeInterval} documents
+     * since its last merge.
+     */
+    public void documentProcessed() {
+        Buffer<K,D> b = localBuffer.get();
+        // Locking on the buffer makes this document's updates visible to
+        // whichever thread eventually merges them
+        synchronized(b) {
+            if (++b.documents >= mergeInterval)
+                flush(b);
+        }
+    }
+
+    /**
+     * Returns the current thread's delta for the key, creating an empty delta
+     * if the thread has not updated the key since its last merge.
+     */
+    public D getDelta(K key) {
+        Map<K,D> deltas = localBuffer.get().deltas;
+        D delta = deltas.get(key);
+        if (delta == null) {
+            delta = createDelta(key);
+            deltas.put(key, delta);
+        }
+        return delta;
+    }
+
+    /**
+     * Returns the current thread's delta for the key or {@code null} if the
+     * thread has not updated the key since its last merge.
+     */
+    public D getDeltaIfPresent(K key) {
+        return localBuffer.get().deltas.get(key);
+    }
+
+    /**
+     * Returns the number of documents after which a thread merges its deltas.
+     */
+    public int getMergeInterval() {
+        return mergeInterval;
+    }
+
+    /**
+     * Merges the pending deltas of all threads into the shared state.
+     */
+    public void mergeAll() {
+        for (Buffer<K,D> b : buffers) {
+            synchronized(b) {
+                flush(b);
+            }
+        }
+    }
+
+    /**
+     * Merges and then clears all of the deltas in the buffer.  The caller must
+     * hold the lock on the buffer.
+     */
+    private void flush(Buffer<K,D> b) {
+        for (Map.Entry<K,D> e : b.deltas.entrySet())
+            merge(e.getKey(), e.getValue());
+        b.deltas.clear();
+        b.documents = 0;
+    }
+
+    /**
+     * The deltas of a single thread and the number of documents it has
+     * processed since its last merge.
+     */
+    private static class Buffer<K,D> {
+
+        final Map<K,D> deltas = new HashMap<K,D>();
+
+        int documents;
+    }
+}
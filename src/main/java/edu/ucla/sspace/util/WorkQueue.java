@@ -22,7 +22,6 @@
 
 package edu.ucla.sspace.util;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -30,6 +29,7 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -109,7 +109,7 @@ public class WorkQueue {
      */
     WorkQueue(int numThreads) {
         workQueue = new LinkedBlockingQueue<Runnable>();
-        threads = new ArrayList<Thread>();
+        threads = new CopyOnWriteArrayList<Thread>();
         taskKeyToLatch = new ConcurrentHashMap<Object,CountDownLatch>();
         for (int i = 0; i < numThreads; ++i) {
             Thread t = new WorkerThread(workQueue);
@@ -301,12 +301,23 @@ public class WorkQueue {
 
     /**
      * Executes the tasks using a thread pool and returns once all tasks have
-     * finished.
+     * finished.  If called from one of this queue's own threads, the tasks are
+     * run sequentially by the calling thread, which would otherwise deadlock
+     * if every thread in the pool were waiting on tasks of its own.
      *
      * @throws IllegalStateException if interrupted while waiting for the tasks
      *         to finish
      */
     public void run(Collection<Runnable> tasks) {
+        if (isWorkerThread()) {
+            for (Runnable r : tasks) {
+                if (r == null)
+                    throw new NullPointerException("Cannot run null tasks");
+                r.run();
+            }
+            return;
+        }
+
         // Create a semphore that the wrapped runnables will execute
         int numTasks = tasks.size();
         CountDownLatch latch = new CountDownLatch(numTasks);
@@ -324,6 +335,16 @@ public class WorkQueue {
         }
     }
 
+    /**
+     * Returns {@code true} if the calling thread is one of the threads of this
+     * {@code WorkQueue}, in which case {@link #run(Collection) run} executes
+     * its tasks in the calling thread.  Callers may use this to avoid
+     * splitting work into tasks that will not run concurrently.
+     */
+    public boolean isWorkerThread() {
+        return threads.contains(Thread.currentThread());
+    }
+
     /**
      * Returns the number of threads that are available to this {@code
      * WorkQueue} for processing the enqueued tasks.
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.vector;
+
+import java.io.Serializable;
+
+
+/**
+ * A {@code DoubleVector} where all values are held in memory as {@code float}
+ * values, which uses half the memory of a {@link DenseVector}.  Values are
+ * rounded to single precision when they are set and are widened to {@code
+ * double} when they are read.  This representation is intended for reduced
+ * spaces, such as those produced by an SVD, where single precision is more
+ * than sufficient.
+ *
+ * @author David Jurgens
+ */
+public class DenseFloatVector extends AbstractDoubleVector
+        implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The values of this vector
+     */
+    private final float[] vector;
+
+    /**
+     * The magnitude of the vector or -1 if the value is currently invalid and
+     * needs to be recomputed
+     */
+    private double magnitude;
+
+    /**
+     * Creates a {@code DenseFloatVector} with all values starting at 0 with
+     * the given length.
+     *
+     * @param vectorLength The size of the vector to create.
+     */
+    public DenseFloatVector(int vectorLength) {
+        vector = new float[vectorLength];
+        magnitude = 0;
+    }
+
+    /**
+     * Creates a {@code DenseFloatVector} whose values are the single precision
+     * versions of the provided values.
+     *
+     * @param vector The vector values to start with.
+     */
+    public DenseFloatVector(double[] vector) {
+        this.vector = new float[vector.length];
+        for (int i = 0; i < vector.length; ++i)
+            this.vector[i] = (float)vector[i];
+        magnitude = -1;
+    }
+
+    /**
+     * Creates a {@code DenseFloatVector} by copying the values from another
+     * {@code Vector}.
+     *
+     * @param v The {@code Vector} to copy from.
+     */
+    public DenseFloatVector(DoubleVector v) {
+        vector = new float[v.length()];
+        if (v instanceof SparseDoubleVector) {
+            for (int i : ((SparseDoubleVector)v).getNonZeroIndices())
+                vector[i] = (float)v.get(i);
+        }
+        else {
+            for (int i = 0; i < vector.length; ++i)
+                vector[i] = (float)v.get(i);
+        }
+        magnitude = -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double add(int index, double delta) {
+        magnitude = -1;
+        vector[index] += (float)delta;
+        return vector[index];
+    }
+
+    /**
+     * Returns the dot product of this vector and the provided vector, which is
+     * computed directly from the {@code float} values of both.
+     *
+     * @throws IllegalArgumentException if the vectors have different lengths
+     */
+    public double dotProduct(DenseFloatVector v) {
+        if (v.vector.length != vector.length)
+            throw new IllegalArgumentException(
+                "Vectors must be the same length");
+        double dot = 0;
+        for (int i = 0; i < vector.length; ++i)
+            dot += vector[i] * v.vector[i];
+        return dot;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double get(int index) {
+        return vector[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double magnitude() {
+        if (magnitude < 0) {
+            double m = 0;
+            for (float f : vector)
+                m += f * f;
+            magnitude = Math.sqrt(m);
+        }
+        return magnitude;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void set(int index, double value) {
+        magnitude = -1;
+        vector[index] = (float)value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] toArray() {
+        double[] arr = new double[vector.length];
+        for (int i = 0; i < arr.length; ++i)
+            arr[i] = vector[i];
+        return arr;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int length() {
+        return vector.length;
+    }
+}
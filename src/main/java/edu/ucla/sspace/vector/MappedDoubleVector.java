@@ -0,0 +1,124 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.vector;
+
+import edu.ucla.sspace.util.MappedFileBuffer;
+
+
+/**
+ * A read-only {@link DoubleVector} view of {@code double} values stored
+ * contiguously in a {@link MappedFileBuffer}.  Values are decoded from the
+ * mapped bytes on each access, so creating the view and computing with it
+ * never copies the vector onto the heap.  Values are expected to be stored
+ * using the big-endian encoding of {@link java.io.DataOutput#writeDouble(double)
+ * writeDouble}.
+ *
+ * <p> This class is thread-safe.
+ *
+ * @author David Jurgens
+ */
+public class MappedDoubleVector extends AbstractDoubleVector {
+
+    /**
+     * The mapped file that contains the vector's values
+     */
+    private final MappedFileBuffer buffer;
+
+    /**
+     * The byte offset in {@code buffer} of the first value
+     */
+    private final long offset;
+
+    /**
+     * The number of values in this vector
+     */
+    private final int length;
+
+    /**
+     * The magnitude of this vector, or {@code -1} if it has not yet been
+     * computed.
+     */
+    private volatile double magnitude;
+
+    /**
+     * Creates a view of the {@code length} values starting at {@code offset}
+     * in the buffer.
+     *
+     * @throws IllegalArgumentException if the buffer does not contain {@code
+     *         length} values at the offset
+     */
+    public MappedDoubleVector(MappedFileBuffer buffer, long offset, 
+                              int length) {
+        if (offset < 0 || offset + 8L * length > buffer.length())
+            throw new IllegalArgumentException(
+                "buffer does not contain " + length + " values at " + offset);
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.magnitude = -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double get(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("index: " + index);
+        return buffer.getDouble(offset + 8L * index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double magnitude() {
+        double m = magnitude;
+        if (m < 0) {
+            m = 0;
+            long end = offset + 8L * length;
+            for (long i = offset; i < end; i += 8) {
+                double d = buffer.getDouble(i);
+                m += d * d;
+            }
+            m = Math.sqrt(m);
+            magnitude = m;
+        }
+        return m;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] toArray() {
+        double[] arr = new double[length];
+        for (int i = 0; i < length; ++i)
+            arr[i] = buffer.getDouble(offset + 8L * i);
+        return arr;
+    }
+}
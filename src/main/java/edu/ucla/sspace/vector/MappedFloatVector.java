@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.vector;
+
+import edu.ucla.sspace.util.MappedFileBuffer;
+
+
+/**
+ * A read-only {@link DoubleVector} view of {@code float} values stored
+ * contiguously in a {@link MappedFileBuffer}.  This class is the
+ * single-precision counterpart to {@link MappedDoubleVector}: values are
+ * widened to {@code double} as they are read, and are expected to be stored
+ * using the big-endian encoding of {@link java.io.DataOutput#writeFloat(float)
+ * writeFloat}.
+ *
+ * <p> This class is thread-safe.
+ *
+ * @author David Jurgens
+ */
+public class MappedFloatVector extends AbstractDoubleVector {
+
+    /**
+     * The mapped file that contains the vector's values
+     */
+    private final MappedFileBuffer buffer;
+
+    /**
+     * The byte offset in {@code buffer} of the first value
+     */
+    private final long offset;
+
+    /**
+     * The number of values in this vector
+     */
+    private final int length;
+
+    /**
+     * The magnitude of this vector, or {@code -1} if it has not yet been
+     * computed.
+     */
+    private volatile double magnitude;
+
+    /**
+     * Creates a view of the {@code length} values starting at {@code offset}
+     * in the buffer.
+     *
+     * @throws IllegalArgumentException if the buffer does not contain {@code
+     *         length} values at the offset
+     */
+    public MappedFloatVector(MappedFileBuffer buffer, long offset, 
+                             int length) {
+        if (offset < 0 || offset + 4L * length > buffer.length())
+            throw new IllegalArgumentException(
+                "buffer does not contain " + length + " values at " + offset);
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.magnitude = -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double get(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("index: " + index);
+        return buffer.getFloat(offset + 4L * index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double magnitude() {
+        double m = magnitude;
+        if (m < 0) {
+            m = 0;
+            long end = offset + 4L * length;
+            for (long i = offset; i < end; i += 4) {
+                double d = buffer.getFloat(i);
+                m += d * d;
+            }
+            m = Math.sqrt(m);
+            magnitude = m;
+        }
+        return m;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] toArray() {
+        double[] arr = new double[length];
+        for (int i = 0; i < length; ++i)
+            arr[i] = buffer.getFloat(offset + 4L * i);
+        return arr;
+    }
+}
@@ -0,0 +1,277 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.vector;
+
+import edu.ucla.sspace.util.DoubleEntry;
+import edu.ucla.sspace.util.MappedFileBuffer;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * A read-only {@link SparseDoubleVector} view of non-zero values stored in a
+ * {@link MappedFileBuffer}.  The expected layout is the one used by the {@link
+ * edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat#SPARSE_BINARY
+ * SPARSE_BINARY} format: an {@code int} count of the non-zero values, followed
+ * by an {@code int} index and {@code double} value for each.  Values are
+ * decoded from the mapped bytes on each access.  Iterating over the non-zero
+ * entries, as is done by {@link edu.ucla.sspace.common.Similarity}, therefore
+ * never copies the vector onto the heap.
+ *
+ * <p> If the indices are stored in sorted order, {@link #get(int)} uses a
+ * binary search over the mapped indices; otherwise it falls back to a linear
+ * scan.
+ *
+ * <p> This class is thread-safe, although the iterators it returns are not.
+ *
+ * @author David Jurgens
+ */
+public class MappedSparseDoubleVector extends AbstractDoubleVector 
+        implements SparseDoubleVector, Iterable<DoubleEntry> {
+
+    /**
+     * The number of bytes used to store each index and value pair
+     */
+    private static final int ENTRY_SIZE = 12;
+
+    /**
+     * The mapped file that contains the vector's values
+     */
+    private final MappedFileBuffer buffer;
+
+    /**
+     * The byte offset in {@code buffer} of the first index and value pair
+     */
+    private final long entriesOffset;
+
+    /**
+     * The number of non-zero values in this vector
+     */
+    private final int nonZero;
+
+    /**
+     * The maximum length of this vector
+     */
+    private final int length;
+
+    /**
+     * The magnitude of this vector, or {@code -1} if it has not yet been
+     * computed.
+     */
+    private volatile double magnitude;
+
+    /**
+     * {@code 1} if the stored indices are in sorted order, {@code 0} if they
+     * are not, or {@code -1} if this has not yet been determined.
+     */
+    private volatile int sorted;
+
+    /**
+     * Creates a view of the sparse vector whose non-zero count is stored at
+     * {@code offset} in the buffer.
+     *
+     * @param buffer the mapped file containing the vector
+     * @param offset the byte offset of the vector's non-zero count
+     * @param length the maximum length of the vector
+     *
+     * @throws IllegalArgumentException if the buffer does not contain the
+     *         number of entries specified at the offset
+     */
+    public MappedSparseDoubleVector(MappedFileBuffer buffer, long offset, 
+                                    int length) {
+        this.buffer = buffer;
+        this.nonZero = buffer.getInt(offset);
+        this.entriesOffset = offset + 4;
+        if (nonZero < 0 
+                || entriesOffset + (long)ENTRY_SIZE * nonZero > buffer.length())
+            throw new IllegalArgumentException(
+                "buffer does not contain " + nonZero + " entries at " + offset);
+        this.length = length;
+        this.magnitude = -1;
+        this.sorted = -1;
+    }
+
+    /**
+     * Returns the stored index of the {@code i}th non-zero entry.
+     */
+    private int indexAt(int i) {
+        return buffer.getInt(entriesOffset + (long)ENTRY_SIZE * i);
+    }
+
+    /**
+     * Returns the stored value of the {@code i}th non-zero entry.
+     */
+    private double valueAt(int i) {
+        return buffer.getDouble(entriesOffset + (long)ENTRY_SIZE * i + 4);
+    }
+
+    /**
+     * Returns {@code true} if the stored indices are in increasing order.
+     */
+    private boolean isSorted() {
+        int s = sorted;
+        if (s < 0) {
+            s = 1;
+            for (int i = 1; i < nonZero; ++i) {
+                if (indexAt(i - 1) >= indexAt(i)) {
+                    s = 0;
+                    break;
+                }
+            }
+            sorted = s;
+        }
+        return s == 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double get(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("index: " + index);
+        if (isSorted()) {
+            int lo = 0;
+            int hi = nonZero - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int midIndex = indexAt(mid);
+                if (midIndex < index)
+                    lo = mid + 1;
+                else if (midIndex > index)
+                    hi = mid - 1;
+                else
+                    return valueAt(mid);
+            }
+        }
+        else {
+            for (int i = 0; i < nonZero; ++i) {
+                if (indexAt(i) == index)
+                    return valueAt(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the non-zero indices of this vector in sorted order.
+     */
+    public int[] getNonZeroIndices() {
+        int[] indices = new int[nonZero];
+        for (int i = 0; i < nonZero; ++i)
+            indices[i] = indexAt(i);
+        if (!isSorted())
+            Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     * Returns an empty {@link CompactSparseVector} of the same length, as this
+     * view cannot be modified.
+     */
+    public SparseDoubleVector instanceCopy() {
+        return new CompactSparseVector(length);
+    }
+
+    /**
+     * Returns an iterator over the non-zero entries in the order in which they
+     * are stored.  For efficiency, the same entry instance is updated and
+     * returned by each call to {@code next}.
+     */
+    public Iterator<DoubleEntry> iterator() {
+        return new EntryIterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double magnitude() {
+        double m = magnitude;
+        if (m < 0) {
+            m = 0;
+            for (int i = 0; i < nonZero; ++i) {
+                double d = valueAt(i);
+                m += d * d;
+            }
+            m = Math.sqrt(m);
+            magnitude = m;
+        }
+        return m;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] toArray() {
+        double[] arr = new double[length];
+        for (int i = 0; i < nonZero; ++i)
+            arr[indexAt(i)] = valueAt(i);
+        return arr;
+    }
+
+    /**
+     * An iterator over the mapped entries that reuses a single entry instance.
+     */
+    private class EntryIterator implements Iterator<DoubleEntry>, DoubleEntry {
+
+        int next;
+
+        int index;
+
+        double value;
+
+        public boolean hasNext() {
+            return next < nonZero;
+        }
+
+        public DoubleEntry next() {
+            if (next >= nonZero)
+                throw new NoSuchElementException();
+            index = indexAt(next);
+            value = valueAt(next);
+            next++;
+            return this;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException(
+                "mapped vectors cannot be modified");
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public double value() {
+            return value;
+        }
+    }
+}
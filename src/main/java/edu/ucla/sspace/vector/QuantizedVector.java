@@ -0,0 +1,195 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.vector;
+
+import java.io.Serializable;
+
+
+/**
+ * An unmodifiable {@code DoubleVector} whose values are quantized to signed
+ * 8-bit integers that share a single scale, which uses an eighth of the memory
+ * of a {@link DenseVector}.  Each value is stored as the nearest multiple of
+ * the scale, where the scale is chosen so that the largest magnitude value in
+ * the vector maps to {@code 127}.  The error of each value is therefore at
+ * most half a step, or {@code max|v_i| / 254}.
+ *
+ * <p> Because all values share the same scale, the dot product of two
+ * quantized vectors may be computed exactly over their integer values, as in
+ * {@link #dotProduct(QuantizedVector)}.
+ *
+ * @author David Jurgens
+ */
+public class QuantizedVector extends AbstractDoubleVector
+        implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The largest magnitude of a quantized value
+     */
+    private static final int MAX_QUANTUM = 127;
+
+    /**
+     * The quantized values of this vector
+     */
+    private final byte[] quanta;
+
+    /**
+     * The value of a single step of the quantized values
+     */
+    private final float scale;
+
+    /**
+     * The magnitude of this vector, which is fixed
+     */
+    private final double magnitude;
+
+    /**
+     * Creates a {@code QuantizedVector} that approximates the provided values.
+     */
+    public QuantizedVector(double[] values) {
+        this(quantize(values), scaleOf(values));
+    }
+
+    /**
+     * Creates a {@code QuantizedVector} that approximates the values of the
+     * provided vector.
+     */
+    public QuantizedVector(DoubleVector v) {
+        this(v.toArray());
+    }
+
+    /**
+     * Creates a {@code QuantizedVector} from values that have already been
+     * quantized, where the value at index {@code i} is {@code quanta[i] *
+     * scale}.  The created vector contains no references to the provided
+     * array.
+     *
+     * @throws IllegalArgumentException if the scale is negative, infinite or
+     *         not a number
+     */
+    public QuantizedVector(byte[] quanta, float scale) {
+        if (!(scale >= 0) || Float.isInfinite(scale))
+            throw new IllegalArgumentException("Invalid scale: " + scale);
+        this.quanta = quanta.clone();
+        this.scale = scale;
+        long sumOfSquares = 0;
+        for (byte b : quanta)
+            sumOfSquares += b * b;
+        magnitude = Math.sqrt(sumOfSquares) * scale;
+    }
+
+    /**
+     * Returns the scale that maps the largest magnitude of the values to
+     * {@code 127}, or {@code 0} if all the values are zero.
+     */
+    private static float scaleOf(double[] values) {
+        double max = 0;
+        for (double d : values) {
+            if (Double.isNaN(d) || Double.isInfinite(d))
+                throw new IllegalArgumentException(
+                    "Cannot quantize a non-finite value: " + d);
+            max = Math.max(max, Math.abs(d));
+        }
+        return (float)(max / MAX_QUANTUM);
+    }
+
+    /**
+     * Returns the values quantized with the scale returned by {@link
+     * #scaleOf(double[])}.
+     */
+    private static byte[] quantize(double[] values) {
+        float scale = scaleOf(values);
+        byte[] quanta = new byte[values.length];
+        if (scale == 0)
+            return quanta;
+        for (int i = 0; i < values.length; ++i) {
+            long q = Math.round(values[i] / scale);
+            // The scale was rounded to a float, which may push the largest
+            // value just past the range
+            quanta[i] = (byte)Math.max(-MAX_QUANTUM, Math.min(MAX_QUANTUM, q));
+        }
+        return quanta;
+    }
+
+    /**
+     * Returns the dot product of this vector and the provided vector, which is
+     * computed from the quantized values of both.
+     *
+     * @throws IllegalArgumentException if the vectors have different lengths
+     */
+    public double dotProduct(QuantizedVector v) {
+        if (v.quanta.length != quanta.length)
+            throw new IllegalArgumentException(
+                "Vectors must be the same length");
+        long dot = 0;
+        for (int i = 0; i < quanta.length; ++i)
+            dot += quanta[i] * v.quanta[i];
+        return dot * ((double)scale * v.scale);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double get(int index) {
+        return quanta[index] * scale;
+    }
+
+    /**
+     * Returns the quantized value at the index, which is multiplied by the
+     * {@link #scale() scale} to produce the value of the vector.
+     */
+    public byte getQuantum(int index) {
+        return quanta[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int length() {
+        return quanta.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double magnitude() {
+        return magnitude;
+    }
+
+    /**
+     * Returns the value of a single step of the quantized values.
+     */
+    public float scale() {
+        return scale;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] toArray() {
+        double[] arr = new double[quanta.length];
+        for (int i = 0; i < arr.length; ++i)
+            arr[i] = quanta[i] * scale;
+        return arr;
+    }
+}
@@ -139,6 +139,34 @@ public class VectorMath {
         return vector1;
     }
 
+    /**
+     * Adds the {@code TernaryVector} to the {@code IntegerVector} after moving
+     * each of its values to the dimension given by the reordering, and returns
+     * the result.  This is equivalent to adding a permuted copy of the ternary
+     * vector, but does not create the copy.
+     *
+     * @param vector1 The destination vector to be summed onto.
+     * @param vector2 The ternary vector whose values are permuted and summed.
+     * @param reordering The dimension of {@code vector1} to which each
+     *        dimension of {@code vector2} is added.
+     * @return The summation of {code vector1} and the permuted {@code
+     *         vector2}.
+     *
+     * @see edu.ucla.sspace.index.ReorderingPermutation
+     */
+    public static IntegerVector addPermuted(IntegerVector vector1,
+                                            TernaryVector vector2,
+                                            int[] reordering) {
+        if (vector2.length() != vector1.length())
+            throw new IllegalArgumentException(
+                    "Vectors of different sizes cannot be added");
+        for (int p : vector2.positiveDimensions())
+            vector1.add(reordering[p], 1);
+        for (int n : vector2.negativeDimensions())
+            vector1.add(reordering[n], -1);
+        return vector1;
+    }
+
     /**
      * Returns a new {@code Vector} which is the summation of {@code vector2}
      * and {@code vector1}.
@@ -422,7 +422,9 @@ public class Vectors {
             result = new CompactSparseVector(source.length());
             copyFromSparseVector(result, source);
         } else if (source instanceof DenseVector ||
-                   source instanceof ScaledDoubleVector) {
+                   source instanceof ScaledDoubleVector ||
+                   source instanceof MappedDoubleVector ||
+                   source instanceof MappedFloatVector) {
             result = new DenseVector(source.length());
             for (int i = 0; i < source.length(); ++i)
                 result.set(i, source.get(i));
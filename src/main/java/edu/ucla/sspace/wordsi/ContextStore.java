@@ -0,0 +1,636 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.wordsi;
+
+import edu.ucla.sspace.matrix.Matrices;
+import edu.ucla.sspace.matrix.SparseMatrix;
+import edu.ucla.sspace.matrix.YaleSparseMatrix;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.SparseDoubleVector;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOError;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import java.util.logging.Logger;
+
+
+/**
+ * A store for the context vectors of each focus word that keeps the vectors in
+ * a compact binary encoding and spills them to disk once they exceed a memory
+ * budget.  Each context is encoded as its number of non-zero values, followed
+ * by the delta-encoded indices of those values as variable-length integers, and
+ * then by the values themselves.  The values are written as variable-length
+ * integers if they are all integral, such as co-occurrence counts, and
+ * otherwise as {@code float} or {@code double} values, whichever represents
+ * them all exactly.  The encoded contexts of each focus word are appended to
+ * an in-memory buffer for that word.  Once the total capacity of all buffers
+ * exceeds the budget, every buffer is appended to a single spill file as one
+ * contiguous segment and then released.  The contexts for a focus word
+ * are read back, in the order they were added, as the rows of a {@link
+ * SparseMatrix} by {@link #getContexts(String, int)}.
+ *
+ * <p> This class is thread-safe.  Contexts may be added concurrently for any
+ * number of focus words, and the contexts for different focus words may be
+ * read concurrently, which allows each focus word to be clustered in parallel
+ * while only the words being clustered are resident in memory.  However,
+ * contexts for a focus word should not be added while that word is being read.
+ *
+ * @author David Jurgens
+ */
+public class ContextStore {
+
+    /**
+     * A logger for recording when contexts are spilled to disk.
+     */
+    private static final Logger LOG = 
+        Logger.getLogger(ContextStore.class.getName());
+
+    /**
+     * The initial number of bytes allocated for the buffer of a focus word.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 64;
+
+    /**
+     * The maximum number of bytes that may be required to encode an {@code
+     * int} as a variable-length integer.
+     */
+    private static final int MAX_VARINT_BYTES = 5;
+
+    /**
+     * The encoding of contexts whose values are all integers, which are written
+     * as zig-zag encoded variable-length integers.
+     */
+    private static final int INT_VALUES = 0;
+
+    /**
+     * The encoding of contexts whose values are all exactly representable as
+     * {@code float} values, which are written in four bytes.
+     */
+    private static final int FLOAT_VALUES = 1;
+
+    /**
+     * The encoding of all other contexts, whose values are written in eight
+     * bytes.
+     */
+    private static final int DOUBLE_VALUES = 2;
+
+    /**
+     * The maximum number of bytes that the contexts of a single focus word may
+     * occupy in memory at once.  Array sizes close to {@code
+     * Integer.MAX_VALUE} may not be allocated by some virtual machines.
+     */
+    private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * The number of bytes that may be allocated for contexts held in memory
+     * before they are spilled to disk.
+     */
+    private final long memoryBudget;
+
+    /**
+     * The contexts of each focus word.
+     */
+    private final ConcurrentMap<String,ContextList> contexts;
+
+    /**
+     * The number of bytes currently allocated for contexts held in memory.
+     */
+    private final AtomicLong bufferedBytes;
+
+    /**
+     * The lock held while spilling contexts to disk and while opening or
+     * closing the spill file.
+     */
+    private final Object spillLock;
+
+    /**
+     * The file to which contexts are spilled, or {@code null} if no contexts
+     * have been spilled since this store was created or last closed.
+     */
+    private File spillFile;
+
+    /**
+     * The stream that appends segments to the spill file.
+     */
+    private OutputStream spillStream;
+
+    /**
+     * The channel used to read segments from the spill file.  Positional reads
+     * from a channel are safe to perform concurrently.
+     */
+    private FileChannel spillChannel;
+
+    /**
+     * The number of bytes written to the spill file.
+     */
+    private long spilledBytes;
+
+    /**
+     * Creates a new {@code ContextStore} that keeps all of its contexts in
+     * memory.
+     */
+    public ContextStore() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new {@code ContextStore} that spills its contexts to disk
+     * once the buffers holding them exceed the specified number of bytes.
+     *
+     * @param memoryBudget the number of bytes that may be allocated for
+     *        contexts held in memory.  A budget of zero spills each context as
+     *        it is added.
+     *
+     * @throws IllegalArgumentException if {@code memoryBudget} is negative
+     */
+    public ContextStore(long memoryBudget) {
+        if (memoryBudget < 0)
+            throw new IllegalArgumentException(
+                "Memory budget must be non-negative: " + memoryBudget);
+        this.memoryBudget = memoryBudget;
+        contexts = new ConcurrentHashMap<String,ContextList>();
+        bufferedBytes = new AtomicLong();
+        spillLock = new Object();
+    }
+
+    /**
+     * Adds the context to the end of the contexts for the focus word, spilling
+     * the stored contexts to disk if they exceed the memory budget.  A {@code
+     * null} context is stored as an empty context.
+     *
+     * @return the index of the context among the contexts of {@code focusKey},
+     *         which is also the row at which it will appear in the matrix
+     *         returned by {@link #getContexts(String, int)}
+     */
+    public int add(String focusKey, SparseDoubleVector context) {
+        ContextList list = contexts.get(focusKey);
+        if (list == null) {
+            list = new ContextList();
+            ContextList existing = contexts.putIfAbsent(focusKey, list);
+            if (existing != null)
+                list = existing;
+        }
+
+        int contextId = 0;
+        int allocated = 0;
+        synchronized (list) {
+            contextId = list.size++;
+            allocated = list.append(focusKey, context);
+        }
+        if (bufferedBytes.addAndGet(allocated) > memoryBudget)
+            spill();
+        return contextId;
+    }
+
+    /**
+     * Returns the focus words that have at least one context in this store.
+     * The returned set is a read-only view that reflects later changes.
+     */
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(contexts.keySet());
+    }
+
+    /**
+     * Returns the number of contexts stored for the focus word.
+     */
+    public int size(String focusKey) {
+        ContextList list = contexts.get(focusKey);
+        if (list == null)
+            return 0;
+        synchronized (list) {
+            return list.size;
+        }
+    }
+
+    /**
+     * Returns the number of bytes currently allocated for contexts held in
+     * memory.
+     */
+    public long bufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    /**
+     * Returns the number of bytes of encoded contexts that have been written
+     * to disk.
+     */
+    public long spilledBytes() {
+        synchronized (spillLock) {
+            return spilledBytes;
+        }
+    }
+
+    /**
+     * Returns the contexts of the focus word as the rows of a matrix with the
+     * specified number of columns, in the order in which they were added.  Any
+     * values of a context at or beyond {@code columns} are not included.  If
+     * the focus word has no contexts, the returned matrix has no rows.
+     *
+     * @throws IOError if an error occurs while reading the spilled contexts
+     */
+    public SparseMatrix getContexts(String focusKey, int columns) {
+        ContextList list = contexts.get(focusKey);
+        if (list == null)
+            return new YaleSparseMatrix(0, columns);
+
+        List<SparseDoubleVector> rows = null;
+        List<Segment> segments = null;
+        byte[] buffer = null;
+        int bufferLength = 0;
+        synchronized (list) {
+            rows = new ArrayList<SparseDoubleVector>(list.size);
+            segments = new ArrayList<Segment>(list.segments);
+            buffer = list.buffer;
+            bufferLength = list.length;
+        }
+
+        for (Segment segment : segments) {
+            byte[] bytes = read(segment);
+            decode(bytes, bytes.length, columns, rows);
+        }
+        if (buffer != null)
+            decode(buffer, bufferLength, columns, rows);
+        return Matrices.asSparseMatrix(rows, columns);
+    }
+
+    /**
+     * Removes the contexts of the focus word from this store, releasing any of
+     * its contexts that are held in memory.  Contexts that have been spilled
+     * remain on disk until the store is closed.
+     */
+    public void remove(String focusKey) {
+        ContextList list = contexts.remove(focusKey);
+        if (list == null)
+            return;
+        synchronized (list) {
+            if (list.buffer != null)
+                bufferedBytes.addAndGet(-list.buffer.length);
+            list.buffer = null;
+            list.length = 0;
+        }
+    }
+
+    /**
+     * Removes all contexts from this store and deletes its spill file.  The
+     * store may continue to be used after it is closed.
+     *
+     * @throws IOError if an error occurs while closing the spill file
+     */
+    public void close() {
+        synchronized (spillLock) {
+            for (String focusKey : contexts.keySet())
+                remove(focusKey);
+            if (spillFile == null)
+                return;
+            try {
+                spillStream.close();
+                spillChannel.close();
+            } catch (IOException ioe) {
+                throw new IOError(ioe);
+            } finally {
+                spillFile.delete();
+                spillFile = null;
+                spillStream = null;
+                spillChannel = null;
+                spilledBytes = 0;
+            }
+        }
+    }
+
+    /**
+     * Appends the in-memory contexts of every focus word to the spill file and
+     * releases their buffers, if the memory budget is still exceeded once the
+     * spill lock is acquired.
+     */
+    private void spill() {
+        synchronized (spillLock) {
+            // Another thread may have spilled the contexts while this thread
+            // was waiting for the lock
+            if (bufferedBytes.get() <= memoryBudget)
+                return;
+            long released = 0;
+            try {
+                if (spillFile == null) {
+                    spillFile = File.createTempFile("wordsi-contexts", ".dat");
+                    spillFile.deleteOnExit();
+                    spillStream = new BufferedOutputStream(
+                        new FileOutputStream(spillFile), 1 << 20);
+                    spillChannel = 
+                        new RandomAccessFile(spillFile, "r").getChannel();
+                }
+                for (ContextList list : contexts.values()) {
+                    synchronized (list) {
+                        if (list.length == 0)
+                            continue;
+                        spillStream.write(list.buffer, 0, list.length);
+                        list.segments.add(
+                            new Segment(spilledBytes, list.length));
+                        spilledBytes += list.length;
+                        bufferedBytes.addAndGet(-list.buffer.length);
+                        released += list.length;
+                        list.buffer = null;
+                        list.length = 0;
+                    }
+                }
+                // Flush so that the new segments are visible to the channel
+                spillStream.flush();
+            } catch (IOException ioe) {
+                throw new IOError(ioe);
+            }
+            LOG.fine("Spilled " + released + " bytes of contexts to " + 
+                     spillFile + " (" + spilledBytes + " bytes in total)");
+        }
+    }
+
+    /**
+     * Returns the bytes of the spilled segment.
+     */
+    private byte[] read(Segment segment) {
+        // Acquiring the lock waits for any spill in progress, which may have
+        // recorded the segment before flushing it to the file
+        FileChannel channel = null;
+        synchronized (spillLock) {
+            channel = spillChannel;
+        }
+        byte[] bytes = new byte[segment.length];
+        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        try {
+            while (bb.hasRemaining()) {
+                int read = channel.read(bb, segment.offset + bb.position());
+                if (read < 0)
+                    throw new IOException("Unexpected end of " + spillFile);
+            }
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+        return bytes;
+    }
+
+    /**
+     * Decodes the contexts in the first {@code length} bytes of the array and
+     * adds them to {@code rows} as vectors of the specified length.
+     */
+    private static void decode(byte[] bytes, int length, int columns,
+                               List<SparseDoubleVector> rows) {
+        int[] pos = new int[1];
+        while (pos[0] < length) {
+            int nonZero = readVarInt(bytes, pos);
+            if (nonZero == 0) {
+                rows.add(new CompactSparseVector(columns));
+                continue;
+            }
+            int encoding = bytes[pos[0]++];
+
+            int[] indices = new int[nonZero];
+            int index = 0;
+            for (int i = 0; i < nonZero; ++i) {
+                index += readVarInt(bytes, pos);
+                indices[i] = index;
+            }
+
+            double[] values = new double[nonZero];
+            for (int i = 0; i < nonZero; ++i) {
+                switch (encoding) {
+                case INT_VALUES: {
+                    int zigZag = readVarInt(bytes, pos);
+                    values[i] = (zigZag >>> 1) ^ -(zigZag & 1);
+                    break;
+                }
+                case FLOAT_VALUES:
+                    values[i] = Float.intBitsToFloat(
+                        (int)readFixed(bytes, pos, 4));
+                    break;
+                default:
+                    values[i] = Double.longBitsToDouble(
+                        readFixed(bytes, pos, 8));
+                    break;
+                }
+            }
+
+            // Values beyond the requested number of columns are dropped, and
+            // since the indices are sorted they are always a suffix
+            int kept = nonZero;
+            while (kept > 0 && indices[kept - 1] >= columns)
+                kept--;
+            if (kept < nonZero) {
+                indices = Arrays.copyOf(indices, kept);
+                values = Arrays.copyOf(values, kept);
+            }
+            rows.add(new CompactSparseVector(indices, values, columns));
+        }
+    }
+
+    /**
+     * Returns the variable-length integer at {@code pos[0]} and advances the
+     * position past it.
+     */
+    private static int readVarInt(byte[] bytes, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Returns the big-endian value of {@code numBytes} bytes at {@code pos[0]}
+     * and advances the position past it.
+     */
+    private static long readFixed(byte[] bytes, int[] pos, int numBytes) {
+        long value = 0;
+        for (int i = 0; i < numBytes; ++i)
+            value = (value << 8) | (bytes[pos[0]++] & 0xFF);
+        return value;
+    }
+
+    /**
+     * The location of a spilled run of contexts within the spill file.
+     */
+    private static final class Segment {
+
+        /**
+         * The offset of the first byte of the run
+         */
+        final long offset;
+
+        /**
+         * The number of bytes in the run
+         */
+        final int length;
+
+        public Segment(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The contexts of a single focus word, made up of the segments that have
+     * been spilled to disk followed by the contexts held in memory.  All access
+     * must be synchronized on the instance.
+     */
+    private static final class ContextList {
+
+        /**
+         * The total number of contexts, both spilled and in memory
+         */
+        int size;
+
+        /**
+         * The encoded contexts that have not been spilled, or {@code null} if
+         * there are none
+         */
+        byte[] buffer;
+
+        /**
+         * The number of bytes used in {@code buffer}
+         */
+        int length;
+
+        /**
+         * The spilled segments, in the order they were written
+         */
+        final List<Segment> segments = new ArrayList<Segment>(1);
+
+        /**
+         * Encodes the context at the end of the buffer and returns the number
+         * of bytes by which the capacity of the buffer grew.
+         */
+        int append(String focusKey, SparseDoubleVector context) {
+            int[] nonZero = (context == null)
+                ? new int[0] : context.getNonZeroIndices();
+            // Sparse vectors backed by hash tables do not return their indices
+            // in order, which the delta encoding requires
+            for (int i = 1; i < nonZero.length; ++i) {
+                if (nonZero[i - 1] > nonZero[i]) {
+                    nonZero = Arrays.copyOf(nonZero, nonZero.length);
+                    Arrays.sort(nonZero);
+                    break;
+                }
+            }
+
+            // Use the smallest encoding that represents every value exactly
+            double[] values = new double[nonZero.length];
+            int encoding = INT_VALUES;
+            for (int i = 0; i < nonZero.length; ++i) {
+                double value = context.get(nonZero[i]);
+                values[i] = value;
+                long bits = Double.doubleToRawLongBits(value);
+                if (encoding == INT_VALUES && 
+                        Double.doubleToRawLongBits((int)value) != bits)
+                    encoding = FLOAT_VALUES;
+                if (encoding == FLOAT_VALUES &&
+                        Double.doubleToRawLongBits((float)value) != bits)
+                    encoding = DOUBLE_VALUES;
+            }
+
+            long required = (long)length + MAX_VARINT_BYTES + 1 +
+                (long)nonZero.length * (MAX_VARINT_BYTES + 8);
+            if (required > MAX_BUFFER_SIZE)
+                throw new IllegalStateException(
+                    "The in-memory contexts for " + focusKey + " exceed " +
+                    MAX_BUFFER_SIZE + " bytes; use a smaller memory budget");
+            int oldCapacity = (buffer == null) ? 0 : buffer.length;
+            if (required > oldCapacity) {
+                long capacity = Math.max(oldCapacity, INITIAL_BUFFER_SIZE);
+                while (capacity < required)
+                    capacity <<= 1;
+                capacity = Math.min(capacity, MAX_BUFFER_SIZE);
+                buffer = (buffer == null)
+                    ? new byte[(int)capacity]
+                    : Arrays.copyOf(buffer, (int)capacity);
+            }
+
+            writeVarInt(nonZero.length);
+            if (nonZero.length == 0)
+                return buffer.length - oldCapacity;
+            buffer[length++] = (byte)encoding;
+            int last = 0;
+            for (int index : nonZero) {
+                writeVarInt(index - last);
+                last = index;
+            }
+            for (double value : values) {
+                switch (encoding) {
+                case INT_VALUES: {
+                    int v = (int)value;
+                    writeVarInt((v << 1) ^ (v >> 31));
+                    break;
+                }
+                case FLOAT_VALUES:
+                    writeFixed(Float.floatToRawIntBits((float)value), 4);
+                    break;
+                default:
+                    writeFixed(Double.doubleToRawLongBits(value), 8);
+                    break;
+                }
+            }
+            return buffer.length - oldCapacity;
+        }
+
+        /**
+         * Writes the low {@code numBytes} bytes of the value at the end of the
+         * buffer in big-endian order.
+         */
+        private void writeFixed(long value, int numBytes) {
+            for (int shift = (numBytes - 1) * 8; shift >= 0; shift -= 8)
+                buffer[length++] = (byte)(value >>> shift);
+        }
+
+        /**
+         * Writes the value, treated as unsigned, at the end of the buffer using
+         * seven bits per byte, with the high bit set on all but the last byte.
+         */
+        private void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                buffer[length++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte)value;
+        }
+    }
+}
@@ -26,17 +26,12 @@ import edu.ucla.sspace.clustering.Assignments;
 import edu.ucla.sspace.clustering.Clustering;
 
 import edu.ucla.sspace.matrix.SparseMatrix;
-import edu.ucla.sspace.matrix.Matrices;
 
 import edu.ucla.sspace.util.WorkQueue;
 
-import edu.ucla.sspace.vector.CompactSparseVector;
-import edu.ucla.sspace.vector.DoubleVector;
 import edu.ucla.sspace.vector.SparseDoubleVector;
-import edu.ucla.sspace.vector.Vectors;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -52,6 +47,11 @@ import java.util.logging.Logger;
  * A {@link Wordsi} implementation that performs batch clustering.  Each context
  * vector is stored and later clustered using a {@link Clustering} algorithm.
  *
+ * <p> Context vectors are kept in a {@link ContextStore}, which may be given a
+ * memory budget beyond which the contexts are spilled to disk.  When the space
+ * is processed, the focus words are clustered in parallel and the contexts of
+ * each word are only read back into memory while that word is clustered.
+ *
  * @author Keith Stevens
  */
 public class WaitingWordsi extends BaseWordsi {
@@ -69,10 +69,9 @@ public class WaitingWordsi extends BaseWordsi {
     private final Clustering clustering;
 
     /**
-     * A mapping from strings to the set of context vectors associated with that
-     * token.
+     * The context vectors associated with each token.
      */
-    private final Map<String, List<SparseDoubleVector>> dataVectors;
+    private final ContextStore dataVectors;
 
     /**
      * The final word space, which maps from strings to the semantic
@@ -136,13 +135,54 @@ public class WaitingWordsi extends BaseWordsi {
                          Clustering clustering,
                          AssignmentReporter reporter,
                          int numClusters) {
+        this(acceptedWords, extractor, clustering, reporter, numClusters,
+             new ContextStore());
+    }
+
+    /**
+     * Creates a new {@link WaitingWordsi} that spills its context vectors to
+     * disk once they exceed the specified number of bytes.
+     *
+     * @param acceptedWords The set of words that {@link Wordsi} should
+     *        represent.  This may be {@code null} or empty}.
+     * @param extractor The {@link ContextExtractor} used to parse documents.
+     * @param clustering The {@link Clustering} algorithm to use on each data
+     *        set.
+     * @param reporter The {@link AssignmentReporter} responsible for generating
+     *        a report that details the cluster assignments.  This may be {@link
+     *        null}.  If {@code trackSecondaryKeys} is false, this is not used.
+     * @param numClusters Specifies the number of clusters to generate for each
+     *        term.
+     * @param contextMemory The number of bytes of encoded context vectors to
+     *        keep in memory before spilling them to disk.
+     */
+    public WaitingWordsi(Set<String> acceptedWords,
+                         ContextExtractor extractor,
+                         Clustering clustering,
+                         AssignmentReporter reporter,
+                         int numClusters,
+                         long contextMemory) {
+        this(acceptedWords, extractor, clustering, reporter, numClusters,
+             new ContextStore(contextMemory));
+    }
+
+    /**
+     * Creates a new {@link WaitingWordsi} that stores its context vectors in
+     * {@code dataVectors}.
+     */
+    private WaitingWordsi(Set<String> acceptedWords,
+                          ContextExtractor extractor,
+                          Clustering clustering,
+                          AssignmentReporter reporter,
+                          int numClusters,
+                          ContextStore dataVectors) {
         super(acceptedWords, extractor);
 
         this.clustering = clustering;
         this.reporter = reporter;
         this.numClusters = numClusters;
+        this.dataVectors = dataVectors;
 
-        dataVectors = new HashMap<String, List<SparseDoubleVector>>();
         wordSpace = new ConcurrentHashMap<String, SparseDoubleVector>();
     }
 
@@ -167,24 +207,8 @@ public class WaitingWordsi extends BaseWordsi {
     public void handleContextVector(String focusKey,
                                     String secondaryKey,
                                     SparseDoubleVector context) {
-        // Get the list of context vectors for the focus key.
-        List<SparseDoubleVector> termContexts = dataVectors.get(focusKey);
-        if (termContexts == null) {
-            synchronized (this) {
-                termContexts = dataVectors.get(focusKey);
-                if (termContexts == null) {
-                    termContexts = new ArrayList<SparseDoubleVector>();
-                    dataVectors.put(focusKey, termContexts);
-                }
-            }
-        }
-
         // Add the new context vector.
-        int contextId = 0;
-        synchronized (termContexts) {
-            contextId = termContexts.size();
-            termContexts.add(context);
-        }
+        int contextId = dataVectors.add(focusKey, context);
 
         // Record the association.
         if (reporter != null)
@@ -196,28 +220,25 @@ public class WaitingWordsi extends BaseWordsi {
      */
     public void processSpace(final Properties props) {
         WorkQueue workQueue = WorkQueue.getWorkQueue();
-
-        Object key = workQueue.registerTaskGroup(dataVectors.size());
-        // Process each word's context set in a worker thread.
-        for (Map.Entry<String, List<SparseDoubleVector>> entry :
-                dataVectors.entrySet()) {
-            // Get the root word being discriminated and list of observed
-            // contexts.
-            final String senseName = entry.getKey();
-
-            List<SparseDoubleVector> contextsWithNoLength = entry.getValue();
-            final List<SparseDoubleVector> contextSet = 
-                new ArrayList<SparseDoubleVector>(contextsWithNoLength.size());
-            for (SparseDoubleVector v : contextsWithNoLength)
-                contextSet.add(Vectors.subview(v, 0, getVectorLength()));
-            
+        final int vectorLength = getVectorLength();
+
+        List<String> terms = new ArrayList<String>(dataVectors.keySet());
+        Object key = workQueue.registerTaskGroup(terms.size());
+        // Process each word's context set in a worker thread.  The contexts are
+        // only read from the store once a thread is available to cluster them,
+        // so at most one word per thread is resident at a time.
+        for (final String senseName : terms) {
             workQueue.add(key, new Runnable() {
                 public void run() {
-                    clusterTerm(senseName, contextSet, props);
+                    SparseMatrix contexts = 
+                        dataVectors.getContexts(senseName, vectorLength);
+                    dataVectors.remove(senseName);
+                    clusterTerm(senseName, contexts, props);
                 }
             });
         }
         workQueue.await(key);
+        dataVectors.close();
         LOG.info("Finished processing all terms");
     }
 
@@ -225,11 +246,8 @@ public class WaitingWordsi extends BaseWordsi {
      * Clusters the context vectors associated with {@link senseName}.
      */
     private void clusterTerm(String senseName,
-                             List<SparseDoubleVector> contextSet,
+                             SparseMatrix contexts,
                              Properties props) {
-        // Convert the data points to a sparse matrix.
-        SparseMatrix contexts = Matrices.asSparseMatrix(contextSet);
-
         // Cluster the context set.
         LOG.info("Clustering term: " + senseName);
         Assignments assignments = (numClusters > 0) 
@@ -249,9 +267,6 @@ public class WaitingWordsi extends BaseWordsi {
 
         LOG.info("Finished creating centroids for term: " + senseName);
 
-        // Empty out the stored contexts to free up memory for later processes.
-        contextSet.clear();
-
         // If the reporter is null, avoid making any report.
         if (reporter == null)
             return;
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.clustering;
+
+import edu.ucla.sspace.clustering.criterion.CriterionFunction;
+import edu.ucla.sspace.clustering.criterion.G1Function;
+import edu.ucla.sspace.clustering.criterion.I1Function;
+
+import edu.ucla.sspace.clustering.seeding.KMeansSeed;
+import edu.ucla.sspace.clustering.seeding.RandomSeed;
+
+import edu.ucla.sspace.matrix.ArrayMatrix;
+import edu.ucla.sspace.matrix.Matrix;
+import edu.ucla.sspace.matrix.YaleSparseMatrix;
+
+import edu.ucla.sspace.util.WorkQueue;
+
+import edu.ucla.sspace.vector.DoubleVector;
+
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link DirectClustering}
+ */
+public class DirectClusteringTests {
+
+    /**
+     * Returns a matrix whose rows are noisy copies of {@code numClusters}
+     * random directions, with row {@code i} drawn from direction {@code i %
+     * numClusters}.
+     */
+    private static Matrix blobs(int rows, int columns, int numClusters, 
+                                double noise, Random rand) {
+        double[][] directions = new double[numClusters][columns];
+        for (double[] d : directions)
+            for (int c = 0; c < columns; ++c)
+                d[c] = rand.nextDouble();
+        Matrix m = new ArrayMatrix(rows, columns);
+        for (int r = 0; r < rows; ++r)
+            for (int c = 0; c < columns; ++c)
+                m.set(r, c, directions[r % numClusters][c] 
+                      + noise * rand.nextGaussian());
+        return m;
+    }
+
+    /**
+     * Returns a sparse matrix with roughly {@code density} of its values set.
+     */
+    private static Matrix sparse(int rows, int columns, double density, 
+                                 Random rand) {
+        Matrix m = new YaleSparseMatrix(rows, columns);
+        for (int r = 0; r < rows; ++r)
+            for (int c = 0; c < columns; ++c)
+                if (rand.nextDouble() < density)
+                    m.set(r, c, rand.nextDouble());
+        return m;
+    }
+
+    /**
+     * Returns the seeds of the first {@code k} rows.
+     */
+    private static DoubleVector[] seeds(Matrix m, int k) {
+        DoubleVector[] seeds = new DoubleVector[k];
+        for (int i = 0; i < k; ++i)
+            seeds[i] = m.getRowVector(i);
+        return seeds;
+    }
+
+    /**
+     * Returns the clusters as a set of sets of row indices, which can be
+     * compared regardless of how the clusters are numbered.
+     */
+    private static Set<Set<Integer>> partition(Assignments assignments) {
+        return new HashSet<Set<Integer>>(assignments.clusters());
+    }
+
+    @Test public void testBoundsMatchExhaustiveDense() {
+        Random rand = new Random(1);
+        Matrix m = blobs(300, 20, 6, 0.4, rand);
+        HamerlyKMeans kMeans = new HamerlyKMeans(m);
+        for (int k = 2; k <= 10; k += 4) {
+            DoubleVector[] seeds = seeds(m, k);
+            assertArrayEquals(kMeans.clusterExhaustively(seeds, 100),
+                              kMeans.cluster(seeds, 100, false));
+        }
+    }
+
+    @Test public void testBoundsMatchExhaustiveSparse() {
+        Random rand = new Random(2);
+        Matrix m = sparse(400, 60, 0.1, rand);
+        HamerlyKMeans kMeans = new HamerlyKMeans(m);
+        for (int k = 3; k <= 15; k += 6) {
+            DoubleVector[] seeds = seeds(m, k);
+            assertArrayEquals(kMeans.clusterExhaustively(seeds, 100),
+                              kMeans.cluster(seeds, 100, true));
+        }
+    }
+
+    @Test public void testMaxIterations() {
+        Random rand = new Random(3);
+        Matrix m = blobs(200, 10, 4, 1, rand);
+        HamerlyKMeans kMeans = new HamerlyKMeans(m);
+        DoubleVector[] seeds = seeds(m, 4);
+        int[] initial = kMeans.cluster(seeds, 0, false);
+        // No iterations leaves each row with its most similar seed
+        for (int r = 0; r < m.rows(); ++r) {
+            DoubleVector v = m.getRowVector(r);
+            double best = -1;
+            int bestSeed = -1;
+            for (int c = 0; c < seeds.length; ++c) {
+                double sim = edu.ucla.sspace.common.Similarity
+                    .cosineSimilarity(v, seeds[c]);
+                if (sim > best) {
+                    best = sim;
+                    bestSeed = c;
+                }
+            }
+            assertEquals(bestSeed, initial[r]);
+        }
+    }
+
+    @Test public void testEmptyRowsAndSeeds() {
+        Matrix m = new YaleSparseMatrix(4, 3);
+        m.set(0, 0, 1);
+        m.set(1, 0, 2);
+        m.set(3, 2, 1);
+        HamerlyKMeans kMeans = new HamerlyKMeans(m);
+        // The empty seed never attracts any rows, and the empty row stays in
+        // the first cluster
+        DoubleVector[] seeds = { m.getRowVector(2), m.getRowVector(0), 
+                                 m.getRowVector(3) };
+        assertArrayEquals(new int[] { 1, 1, 0, 2 }, 
+                          kMeans.cluster(seeds, 10, false));
+    }
+
+    @Test public void testBatchRecoversClusters() {
+        Random rand = new Random(4);
+        Matrix m = blobs(240, 30, 4, 0.05, rand);
+        // Seed with one row of each cluster so that the result does not
+        // depend on a random choice of seeds
+        KMeansSeed firstRows = new KMeansSeed() {
+                public DoubleVector[] chooseSeeds(int k, Matrix dataPoints) {
+                    return seeds(dataPoints, k);
+                }
+            };
+        Assignments result = DirectClustering.batchCluster(
+            m, 4, 3, firstRows, new I1Function(), 100);
+
+        Set<Set<Integer>> expected = new HashSet<Set<Integer>>();
+        for (int c = 0; c < 4; ++c) {
+            Set<Integer> cluster = new HashSet<Integer>();
+            for (int r = c; r < m.rows(); r += 4)
+                cluster.add(r);
+            expected.add(cluster);
+        }
+        assertEquals(expected, partition(result));
+    }
+
+    @Test public void testCriterionHoldsBestSolution() {
+        Random rand = new Random(5);
+        Matrix m = blobs(150, 10, 5, 0.5, rand);
+        CriterionFunction[] criteria = { new I1Function(), new G1Function() };
+        for (CriterionFunction criterion : criteria) {
+            Assignments result = DirectClustering.batchCluster(
+                m, 5, 6, new RandomSeed(), criterion, 100);
+            int[] expected = new int[m.rows()];
+            for (int r = 0; r < m.rows(); ++r)
+                expected[r] = result.get(r).assignments()[0];
+            assertArrayEquals(expected, criterion.assignments());
+
+            // Scoring the returned solution anew should give the same score
+            CriterionFunction fresh = (criterion.isMaximize())
+                ? new I1Function() : new G1Function();
+            fresh.setup(m, expected, 5);
+            assertEquals(fresh.score(), criterion.score(), 1e-9);
+        }
+    }
+
+    @Test public void testBatchProperty() {
+        Random rand = new Random(8);
+        Matrix m = blobs(100, 10, 3, 0.1, rand);
+        Properties props = new Properties();
+        props.setProperty(DirectClustering.BATCH_PROPERTY, "true");
+        props.setProperty(DirectClustering.REPEAT_PROPERTY, "3");
+        props.setProperty(DirectClustering.MAX_ITERATIONS_PROPERTY, "5");
+        Assignments result = new DirectClustering().cluster(m, 3, props);
+        assertEquals(3, result.numClusters());
+        assertEquals(m.rows(), result.size());
+    }
+
+    @Test public void testConcurrentRepetitions() {
+        Random rand = new Random(9);
+        final Matrix m = blobs(100, 10, 3, 0.1, rand);
+        final Properties props = new Properties();
+        props.setProperty(DirectClustering.BATCH_PROPERTY, "true");
+        props.setProperty(DirectClustering.REPEAT_PROPERTY, "4");
+        props.setProperty(
+            DirectClustering.CONCURRENT_REPETITIONS_PROPERTY, "true");
+        Assignments result = new DirectClustering().cluster(m, 3, props);
+        assertEquals(3, result.numClusters());
+        assertEquals(m.rows(), result.size());
+
+        // Clustering from within the queue's own threads falls back to
+        // computing the repetitions sequentially rather than waiting on the
+        // queue
+        final Assignments[] nested = new Assignments[1];
+        WorkQueue.getWorkQueue().run(new Runnable() {
+                public void run() {
+                    nested[0] = new DirectClustering().cluster(m, 3, props);
+                }
+            });
+        assertEquals(m.rows(), nested[0].size());
+    }
+
+    @Test public void testIncrementalRepetitions() {
+        Random rand = new Random(6);
+        Matrix m = blobs(120, 10, 3, 0.05, rand);
+        CriterionFunction criterion = new I1Function();
+        Assignments result = 
+            DirectClustering.cluster(m, 3, 4, criterion);
+        assertEquals(3, result.numClusters());
+        assertEquals(m.rows(), result.size());
+        for (int r = 0; r < m.rows(); ++r)
+            assertEquals(result.get(r).assignments()[0],
+                         criterion.assignments()[r]);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNoRepetitions() {
+        Matrix m = blobs(10, 3, 2, 0.1, new Random(7));
+        DirectClustering.cluster(m, 2, 0, new I1Function());
+    }
+}
@@ -133,4 +133,148 @@ public class HierarchicalAgglomerativeClusteringTests {
         return sv;
     } 
     
+
+    /**
+     * Returns a matrix of random rows drawn around a few well-separated
+     * centers.
+     */
+    private static Matrix randomMatrix(int rows, int cols, boolean sparse,
+                                       Random rand) {
+        Matrix m = (sparse) 
+            ? new YaleSparseMatrix(rows, cols) 
+            : new ArrayMatrix(rows, cols);
+        for (int r = 0; r < rows; ++r) {
+            int center = rand.nextInt(4);
+            for (int c = 0; c < cols; ++c) {
+                if (sparse && rand.nextDouble() < .7)
+                    continue;
+                double offset = (c % 4 == center) ? 3 : 0;
+                m.set(r, c, offset + rand.nextDouble());
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Renumbers the clusters in the order of their first row, so that two
+     * partitions may be compared independently of their cluster labels.
+     */
+    private static int[] canonical(int[] assignments) {
+        Map<Integer,Integer> labels = new HashMap<Integer,Integer>();
+        int[] canonical = new int[assignments.length];
+        for (int i = 0; i < assignments.length; ++i) {
+            Integer label = labels.get(assignments[i]);
+            if (label == null) {
+                label = labels.size();
+                labels.put(assignments[i], label);
+            }
+            canonical[i] = label;
+        }
+        return canonical;
+    }
+
+    @Test public void testNearestNeighborChainMatchesGreedy() {
+        Random rand = new Random(1);
+        Matrix m = randomMatrix(60, 12, false, rand);
+        ClusterLinkage[] linkages = { ClusterLinkage.SINGLE_LINKAGE,
+                                      ClusterLinkage.COMPLETE_LINKAGE,
+                                      ClusterLinkage.MEAN_LINKAGE };
+        for (ClusterLinkage linkage : linkages) {
+            for (int k : new int[] { 1, 4, 9, 60 }) {
+                int[] expected = HierarchicalAgglomerativeClustering
+                    .clusterGreedily(m, -1, linkage, SimType.COSINE, k);
+                int[] actual = HierarchicalAgglomerativeClustering
+                    .partitionRows(m, k, linkage, SimType.COSINE);
+                assertArrayEquals(linkage + " k=" + k, 
+                                  canonical(expected), canonical(actual));
+            }
+            for (double threshold : new double[] { .5, .8, .95 }) {
+                int[] expected = HierarchicalAgglomerativeClustering
+                    .clusterGreedily(m, threshold, linkage, 
+                                     SimType.COSINE, -1);
+                int[] actual = HierarchicalAgglomerativeClustering
+                    .clusterRows(m, threshold, linkage, SimType.COSINE);
+                assertArrayEquals(linkage + " threshold=" + threshold,
+                                  canonical(expected), canonical(actual));
+            }
+        }
+    }
+
+    @Test public void testEuclideanNearestNeighborChain() {
+        Matrix m = randomMatrix(40, 6, false, new Random(2));
+        int[] expected = HierarchicalAgglomerativeClustering.clusterGreedily(
+            m, -1, ClusterLinkage.MEAN_LINKAGE, SimType.EUCLIDEAN, 5);
+        int[] actual = HierarchicalAgglomerativeClustering.partitionRows(
+            m, 5, ClusterLinkage.MEAN_LINKAGE, SimType.EUCLIDEAN);
+        assertArrayEquals(canonical(expected), canonical(actual));
+    }
+
+    @Test public void testLazySingleLinkage() {
+        Matrix m = randomMatrix(80, 20, true, new Random(3));
+        Properties props = new Properties();
+        props.setProperty(
+            HierarchicalAgglomerativeClustering.CLUSTER_LINKAGE_PROPERTY,
+            "SINGLE_LINKAGE");
+        HierarchicalAgglomerativeClustering hac = 
+            new HierarchicalAgglomerativeClustering();
+        Assignments stored = hac.cluster(m, 6, props);
+        props.setProperty(
+            HierarchicalAgglomerativeClustering.LAZY_SIMILARITY_PROPERTY,
+            "true");
+        Assignments lazy = hac.cluster(m, 6, props);
+        assertEquals(6, lazy.numClusters());
+        assertArrayEquals(canonical(toArray(stored)), 
+                          canonical(toArray(lazy)));
+    }
+
+    @Test public void testLazyMeanLinkage() {
+        for (boolean sparse : new boolean[] { false, true }) {
+            Matrix m = randomMatrix(70, 20, sparse, new Random(4));
+            for (int k : new int[] { 2, 5, 12 }) {
+                int[] stored = ReducibleLinkageClustering.cluster(
+                    m, -1, ClusterLinkage.MEAN_LINKAGE, SimType.COSINE, 
+                    k, false);
+                int[] lazy = ReducibleLinkageClustering.cluster(
+                    m, -1, ClusterLinkage.MEAN_LINKAGE, SimType.COSINE, 
+                    k, true);
+                assertArrayEquals(canonical(stored), canonical(lazy));
+            }
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testLazyCompleteLinkage() {
+        ReducibleLinkageClustering.cluster(
+            randomMatrix(10, 4, false, new Random(5)), -1, 
+            ClusterLinkage.COMPLETE_LINKAGE, SimType.COSINE, 2, true);
+    }
+
+    @Test public void testZeroRows() {
+        // Rows whose similarity is undefined are merged last
+        Matrix m = randomMatrix(20, 5, false, new Random(6));
+        for (int c = 0; c < 5; ++c) {
+            m.set(3, c, 0);
+            m.set(7, c, 0);
+        }
+        int[] assignments = HierarchicalAgglomerativeClustering.partitionRows(
+            m, 2, ClusterLinkage.COMPLETE_LINKAGE, SimType.PEARSON_CORRELATION);
+        assertEquals(20, assignments.length);
+        int[] lazy = ReducibleLinkageClustering.cluster(
+            m, -1, ClusterLinkage.SINGLE_LINKAGE, SimType.COSINE, 3, true);
+        assertEquals(3, max(lazy) + 1);
+    }
+
+    private static int max(int[] values) {
+        int max = -1;
+        for (int v : values)
+            max = Math.max(max, v);
+        return max;
+    }
+
+    private static int[] toArray(Assignments assignments) {
+        int[] array = new int[assignments.size()];
+        for (int i = 0; i < array.length; ++i)
+            array[i] = assignments.get(i).assignments()[0];
+        return array;
+    }
 }
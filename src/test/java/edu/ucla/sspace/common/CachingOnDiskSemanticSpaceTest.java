@@ -0,0 +1,98 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.common;
+
+import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
+
+import edu.ucla.sspace.util.CacheStatistics;
+
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.VectorIO;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link CachingOnDiskSemanticSpace} 
+ */
+public class CachingOnDiskSemanticSpaceTest {
+
+    DummySemanticSpace test;
+    
+    public CachingOnDiskSemanticSpaceTest() {
+        test = new DummySemanticSpace();
+        test.setVector("cow", new DenseVector(new double[] {1, 0, 0, 0}));
+        test.setVector("dog", new DenseVector(new double[] {0, 1, 0, 0}));
+        test.setVector("ear", new DenseVector(new double[] {0, 0, 1, 0}));
+        test.setVector("fig", new DenseVector(new double[] {0, 0, 0, 1}));
+    }
+
+    private File save() throws Exception {
+        File binaryFile = File.createTempFile("test-binary",".sspace");
+        binaryFile.deleteOnExit();
+        SemanticSpaceIO.save(test, binaryFile, SSpaceFormat.BINARY);
+        return binaryFile;
+    }
+
+    @Test public void testGetVector() throws Exception { 
+        CachingOnDiskSemanticSpace sspace = 
+            new CachingOnDiskSemanticSpace(save());
+        for (int i = 0; i < 2; ++i) {
+            for (String word : test.getWords()) {
+                assertEquals(VectorIO.toString(test.getVector(word)),
+                             VectorIO.toString(sspace.getVector(word)));
+            }
+        }
+        assertNull(sspace.getVector("missing"));
+        CacheStatistics stats = sspace.getCacheStatistics();
+        assertEquals(4, stats.hitCount());
+        assertEquals(5, stats.missCount());
+        assertEquals(5, stats.loadCount());
+    }
+
+    @Test public void testWarmUp() throws Exception { 
+        File freqFile = File.createTempFile("test-freq",".txt");
+        freqFile.deleteOnExit();
+        PrintWriter pw = new PrintWriter(freqFile);
+        pw.println("cow 5");
+        pw.println("missing 100");
+        pw.println("dog 20");
+        pw.println("ear 1");
+        pw.close();
+
+        CachingOnDiskSemanticSpace sspace = 
+            new CachingOnDiskSemanticSpace(save());
+        assertEquals(2, sspace.warmUp(freqFile, 2));
+        sspace.getCacheStatistics().reset();
+        sspace.getVector("dog");
+        sspace.getVector("cow");
+        sspace.getVector("ear");
+        assertEquals(2, sspace.getCacheStatistics().hitCount());
+        assertEquals(1, sspace.getCacheStatistics().missCount());
+    }
+}
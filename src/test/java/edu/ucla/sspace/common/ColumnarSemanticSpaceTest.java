@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.common;
+
+import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.MappedDoubleVector;
+import edu.ucla.sspace.vector.MappedFloatVector;
+
+import java.io.File;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link ColumnarSemanticSpace} 
+ */
+public class ColumnarSemanticSpaceTest {
+
+    DummySemanticSpace test;
+    
+    public ColumnarSemanticSpaceTest() {
+        test = new DummySemanticSpace();
+        test.setVector("cow", new DenseVector(new double[] {1, 0, 0, 0}));
+        test.setVector("dog", new DenseVector(new double[] {0, 1, 0, 0}));
+        test.setVector("ear", new DenseVector(new double[] {0, 0, 1, 0}));
+        test.setVector("fig", new DenseVector(new double[] {0, 0, 0, 1}));
+        test.setVector("git", new DenseVector(new double[] {1, 1, 0, 0}));
+        test.setVector("hat", new CompactSparseVector(
+                           new double[] {1, 0, 1, 0}));
+        test.setVector("its", new DenseVector(new double[] {1, 0, 0, -3.5}));
+        test.setVector("jäg", new DenseVector(new double[] {0, 0, 0, 0}));
+        test.setVector("kin", new DenseVector(new double[] {.1, .2, .3, .4}));
+    }
+
+    private static File tempFile() throws Exception {
+        File f = File.createTempFile("test-columnar",".sspace");
+        f.deleteOnExit();
+        return f;
+    }
+
+    private void assertSameSpace(SemanticSpace sspace, double delta) {
+        assertEquals(test.getWords().size(), sspace.getWords().size());
+        assertTrue(test.getWords().containsAll(sspace.getWords()));
+        assertEquals(4, sspace.getVectorLength());
+        for (String word : test.getWords()) {
+            assertTrue(sspace.getWords().contains(word));
+            assertArrayEquals(
+                ((DoubleVector)test.getVector(word)).toArray(),
+                ((DoubleVector)sspace.getVector(word)).toArray(), delta);
+        }
+        assertNull(sspace.getVector("missing"));
+        assertFalse(sspace.getWords().contains("missing"));
+    }
+
+    @Test public void testColumnar() throws Exception { 
+        File file = tempFile();
+        SemanticSpaceIO.save(test, file, SSpaceFormat.COLUMNAR);
+        assertEquals(SSpaceFormat.COLUMNAR, SemanticSpaceIO.getFormat(file));
+        SemanticSpace loaded = SemanticSpaceIO.load(file);
+        assertTrue(loaded instanceof ColumnarSemanticSpace);
+        assertSameSpace(loaded, 0);
+        assertTrue(loaded.getVector("cow") instanceof MappedDoubleVector);
+        assertEquals(test.getVector("its").magnitude(), 
+                     loaded.getVector("its").magnitude(), .0001);
+    }
+
+    @Test public void testColumnarFloat() throws Exception { 
+        File file = tempFile();
+        SemanticSpaceIO.save(test, file, SSpaceFormat.COLUMNAR_FLOAT);
+        SemanticSpace loaded = SemanticSpaceIO.load(file);
+        assertSameSpace(loaded, 1e-7);
+        assertTrue(loaded.getVector("cow") instanceof MappedFloatVector);
+        assertEquals((float).3, 
+                     ((DoubleVector)loaded.getVector("kin")).get(2), 0);
+    }
+
+    @Test public void testFloatIsSmaller() throws Exception { 
+        File doubles = tempFile();
+        File floats = tempFile();
+        SemanticSpaceIO.save(test, doubles, SSpaceFormat.COLUMNAR);
+        SemanticSpaceIO.save(test, floats, SSpaceFormat.COLUMNAR_FLOAT);
+        assertTrue(floats.length() < doubles.length());
+    }
+
+    @Test public void testManyShards() throws Exception { 
+        for (int wordsPerShard = 1; wordsPerShard <= 10; ++wordsPerShard) {
+            File file = tempFile();
+            ColumnarSemanticSpace.write(test, file, SSpaceFormat.COLUMNAR,
+                                        wordsPerShard);
+            ColumnarSemanticSpace loaded = new ColumnarSemanticSpace(file);
+            assertEquals((9 + wordsPerShard - 1) / wordsPerShard, 
+                         loaded.getShardCount());
+            assertSameSpace(loaded, 0);
+            assertSameSpace(new StaticSemanticSpace(file), 0);
+        }
+    }
+
+    @Test public void testWordOrderIsPreserved() throws Exception { 
+        File file = tempFile();
+        ColumnarSemanticSpace.write(test, file, SSpaceFormat.COLUMNAR, 2);
+        List<String> expected = new ArrayList<String>(test.getWords());
+        assertEquals(expected, 
+                     new ArrayList<String>(
+                         new ColumnarSemanticSpace(file).getWords()));
+        assertEquals(expected, 
+                     new ArrayList<String>(
+                         new StaticSemanticSpace(file).getWords()));
+    }
+
+    @Test public void testStaticAndOnDisk() throws Exception { 
+        File file = tempFile();
+        ColumnarSemanticSpace.write(test, file, SSpaceFormat.COLUMNAR_FLOAT, 4);
+        assertSameSpace(new StaticSemanticSpace(file), 1e-7);
+        OnDiskSemanticSpace onDisk = new OnDiskSemanticSpace(file);
+        assertSameSpace(onDisk, 1e-7);
+        // The on-disk space returns modifiable copies
+        DoubleVector v = (DoubleVector)onDisk.getVector("cow");
+        v.set(1, 5);
+        assertEquals(0, ((DoubleVector)onDisk.getVector("cow")).get(1), 0);
+    }
+
+    @Test public void testEmptySpace() throws Exception { 
+        File file = tempFile();
+        SemanticSpaceIO.save(new DummySemanticSpace(), file, 
+                             SSpaceFormat.COLUMNAR);
+        SemanticSpace loaded = SemanticSpaceIO.load(file);
+        assertEquals(0, loaded.getWords().size());
+        assertNull(loaded.getVector("cow"));
+    }
+
+    @Test(expected=UnsupportedOperationException.class) 
+    public void testWordsAreUnmodifiable() throws Exception { 
+        File file = tempFile();
+        SemanticSpaceIO.save(test, file, SSpaceFormat.COLUMNAR);
+        SemanticSpaceIO.load(file).getWords().remove("cow");
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testBinaryNotSupported() throws Exception { 
+        File file = tempFile();
+        SemanticSpaceIO.save(test, file, SSpaceFormat.BINARY);
+        new ColumnarSemanticSpace(file);
+    }
+}
@@ -0,0 +1,128 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.common;
+
+import edu.ucla.sspace.common.SemanticSpaceIO.SSpaceFormat;
+
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+import edu.ucla.sspace.vector.MappedDoubleVector;
+import edu.ucla.sspace.vector.MappedSparseDoubleVector;
+import edu.ucla.sspace.vector.SparseDoubleVector;
+import edu.ucla.sspace.vector.Vector;
+import edu.ucla.sspace.vector.VectorIO;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link MappedSemanticSpace} 
+ */
+public class MappedSemanticSpaceTest {
+
+    DummySemanticSpace test;
+    
+    public MappedSemanticSpaceTest() {
+        test = new DummySemanticSpace();
+        test.setVector("cow", new DenseVector(new double[] {1, 0, 0, 0}));
+        test.setVector("dog", new DenseVector(new double[] {0, 1, 0, 0}));
+        test.setVector("ear", new DenseVector(new double[] {0, 0, 1, 0}));
+        test.setVector("fig", new DenseVector(new double[] {0, 0, 0, 1}));
+        test.setVector("git", new DenseVector(new double[] {1, 1, 0, 0}));
+        test.setVector("hat", new DenseVector(new double[] {1, 0, 1, 0}));
+        test.setVector("its", new DenseVector(new double[] {1, 0, 0, -3.5}));
+        test.setVector("jäg", new DenseVector(new double[] {0, 0, 0, 0}));
+    }
+
+    @Test public void testBinary() throws Exception { 
+        File binaryFile = File.createTempFile("test-binary",".sspace");
+        binaryFile.deleteOnExit();
+        SemanticSpaceIO.save(test, binaryFile, SSpaceFormat.BINARY);
+        SemanticSpace mapped = new MappedSemanticSpace(binaryFile);
+        
+        assertEquals(test.getWords().size(), mapped.getWords().size());
+        assertTrue(test.getWords().containsAll(mapped.getWords()));
+        assertEquals(4, mapped.getVectorLength());
+        for (String word : test.getWords()) {
+            Vector v = mapped.getVector(word);
+            assertTrue(v instanceof MappedDoubleVector);
+            assertEquals(VectorIO.toString(test.getVector(word)),
+                         VectorIO.toString(v));
+            assertEquals(test.getVector(word).magnitude(), v.magnitude(), .0001);
+        }        
+        assertNull(mapped.getVector("missing"));
+    }
+
+    @Test public void testSparseBinary() throws Exception { 
+        File sparseBinaryFile = 
+            File.createTempFile("test-sparse-binary",".sspace");
+        sparseBinaryFile.deleteOnExit();
+        SemanticSpaceIO.save(test, sparseBinaryFile, 
+                             SSpaceFormat.SPARSE_BINARY);
+        SemanticSpace mapped = new MappedSemanticSpace(sparseBinaryFile);
+	
+        assertEquals(test.getWords().size(), mapped.getWords().size());
+        assertTrue(test.getWords().containsAll(mapped.getWords()));
+        for (String word : test.getWords()) {
+            Vector v = mapped.getVector(word);
+            assertTrue(v instanceof MappedSparseDoubleVector);
+            assertArrayEquals(((DoubleVector)test.getVector(word)).toArray(),
+                              ((DoubleVector)v).toArray(), 0);
+            assertEquals(test.getVector(word).magnitude(), v.magnitude(), .0001);
+        }
+        SparseDoubleVector its = (SparseDoubleVector)mapped.getVector("its");
+        assertArrayEquals(new int[] {0, 3}, its.getNonZeroIndices());
+        assertEquals(-3.5, its.get(3), 0);
+        assertEquals(0, its.get(2), 0);
+    }
+
+    @Test public void testCosineSimilarity() throws Exception { 
+        File sparseBinaryFile = 
+            File.createTempFile("test-sparse-binary",".sspace");
+        sparseBinaryFile.deleteOnExit();
+        SemanticSpaceIO.save(test, sparseBinaryFile, 
+                             SSpaceFormat.SPARSE_BINARY);
+        SemanticSpace mapped = new MappedSemanticSpace(sparseBinaryFile);
+        for (String w1 : test.getWords()) {
+            for (String w2 : test.getWords()) {
+                assertEquals(Similarity.cosineSimilarity(
+                                 test.getVector(w1), test.getVector(w2)),
+                             Similarity.cosineSimilarity(
+                                 mapped.getVector(w1), mapped.getVector(w2)),
+                             .00001);
+            }
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testTextNotSupported() throws Exception { 
+        File textFile = File.createTempFile("test-text",".sspace");
+        textFile.deleteOnExit();
+        SemanticSpaceIO.save(test, textFile, SSpaceFormat.TEXT);
+        new MappedSemanticSpace(textFile);
+    }
+}
@@ -108,6 +108,118 @@ public class StaticSemanticSpaceTest {
         }        
     }
 
+    @Test public void testQuantized() throws Exception { 
+        File quantizedFile = File.createTempFile("test-quantized",".sspace");
+        quantizedFile.deleteOnExit();
+        SemanticSpaceIO.save(control, quantizedFile, SSpaceFormat.QUANTIZED);
+        assertEquals(SSpaceFormat.QUANTIZED, 
+                     SemanticSpaceIO.getFormat(quantizedFile));
+        SemanticSpace loaded = SemanticSpaceIO.load(quantizedFile);
+        assertTrue(loaded instanceof StaticSemanticSpace);
+        assertEquals(4, loaded.getVectorLength());
+        assertSpacesEqual(control, loaded, QuantizedVector.class);
+
+        // Naming the format should load the space the same way
+        @SuppressWarnings("deprecation")
+        SemanticSpace specified = 
+            SemanticSpaceIO.load(quantizedFile, SSpaceFormat.QUANTIZED);
+        assertTrue(specified instanceof StaticSemanticSpace);
+        assertSpacesEqual(control, specified, QuantizedVector.class);
+
+        // The full precision mode should widen the quantized values
+        assertSpacesEqual(control, new StaticSemanticSpace(quantizedFile), 
+                          DoubleVector.class);
+        assertSpacesEqual(control, new StaticSemanticSpace(
+                              quantizedFile, 
+                              StaticSemanticSpace.VectorStorage.FLOAT),
+                          DenseFloatVector.class);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test(expected=IllegalArgumentException.class) 
+    public void testQuantizedWithoutHeader() throws Exception { 
+        File file = File.createTempFile("test-quantized",".sspace");
+        file.deleteOnExit();
+        SemanticSpaceIO.save(control, file, SSpaceFormat.BINARY);
+        SemanticSpaceIO.load(file, SSpaceFormat.QUANTIZED);
+    }
+
+    @Test public void testCompactStorage() throws Exception { 
+        for (SSpaceFormat format : new SSpaceFormat[] { 
+                SSpaceFormat.TEXT, SSpaceFormat.BINARY, 
+                SSpaceFormat.COLUMNAR }) {
+            File file = File.createTempFile("test-compact",".sspace");
+            file.deleteOnExit();
+            SemanticSpaceIO.save(control, file, format);
+            assertSpacesEqual(control, new StaticSemanticSpace(
+                                  file, StaticSemanticSpace.VectorStorage.FLOAT),
+                              DenseFloatVector.class);
+            assertSpacesEqual(control, new StaticSemanticSpace(
+                                  file, 
+                                  StaticSemanticSpace.VectorStorage.QUANTIZED),
+                              QuantizedVector.class);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test public void testColumnarWithSpecifiedFormat() throws Exception { 
+        for (SSpaceFormat format : new SSpaceFormat[] { 
+                SSpaceFormat.COLUMNAR, SSpaceFormat.COLUMNAR_FLOAT }) {
+            File file = File.createTempFile("test-columnar",".sspace");
+            file.deleteOnExit();
+            SemanticSpaceIO.save(control, file, format);
+            assertSpacesEqual(control, new StaticSemanticSpace(file, format),
+                              DoubleVector.class);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test(expected=IllegalArgumentException.class) 
+    public void testSerializedWithSpecifiedFormat() throws Exception { 
+        File file = File.createTempFile("test-serialize",".sspace");
+        file.deleteOnExit();
+        SemanticSpaceIO.save(control, file, SSpaceFormat.BINARY);
+        new StaticSemanticSpace(file, SSpaceFormat.SERIALIZE);
+    }
+
+    @Test public void testCompactStorageOfSparse() throws Exception { 
+        File file = File.createTempFile("test-sparse-binary",".sspace");
+        file.deleteOnExit();
+        SemanticSpaceIO.save(control, file, SSpaceFormat.SPARSE_BINARY);
+        // Sparse spaces keep their full precision sparse vectors
+        assertSpacesEqual(control, new StaticSemanticSpace(
+                              file, StaticSemanticSpace.VectorStorage.QUANTIZED),
+                          SparseDoubleVector.class);
+    }
+
+    @Test public void testQuantizedWriter() throws Exception { 
+        File file = File.createTempFile("test-quantized-writer",".sspace");
+        file.deleteOnExit();
+        SemanticSpaceWriter writer = 
+            new SemanticSpaceWriter(file, SSpaceFormat.QUANTIZED);
+        for (String word : control.getWords())
+            writer.write(word, control.getVector(word));
+        writer.close();
+        assertSpacesEqual(control, SemanticSpaceIO.load(file), 
+                          QuantizedVector.class);
+    }
+
+    private static void assertSpacesEqual(SemanticSpace expected, 
+                                          SemanticSpace actual,
+                                          Class<?> vectorType) {
+        assertEquals(expected.getWords().size(), actual.getWords().size());
+        assertTrue(expected.getWords().containsAll(actual.getWords()));
+        for (String word : expected.getWords()) {
+            Vector e = expected.getVector(word);
+            Vector a = actual.getVector(word);
+            assertTrue(vectorType.isInstance(a));
+            assertEquals(e.length(), a.length());
+            for (int i = 0; i < e.length(); ++i)
+                assertEquals(e.getValue(i).doubleValue(), 
+                             a.getValue(i).doubleValue(), .0001);
+        }
+    }
+
     private static String toSparseString(Vector v) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < v.length(); ++i)
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.dependency;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class CoNLLColumnScannerTest {
+
+    static BufferedReader reader(String text) {
+        return new BufferedReader(new StringReader(text));
+    }
+
+    @Test public void testColumnsMatchSplit() throws Exception {
+        String[] lines = { " 1\tholt\t_\tNNP \t\t3\tSBJ\t_\t_ ", "a", 
+                           "\ta\t\tb\t" };
+        CoNLLColumnScanner scanner = new CoNLLColumnScanner();
+        for (String line : lines) {
+            assertTrue(scanner.next(reader(line)));
+            String[] expected = line.trim().split("\t");
+            assertEquals(expected.length, scanner.numColumns());
+            for (int i = 0; i < expected.length; ++i) {
+                assertEquals(expected[i], scanner.column(i));
+                assertTrue(scanner.columnEquals(i, expected[i]));
+            }
+            assertEquals(line.trim(), scanner.line());
+        }
+    }
+
+    @Test public void testBlankLines() throws Exception {
+        CoNLLColumnScanner scanner = new CoNLLColumnScanner();
+        BufferedReader br = reader("\n  \t\nx\n");
+        assertTrue(scanner.next(br));
+        assertTrue(scanner.isBlank());
+        assertTrue(scanner.next(br));
+        assertTrue(scanner.isBlank());
+        assertTrue(scanner.next(br));
+        assertFalse(scanner.isBlank());
+        assertFalse(scanner.next(br));
+    }
+
+    @Test public void testIntColumn() throws Exception {
+        CoNLLColumnScanner scanner = new CoNLLColumnScanner();
+        String[] values = { "0", "12", "-7", "+3", "2147483647", 
+                            "-2147483648" };
+        StringBuilder sb = new StringBuilder();
+        for (String v : values)
+            sb.append(v).append('\t');
+        assertTrue(scanner.next(reader(sb.toString())));
+        for (int i = 0; i < values.length; ++i)
+            assertEquals(Integer.parseInt(values[i]), scanner.intColumn(i));
+    }
+
+    @Test public void testInvalidIntColumn() throws Exception {
+        CoNLLColumnScanner scanner = new CoNLLColumnScanner();
+        String[] values = { "_", "-", "2147483648", "1a", "" };
+        for (String v : values) {
+            assertTrue(scanner.next(reader("x\t" + v + "\ty")));
+            try {
+                scanner.intColumn(1);
+                fail("Parsed an invalid integer: " + v);
+            } catch (NumberFormatException nfe) { }
+        }
+    }
+
+    @Test public void testInternColumn() throws Exception {
+        CoNLLColumnScanner scanner = new CoNLLColumnScanner();
+        LabelTable labels = new LabelTable();
+        assertTrue(scanner.next(reader("NN\tVB\tNN")));
+        assertEquals(0, scanner.internColumn(0, labels));
+        assertEquals(1, scanner.internColumn(1, labels));
+        assertEquals(0, scanner.internColumn(2, labels));
+    }
+
+    @Test(expected=ArrayIndexOutOfBoundsException.class)
+    public void testMissingColumn() throws Exception {
+        CoNLLColumnScanner scanner = new CoNLLColumnScanner();
+        assertTrue(scanner.next(reader("a\tb")));
+        scanner.column(2);
+    }
+}
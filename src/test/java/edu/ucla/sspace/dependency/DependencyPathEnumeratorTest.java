@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.dependency;
+
+import edu.ucla.sspace.text.StringDocument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class DependencyPathEnumeratorTest {
+
+    static DependencyTreeNode[] readTree() throws Exception {
+        DependencyExtractor extractor = new CoNLLDependencyExtractor();
+        return extractor.readNextTree(new StringDocument(
+            CoNLLDependencyExtractorTest.toTabs(
+                CoNLLDependencyExtractorTest.SINGLE_PARSE)).reader());
+    }
+
+    static DependencyTreeNode[] readWaCKyTree() throws Exception {
+        DependencyExtractor extractor = new WaCKyDependencyExtractor();
+        return extractor.readNextTree(new StringDocument(
+            new BreadthFirstPathIteratorTest().conll).reader());
+    }
+
+    /**
+     * A handler that records a description of each path and its weight.
+     */
+    static class PathRecorder implements DependencyPathHandler {
+        final List<String> paths = new ArrayList<String>();
+        public void handlePath(DependencyPath path, double weight) {
+            paths.add(describe(path) + " " + weight);
+        }
+    }
+
+    /**
+     * Returns a description of the path using the {@code DependencyPath}
+     * methods rather than {@code toString()}.
+     */
+    static String describe(DependencyPath path) {
+        StringBuilder sb = new StringBuilder(path.first().word());
+        int i = 0;
+        for (DependencyRelation r : path) {
+            assertEquals(r.relation(), path.getRelation(i));
+            sb.append(' ').append(r.relation()).append(' ')
+                .append(path.getNode(++i).word());
+        }
+        assertEquals(path.length(), i);
+        assertSame(path.last(), path.getNode(i));
+        return sb.toString();
+    }
+
+    static List<String> sorted(List<String> paths) {
+        Collections.sort(paths);
+        return paths;
+    }
+
+    @Test public void testMatchesDependencyIterator() throws Exception {
+        DependencyTreeNode[] tree = readTree();
+        DependencyRelationAcceptor acceptor = new SubjObjRelationAcceptor();
+        DependencyPathEnumerator enumerator = 
+            new DependencyPathEnumerator(acceptor, 3);
+        for (DependencyTreeNode node : tree) {
+            List<String> expected = new ArrayList<String>();
+            Iterator<DependencyPath> it = 
+                new DependencyIterator(node, acceptor, 3);
+            while (it.hasNext())
+                expected.add(describe(it.next()) + " 1.0");
+            PathRecorder recorder = new PathRecorder();
+            assertEquals(expected.size(), 
+                         enumerator.enumerate(node, recorder));
+            assertEquals(sorted(expected), sorted(recorder.paths));
+        }
+    }
+
+    @Test public void testMatchesFilteredDependencyIterator() 
+            throws Exception {
+        DependencyTreeNode[] tree = readTree();
+        DependencyPathAcceptor acceptor = new DependencyPathAcceptor() {
+                public boolean accepts(DependencyPath path) {
+                    // Reject the shorter paths, which must still be extended
+                    return path.length() > 1;
+                }
+                public int maxPathLength() {
+                    return 3;
+                }
+            };
+        DependencyPathWeight weighter = new LengthPathWeight();
+        DependencyPathEnumerator enumerator = 
+            new DependencyPathEnumerator(acceptor, weighter, 3);
+        int total = 0;
+        for (DependencyTreeNode node : tree) {
+            List<String> expected = new ArrayList<String>();
+            Iterator<DependencyPath> it = 
+                new FilteredDependencyIterator(node, acceptor, 3);
+            while (it.hasNext()) {
+                DependencyPath p = it.next();
+                expected.add(describe(p) + " " + weighter.scorePath(p));
+            }
+            PathRecorder recorder = new PathRecorder();
+            enumerator.enumerate(node, recorder);
+            assertEquals(sorted(expected), sorted(recorder.paths));
+            total += expected.size();
+        }
+        assertTrue(total > 0);
+    }
+
+    @Test public void testPathCounts() throws Exception {
+        DependencyTreeNode[] tree = readWaCKyTree();
+        DependencyPathEnumerator enumerator = new DependencyPathEnumerator(
+            new UniversalRelationAcceptor(), 2);
+        final int[] sumOfPathLengths = new int[1];
+        int pathCount = 0;
+        for (DependencyTreeNode node : tree) {
+            pathCount += enumerator.enumerate(
+                node, new DependencyPathHandler() {
+                    public void handlePath(DependencyPath path, double w) {
+                        sumOfPathLengths[0] += path.length();
+                    }
+                });
+        }
+        // The breadth-first iterator finds 132 paths, but it does not extend a
+        // path with a relation that is equal to the last one.  The sentence
+        // has two commas with a P relation to "unnecessary", so it misses the
+        // two paths of length two that connect them.
+        assertEquals(134, pathCount);
+        assertEquals(224, sumOfPathLengths[0]);
+    }
+
+    @Test public void testEqualRelationsAreExtended() throws Exception {
+        DependencyTreeNode[] tree = readWaCKyTree();
+        PathRecorder recorder = new PathRecorder();
+        new DependencyPathEnumerator(new UniversalRelationAcceptor(), 2)
+            .enumerate(tree[16], recorder);
+        assertEquals(",", tree[16].word());
+        assertTrue(recorder.paths.contains(", P unnecessary P , 1.0"));
+    }
+
+    @Test public void testPathsBeginAtStartNode() throws Exception {
+        DependencyTreeNode[] tree = readTree();
+        final DependencyTreeNode start = tree[1];
+        new DependencyPathEnumerator(new UniversalRelationAcceptor(), 4)
+            .enumerate(start, new DependencyPathHandler() {
+                    public void handlePath(DependencyPath path, double w) {
+                        assertSame(start, path.first());
+                        assertSame(start, path.getNode(0));
+                        assertEquals(path.getRelation(0), 
+                                     path.firstRelation().relation());
+                        assertEquals(path.getRelation(path.length() - 1), 
+                                     path.lastRelation().relation());
+                    }
+                });
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testReentrantEnumeration() throws Exception {
+        final DependencyTreeNode[] tree = readTree();
+        final DependencyPathEnumerator enumerator = 
+            new DependencyPathEnumerator(new UniversalRelationAcceptor(), 2);
+        enumerator.enumerate(tree[1], new DependencyPathHandler() {
+                public void handlePath(DependencyPath path, double w) {
+                    enumerator.enumerate(tree[0], new PathRecorder());
+                }
+            });
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidPathLength() {
+        new DependencyPathEnumerator(new UniversalRelationAcceptor(), 0);
+    }
+}
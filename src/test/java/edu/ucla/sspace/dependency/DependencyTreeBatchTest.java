@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.dependency;
+
+import edu.ucla.sspace.text.StringDocument;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class DependencyTreeBatchTest {
+
+    static final String PARSES = 
+        CoNLLDependencyExtractorTest.toTabs(
+            CoNLLDependencyExtractorTest.SINGLE_PARSE) + "\n" +
+        CoNLLDependencyExtractorTest.toTabs(
+            CoNLLDependencyExtractorTest.SECOND_PARSE) + "\n" +
+        CoNLLDependencyExtractorTest.toTabs(
+            CoNLLDependencyExtractorTest.SINGLE_PARSE);
+
+    /**
+     * Returns a description of the tree's words and relations
+     */
+    static String describe(DependencyTreeNode[] tree) {
+        StringBuilder sb = new StringBuilder();
+        for (DependencyTreeNode node : tree) {
+            sb.append(node.index()).append(' ').append(node.word())
+                .append(' ').append(node.lemma()).append(' ')
+                .append(node.pos()).append(node.neighbors()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    static List<String> readTrees(DependencyExtractor extractor, String text)
+            throws IOException {
+        List<String> trees = new ArrayList<String>();
+        BufferedReader reader = new StringDocument(text).reader();
+        for (DependencyTreeNode[] tree = null; 
+                 (tree = extractor.readNextTree(reader)) != null; )
+            trees.add(describe(tree));
+        return trees;
+    }
+
+    @Test public void testReadMatchesReadNextTree() throws Exception {
+        CoNLLDependencyExtractor extractor = new CoNLLDependencyExtractor();
+        List<String> expected = readTrees(extractor, PARSES);
+        assertEquals(3, expected.size());
+
+        DependencyTreeBatch batch = new DependencyTreeBatch(2);
+        BufferedReader reader = new StringDocument(PARSES).reader();
+        List<String> trees = new ArrayList<String>();
+        assertEquals(2, batch.read(extractor, reader));
+        for (int i = 0; i < batch.size(); ++i)
+            trees.add(describe(batch.get(i)));
+        assertEquals(1, batch.read(extractor, reader));
+        trees.add(describe(batch.get(0)));
+        assertEquals(0, batch.read(extractor, reader));
+        assertEquals(0, batch.size());
+        assertEquals(expected, trees);
+    }
+
+    @Test public void testNodesAreReused() throws Exception {
+        CoNLLDependencyExtractor extractor = new CoNLLDependencyExtractor();
+        DependencyTreeBatch batch = new DependencyTreeBatch(1);
+        BufferedReader reader = new StringDocument(PARSES).reader();
+
+        assertEquals(1, extractor.readNextTrees(reader, batch));
+        DependencyTreeNode[] first = batch.get(0);
+        assertEquals(12, first.length);
+        DependencyTreeNode root = first[2];
+        assertEquals(3, root.neighbors().size());
+
+        assertEquals(1, extractor.readNextTrees(reader, batch));
+        DependencyTreeNode[] second = batch.get(0);
+        assertEquals(4, second.length);
+        assertSame(root, second[2]);
+        assertEquals("av", root.word());
+        assertEquals(2, root.neighbors().size());
+
+        // A sentence of a previously seen length reuses the same array
+        assertEquals(1, extractor.readNextTrees(reader, batch));
+        assertSame(first, batch.get(0));
+        assertEquals("is", root.word());
+        assertEquals(3, root.neighbors().size());
+    }
+
+    @Test public void testOtherExtractor() throws Exception {
+        final CoNLLDependencyExtractor conll = new CoNLLDependencyExtractor();
+        DependencyExtractor extractor = new DependencyExtractor() {
+                public DependencyTreeNode[] readNextTree(BufferedReader r) 
+                        throws IOException {
+                    return conll.readNextTree(r);
+                }
+            };
+        DependencyTreeBatch batch = new DependencyTreeBatch();
+        BufferedReader reader = new StringDocument(PARSES).reader();
+        assertEquals(3, batch.read(extractor, reader));
+        assertEquals(readTrees(conll, PARSES).get(1), describe(batch.get(1)));
+        assertEquals(0, batch.read(extractor, reader));
+    }
+
+    @Test public void testLabelsAreInterned() throws Exception {
+        CoNLLDependencyExtractor extractor = new CoNLLDependencyExtractor();
+        BufferedReader reader = new StringDocument(PARSES).reader();
+        DependencyTreeNode[] tree = extractor.readNextTree(reader);
+        assertSame(tree[0].pos(), tree[1].pos());
+        LabelTable relations = extractor.getRelationLabels();
+        int code = relations.code("NMOD");
+        assertTrue(code >= 0);
+        assertSame(relations.label(code), 
+                   tree[0].neighbors().get(0).relation());
+        assertTrue(extractor.getPartOfSpeechLabels().code("VBZ") >= 0);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testGetOutsideBatch() {
+        new DependencyTreeBatch(4).get(0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNoCapacity() {
+        new DependencyTreeBatch(0);
+    }
+}
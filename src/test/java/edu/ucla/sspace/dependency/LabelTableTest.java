@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.dependency;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class LabelTableTest {
+
+    @Test public void testIntern() {
+        LabelTable table = new LabelTable();
+        assertEquals(0, table.intern("NMOD"));
+        assertEquals(1, table.intern("SBJ"));
+        assertEquals(0, table.intern("NMOD"));
+        assertEquals(2, table.size());
+        assertEquals("NMOD", table.label(0));
+        assertEquals("SBJ", table.label(1));
+    }
+
+    @Test public void testInternRegion() {
+        LabelTable table = new LabelTable();
+        int code = table.intern("SBJ");
+        String line = "2\tholt\t_\tNNP\tNNP\t_\t3\tSBJ\t_\t_";
+        int start = line.indexOf("SBJ");
+        assertEquals(code, table.intern(line, start, start + 3));
+        // Labels that are prefixes of others are distinct
+        assertEquals(1, table.intern(line, start, start + 2));
+        assertEquals("SB", table.label(1));
+    }
+
+    @Test public void testInternReturnsSameString() {
+        LabelTable table = new LabelTable();
+        int code = table.intern(new String("ROOT"));
+        assertSame(table.label(code), 
+                   table.label(table.intern("xROOT", 1, 5)));
+    }
+
+    @Test public void testCode() {
+        LabelTable table = new LabelTable();
+        assertEquals(-1, table.code("P"));
+        table.intern("P");
+        assertEquals(0, table.code("P"));
+        assertEquals(1, table.size());
+    }
+
+    @Test public void testManyLabels() {
+        LabelTable table = new LabelTable();
+        for (int i = 0; i < 1000; ++i)
+            assertEquals(i, table.intern("label" + i));
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(i, table.code("label" + i));
+            assertEquals("label" + i, table.label(i));
+        }
+        assertEquals(1000, table.size());
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testUnknownCode() {
+        new LabelTable().label(0);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testInvalidRegion() {
+        new LabelTable().intern("NMOD", 2, 5);
+    }
+}
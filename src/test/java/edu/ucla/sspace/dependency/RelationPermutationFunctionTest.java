@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.dependency;
+
+import edu.ucla.sspace.index.PermutationFunction;
+import edu.ucla.sspace.index.TernaryPermutationFunction;
+
+import edu.ucla.sspace.vector.DenseIntVector;
+import edu.ucla.sspace.vector.IntegerVector;
+import edu.ucla.sspace.vector.TernaryVector;
+import edu.ucla.sspace.vector.VectorMath;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class RelationPermutationFunctionTest extends AbstractPathUtil {
+
+    static final TernaryVector INDEX = new TernaryVector(
+        30, new int[] { 1, 8, 20 }, new int[] { 4, 29 });
+
+    @Test public void testAddPermuted() {
+        String[][] pathString = {{"cat", "n", "SBJ", "dog", "n"},
+                                 {"dog", "n", "OBJ", "whale", "n"}};
+        DependencyPath path = makePath(pathString);
+        RelationPermutationFunction<TernaryVector> func = 
+            new RelationPermutationFunction<TernaryVector>(
+                new TernaryPermutationFunction());
+
+        IntegerVector expected = new DenseIntVector(30);
+        VectorMath.add(expected, func.permute(INDEX, path));
+        IntegerVector actual = new DenseIntVector(30);
+        assertTrue(func.addPermuted(actual, INDEX, path));
+        for (int i = 0; i < 30; ++i)
+            assertEquals(expected.get(i), actual.get(i));
+    }
+
+    @Test public void testAddPermutedUnsupported() {
+        String[][] pathString = {{"cat", "n", "SBJ", "dog", "n"}};
+        DependencyPath path = makePath(pathString);
+        // A permutation function that is not a ReorderingPermutation
+        PermutationFunction<TernaryVector> identity = 
+            new PermutationFunction<TernaryVector>() {
+                public TernaryVector permute(TernaryVector v, int n) {
+                    return v;
+                }
+            };
+        RelationPermutationFunction<TernaryVector> func = 
+            new RelationPermutationFunction<TernaryVector>(identity);
+        IntegerVector actual = new DenseIntVector(30);
+        assertFalse(func.addPermuted(actual, INDEX, path));
+        assertEquals(0, VectorMath.sum(actual));
+    }
+}
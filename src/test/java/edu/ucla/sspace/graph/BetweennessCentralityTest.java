@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.graph;
+
+import java.util.*;
+
+import edu.ucla.sspace.util.primitive.IntIterator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Unit tests for {@link BetweennessCentrality}
+ */
+public class BetweennessCentralityTest { 
+
+    /**
+     * The original, unoptimized version of Brandes' algorithm, which is used
+     * as a reference.
+     */
+    static double[] reference(Graph<?> g) {
+        int n = g.order();
+        double[] centralities = new double[n];
+        for (int s = 0; s < n; ++s) {
+            Deque<Integer> S = new ArrayDeque<Integer>();
+            List<List<Integer>> P = new ArrayList<List<Integer>>(n);
+            for (int i = 0; i < n; ++i)
+                P.add(new ArrayList<Integer>());
+            double[] sigma = new double[n];
+            sigma[s] = 1;
+            double[] d = new double[n];
+            Arrays.fill(d, -1);
+            d[s] = 0;
+            Queue<Integer> Q = new ArrayDeque<Integer>();
+            Q.add(s);
+            while (!Q.isEmpty()) {
+                int v = Q.poll();
+                S.offer(v);
+                IntIterator it = g.getNeighbors(v).iterator();
+                while (it.hasNext()) { 
+                    int w = it.nextInt();
+                    if (d[w] < 0) {
+                        Q.offer(w);
+                        d[w] = d[v] + 1;
+                    }
+                    if (d[w] == d[v] + 1) {
+                        sigma[w] += sigma[v];
+                        P.get(w).add(v);
+                    }
+                }
+            }
+            double[] delta = new double[n];
+            while (!S.isEmpty()) {
+                int w = S.pollLast();
+                for (int v : P.get(w))
+                    delta[v] += (sigma[v] / sigma[w]) * (1 + delta[w]);
+                if (w != s)
+                    centralities[w] += delta[w];
+            }
+        }
+        return centralities;
+    }
+
+    static Graph<Edge> randomGraph(int n, int edges, Random rand) {
+        Graph<Edge> g = new SparseUndirectedGraph();
+        for (int i = 0; i < n; ++i)
+            g.add(i);
+        for (int i = 0; i < edges; ++i) {
+            int a = rand.nextInt(n);
+            int b = rand.nextInt(n);
+            if (a != b)
+                g.add(new SimpleEdge(a, b));
+        }
+        return g;
+    }
+
+    @Test public void testPath() {
+        Graph<Edge> g = new SparseUndirectedGraph();
+        for (int i = 0; i < 3; ++i)
+            g.add(new SimpleEdge(i, i + 1));
+        double[] c = new BetweennessCentrality().compute(g);
+        assertArrayEquals(new double[] { 0, 4, 4, 0 }, c, 1e-9);
+    }
+
+    @Test public void testMatchesReference() {
+        Graph<Edge> g = randomGraph(200, 400, new Random(1));
+        assertArrayEquals(reference(g), 
+                          new BetweennessCentrality().compute(g), 1e-6);
+    }
+
+    @Test public void testUnitWeightsMatchUnweighted() {
+        Graph<Edge> g = randomGraph(100, 250, new Random(2));
+        WeightedGraph<WeightedEdge> wg = new SparseWeightedGraph();
+        for (int i = 0; i < g.order(); ++i)
+            wg.add(i);
+        for (Edge e : g.edges())
+            wg.add(new SimpleWeightedEdge(e.from(), e.to(), 1));
+        BetweennessCentrality bc = new BetweennessCentrality();
+        assertArrayEquals(bc.compute(g), bc.computeWeighted(wg), 1e-6);
+    }
+
+    @Test public void testWeightedShortcut() {
+        // The direct edge 0-2 is longer than the path through 1, so 1 lies on
+        // the shortest path between 0 and 2
+        WeightedGraph<WeightedEdge> g = new SparseWeightedGraph();
+        g.add(new SimpleWeightedEdge(0, 1, 1));
+        g.add(new SimpleWeightedEdge(1, 2, 1));
+        g.add(new SimpleWeightedEdge(0, 2, 3));
+        BetweennessCentrality bc = new BetweennessCentrality();
+        assertArrayEquals(new double[] { 0, 2, 0 }, bc.computeWeighted(g), 
+                          1e-9);
+        assertArrayEquals(new double[] { 0, 0, 0 }, bc.compute(g), 1e-9);
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testNonPositiveWeight() {
+        WeightedGraph<WeightedEdge> g = new SparseWeightedGraph();
+        g.add(new SimpleWeightedEdge(0, 1, 0));
+        new BetweennessCentrality().computeWeighted(g);
+    }
+
+    @Test public void testApproximateAllPivots() {
+        Graph<Edge> g = randomGraph(50, 100, new Random(3));
+        BetweennessCentrality bc = new BetweennessCentrality();
+        BetweennessCentrality.Estimate e = 
+            bc.approximate(g, g.order(), new Random(4));
+        assertArrayEquals(bc.compute(g), e.getCentralities(), 1e-6);
+        assertArrayEquals(new double[g.order()], e.getStandardErrors(), 1e-6);
+    }
+
+    @Test public void testApproximateSample() {
+        Graph<Edge> g = randomGraph(300, 900, new Random(5));
+        BetweennessCentrality bc = new BetweennessCentrality();
+        double[] exact = bc.compute(g);
+        BetweennessCentrality.Estimate e = bc.approximate(g, 100, new Random(6));
+        assertEquals(100, e.getPivots().length);
+        assertEquals(100, new HashSet<Integer>(asList(e.getPivots())).size());
+        // The estimates are unbiased, so their total should be close to the
+        // exact total, and any vertex with dependencies should have an error
+        double exactTotal = 0;
+        double estimatedTotal = 0;
+        for (int v = 0; v < exact.length; ++v) {
+            exactTotal += exact[v];
+            estimatedTotal += e.getCentralities()[v];
+            if (e.getCentralities()[v] > 0)
+                assertTrue(e.getStandardErrors()[v] > 0);
+        }
+        assertEquals(exactTotal, estimatedTotal, .1 * exactTotal);
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testTooManyPivots() {
+        Graph<Edge> g = randomGraph(10, 20, new Random(7));
+        new BetweennessCentrality().approximate(g, 11, new Random());
+    }
+
+    private static List<Integer> asList(int[] values) {
+        List<Integer> l = new ArrayList<Integer>();
+        for (int v : values)
+            l.add(v);
+        return l;
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.graph;
+
+import edu.ucla.sspace.util.MultiMap;
+
+import edu.ucla.sspace.util.primitive.IntIterator;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Unit tests for {@link CompactGraph}, {@link CompactWeightedGraph} and {@link
+ * CompactMultigraph}.
+ */
+public class CompactGraphTests { 
+
+    /**
+     * Returns a random graph whose vertices are the even numbers below {@code
+     * 2 * order}, so that the vertex indices are not contiguous.
+     */
+    private static SparseUndirectedGraph randomGraph(int order, int size,
+                                                     Random rand) {
+        SparseUndirectedGraph g = new SparseUndirectedGraph();
+        for (int i = 0; i < order; ++i)
+            g.add(2 * i);
+        while (g.size() < size) {
+            int v1 = 2 * rand.nextInt(order);
+            int v2 = 2 * rand.nextInt(order);
+            if (v1 != v2)
+                g.add(new SimpleEdge(v1, v2));
+        }
+        return g;
+    }
+
+    private static void assertSameStructure(Graph<?> expected, 
+                                            Graph<?> actual) {
+        assertEquals(expected.order(), actual.order());
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.vertices(), actual.vertices());
+        assertEquals(expected.edges(), actual.edges());
+        for (int v : expected.vertices()) {
+            assertEquals(expected.degree(v), actual.degree(v));
+            assertEquals(expected.getNeighbors(v), actual.getNeighbors(v));
+            assertEquals(expected.getAdjacencyList(v), 
+                         actual.getAdjacencyList(v));
+        }
+    }
+
+    @Test public void testSnapshot() {
+        SparseUndirectedGraph g = randomGraph(100, 400, new Random(1));
+        CompactGraph c = new CompactGraph(g);
+        assertSameStructure(g, c);
+        assertEquals(g, c);
+        assertEquals(c, g);
+        assertEquals(400, c.edges().size());
+
+        for (Edge e : g.edges()) {
+            assertTrue(c.contains(e));
+            assertTrue(c.contains(e.to(), e.from()));
+            assertEquals(1, c.getEdges(e.from(), e.to()).size());
+        }
+        assertFalse(c.contains(1));
+        assertFalse(c.contains(0, 1));
+        assertEquals(0, c.degree(1));
+        assertTrue(c.getNeighbors(1).isEmpty());
+        assertTrue(c.getAdjacencyList(1).isEmpty());
+    }
+
+    @Test public void testSlots() {
+        SparseUndirectedGraph g = randomGraph(50, 200, new Random(2));
+        CompactGraph c = new CompactGraph(g);
+        for (int v : g.vertices()) {
+            Set<Integer> neighbors = new HashSet<Integer>();
+            int prev = -1;
+            for (int s = c.slotsBegin(v); s < c.slotsEnd(v); ++s) {
+                assertTrue(c.neighbor(s) > prev);
+                prev = c.neighbor(s);
+                neighbors.add(c.neighbor(s));
+            }
+            assertEquals(g.getNeighbors(v), neighbors);
+        }
+        assertEquals(c.slotsBegin(1), c.slotsEnd(1));
+    }
+
+    @Test public void testContiguousVertices() {
+        SparseUndirectedGraph g = new SparseUndirectedGraph();
+        g.add(new SimpleEdge(0, 1));
+        g.add(new SimpleEdge(1, 2));
+        g.add(new SimpleEdge(2, 2));
+        CompactGraph c = new CompactGraph(g);
+        assertSameStructure(g, c);
+        assertTrue(c.contains(2, 2));
+        assertFalse(c.contains(3));
+        assertFalse(c.contains(-1));
+    }
+
+    @Test(expected=UnsupportedOperationException.class) 
+    public void testAddVertex() {
+        new CompactGraph(randomGraph(10, 10, new Random(3))).add(100);
+    }
+
+    @Test(expected=UnsupportedOperationException.class) 
+    public void testAddEdge() {
+        new CompactGraph(randomGraph(10, 10, new Random(3)))
+            .add(new SimpleEdge(0, 2));
+    }
+
+    @Test(expected=UnsupportedOperationException.class) 
+    public void testRemoveEdge() {
+        CompactGraph c = new CompactGraph(randomGraph(10, 10, new Random(3)));
+        c.remove(c.edges().iterator().next());
+    }
+
+    @Test(expected=UnsupportedOperationException.class) 
+    public void testEdgeViewIsUnmodifiable() {
+        CompactGraph c = new CompactGraph(randomGraph(10, 10, new Random(3)));
+        Iterator<Edge> it = c.edges().iterator();
+        it.next();
+        it.remove();
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testDirected() {
+        SparseDirectedGraph g = new SparseDirectedGraph();
+        g.add(new SimpleDirectedEdge(0, 1));
+        new CompactGraph(g);
+    }
+
+    @Test public void testSubgraphAndCopy() {
+        SparseUndirectedGraph g = randomGraph(60, 300, new Random(4));
+        CompactGraph c = new CompactGraph(g);
+        Set<Integer> vertices = new HashSet<Integer>();
+        for (int i = 0; i < 120; i += 6)
+            vertices.add(i);
+
+        Graph<Edge> expected = g.copy(vertices);
+        CompactGraph sub = c.subgraph(vertices);
+        assertSameStructure(expected, sub);
+
+        SparseUndirectedGraph copy = c.copy(vertices);
+        assertSameStructure(expected, copy);
+        // The copy is independent of the snapshot and may be modified
+        copy.add(new SimpleEdge(0, 6));
+        copy.add(new SimpleEdge(0, 12));
+        assertTrue(copy.contains(0, 6));
+        assertEquals(expected.contains(0, 6), sub.contains(0, 6));
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testSubgraphMissingVertex() {
+        CompactGraph c = new CompactGraph(randomGraph(10, 10, new Random(5)));
+        c.subgraph(Collections.singleton(1));
+    }
+
+    @Test public void testHasCycles() {
+        SparseUndirectedGraph g = new SparseUndirectedGraph();
+        g.add(new SimpleEdge(0, 1));
+        g.add(new SimpleEdge(1, 2));
+        g.add(new SimpleEdge(1, 3));
+        g.add(new SimpleEdge(4, 5));
+        assertFalse(new CompactGraph(g).hasCycles());
+        g.add(new SimpleEdge(3, 0));
+        assertTrue(new CompactGraph(g).hasCycles());
+    }
+
+    @Test public void testSubgraphIterator() {
+        SparseUndirectedGraph g = randomGraph(30, 60, new Random(6));
+        CompactGraph c = new CompactGraph(g);
+        int expected = 0;
+        Iterator<Graph<Edge>> it = 
+            new SubgraphIterator<Edge,Graph<Edge>>(g, 3);
+        while (it.hasNext()) {
+            it.next();
+            expected++;
+        }
+        int actual = 0;
+        it = new SubgraphIterator<Edge,Graph<Edge>>(c, 3);
+        while (it.hasNext()) {
+            assertEquals(3, it.next().order());
+            actual++;
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test public void testWeightedSnapshot() {
+        SparseWeightedGraph g = new SparseWeightedGraph();
+        Random rand = new Random(7);
+        for (int i = 0; i < 50; ++i) {
+            for (int j = i + 1; j < 50; ++j) {
+                if (rand.nextDouble() < .2)
+                    g.add(new SimpleWeightedEdge(i, j, rand.nextInt(8) / 4d));
+            }
+        }
+        CompactWeightedGraph c = new CompactWeightedGraph(g);
+        assertSameStructure(g, c);
+        for (int v : g.vertices()) {
+            assertEquals(g.strength(v), c.strength(v), 1e-6);
+            for (int s = c.slotsBegin(v); s < c.slotsEnd(v); ++s) {
+                WeightedEdge e = 
+                    g.getEdges(v, c.neighbor(s)).iterator().next();
+                assertEquals(e.weight(), c.weight(s), 0);
+            }
+        }
+        assertTrue(c.copy(g.vertices()) instanceof SparseWeightedGraph);
+        assertEquals(g, c.copy(g.vertices()));
+
+        Set<Integer> vertices = new HashSet<Integer>();
+        for (int i = 0; i < 25; ++i)
+            vertices.add(i);
+        assertSameStructure(g.copy(vertices), c.subgraph(vertices));
+    }
+
+    @Test public void testChineseWhispers() {
+        // Two weighted cliques joined by a single weak edge
+        SparseWeightedGraph g = new SparseWeightedGraph();
+        for (int i = 0; i < 5; ++i) {
+            for (int j = i + 1; j < 5; ++j) {
+                g.add(new SimpleWeightedEdge(i, j, 1));
+                g.add(new SimpleWeightedEdge(i + 5, j + 5, 1));
+            }
+        }
+        g.add(new SimpleWeightedEdge(0, 5, .1));
+        MultiMap<Integer,Integer> clusters = new ChineseWhispersClustering()
+            .cluster(new CompactWeightedGraph(g));
+        assertEquals(2, clusters.size());
+        for (Integer cluster : clusters.keySet()) {
+            Set<Integer> members = clusters.get(cluster);
+            assertEquals(5, members.size());
+            int first = members.iterator().next() / 5;
+            for (int v : members)
+                assertEquals(first, v / 5);
+        }
+    }
+
+    @Test public void testMultigraphSnapshot() {
+        UndirectedMultigraph<String> g = new UndirectedMultigraph<String>();
+        Random rand = new Random(8);
+        String[] types = { "a", "b", "c" };
+        for (int i = 0; i < 200; ++i) {
+            int v1 = rand.nextInt(40);
+            int v2 = rand.nextInt(40);
+            if (v1 != v2)
+                g.add(new SimpleTypedEdge<String>(
+                          types[rand.nextInt(types.length)], v1, v2));
+        }
+        CompactMultigraph<String> c = new CompactMultigraph<String>(g);
+        assertSameStructure(g, c);
+        assertEquals(g.edgeTypes(), c.edgeTypes());
+        for (String type : types) {
+            assertEquals(g.edges(type), c.edges(type));
+            for (TypedEdge<String> e : g.edges(type))
+                assertTrue(c.contains(e.from(), e.to(), type));
+        }
+        assertFalse(c.contains(0, 1, "d"));
+
+        for (int v : g.vertices()) {
+            for (int s = c.slotsBegin(v); s < c.slotsEnd(v); ++s) {
+                int n = c.neighbor(s);
+                assertEquals(g.getEdges(v, n).size(), c.numEdges(s));
+                for (int k = 0; k < c.numEdges(s); ++k) {
+                    String type = c.edgeType(c.edgeTypeId(s, k));
+                    assertTrue(g.getEdges(v, n).contains(
+                                   new SimpleTypedEdge<String>(type, v, n)));
+                }
+            }
+        }
+
+        UndirectedMultigraph<String> copy = c.copy(g.vertices());
+        assertSameStructure(g, copy);
+
+        Set<Integer> vertices = new HashSet<Integer>();
+        for (int i = 0; i < 20; ++i)
+            vertices.add(i);
+        Set<String> subTypes = new HashSet<String>(Arrays.asList("a", "b"));
+        assertSameStructure(g.copy(vertices), c.subgraph(vertices));
+        CompactMultigraph<String> sub = c.subgraph(vertices, subTypes);
+        assertEquals(subTypes, sub.edgeTypes());
+        assertEquals(g.subgraph(vertices, subTypes).size(), sub.size());
+        assertTrue(sub.edges("c").isEmpty());
+    }
+}
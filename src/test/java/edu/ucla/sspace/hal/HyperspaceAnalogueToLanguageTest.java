@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.hal;
+
+import edu.ucla.sspace.vector.Vector;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of tests for the {@link HyperspaceAnalogueToLanguage} class
+ */
+public class HyperspaceAnalogueToLanguageTest {
+
+    private static BufferedReader document(String text) {
+        return new BufferedReader(new StringReader(text));
+    }
+
+    @Test public void testVectorsBeforeAndAfterProcessing() throws Exception {
+        HyperspaceAnalogueToLanguage hal = new HyperspaceAnalogueToLanguage();
+        hal.processDocument(document("the cat sat"));
+        Vector before = hal.getVector("cat");
+        assertEquals(hal.getVectorLength(), before.length());
+        double total = sum(before);
+        assertTrue(total > 0);
+        // Repeated requests should see the same counts
+        assertEquals(total, sum(hal.getVector("cat")), 0);
+
+        // New documents must be reflected in the next request, including
+        // their new words
+        hal.processDocument(document("the cat sat on the mat"));
+        Vector updated = hal.getVector("cat");
+        assertEquals(hal.getVectorLength(), updated.length());
+        assertTrue(sum(updated) > total);
+        assertNotNull(hal.getVector("mat"));
+        assertEquals(hal.getVectorLength(), hal.getVector("mat").length());
+
+        hal.processSpace(new Properties());
+        Vector processed = hal.getVector("cat");
+        assertEquals(updated.length(), processed.length());
+        for (int i = 0; i < updated.length(); ++i)
+            assertEquals(updated.getValue(i).doubleValue(),
+                         processed.getValue(i).doubleValue(), 0);
+    }
+
+    private static double sum(Vector v) {
+        double sum = 0;
+        for (int i = 0; i < v.length(); ++i)
+            sum += v.getValue(i).doubleValue();
+        return sum;
+    }
+}
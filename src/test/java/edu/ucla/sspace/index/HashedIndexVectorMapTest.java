@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.index;
+
+import edu.ucla.sspace.common.ArgOptions;
+
+import edu.ucla.sspace.util.GeneratorMap;
+
+import edu.ucla.sspace.vector.TernaryVector;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link HashedIndexVectorMap} 
+ */
+public class HashedIndexVectorMapTest {
+
+    @Test public void testDeterministic() {
+        HashedIndexVectorMap m1 = new HashedIndexVectorMap(1000, 8, 0, 42);
+        HashedIndexVectorMap m2 = new HashedIndexVectorMap(1000, 8, 0, 42);
+        for (String word : new String[] { "cat", "dog", "", "caf\u00e9" }) {
+            TernaryVector v1 = m1.get(word);
+            TernaryVector v2 = m2.get(word);
+            assertTrue(Arrays.equals(v1.positiveDimensions(), 
+                                     v2.positiveDimensions()));
+            assertTrue(Arrays.equals(v1.negativeDimensions(), 
+                                     v2.negativeDimensions()));
+        }
+        assertTrue(m1.isEmpty());
+    }
+
+    @Test public void testSeedsAndWordsDiffer() {
+        HashedIndexVectorMap m1 = new HashedIndexVectorMap(10000, 8, 0, 1);
+        HashedIndexVectorMap m2 = new HashedIndexVectorMap(10000, 8, 0, 2);
+        assertFalse(Arrays.equals(m1.get("cat").positiveDimensions(),
+                                  m2.get("cat").positiveDimensions()));
+        assertFalse(Arrays.equals(m1.get("cat").positiveDimensions(),
+                                  m1.get("act").positiveDimensions()));
+    }
+
+    @Test public void testValuesSet() {
+        HashedIndexVectorMap m = new HashedIndexVectorMap(10, 10, 0, 7);
+        int positive = 0;
+        for (int i = 0; i < 1000; ++i) {
+            TernaryVector v = m.get("word" + i);
+            assertEquals(10, v.length());
+            int[] pos = v.positiveDimensions();
+            int[] neg = v.negativeDimensions();
+            assertEquals(10, pos.length + neg.length);
+            // Every dimension is set exactly once when all are used
+            boolean[] seen = new boolean[10];
+            for (int d : pos) {
+                assertFalse(seen[d]);
+                seen[d] = true;
+            }
+            for (int d : neg) {
+                assertFalse(seen[d]);
+                seen[d] = true;
+            }
+            for (int j = 1; j < pos.length; ++j)
+                assertTrue(pos[j - 1] < pos[j]);
+            for (int j = 1; j < neg.length; ++j)
+                assertTrue(neg[j - 1] < neg[j]);
+            positive += pos.length;
+        }
+        // The signs should be roughly balanced
+        assertTrue(positive > 4500 && positive < 5500);
+    }
+
+    @Test public void testVariance() {
+        HashedIndexVectorMap m = new HashedIndexVectorMap(100, 4, 2, 3);
+        boolean sawFewer = false, sawMore = false;
+        for (int i = 0; i < 200; ++i) {
+            TernaryVector v = m.get("word" + i);
+            int set = v.positiveDimensions().length 
+                + v.negativeDimensions().length;
+            assertTrue(set >= 2 && set <= 6);
+            sawFewer |= set < 4;
+            sawMore |= set > 4;
+        }
+        assertTrue(sawFewer && sawMore);
+    }
+
+    @Test public void testCreate() {
+        Properties props = new Properties();
+        assertTrue(HashedIndexVectorMap.create(100, props) 
+                   instanceof GeneratorMap);
+        props.setProperty(HashedIndexVectorMap.SEED_PROPERTY, "5");
+        props.setProperty(RandomIndexVectorGenerator.VALUES_TO_SET_PROPERTY, 
+                          "6");
+        TernaryVector v = HashedIndexVectorMap.create(100, props).get("cat");
+        assertEquals(6, v.positiveDimensions().length 
+                     + v.negativeDimensions().length);
+        TernaryVector expected = 
+            new HashedIndexVectorMap(100, 6, 0, 5).get("cat");
+        assertTrue(Arrays.equals(expected.positiveDimensions(), 
+                                 v.positiveDimensions()));
+    }
+
+    @Test public void testNonStringKey() {
+        HashedIndexVectorMap m = new HashedIndexVectorMap(100, 4, 0, 3);
+        assertNull(m.get(Integer.valueOf(1)));
+        assertTrue(m.containsKey("anything"));
+        assertFalse(m.containsKey(Integer.valueOf(1)));
+    }
+
+    @Test(expected=UnsupportedOperationException.class) 
+    public void testPut() {
+        new HashedIndexVectorMap(100, 4, 0, 3).put(
+            "cat", new TernaryVector(100, new int[0], new int[0]));
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testTooManyValues() {
+        new HashedIndexVectorMap(4, 4, 1, 3);
+    }
+
+    @Test public void testCheckOptions() {
+        ArgOptions options = new ArgOptions();
+        options.addOption('L', "loadVectors", "", true, "FILE", null);
+        options.addOption('S', "saveVectors", "", true, "FILE", null);
+        options.parseOptions(new String[] { "--saveVectors", "out" });
+        Properties props = new Properties();
+        // Without a seed, index vectors may be loaded and saved
+        HashedIndexVectorMap.checkOptions(
+            props, options, "loadVectors", "saveVectors");
+        props.setProperty(HashedIndexVectorMap.SEED_PROPERTY, "7");
+        // Options that were not provided are not an error
+        HashedIndexVectorMap.checkOptions(props, options, "loadVectors");
+        try {
+            HashedIndexVectorMap.checkOptions(
+                props, options, "loadVectors", "saveVectors");
+            fail("Expected the seeded options to be rejected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue(iae.getMessage().startsWith("--saveVectors"));
+        }
+    }
+}
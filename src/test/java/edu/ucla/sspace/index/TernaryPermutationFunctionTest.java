@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.index;
+
+import edu.ucla.sspace.vector.DenseIntVector;
+import edu.ucla.sspace.vector.IntegerVector;
+import edu.ucla.sspace.vector.TernaryVector;
+import edu.ucla.sspace.vector.Vector;
+import edu.ucla.sspace.vector.VectorMath;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link TernaryPermutationFunction} and the
+ * reorderings of the other {@link ReorderingPermutation} implementations.
+ */
+public class TernaryPermutationFunctionTest {
+
+    static final TernaryVector INDEX = new TernaryVector(
+        50, new int[] { 3, 17, 40 }, new int[] { 0, 22, 49 });
+
+    /**
+     * Asserts that adding the vector with the reordering produces the same
+     * values as adding the permuted vector.
+     */
+    static void assertSameSum(Vector permuted, TernaryVector v, 
+                              int[] reordering) {
+        IntegerVector expected = new DenseIntVector(v.length());
+        VectorMath.add(expected, (IntegerVector)permuted);
+        IntegerVector actual = new DenseIntVector(v.length());
+        VectorMath.addPermuted(actual, v, reordering);
+        for (int i = 0; i < v.length(); ++i)
+            assertEquals(expected.get(i), actual.get(i));
+    }
+
+    @Test public void testReorderingMatchesPermute() {
+        TernaryPermutationFunction func = new TernaryPermutationFunction();
+        // Request the reorderings out of order to exercise the extension
+        for (int n : new int[] { 3, 0, -2, 1, 5, -4, 2, -1 })
+            assertSameSum(func.permute(INDEX, n), INDEX, 
+                          func.getReordering(n, INDEX.length()));
+    }
+
+    @Test public void testReorderingIsBijective() {
+        TernaryPermutationFunction func = new TernaryPermutationFunction();
+        int[] forward = func.getReordering(3, 50);
+        int[] inverse = func.getReordering(-3, 50);
+        boolean[] seen = new boolean[50];
+        for (int i = 0; i < 50; ++i) {
+            assertFalse(seen[forward[i]]);
+            seen[forward[i]] = true;
+        }
+        // Undoing the first permutation with its inverse is the identity
+        int[] once = func.getReordering(1, 50);
+        int[] undo = func.getReordering(-1, 50);
+        for (int i = 0; i < 50; ++i)
+            assertEquals(i, undo[once[i]]);
+    }
+
+    @Test public void testReorderingsAreCached() {
+        TernaryPermutationFunction func = new TernaryPermutationFunction();
+        assertSame(func.getReordering(2, 50), func.getReordering(2, 50));
+        int[] r = func.getReordering(1, 50);
+        func.getReordering(6, 50);
+        assertSame(r, func.getReordering(1, 50));
+    }
+
+    @Test public void testDefaultPermutationFunction() {
+        DefaultPermutationFunction func = new DefaultPermutationFunction();
+        for (int n : new int[] { 2, -3, 0, 1 })
+            assertSameSum(func.permute(INDEX, n), INDEX, 
+                          func.getReordering(n, INDEX.length()));
+    }
+
+    @Test public void testWindowedPermutationFunction() {
+        Properties props = new Properties();
+        props.setProperty(WindowedPermutationFunction.WINDOW_LIMIT_PROPERTY, 
+                          "2");
+        WindowedPermutationFunction func = 
+            new WindowedPermutationFunction(props);
+        for (int n : new int[] { 1, 2, 3, -3, -4, 5 })
+            assertSameSum(func.permute(INDEX, n), INDEX, 
+                          func.getReordering(n, INDEX.length()));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.isa;
+
+import edu.ucla.sspace.vector.Vector;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class IncrementalSemanticAnalysisTest {
+
+    @Test public void testLocalAccumulation() throws Exception {
+        // Repeated words exercise the case where a word's semantics are
+        // updated using its own pending changes
+        String[] docs = {
+            "the quick brown fox jumps over the lazy dog",
+            "the dog barks at the quick fox",
+            "a lazy afternoon for the brown dog",
+            "over and over the fox jumps",
+            "the the the dog dog",
+            "brown fox brown dog brown fox",
+        };
+
+        for (String sparse : new String[] { "false", "true" }) {
+            Properties props = new Properties();
+            props.setProperty(
+                IncrementalSemanticAnalysis.VECTOR_LENGTH_PROPERTY, "100");
+            props.setProperty(
+                IncrementalSemanticAnalysis.USE_SPARSE_SEMANTICS_PROPERTY,
+                sparse);
+            IncrementalSemanticAnalysis direct = 
+                new IncrementalSemanticAnalysis(props);
+            props.setProperty(
+                IncrementalSemanticAnalysis.MERGE_INTERVAL_PROPERTY, "2");
+            IncrementalSemanticAnalysis local = 
+                new IncrementalSemanticAnalysis(props);
+
+            for (String doc : docs)
+                direct.processDocument(
+                    new BufferedReader(new StringReader(doc)));
+            local.setWordToIndexVector(direct.getWordToIndexVector());
+            for (String doc : docs)
+                local.processDocument(
+                    new BufferedReader(new StringReader(doc)));
+            direct.processSpace(props);
+            local.processSpace(props);
+
+            assertEquals(direct.getWords(), local.getWords());
+            for (String word : direct.getWords()) {
+                Vector expected = direct.getVector(word);
+                Vector actual = local.getVector(word);
+                for (int i = 0; i < expected.length(); ++i)
+                    assertEquals(expected.getValue(i).doubleValue(), 
+                                 actual.getValue(i).doubleValue(), 1e-10);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.matrix.MatrixIO.Format;
+
+import edu.ucla.sspace.util.SparseArray;
+
+import edu.ucla.sspace.vector.SparseDoubleVector;
+import edu.ucla.sspace.vector.Vector;
+
+import gnu.trove.map.TLongDoubleMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+import java.io.File;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class CooccurrenceAccumulatorTest {
+
+    @Test public void testAddAndGet() {
+        CooccurrenceAccumulator acc = new CooccurrenceAccumulator();
+        assertEquals(0, acc.get(3, 4), 0);
+        assertEquals(1.5, acc.addAndGet(3, 4, 1.5), 0);
+        assertEquals(4, acc.addAndGet(3, 4, 2.5), 0);
+        assertEquals(4, acc.get(3, 4), 0);
+        assertEquals(0, acc.get(4, 3), 0);
+        assertEquals(4, acc.rows());
+        assertEquals(5, acc.columns());
+        assertEquals(1, acc.size());
+        acc.set(3, 4, 7);
+        assertEquals(7, acc.get(3, 4), 0);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testNegativeIndex() {
+        new CooccurrenceAccumulator().addAndGet(-1, 0, 1);
+    }
+
+    @Test public void testGrowth() {
+        CooccurrenceAccumulator acc = new CooccurrenceAccumulator(2);
+        for (int r = 0; r < 300; ++r)
+            for (int c = 0; c < 100; ++c)
+                acc.addAndGet(r, c, r * 100 + c);
+        assertEquals(30000, acc.size());
+        for (int r = 0; r < 300; ++r)
+            for (int c = 0; c < 100; ++c)
+                assertEquals(r * 100 + c, acc.get(r, c), 0);
+    }
+
+    @Test public void testAddAll() {
+        CooccurrenceAccumulator acc = new CooccurrenceAccumulator();
+        acc.addAndGet(1, 2, 1);
+        TLongDoubleMap local = new TLongDoubleHashMap();
+        local.put(CooccurrenceAccumulator.key(1, 2), 2);
+        local.put(CooccurrenceAccumulator.key(5, 0), 3);
+        acc.addAll(local);
+        assertEquals(3, acc.get(1, 2), 0);
+        assertEquals(3, acc.get(5, 0), 0);
+        assertEquals(6, acc.rows());
+        assertEquals(3, acc.columns());
+    }
+
+    @Test public void testConcurrentUpdates() throws Exception {
+        final CooccurrenceAccumulator acc = new CooccurrenceAccumulator(4);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; ++t) {
+            final boolean batch = t % 2 == 0;
+            threads.add(new Thread() {
+                public void run() {
+                    TLongDoubleMap local = new TLongDoubleHashMap();
+                    for (int r = 0; r < 50; ++r) {
+                        for (int c = 0; c < 50; ++c) {
+                            if (batch)
+                                local.put(CooccurrenceAccumulator.key(r, c), 1);
+                            else
+                                acc.addAndGet(r, c, 1);
+                        }
+                    }
+                    acc.addAll(local);
+                }
+            });
+        }
+        for (Thread t : threads)
+            t.start();
+        for (Thread t : threads)
+            t.join();
+        for (int r = 0; r < 50; ++r)
+            for (int c = 0; c < 50; ++c)
+                assertEquals(4, acc.get(r, c), 0);
+    }
+
+    @Test public void testRowAndColumnVectors() {
+        CooccurrenceAccumulator acc = new CooccurrenceAccumulator();
+        Random rand = new Random(1);
+        double[][] expected = new double[20][30];
+        for (int i = 0; i < 200; ++i) {
+            int r = rand.nextInt(20);
+            int c = rand.nextInt(30);
+            expected[r][c] += 1;
+            acc.addAndGet(r, c, 1);
+        }
+        SparseDoubleVector[] rows = acc.toRowVectors(25, 40);
+        SparseDoubleVector[] cols = acc.toColumnVectors(30, 25);
+        assertEquals(25, rows.length);
+        assertEquals(30, cols.length);
+        for (int r = 0; r < 25; ++r) {
+            assertEquals(40, rows[r].length());
+            int[] nz = rows[r].getNonZeroIndices();
+            for (int i = 1; i < nz.length; ++i)
+                assertTrue(nz[i - 1] < nz[i]);
+            for (int c = 0; c < 30; ++c) {
+                double v = (r < 20) ? expected[r][c] : 0;
+                assertEquals(v, rows[r].get(c), 0);
+                assertEquals(v, cols[c].get(r), 0);
+            }
+        }
+        assertEquals(expected[3][7], acc.getRowVector(3, 30).get(7), 0);
+        assertEquals(expected[3][7], acc.getColumnVector(7, 20).get(3), 0);
+    }
+
+    @Test public void testWriteRows() {
+        CooccurrenceAccumulator acc = new CooccurrenceAccumulator();
+        acc.addAndGet(0, 1, 1);
+        acc.addAndGet(2, 0, 2);
+        acc.addAndGet(2, 3, 3);
+        RecordingBuilder builder = new RecordingBuilder();
+        acc.writeRows(builder);
+        assertEquals(3, builder.columns.size());
+        assertEquals(4, builder.columns.get(0).length());
+        assertEquals(1, builder.columns.get(0).getValue(1).doubleValue(), 0);
+        assertEquals(0, builder.columns.get(1).getValue(1).doubleValue(), 0);
+        assertEquals(2, builder.columns.get(2).getValue(0).doubleValue(), 0);
+        assertEquals(3, builder.columns.get(2).getValue(3).doubleValue(), 0);
+    }
+
+    static class RecordingBuilder implements MatrixBuilder {
+        List<Vector> columns = new ArrayList<Vector>();
+        public int addColumn(double[] column) {
+            throw new UnsupportedOperationException();
+        }
+        public int addColumn(SparseArray<? extends Number> column) {
+            throw new UnsupportedOperationException();
+        }
+        public int addColumn(Vector column) {
+            columns.add(column);
+            return columns.size() - 1;
+        }
+        public void finish() { }
+        public File getFile() { return null; }
+        public Format getMatrixFormat() { return null; }
+        public MatrixFile getMatrixFile() { return null; }
+        public boolean isFinished() { return false; }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.matrix.MatrixIO.Format;
+
+import java.io.File;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the {@link ExternalSortMatrixBuilder}.
+ */
+public class ExternalSortMatrixBuilderTest {
+
+    private static final double[][] values = {{1, 0, 1, 2, 4},
+                                              {3, 5, 0, 0, 1},
+                                              {1, 1, 1, 0, 0}};
+
+    public Matrix denseMatrix() {
+        return new ArrayMatrix(values);
+    }
+
+    public SparseMatrix sparseMatrix() {
+        SparseMatrix m = new YaleSparseMatrix(values.length, values[0].length);
+        for (int r = 0; r < m.rows(); ++r)
+            for (int c = 0; c < m.columns(); ++c)
+                if (values[r][c] != 0d)
+                    m.set(r,c, values[r][c]);
+        return m;
+    }
+
+    /**
+     * Returns a random sparse matrix whose last row and column are empty.
+     */
+    public SparseMatrix randomMatrix(int rows, int cols, Random rand) {
+        SparseMatrix m = new YaleSparseMatrix(rows, cols);
+        for (int r = 0; r < rows - 1; ++r)
+            for (int c = 0; c < cols - 1; ++c)
+                if (rand.nextDouble() < .2)
+                    m.set(r, c, rand.nextInt(10) + 1);
+        return m;
+    }
+
+    /**
+     * Returns a builder whose files are temporary and that buffers at most
+     * {@code maxBufferedValues} values.
+     */
+    private static ExternalSortMatrixBuilder builder(boolean transpose,
+                                                     int maxBufferedValues)
+            throws Exception {
+        File matrixFile = File.createTempFile("test-matrix", ".dat");
+        matrixFile.deleteOnExit();
+        File transposeFile = File.createTempFile("test-transpose", ".dat");
+        transposeFile.deleteOnExit();
+        return new ExternalSortMatrixBuilder(
+            matrixFile, transposeFile, transpose, maxBufferedValues);
+    }
+
+    /**
+     * Checks that the file contains {@code m}.
+     */
+    private static void checkFile(File f, Matrix m) throws Exception {
+        Matrix out = MatrixIO.readMatrix(f, Format.SVDLIBC_SPARSE_BINARY);
+        assertEquals(m.rows(), out.rows());
+        assertEquals(m.columns(), out.columns());
+        for (int r = 0; r < m.rows(); ++r)
+            for (int c = 0; c < m.columns(); ++c)
+                assertEquals(m.get(r, c), out.get(r, c), .00001);
+    }
+
+    @Test public void testAddSparseVectorColumn() {
+        MatrixBuilder builder = new ExternalSortMatrixBuilder();
+        MatrixBuilderTestUtil.testMatrixBuild(builder, sparseMatrix(), true);
+    }
+
+    @Test public void testAddSparseVectorColumnTranspose() {
+        MatrixBuilder builder = new ExternalSortMatrixBuilder(true);
+        MatrixBuilderTestUtil.testMatrixBuild(builder, sparseMatrix());
+    }
+
+    @Test public void testAddDoubleColumn() {
+        MatrixBuilder builder = new ExternalSortMatrixBuilder();
+        MatrixBuilderTestUtil.testArrayBuild(builder, sparseMatrix(), true);
+    }
+
+    @Test public void testAddDoubleColumnTranspose() {
+        MatrixBuilder builder = new ExternalSortMatrixBuilder(true);
+        MatrixBuilderTestUtil.testArrayBuild(builder, sparseMatrix());
+    }
+
+    @Test public void testAddDenseVectorColumn() {
+        MatrixBuilder builder = new ExternalSortMatrixBuilder();
+        MatrixBuilderTestUtil.testArrayBuild(builder, denseMatrix(), true);
+    }
+
+    @Test public void testAddDenseVectorColumnTranpose() {
+        MatrixBuilder builder = new ExternalSortMatrixBuilder(true);
+        MatrixBuilderTestUtil.testArrayBuild(builder, denseMatrix());
+    }
+
+    @Test public void testAddSparseArrayColumn() {
+        MatrixBuilder builder = new ExternalSortMatrixBuilder();
+        MatrixBuilderTestUtil.testSparseArrayBuild(builder,sparseMatrix(),true);
+    }
+
+    @Test public void testAddSparseArrayColumnTranspose() {
+        MatrixBuilder builder = new ExternalSortMatrixBuilder(true);
+        MatrixBuilderTestUtil.testSparseArrayBuild(builder, sparseMatrix());
+    }
+
+    @Test public void testBothOrientations() throws Exception {
+        Matrix m = sparseMatrix();
+        for (boolean transpose : new boolean[] { false, true }) {
+            ExternalSortMatrixBuilder builder = builder(transpose, 4);
+            for (int c = 0; c < m.columns(); ++c)
+                builder.addColumn(m.getColumnVector(c));
+            builder.finish();
+            Matrix expected = (transpose) ? new TransposedMatrix(m) : m;
+            checkFile(builder.getFile(), expected);
+            checkFile(builder.getTransposeFile(), 
+                      (transpose) ? m : new TransposedMatrix(m));
+            assertEquals(builder.getTransposeFile(), 
+                         builder.getTransposeMatrixFile().getFile());
+        }
+    }
+
+    @Test public void testManyRuns() throws Exception {
+        Random rand = new Random(1);
+        // A single buffered value forces a run for every value, and more
+        // runs than can be merged at once
+        for (int maxBuffered : new int[] { 1, 3, 17, 1000 }) {
+            SparseMatrix m = randomMatrix(40, 60, rand);
+            ExternalSortMatrixBuilder builder = builder(false, maxBuffered);
+            for (int c = 0; c < m.columns(); ++c)
+                builder.addColumn(m.getColumnVector(c));
+            builder.finish();
+            checkFile(builder.getFile(), m);
+            checkFile(builder.getTransposeFile(), new TransposedMatrix(m));
+        }
+    }
+
+    @Test public void testBufferGrowth() throws Exception {
+        Random rand = new Random(3);
+        // The matrix has more values than are first allocated, so the buffers
+        // grow until they either hold every value or reach the maximum and
+        // spill
+        for (int maxBuffered : new int[] { 
+                ExternalSortMatrixBuilder.INITIAL_BUFFERED_VALUES + 1000,
+                1 << 20 }) {
+            SparseMatrix m = randomMatrix(200, 300, rand);
+            ExternalSortMatrixBuilder builder = builder(false, maxBuffered);
+            for (int c = 0; c < m.columns(); ++c)
+                builder.addColumn(m.getColumnVector(c));
+            builder.finish();
+            checkFile(builder.getFile(), m);
+            checkFile(builder.getTransposeFile(), new TransposedMatrix(m));
+        }
+    }
+
+    @Test public void testTranspose() throws Exception {
+        SparseMatrix m = randomMatrix(30, 20, new Random(2));
+        File f = File.createTempFile("test-matrix", ".dat");
+        f.deleteOnExit();
+        MatrixIO.writeMatrix(m, f, Format.SVDLIBC_SPARSE_BINARY);
+        File transposed = File.createTempFile("test-transpose", ".dat");
+        transposed.deleteOnExit();
+        ExternalSortMatrixBuilder.transpose(f, transposed, 5);
+        checkFile(transposed, new TransposedMatrix(m));
+
+        File converted = MatrixIO.convertFormat(
+            f, Format.SVDLIBC_SPARSE_BINARY, Format.SVDLIBC_SPARSE_BINARY,
+            true);
+        checkFile(converted, new TransposedMatrix(m));
+    }
+
+    @Test public void testEmptyMatrix() throws Exception {
+        ExternalSortMatrixBuilder builder = builder(false, 4);
+        builder.addColumn(new double[3]);
+        builder.addColumn(new double[3]);
+        builder.finish();
+        checkFile(builder.getFile(), new YaleSparseMatrix(3, 2));
+        checkFile(builder.getTransposeFile(), new YaleSparseMatrix(2, 3));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testAddAfterFinish() {
+        MatrixBuilder builder = new ExternalSortMatrixBuilder();
+        builder.finish();
+        builder.addColumn(new double[] { 1 });
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testFileBeforeFinish() {
+        new ExternalSortMatrixBuilder().getTransposeFile();
+    }
+}
@@ -21,6 +21,8 @@
 
 package edu.ucla.sspace.matrix;
 
+import java.util.Random;
+
 import org.junit.*;
 
 import static org.junit.Assert.*;
@@ -94,4 +96,78 @@ public class MatricesTest {
       }
     }
   }
+
+  /**
+   * Fills a matrix with random values, leaving about {@code 1 - density} of
+   * them zero.
+   */
+  private static Matrix fill(Matrix m, double density, Random rand) {
+    for (int r = 0; r < m.rows(); ++r)
+      for (int c = 0; c < m.columns(); ++c)
+        if (rand.nextDouble() < density)
+          m.set(r, c, rand.nextGaussian());
+    return m;
+  }
+
+  private static void assertProduct(Matrix m1, Matrix m2, Matrix result) {
+    assertEquals(m1.rows(), result.rows());
+    assertEquals(m2.columns(), result.columns());
+    for (int r = 0; r < m1.rows(); ++r) {
+      for (int c = 0; c < m2.columns(); ++c) {
+        double expected = 0;
+        for (int i = 0; i < m1.columns(); ++i)
+          expected += m1.get(r, i) * m2.get(i, c);
+        assertEquals(expected, result.get(r, c), 1e-9);
+      }
+    }
+  }
+
+  @Test public void multiplyLargeDenseTest() {
+    // Sizes that are large enough to be computed concurrently and that do not
+    // evenly divide the block sizes
+    Random rand = new Random(1);
+    Matrix m1 = fill(new ArrayMatrix(101, 203), 1, rand);
+    Matrix m2 = fill(new ArrayMatrix(203, 517), 1, rand);
+    assertProduct(m1, m2, Matrices.multiply(m1, m2));
+  }
+
+  @Test public void multiplySparseSparseTest() {
+    Random rand = new Random(2);
+    Matrix m1 = fill(new YaleSparseMatrix(60, 80), .05, rand);
+    Matrix m2 = fill(new SparseHashMatrix(80, 70), .05, rand);
+    Matrix result = Matrices.multiply(m1, m2);
+    assertTrue(result instanceof SparseMatrix);
+    assertProduct(m1, m2, result);
+  }
+
+  @Test public void multiplySparseDenseTest() {
+    Random rand = new Random(3);
+    Matrix m1 = fill(new YaleSparseMatrix(60, 80), .1, rand);
+    Matrix m2 = fill(new ArrayMatrix(80, 30), 1, rand);
+    assertProduct(m1, m2, Matrices.multiply(m1, m2));
+  }
+
+  @Test public void multiplyDenseSparseTest() {
+    Random rand = new Random(4);
+    Matrix m1 = fill(new ArrayMatrix(20, 60), 1, rand);
+    Matrix m2 = fill(new YaleSparseMatrix(60, 80), .1, rand);
+    assertProduct(m1, m2, Matrices.multiply(m1, m2));
+  }
+
+  @Test public void multiplyDiagonalSparseTest() {
+    Random rand = new Random(5);
+    Matrix sparse = fill(new YaleSparseMatrix(6, 6), .3, rand);
+    Matrix diag = new DiagonalMatrix(new double[] {1, 2, 3, 0, 5, 6});
+    Matrix left = Matrices.multiply(diag, sparse);
+    Matrix right = Matrices.multiply(sparse, diag);
+    assertTrue(left instanceof SparseMatrix);
+    assertTrue(right instanceof SparseMatrix);
+    assertProduct(diag, sparse, left);
+    assertProduct(sparse, diag, right);
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void multiplyMismatchedTest() {
+    Matrices.multiply(new ArrayMatrix(2, 3), new ArrayMatrix(2, 3));
+  }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix;
+
+import edu.ucla.sspace.matrix.MatrixIO.Format;
+import edu.ucla.sspace.matrix.TransformStatistics.MatrixStatistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the file-based statistics of {@link TransformStatistics} and the
+ * {@link SvdlibcSparseBinaryFileScanner} they use.
+ */
+public class TransformStatisticsTest {
+
+    /**
+     * Returns a random sparse matrix with an empty row and column.
+     */
+    private static SparseMatrix randomMatrix(int rows, int cols, long seed) {
+        Random rand = new Random(seed);
+        SparseMatrix m = new YaleSparseMatrix(rows, cols);
+        for (int r = 0; r < rows; ++r)
+            for (int c = 0; c < cols; ++c)
+                if (r != 1 && c != 2 && rand.nextDouble() < .3)
+                    m.set(r, c, rand.nextInt(10) + 1);
+        return m;
+    }
+
+    private static File write(Matrix m, Format format) throws IOException {
+        File f = File.createTempFile("test-stats", ".dat");
+        f.deleteOnExit();
+        MatrixIO.writeMatrix(m, f, format);
+        return f;
+    }
+
+    private static void assertStatisticsEqual(MatrixStatistics expected,
+                                              MatrixStatistics actual) {
+        assertEquals(expected.matrixSum, actual.matrixSum, .0001);
+        assertEquals(expected.rowSums.length, actual.rowSums.length);
+        for (int i = 0; i < expected.rowSums.length; ++i)
+            assertEquals(expected.rowSums[i], actual.rowSums[i], .0001);
+        assertEquals(expected.columnSums.length, actual.columnSums.length);
+        for (int i = 0; i < expected.columnSums.length; ++i)
+            assertEquals(expected.columnSums[i], actual.columnSums[i], .0001);
+    }
+
+    @Test public void testSparseBinaryMatchesMatrix() throws Exception {
+        SparseMatrix m = randomMatrix(40, 30, 1);
+        File f = write(m, Format.SVDLIBC_SPARSE_BINARY);
+        assertStatisticsEqual(
+            TransformStatistics.extractStatistics(m),
+            TransformStatistics.extractStatistics(
+                f, Format.SVDLIBC_SPARSE_BINARY));
+        assertStatisticsEqual(
+            TransformStatistics.extractStatistics(m, true, true),
+            TransformStatistics.extractStatistics(
+                f, Format.SVDLIBC_SPARSE_BINARY, true, true));
+    }
+
+    @Test public void testSparseBinaryMatchesMatlab() throws Exception {
+        SparseMatrix m = randomMatrix(25, 35, 2);
+        assertStatisticsEqual(
+            TransformStatistics.extractStatistics(
+                write(m, Format.MATLAB_SPARSE),
+                Format.MATLAB_SPARSE, true, false),
+            TransformStatistics.extractStatistics(
+                write(m, Format.SVDLIBC_SPARSE_BINARY),
+                Format.SVDLIBC_SPARSE_BINARY, true, false));
+    }
+
+    @Test public void testEntropy() throws Exception {
+        SparseMatrix m = randomMatrix(30, 20, 3);
+        for (Format format : new Format[] { Format.SVDLIBC_SPARSE_BINARY,
+                                            Format.MATLAB_SPARSE }) {
+            MatrixStatistics stats = 
+                TransformStatistics.extractEntropyStatistics(
+                    write(m, format), format);
+            assertEquals(m.rows(), stats.rowEntropies.length);
+            for (int r = 0; r < m.rows(); ++r) {
+                double sum = 0;
+                for (int c = 0; c < m.columns(); ++c)
+                    sum += m.get(r, c);
+                double entropy = 0;
+                for (int c = 0; c < m.columns(); ++c) {
+                    double p = m.get(r, c) / sum;
+                    if (p > 0)
+                        entropy += p * Math.log(p) / Math.log(2);
+                }
+                assertEquals(entropy, stats.rowEntropies[r], .0001);
+            }
+        }
+    }
+
+    @Test public void testScanSmallChunks() throws Exception {
+        final SparseMatrix m = randomMatrix(50, 60, 4);
+        File f = write(m, Format.SVDLIBC_SPARSE_BINARY);
+        // Chunks smaller than a column force the scanner to grow its chunks
+        SvdlibcSparseBinaryFileScanner scanner = 
+            new SvdlibcSparseBinaryFileScanner(f, 16);
+        assertEquals(50, scanner.rows());
+        assertEquals(60, scanner.columns());
+        final RandomAccessFile raf = new RandomAccessFile(f, "r");
+        final boolean[] seen = new boolean[m.columns()];
+        try {
+            scanner.scan(new SvdlibcSparseBinaryFileScanner.ChunkProcessor() {
+                    public void process(int slot, ByteBuffer chunk, 
+                                        int firstColumn, long offset) 
+                            throws IOException {
+                        // The chunk should be a copy of the file's bytes
+                        byte[] expected = new byte[chunk.remaining()];
+                        synchronized (raf) {
+                            raf.seek(offset);
+                            raf.readFully(expected);
+                        }
+                        for (int i = 0; i < expected.length; ++i)
+                            assertEquals(expected[i], 
+                                         chunk.get(chunk.position() + i));
+                        for (int c = firstColumn; chunk.hasRemaining(); ++c) {
+                            synchronized (seen) {
+                                assertFalse(seen[c]);
+                                seen[c] = true;
+                            }
+                            int nonZero = chunk.getInt();
+                            assertEquals(
+                                m.getColumnVector(c).getNonZeroIndices()
+                                .length, nonZero);
+                            for (int i = 0; i < nonZero; ++i) {
+                                int row = chunk.getInt();
+                                assertEquals(m.get(row, c), 
+                                             chunk.getFloat(), .0001);
+                            }
+                        }
+                    }
+                });
+        } finally {
+            raf.close();
+        }
+        for (boolean b : seen)
+            assertTrue(b);
+    }
+
+    @Test(expected=MatrixIOException.class)
+    public void testScanTruncated() throws Exception {
+        File f = write(randomMatrix(20, 20, 5), Format.SVDLIBC_SPARSE_BINARY);
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        raf.setLength(raf.length() - 6);
+        raf.close();
+        new SvdlibcSparseBinaryFileScanner(f, 32).scan(
+            new SvdlibcSparseBinaryFileScanner.ChunkProcessor() {
+                public void process(int slot, ByteBuffer chunk, 
+                                    int firstColumn, long offset) { }
+            });
+    }
+}
@@ -0,0 +1,152 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.matrix.factorization;
+
+import edu.ucla.sspace.matrix.ArrayMatrix;
+import edu.ucla.sspace.matrix.Matrix;
+import edu.ucla.sspace.matrix.MatrixFile;
+import edu.ucla.sspace.matrix.MatrixIO;
+import edu.ucla.sspace.matrix.MatrixIO.Format;
+import edu.ucla.sspace.matrix.SVD;
+import edu.ucla.sspace.matrix.SparseMatrix;
+import edu.ucla.sspace.matrix.YaleSparseMatrix;
+
+import java.io.File;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class SingularValueDecompositionRandomizedTest {
+
+    @Test public void testMatrixReduction() {
+        SingularValueDecompositionTestUtil.testReductionMatrix(
+            new SingularValueDecompositionRandomized(10, 2, 1));
+    }
+
+    @Test public void testDenseMatrixReduction() {
+        SingularValueDecompositionRandomized svd = 
+            new SingularValueDecompositionRandomized(10, 2, 1);
+        svd.factorize(new ArrayMatrix(SingularValueDecompositionTestUtil.VALUES), 2);
+        SingularValueDecompositionTestUtil.validateResults(svd);
+    }
+
+    @Test public void testSparseBinaryFileReduction() {
+        SingularValueDecompositionTestUtil.testReductionFile(
+            new SingularValueDecompositionRandomized(10, 2, 1),
+            Format.SVDLIBC_SPARSE_BINARY);
+    }
+
+    @Test public void testMatlabFileReduction() {
+        SingularValueDecompositionTestUtil.testReductionFile(
+            new SingularValueDecompositionRandomized(10, 2, 1),
+            Format.MATLAB_SPARSE);
+    }
+
+    @Test public void testEmptyTrailingRowAndColumn() throws Exception {
+        // The final row and column contain no values, as for a term that
+        // appears in no kept document and an empty final document
+        SparseMatrix m = new YaleSparseMatrix(6, 5);
+        for (int r = 0; r < 5; ++r)
+            for (int c = 0; c < 4; ++c)
+                m.set(r, c, (r + 1) * (c + 2) % 7);
+        Format[] formats = { Format.SVDLIBC_SPARSE_BINARY, 
+                             Format.SVDLIBC_SPARSE_TEXT,
+                             Format.SVDLIBC_DENSE_BINARY,
+                             Format.SVDLIBC_DENSE_TEXT };
+        for (Format format : formats) {
+            File f = File.createTempFile("TestSvdMatrix", "dat");
+            f.deleteOnExit();
+            MatrixIO.writeMatrix(m, f, format);
+            SingularValueDecompositionRandomized svd = 
+                new SingularValueDecompositionRandomized(10, 2, 1);
+            svd.factorize(new MatrixFile(f, format), 2);
+            assertEquals(format.toString(), 6, svd.getLeftVectors().rows());
+            assertEquals(format.toString(), 
+                         5, svd.getRightVectors().columns());
+            assertEquals(0, svd.getLeftVectors().get(5, 0), 1e-10);
+            assertEquals(0, svd.getRightVectors().get(0, 4), 1e-10);
+        }
+    }
+
+    @Test public void testKnownSingularValues() {
+        // A scaled permutation matrix has its scales as singular values
+        int rows = 300;
+        int cols = 200;
+        Random rand = new Random(2);
+        int[] perm = new int[rows];
+        for (int i = 0; i < rows; ++i)
+            perm[i] = i;
+        for (int i = rows - 1; i > 0; --i) {
+            int j = rand.nextInt(i + 1);
+            int t = perm[i];
+            perm[i] = perm[j];
+            perm[j] = t;
+        }
+        SparseMatrix m = new YaleSparseMatrix(rows, cols);
+        for (int c = 0; c < cols; ++c)
+            m.set(perm[c], c, 100 * Math.pow(.8, c));
+
+        SingularValueDecompositionRandomized svd = 
+            new SingularValueDecompositionRandomized(10, 2, 3);
+        svd.factorize(m, 5);
+        double[] s = svd.singularValues();
+        assertEquals(5, s.length);
+        for (int i = 0; i < 5; ++i)
+            assertEquals(100 * Math.pow(.8, i), s[i], 1e-3);
+
+        // The leading singular vectors are the matching basis vectors
+        Matrix u = svd.getLeftVectors();
+        Matrix vt = svd.getRightVectors();
+        assertEquals(rows, u.rows());
+        assertEquals(cols, vt.columns());
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(1, Math.abs(u.get(perm[i], i)), 1e-4);
+            assertEquals(1, Math.abs(vt.get(i, i)), 1e-4);
+        }
+    }
+
+    @Test public void testSeedIsDeterministic() {
+        SingularValueDecompositionRandomized svd1 = 
+            new SingularValueDecompositionRandomized(2, 1, 5);
+        SingularValueDecompositionRandomized svd2 = 
+            new SingularValueDecompositionRandomized(2, 1, 5);
+        svd1.factorize(SingularValueDecompositionTestUtil.matrix, 2);
+        svd2.factorize(SingularValueDecompositionTestUtil.matrix, 2);
+        assertArrayEquals(svd1.singularValues(), svd2.singularValues(), 1e-10);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testTooManyDimensions() {
+        new SingularValueDecompositionRandomized().factorize(
+            SingularValueDecompositionTestUtil.matrix, 6);
+    }
+
+    @Test public void testAlgorithm() {
+        assertTrue(SVD.getFactorization(SVD.Algorithm.RANDOMIZED)
+                   instanceof SingularValueDecompositionRandomized);
+    }
+}
@@ -21,6 +21,11 @@
 
 package edu.ucla.sspace.ri;
 
+import edu.ucla.sspace.index.HashedIndexVectorMap;
+
+import edu.ucla.sspace.vector.TernaryVector;
+import edu.ucla.sspace.vector.Vector;
+
 import java.io.*;
 import java.util.*;
 
@@ -47,4 +52,85 @@ public class TestRandomIndexing {
 
         assertEquals(words, ri.getWords());
     }
+
+    @Test public void testLocalAccumulation() throws Exception {
+        final String[] docs = {
+            "the quick brown fox jumps over the lazy dog",
+            "the dog barks at the quick fox",
+            "a lazy afternoon for the brown dog",
+            "over and over the fox jumps",
+            "the the the dog dog",
+        };
+
+        Properties props = new Properties();
+        props.setProperty(RandomIndexing.VECTOR_LENGTH_PROPERTY, "100");
+        RandomIndexing direct = new RandomIndexing(props);
+        props.setProperty(RandomIndexing.MERGE_INTERVAL_PROPERTY, "2");
+        final RandomIndexing local = new RandomIndexing(props);
+
+        for (String doc : docs)
+            direct.processDocument(new BufferedReader(new StringReader(doc)));
+        local.setWordToIndexVector(direct.getWordToIndexVector());
+
+        // Process the documents with multiple threads, each of which keeps its
+        // own deltas
+        Thread[] threads = new Thread[3];
+        for (int t = 0; t < threads.length; ++t) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int i = offset; i < docs.length; i += 3)
+                            local.processDocument(new BufferedReader(
+                                new StringReader(docs[i])));
+                    } catch (IOException ioe) {
+                        throw new IOError(ioe);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        local.processSpace(props);
+
+        assertEquals(direct.getWords(), local.getWords());
+        for (String word : direct.getWords()) {
+            Vector expected = direct.getVector(word);
+            Vector actual = local.getVector(word);
+            for (int i = 0; i < expected.length(); ++i)
+                assertEquals(expected.getValue(i), actual.getValue(i));
+        }
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testHashedIndexVectorsCannotBeReplaced() {
+        Properties props = new Properties();
+        props.setProperty(HashedIndexVectorMap.SEED_PROPERTY, "17");
+        RandomIndexing ri = new RandomIndexing(props);
+        ri.setWordToIndexVector(new HashMap<String,TernaryVector>());
+    }
+
+    @Test public void testHashedIndexVectors() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(RandomIndexing.VECTOR_LENGTH_PROPERTY, "100");
+        props.setProperty(HashedIndexVectorMap.SEED_PROPERTY, "17");
+        String text = "the quick brown fox jumps over the lazy dog";
+
+        // Two independent instances should produce identical semantics
+        // without sharing any index vectors
+        RandomIndexing ri1 = new RandomIndexing(props);
+        RandomIndexing ri2 = new RandomIndexing(props);
+        ri1.processDocument(new BufferedReader(new StringReader(text)));
+        ri2.processDocument(new BufferedReader(new StringReader(text)));
+        assertTrue(ri1.getWordToIndexVector().isEmpty());
+
+        assertEquals(ri1.getWords(), ri2.getWords());
+        for (String word : ri1.getWords()) {
+            Vector v1 = ri1.getVector(word);
+            Vector v2 = ri2.getVector(word);
+            for (int i = 0; i < v1.length(); ++i)
+                assertEquals(v1.getValue(i), v2.getValue(i));
+        }
+    }
 }
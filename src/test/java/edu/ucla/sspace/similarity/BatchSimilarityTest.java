@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.similarity;
+
+import edu.ucla.sspace.matrix.ArrayMatrix;
+import edu.ucla.sspace.matrix.Matrix;
+import edu.ucla.sspace.matrix.SparseMatrix;
+import edu.ucla.sspace.matrix.YaleSparseMatrix;
+
+import edu.ucla.sspace.util.SortedMultiMap;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the batch comparisons of {@link SimilarityFunction}, which should
+ * always agree with comparing each pair of vectors separately.
+ */
+public class BatchSimilarityTest {
+
+    private static final SimilarityFunction[] FUNCTIONS = {
+        new CosineSimilarity(), new DotProduct(), new EuclideanSimilarity(),
+        new PearsonCorrelation(), new TanimotoCoefficient()
+    };
+
+    /**
+     * Fills a matrix with positive values in which about half of the values
+     * are zero, and whose second row is entirely zero.
+     */
+    private static Matrix randomMatrix(Matrix m, Random rand) {
+        for (int r = 0; r < m.rows(); ++r) 
+            for (int c = 0; c < m.columns(); ++c)
+                if (r != 1 && rand.nextBoolean())
+                    m.set(r, c, rand.nextDouble() + .1);
+        return m;
+    }
+
+    private static Matrix[] matrices(int rows, int cols, long seed) {
+        return new Matrix[] { 
+            randomMatrix(new ArrayMatrix(rows, cols), new Random(seed)),
+            randomMatrix(new YaleSparseMatrix(rows, cols), new Random(seed))
+        };
+    }
+
+    private static void assertSimilaritiesEqual(double expected, 
+                                                double actual) {
+        if (Double.isNaN(expected) || Double.isInfinite(expected))
+            assertEquals(Double.valueOf(expected), Double.valueOf(actual));
+        else
+            assertEquals(expected, actual, 1e-9);
+    }
+
+    @Test public void testSimToRows() {
+        for (Matrix m : matrices(30, 12, 1)) {
+            for (SimilarityFunction f : FUNCTIONS) {
+                for (int q = 0; q < m.rows(); q += 7) {
+                    DoubleVector query = m.getRowVector(q);
+                    double[] sims = f.simToRows(query, m);
+                    assertEquals(m.rows(), sims.length);
+                    for (int r = 0; r < m.rows(); ++r)
+                        assertSimilaritiesEqual(
+                            f.sim(query, m.getRowVector(r)), sims[r]);
+                }
+            }
+        }
+    }
+
+    @Test public void testSimToVectors() {
+        Matrix m = matrices(20, 10, 2)[0];
+        List<DoubleVector> vectors = new ArrayList<DoubleVector>();
+        for (int r = 0; r < m.rows(); ++r) {
+            double[] row = m.getRow(r);
+            vectors.add((r % 2 == 0) 
+                        ? new DenseVector(row) 
+                        : new CompactSparseVector(row));
+        }
+        DoubleVector query = new CompactSparseVector(m.getRow(3));
+        for (SimilarityFunction f : FUNCTIONS) {
+            double[] sims = f.simToVectors(query, vectors);
+            for (int i = 0; i < vectors.size(); ++i)
+                assertSimilaritiesEqual(
+                    f.sim(query, vectors.get(i)), sims[i]);
+        }
+    }
+
+    @Test public void testPairwiseSim() {
+        for (Matrix m : matrices(25, 8, 3)) {
+            for (SimilarityFunction f : FUNCTIONS) {
+                for (boolean parallel : new boolean[] { false, true }) {
+                    Matrix sims = f.pairwiseSim(m, parallel);
+                    assertEquals(m.rows(), sims.rows());
+                    assertEquals(m.rows(), sims.columns());
+                    for (int i = 0; i < m.rows(); ++i)
+                        for (int j = 0; j < m.rows(); ++j)
+                            assertSimilaritiesEqual(
+                                f.sim(m.getRowVector(i), m.getRowVector(j)),
+                                sims.get(i, j));
+                }
+            }
+        }
+    }
+
+    @Test public void testAsymmetricPairwiseSim() {
+        Random rand = new Random(7);
+        Matrix m = new ArrayMatrix(10, 5);
+        for (int r = 0; r < m.rows(); ++r) 
+            for (int c = 0; c < m.columns(); ++c)
+                m.set(r, c, rand.nextDouble() + .1);
+        SimilarityFunction f = new KLDivergence();
+        Matrix sims = f.pairwiseSim(m, true);
+        for (int i = 0; i < m.rows(); ++i)
+            for (int j = 0; j < m.rows(); ++j)
+                assertSimilaritiesEqual(
+                    f.sim(m.getRowVector(i), m.getRowVector(j)), 
+                    sims.get(i, j));
+        assertTrue(sims.get(0, 1) != sims.get(1, 0));
+    }
+
+    @Test public void testMostSimilarRows() {
+        // Enough rows to be split into several blocks
+        for (Matrix m : matrices(3000, 6, 4)) {
+            SimilarityFunction f = new CosineSimilarity();
+            DoubleVector query = m.getRowVector(0);
+            double[] sims = f.simToRows(query, m);
+            double[] sorted = sims.clone();
+            Arrays.sort(sorted);
+            for (boolean parallel : new boolean[] { false, true }) {
+                SortedMultiMap<Double,Integer> top = 
+                    f.mostSimilarRows(query, m, 10, parallel);
+                assertEquals(10, top.size());
+                int i = sorted.length - 10;
+                for (Map.Entry<Double,Integer> e : top.entrySet()) {
+                    assertEquals(sorted[i++], e.getKey(), 1e-12);
+                    assertEquals(sims[e.getValue()], e.getKey(), 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test public void testMostSimilarRowsBounds() {
+        Matrix m = matrices(5, 4, 5)[1];
+        SimilarityFunction f = new EuclideanSimilarity();
+        assertEquals(0, f.mostSimilarRows(
+                         m.getRowVector(0), m, 0, false).size());
+        assertEquals(5, f.mostSimilarRows(
+                         m.getRowVector(0), m, 10, true).size());
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testMostSimilarRowsNegative() {
+        Matrix m = matrices(5, 4, 6)[0];
+        new CosineSimilarity().mostSimilarRows(
+            m.getRowVector(0), m, -1, false);
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testLengthMismatch() {
+        new CosineSimilarity().simToRows(new DenseVector(3), 
+                                         new ArrayMatrix(4, 5));
+    }
+}
@@ -21,6 +21,7 @@
 
 package edu.ucla.sspace.text;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.PrintWriter;
 
@@ -64,4 +65,41 @@ public class DependencyFileDocumentIteratorTest {
         assertTrue(parseIter.next() != null);
         assertFalse(parseIter.hasNext());
     }
+
+    @Test public void testSentencesPerDocument() throws Exception {
+        String twoParses = SINGLE_PARSE + "\n\n" + SINGLE_PARSE;
+        String file = createAndWriteTestFile(
+            twoParses + "\n\n\n" + twoParses + "\n\n" + SINGLE_PARSE);
+        Iterator<Document> parseIter = 
+            new DependencyFileDocumentIterator(file, false, 2);
+        assertEquals(twoParses + "\n", readAll(parseIter.next()));
+        assertEquals(twoParses + "\n", readAll(parseIter.next()));
+        assertEquals(SINGLE_PARSE + "\n", readAll(parseIter.next()));
+        assertFalse(parseIter.hasNext());
+    }
+
+    @Test public void testSentencesPerDocumentWithoutHeaders() 
+            throws Exception {
+        String file = createAndWriteTestFile(
+            "header1\n" + SINGLE_PARSE + "\n\nheader2\n" + SINGLE_PARSE);
+        Iterator<Document> parseIter = 
+            new DependencyFileDocumentIterator(file, true, 5);
+        assertEquals(SINGLE_PARSE + "\n\n" + SINGLE_PARSE + "\n", 
+                     readAll(parseIter.next()));
+        assertFalse(parseIter.hasNext());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNoSentencesPerDocument() throws Exception {
+        new DependencyFileDocumentIterator(
+            createAndWriteTestFile(SINGLE_PARSE), false, 0);
+    }
+
+    private static String readAll(Document doc) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        BufferedReader br = doc.reader();
+        for (String line = null; (line = br.readLine()) != null; )
+            sb.append(line).append("\n");
+        return sb.toString();
+    }
 }
@@ -0,0 +1,130 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.text;
+
+import edu.ucla.sspace.common.DummySemanticSpace;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link DocumentPipeline} 
+ */
+public class DocumentPipelineTest {
+
+    /**
+     * A space that records the text of every document it processes.
+     */
+    static class RecordingSpace extends DummySemanticSpace {
+        
+        final Set<String> seen = 
+            Collections.synchronizedSet(new HashSet<String>());
+
+        public void processDocument(BufferedReader document) 
+                throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (String line = null; (line = document.readLine()) != null; )
+                sb.append(line).append('\n');
+            seen.add(sb.toString());
+        }
+    }
+
+    private static List<Document> makeDocs(int numDocs) {
+        List<Document> docs = new ArrayList<Document>();
+        for (int i = 0; i < numDocs; ++i)
+            docs.add(new StringDocument("document " + i + "\nline two\n"));
+        return docs;
+    }
+
+    @Test public void testSingleReaderSingleWorker() throws Exception {
+        RecordingSpace sspace = new RecordingSpace();
+        DocumentPipeline pipeline = 
+            new DocumentPipeline(makeDocs(100).iterator());
+        pipeline.run(sspace, 1);
+        assertEquals(100, sspace.seen.size());
+        assertEquals(100, pipeline.getDocumentsRead());
+        assertEquals(100, pipeline.getDocumentsProcessed());
+        assertTrue(sspace.seen.contains("document 42\nline two\n"));
+    }
+
+    @Test public void testMultipleReadersAndWorkers() throws Exception {
+        RecordingSpace sspace = new RecordingSpace();
+        // Use a small queue and batch size to exercise the back-pressure
+        DocumentPipeline pipeline = 
+            new DocumentPipeline(makeDocs(1000).iterator(), 3, 7, 2);
+        pipeline.run(sspace, 4);
+        assertEquals(1000, sspace.seen.size());
+        assertEquals(1000, pipeline.getDocumentsProcessed());
+        for (int i = 0; i < 1000; ++i)
+            assertTrue(sspace.seen.contains("document " + i + "\nline two\n"));
+    }
+
+    @Test public void testNoDocuments() throws Exception {
+        RecordingSpace sspace = new RecordingSpace();
+        DocumentPipeline pipeline = 
+            new DocumentPipeline(makeDocs(0).iterator(), 2, 4, 0);
+        pipeline.run(sspace, 3);
+        assertEquals(0, sspace.seen.size());
+        assertEquals(0, pipeline.getDocumentsProcessed());
+    }
+
+    @Test(expected=IllegalStateException.class) 
+    public void testRunTwice() throws Exception {
+        DocumentPipeline pipeline = 
+            new DocumentPipeline(makeDocs(1).iterator());
+        pipeline.run(new RecordingSpace(), 1);
+        pipeline.run(new RecordingSpace(), 1);
+    }
+
+    @Test(expected=IllegalStateException.class) 
+    public void testReaderError() throws Exception {
+        Iterator<Document> failing = new Iterator<Document>() {
+            int i = 0;
+            public boolean hasNext() { return true; }
+            public Document next() { 
+                if (++i > 10)
+                    throw new IllegalStateException("cannot read");
+                return new StringDocument("doc " + i);
+            }
+            public void remove() { throw new UnsupportedOperationException(); }
+        };
+        new DocumentPipeline(failing, 2, 3, 1).run(new RecordingSpace(), 2);
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testInvalidBatchSize() {
+        new DocumentPipeline(makeDocs(1).iterator(), 1, 0, 0);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link TermDictionary} 
+ */
+public class TermDictionaryTest {
+
+    @Test public void testIntern() {
+        TermDictionary dict = new TermDictionary();
+        assertEquals(0, dict.intern("cat"));
+        assertEquals(1, dict.intern("dog"));
+        assertEquals(0, dict.intern(new StringBuilder("cat")));
+        assertEquals(2, dict.size());
+        assertEquals("dog", dict.getTerm(1));
+        assertEquals(TermDictionary.NO_TERM, dict.getId("cow"));
+    }
+
+    @Test public void testCharArrays() {
+        TermDictionary dict = new TermDictionary();
+        char[] chars = "the cat sat".toCharArray();
+        assertEquals(0, dict.intern(chars, 4, 3));
+        assertEquals(0, dict.getId("cat"));
+        assertEquals(0, dict.getId(chars, 4, 3));
+        assertEquals(TermDictionary.NO_TERM, dict.getId(chars, 8, 3));
+        assertEquals(1, dict.intern("sat"));
+        assertEquals(1, dict.getId(chars, 8, 3));
+    }
+
+    @Test public void testCanonical() {
+        TermDictionary dict = new TermDictionary();
+        String cat = "cat";
+        dict.intern(cat);
+        assertSame(cat, dict.getCanonical(new StringBuilder("cat")));
+        assertNull(dict.getCanonical("dog"));
+    }
+
+    @Test public void testGrowth() {
+        TermDictionary dict = new TermDictionary(1);
+        for (int i = 0; i < 10000; ++i)
+            assertEquals(i, dict.intern("term" + i));
+        for (int i = 0; i < 10000; ++i) {
+            assertEquals(i, dict.getId("term" + i));
+            assertEquals("term" + i, dict.getTerm(i));
+        }
+        assertEquals(10000, dict.terms().size());
+    }
+
+    @Test public void testTermsInIdOrder() {
+        TermDictionary dict = new TermDictionary();
+        for (String s : new String[] {"c", "a", "b", "a"})
+            dict.intern(s);
+        assertEquals(Arrays.asList("c", "a", "b"), 
+                     new ArrayList<String>(dict.terms()));
+        assertTrue(dict.terms().contains("a"));
+        assertFalse(dict.terms().contains("d"));
+    }
+
+    @Test public void testConcurrentIntern() throws Exception {
+        final TermDictionary dict = new TermDictionary();
+        final int[][] ids = new int[4][5000];
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < ids.length; ++t) {
+            final int thread = t;
+            threads.add(new Thread() {
+                    public void run() {
+                        for (int i = 0; i < ids[thread].length; ++i)
+                            ids[thread][i] = dict.intern("w" + i);
+                    }
+                });
+        }
+        for (Thread t : threads)
+            t.start();
+        for (Thread t : threads)
+            t.join();
+        assertEquals(5000, dict.size());
+        for (int t = 1; t < ids.length; ++t)
+            assertArrayEquals(ids[0], ids[t]);
+        for (int i = 0; i < 5000; ++i)
+            assertEquals("w" + i, dict.getTerm(ids[0][i]));
+    }
+
+    @Test public void testConcurrentAddAndLookup() throws Exception {
+        final TermDictionary dict = new TermDictionary();
+        final int terms = 20000;
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> error =
+            new AtomicReference<Throwable>();
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int t = 0; t < 3; ++t) {
+            readers.add(new Thread() {
+                    public void run() {
+                        try {
+                            while (!done.get()) {
+                                // Look up the most recently added terms, which
+                                // are the ones that may be partially added
+                                int n = dict.size();
+                                for (int i = n; i < n + 8; ++i) {
+                                    String term = "w" + i;
+                                    int id = dict.getId(term);
+                                    if (id == TermDictionary.NO_TERM)
+                                        continue;
+                                    assertEquals(term, dict.getTerm(id));
+                                    assertEquals(term,
+                                                 dict.getCanonical(term));
+                                }
+                            }
+                        } catch (Throwable th) {
+                            error.compareAndSet(null, th);
+                        }
+                    }
+                });
+        }
+        for (Thread t : readers)
+            t.start();
+        for (int i = 0; i < terms; ++i)
+            dict.intern("w" + i);
+        done.set(true);
+        for (Thread t : readers)
+            t.join();
+        if (error.get() != null)
+            throw new AssertionError(error.get());
+        assertEquals(terms, dict.size());
+    }
+
+    @Test public void testSerialization() throws Exception {
+        TermDictionary dict = new TermDictionary();
+        for (int i = 0; i < 100; ++i)
+            dict.intern("term" + i);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(dict);
+        oos.close();
+        TermDictionary copy = (TermDictionary)new ObjectInputStream(
+            new ByteArrayInputStream(baos.toByteArray())).readObject();
+        assertEquals(100, copy.size());
+        for (int i = 0; i < 100; ++i)
+            assertEquals(i, copy.getId("term" + i));
+        assertEquals(100, copy.intern("new"));
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class) 
+    public void testMissingTerm() {
+        new TermDictionary().getTerm(0);
+    }
+}
@@ -86,4 +86,16 @@ public class TestWordIterator {
 	assertFalse(it.hasNext());
     }
 
-}
\ No newline at end of file
+
+    @Test public void testCanonicalTokens() {
+        TermDictionary dict = new TermDictionary();
+        String cat = "cat";
+        dict.intern(cat);
+	WordIterator it = new WordIterator(
+            new BufferedReader(new StringReader("my cat")), dict);
+	assertEquals("my", it.next());
+	assertSame(cat, it.next());
+	assertFalse(it.hasNext());
+        assertEquals(1, dict.size());
+    }
+}
@@ -54,6 +54,18 @@ public class TokenFilterTests {
         assertTrue(filter.accept(""));
     }
 
+    @Test public void testCharSequenceTokens() throws IOException {
+        File toExclude = createFileWithText("include\nthree\nwords");
+        String filterSpec = "exclude=" + toExclude.getAbsolutePath();
+        TokenFilter filter = TokenFilter.loadFromSpecification(filterSpec);
+        TokenScanner scanner = new TokenScanner("three foo words");
+        assertTrue(scanner.advance());
+        assertFalse(filter.accept(scanner.token()));
+        assertTrue(scanner.advance());
+        assertTrue(filter.accept(scanner.token()));
+        assertFalse(filter.accept(new StringBuilder("words")));
+    }
+
     @Test public void testMultipleInclude() throws IOException {
         File toInclude = createFileWithText("include\nthree\nwords");
         File toInclude2 = createFileWithText("foo\nbar\nbaz");
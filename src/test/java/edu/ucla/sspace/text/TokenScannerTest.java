@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.text;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link TokenScanner} 
+ */
+public class TokenScannerTest {
+
+    /**
+     * A reader that returns at most one character per read, which places a
+     * buffer boundary inside every token.
+     */
+    static class TrickleReader extends Reader {
+        private final Reader reader;
+        TrickleReader(String s) { reader = new StringReader(s); }
+        public int read(char[] buf, int off, int len) throws IOException {
+            return reader.read(buf, off, Math.min(len, 1));
+        }
+        public void close() throws IOException { reader.close(); }
+    }
+
+    static List<String> scan(TokenScanner scanner) {
+        List<String> tokens = new ArrayList<String>();
+        while (scanner.advance()) {
+            assertEquals(scanner.tokenString(), scanner.token().toString());
+            assertEquals(scanner.tokenLength(), scanner.token().length());
+            tokens.add(scanner.tokenString());
+        }
+        return tokens;
+    }
+
+    static List<String> regex(String s) {
+        List<String> tokens = new ArrayList<String>();
+        Matcher m = Pattern.compile("\\S+").matcher(s);
+        while (m.find())
+            tokens.add(m.group());
+        return tokens;
+    }
+
+    @Test public void testTokens() {
+        assertEquals(Arrays.asList("my", "cat", "is", "big."), 
+                     scan(new TokenScanner("  my\tcat\r\nis \u000B big.\f")));
+    }
+
+    @Test public void testEmpty() {
+        assertEquals(0, scan(new TokenScanner("")).size());
+        assertEquals(0, scan(new TokenScanner(" \n\t ")).size());
+    }
+
+    @Test public void testTokenBoundaries() {
+        String s = "the quick  brown\nfox jumps";
+        assertEquals(regex(s), scan(new TokenScanner(new TrickleReader(s))));
+    }
+
+    @Test public void testTokenLongerThanBuffer() {
+        char[] c = new char[20000];
+        Arrays.fill(c, 'a');
+        String longToken = new String(c);
+        String s = "x " + longToken + " y";
+        assertEquals(Arrays.asList("x", longToken, "y"), 
+                     scan(new TokenScanner(s)));
+        assertEquals(Arrays.asList("x", longToken, "y"), 
+                     scan(new TokenScanner(new TrickleReader(s))));
+    }
+
+    @Test public void testMatchesRegex() {
+        Random rand = new Random(1);
+        char[] alphabet = {'a', 'b', 'é', '.', ' ', '\n', '\t', '\r', 
+                           '\u000B', '\f', ' ', ' '};
+        for (int trial = 0; trial < 50; ++trial) {
+            StringBuilder sb = new StringBuilder();
+            int length = rand.nextInt(30000);
+            for (int i = 0; i < length; ++i)
+                sb.append(alphabet[rand.nextInt(alphabet.length)]);
+            String s = sb.toString();
+            assertEquals(regex(s), scan(new TokenScanner(s)));
+        }
+    }
+
+    @Test public void testSubSequence() {
+        TokenScanner scanner = new TokenScanner("hello world");
+        assertTrue(scanner.advance());
+        assertTrue(scanner.advance());
+        CharSequence token = scanner.token();
+        assertEquals('w', token.charAt(0));
+        assertEquals("orl", token.subSequence(1, 4).toString());
+    }
+
+    @Test public void testReset() {
+        TokenScanner scanner = new TokenScanner("one two");
+        assertTrue(scanner.advance());
+        scanner.reset(new StringReader("three"));
+        assertEquals(Arrays.asList("three"), scan(scanner));
+    }
+
+    @Test(expected=IllegalStateException.class) 
+    public void testNoToken() {
+        TokenScanner scanner = new TokenScanner("");
+        assertFalse(scanner.advance());
+        scanner.token();
+    }
+}
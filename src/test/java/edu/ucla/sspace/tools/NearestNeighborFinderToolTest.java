@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.tools;
+
+import edu.ucla.sspace.common.DummySemanticSpace;
+import edu.ucla.sspace.common.SemanticSpaceIO;
+
+import edu.ucla.sspace.util.HnswNearestNeighborFinder;
+
+import edu.ucla.sspace.vector.DenseVector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class NearestNeighborFinderToolTest {
+
+    /**
+     * Runs the tool with the arguments and returns what it printed to
+     * standard out.
+     */
+    private static String run(String... args) {
+        return run(new ByteArrayOutputStream(), args);
+    }
+
+    /**
+     * Runs the tool with the arguments, writing what it printed to standard
+     * error to {@code errBytes}, and returns what it printed to standard out.
+     */
+    private static String run(ByteArrayOutputStream errBytes, 
+                              String... args) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes));
+        System.setErr(new PrintStream(errBytes));
+        try {
+            NearestNeighborFinderTool.main(args);
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return bytes.toString();
+    }
+
+    /**
+     * Saves a space of random vectors and returns its file.
+     */
+    private static File createSSpaceFile() throws Exception {
+        DummySemanticSpace sspace = new DummySemanticSpace();
+        Random rand = new Random(1);
+        for (int i = 0; i < 200; ++i) {
+            double[] d = new double[8];
+            for (int j = 0; j < d.length; ++j)
+                d[j] = rand.nextGaussian();
+            sspace.setVector("w" + i, new DenseVector(d));
+        }
+        File sspaceFile = File.createTempFile("test", ".sspace");
+        sspaceFile.deleteOnExit();
+        SemanticSpaceIO.save(sspace, sspaceFile);
+        HnswNearestNeighborFinder.getIndexFile(sspaceFile).deleteOnExit();
+        return sspaceFile;
+    }
+
+    @Test public void testHnswFinder() throws Exception {
+        File sspaceFile = createSSpaceFile();
+        File indexFile = HnswNearestNeighborFinder.getIndexFile(sspaceFile);
+
+        // The first run builds and saves the index
+        String output = run("--hnswFinder", sspaceFile.getPath(), 
+                            "--maxConnections", "8", "--reportRecall", "20",
+                            "w5", "missing");
+        assertTrue(indexFile.exists());
+        String[] lines = output.split("\n");
+        assertEquals("w5", lines[0]);
+        // Ten neighbors are reported, none of which is the query word
+        for (int i = 1; i <= 10; ++i) {
+            assertTrue(lines[i].startsWith("w"));
+            assertFalse(lines[i].startsWith("w5\t"));
+        }
+        assertTrue(lines[11].startsWith("missing is not in"));
+
+        // The second run loads the saved index and finds the same neighbors
+        assertEquals(output, run("-H", sspaceFile.getPath(), "w5", "missing"));
+
+        // Options for building the index are reported as ignored once the
+        // index exists
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals(output, run(err, "-H", sspaceFile.getPath(), "-m", "4",
+                                 "w5", "missing"));
+        assertTrue(err.toString().contains("Ignoring --maxConnections"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testHnswFinderCannotBeSerialized() throws Exception {
+        File sspaceFile = createSSpaceFile();
+        File saved = File.createTempFile("test", ".nnf.ser");
+        saved.deleteOnExit();
+        run("-H", sspaceFile.getPath(), "-S", saved.getPath(), "w5");
+    }
+}
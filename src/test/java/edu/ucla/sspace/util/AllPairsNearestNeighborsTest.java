@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import edu.ucla.sspace.similarity.CosineSimilarity;
+import edu.ucla.sspace.similarity.SimilarityFunction;
+
+import edu.ucla.sspace.vector.DenseVector;
+import edu.ucla.sspace.vector.DoubleVector;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link AllPairsNearestNeighbors} 
+ */
+public class AllPairsNearestNeighborsTest {
+
+    /**
+     * Records every block passed to the handler.
+     */
+    static class RecordingHandler 
+            implements AllPairsNearestNeighbors.BlockHandler {
+
+        final List<Integer> blocks = new ArrayList<Integer>();
+        final List<int[]> neighbors = new ArrayList<int[]>();
+        final List<double[]> similarities = new ArrayList<double[]>();
+
+        public void handle(int block, int firstRow, int[][] n, 
+                           double[][] s) {
+            blocks.add(block);
+            for (int i = 0; i < n.length; ++i) {
+                neighbors.add(n[i]);
+                similarities.add(s[i]);
+            }
+        }
+    }
+
+    static List<DoubleVector> randomVectors(int n, int length, long seed) {
+        Random rand = new Random(seed);
+        List<DoubleVector> vectors = new ArrayList<DoubleVector>(n);
+        for (int i = 0; i < n; ++i) {
+            double[] values = new double[length];
+            for (int j = 0; j < length; ++j)
+                values[j] = rand.nextGaussian();
+            vectors.add(new DenseVector(values));
+        }
+        return vectors;
+    }
+
+    /**
+     * Checks that the neighbors of each vector are its {@code k} most similar
+     * other vectors, in increasing order of similarity.
+     */
+    static void checkNeighbors(List<DoubleVector> vectors, int k, int from,
+                               RecordingHandler handler) {
+        SimilarityFunction simFunc = new CosineSimilarity();
+        assertEquals(vectors.size() - from, handler.neighbors.size());
+        for (int i = from; i < vectors.size(); ++i) {
+            List<Double> sims = new ArrayList<Double>();
+            for (int j = 0; j < vectors.size(); ++j) {
+                if (i != j)
+                    sims.add(simFunc.sim(vectors.get(i), vectors.get(j)));
+            }
+            java.util.Collections.sort(sims);
+            int[] n = handler.neighbors.get(i - from);
+            double[] s = handler.similarities.get(i - from);
+            assertEquals(k, n.length);
+            for (int j = 0; j < k; ++j) {
+                assertTrue(n[j] != i);
+                assertEquals(sims.get(sims.size() - k + j), s[j], 1e-12);
+                assertEquals(simFunc.sim(vectors.get(i), vectors.get(n[j])),
+                             s[j], 1e-12);
+            }
+        }
+    }
+
+    @Test public void testSingleThread() throws Exception {
+        List<DoubleVector> vectors = randomVectors(50, 8, 1);
+        AllPairsNearestNeighbors search = 
+            new AllPairsNearestNeighbors(vectors, new CosineSimilarity(), 5, 7);
+        assertEquals(8, search.numBlocks());
+        RecordingHandler handler = new RecordingHandler();
+        search.run(1, handler);
+        checkNeighbors(vectors, 5, 0, handler);
+    }
+
+    @Test public void testBlocksHandledInOrder() throws Exception {
+        List<DoubleVector> vectors = randomVectors(103, 6, 2);
+        AllPairsNearestNeighbors search = 
+            new AllPairsNearestNeighbors(vectors, new CosineSimilarity(), 4, 5);
+        RecordingHandler handler = new RecordingHandler();
+        search.run(4, handler);
+        for (int i = 0; i < search.numBlocks(); ++i)
+            assertEquals(i, handler.blocks.get(i).intValue());
+        checkNeighbors(vectors, 4, 0, handler);
+    }
+
+    @Test public void testResumeFromBlock() throws Exception {
+        List<DoubleVector> vectors = randomVectors(40, 5, 3);
+        AllPairsNearestNeighbors search = 
+            new AllPairsNearestNeighbors(vectors, new CosineSimilarity(), 3, 8);
+        RecordingHandler handler = new RecordingHandler();
+        search.run(2, 2, handler);
+        assertEquals(3, handler.blocks.size());
+        assertEquals(2, handler.blocks.get(0).intValue());
+        checkNeighbors(vectors, 3, 16, handler);
+    }
+
+    @Test public void testFewerVectorsThanNeighbors() throws Exception {
+        List<DoubleVector> vectors = randomVectors(3, 4, 4);
+        AllPairsNearestNeighbors search = 
+            new AllPairsNearestNeighbors(vectors, new CosineSimilarity(), 10);
+        RecordingHandler handler = new RecordingHandler();
+        search.run(2, handler);
+        assertEquals(3, handler.neighbors.size());
+        for (int[] n : handler.neighbors)
+            assertEquals(2, n.length);
+    }
+
+    @Test public void testHandlerErrorStopsSearch() throws Exception {
+        List<DoubleVector> vectors = randomVectors(60, 4, 5);
+        AllPairsNearestNeighbors search = 
+            new AllPairsNearestNeighbors(vectors, new CosineSimilarity(), 3, 5);
+        final List<Integer> handled = new ArrayList<Integer>();
+        try {
+            search.run(3, new AllPairsNearestNeighbors.BlockHandler() {
+                    public void handle(int block, int firstRow, int[][] n, 
+                                       double[][] s) throws IOException {
+                        handled.add(block);
+                        if (block == 2)
+                            throw new IOException("disk full");
+                    }
+                });
+            fail("Expected the handler's exception");
+        } catch (IOException ioe) {
+            assertEquals("disk full", ioe.getMessage());
+        }
+        assertEquals(3, handled.size());
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testInvalidBlockSize() {
+        new AllPairsNearestNeighbors(randomVectors(3, 4, 6), 
+                                     new CosineSimilarity(), 1, 0);
+    }
+}
@@ -0,0 +1,121 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import edu.ucla.sspace.common.DummySemanticSpace;
+
+import edu.ucla.sspace.vector.DenseVector;
+
+import java.io.File;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class HnswNearestNeighborFinderTest {
+
+    static DummySemanticSpace randomSpace(int words, int dims, long seed) {
+        DummySemanticSpace sspace = new DummySemanticSpace();
+        Random rand = new Random(seed);
+        for (int i = 0; i < words; ++i) {
+            double[] d = new double[dims];
+            for (int j = 0; j < dims; ++j)
+                d[j] = rand.nextGaussian();
+            sspace.setVector("w" + i, new DenseVector(d));
+        }
+        return sspace;
+    }
+
+    @Test public void testRecall() {
+        DummySemanticSpace sspace = randomSpace(1000, 16, 1);
+        HnswNearestNeighborFinder hnsw = new HnswNearestNeighborFinder(sspace);
+        assertEquals(1000, hnsw.size());
+        NearestNeighborFinder exact = new SimpleNearestNeighborFinder(sspace);
+        List<String> queries = new ArrayList<String>();
+        for (int i = 0; i < 100; ++i)
+            queries.add("w" + (i * 10));
+        double recall = 
+            HnswNearestNeighborFinder.recallAtK(hnsw, exact, queries, 10);
+        assertTrue("recall was " + recall, recall > .9);
+    }
+
+    @Test public void testExcludesQueryWord() {
+        DummySemanticSpace sspace = randomSpace(200, 8, 2);
+        HnswNearestNeighborFinder hnsw = new HnswNearestNeighborFinder(sspace);
+        SortedMultiMap<Double,String> m = hnsw.getMostSimilar("w5", 5);
+        assertEquals(5, m.size());
+        assertFalse(m.values().contains("w5"));
+        assertNull(hnsw.getMostSimilar("missing", 5));
+    }
+
+    @Test public void testVectorQuery() {
+        DummySemanticSpace sspace = randomSpace(200, 8, 3);
+        HnswNearestNeighborFinder hnsw = new HnswNearestNeighborFinder(sspace);
+        SortedMultiMap<Double,String> m = 
+            hnsw.getMostSimilar(sspace.getVector("w7"), 1);
+        assertEquals(1, m.size());
+        assertEquals("w7", m.values().iterator().next());
+    }
+
+    @Test public void testIncrementalAdd() {
+        DummySemanticSpace sspace = randomSpace(200, 8, 4);
+        HnswNearestNeighborFinder hnsw = new HnswNearestNeighborFinder(sspace);
+        double[] d = ((DenseVector) sspace.getVector("w3")).toArray().clone();
+        d[0] += 1e-6;
+        assertTrue(hnsw.add("new", new DenseVector(d)));
+        assertFalse(hnsw.add("new", new DenseVector(d)));
+        assertEquals(201, hnsw.size());
+        SortedMultiMap<Double,String> m = hnsw.getMostSimilar("w3", 1);
+        assertEquals("new", m.values().iterator().next());
+    }
+
+    @Test public void testSaveAndLoad() throws Exception {
+        DummySemanticSpace sspace = randomSpace(300, 8, 5);
+        HnswNearestNeighborFinder hnsw = new HnswNearestNeighborFinder(sspace);
+        hnsw.add("extra", new DenseVector(new double[8]));
+        File f = File.createTempFile("test", HnswNearestNeighborFinder.INDEX_EXTENSION);
+        f.deleteOnExit();
+        hnsw.save(f);
+        HnswNearestNeighborFinder loaded = 
+            HnswNearestNeighborFinder.load(f, sspace);
+        assertEquals(hnsw.size(), loaded.size());
+        assertEquals(hnsw.getEfSearch(), loaded.getEfSearch());
+        for (int i = 0; i < 300; i += 30) {
+            String w = "w" + i;
+            assertEquals(new ArrayList<String>(
+                             hnsw.getMostSimilar(w, 5).values()),
+                         new ArrayList<String>(
+                             loaded.getMostSimilar(w, 5).values()));
+        }
+    }
+
+    @Test public void testIndexFile() {
+        assertEquals(new File("a/b.sspace.hnsw"),
+            HnswNearestNeighborFinder.getIndexFile(new File("a/b.sspace")));
+    }
+}
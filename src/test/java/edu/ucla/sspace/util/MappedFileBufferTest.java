@@ -0,0 +1,78 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link MappedFileBuffer} 
+ */
+public class MappedFileBufferTest {
+
+    @Test public void testSegmentBoundaries() throws Exception {
+        File f = File.createTempFile("test-mapped", ".dat");
+        f.deleteOnExit();
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(f));
+        // Write an odd-sized prefix so that values straddle the segment
+        // boundaries
+        dos.writeByte(7);
+        for (int i = 0; i < 100; ++i) {
+            dos.writeInt(i);
+            dos.writeDouble(i / 3d);
+            dos.writeUTF("word" + i);
+        }
+        dos.close();
+
+        // Use a segment size that does not evenly divide any of the values
+        MappedFileBuffer buffer = new MappedFileBuffer(f, 13);
+        assertEquals(f.length(), buffer.length());
+        assertEquals(7, buffer.get(0));
+        long pos = 1;
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(i, buffer.getInt(pos));
+            pos += 4;
+            assertEquals(i / 3d, buffer.getDouble(pos), 0);
+            pos += 8;
+            assertEquals("word" + i, buffer.getUTF(pos));
+            pos += buffer.getUTFLength(pos);
+        }
+        assertEquals(f.length(), pos);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testReadPastEnd() throws Exception {
+        File f = File.createTempFile("test-mapped", ".dat");
+        f.deleteOnExit();
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(f));
+        dos.writeInt(1);
+        dos.close();
+        new MappedFileBuffer(f).getLong(0);
+    }
+}
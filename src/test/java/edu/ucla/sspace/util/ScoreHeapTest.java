@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link ScoreHeap} 
+ */
+public class ScoreHeapTest {
+
+    @Test public void testRetainsHighest() {
+        ScoreHeap heap = new ScoreHeap(3);
+        double[] scores = { .5, .1, .9, .3, .7, .2 };
+        for (int i = 0; i < scores.length; ++i)
+            heap.offer(scores[i], i);
+        assertEquals(3, heap.size());
+        heap.sort();
+        assertArrayEquals(new int[] { 0, 4, 2 }, heap.toRowArray());
+        assertArrayEquals(new double[] { .5, .7, .9 }, heap.toScoreArray(), 0);
+        assertEquals(.9, heap.score(2), 0);
+        assertEquals(2, heap.row(2));
+    }
+
+    @Test public void testFewerThanK() {
+        ScoreHeap heap = new ScoreHeap(5);
+        heap.offer(2, 7);
+        heap.offer(1, 3);
+        assertEquals(2, heap.size());
+        heap.sort();
+        assertArrayEquals(new int[] { 3, 7 }, heap.toRowArray());
+    }
+
+    @Test public void testEmpty() {
+        ScoreHeap heap = new ScoreHeap(0);
+        heap.offer(1, 0);
+        assertEquals(0, heap.size());
+        heap.sort();
+        assertEquals(0, heap.toRowArray().length);
+    }
+
+    @Test public void testRandom() {
+        Random rand = new Random(1);
+        double[] scores = new double[1000];
+        ScoreHeap heap = new ScoreHeap(10);
+        for (int i = 0; i < scores.length; ++i) {
+            scores[i] = rand.nextDouble();
+            heap.offer(scores[i], i);
+        }
+        heap.sort();
+        double[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < 10; ++i) {
+            double expected = sorted[sorted.length - 10 + i];
+            assertEquals(expected, heap.score(i), 0);
+            assertEquals(expected, scores[heap.row(i)], 0);
+        }
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class) 
+    public void testInvalidPosition() {
+        ScoreHeap heap = new ScoreHeap(2);
+        heap.offer(1, 0);
+        heap.score(1);
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testNegativeK() {
+        new ScoreHeap(-1);
+    }
+}
@@ -0,0 +1,107 @@
+
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * A collection of unit tests for {@link SegmentedLruCache} 
+ */
+public class SegmentedLruCacheTest {
+
+    static final Weigher<String,String> LENGTH_WEIGHER = 
+        new Weigher<String,String>() {
+            public long weigh(String key, String value) {
+                return value.length();
+            }
+        };
+
+    @Test public void testGetAndPut() {
+        Cache<String,String> cache = 
+            new SegmentedLruCache<String,String>(100, LENGTH_WEIGHER);
+        assertNull(cache.get("a"));
+        cache.put("a", "apple");
+        assertEquals("apple", cache.get("a"));
+        assertEquals(1, cache.size());
+        assertEquals(5, cache.weight());
+        assertEquals(1, cache.getStatistics().hitCount());
+        assertEquals(1, cache.getStatistics().missCount());
+    }
+
+    @Test public void testReplace() {
+        Cache<String,String> cache = 
+            new SegmentedLruCache<String,String>(100, LENGTH_WEIGHER, 1, .5);
+        cache.put("a", "apple");
+        cache.get("a");
+        cache.put("a", "avocado");
+        assertEquals("avocado", cache.get("a"));
+        assertEquals(1, cache.size());
+        assertEquals(7, cache.weight());
+    }
+
+    @Test public void testBoundedByWeight() {
+        Cache<String,String> cache = 
+            new SegmentedLruCache<String,String>(10, LENGTH_WEIGHER, 1, .5);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.put("c", "cccc");
+        assertTrue(cache.weight() <= 10);
+        assertEquals(2, cache.size());
+        // The least recently added value should have been evicted
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getStatistics().evictionCount());
+    }
+
+    @Test public void testProtectedSurvivesScan() {
+        Cache<String,String> cache = 
+            new SegmentedLruCache<String,String>(10, LENGTH_WEIGHER, 1, .5);
+        cache.put("hot", "hhhh");
+        // Promote the frequently used value to the protected segment
+        assertNotNull(cache.get("hot"));
+        for (int i = 0; i < 20; ++i)
+            cache.put("cold" + i, "cc");
+        assertEquals("hhhh", cache.get("hot"));
+        assertTrue(cache.weight() <= 10);
+    }
+
+    @Test public void testOversizedValueNotCached() {
+        Cache<String,String> cache = 
+            new SegmentedLruCache<String,String>(4, LENGTH_WEIGHER, 1, .5);
+        cache.put("a", "aaaaaaaa");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void testClear() {
+        Cache<String,String> cache = 
+            new SegmentedLruCache<String,String>(100, LENGTH_WEIGHER);
+        for (int i = 0; i < 10; ++i)
+            cache.put("k" + i, "v" + i);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class ThreadLocalAccumulatorTest {
+
+    /**
+     * An accumulator that sums integer counts into a shared map.
+     */
+    static class Counts extends ThreadLocalAccumulator<String,int[]> {
+
+        final Map<String,Integer> shared = new HashMap<String,Integer>();
+
+        Counts(int mergeInterval) {
+            super(mergeInterval);
+        }
+
+        protected int[] createDelta(String key) {
+            return new int[1];
+        }
+
+        protected synchronized void merge(String key, int[] delta) {
+            Integer count = shared.get(key);
+            shared.put(key, (count == null) ? delta[0] : count + delta[0]);
+        }
+    }
+
+    @Test public void testMergeInterval() {
+        Counts c = new Counts(2);
+        c.getDelta("a")[0] += 3;
+        c.documentProcessed();
+        assertTrue(c.shared.isEmpty());
+        assertEquals(3, c.getDeltaIfPresent("a")[0]);
+
+        c.getDelta("a")[0] += 1;
+        c.getDelta("b")[0] += 2;
+        c.documentProcessed();
+        assertEquals(Integer.valueOf(4), c.shared.get("a"));
+        assertEquals(Integer.valueOf(2), c.shared.get("b"));
+        assertNull(c.getDeltaIfPresent("a"));
+    }
+
+    @Test public void testMergeAllThreads() throws Exception {
+        final Counts c = new Counts(1000);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 100; ++i) {
+                        c.getDelta("a")[0]++;
+                        c.documentProcessed();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        assertTrue(c.shared.isEmpty());
+        c.mergeAll();
+        assertEquals(Integer.valueOf(400), c.shared.get("a"));
+    }
+
+    @Test(expected=IllegalArgumentException.class) 
+    public void testInvalidInterval() {
+        new Counts(0);
+    }
+}
@@ -100,4 +100,36 @@ public class WorkQueueTest {
         assertEquals(100, j.get());
     }
 
+    @Test public void testNestedRun() {
+        final WorkQueue w = new WorkQueue(1);
+        final AtomicInteger j = new AtomicInteger();
+        w.run(new Runnable() {
+                public void run() {
+                    Collection<Runnable> c = new ArrayList<Runnable>();
+                    for (int i = 0; i < 10; ++i)
+                        c.add(new Runnable() {
+                                public void run() {
+                                    j.incrementAndGet();
+                                }
+                            });
+                    // With a single thread, this would deadlock if the tasks
+                    // were queued rather than run by the calling thread
+                    w.run(c);
+                }
+            });
+        assertEquals(10, j.get());
+    }
+
+    @Test public void testIsWorkerThread() {
+        final WorkQueue w = new WorkQueue(1);
+        final AtomicBoolean inside = new AtomicBoolean();
+        w.run(new Runnable() {
+                public void run() {
+                    inside.set(w.isWorkerThread());
+                }
+            });
+        assertTrue(inside.get());
+        assertFalse(w.isWorkerThread());
+    }
+
 }
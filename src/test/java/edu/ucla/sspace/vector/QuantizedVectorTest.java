@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.vector;
+
+import edu.ucla.sspace.common.Similarity;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the {@link QuantizedVector} and {@link DenseFloatVector} compact
+ * vector representations.
+ */
+public class QuantizedVectorTest {
+
+    private static double[] randomValues(Random rand, int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; ++i)
+            values[i] = rand.nextGaussian();
+        return values;
+    }
+
+    private static double maxAbs(double[] values) {
+        double max = 0;
+        for (double d : values)
+            max = Math.max(max, Math.abs(d));
+        return max;
+    }
+
+    @Test public void testQuantizationError() {
+        Random rand = new Random(1);
+        for (int trial = 0; trial < 20; ++trial) {
+            double[] values = randomValues(rand, 300);
+            QuantizedVector v = new QuantizedVector(values);
+            assertEquals(values.length, v.length());
+            // Every value is within half a step of the original
+            double step = maxAbs(values) / 127;
+            for (int i = 0; i < values.length; ++i)
+                assertEquals(values[i], v.get(i), step / 2 + 1e-6);
+            assertEquals(new DenseVector(v.toArray()).magnitude(), 
+                         v.magnitude(), 1e-6);
+        }
+    }
+
+    @Test public void testExtremes() {
+        QuantizedVector v = new QuantizedVector(new double[] { -3, 0, 3 });
+        assertEquals(-127, v.getQuantum(0));
+        assertEquals(0, v.getQuantum(1));
+        assertEquals(127, v.getQuantum(2));
+        assertEquals(3, v.get(2), 1e-6);
+    }
+
+    @Test public void testZeroVector() {
+        QuantizedVector v = new QuantizedVector(new double[5]);
+        assertEquals(0, v.scale(), 0);
+        assertEquals(0, v.magnitude(), 0);
+        for (int i = 0; i < v.length(); ++i)
+            assertEquals(0, v.get(i), 0);
+        assertEquals(0, Similarity.cosineSimilarity(v, v), 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNonFinite() {
+        new QuantizedVector(new double[] { 1, Double.NaN });
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testUnmodifiable() {
+        new QuantizedVector(new double[] { 1, 2 }).set(0, 3);
+    }
+
+    @Test public void testQuantizedDotProduct() {
+        Random rand = new Random(2);
+        QuantizedVector a = new QuantizedVector(randomValues(rand, 100));
+        QuantizedVector b = new QuantizedVector(randomValues(rand, 100));
+        double expected = VectorMath.dotProduct(new DenseVector(a.toArray()),
+                                                new DenseVector(b.toArray()));
+        assertEquals(expected, a.dotProduct(b), 1e-6);
+        assertEquals(expected / (a.magnitude() * b.magnitude()),
+                     Similarity.cosineSimilarity(a, b), 1e-6);
+    }
+
+    @Test public void testFloatVector() {
+        Random rand = new Random(3);
+        double[] values = randomValues(rand, 100);
+        DenseFloatVector a = new DenseFloatVector(values);
+        DenseFloatVector b = new DenseFloatVector(
+            new DenseVector(randomValues(rand, 100)));
+        for (int i = 0; i < values.length; ++i)
+            assertEquals((float)values[i], a.get(i), 0);
+        double expected = VectorMath.dotProduct(new DenseVector(a.toArray()),
+                                                new DenseVector(b.toArray()));
+        assertEquals(expected, a.dotProduct(b), 1e-6);
+        assertEquals(expected / (a.magnitude() * b.magnitude()),
+                     Similarity.cosineSimilarity(a, b), 1e-6);
+
+        a.set(0, 2.5);
+        a.add(0, 1);
+        assertEquals(3.5, a.get(0), 0);
+        assertEquals(new DenseVector(a.toArray()).magnitude(), 
+                     a.magnitude(), 1e-6);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012 David Jurgens
+ *
+ * This file is part of the S-Space package and is covered under the terms and
+ * conditions therein.
+ *
+ * The S-Space package is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation and distributed hereunder to you.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS" AND NO REPRESENTATIONS OR WARRANTIES,
+ * EXPRESS OR IMPLIED ARE MADE.  BY WAY OF EXAMPLE, BUT NOT LIMITATION, WE MAKE
+ * NO REPRESENTATIONS OR WARRANTIES OF MERCHANT- ABILITY OR FITNESS FOR ANY
+ * PARTICULAR PURPOSE OR THAT THE USE OF THE LICENSED SOFTWARE OR DOCUMENTATION
+ * WILL NOT INFRINGE ANY THIRD PARTY PATENTS, COPYRIGHTS, TRADEMARKS OR OTHER
+ * RIGHTS.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.ucla.sspace.wordsi;
+
+import edu.ucla.sspace.matrix.SparseMatrix;
+
+import edu.ucla.sspace.vector.CompactSparseVector;
+import edu.ucla.sspace.vector.SparseDoubleVector;
+import edu.ucla.sspace.vector.SparseHashDoubleVector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class ContextStoreTest {
+
+    private static List<SparseDoubleVector> randomContexts(int count, 
+                                                           int length) {
+        Random rand = new Random(count);
+        List<SparseDoubleVector> contexts = 
+            new ArrayList<SparseDoubleVector>();
+        for (int i = 0; i < count; ++i) {
+            SparseDoubleVector v = new CompactSparseVector(length);
+            for (int j = rand.nextInt(20); j > 0; --j)
+                v.set(rand.nextInt(length), rand.nextGaussian() * 1000);
+            contexts.add(v);
+        }
+        return contexts;
+    }
+
+    private static void assertRows(List<SparseDoubleVector> expected,
+                                   SparseMatrix m) {
+        assertEquals(expected.size(), m.rows());
+        for (int r = 0; r < expected.size(); ++r) {
+            SparseDoubleVector row = m.getRowVector(r);
+            assertEquals(m.columns(), row.length());
+            for (int c = 0; c < m.columns(); ++c)
+                assertEquals(expected.get(r).get(c), row.get(c), 0);
+        }
+    }
+
+    @Test public void testAddAndGet() {
+        ContextStore store = new ContextStore();
+        List<SparseDoubleVector> cats = randomContexts(50, 100);
+        List<SparseDoubleVector> dogs = randomContexts(30, 100);
+        for (int i = 0; i < cats.size(); ++i) {
+            assertEquals(i, store.add("cat", cats.get(i)));
+            if (i < dogs.size())
+                assertEquals(i, store.add("dog", dogs.get(i)));
+        }
+        assertEquals(2, store.keySet().size());
+        assertEquals(50, store.size("cat"));
+        assertEquals(30, store.size("dog"));
+        assertEquals(0, store.size("cow"));
+        assertEquals(0, store.spilledBytes());
+        assertTrue(store.bufferedBytes() > 0);
+        assertRows(cats, store.getContexts("cat", 100));
+        assertRows(dogs, store.getContexts("dog", 100));
+        assertEquals(0, store.getContexts("cow", 100).rows());
+    }
+
+    @Test public void testSpill() {
+        ContextStore store = new ContextStore(512);
+        List<SparseDoubleVector> cats = randomContexts(200, 100);
+        List<SparseDoubleVector> dogs = randomContexts(150, 100);
+        for (int i = 0; i < cats.size(); ++i) {
+            store.add("cat", cats.get(i));
+            if (i < dogs.size())
+                store.add("dog", dogs.get(i));
+            assertTrue(store.bufferedBytes() <= 512);
+        }
+        assertTrue(store.spilledBytes() > 0);
+        assertRows(cats, store.getContexts("cat", 100));
+        assertRows(dogs, store.getContexts("dog", 100));
+        store.close();
+        assertEquals(0, store.spilledBytes());
+        assertEquals(0, store.bufferedBytes());
+        assertTrue(store.keySet().isEmpty());
+    }
+
+    @Test public void testSpillEveryContext() {
+        ContextStore store = new ContextStore(0);
+        List<SparseDoubleVector> cats = randomContexts(20, 100);
+        for (SparseDoubleVector v : cats) 
+            store.add("cat", v);
+        assertEquals(0, store.bufferedBytes());
+        assertRows(cats, store.getContexts("cat", 100));
+        store.close();
+    }
+
+    @Test public void testValueEncodings() {
+        ContextStore store = new ContextStore(0);
+        double[][] values = {
+            { 1, -3, Integer.MAX_VALUE, Integer.MIN_VALUE },
+            { 1, 0.5, -0.25f, 1e30f },
+            { 1, 0.1, Math.PI, 1e300 },
+            { 1, Long.MAX_VALUE, -0.0, Double.MIN_VALUE },
+        };
+        List<SparseDoubleVector> expected = new ArrayList<SparseDoubleVector>();
+        for (double[] v : values) {
+            SparseDoubleVector context = new CompactSparseVector(v);
+            expected.add(context);
+            store.add("cat", context);
+        }
+        assertRows(expected, store.getContexts("cat", 4));
+        store.close();
+    }
+
+    @Test public void testTruncatedColumns() {
+        ContextStore store = new ContextStore();
+        SparseDoubleVector v = new CompactSparseVector(10);
+        v.set(1, 2);
+        v.set(5, 3);
+        v.set(8, 4);
+        store.add("cat", v);
+        SparseMatrix m = store.getContexts("cat", 6);
+        assertEquals(6, m.columns());
+        assertEquals(2, m.getRowVector(0).getNonZeroIndices().length);
+        assertEquals(3, m.get(0, 5), 0);
+    }
+
+    @Test public void testUnsortedIndices() {
+        ContextStore store = new ContextStore(0);
+        SparseDoubleVector v = new SparseHashDoubleVector(1000);
+        for (int i = 999; i >= 0; i -= 7)
+            v.set(i, i);
+        store.add("cat", v);
+        List<SparseDoubleVector> expected = new ArrayList<SparseDoubleVector>();
+        expected.add(v);
+        assertRows(expected, store.getContexts("cat", 1000));
+        store.close();
+    }
+
+    @Test public void testNullContext() {
+        ContextStore store = new ContextStore();
+        assertEquals(0, store.add("cat", null));
+        assertEquals(1, store.add("cat", null));
+        SparseMatrix m = store.getContexts("cat", 4);
+        assertEquals(2, m.rows());
+        assertEquals(0, m.getRowVector(1).getNonZeroIndices().length);
+    }
+
+    @Test public void testRemove() {
+        ContextStore store = new ContextStore();
+        store.add("cat", randomContexts(5, 10).get(4));
+        store.remove("cat");
+        assertEquals(0, store.bufferedBytes());
+        assertEquals(0, store.size("cat"));
+        assertFalse(store.keySet().contains("cat"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeBudget() {
+        new ContextStore(-1);
+    }
+}
@@ -95,8 +95,19 @@ public class WaitingWordsiTest {
     @Test public void testProcessSpace() {
         MockClustering clustering = new MockClustering();
         MockExtractor extractor = new MockExtractor();
-        WaitingWordsi wordsi = new WaitingWordsi(
-                null, extractor, clustering, null, 2);
+        checkProcessSpace(clustering, new WaitingWordsi(
+                null, extractor, clustering, null, 2));
+    }
+
+    @Test public void testProcessSpaceWithSpilledContexts() {
+        MockClustering clustering = new MockClustering();
+        MockExtractor extractor = new MockExtractor();
+        checkProcessSpace(clustering, new WaitingWordsi(
+                null, extractor, clustering, null, 2, 0));
+    }
+
+    private void checkProcessSpace(MockClustering clustering, 
+                                   WaitingWordsi wordsi) {
 
         vectors = new SparseDoubleVector[] {
             new CompactSparseVector(new double[] {1, 0, 0, 0}),